@@ -1,14 +1,15 @@
 package com.linlay.agentplatform.catalog.schedule;
 
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.linlay.agentplatform.model.api.QueryRequest;
+import com.linlay.agentplatform.engine.exception.RunAdmissionRejectedException;
 import com.linlay.agentplatform.engine.query.AgentQueryService;
+import com.linlay.agentplatform.engine.query.RunAdmissionService;
 import com.linlay.agentplatform.catalog.team.TeamDescriptor;
 import com.linlay.agentplatform.catalog.team.TeamRegistryService;
+import com.linlay.agentplatform.stream.model.StreamSseEvent;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
 import reactor.core.publisher.Flux;
@@ -25,18 +26,27 @@ public class ScheduledQueryDispatchService {
     private final AgentQueryService agentQueryService;
     private final TeamRegistryService teamRegistryService;
     private final SchedulePushNotifier pushNotifier;
-    private final ObjectMapper objectMapper;
+    private final RunAdmissionService runAdmissionService;
 
+    public ScheduledQueryDispatchService(
+            AgentQueryService agentQueryService,
+            TeamRegistryService teamRegistryService,
+            SchedulePushNotifier pushNotifier
+    ) {
+        this(agentQueryService, teamRegistryService, pushNotifier, null);
+    }
+
+    @Autowired
     public ScheduledQueryDispatchService(
             AgentQueryService agentQueryService,
             TeamRegistryService teamRegistryService,
             SchedulePushNotifier pushNotifier,
-            ObjectMapper objectMapper
+            RunAdmissionService runAdmissionService
     ) {
         this.agentQueryService = agentQueryService;
         this.teamRegistryService = teamRegistryService;
         this.pushNotifier = pushNotifier;
-        this.objectMapper = objectMapper;
+        this.runAdmissionService = runAdmissionService;
     }
 
     public void dispatch(ScheduledQueryDescriptor descriptor) {
@@ -75,7 +85,15 @@ public class ScheduledQueryDispatchService {
                 descriptor.query() == null ? null : descriptor.query().hidden()
         );
 
+        RunAdmissionService.Permit permit = null;
         try {
+            if (runAdmissionService != null) {
+                permit = runAdmissionService.acquire(new RunAdmissionService.Ticket(
+                        target.agentKey(),
+                        null,
+                        RunAdmissionService.Source.SCHEDULED
+                )).block();
+            }
             AgentQueryService.QuerySession session = agentQueryService.prepare(request);
             log.info(
                     "Scheduled query started scheduleId={}, scheduleName={}, cron={}, agentKey={}, teamId={}, chatId={}",
@@ -86,20 +104,15 @@ public class ScheduledQueryDispatchService {
                     session.request().teamId(),
                     session.request().chatId()
             );
-            Flux<ServerSentEvent<String>> stream = agentQueryService.stream(session);
+            Flux<StreamSseEvent> stream = agentQueryService.stream(session);
             String pushUrl = descriptor.pushUrl();
             boolean shouldPush = StringUtils.hasText(pushUrl);
             StringBuilder contentCollector = shouldPush ? new StringBuilder() : null;
             stream.doOnNext(event -> {
-                if (shouldPush && event.data() != null) {
-                    try {
-                        JsonNode node = objectMapper.readTree(event.data());
-                        String type = node.path("type").asText("");
-                        if ("content.delta".equals(type)) {
-                            String delta = node.path("delta").asText("");
-                            contentCollector.append(delta);
-                        }
-                    } catch (Exception ignored) {
+                if (shouldPush && "content.delta".equals(event.type())) {
+                    String delta = event.text("delta");
+                    if (delta != null) {
+                        contentCollector.append(delta);
                     }
                 }
             }).blockLast();
@@ -119,6 +132,14 @@ public class ScheduledQueryDispatchService {
                         : session.request().chatId();
                 pushNotifier.push(pushUrl, pushTargetId, contentCollector.toString());
             }
+        } catch (RunAdmissionRejectedException ex) {
+            log.warn(
+                    "Skip scheduled query scheduleId={}, scheduleName={}, agentKey={}: {}",
+                    descriptor.id(),
+                    descriptor.name(),
+                    target.agentKey(),
+                    ex.getMessage()
+            );
         } catch (Exception ex) {
             log.warn(
                     "Scheduled query failed scheduleId={}, scheduleName={}, cron={}, agentKey={}, teamId={}, chatId={}",
@@ -130,6 +151,10 @@ public class ScheduledQueryDispatchService {
                     request.chatId(),
                     ex
             );
+        } finally {
+            if (permit != null) {
+                permit.release();
+            }
         }
     }
 
@@ -1,11 +1,14 @@
 package com.linlay.agentplatform.chat.asset;
 
 import com.linlay.agentplatform.chat.history.ChatRecordStore;
+import com.linlay.agentplatform.chat.storage.ChatHistoryWriter;
+import com.linlay.agentplatform.config.properties.ChatStorageProperties;
 import com.linlay.agentplatform.model.api.ChatDetailResponse;
 import com.linlay.agentplatform.model.api.QueryRequest;
 import com.linlay.agentplatform.util.ResourcePathNormalizer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
 
@@ -23,46 +26,105 @@ public class ChatAssetAccessService {
 
     private final ChatRecordStore chatRecordStore;
     private final ChatAssetCatalogService chatAssetCatalogService;
+    private final ChatHistoryWriter chatHistoryWriter;
+    private final ChatAssetAclIndex aclIndex;
 
     public ChatAssetAccessService(ChatRecordStore chatRecordStore, ChatAssetCatalogService chatAssetCatalogService) {
+        this(chatRecordStore, chatAssetCatalogService, null, new ChatAssetAclIndex(new ChatStorageProperties()));
+    }
+
+    @Autowired
+    public ChatAssetAccessService(
+            ChatRecordStore chatRecordStore,
+            ChatAssetCatalogService chatAssetCatalogService,
+            ChatHistoryWriter chatHistoryWriter,
+            ChatAssetAclIndex aclIndex
+    ) {
         this.chatRecordStore = chatRecordStore;
         this.chatAssetCatalogService = chatAssetCatalogService;
+        this.chatHistoryWriter = chatHistoryWriter;
+        this.aclIndex = aclIndex;
+        if (chatHistoryWriter != null) {
+            chatHistoryWriter.onTruncate(aclIndex::invalidate);
+        }
     }
 
+    /**
+     * 先查 chat 的允许集合与负缓存；都未命中时检查是否为本 chat 目录下的文件，
+     * 只有历史版本变化后才重新回放历史补齐其中引用的资源。历史被裁剪或重写时由写入器通知作废，
+     * 历史被删除时在这里按版本消失剪掉。
+     */
     public boolean canRead(String chatId, String normalizedFilePath) {
         if (!StringUtils.hasText(chatId) || !StringUtils.hasText(normalizedFilePath)) {
             return false;
         }
+        Object historyVersion = historyVersion(chatId);
+        aclIndex.prune(chatId, historyVersion);
+        if (aclIndex.isAllowed(chatId, normalizedFilePath)) {
+            return true;
+        }
+        if (aclIndex.isDenied(chatId, normalizedFilePath, historyVersion)) {
+            return false;
+        }
+        if (isLiveChatAsset(chatId, normalizedFilePath)) {
+            aclIndex.allow(chatId, normalizedFilePath);
+            return true;
+        }
+        if (!aclIndex.isCurrent(chatId, historyVersion)) {
+            Set<String> assets = loadHistoryAssets(chatId);
+            if (assets != null) {
+                aclIndex.load(chatId, assets, historyVersion);
+            }
+        }
+        if (aclIndex.isAllowed(chatId, normalizedFilePath)) {
+            return true;
+        }
+        aclIndex.deny(chatId, normalizedFilePath);
+        return false;
+    }
+
+    private Object historyVersion(String chatId) {
+        if (chatHistoryWriter == null) {
+            return null;
+        }
+        try {
+            return chatHistoryWriter.version(chatId);
+        } catch (Exception ex) {
+            log.debug("Failed to read chat history version chatId={}, fallback=treat as unchanged", chatId, ex);
+            return null;
+        }
+    }
 
-        ChatDetailResponse chatDetail;
+    private boolean isLiveChatAsset(String chatId, String normalizedFilePath) {
+        if (chatAssetCatalogService == null) {
+            return false;
+        }
         try {
-            chatDetail = chatRecordStore.loadChat(chatId, false);
+            return chatAssetCatalogService.isExposedAsset(chatId, normalizedFilePath);
         } catch (Exception ex) {
             log.debug(
-                    "Failed to load chat detail while checking asset access chatId={}, fallback=deny access",
+                    "Failed to check live chat asset chatId={}, fallback=persisted history assets only",
                     chatId,
                     ex
             );
             return false;
         }
+    }
 
-        Set<String> assets = resolveAllowedAssets(chatDetail);
-        if (chatAssetCatalogService != null) {
-            try {
-                for (QueryRequest.Reference reference : chatAssetCatalogService.listAssets(chatId)) {
-                    if (reference != null) {
-                        addNormalized(assets, reference.url());
-                    }
-                }
-            } catch (Exception ex) {
-                log.debug(
-                        "Failed to load live chat assets chatId={}, fallback=persisted history assets only",
-                        chatId,
-                        ex
-                );
-            }
+    /**
+     * 回放历史中的引用与正文链接；加载失败返回 null，不标记为已回放。
+     */
+    private Set<String> loadHistoryAssets(String chatId) {
+        try {
+            return resolveAllowedAssets(chatRecordStore.loadChat(chatId, false));
+        } catch (Exception ex) {
+            log.debug(
+                    "Failed to load chat detail while checking asset access chatId={}, fallback=deny access",
+                    chatId,
+                    ex
+            );
+            return null;
         }
-        return assets.contains(normalizedFilePath);
     }
 
     private Set<String> resolveAllowedAssets(ChatDetailResponse chatDetail) {
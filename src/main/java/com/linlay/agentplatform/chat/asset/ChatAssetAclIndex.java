@@ -0,0 +1,144 @@
+package com.linlay.agentplatform.chat.asset;
+
+import com.linlay.agentplatform.config.properties.ChatStorageProperties;
+import com.linlay.agentplatform.util.ResourcePathNormalizer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.LongSupplier;
+
+/**
+ * 按 chat 维护允许通过资源票据读取的资源路径，超过容量时淘汰最久未访问的 chat。
+ * <p>
+ * 历史只追加时允许集合只增不减：上传与产物发布直接写入，历史内容中的引用在历史版本变化后重新回放时补齐；
+ * 历史被裁剪、重写或删除后整条 chat 记录作废，下次访问按剩余历史重建，被裁掉的引用不再放行。
+ * 未命中的路径记入负缓存，只在 TTL 内且历史版本未变时有效；对应路径被写入允许集合时立即清除。
+ * 本身不依赖其它 bean，上传与产物发布可以直接登记而不引入循环依赖。
+ */
+@Component
+public class ChatAssetAclIndex {
+
+    private static final int MAX_DENIED_PER_CHAT = 256;
+
+    private final int capacity;
+    private final long negativeTtlMs;
+    private final LongSupplier clock;
+    private final LinkedHashMap<String, Entry> entries;
+
+    @Autowired
+    public ChatAssetAclIndex(ChatStorageProperties properties) {
+        this(properties.getAssetAclCacheSize(), properties.getAssetAclNegativeTtlMs(), System::currentTimeMillis);
+    }
+
+    ChatAssetAclIndex(int capacity, long negativeTtlMs, LongSupplier clock) {
+        this.capacity = Math.max(1, capacity);
+        this.negativeTtlMs = Math.max(0L, negativeTtlMs);
+        this.clock = clock;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > ChatAssetAclIndex.this.capacity;
+            }
+        };
+    }
+
+    synchronized boolean isAllowed(String chatId, String path) {
+        Entry entry = entries.get(chatId);
+        return entry != null && entry.allowed.contains(path);
+    }
+
+    synchronized boolean isDenied(String chatId, String path, Object historyVersion) {
+        Entry entry = entries.get(chatId);
+        if (entry == null || !entry.loaded || !Objects.equals(entry.historyVersion, historyVersion)) {
+            return false;
+        }
+        Long expiresAt = entry.deniedUntil.get(path);
+        if (expiresAt == null) {
+            return false;
+        }
+        if (expiresAt <= clock.getAsLong()) {
+            entry.deniedUntil.remove(path);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * 允许集合是否已按给定历史版本完整回放过。
+     */
+    synchronized boolean isCurrent(String chatId, Object historyVersion) {
+        Entry entry = entries.get(chatId);
+        return entry != null && entry.loaded && Objects.equals(entry.historyVersion, historyVersion);
+    }
+
+    /**
+     * 上传完成或产物发布后登记资源（接受 {@code /api/resource?file=...} 形式或规范化后的路径）。
+     */
+    public void grant(String chatId, String assetReference) {
+        if (!StringUtils.hasText(chatId)) {
+            return;
+        }
+        String normalized = ResourcePathNormalizer.normalizeAssetReference(assetReference);
+        if (StringUtils.hasText(normalized)) {
+            allow(chatId, normalized);
+        }
+    }
+
+    synchronized void allow(String chatId, String path) {
+        Entry entry = entries.computeIfAbsent(chatId, ignored -> new Entry());
+        entry.allowed.add(path);
+        entry.deniedUntil.remove(path);
+    }
+
+    synchronized void load(String chatId, Set<String> paths, Object historyVersion) {
+        Entry entry = entries.computeIfAbsent(chatId, ignored -> new Entry());
+        entry.allowed.addAll(paths);
+        entry.loaded = true;
+        entry.historyVersion = historyVersion;
+        entry.deniedUntil.clear();
+    }
+
+    /**
+     * 历史被裁剪或重写：丢弃该 chat 的允许集合与负缓存，下次访问按剩余历史重新回放。
+     */
+    public synchronized void invalidate(String chatId) {
+        if (StringUtils.hasText(chatId)) {
+            entries.remove(chatId);
+        }
+    }
+
+    /**
+     * 已回放过的历史不存在了（chat 历史被删除）时丢弃该 chat 的记录。
+     */
+    synchronized void prune(String chatId, Object historyVersion) {
+        Entry entry = entries.get(chatId);
+        if (entry != null && entry.loaded && entry.historyVersion != null && historyVersion == null) {
+            entries.remove(chatId);
+        }
+    }
+
+    synchronized void deny(String chatId, String path) {
+        if (negativeTtlMs <= 0) {
+            return;
+        }
+        Entry entry = entries.computeIfAbsent(chatId, ignored -> new Entry());
+        if (entry.deniedUntil.size() >= MAX_DENIED_PER_CHAT) {
+            entry.deniedUntil.clear();
+        }
+        entry.deniedUntil.put(path, clock.getAsLong() + negativeTtlMs);
+    }
+
+    private static final class Entry {
+        private final Set<String> allowed = new HashSet<>();
+        private final Map<String, Long> deniedUntil = new HashMap<>();
+        private boolean loaded;
+        private Object historyVersion;
+    }
+}
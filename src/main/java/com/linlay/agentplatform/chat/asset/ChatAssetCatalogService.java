@@ -106,6 +106,29 @@ public class ChatAssetCatalogService {
         return List.copyOf(references);
     }
 
+    /**
+     * 单个资源路径是否是该 chat 目录下可见的文件；可见性规则与 {@link #listAssets(String)} 一致，但只检查这一个文件。
+     */
+    public boolean isExposedAsset(String chatId, String normalizedFilePath) {
+        if (!chatDataPathService.belongsToChat(chatId, normalizedFilePath)) {
+            return false;
+        }
+        try {
+            Path assetPath = Path.of(ResourcePathNormalizer.normalizeFileParam(normalizedFilePath));
+            String relativePath = assetPath.subpath(1, assetPath.getNameCount()).toString().replace('\\', '/');
+            if (!shouldExpose(relativePath)) {
+                return false;
+            }
+            Path chatDir = chatDataPathService.resolveChatDir(chatId);
+            Path file = chatDir.resolve(relativePath).normalize();
+            return file.startsWith(chatDir)
+                    && Files.isRegularFile(file, LinkOption.NOFOLLOW_LINKS)
+                    && file.toRealPath().startsWith(chatDir.toRealPath());
+        } catch (Exception ex) {
+            return false;
+        }
+    }
+
     public List<QueryRequest.Reference> mergeWithChatAssets(String chatId, List<QueryRequest.Reference> requestedReferences) {
         LinkedHashMap<String, QueryRequest.Reference> merged = new LinkedHashMap<>();
         if (requestedReferences != null) {
@@ -0,0 +1,92 @@
+package com.linlay.agentplatform.chat.asset;
+
+import com.linlay.agentplatform.chat.upload.ChatUploadManifestStore;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * 为 {@code /api/resource} 计算条件请求所需的校验值（强 ETag 与最后修改时间）。
+ * <p>
+ * 上传文件优先使用 manifest 里记录的 SHA-256，其它文件使用大小与修改时间。
+ * 结果按文件路径缓存，文件大小或修改时间变化后重新计算，避免每次请求都读取 manifest。
+ */
+@Component
+public class ChatAssetValidators {
+
+    private static final int CACHE_CAPACITY = 1024;
+    /** 上传文件在写 manifest 之前落盘，修改时间不会晚于完成时间；留出文件系统时间精度的余量。 */
+    private static final long MANIFEST_MTIME_SLACK_MS = 2_000L;
+
+    private final Map<Path, Validators> cache = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Path, Validators> eldest) {
+            return size() > CACHE_CAPACITY;
+        }
+    };
+
+    public record Validators(String eTag, long lastModifiedMs, long sizeBytes) {
+    }
+
+    /**
+     * @param dataDir  数据根目录
+     * @param filePath 已确认位于 dataDir 下的普通文件
+     */
+    public Validators resolve(Path dataDir, Path filePath) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(filePath, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+        long size = attributes.size();
+        long lastModifiedMs = attributes.lastModifiedTime().toMillis();
+        synchronized (cache) {
+            Validators cached = cache.get(filePath);
+            if (cached != null && cached.sizeBytes() == size && cached.lastModifiedMs() == lastModifiedMs) {
+                return cached;
+            }
+        }
+        String sha256 = manifestSha256(dataDir, filePath, size, lastModifiedMs);
+        String eTag = sha256 != null
+                ? "\"sha256-" + sha256 + "\""
+                : "\"" + Long.toHexString(size) + "-" + Long.toHexString(lastModifiedMs) + "\"";
+        Validators validators = new Validators(eTag, lastModifiedMs, size);
+        synchronized (cache) {
+            cache.put(filePath, validators);
+        }
+        return validators;
+    }
+
+    private String manifestSha256(Path dataDir, Path filePath, long size, long lastModifiedMs) {
+        Path relative = dataDir.relativize(filePath);
+        if (relative.getNameCount() < 2) {
+            return null;
+        }
+        Path chatDir = dataDir.resolve(relative.getName(0));
+        if (!Files.isDirectory(chatDir.resolve(".uploads"))) {
+            return null;
+        }
+        for (ChatUploadManifestStore.StoredUpload upload : ChatUploadManifestStore.list(chatDir)) {
+            if (!ChatUploadManifestStore.STATUS_COMPLETED.equals(upload.status())
+                    || !StringUtils.hasText(upload.relativePath())
+                    || !StringUtils.hasText(upload.sha256())
+                    || upload.sizeBytes() != size) {
+                continue;
+            }
+            if (!ChatUploadManifestStore.resolveAssetPath(chatDir, upload).equals(filePath)) {
+                continue;
+            }
+            Long completedAt = upload.completedAt();
+            if (completedAt != null && lastModifiedMs > completedAt + MANIFEST_MTIME_SLACK_MS) {
+                // 上传完成后文件又被改写过，manifest 里的摘要已不可信
+                return null;
+            }
+            return upload.sha256().trim().toLowerCase(Locale.ROOT);
+        }
+        return null;
+    }
+}
@@ -1,9 +1,11 @@
 package com.linlay.agentplatform.chat.event;
 
+import com.linlay.agentplatform.chat.asset.ChatAssetAclIndex;
 import com.linlay.agentplatform.chat.asset.ChatAssetCatalogService;
 import com.linlay.agentplatform.chat.asset.ChatDataPathService;
 import com.linlay.agentplatform.engine.runtime.ExecutionContext;
 import com.linlay.agentplatform.model.api.QueryRequest;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
 
@@ -26,13 +28,24 @@ public class ArtifactPublishService {
 
     private final ChatDataPathService chatDataPathService;
     private final ChatAssetCatalogService chatAssetCatalogService;
+    private final ChatAssetAclIndex chatAssetAclIndex;
 
     public ArtifactPublishService(
             ChatDataPathService chatDataPathService,
             ChatAssetCatalogService chatAssetCatalogService
+    ) {
+        this(chatDataPathService, chatAssetCatalogService, null);
+    }
+
+    @Autowired
+    public ArtifactPublishService(
+            ChatDataPathService chatDataPathService,
+            ChatAssetCatalogService chatAssetCatalogService,
+            ChatAssetAclIndex chatAssetAclIndex
     ) {
         this.chatDataPathService = chatDataPathService;
         this.chatAssetCatalogService = chatAssetCatalogService;
+        this.chatAssetAclIndex = chatAssetAclIndex;
     }
 
     public List<Publication> publish(List<ArtifactRequest> requests, ExecutionContext context) {
@@ -102,6 +115,9 @@ public class ArtifactPublishService {
                 sha256,
                 artifactMeta
         );
+        if (chatAssetAclIndex != null) {
+            chatAssetAclIndex.grant(context.chatId(), reference.url());
+        }
 
         return new Publication(
                 reference.id(),
@@ -31,209 +31,238 @@ public final class ChatEventSnapshotBuilder {
         }
 
         List<Map<String, Object>> events = new ArrayList<>();
-        long seq = 1L;
-        boolean emittedChatStart = false;
-
         for (ChatHistoryRunSnapshot run : runs) {
-            long runStartTs = resolveRunStartTimestamp(run);
-            long runEndTs = resolveRunEndTimestamp(run, runStartTs);
-            long timestampCursor = runStartTs;
-            int reasoningIndex = 0;
-            int contentIndex = 0;
-            int toolIndex = 0;
-            int actionIndex = 0;
-            List<String> hiddenToolCallIds = new ArrayList<>();
-            List<String> hiddenToolBindingIds = new ArrayList<>();
-            List<PersistedChatEvent> persistedEvents = run.persistedEvents().stream()
-                    .sorted(Comparator.comparingLong(PersistedChatEvent::timestamp)
-                            .thenComparingInt(PersistedChatEvent::lineIndex))
-                    .toList();
-            int persistedIndex = 0;
-            boolean terminalPersistedEventSeen = false;
-
-            Map<String, Object> requestQueryPayload = buildRequestQueryPayload(chatId, run);
-            String runAgentKey = requireRunStartAgentKey(chatId, run.runId(), requestQueryPayload.get("agentKey"), boundAgentKey);
-            if (!run.hidden()) {
-                events.add(SseEventFactory.event("request.query", timestampCursor, seq++, requestQueryPayload));
-            }
+            events.addAll(buildRunEvents(chatId, chatName, boundAgentKey, run, events.isEmpty(), events.size() + 1L));
+        }
+        return List.copyOf(events);
+    }
 
-            if (!emittedChatStart) {
-                timestampCursor = normalizeEventTimestamp(timestampCursor + 1, timestampCursor);
-                Map<String, Object> chatStartPayload = new LinkedHashMap<>();
-                chatStartPayload.put("chatId", chatId);
-                if (StringUtils.hasText(chatName)) {
-                    chatStartPayload.put("chatName", chatName);
-                }
-                events.add(SseEventFactory.event("chat.start", timestampCursor, seq++, chatStartPayload));
-                emittedChatStart = true;
+    /**
+     * 构建单个 run 的快照事件，seq 从 firstSeq 起连续编号；首个 run 额外带 chat.start。
+     * 各 run 的事件互不依赖，调用方可以按 run 缓存结果，只重建发生变化的 run。
+     */
+    public List<Map<String, Object>> buildRunEvents(
+            String chatId,
+            String chatName,
+            String boundAgentKey,
+            ChatHistoryRunSnapshot run,
+            boolean firstRun,
+            long firstSeq
+    ) {
+        List<Map<String, Object>> events = new ArrayList<>();
+        long seq = firstSeq;
+
+        long runStartTs = resolveRunStartTimestamp(run);
+        long runEndTs = resolveRunEndTimestamp(run, runStartTs);
+        long timestampCursor = runStartTs;
+        int reasoningIndex = 0;
+        int contentIndex = 0;
+        int toolIndex = 0;
+        int actionIndex = 0;
+        List<String> hiddenToolCallIds = new ArrayList<>();
+        List<String> hiddenToolBindingIds = new ArrayList<>();
+        List<PersistedChatEvent> persistedEvents = run.persistedEvents().stream()
+                .sorted(Comparator.comparingLong(PersistedChatEvent::timestamp)
+                        .thenComparingInt(PersistedChatEvent::lineIndex))
+                .toList();
+        int persistedIndex = 0;
+        boolean terminalPersistedEventSeen = false;
+
+        Map<String, Object> requestQueryPayload = buildRequestQueryPayload(chatId, run);
+        String runAgentKey = requireRunStartAgentKey(chatId, run.runId(), requestQueryPayload.get("agentKey"), boundAgentKey);
+        if (!run.hidden()) {
+            events.add(SseEventFactory.event("request.query", timestampCursor, seq++, requestQueryPayload));
+        }
+
+        if (firstRun) {
+            timestampCursor = normalizeEventTimestamp(timestampCursor + 1, timestampCursor);
+            Map<String, Object> chatStartPayload = new LinkedHashMap<>();
+            chatStartPayload.put("chatId", chatId);
+            if (StringUtils.hasText(chatName)) {
+                chatStartPayload.put("chatName", chatName);
             }
+            events.add(SseEventFactory.event("chat.start", timestampCursor, seq++, chatStartPayload));
+        }
 
-            timestampCursor = normalizeEventTimestamp(timestampCursor + 1, timestampCursor);
-            Map<String, Object> runStartPayload = new LinkedHashMap<>();
-            runStartPayload.put("runId", run.runId());
-            runStartPayload.put("chatId", chatId);
-            runStartPayload.put("agentKey", runAgentKey);
-            events.add(SseEventFactory.event("run.start", timestampCursor, seq++, runStartPayload));
+        timestampCursor = normalizeEventTimestamp(timestampCursor + 1, timestampCursor);
+        Map<String, Object> runStartPayload = new LinkedHashMap<>();
+        runStartPayload.put("runId", run.runId());
+        runStartPayload.put("chatId", chatId);
+        runStartPayload.put("agentKey", runAgentKey);
+        events.add(SseEventFactory.event("run.start", timestampCursor, seq++, runStartPayload));
+
+        while (persistedIndex < persistedEvents.size()
+                && persistedEvents.get(persistedIndex).timestamp() <= timestampCursor) {
+            PersistedChatEvent persisted = persistedEvents.get(persistedIndex++);
+            long persistedTs = normalizeEventTimestamp(persisted.timestamp(), timestampCursor);
+            events.add(SseEventFactory.event(persisted.type(), persistedTs, seq++, persisted.payload()));
+            terminalPersistedEventSeen = terminalPersistedEventSeen || isTerminalRunEvent(persisted.type());
+            timestampCursor = persistedTs;
+        }
 
+        for (ChatStorageTypes.StoredMessage message : run.messages()) {
+            if (message == null || !StringUtils.hasText(message.role)) {
+                continue;
+            }
+            long messageTs = normalizeEventTimestamp(resolveMessageTimestamp(message, timestampCursor), timestampCursor);
             while (persistedIndex < persistedEvents.size()
-                    && persistedEvents.get(persistedIndex).timestamp() <= timestampCursor) {
+                    && persistedEvents.get(persistedIndex).timestamp() <= messageTs) {
                 PersistedChatEvent persisted = persistedEvents.get(persistedIndex++);
                 long persistedTs = normalizeEventTimestamp(persisted.timestamp(), timestampCursor);
                 events.add(SseEventFactory.event(persisted.type(), persistedTs, seq++, persisted.payload()));
                 terminalPersistedEventSeen = terminalPersistedEventSeen || isTerminalRunEvent(persisted.type());
                 timestampCursor = persistedTs;
             }
-
-            for (ChatStorageTypes.StoredMessage message : run.messages()) {
-                if (message == null || !StringUtils.hasText(message.role)) {
-                    continue;
+            String role = message.role.trim().toLowerCase();
+
+            if ("assistant".equals(role)) {
+                if (message.reasoningContent != null && !message.reasoningContent.isEmpty()) {
+                    String text = textFromContent(message.reasoningContent);
+                    if (StringUtils.hasText(text)) {
+                        Map<String, Object> payload = new LinkedHashMap<>();
+                        payload.put("reasoningId", StringUtils.hasText(message.reasoningId)
+                                ? message.reasoningId
+                                : run.runId() + "_r_" + reasoningIndex++);
+                        payload.put("runId", run.runId());
+                        payload.put("text", text);
+                        events.add(SseEventFactory.event("reasoning.snapshot", messageTs, seq++, payload));
+                        timestampCursor = messageTs;
+                    }
                 }
-                long messageTs = normalizeEventTimestamp(resolveMessageTimestamp(message, timestampCursor), timestampCursor);
-                while (persistedIndex < persistedEvents.size()
-                        && persistedEvents.get(persistedIndex).timestamp() <= messageTs) {
-                    PersistedChatEvent persisted = persistedEvents.get(persistedIndex++);
-                    long persistedTs = normalizeEventTimestamp(persisted.timestamp(), timestampCursor);
-                    events.add(SseEventFactory.event(persisted.type(), persistedTs, seq++, persisted.payload()));
-                    terminalPersistedEventSeen = terminalPersistedEventSeen || isTerminalRunEvent(persisted.type());
-                    timestampCursor = persistedTs;
+                if (message.content != null && !message.content.isEmpty()) {
+                    String text = textFromContent(message.content);
+                    if (StringUtils.hasText(text)) {
+                        Map<String, Object> payload = new LinkedHashMap<>();
+                        payload.put("contentId", StringUtils.hasText(message.contentId)
+                                ? message.contentId
+                                : run.runId() + "_c_" + contentIndex++);
+                        payload.put("runId", run.runId());
+                        payload.put("text", text);
+                        events.add(SseEventFactory.event("content.snapshot", messageTs, seq++, payload));
+                        timestampCursor = messageTs;
+                    }
                 }
-                String role = message.role.trim().toLowerCase();
-
-                if ("assistant".equals(role)) {
-                    if (message.reasoningContent != null && !message.reasoningContent.isEmpty()) {
-                        String text = textFromContent(message.reasoningContent);
-                        if (StringUtils.hasText(text)) {
-                            Map<String, Object> payload = new LinkedHashMap<>();
-                            payload.put("reasoningId", StringUtils.hasText(message.reasoningId)
-                                    ? message.reasoningId
-                                    : run.runId() + "_r_" + reasoningIndex++);
-                            payload.put("runId", run.runId());
-                            payload.put("text", text);
-                            events.add(SseEventFactory.event("reasoning.snapshot", messageTs, seq++, payload));
-                            timestampCursor = messageTs;
+                if (message.toolCalls != null && !message.toolCalls.isEmpty()) {
+                    for (ChatStorageTypes.StoredToolCall toolCall : message.toolCalls) {
+                        if (toolCall == null || toolCall.function == null) {
+                            throw new IllegalStateException("history snapshot requires non-null toolCall function for runId=" + run.runId());
                         }
-                    }
-                    if (message.content != null && !message.content.isEmpty()) {
-                        String text = textFromContent(message.content);
-                        if (StringUtils.hasText(text)) {
-                            Map<String, Object> payload = new LinkedHashMap<>();
-                            payload.put("contentId", StringUtils.hasText(message.contentId)
-                                    ? message.contentId
-                                    : run.runId() + "_c_" + contentIndex++);
-                            payload.put("runId", run.runId());
-                            payload.put("text", text);
-                            events.add(SseEventFactory.event("content.snapshot", messageTs, seq++, payload));
-                            timestampCursor = messageTs;
+                        String toolName = requireNonBlankName(
+                                toolCall.function.name,
+                                "history snapshot requires non-blank %s for runId=%s, toolCallId=%s",
+                                isActionToolCall(message, toolCall) ? "actionName" : "toolName",
+                                run.runId(),
+                                toolCall.id
+                        );
+                        IdBinding binding = resolveBindingForAssistantToolCall(run.runId(), message, toolCall, toolIndex, actionIndex);
+                        if (binding.action()) {
+                            actionIndex++;
+                        } else {
+                            toolIndex++;
                         }
-                    }
-                    if (message.toolCalls != null && !message.toolCalls.isEmpty()) {
-                        for (ChatStorageTypes.StoredToolCall toolCall : message.toolCalls) {
-                            if (toolCall == null || toolCall.function == null) {
-                                throw new IllegalStateException("history snapshot requires non-null toolCall function for runId=" + run.runId());
-                            }
-                            String toolName = requireNonBlankName(
-                                    toolCall.function.name,
-                                    "history snapshot requires non-blank %s for runId=%s, toolCallId=%s",
-                                    isActionToolCall(message, toolCall) ? "actionName" : "toolName",
-                                    run.runId(),
-                                    toolCall.id
-                            );
-                            IdBinding binding = resolveBindingForAssistantToolCall(run.runId(), message, toolCall, toolIndex, actionIndex);
-                            if (binding.action()) {
-                                actionIndex++;
-                            } else {
-                                toolIndex++;
+                        if (!binding.action() && !isClientVisibleTool(toolCall.function.name)) {
+                            if (StringUtils.hasText(toolCall.id)) {
+                                hiddenToolCallIds.add(toolCall.id.trim());
                             }
-                            if (!binding.action() && !isClientVisibleTool(toolCall.function.name)) {
-                                if (StringUtils.hasText(toolCall.id)) {
-                                    hiddenToolCallIds.add(toolCall.id.trim());
-                                }
-                                hiddenToolBindingIds.add(binding.id());
-                                continue;
-                            }
-                            Map<String, Object> payload = new LinkedHashMap<>();
-                            payload.put(binding.action() ? "actionId" : "toolId", binding.id());
-                            payload.put(binding.action() ? "actionName" : "toolName", toolName);
-                            payload.put("runId", run.runId());
-                            payload.put("arguments", toolCall.function.arguments);
-
-                            if (!binding.action()) {
-                                if (StringUtils.hasText(toolCall.type) && !"function".equalsIgnoreCase(toolCall.type)) {
-                                    payload.put("toolType", toolCall.type);
-                                }
-                                putIfNonNull(payload, "toolLabel", resolveToolLabel(toolCall.function.name));
-                                putIfNonNull(payload, "toolDescription", resolveToolDescription(toolCall.function.name));
-                            } else {
-                                payload.put("description", null);
+                            hiddenToolBindingIds.add(binding.id());
+                            continue;
+                        }
+                        Map<String, Object> payload = new LinkedHashMap<>();
+                        payload.put(binding.action() ? "actionId" : "toolId", binding.id());
+                        payload.put(binding.action() ? "actionName" : "toolName", toolName);
+                        payload.put("runId", run.runId());
+                        payload.put("arguments", toolCall.function.arguments);
+
+                        if (!binding.action()) {
+                            if (StringUtils.hasText(toolCall.type) && !"function".equalsIgnoreCase(toolCall.type)) {
+                                payload.put("toolType", toolCall.type);
                             }
-
-                            timestampCursor = normalizeEventTimestamp(messageTs, timestampCursor);
-                            events.add(SseEventFactory.event(binding.action() ? "action.snapshot" : "tool.snapshot", timestampCursor, seq++, payload));
-                            messageTs = timestampCursor + 1;
+                            putIfNonNull(payload, "toolLabel", resolveToolLabel(toolCall.function.name));
+                            putIfNonNull(payload, "toolDescription", resolveToolDescription(toolCall.function.name));
+                        } else {
+                            payload.put("description", null);
                         }
-                    }
-                    continue;
-                }
-
-                if (!"tool".equals(role)) {
-                    continue;
-                }
 
-                String result = textFromContent(message.content);
-                if (!StringUtils.hasText(result)) {
-                    result = "";
-                }
-
-                if (StringUtils.hasText(message.toolId) && hiddenToolBindingIds.contains(message.toolId.trim())) {
-                    continue;
-                }
-                if (StringUtils.hasText(message.toolCallId) && hiddenToolCallIds.contains(message.toolCallId.trim())) {
-                    continue;
+                        timestampCursor = normalizeEventTimestamp(messageTs, timestampCursor);
+                        events.add(SseEventFactory.event(binding.action() ? "action.snapshot" : "tool.snapshot", timestampCursor, seq++, payload));
+                        messageTs = timestampCursor + 1;
+                    }
                 }
+                continue;
+            }
 
-                IdBinding binding = resolveBindingForToolResult(run.runId(), message, toolIndex, actionIndex);
-                if (binding == null) {
-                    continue;
-                }
-                if (!binding.action() && hiddenToolBindingIds.contains(binding.id())) {
-                    continue;
-                }
-                if (!binding.action() && StringUtils.hasText(message.name) && !isClientVisibleTool(message.name)) {
-                    continue;
-                }
-                if (binding.action()) {
-                    actionIndex++;
-                } else {
-                    toolIndex++;
-                }
+            if (!"tool".equals(role)) {
+                continue;
+            }
 
-                Map<String, Object> payload = new LinkedHashMap<>();
-                payload.put(binding.action() ? "actionId" : "toolId", binding.id());
-                payload.put("result", result);
-                timestampCursor = normalizeEventTimestamp(messageTs, timestampCursor);
-                events.add(SseEventFactory.event(binding.action() ? "action.result" : "tool.result", timestampCursor, seq++, payload));
+            String result = textFromContent(message.content);
+            if (!StringUtils.hasText(result)) {
+                result = "";
             }
 
-            while (persistedIndex < persistedEvents.size()) {
-                PersistedChatEvent persisted = persistedEvents.get(persistedIndex++);
-                long persistedTs = normalizeEventTimestamp(persisted.timestamp(), timestampCursor);
-                events.add(SseEventFactory.event(persisted.type(), persistedTs, seq++, persisted.payload()));
-                terminalPersistedEventSeen = terminalPersistedEventSeen || isTerminalRunEvent(persisted.type());
-                timestampCursor = persistedTs;
+            if (StringUtils.hasText(message.toolId) && hiddenToolBindingIds.contains(message.toolId.trim())) {
+                continue;
+            }
+            if (StringUtils.hasText(message.toolCallId) && hiddenToolCallIds.contains(message.toolCallId.trim())) {
+                continue;
             }
 
-            if (!terminalPersistedEventSeen) {
-                timestampCursor = normalizeEventTimestamp(runEndTs + 1, timestampCursor);
-                Map<String, Object> runCompletePayload = new LinkedHashMap<>();
-                runCompletePayload.put("runId", run.runId());
-                runCompletePayload.put("finishReason", "end_turn");
-                events.add(SseEventFactory.event("run.complete", timestampCursor, seq++, runCompletePayload));
+            IdBinding binding = resolveBindingForToolResult(run.runId(), message, toolIndex, actionIndex);
+            if (binding == null) {
+                continue;
+            }
+            if (!binding.action() && hiddenToolBindingIds.contains(binding.id())) {
+                continue;
+            }
+            if (!binding.action() && StringUtils.hasText(message.name) && !isClientVisibleTool(message.name)) {
+                continue;
             }
+            if (binding.action()) {
+                actionIndex++;
+            } else {
+                toolIndex++;
+            }
+
+            Map<String, Object> payload = new LinkedHashMap<>();
+            payload.put(binding.action() ? "actionId" : "toolId", binding.id());
+            payload.put("result", result);
+            timestampCursor = normalizeEventTimestamp(messageTs, timestampCursor);
+            events.add(SseEventFactory.event(binding.action() ? "action.result" : "tool.result", timestampCursor, seq++, payload));
+        }
+
+        while (persistedIndex < persistedEvents.size()) {
+            PersistedChatEvent persisted = persistedEvents.get(persistedIndex++);
+            long persistedTs = normalizeEventTimestamp(persisted.timestamp(), timestampCursor);
+            events.add(SseEventFactory.event(persisted.type(), persistedTs, seq++, persisted.payload()));
+            terminalPersistedEventSeen = terminalPersistedEventSeen || isTerminalRunEvent(persisted.type());
+            timestampCursor = persistedTs;
+        }
+
+        if (!terminalPersistedEventSeen) {
+            timestampCursor = normalizeEventTimestamp(runEndTs + 1, timestampCursor);
+            Map<String, Object> runCompletePayload = new LinkedHashMap<>();
+            runCompletePayload.put("runId", run.runId());
+            runCompletePayload.put("finishReason", "end_turn");
+            events.add(SseEventFactory.event("run.complete", timestampCursor, seq++, runCompletePayload));
         }
 
         return List.copyOf(events);
     }
 
+    /**
+     * 把已构建的 run 事件改为从 firstSeq 起编号，其余字段原样复用；用于前面的 run 事件数变化后整体平移。
+     */
+    public static List<Map<String, Object>> resequence(List<Map<String, Object>> events, long firstSeq) {
+        List<Map<String, Object>> resequenced = new ArrayList<>(events.size());
+        long seq = firstSeq;
+        for (Map<String, Object> event : events) {
+            Map<String, Object> copy = new LinkedHashMap<>(event);
+            copy.put("seq", seq++);
+            resequenced.add(copy);
+        }
+        return List.copyOf(resequenced);
+    }
+
     private Map<String, Object> buildRequestQueryPayload(String chatId, ChatHistoryRunSnapshot run) {
         Map<String, Object> payload = new LinkedHashMap<>();
         Map<String, Object> query = run.query() == null ? Map.of() : run.query();
@@ -0,0 +1,258 @@
+package com.linlay.agentplatform.chat.history;
+
+import com.linlay.agentplatform.chat.storage.ChatHistoryWriter;
+import com.linlay.agentplatform.config.properties.ChatStorageProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * 流式事件的异步落盘阶段。
+ * <p>
+ * SSE 管线只把事件放入按 chat 划分的有界队列，由后台线程按间隔或批量阈值组提交到历史文件，
+ * 磁盘延迟不再阻塞 token 下发。非持久化类型（content.delta / reasoning.delta 等）在入队前即被丢弃，
+ * 无需合并。队列写满时由提交方线程同步落盘作为背压；终态事件由调用方通过 {@link #flush(String)} 等待落盘完成。
+ * 同一 chat 的同步行写入与读取通过 {@link ChatHistoryWriter.WriteSequencer} 排在已入队事件之后。
+ */
+@Component
+public class ChatEventPersistenceQueue implements DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(ChatEventPersistenceQueue.class);
+
+    private final ChatRecordStore chatRecordStore;
+    private final long flushIntervalMs;
+    private final int batchSize;
+    private final int maxPendingPerChat;
+    private final ConcurrentHashMap<String, ChatQueue> queues = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService flushScheduler;
+
+    private final AtomicLong submittedEvents = new AtomicLong();
+    private final AtomicLong skippedEvents = new AtomicLong();
+    private final AtomicLong persistedEvents = new AtomicLong();
+    private final AtomicLong flushedBatches = new AtomicLong();
+    private final AtomicLong backpressureFlushes = new AtomicLong();
+    private final AtomicLong pendingEvents = new AtomicLong();
+    private final AtomicLong maxPendingObserved = new AtomicLong();
+
+    public ChatEventPersistenceQueue(ChatRecordStore chatRecordStore, ChatStorageProperties properties) {
+        ChatStorageProperties.PersistenceProperties persistence = properties == null
+                ? new ChatStorageProperties.PersistenceProperties()
+                : properties.getPersistence();
+        this.chatRecordStore = chatRecordStore;
+        this.flushIntervalMs = persistence.getFlushIntervalMs();
+        this.batchSize = Math.max(1, persistence.getBatchSize());
+        this.maxPendingPerChat = Math.max(this.batchSize, persistence.getMaxPendingPerChat());
+        if (flushIntervalMs > 0) {
+            this.flushScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "chat-event-persistence");
+                t.setDaemon(true);
+                return t;
+            });
+            this.flushScheduler.scheduleWithFixedDelay(this::flushAllQuietly, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+        } else {
+            this.flushScheduler = null;
+        }
+        ChatHistoryWriter historyWriter = chatRecordStore == null ? null : chatRecordStore.historyWriter();
+        if (historyWriter != null && flushScheduler != null) {
+            historyWriter.setWriteSequencer(this::sequence);
+        }
+    }
+
+    public void submit(String chatId, Map<String, Object> eventData, boolean hidden) {
+        submit(chatId, eventData, null, hidden);
+    }
+
+    /**
+     * json 为事件已经序列化好的字节（可为 null），落盘时原样复用。
+     */
+    public void submit(String chatId, Map<String, Object> eventData, byte[] json, boolean hidden) {
+        if (!StringUtils.hasText(chatId) || eventData == null) {
+            return;
+        }
+        Object type = eventData.get("type");
+        if (!(type instanceof String text) || !chatRecordStore.shouldPersistEvent(text)) {
+            skippedEvents.incrementAndGet();
+            return;
+        }
+        submittedEvents.incrementAndGet();
+        ChatRecordStore.PendingEvent event = new ChatRecordStore.PendingEvent(eventData, json, hidden);
+        if (flushScheduler == null) {
+            chatRecordStore.appendEvents(chatId, List.of(event));
+            persistedEvents.incrementAndGet();
+            flushedBatches.incrementAndGet();
+            return;
+        }
+        while (true) {
+            ChatQueue queue = queues.computeIfAbsent(chatId, key -> new ChatQueue());
+            int size;
+            boolean overflow;
+            synchronized (queue) {
+                if (queue.retired) {
+                    continue;
+                }
+                overflow = queue.pending.size() >= maxPendingPerChat;
+                if (!overflow) {
+                    queue.pending.addLast(event);
+                    size = queue.pending.size();
+                    maxPendingObserved.accumulateAndGet(pendingEvents.incrementAndGet(), Math::max);
+                } else {
+                    size = queue.pending.size();
+                }
+            }
+            if (overflow) {
+                backpressureFlushes.incrementAndGet();
+                flushChat(chatId, queue);
+                continue;
+            }
+            if (size == batchSize) {
+                scheduleFlush(chatId);
+            }
+            return;
+        }
+    }
+
+    /**
+     * 异步落盘指定 chat 的全部待写事件；返回的 future 在这些事件写入文件后完成。
+     */
+    public CompletableFuture<Void> flush(String chatId) {
+        if (!StringUtils.hasText(chatId) || flushScheduler == null || !queues.containsKey(chatId)) {
+            return CompletableFuture.completedFuture(null);
+        }
+        try {
+            return CompletableFuture.runAsync(() -> flushChat(chatId), flushScheduler);
+        } catch (RejectedExecutionException ex) {
+            flushChat(chatId);
+            return CompletableFuture.completedFuture(null);
+        }
+    }
+
+    public void flushAll() {
+        for (String chatId : List.copyOf(queues.keySet())) {
+            flushChat(chatId);
+        }
+    }
+
+    public Stats stats() {
+        return new Stats(
+                submittedEvents.get(),
+                skippedEvents.get(),
+                persistedEvents.get(),
+                flushedBatches.get(),
+                backpressureFlushes.get(),
+                pendingEvents.get(),
+                maxPendingObserved.get()
+        );
+    }
+
+    @Override
+    public void destroy() {
+        if (flushScheduler != null) {
+            flushScheduler.shutdown();
+            try {
+                flushScheduler.awaitTermination(5, TimeUnit.SECONDS);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        flushAll();
+        Stats stats = stats();
+        log.debug("chat event persistence stopped, persisted={}, batches={}, backpressureFlushes={}",
+                stats.persistedEvents(), stats.flushedBatches(), stats.backpressureFlushes());
+    }
+
+    private void scheduleFlush(String chatId) {
+        try {
+            flushScheduler.execute(() -> flushChat(chatId));
+        } catch (RejectedExecutionException ex) {
+            flushChat(chatId);
+        }
+    }
+
+    private void flushAllQuietly() {
+        try {
+            flushAll();
+        } catch (Exception ex) {
+            log.warn("chat event persistence flush failed", ex);
+        }
+    }
+
+    private void flushChat(String chatId) {
+        ChatQueue queue = queues.get(chatId);
+        if (queue != null) {
+            flushChat(chatId, queue);
+        }
+    }
+
+    /**
+     * 同步写入（query/step 行、裁剪）与读取经由此处排队：持有该 chat 的 flushLock，先写完已入队的事件再执行 action，
+     * 文件中的行顺序与提交顺序一致。落盘线程自身重入时直接执行。
+     */
+    private <T> T sequence(String chatId, Supplier<T> action) {
+        ChatQueue queue = queues.get(chatId);
+        if (queue == null || Thread.holdsLock(queue.flushLock)) {
+            return action.get();
+        }
+        synchronized (queue.flushLock) {
+            flushChat(chatId, queue);
+            return action.get();
+        }
+    }
+
+    /**
+     * 同一 chat 的落盘串行执行：在 flushLock 内出队并写入，保证批次之间的顺序与提交顺序一致。
+     */
+    private void flushChat(String chatId, ChatQueue queue) {
+        synchronized (queue.flushLock) {
+            List<ChatRecordStore.PendingEvent> batch;
+            synchronized (queue) {
+                if (queue.pending.isEmpty()) {
+                    queue.retired = true;
+                    queues.remove(chatId, queue);
+                    return;
+                }
+                batch = new ArrayList<>(queue.pending);
+                queue.pending.clear();
+                pendingEvents.addAndGet(-batch.size());
+            }
+            try {
+                chatRecordStore.appendEvents(chatId, batch);
+                persistedEvents.addAndGet(batch.size());
+                flushedBatches.incrementAndGet();
+            } catch (Exception ex) {
+                log.warn("Cannot persist chat events chatId={}, count={}", chatId, batch.size(), ex);
+            }
+        }
+    }
+
+    public record Stats(
+            long submittedEvents,
+            long skippedEvents,
+            long persistedEvents,
+            long flushedBatches,
+            long backpressureFlushes,
+            long pendingEvents,
+            long maxPendingObserved
+    ) {
+    }
+
+    private static final class ChatQueue {
+        private final ArrayDeque<ChatRecordStore.PendingEvent> pending = new ArrayDeque<>();
+        private final Object flushLock = new Object();
+        private boolean retired;
+    }
+}
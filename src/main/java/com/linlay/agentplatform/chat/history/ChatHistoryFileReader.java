@@ -3,25 +3,40 @@ package com.linlay.agentplatform.chat.history;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.linlay.agentplatform.chat.event.PersistedChatEvent;
+import com.linlay.agentplatform.chat.storage.ChatHistoryWriter;
 import com.linlay.agentplatform.chat.storage.ChatStorageTypes;
 import com.linlay.agentplatform.model.api.QueryRequest;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.util.StringUtils;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.function.Supplier;
 
+/**
+ * 把聊天历史 JSONL 回放为按 run 聚合的快照。
+ * <p>
+ * 支持基于 {@link Cursor} 的增量回放：只解析上次读取之后追加的行，并只重建这些行涉及的 run。
+ */
 final class ChatHistoryFileReader {
 
     private static final Logger log = LoggerFactory.getLogger(ChatHistoryFileReader.class);
+    private static final int FINGERPRINT_BYTES = 128;
 
     private final ObjectMapper objectMapper;
     private final Supplier<Charset> charsetSupplier;
@@ -32,196 +47,381 @@ final class ChatHistoryFileReader {
     }
 
     ChatHistoryReadResult read(Path historyPath) {
+        Cursor cursor = read(historyPath, null);
+        return cursor == null ? new ChatHistoryReadResult(List.of(), new LinkedHashMap<>()) : cursor.result();
+    }
+
+    /**
+     * 增量读取：previous 仍与文件匹配（长度未缩短、已消费部分的首尾字节未变）时只解析新追加的行并重建受影响的 run，
+     * 否则从头完整回放。返回的游标可能就是 previous 本身；读取失败返回 null。
+     * 调用方需保证同一游标不会被并发读取。
+     */
+    Cursor read(Path historyPath, Cursor previous) {
         if (historyPath == null || !Files.exists(historyPath)) {
-            return new ChatHistoryReadResult(List.of(), new LinkedHashMap<>());
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(historyPath, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long modifiedAt = Files.getLastModifiedTime(historyPath).toMillis();
+            Cursor cursor = previous;
+            if (cursor != null && size == cursor.offset && modifiedAt == cursor.modifiedAt) {
+                return cursor;
+            }
+            if (cursor == null || size < cursor.offset || !Arrays.equals(cursor.fingerprint, fingerprint(channel, cursor.offset))) {
+                cursor = new Cursor();
+            }
+            byte[] appended = readRange(channel, cursor.offset, size);
+            applyBytes(cursor, appended);
+            cursor.fingerprint = fingerprint(channel, cursor.offset);
+            cursor.modifiedAt = modifiedAt;
+            cursor.rebuild();
+            return cursor;
+        } catch (Exception ex) {
+            log.warn("Cannot read chat history file={}, fallback to empty", historyPath, ex);
+            return null;
         }
+    }
+
+    /**
+     * 分段存储的增量读取：按逻辑偏移续读；头部段被删除（起始偏移变化）或区间缩短时从头回放。
+     */
+    Cursor read(ChatHistoryWriter historyWriter, String chatId, Cursor previous) {
         try {
-            List<String> lines = Files.readAllLines(historyPath, charsetSupplier.get());
-            LinkedHashMap<String, Map<String, Object>> queryByRunId = new LinkedHashMap<>();
-            LinkedHashMap<String, Boolean> queryHiddenByRunId = new LinkedHashMap<>();
-            LinkedHashMap<String, List<StepEntry>> stepsByRunId = new LinkedHashMap<>();
-            LinkedHashMap<String, List<PersistedChatEvent>> eventsByRunId = new LinkedHashMap<>();
-            LinkedHashMap<String, List<ArtifactStateEntry>> artifactEntriesByRunId = new LinkedHashMap<>();
-            LinkedHashMap<String, Integer> firstLineIndexByRunId = new LinkedHashMap<>();
-            LinkedHashMap<String, QueryRequest.Reference> references = new LinkedHashMap<>();
-            int lineIndex = 0;
-
-            for (String line : lines) {
-                if (!StringUtils.hasText(line)) {
-                    lineIndex++;
-                    continue;
-                }
+            ChatHistoryWriter.HistorySpan span = historyWriter.span(chatId);
+            if (span == null) {
+                return null;
+            }
+            Cursor cursor = previous;
+            if (cursor != null
+                    && cursor.origin == span.startOffset()
+                    && cursor.offset == span.endOffset()
+                    && cursor.modifiedAt == span.modifiedAt()) {
+                return cursor;
+            }
+            if (cursor == null || cursor.origin != span.startOffset() || span.endOffset() < cursor.offset) {
+                cursor = new Cursor();
+                cursor.origin = span.startOffset();
+                cursor.offset = span.startOffset();
+            }
+            applyBytes(cursor, historyWriter.read(chatId, cursor.offset, span.endOffset()));
+            cursor.modifiedAt = span.modifiedAt();
+            cursor.rebuild();
+            return cursor;
+        } catch (Exception ex) {
+            log.warn("Cannot read chat history segments chatId={}, fallback to empty", chatId, ex);
+            return null;
+        }
+    }
 
-                JsonNode node = parseLine(line);
-                if (node == null || !node.isObject()) {
-                    lineIndex++;
-                    continue;
-                }
+    private void applyBytes(Cursor cursor, byte[] bytes) {
+        Charset charset = charsetSupplier.get();
+        int start = 0;
+        for (int i = 0; i < bytes.length; i++) {
+            if (bytes[i] != '\n') {
+                continue;
+            }
+            applyLine(cursor, decodeLine(bytes, start, i, charset));
+            start = i + 1;
+        }
+        int consumed = start;
+        if (start < bytes.length) {
+            // 末尾没有换行的行只有在是完整 JSON 时才消费，写入中的半行留待下次读取
+            String line = decodeLine(bytes, start, bytes.length, charset);
+            JsonNode node = StringUtils.hasText(line) ? parseLine(line) : null;
+            if (node != null) {
+                applyLine(cursor, node);
+                consumed = bytes.length;
+            }
+        }
+        cursor.offset += consumed;
+    }
 
-                String type = node.path("_type").asText("");
-                String runId = node.path("runId").asText(null);
-                if (!StringUtils.hasText(runId)) {
-                    lineIndex++;
-                    continue;
-                }
-                mergeFirstLineIndex(firstLineIndexByRunId, runId, lineIndex);
-
-                if ("query".equals(type)) {
-                    Map<String, Object> query = new LinkedHashMap<>();
-                    if (node.has("query") && node.get("query").isObject()) {
-                        query = objectMapper.convertValue(
-                                node.get("query"),
-                                objectMapper.getTypeFactory().constructMapType(LinkedHashMap.class, String.class, Object.class)
-                        );
-                    }
-                    queryByRunId.put(runId, query);
-                    queryHiddenByRunId.put(runId, node.path("hidden").asBoolean(false));
-                    collectReferencesFromQuery(query, references);
-                    stepsByRunId.computeIfAbsent(runId, key -> new ArrayList<>());
-                    eventsByRunId.computeIfAbsent(runId, key -> new ArrayList<>());
-                    artifactEntriesByRunId.computeIfAbsent(runId, key -> new ArrayList<>());
-                } else if ("step".equals(type)) {
-                    String chatId = node.path("chatId").asText(null);
-                    long updatedAt = node.path("updatedAt").asLong(0);
-                    String stage = node.path("_stage").asText(null);
-                    int seq = node.path("_seq").asInt(0);
-                    String taskId = node.has("taskId") && !node.get("taskId").isNull()
-                            ? node.path("taskId").asText(null)
-                            : null;
-
-                    ChatStorageTypes.SystemSnapshot system = null;
-                    if (node.has("system") && !node.get("system").isNull()) {
-                        system = objectMapper.treeToValue(node.get("system"), ChatStorageTypes.SystemSnapshot.class);
-                    }
+    private String decodeLine(byte[] bytes, int start, int end, Charset charset) {
+        int length = end - start;
+        if (length > 0 && bytes[end - 1] == '\r') {
+            length--;
+        }
+        return new String(bytes, start, length, charset);
+    }
 
-                    ChatStorageTypes.PlanState plan = null;
-                    if (node.has("plan") && !node.get("plan").isNull()) {
-                        plan = objectMapper.treeToValue(node.get("plan"), ChatStorageTypes.PlanState.class);
-                    }
+    private void applyLine(Cursor cursor, String line) {
+        if (!StringUtils.hasText(line)) {
+            cursor.lineIndex++;
+            return;
+        }
+        applyLine(cursor, parseLine(line));
+    }
 
-                    ChatStorageTypes.ArtifactState artifacts = null;
-                    if (node.has("artifacts") && !node.get("artifacts").isNull()) {
-                        artifacts = objectMapper.treeToValue(node.get("artifacts"), ChatStorageTypes.ArtifactState.class);
-                    }
+    private void applyLine(Cursor cursor, JsonNode node) {
+        int lineIndex = cursor.lineIndex++;
+        if (node == null || !node.isObject()) {
+            return;
+        }
+        try {
+            applyNode(cursor, node, lineIndex);
+        } catch (Exception ex) {
+            log.debug("Skip unreadable chat history line index={}", lineIndex, ex);
+        }
+    }
 
-                    List<ChatStorageTypes.StoredMessage> messages = new ArrayList<>();
-                    if (node.has("messages") && node.get("messages").isArray()) {
-                        for (JsonNode msgNode : node.get("messages")) {
-                            ChatStorageTypes.StoredMessage message = objectMapper.treeToValue(
-                                    msgNode,
-                                    ChatStorageTypes.StoredMessage.class
-                            );
-                            if (message != null) {
-                                messages.add(message);
-                            }
-                        }
-                    }
+    private void applyNode(Cursor cursor, JsonNode node, int lineIndex) throws Exception {
+        String type = node.path("_type").asText("");
+        String runId = node.path("runId").asText(null);
+        if (!StringUtils.hasText(runId)) {
+            return;
+        }
+        mergeFirstLineIndex(cursor.firstLineIndexByRunId, runId, lineIndex);
 
-                    stepsByRunId.computeIfAbsent(runId, key -> new ArrayList<>())
-                            .add(new StepEntry(chatId, stage, seq, taskId, updatedAt, system, plan, artifacts, messages, lineIndex));
-                    eventsByRunId.computeIfAbsent(runId, key -> new ArrayList<>());
-                    artifactEntriesByRunId.computeIfAbsent(runId, key -> new ArrayList<>());
-                    if (hasArtifactItems(artifacts)) {
-                        artifactEntriesByRunId.get(runId).add(ArtifactStateEntry.snapshot(updatedAt, lineIndex, artifacts));
-                    }
-                } else if ("event".equals(type)) {
-                    JsonNode eventNode = node.has("event") && node.get("event").isObject()
-                            ? node.get("event")
-                            : node;
-                    String eventType = textValue(eventNode.get("type"));
-                    if (!isPersistedEventType(eventType) && !"artifact.publish".equals(eventType)) {
-                        lineIndex++;
-                        continue;
-                    }
-                    long eventTimestamp = eventNode.path("timestamp").asLong(node.path("updatedAt").asLong(0));
-                    Map<String, Object> eventPayload = objectMapper.convertValue(
-                            eventNode,
-                            objectMapper.getTypeFactory().constructMapType(LinkedHashMap.class, String.class, Object.class)
+        if ("query".equals(type)) {
+            Map<String, Object> query = new LinkedHashMap<>();
+            if (node.has("query") && node.get("query").isObject()) {
+                query = objectMapper.convertValue(
+                        node.get("query"),
+                        objectMapper.getTypeFactory().constructMapType(LinkedHashMap.class, String.class, Object.class)
+                );
+            }
+            cursor.queryByRunId.put(runId, query);
+            cursor.queryHiddenByRunId.put(runId, node.path("hidden").asBoolean(false));
+            collectReferencesFromQuery(query, cursor.references);
+            cursor.touch(runId);
+        } else if ("step".equals(type)) {
+            String chatId = node.path("chatId").asText(null);
+            long updatedAt = node.path("updatedAt").asLong(0);
+            String stage = node.path("_stage").asText(null);
+            int seq = node.path("_seq").asInt(0);
+            String taskId = node.has("taskId") && !node.get("taskId").isNull()
+                    ? node.path("taskId").asText(null)
+                    : null;
+
+            ChatStorageTypes.SystemSnapshot system = null;
+            if (node.has("system") && !node.get("system").isNull()) {
+                system = objectMapper.treeToValue(node.get("system"), ChatStorageTypes.SystemSnapshot.class);
+            }
+
+            ChatStorageTypes.PlanState plan = null;
+            if (node.has("plan") && !node.get("plan").isNull()) {
+                plan = objectMapper.treeToValue(node.get("plan"), ChatStorageTypes.PlanState.class);
+            }
+
+            ChatStorageTypes.ArtifactState artifacts = null;
+            if (node.has("artifacts") && !node.get("artifacts").isNull()) {
+                artifacts = objectMapper.treeToValue(node.get("artifacts"), ChatStorageTypes.ArtifactState.class);
+            }
+
+            List<ChatStorageTypes.StoredMessage> messages = new ArrayList<>();
+            if (node.has("messages") && node.get("messages").isArray()) {
+                for (JsonNode msgNode : node.get("messages")) {
+                    ChatStorageTypes.StoredMessage message = objectMapper.treeToValue(
+                            msgNode,
+                            ChatStorageTypes.StoredMessage.class
                     );
-                    eventPayload.remove("seq");
-                    eventPayload.remove("type");
-                    eventPayload.remove("timestamp");
-                    if (!eventPayload.containsKey("chatId")) {
-                        String eventChatId = textValue(node.get("chatId"));
-                        if (StringUtils.hasText(eventChatId)) {
-                            eventPayload.put("chatId", eventChatId);
-                        }
-                    }
-                    eventPayload = normalizePersistedEventPayload(eventType, eventPayload, textValue(node.get("chatId")), runId);
-                    stepsByRunId.computeIfAbsent(runId, key -> new ArrayList<>());
-                    eventsByRunId.computeIfAbsent(runId, key -> new ArrayList<>());
-                    artifactEntriesByRunId.computeIfAbsent(runId, key -> new ArrayList<>());
-                    if ("artifact.publish".equals(eventType)) {
-                        ArtifactStateEntry artifactEntry = artifactEntryFromPublishPayload(eventTimestamp, lineIndex, eventPayload);
-                        if (artifactEntry != null) {
-                            artifactEntriesByRunId.get(runId).add(artifactEntry);
-                        }
-                    } else {
-                        eventsByRunId.get(runId).add(new PersistedChatEvent(eventType, eventTimestamp, eventPayload, lineIndex));
+                    if (message != null) {
+                        messages.add(message);
                     }
                 }
-                lineIndex++;
             }
 
-            List<ChatHistoryRunSnapshot> runs = new ArrayList<>();
-            for (Map.Entry<String, List<StepEntry>> entry : stepsByRunId.entrySet()) {
-                String runId = entry.getKey();
-                List<StepEntry> steps = entry.getValue();
-                List<PersistedChatEvent> explicitPersistedEvents = eventsByRunId.getOrDefault(runId, List.of());
-                List<ArtifactStateEntry> artifactEntries = new ArrayList<>(artifactEntriesByRunId.getOrDefault(runId, List.of()));
-                if (steps.isEmpty() && explicitPersistedEvents.isEmpty() && artifactEntries.isEmpty()) {
-                    continue;
+            cursor.touch(runId);
+            cursor.stepsByRunId.get(runId)
+                    .add(new StepEntry(chatId, stage, seq, taskId, updatedAt, system, plan, artifacts, messages, lineIndex));
+            if (hasArtifactItems(artifacts)) {
+                cursor.artifactEntriesByRunId.get(runId).add(ArtifactStateEntry.snapshot(updatedAt, lineIndex, artifacts));
+            }
+        } else if ("event".equals(type)) {
+            JsonNode eventNode = node.has("event") && node.get("event").isObject()
+                    ? node.get("event")
+                    : node;
+            String eventType = textValue(eventNode.get("type"));
+            if (!isPersistedEventType(eventType) && !"artifact.publish".equals(eventType)) {
+                return;
+            }
+            long eventTimestamp = eventNode.path("timestamp").asLong(node.path("updatedAt").asLong(0));
+            Map<String, Object> eventPayload = objectMapper.convertValue(
+                    eventNode,
+                    objectMapper.getTypeFactory().constructMapType(LinkedHashMap.class, String.class, Object.class)
+            );
+            eventPayload.remove("seq");
+            eventPayload.remove("type");
+            eventPayload.remove("timestamp");
+            if (!eventPayload.containsKey("chatId")) {
+                String eventChatId = textValue(node.get("chatId"));
+                if (StringUtils.hasText(eventChatId)) {
+                    eventPayload.put("chatId", eventChatId);
                 }
-                if (!steps.isEmpty()) {
-                    steps.sort(Comparator.comparingInt(StepEntry::seq));
+            }
+            eventPayload = normalizePersistedEventPayload(eventType, eventPayload, textValue(node.get("chatId")), runId);
+            cursor.touch(runId);
+            if ("artifact.publish".equals(eventType)) {
+                ArtifactStateEntry artifactEntry = artifactEntryFromPublishPayload(eventTimestamp, lineIndex, eventPayload);
+                if (artifactEntry != null) {
+                    cursor.artifactEntriesByRunId.get(runId).add(artifactEntry);
                 }
-                if (!artifactEntries.isEmpty()) {
-                    artifactEntries.sort(Comparator.comparingLong(ArtifactStateEntry::timestamp)
-                            .thenComparingInt(ArtifactStateEntry::lineIndex));
+            } else {
+                cursor.eventsByRunId.get(runId).add(new PersistedChatEvent(eventType, eventTimestamp, eventPayload, lineIndex));
+            }
+        }
+    }
+
+    private ChatHistoryRunSnapshot buildRun(Cursor cursor, String runId) {
+        List<StepEntry> steps = new ArrayList<>(cursor.stepsByRunId.getOrDefault(runId, List.of()));
+        List<PersistedChatEvent> explicitPersistedEvents = cursor.eventsByRunId.getOrDefault(runId, List.of());
+        List<ArtifactStateEntry> artifactEntries = new ArrayList<>(cursor.artifactEntriesByRunId.getOrDefault(runId, List.of()));
+        if (steps.isEmpty() && explicitPersistedEvents.isEmpty() && artifactEntries.isEmpty()) {
+            return null;
+        }
+        if (!steps.isEmpty()) {
+            steps.sort(Comparator.comparingInt(StepEntry::seq));
+        }
+        if (!artifactEntries.isEmpty()) {
+            artifactEntries.sort(Comparator.comparingLong(ArtifactStateEntry::timestamp)
+                    .thenComparingInt(ArtifactStateEntry::lineIndex));
+        }
+
+        Map<String, Object> query = cursor.queryByRunId.getOrDefault(runId, Map.of());
+        List<PersistedChatEvent> persistedEvents = List.copyOf(explicitPersistedEvents);
+        long updatedAt = Math.max(
+                steps.stream().mapToLong(StepEntry::updatedAt).max().orElse(0),
+                Math.max(
+                        persistedEvents.stream().mapToLong(PersistedChatEvent::timestamp).max().orElse(0),
+                        artifactEntries.stream().mapToLong(ArtifactStateEntry::timestamp).max().orElse(0)
+                )
+        );
+
+        List<ChatStorageTypes.StoredMessage> allMessages = new ArrayList<>();
+        ChatStorageTypes.SystemSnapshot firstSystem = null;
+        ChatStorageTypes.PlanState latestPlan = null;
+        for (StepEntry step : steps) {
+            if (firstSystem == null && step.system() != null) {
+                firstSystem = step.system();
+            }
+            if (step.plan() != null) {
+                latestPlan = step.plan();
+            }
+            allMessages.addAll(step.messages());
+        }
+        ChatStorageTypes.ArtifactState latestArtifacts = foldArtifactState(artifactEntries);
+
+        int firstLineIndex = cursor.firstLineIndexByRunId.getOrDefault(runId, cursor.lineIndex);
+        return new ChatHistoryRunSnapshot(
+                runId,
+                updatedAt,
+                cursor.queryHiddenByRunId.getOrDefault(runId, false),
+                query,
+                firstSystem,
+                latestPlan,
+                latestArtifacts,
+                List.copyOf(allMessages),
+                persistedEvents,
+                firstLineIndex
+        );
+    }
+
+    private static byte[] readRange(FileChannel channel, long from, long to) throws IOException {
+        int length = (int) Math.min(Integer.MAX_VALUE - 8, Math.max(0L, to - from));
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        long position = from;
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                break;
+            }
+            position += read;
+        }
+        return Arrays.copyOf(buffer.array(), buffer.position());
+    }
+
+    /**
+     * 已消费区间的首尾字节，用于识别文件被截断或重写（如按窗口裁剪历史）。
+     */
+    private static byte[] fingerprint(FileChannel channel, long offset) throws IOException {
+        byte[] head = readRange(channel, 0L, Math.min(offset, FINGERPRINT_BYTES));
+        byte[] tail = readRange(channel, Math.max(head.length, offset - FINGERPRINT_BYTES), offset);
+        byte[] fingerprint = Arrays.copyOf(head, head.length + tail.length);
+        System.arraycopy(tail, 0, fingerprint, head.length, tail.length);
+        return fingerprint;
+    }
+
+    /**
+     * 单个历史文件的增量解析状态：已消费的字节数、逐 run 累积的行数据与已构建的 run 快照。
+     */
+    final class Cursor {
+
+        private final LinkedHashMap<String, Map<String, Object>> queryByRunId = new LinkedHashMap<>();
+        private final LinkedHashMap<String, Boolean> queryHiddenByRunId = new LinkedHashMap<>();
+        private final LinkedHashMap<String, List<StepEntry>> stepsByRunId = new LinkedHashMap<>();
+        private final LinkedHashMap<String, List<PersistedChatEvent>> eventsByRunId = new LinkedHashMap<>();
+        private final LinkedHashMap<String, List<ArtifactStateEntry>> artifactEntriesByRunId = new LinkedHashMap<>();
+        private final LinkedHashMap<String, Integer> firstLineIndexByRunId = new LinkedHashMap<>();
+        private final LinkedHashMap<String, QueryRequest.Reference> references = new LinkedHashMap<>();
+        private final LinkedHashMap<String, ChatHistoryRunSnapshot> runs = new LinkedHashMap<>();
+        private final Set<String> dirtyRunIds = new LinkedHashSet<>();
+        private final Map<String, Long> runVersions = new HashMap<>();
+        private long origin;
+        private long offset;
+        private long modifiedAt;
+        private byte[] fingerprint = new byte[0];
+        private int lineIndex;
+        private long version;
+        private ChatHistoryReadResult result = new ChatHistoryReadResult(List.of(), new LinkedHashMap<>());
+
+        ChatHistoryReadResult result() {
+            return result;
+        }
+
+        /**
+         * 每次有新行被应用时递增，用于判断下游派生视图是否需要重建。
+         */
+        long version() {
+            return version;
+        }
+
+        /**
+         * 在 version 之后被重建（含被移除）的 run，供下游只刷新这些 run 的派生视图。
+         */
+        Set<String> runsChangedSince(long version) {
+            Set<String> changed = new LinkedHashSet<>();
+            for (Map.Entry<String, Long> entry : runVersions.entrySet()) {
+                if (entry.getValue() > version) {
+                    changed.add(entry.getKey());
                 }
+            }
+            return changed;
+        }
 
-                Map<String, Object> query = queryByRunId.getOrDefault(runId, Map.of());
-                List<PersistedChatEvent> persistedEvents = List.copyOf(explicitPersistedEvents);
-                long updatedAt = Math.max(
-                        steps.stream().mapToLong(StepEntry::updatedAt).max().orElse(0),
-                        Math.max(
-                                persistedEvents.stream().mapToLong(PersistedChatEvent::timestamp).max().orElse(0),
-                                artifactEntries.stream().mapToLong(ArtifactStateEntry::timestamp).max().orElse(0)
-                        )
-                );
+        ChatHistoryRunSnapshot run(String runId) {
+            return runs.get(runId);
+        }
 
-                List<ChatStorageTypes.StoredMessage> allMessages = new ArrayList<>();
-                ChatStorageTypes.SystemSnapshot firstSystem = null;
-                ChatStorageTypes.PlanState latestPlan = null;
-                for (StepEntry step : steps) {
-                    if (firstSystem == null && step.system() != null) {
-                        firstSystem = step.system();
-                    }
-                    if (step.plan() != null) {
-                        latestPlan = step.plan();
-                    }
-                    allMessages.addAll(step.messages());
+        private void touch(String runId) {
+            stepsByRunId.computeIfAbsent(runId, key -> new ArrayList<>());
+            eventsByRunId.computeIfAbsent(runId, key -> new ArrayList<>());
+            artifactEntriesByRunId.computeIfAbsent(runId, key -> new ArrayList<>());
+            dirtyRunIds.add(runId);
+        }
+
+        private void rebuild() {
+            if (dirtyRunIds.isEmpty() && version > 0) {
+                return;
+            }
+            for (String runId : dirtyRunIds) {
+                ChatHistoryRunSnapshot run = buildRun(this, runId);
+                if (run == null) {
+                    runs.remove(runId);
+                } else {
+                    runs.put(runId, run);
                 }
-                ChatStorageTypes.ArtifactState latestArtifacts = foldArtifactState(artifactEntries);
-
-                int firstLineIndex = firstLineIndexByRunId.getOrDefault(runId, lineIndex);
-                runs.add(new ChatHistoryRunSnapshot(
-                        runId,
-                        updatedAt,
-                        queryHiddenByRunId.getOrDefault(runId, false),
-                        query,
-                        firstSystem,
-                        latestPlan,
-                        latestArtifacts,
-                        List.copyOf(allMessages),
-                        persistedEvents,
-                        firstLineIndex
-                ));
+                runVersions.put(runId, version + 1);
             }
-            return new ChatHistoryReadResult(List.copyOf(runs), references);
-        } catch (Exception ex) {
-            log.warn("Cannot read chat history file={}, fallback to empty", historyPath, ex);
-            return new ChatHistoryReadResult(List.of(), new LinkedHashMap<>());
+            dirtyRunIds.clear();
+            List<ChatHistoryRunSnapshot> ordered = new ArrayList<>(runs.size());
+            for (String runId : stepsByRunId.keySet()) {
+                ChatHistoryRunSnapshot run = runs.get(runId);
+                if (run != null) {
+                    ordered.add(run);
+                }
+            }
+            result = new ChatHistoryReadResult(List.copyOf(ordered), new LinkedHashMap<>(references));
+            version++;
         }
     }
 
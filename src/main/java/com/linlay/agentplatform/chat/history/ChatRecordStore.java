@@ -2,21 +2,26 @@ package com.linlay.agentplatform.chat.history;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.RawValue;
 import com.linlay.agentplatform.chat.asset.ChatAssetCatalogService;
 import com.linlay.agentplatform.chat.event.ChatEventSnapshotBuilder;
 import com.linlay.agentplatform.chat.index.ChatIndexRecord;
 import com.linlay.agentplatform.chat.index.ChatIndexRepository;
 import com.linlay.agentplatform.chat.index.ChatNotFoundException;
+import com.linlay.agentplatform.chat.storage.ChatHistoryWriter;
 import com.linlay.agentplatform.chat.storage.ChatStorageTypes;
 import com.linlay.agentplatform.config.properties.ChatStorageProperties;
 import com.linlay.agentplatform.chat.storage.ChatStorageStore;
 import com.linlay.agentplatform.model.AgentDelta;
 import com.linlay.agentplatform.model.api.ChatDetailResponse;
+import com.linlay.agentplatform.model.api.ChatPageResponse;
 import com.linlay.agentplatform.model.api.ChatSummaryResponse;
 import com.linlay.agentplatform.model.api.QueryRequest;
 import com.linlay.agentplatform.tool.ToolRegistry;
 import com.linlay.agentplatform.util.StringHelpers;
+import com.linlay.agentplatform.util.StripedLocks;
 import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -29,13 +34,16 @@ import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * 会话记录读取与快照回放服务。
@@ -47,17 +55,20 @@ import java.util.Optional;
 public class ChatRecordStore {
 
     private static final Logger log = LoggerFactory.getLogger(ChatRecordStore.class);
+    private static final int CHAT_LOCK_STRIPES = 64;
 
     private final ObjectMapper objectMapper;
     private final ChatStorageProperties properties;
     private final ChatAssetCatalogService chatAssetCatalogService;
-    private final Object lock = new Object();
+    private final StripedLocks chatLocks = new StripedLocks(CHAT_LOCK_STRIPES);
     private final ChatIndexRepository chatIndexRepository;
     private final ChatHistoryFileReader chatHistoryFileReader;
     private final ChatEventSnapshotBuilder chatEventSnapshotBuilder;
+    private final ChatHistoryWriter chatHistoryWriter;
+    private final ChatSnapshotCache<CachedChatContent> snapshotCache;
 
-    public ChatRecordStore(ObjectMapper objectMapper, ChatStorageProperties properties) {
-        this(objectMapper, properties, null, null);
+    public ChatRecordStore(ObjectMapper objectMapper, ChatStorageProperties properties, ChatHistoryWriter chatHistoryWriter) {
+        this(objectMapper, properties, null, null, chatHistoryWriter);
     }
 
     @Autowired
@@ -65,18 +76,17 @@ public class ChatRecordStore {
             ObjectMapper objectMapper,
             ChatStorageProperties properties,
             ToolRegistry toolRegistry,
-            ChatAssetCatalogService chatAssetCatalogService
+            ChatAssetCatalogService chatAssetCatalogService,
+            ChatHistoryWriter chatHistoryWriter
     ) {
         this.objectMapper = objectMapper;
         this.properties = properties;
         this.chatAssetCatalogService = chatAssetCatalogService;
-        this.chatIndexRepository = new ChatIndexRepository(properties, lock);
+        this.chatIndexRepository = new ChatIndexRepository(properties);
         this.chatHistoryFileReader = new ChatHistoryFileReader(objectMapper, this::resolveCharset);
         this.chatEventSnapshotBuilder = new ChatEventSnapshotBuilder(objectMapper, toolRegistry);
-    }
-
-    public ChatRecordStore(ObjectMapper objectMapper, ChatStorageProperties properties, ToolRegistry toolRegistry) {
-        this(objectMapper, properties, toolRegistry, null);
+        this.chatHistoryWriter = chatHistoryWriter;
+        this.snapshotCache = new ChatSnapshotCache<>(properties.getSnapshotCacheSize());
     }
 
     @PostConstruct
@@ -84,6 +94,11 @@ public class ChatRecordStore {
         chatIndexRepository.initializeDatabase();
     }
 
+    @PreDestroy
+    public void close() {
+        chatIndexRepository.close();
+    }
+
     public ChatSummary ensureChat(String chatId, String firstAgentKey, String firstAgentName, String firstMessage) {
         return ensureChat(chatId, firstAgentKey, firstAgentName, null, firstMessage);
     }
@@ -101,26 +116,78 @@ public class ChatRecordStore {
             return;
         }
         JsonNode node = parseLine(eventData);
-        if (node == null || !node.isObject()) {
+        if (node == null || !node.isObject() || !isPersistedEventType(textValue(node.get("type")))) {
             return;
         }
+        appendEvent(chatId, toEventMap(node), eventData.getBytes(StandardCharsets.UTF_8), hidden);
+    }
 
-        String type = textValue(node.get("type"));
-        if (!isPersistedEventType(type)) {
+    /**
+     * 直接持久化类型化事件数据，调用方无需先序列化为 JSON 文本。
+     * 非持久化类型（如 content.delta）在类型判断后立即返回，不产生任何转换开销。
+     */
+    public void appendEvent(String chatId, Map<String, Object> eventData, boolean hidden) {
+        appendEvent(chatId, eventData, null, hidden);
+    }
+
+    /**
+     * 同上；json 为事件已经序列化好的 UTF-8 字节时原样写入历史行，不再重新序列化。
+     */
+    public void appendEvent(String chatId, Map<String, Object> eventData, byte[] json, boolean hidden) {
+        Map<String, Object> line = buildEventLine(chatId, eventData, json, hidden);
+        if (line == null) {
             return;
         }
-        String runId = textValue(node.get("runId"));
-        if (!StringUtils.hasText(runId)) {
+        chatLocks.run(chatId, () -> appendJsonLines(chatId, List.of(line)));
+    }
+
+    /**
+     * 批量持久化同一 chat 的事件，按入参顺序组提交为一次文件写入。
+     */
+    public void appendEvents(String chatId, List<PendingEvent> events) {
+        if (events == null || events.isEmpty()) {
+            return;
+        }
+        List<Map<String, Object>> lines = new ArrayList<>(events.size());
+        for (PendingEvent event : events) {
+            Map<String, Object> line = event == null ? null : buildEventLine(chatId, event.data(), event.json(), event.hidden());
+            if (line != null) {
+                lines.add(line);
+            }
+        }
+        if (lines.isEmpty()) {
             return;
         }
+        chatLocks.run(chatId, () -> appendJsonLines(chatId, lines));
+    }
 
-        long timestamp = node.path("timestamp").asLong(System.currentTimeMillis());
-        Map<String, Object> event = objectMapper.convertValue(
-                node,
-                objectMapper.getTypeFactory().constructMapType(LinkedHashMap.class, String.class, Object.class)
-        );
-        event = normalizePersistedEvent(type, event, chatId, runId);
-        Path historyPath = resolveHistoryPath(chatId);
+    ChatHistoryWriter historyWriter() {
+        return chatHistoryWriter;
+    }
+
+    public boolean shouldPersistEvent(String type) {
+        return isPersistedEventType(type);
+    }
+
+    private Map<String, Object> buildEventLine(String chatId, Map<String, Object> eventData, byte[] json, boolean hidden) {
+        if (!isValidChatId(chatId) || eventData == null || eventData.isEmpty()) {
+            return null;
+        }
+        String type = textValue(eventData.get("type"));
+        if (!isPersistedEventType(type)) {
+            return null;
+        }
+        String runId = textValue(eventData.get("runId"));
+        if (!StringUtils.hasText(runId)) {
+            return null;
+        }
+
+        Object rawTimestamp = eventData.get("timestamp");
+        long timestamp = rawTimestamp instanceof Number number ? number.longValue() : System.currentTimeMillis();
+        // artifact.publish 需要裁剪后再落盘；其它事件直接复用 SSE 出口已经序列化好的字节
+        Object event = "artifact.publish".equals(type)
+                ? normalizePersistedEvent(type, toEventMap(eventData), chatId, runId)
+                : json != null ? new RawValue(new String(json, StandardCharsets.UTF_8)) : eventData;
 
         Map<String, Object> line = new LinkedHashMap<>();
         line.put("_type", "event");
@@ -128,13 +195,10 @@ public class ChatRecordStore {
         line.put("runId", runId);
         line.put("updatedAt", timestamp > 0 ? timestamp : System.currentTimeMillis());
         line.put("event", event);
-        if (hidden || isHiddenRun(historyPath, runId)) {
+        if (hidden || chatHistoryWriter.isHiddenRun(chatId, runId)) {
             line.put("hidden", true);
         }
-
-        synchronized (lock) {
-            appendJsonLine(historyPath, line);
-        }
+        return line;
     }
 
     public Optional<String> findBoundAgentKey(String chatId) {
@@ -161,38 +225,74 @@ public class ChatRecordStore {
         return chatIndexRepository.listChats(lastRunId, agentKey);
     }
 
+    public ChatPageResponse listChatPage(String cursor, Long sinceVersion, Integer limit, String agentKey) {
+        return chatIndexRepository.listChatPage(cursor, sinceVersion, limit, agentKey);
+    }
+
     public MarkChatReadResult markChatRead(String chatId) {
         return chatIndexRepository.markChatRead(chatId);
     }
 
     public ChatDetailResponse loadChat(String chatId, boolean includeRawMessages) {
+        return loadChat(chatId, includeRawMessages, null, null);
+    }
+
+    /**
+     * 按 run 分页读取会话详情：只返回 {@code beforeRunId}（不含）之前最后 {@code lastRuns} 个 run 的事件与原始消息。
+     * 两个参数都为空时返回完整历史；{@code plan} / {@code artifact} / {@code references} 始终是整个 chat 的最新状态。
+     * <p>
+     * 解析结果按 chat 缓存，文件只追加时仅回放新增的行。
+     */
+    public ChatDetailResponse loadChat(String chatId, boolean includeRawMessages, Integer lastRuns, String beforeRunId) {
         requireValidChatId(chatId);
+        // 先落盘已入队的事件，运行中的 chat 也能读到截至此刻的全部事件；必须在获取 chatLock 之前
+        chatHistoryWriter.flushPending(chatId);
         Path historyPath = resolveHistoryPath(chatId);
-        synchronized (lock) {
+        ReentrantLock chatLock = chatLocks.lockFor(chatId);
+        chatLock.lock();
+        try {
             com.linlay.agentplatform.chat.index.ChatIndexRecord indexRecord = chatIndexRepository.loadChatRecord(chatId);
 
-            if (indexRecord == null && !Files.exists(historyPath)) {
+            if (indexRecord == null && !chatHistoryWriter.exists(chatId)) {
+                snapshotCache.remove(chatId);
                 throw new ChatNotFoundException(chatId);
             }
 
             ChatSummary summary = Optional.ofNullable(indexRecord)
                     .map(this::toChatSummary)
                     .orElseGet(() -> {
-                        long createdAt = resolveCreatedAt(historyPath);
+                        long createdAt = resolveCreatedAt(chatId, historyPath);
                         return new ChatSummary(chatId, chatId, null, null, createdAt, createdAt, "", "", 1, createdAt, false);
                     });
 
-            ParsedChatContent content = readChatContent(
+            ParsedChatContent content = loadChatContent(
                     historyPath,
                     summary.chatId,
                     summary.chatName,
                     summary.agentKey
             );
 
-            List<Map<String, Object>> events = List.copyOf(content.events);
-            List<Map<String, Object>> rawMessages = includeRawMessages
-                    ? List.copyOf(content.rawMessages)
-                    : null;
+            boolean pageRequested = (lastRuns != null && lastRuns > 0) || StringUtils.hasText(beforeRunId);
+            List<ChatHistoryRunSnapshot> runs = content.runs;
+            int end = runs.size();
+            if (StringUtils.hasText(beforeRunId)) {
+                end = indexOfRun(runs, beforeRunId.trim());
+                if (end < 0) {
+                    throw new IllegalArgumentException("beforeRunId not found: " + beforeRunId);
+                }
+            }
+            int start = lastRuns == null || lastRuns <= 0 ? 0 : Math.max(0, end - lastRuns);
+
+            List<Map<String, Object>> events;
+            List<Map<String, Object>> rawMessages;
+            if (start == 0 && end == runs.size()) {
+                events = content.events;
+                rawMessages = includeRawMessages ? content.rawMessages() : null;
+            } else {
+                List<ChatHistoryRunSnapshot> page = runs.subList(start, end);
+                events = chatEventSnapshotBuilder.buildSnapshotEvents(summary.chatId, summary.chatName, summary.agentKey, page);
+                rawMessages = includeRawMessages ? toRawMessages(page) : null;
+            }
             List<QueryRequest.Reference> references = mergeChatAssetReferences(
                     summary.chatId,
                     content.references.isEmpty() ? null : List.copyOf(content.references.values())
@@ -206,43 +306,169 @@ public class ChatRecordStore {
                     events,
                     content.plan,
                     content.artifact,
-                    references
+                    references,
+                    pageRequested ? start > 0 : null,
+                    pageRequested && start > 0 ? runs.get(start).runId() : null
             );
+        } finally {
+            chatLock.unlock();
         }
     }
 
-    private ParsedChatContent readChatContent(
+    /**
+     * 把 chat 的完整历史导出为单个 JSONL 文件，两种存储引擎都可用；导出前先落盘已入队的事件。
+     */
+    public void exportChat(String chatId, Path target) {
+        requireValidChatId(chatId);
+        chatHistoryWriter.flushPending(chatId);
+        if (!chatHistoryWriter.exists(chatId)) {
+            throw new ChatNotFoundException(chatId);
+        }
+        chatHistoryWriter.exportJsonl(chatId, target);
+    }
+
+    private ParsedChatContent loadChatContent(
             Path historyPath,
             String chatId,
             String chatName,
             String boundAgentKey
     ) {
-        ParsedChatContent content = new ParsedChatContent();
-        ChatHistoryReadResult history = chatHistoryFileReader.read(historyPath);
-        content.runs.addAll(history.runs());
-        content.references.putAll(history.references());
-
-        content.runs.sort(
-                Comparator.comparingLong(this::sortByUpdatedAt)
-                        .thenComparingInt(ChatHistoryRunSnapshot::lineIndex)
-        );
+        CachedChatContent cached = snapshotCache.get(chatId);
+        ChatHistoryFileReader.Cursor previous = cached == null ? null : cached.cursor();
+        ChatHistoryFileReader.Cursor cursor = chatHistoryWriter.isSegmented()
+                ? chatHistoryFileReader.read(chatHistoryWriter, chatId, previous)
+                : chatHistoryFileReader.read(historyPath, previous);
+        if (cursor == null) {
+            snapshotCache.remove(chatId);
+            return buildChatContent(new ChatHistoryReadResult(List.of(), new LinkedHashMap<>()), chatId, chatName, boundAgentKey);
+        }
+        boolean sameView = cached != null
+                && cached.cursor() == cursor
+                && java.util.Objects.equals(cached.chatName(), chatName)
+                && java.util.Objects.equals(cached.boundAgentKey(), boundAgentKey);
+        if (sameView && cached.version() == cursor.version()) {
+            return cached.content();
+        }
+        ParsedChatContent content = sameView
+                ? updateChatContent(cached.content(), cursor, cached.version(), chatId, chatName, boundAgentKey)
+                : buildChatContent(cursor.result(), chatId, chatName, boundAgentKey);
+        snapshotCache.put(chatId, new CachedChatContent(cursor, cursor.version(), chatName, boundAgentKey, content));
+        return content;
+    }
+
+    private ParsedChatContent buildChatContent(
+            ChatHistoryReadResult history,
+            String chatId,
+            String chatName,
+            String boundAgentKey
+    ) {
+        List<ChatHistoryRunSnapshot> runs = new ArrayList<>(history.runs());
+        runs.sort(runOrder());
+        return assembleChatContent(runs, Map.of(), history, chatId, chatName, boundAgentKey);
+    }
+
+    /**
+     * 游标只追加了新行时，沿用上次排好序的 run 与逐 run 构建好的事件，只重建游标标记为变化的 run。
+     */
+    private ParsedChatContent updateChatContent(
+            ParsedChatContent previous,
+            ChatHistoryFileReader.Cursor cursor,
+            long previousVersion,
+            String chatId,
+            String chatName,
+            String boundAgentKey
+    ) {
+        Set<String> changedRunIds = cursor.runsChangedSince(previousVersion);
+        List<ChatHistoryRunSnapshot> runs = new ArrayList<>(previous.runs.size() + changedRunIds.size());
+        for (ChatHistoryRunSnapshot run : previous.runs) {
+            if (!changedRunIds.contains(run.runId())) {
+                runs.add(run);
+            }
+        }
+        Comparator<ChatHistoryRunSnapshot> order = runOrder();
+        for (String runId : changedRunIds) {
+            ChatHistoryRunSnapshot run = cursor.run(runId);
+            if (run == null) {
+                continue;
+            }
+            int index = Collections.binarySearch(runs, run, order);
+            runs.add(index < 0 ? -index - 1 : index, run);
+        }
+        Map<String, RunEvents> reusable = new HashMap<>(previous.eventsByRunId);
+        reusable.keySet().removeAll(changedRunIds);
+        return assembleChatContent(runs, reusable, cursor.result(), chatId, chatName, boundAgentKey);
+    }
 
-        for (ChatHistoryRunSnapshot run : content.runs) {
+    private ParsedChatContent assembleChatContent(
+            List<ChatHistoryRunSnapshot> runs,
+            Map<String, RunEvents> reusable,
+            ChatHistoryReadResult history,
+            String chatId,
+            String chatName,
+            String boundAgentKey
+    ) {
+        ChatStorageTypes.PlanState plan = null;
+        ChatStorageTypes.ArtifactState artifact = null;
+        for (ChatHistoryRunSnapshot run : runs) {
             if (run.plan() != null) {
-                content.plan = run.plan();
+                plan = run.plan();
             }
             if (run.artifacts() != null) {
-                content.artifact = run.artifacts();
+                artifact = run.artifacts();
+            }
+        }
+        List<Map<String, Object>> events = new ArrayList<>();
+        Map<String, RunEvents> eventsByRunId = new HashMap<>();
+        for (ChatHistoryRunSnapshot run : runs) {
+            boolean firstRun = events.isEmpty();
+            long firstSeq = events.size() + 1L;
+            RunEvents cachedRun = reusable.get(run.runId());
+            List<Map<String, Object>> runEvents;
+            if (cachedRun == null || cachedRun.firstRun() != firstRun) {
+                runEvents = chatEventSnapshotBuilder.buildRunEvents(chatId, chatName, boundAgentKey, run, firstRun, firstSeq);
+            } else if (cachedRun.firstSeq() != firstSeq) {
+                runEvents = ChatEventSnapshotBuilder.resequence(cachedRun.events(), firstSeq);
+            } else {
+                runEvents = cachedRun.events();
             }
+            events.addAll(runEvents);
+            eventsByRunId.put(run.runId(), new RunEvents(firstRun, firstSeq, runEvents));
+        }
+        return new ParsedChatContent(
+                List.copyOf(runs),
+                List.copyOf(events),
+                eventsByRunId,
+                new LinkedHashMap<>(history.references()),
+                plan,
+                artifact
+        );
+    }
+
+    private Comparator<ChatHistoryRunSnapshot> runOrder() {
+        return Comparator.comparingLong(this::sortByUpdatedAt)
+                .thenComparingInt(ChatHistoryRunSnapshot::lineIndex);
+    }
+
+    private List<Map<String, Object>> toRawMessages(List<ChatHistoryRunSnapshot> runs) {
+        List<Map<String, Object>> rawMessages = new ArrayList<>();
+        for (ChatHistoryRunSnapshot run : runs) {
             for (ChatStorageTypes.StoredMessage message : run.messages()) {
                 Map<String, Object> raw = toRawMessageMap(run.runId(), message);
                 if (!raw.isEmpty()) {
-                    content.rawMessages.add(raw);
+                    rawMessages.add(raw);
                 }
             }
         }
-        content.events.addAll(chatEventSnapshotBuilder.buildSnapshotEvents(chatId, chatName, boundAgentKey, content.runs));
-        return content;
+        return List.copyOf(rawMessages);
+    }
+
+    private int indexOfRun(List<ChatHistoryRunSnapshot> runs, String runId) {
+        for (int i = 0; i < runs.size(); i++) {
+            if (runId.equals(runs.get(i).runId())) {
+                return i;
+            }
+        }
+        return -1;
     }
 
     private List<QueryRequest.Reference> mergeChatAssetReferences(String chatId, List<QueryRequest.Reference> references) {
@@ -326,7 +552,11 @@ public class ChatRecordStore {
         }
     }
 
-    private long resolveCreatedAt(Path historyPath) {
+    private long resolveCreatedAt(String chatId, Path historyPath) {
+        ChatHistoryWriter.HistorySpan span = chatHistoryWriter.span(chatId);
+        if (span != null) {
+            return span.modifiedAt();
+        }
         if (historyPath == null || !Files.exists(historyPath)) {
             return System.currentTimeMillis();
         }
@@ -356,6 +586,13 @@ public class ChatRecordStore {
         return baseDir.resolve(chatId + ".jsonl");
     }
 
+    private Map<String, Object> toEventMap(Object value) {
+        return objectMapper.convertValue(
+                value,
+                objectMapper.getTypeFactory().constructMapType(LinkedHashMap.class, String.class, Object.class)
+        );
+    }
+
     private JsonNode parseLine(String line) {
         try {
             return objectMapper.readTree(line);
@@ -364,23 +601,11 @@ public class ChatRecordStore {
         }
     }
 
-    private void appendJsonLine(Path path, Object value) {
-        if (path == null || value == null) {
-            return;
-        }
+    private void appendJsonLines(String chatId, List<?> lines) {
         try {
-            Files.createDirectories(path.getParent());
-            String line = objectMapper.writeValueAsString(value) + System.lineSeparator();
-            Files.writeString(
-                    path,
-                    line,
-                    resolveCharset(),
-                    StandardOpenOption.CREATE,
-                    StandardOpenOption.APPEND,
-                    StandardOpenOption.WRITE
-            );
+            chatHistoryWriter.appendAll(chatId, lines);
         } catch (Exception ex) {
-            log.warn("Cannot append chat event line path={}", path, ex);
+            log.warn("Cannot append chat event lines chatId={}, count={}", chatId, lines.size(), ex);
         }
     }
 
@@ -459,30 +684,6 @@ public class ChatRecordStore {
         return null;
     }
 
-    private boolean isHiddenRun(Path historyPath, String runId) {
-        if (historyPath == null || !Files.exists(historyPath) || !StringUtils.hasText(runId)) {
-            return false;
-        }
-        try {
-            for (String line : Files.readAllLines(historyPath, resolveCharset())) {
-                JsonNode parsed = parseLine(line);
-                if (parsed == null || !parsed.isObject()) {
-                    continue;
-                }
-                if (!"query".equals(textValue(parsed.get("_type")))) {
-                    continue;
-                }
-                if (!runId.equals(textValue(parsed.get("runId")))) {
-                    continue;
-                }
-                return parsed.path("hidden").asBoolean(false);
-            }
-        } catch (IOException ex) {
-            log.warn("Cannot inspect hidden flag for chat history path={}", historyPath, ex);
-        }
-        return false;
-    }
-
     private ChatSummary toChatSummary(com.linlay.agentplatform.chat.index.ChatIndexRecord record) {
         return toChatSummary(record, false);
     }
@@ -524,6 +725,13 @@ public class ChatRecordStore {
     ) {
     }
 
+    public record PendingEvent(Map<String, Object> data, byte[] json, boolean hidden) {
+
+        public PendingEvent(Map<String, Object> data, boolean hidden) {
+            this(data, null, hidden);
+        }
+    }
+
     public record RunCompletion(
             String chatId,
             String runId,
@@ -540,12 +748,51 @@ public class ChatRecordStore {
     ) {
     }
 
-    private static final class ParsedChatContent {
-        private final List<ChatHistoryRunSnapshot> runs = new ArrayList<>();
-        private final List<Map<String, Object>> rawMessages = new ArrayList<>();
-        private final List<Map<String, Object>> events = new ArrayList<>();
-        private final LinkedHashMap<String, QueryRequest.Reference> references = new LinkedHashMap<>();
-        private ChatStorageTypes.PlanState plan;
-        private ChatStorageTypes.ArtifactState artifact;
+    private final class ParsedChatContent {
+        private final List<ChatHistoryRunSnapshot> runs;
+        private final List<Map<String, Object>> events;
+        private final Map<String, RunEvents> eventsByRunId;
+        private final LinkedHashMap<String, QueryRequest.Reference> references;
+        private final ChatStorageTypes.PlanState plan;
+        private final ChatStorageTypes.ArtifactState artifact;
+        private List<Map<String, Object>> rawMessages;
+
+        private ParsedChatContent(
+                List<ChatHistoryRunSnapshot> runs,
+                List<Map<String, Object>> events,
+                Map<String, RunEvents> eventsByRunId,
+                LinkedHashMap<String, QueryRequest.Reference> references,
+                ChatStorageTypes.PlanState plan,
+                ChatStorageTypes.ArtifactState artifact
+        ) {
+            this.runs = runs;
+            this.events = events;
+            this.eventsByRunId = eventsByRunId;
+            this.references = references;
+            this.plan = plan;
+            this.artifact = artifact;
+        }
+
+        private List<Map<String, Object>> rawMessages() {
+            if (rawMessages == null) {
+                rawMessages = toRawMessages(runs);
+            }
+            return rawMessages;
+        }
+    }
+
+    /**
+     * 单个 run 已构建的快照事件及构建时的位置（是否首个 run、起始 seq）。
+     */
+    private record RunEvents(boolean firstRun, long firstSeq, List<Map<String, Object>> events) {
+    }
+
+    private record CachedChatContent(
+            ChatHistoryFileReader.Cursor cursor,
+            long version,
+            String chatName,
+            String boundAgentKey,
+            ParsedChatContent content
+    ) {
     }
 }
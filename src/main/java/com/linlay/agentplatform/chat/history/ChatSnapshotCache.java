@@ -0,0 +1,41 @@
+package com.linlay.agentplatform.chat.history;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 按 chatId 缓存已物化的会话快照，超过容量时淘汰最久未访问的 chat；容量不大于 0 时不缓存。
+ */
+final class ChatSnapshotCache<V> {
+
+    private final int capacity;
+    private final LinkedHashMap<String, V> entries;
+
+    ChatSnapshotCache(int capacity) {
+        this.capacity = capacity;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, V> eldest) {
+                return size() > ChatSnapshotCache.this.capacity;
+            }
+        };
+    }
+
+    synchronized V get(String chatId) {
+        return capacity <= 0 ? null : entries.get(chatId);
+    }
+
+    synchronized void put(String chatId, V value) {
+        if (capacity > 0) {
+            entries.put(chatId, value);
+        }
+    }
+
+    synchronized void remove(String chatId) {
+        entries.remove(chatId);
+    }
+
+    synchronized int size() {
+        return entries.size();
+    }
+}
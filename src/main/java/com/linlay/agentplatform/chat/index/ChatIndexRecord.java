@@ -11,4 +11,5 @@ public final class ChatIndexRecord {
     public String lastRunContent;
     public int readStatus;
     public Long readAt;
+    public long changeSeq;
 }
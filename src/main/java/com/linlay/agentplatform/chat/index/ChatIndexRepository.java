@@ -2,13 +2,16 @@ package com.linlay.agentplatform.chat.index;
 
 import com.linlay.agentplatform.chat.history.ChatRecordStore;
 import com.linlay.agentplatform.config.properties.ChatStorageProperties;
+import com.linlay.agentplatform.model.api.ChatPageResponse;
 import com.linlay.agentplatform.model.api.ChatSummaryResponse;
+import com.linlay.agentplatform.util.SqliteConnectionPool;
 import com.linlay.agentplatform.util.StringHelpers;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.util.StringUtils;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
@@ -20,6 +23,7 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.Base64;
 import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
@@ -38,8 +42,10 @@ public final class ChatIndexRepository {
             new ColumnSchema("LAST_RUN_ID_", "VARCHAR(12)", 1, null, 0),
             new ColumnSchema("LAST_RUN_CONTENT_", "TEXT", 1, "''", 0),
             new ColumnSchema("READ_STATUS_", "INTEGER", 1, "1", 0),
-            new ColumnSchema("READ_AT_", "INTEGER", 0, null, 0)
+            new ColumnSchema("READ_AT_", "INTEGER", 0, null, 0),
+            new ColumnSchema("CHANGE_SEQ_", "INTEGER", 1, "0", 0)
     );
+    private static final String CHANGE_SEQ_COLUMN = "CHANGE_SEQ_";
     private static final String CREATE_CHATS_SQL = """
             CREATE TABLE IF NOT EXISTS CHATS (
               CHAT_ID_ TEXT PRIMARY KEY,
@@ -51,24 +57,51 @@ public final class ChatIndexRepository {
               LAST_RUN_ID_ VARCHAR(12) NOT NULL,
               LAST_RUN_CONTENT_ TEXT NOT NULL DEFAULT '',
               READ_STATUS_ INTEGER NOT NULL DEFAULT 1,
-              READ_AT_ INTEGER
+              READ_AT_ INTEGER,
+              CHANGE_SEQ_ INTEGER NOT NULL DEFAULT 0
             )
             """;
     private static final String CREATE_CHATS_LAST_RUN_ID_INDEX_SQL = """
             CREATE INDEX IF NOT EXISTS IDX_CHATS_LAST_RUN_ID_
               ON CHATS(LAST_RUN_ID_)
             """;
+    private static final String CREATE_CHATS_CHANGE_SEQ_INDEX_SQL = """
+            CREATE INDEX IF NOT EXISTS IDX_CHATS_CHANGE_SEQ_
+              ON CHATS(CHANGE_SEQ_)
+            """;
+    private static final String CREATE_CHATS_UPDATED_AT_INDEX_SQL = """
+            CREATE INDEX IF NOT EXISTS IDX_CHATS_UPDATED_AT_CHAT_ID_
+              ON CHATS(UPDATED_AT_, CHAT_ID_)
+            """;
+    private static final String SELECT_CHAT_COLUMNS = """
+            SELECT CHAT_ID_, CHAT_NAME_, AGENT_KEY_, TEAM_ID_,
+                   CREATED_AT_, UPDATED_AT_, LAST_RUN_ID_, LAST_RUN_CONTENT_, READ_STATUS_, READ_AT_, CHANGE_SEQ_
+            FROM CHATS
+            """;
+    private static final int DEFAULT_PAGE_SIZE = 50;
+    private static final int DEFAULT_MAX_PAGE_SIZE = 200;
 
     private final ChatStorageProperties properties;
-    private final Object lock;
+    /**
+     * SQLite 索引自己的并发控制：WAL 下写事务独占写连接，读操作使用独立的读连接，与聊天历史文件的按 chat 锁相互独立。
+     */
+    private final SqliteConnectionPool connectionPool;
+    private final Object initLock = new Object();
 
-    public ChatIndexRepository(ChatStorageProperties properties, Object lock) {
+    public ChatIndexRepository(ChatStorageProperties properties) {
         this.properties = properties;
-        this.lock = lock;
+        ChatStorageProperties.IndexProperties index = properties.getIndex();
+        this.connectionPool = new SqliteConnectionPool(
+                resolveSqlitePath(),
+                index == null ? 4 : index.getReaderPoolSize(),
+                index == null ? 0L : index.getMmapSizeBytes(),
+                index == null ? 5000 : index.getBusyTimeoutMs()
+        );
     }
 
     public void initializeDatabase() {
-        synchronized (lock) {
+        synchronized (initLock) {
+            connectionPool.reset();
             Path dbPath = resolveSqlitePath();
             Path parent = dbPath.getParent();
             try {
@@ -90,6 +123,10 @@ public final class ChatIndexRepository {
         }
     }
 
+    public void close() {
+        connectionPool.close();
+    }
+
     public ChatRecordStore.ChatSummary ensureChat(
             String chatId,
             String firstAgentKey,
@@ -103,9 +140,8 @@ public final class ChatIndexRepository {
         validateChatBinding(normalizedAgentKey, normalizedTeamId);
         String normalizedChatName = deriveChatName(firstMessage);
         long now = System.currentTimeMillis();
-        synchronized (lock) {
-            try (Connection connection = openConnection()) {
-                connection.setAutoCommit(false);
+        try {
+            return connectionPool.write(connection -> {
                 ChatIndexRecord existing = findChatRecordById(connection, chatId);
                 boolean created = existing == null;
                 ChatIndexRecord record = created ? new ChatIndexRecord() : existing;
@@ -148,11 +184,10 @@ public final class ChatIndexRepository {
                     }
                 }
                 upsertChatIndex(connection, record);
-                connection.commit();
                 return toChatSummary(record, created);
-            } catch (SQLException ex) {
-                throw new IllegalStateException("Cannot upsert chat index for chatId=" + chatId, ex);
-            }
+            });
+        } catch (SQLException ex) {
+            throw new IllegalStateException("Cannot upsert chat index for chatId=" + chatId, ex);
         }
     }
 
@@ -160,17 +195,15 @@ public final class ChatIndexRepository {
         if (!isValidChatId(chatId)) {
             return Optional.empty();
         }
-        synchronized (lock) {
-            try (Connection connection = openConnection()) {
-                ChatIndexRecord record = findChatRecordById(connection, chatId);
-                if (record == null || StringUtils.hasText(record.teamId) || !StringUtils.hasText(record.agentKey)) {
-                    return Optional.empty();
-                }
-                return Optional.of(record.agentKey);
-            } catch (SQLException ex) {
-                log.warn("Cannot query bound agent for chatId={}", chatId, ex);
+        try {
+            ChatIndexRecord record = connectionPool.read(connection -> findChatRecordById(connection, chatId));
+            if (record == null || StringUtils.hasText(record.teamId) || !StringUtils.hasText(record.agentKey)) {
                 return Optional.empty();
             }
+            return Optional.of(record.agentKey);
+        } catch (SQLException ex) {
+            log.warn("Cannot query bound agent for chatId={}", chatId, ex);
+            return Optional.empty();
         }
     }
 
@@ -178,17 +211,15 @@ public final class ChatIndexRepository {
         if (!isValidChatId(chatId)) {
             return Optional.empty();
         }
-        synchronized (lock) {
-            try (Connection connection = openConnection()) {
-                ChatIndexRecord record = findChatRecordById(connection, chatId);
-                if (record == null || StringUtils.hasText(record.agentKey) || !StringUtils.hasText(record.teamId)) {
-                    return Optional.empty();
-                }
-                return Optional.of(record.teamId);
-            } catch (SQLException ex) {
-                log.warn("Cannot query bound team for chatId={}", chatId, ex);
+        try {
+            ChatIndexRecord record = connectionPool.read(connection -> findChatRecordById(connection, chatId));
+            if (record == null || StringUtils.hasText(record.agentKey) || !StringUtils.hasText(record.teamId)) {
                 return Optional.empty();
             }
+            return Optional.of(record.teamId);
+        } catch (SQLException ex) {
+            log.warn("Cannot query bound team for chatId={}", chatId, ex);
+            return Optional.empty();
         }
     }
 
@@ -196,13 +227,11 @@ public final class ChatIndexRepository {
         if (completion == null || !isValidChatId(completion.chatId()) || !StringUtils.hasText(completion.runId())) {
             return;
         }
-        synchronized (lock) {
-            try (Connection connection = openConnection()) {
-                connection.setAutoCommit(false);
+        try {
+            connectionPool.write(connection -> {
                 ChatIndexRecord record = findChatRecordById(connection, completion.chatId());
                 if (record == null) {
-                    connection.rollback();
-                    return;
+                    return null;
                 }
 
                 long eventAt = completion.completedAt() > 0 ? completion.completedAt() : System.currentTimeMillis();
@@ -221,21 +250,17 @@ public final class ChatIndexRepository {
                 record.readStatus = 0;
                 record.readAt = null;
                 upsertChatIndex(connection, record);
-                connection.commit();
-            } catch (Exception ex) {
-                log.warn("Cannot update run completion index chatId={}, runId={}", completion.chatId(), completion.runId(), ex);
-            }
+                return null;
+            });
+        } catch (Exception ex) {
+            log.warn("Cannot update run completion index chatId={}, runId={}", completion.chatId(), completion.runId(), ex);
         }
     }
 
     public List<ChatSummaryResponse> listChats(String lastRunId, String agentKey) {
         boolean incremental = StringUtils.hasText(lastRunId);
         boolean agentFiltered = StringUtils.hasText(agentKey);
-        StringBuilder sql = new StringBuilder("""
-                SELECT CHAT_ID_, CHAT_NAME_, AGENT_KEY_, TEAM_ID_,
-                       CREATED_AT_, UPDATED_AT_, LAST_RUN_ID_, LAST_RUN_CONTENT_, READ_STATUS_, READ_AT_
-                FROM CHATS
-                """);
+        StringBuilder sql = new StringBuilder(SELECT_CHAT_COLUMNS);
         List<String> params = new ArrayList<>();
         List<String> conditions = new ArrayList<>();
         if (incremental) {
@@ -254,74 +279,120 @@ public final class ChatIndexRepository {
         } else {
             sql.append(" ORDER BY LAST_RUN_ID_ DESC, UPDATED_AT_ DESC");
         }
-        synchronized (lock) {
-            try (Connection connection = openConnection();
-                 PreparedStatement statement = connection.prepareStatement(sql.toString())) {
+        String query = sql.toString();
+        try {
+            return connectionPool.read(connection -> {
+                PreparedStatement statement = connection.prepare(query);
                 for (int index = 0; index < params.size(); index++) {
                     statement.setString(index + 1, params.get(index));
                 }
                 try (ResultSet resultSet = statement.executeQuery()) {
                     List<ChatSummaryResponse> responses = new ArrayList<>();
                     while (resultSet.next()) {
-                        ChatIndexRecord record = mapChatIndexRecord(resultSet);
-                        ChatRecordStore.ChatSummary summary = toChatSummary(record, false);
-                        responses.add(new ChatSummaryResponse(
-                                summary.chatId(),
-                                summary.chatName(),
-                                summary.agentKey(),
-                                summary.teamId(),
-                                summary.createdAt(),
-                                summary.updatedAt(),
-                                summary.lastRunId(),
-                                summary.lastRunContent(),
-                                summary.readStatus(),
-                                summary.readAt()
-                        ));
+                        responses.add(toSummaryResponse(mapChatIndexRecord(resultSet)));
                     }
                     return List.copyOf(responses);
                 }
-            } catch (SQLException ex) {
-                throw new IllegalStateException("Cannot list chats from sqlite", ex);
-            }
+            });
+        } catch (SQLException ex) {
+            throw new IllegalStateException("Cannot list chats from sqlite", ex);
+        }
+    }
+
+    /**
+     * 分页读取会话列表。
+     * <p>
+     * 未传 sinceVersion 时按 (UPDATED_AT_ DESC, CHAT_ID_ DESC) 做 keyset 分页，cursor 为上一页最后一条的位置；
+     * 传入 sinceVersion 时只返回 CHANGE_SEQ_ 大于该值的会话，按变更顺序升序返回，客户端以响应中的 version 作为下次的 sinceVersion。
+     */
+    public ChatPageResponse listChatPage(String cursor, Long sinceVersion, Integer limit, String agentKey) {
+        int pageSize = normalizePageSize(limit);
+        boolean changesMode = sinceVersion != null;
+        PageCursor pageCursor = changesMode ? null : decodeCursor(cursor);
+        StringBuilder sql = new StringBuilder(SELECT_CHAT_COLUMNS);
+        List<Object> params = new ArrayList<>();
+        List<String> conditions = new ArrayList<>();
+        if (changesMode) {
+            conditions.add("CHANGE_SEQ_ > ?");
+            params.add(Math.max(0L, sinceVersion));
+        } else if (pageCursor != null) {
+            conditions.add("(UPDATED_AT_ < ? OR (UPDATED_AT_ = ? AND CHAT_ID_ < ?))");
+            params.add(pageCursor.updatedAt());
+            params.add(pageCursor.updatedAt());
+            params.add(pageCursor.chatId());
+        }
+        if (StringUtils.hasText(agentKey)) {
+            conditions.add("AGENT_KEY_ = ?");
+            params.add(agentKey.trim());
+        }
+        if (!conditions.isEmpty()) {
+            sql.append(" WHERE ").append(String.join(" AND ", conditions));
+        }
+        sql.append(changesMode ? " ORDER BY CHANGE_SEQ_ ASC" : " ORDER BY UPDATED_AT_ DESC, CHAT_ID_ DESC");
+        sql.append(" LIMIT ?");
+        params.add(pageSize + 1);
+        String query = sql.toString();
+        try {
+            return connectionPool.read(connection -> {
+                long currentVersion = readCurrentVersion(connection);
+                PreparedStatement statement = connection.prepare(query);
+                for (int index = 0; index < params.size(); index++) {
+                    statement.setObject(index + 1, params.get(index));
+                }
+                List<ChatIndexRecord> records = new ArrayList<>();
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    while (resultSet.next()) {
+                        records.add(mapChatIndexRecord(resultSet));
+                    }
+                }
+                boolean hasMore = records.size() > pageSize;
+                List<ChatIndexRecord> page = hasMore ? records.subList(0, pageSize) : records;
+                List<ChatSummaryResponse> chats = page.stream().map(this::toSummaryResponse).toList();
+                ChatIndexRecord last = page.isEmpty() ? null : page.get(page.size() - 1);
+                if (changesMode) {
+                    long version = hasMore
+                            ? last.changeSeq
+                            : Math.max(currentVersion, last == null ? 0L : last.changeSeq);
+                    return new ChatPageResponse(chats, null, hasMore, version);
+                }
+                String nextCursor = hasMore ? encodeCursor(last) : null;
+                return new ChatPageResponse(chats, nextCursor, hasMore, currentVersion);
+            });
+        } catch (SQLException ex) {
+            throw new IllegalStateException("Cannot list chat page from sqlite", ex);
         }
     }
 
     public ChatRecordStore.MarkChatReadResult markChatRead(String chatId) {
         requireValidChatId(chatId);
-        synchronized (lock) {
-            try (Connection connection = openConnection()) {
-                connection.setAutoCommit(false);
+        try {
+            return connectionPool.write(connection -> {
                 ChatIndexRecord record = findChatRecordById(connection, chatId);
                 if (record == null) {
-                    connection.rollback();
                     throw new ChatNotFoundException(chatId);
                 }
                 long readAt = System.currentTimeMillis();
-                try (PreparedStatement statement = connection.prepareStatement("""
+                PreparedStatement statement = connection.prepare("""
                         UPDATE CHATS
-                        SET READ_STATUS_ = 1, READ_AT_ = ?
+                        SET READ_STATUS_ = 1, READ_AT_ = ?, CHANGE_SEQ_ = (SELECT COALESCE(MAX(CHANGE_SEQ_), 0) + 1 FROM CHATS)
                         WHERE CHAT_ID_ = ?
-                        """)) {
-                    statement.setLong(1, readAt);
-                    statement.setString(2, chatId);
-                    statement.executeUpdate();
-                }
-                connection.commit();
+                        """);
+                statement.setLong(1, readAt);
+                statement.setString(2, chatId);
+                statement.executeUpdate();
                 return new ChatRecordStore.MarkChatReadResult(chatId, 1, readAt);
-            } catch (SQLException ex) {
-                throw new IllegalStateException("Cannot mark chat as read for " + chatId, ex);
-            }
+            });
+        } catch (SQLException ex) {
+            throw new IllegalStateException("Cannot mark chat as read for " + chatId, ex);
         }
     }
 
     public ChatIndexRecord loadChatRecord(String chatId) {
         requireValidChatId(chatId);
-        synchronized (lock) {
-            try (Connection connection = openConnection()) {
-                return findChatRecordById(connection, chatId);
-            } catch (SQLException ex) {
-                throw new IllegalStateException("Cannot query chat index for chatId=" + chatId, ex);
-            }
+        try {
+            return connectionPool.read(connection -> findChatRecordById(connection, chatId));
+        } catch (SQLException ex) {
+            throw new IllegalStateException("Cannot query chat index for chatId=" + chatId, ex);
         }
     }
 
@@ -329,20 +400,42 @@ public final class ChatIndexRepository {
         try (Connection connection = openConnection();
              Statement statement = connection.createStatement()) {
             statement.execute(CREATE_CHATS_SQL);
+            migrateChangeSeqColumn(connection);
             statement.execute(CREATE_CHATS_LAST_RUN_ID_INDEX_SQL);
             validateChatsSchema(connection);
+            statement.execute(CREATE_CHATS_CHANGE_SEQ_INDEX_SQL);
+            statement.execute(CREATE_CHATS_UPDATED_AT_INDEX_SQL);
         } catch (SQLException ex) {
             throw new IllegalStateException("Cannot initialize sqlite chat index", ex);
         }
     }
 
+    /**
+     * 旧库缺少变更序号列时原地补列，并按 rowid 回填，使已有会话在首次增量同步时都能被拉取。
+     */
+    private void migrateChangeSeqColumn(Connection connection) throws SQLException {
+        List<ColumnSchema> actualSchema = readTableSchema(connection, TABLE_CHATS);
+        boolean hasChangeSeq = actualSchema.stream().anyMatch(column -> CHANGE_SEQ_COLUMN.equals(column.name()));
+        if (hasChangeSeq || actualSchema.size() != CHATS_SCHEMA.size() - 1) {
+            return;
+        }
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("ALTER TABLE CHATS ADD COLUMN CHANGE_SEQ_ INTEGER NOT NULL DEFAULT 0");
+            statement.execute("UPDATE CHATS SET CHANGE_SEQ_ = rowid");
+        }
+        log.info("Added CHANGE_SEQ_ column to sqlite chat index. dbPath={}", resolveSqlitePath());
+    }
+
     private void rebuildIncompatibleSchema(Path dbPath, IncompatibleChatsSchemaException cause) {
+        checkpointWal(dbPath);
         Path backupPath = backupIncompatibleDb(dbPath);
         try (Connection connection = openConnection();
              Statement statement = connection.createStatement()) {
             statement.execute("DROP TABLE IF EXISTS CHATS");
             statement.execute(CREATE_CHATS_SQL);
             statement.execute(CREATE_CHATS_LAST_RUN_ID_INDEX_SQL);
+            statement.execute(CREATE_CHATS_CHANGE_SEQ_INDEX_SQL);
+            statement.execute(CREATE_CHATS_UPDATED_AT_INDEX_SQL);
             validateChatsSchema(connection);
             log.warn(
                     "Detected incompatible CHATS schema ({}), rebuilt sqlite chat index. dbPath={}, backupPath={}",
@@ -355,6 +448,15 @@ public final class ChatIndexRepository {
         }
     }
 
+    private void checkpointWal(Path dbPath) {
+        try (Connection connection = openConnection();
+             Statement statement = connection.createStatement()) {
+            statement.execute("PRAGMA wal_checkpoint(TRUNCATE)");
+        } catch (SQLException ex) {
+            log.warn("Cannot checkpoint sqlite chat index before backup. dbPath={}", dbPath, ex);
+        }
+    }
+
     private Path backupIncompatibleDb(Path dbPath) {
         Path backupPath = resolveBackupPath(dbPath);
         try {
@@ -404,21 +506,14 @@ public final class ChatIndexRepository {
         return path.toAbsolutePath().normalize();
     }
 
-    private ChatIndexRecord findChatRecordById(Connection connection, String chatId) throws SQLException {
-        try (PreparedStatement statement = connection.prepareStatement("""
-                SELECT CHAT_ID_, CHAT_NAME_, AGENT_KEY_,
-                       TEAM_ID_,
-                       CREATED_AT_, UPDATED_AT_, LAST_RUN_ID_, LAST_RUN_CONTENT_, READ_STATUS_, READ_AT_
-                FROM CHATS
-                WHERE CHAT_ID_ = ?
-                """)) {
-            statement.setString(1, chatId);
-            try (ResultSet resultSet = statement.executeQuery()) {
-                if (!resultSet.next()) {
-                    return null;
-                }
-                return mapChatIndexRecord(resultSet);
+    private ChatIndexRecord findChatRecordById(SqliteConnectionPool.PooledConnection connection, String chatId) throws SQLException {
+        PreparedStatement statement = connection.prepare(SELECT_CHAT_COLUMNS + " WHERE CHAT_ID_ = ?");
+        statement.setString(1, chatId);
+        try (ResultSet resultSet = statement.executeQuery()) {
+            if (!resultSet.next()) {
+                return null;
             }
+            return mapChatIndexRecord(resultSet);
         }
     }
 
@@ -434,16 +529,17 @@ public final class ChatIndexRepository {
         record.lastRunContent = nullable(resultSet.getString("LAST_RUN_CONTENT_"));
         record.readStatus = resultSet.getInt("READ_STATUS_");
         record.readAt = (Long) resultSet.getObject("READ_AT_");
+        record.changeSeq = resultSet.getLong("CHANGE_SEQ_");
         return record;
     }
 
-    private void upsertChatIndex(Connection connection, ChatIndexRecord record) throws SQLException {
+    private void upsertChatIndex(SqliteConnectionPool.PooledConnection connection, ChatIndexRecord record) throws SQLException {
         validateChatBinding(record.agentKey, record.teamId);
-        try (PreparedStatement statement = connection.prepareStatement("""
+        PreparedStatement statement = connection.prepare("""
                 INSERT INTO CHATS(
                     CHAT_ID_, CHAT_NAME_, AGENT_KEY_, TEAM_ID_,
-                    CREATED_AT_, UPDATED_AT_, LAST_RUN_ID_, LAST_RUN_CONTENT_, READ_STATUS_, READ_AT_
-                ) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
+                    CREATED_AT_, UPDATED_AT_, LAST_RUN_ID_, LAST_RUN_CONTENT_, READ_STATUS_, READ_AT_, CHANGE_SEQ_
+                ) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, (SELECT COALESCE(MAX(CHANGE_SEQ_), 0) + 1 FROM CHATS))
                 ON CONFLICT(CHAT_ID_) DO UPDATE SET
                     CHAT_NAME_ = excluded.CHAT_NAME_,
                     AGENT_KEY_ = excluded.AGENT_KEY_,
@@ -453,24 +549,24 @@ public final class ChatIndexRepository {
                     LAST_RUN_ID_ = excluded.LAST_RUN_ID_,
                     LAST_RUN_CONTENT_ = excluded.LAST_RUN_CONTENT_,
                     READ_STATUS_ = excluded.READ_STATUS_,
-                    READ_AT_ = excluded.READ_AT_
-                """)) {
-            statement.setString(1, record.chatId);
-            statement.setString(2, StringUtils.hasText(record.chatName) ? record.chatName : record.chatId);
-            statement.setString(3, StringUtils.hasText(record.agentKey) ? record.agentKey : "");
-            statement.setObject(4, nullable(record.teamId));
-            statement.setLong(5, record.createdAt > 0 ? record.createdAt : System.currentTimeMillis());
-            statement.setLong(6, record.updatedAt > 0 ? record.updatedAt : System.currentTimeMillis());
-            statement.setString(7, nullable(record.lastRunId) == null ? "" : record.lastRunId.trim());
-            statement.setString(8, StringUtils.hasText(record.lastRunContent) ? record.lastRunContent : "");
-            statement.setInt(9, record.readStatus == 0 ? 0 : 1);
-            if (record.readAt == null) {
-                statement.setObject(10, null);
-            } else {
-                statement.setLong(10, record.readAt);
-            }
-            statement.executeUpdate();
+                    READ_AT_ = excluded.READ_AT_,
+                    CHANGE_SEQ_ = excluded.CHANGE_SEQ_
+                """);
+        statement.setString(1, record.chatId);
+        statement.setString(2, StringUtils.hasText(record.chatName) ? record.chatName : record.chatId);
+        statement.setString(3, StringUtils.hasText(record.agentKey) ? record.agentKey : "");
+        statement.setObject(4, nullable(record.teamId));
+        statement.setLong(5, record.createdAt > 0 ? record.createdAt : System.currentTimeMillis());
+        statement.setLong(6, record.updatedAt > 0 ? record.updatedAt : System.currentTimeMillis());
+        statement.setString(7, nullable(record.lastRunId) == null ? "" : record.lastRunId.trim());
+        statement.setString(8, StringUtils.hasText(record.lastRunContent) ? record.lastRunContent : "");
+        statement.setInt(9, record.readStatus == 0 ? 0 : 1);
+        if (record.readAt == null) {
+            statement.setObject(10, null);
+        } else {
+            statement.setLong(10, record.readAt);
         }
+        statement.executeUpdate();
     }
 
     private void validateChatBinding(String agentKey, String teamId) {
@@ -586,6 +682,61 @@ public final class ChatIndexRepository {
         );
     }
 
+    private ChatSummaryResponse toSummaryResponse(ChatIndexRecord record) {
+        ChatRecordStore.ChatSummary summary = toChatSummary(record, false);
+        return new ChatSummaryResponse(
+                summary.chatId(),
+                summary.chatName(),
+                summary.agentKey(),
+                summary.teamId(),
+                summary.createdAt(),
+                summary.updatedAt(),
+                summary.lastRunId(),
+                summary.lastRunContent(),
+                summary.readStatus(),
+                summary.readAt()
+        );
+    }
+
+    private long readCurrentVersion(SqliteConnectionPool.PooledConnection connection) throws SQLException {
+        PreparedStatement statement = connection.prepare("SELECT COALESCE(MAX(CHANGE_SEQ_), 0) FROM CHATS");
+        try (ResultSet resultSet = statement.executeQuery()) {
+            return resultSet.next() ? resultSet.getLong(1) : 0L;
+        }
+    }
+
+    private int normalizePageSize(Integer requested) {
+        ChatStorageProperties.IndexProperties index = properties.getIndex();
+        int defaultSize = index == null || index.getDefaultPageSize() <= 0 ? DEFAULT_PAGE_SIZE : index.getDefaultPageSize();
+        int maxSize = index == null || index.getMaxPageSize() <= 0 ? DEFAULT_MAX_PAGE_SIZE : index.getMaxPageSize();
+        int size = requested == null || requested <= 0 ? defaultSize : requested;
+        return Math.min(size, maxSize);
+    }
+
+    static String encodeCursor(ChatIndexRecord record) {
+        String raw = record.updatedAt + ":" + record.chatId;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    static PageCursor decodeCursor(String cursor) {
+        if (!StringUtils.hasText(cursor)) {
+            return null;
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor.trim()), StandardCharsets.UTF_8);
+            int separator = raw.indexOf(':');
+            if (separator <= 0 || separator == raw.length() - 1) {
+                throw new IllegalArgumentException("invalid chats cursor");
+            }
+            return new PageCursor(Long.parseLong(raw.substring(0, separator)), raw.substring(separator + 1));
+        } catch (IllegalArgumentException ex) {
+            throw new IllegalArgumentException("invalid chats cursor", ex);
+        }
+    }
+
+    record PageCursor(long updatedAt, String chatId) {
+    }
+
     private String nullable(String value) {
         return StringHelpers.nullable(value);
     }
@@ -0,0 +1,1045 @@
+package com.linlay.agentplatform.chat.storage;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.linlay.agentplatform.config.properties.ChatStorageProperties;
+import com.linlay.agentplatform.util.StringHelpers;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+import java.util.stream.Stream;
+
+import static com.linlay.agentplatform.util.StringHelpers.hasText;
+
+/**
+ * 聊天历史的追加写入器与运行索引。
+ * <p>
+ * 每个 chat 保持一个常驻的追加通道，并维护一份轻量索引：run 首行偏移、隐藏 run、每个 run 的文本块序号上限、
+ * 最近一次 plan/system/artifact 所在行的字节偏移。追加写入时直接用写入对象更新索引，不再回读文件；
+ * 索引记录已覆盖的字节数，若文件被其它写入器追加则只增量扫描新增尾部，被截断或重写时整体重建。
+ * 打开的 chat 超过上限时按 LRU 关闭最久未访问的通道并丢弃其索引。
+ * <p>
+ * {@code chat.storage.engine=segmented} 时历史写入 {@link SegmentedChatLog} 的滚动段，
+ * 已封存段的索引落盘为稀疏索引文件，打开 chat 时直接合并，只扫描活跃段；
+ * 旧的 {@code <chatId>.jsonl} 在首次访问时迁移，{@link #exportJsonl} 可随时导出为单个 JSONL。
+ */
+@Component
+public class ChatHistoryWriter {
+
+    private static final Logger log = LoggerFactory.getLogger(ChatHistoryWriter.class);
+    private static final int DEFAULT_MAX_OPEN_HISTORIES = 256;
+    private static final long DEFAULT_SEGMENT_MAX_BYTES = 4L * 1024 * 1024;
+    private static final String EVENT_LINE_MARKER = "\"_type\":\"event\"";
+    static final String ENGINE_SEGMENTED = "segmented";
+    static final String SEGMENTS_DIR_SUFFIX = ".segments";
+    static final String MIGRATED_SUFFIX = ".migrated";
+
+    private final ObjectMapper objectMapper;
+    private final ChatStorageProperties properties;
+    private final LinkedHashMap<String, ChatHistoryEntry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private volatile WriteSequencer writeSequencer;
+    private final List<Consumer<String>> truncationListeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * 当前历史占用的逻辑字节区间与最后修改时间，供增量回放判断是否有新行或历史被裁剪。
+     */
+    public record HistorySpan(long startOffset, long endOffset, long modifiedAt) {
+    }
+
+    /**
+     * 按索引定位一行的结果：indexed 为 true 表示索引已追平到文件末尾，line 为 null 即历史中确实没有这类行；
+     * indexed 为 false 表示索引追平或读取失败，调用方需要自行扫描历史。
+     */
+    record IndexedLine(boolean indexed, String line) {
+
+        static final IndexedLine UNAVAILABLE = new IndexedLine(false, null);
+        static final IndexedLine ABSENT = new IndexedLine(true, null);
+    }
+
+    /**
+     * chat 级写入排序器：异步事件队列注册后，同步写入与读取都在其中执行，先落盘该 chat 已入队的事件。
+     */
+    public interface WriteSequencer {
+        <T> T sequence(String chatId, Supplier<T> action);
+    }
+
+    public ChatHistoryWriter(ObjectMapper objectMapper, ChatStorageProperties properties) {
+        this.objectMapper = objectMapper;
+        this.properties = properties;
+    }
+
+    public void setWriteSequencer(WriteSequencer writeSequencer) {
+        this.writeSequencer = writeSequencer;
+    }
+
+    /**
+     * 注册历史被裁剪或重写时的回调（参数为 chatId），供按历史内容累积的缓存整体失效；
+     * 单纯追加不触发。回调在该 chat 的锁内执行，必须足够轻量。
+     */
+    public void onTruncate(Consumer<String> listener) {
+        if (listener != null) {
+            truncationListeners.add(listener);
+        }
+    }
+
+    /**
+     * 在 chat 的写入顺序内执行 action：未注册排序器时直接执行。
+     * 调用方不得持有该 chat 的其它锁，否则可能与后台落盘互相等待。
+     */
+    public <T> T sequenced(String chatId, Supplier<T> action) {
+        WriteSequencer sequencer = writeSequencer;
+        if (sequencer == null || !hasText(chatId)) {
+            return action.get();
+        }
+        return sequencer.sequence(chatId, action);
+    }
+
+    /**
+     * 读取前调用：把该 chat 已入队但未落盘的事件先写入历史。
+     */
+    public void flushPending(String chatId) {
+        sequenced(chatId, () -> null);
+    }
+
+    /**
+     * 分段引擎下启动时把目录中残留的 JSONL 历史全部迁移为分段格式。
+     */
+    @PostConstruct
+    public void migrateOnStartup() {
+        if (!isSegmented()) {
+            return;
+        }
+        int migrated = migrateAll();
+        if (migrated > 0) {
+            log.info("Migrated {} chat histories from JSONL to segmented storage", migrated);
+        }
+    }
+
+    public boolean isSegmented() {
+        String engine = properties.getEngine();
+        return engine != null && ENGINE_SEGMENTED.equalsIgnoreCase(engine.trim());
+    }
+
+    /**
+     * 追加一行 JSON 到 chat 历史文件末尾；写入失败时抛出 IllegalStateException。
+     */
+    public void append(String chatId, Object line) {
+        if (line == null) {
+            return;
+        }
+        appendAll(chatId, List.of(line));
+    }
+
+    /**
+     * 组提交：多行 JSON 合并为一次通道写入，索引按每行的实际偏移更新。
+     */
+    public void appendAll(String chatId, List<?> lines) {
+        if (!hasText(chatId) || lines == null || lines.isEmpty()) {
+            return;
+        }
+        List<Object> written = new ArrayList<>(lines.size());
+        List<Integer> lengths = new ArrayList<>(lines.size());
+        ByteArrayOutputStream batch = new ByteArrayOutputStream();
+        for (Object line : lines) {
+            if (line == null) {
+                continue;
+            }
+            byte[] bytes = encodeLine(chatId, line);
+            batch.writeBytes(bytes);
+            written.add(line);
+            lengths.add(bytes.length);
+        }
+        if (written.isEmpty()) {
+            return;
+        }
+        byte[] bytes = batch.toByteArray();
+        withEntry(chatId, entry -> {
+            try {
+                catchUp(entry);
+                long offset;
+                if (entry.segments != null) {
+                    offset = entry.segments.append(bytes);
+                } else {
+                    FileChannel channel = entry.openChannel();
+                    offset = channel.size();
+                    ByteBuffer buffer = ByteBuffer.wrap(bytes);
+                    while (buffer.hasRemaining()) {
+                        channel.write(buffer);
+                    }
+                }
+                if (entry.indexedBytes == offset) {
+                    long lineOffset = offset;
+                    for (int i = 0; i < written.size(); i++) {
+                        indexLine(entry.index, written.get(i), lineOffset);
+                        lineOffset += lengths.get(i);
+                    }
+                    entry.indexedBytes = offset + bytes.length;
+                }
+                return null;
+            } catch (IOException ex) {
+                entry.closeChannel();
+                throw new IllegalStateException("Cannot append chat history line for chatId=" + chatId, ex);
+            }
+        });
+    }
+
+    public boolean isHiddenRun(String chatId, String runId) {
+        if (!hasText(chatId) || !hasText(runId)) {
+            return false;
+        }
+        return withEntry(chatId, entry -> {
+            catchUpQuietly(entry);
+            return Boolean.TRUE.equals(entry.index.queryHiddenByRunId.get(runId));
+        });
+    }
+
+    TextBlockSequenceState nextTextBlockSequenceState(String chatId, String runId) {
+        return withEntry(chatId, entry -> {
+            catchUpQuietly(entry);
+            int[] sequences = entry.index.textBlockSequencesByRunId.get(runId);
+            int maxReasoningSeq = sequences == null ? 0 : sequences[0];
+            int maxContentSeq = sequences == null ? 0 : sequences[1];
+            return new TextBlockSequenceState(maxReasoningSeq + 1, maxContentSeq + 1);
+        });
+    }
+
+    IndexedLine readLatestPlanLine(String chatId) {
+        return readIndexedLine(chatId, index -> index.latestPlanOffset);
+    }
+
+    IndexedLine readLatestSystemLine(String chatId) {
+        return readIndexedLine(chatId, index -> index.latestSystemOffset);
+    }
+
+    IndexedLine readLatestArtifactLine(String chatId) {
+        return readIndexedLine(chatId, index -> index.latestArtifactOffset);
+    }
+
+    /**
+     * chat 是否已有历史；分段引擎下会顺带迁移尚未转换的 JSONL。
+     */
+    public boolean exists(String chatId) {
+        if (!isValidChatId(chatId)) {
+            return false;
+        }
+        if (!isSegmented()) {
+            return Files.exists(resolvePath(chatId));
+        }
+        return withEntry(chatId, entry -> {
+            catchUpQuietly(entry);
+            return !entry.segments.isEmpty();
+        });
+    }
+
+    /**
+     * 分段引擎下的当前逻辑区间；JSONL 引擎或历史不存在时返回 null。
+     */
+    public HistorySpan span(String chatId) {
+        if (!isSegmented() || !isValidChatId(chatId)) {
+            return null;
+        }
+        return withEntry(chatId, entry -> {
+            try {
+                catchUp(entry);
+                if (entry.segments.isEmpty()) {
+                    return null;
+                }
+                return new HistorySpan(entry.segments.startOffset(), entry.segments.endOffset(), entry.segments.lastModified());
+            } catch (IOException ex) {
+                log.warn("Cannot read chat history segments chatId={}", chatId, ex);
+                return null;
+            }
+        });
+    }
+
+    /**
+     * 历史的当前版本：任何追加、裁剪或迁移都会改变返回值，供只关心“历史是否变化”的缓存做失效判断；历史不存在时返回 null。
+     */
+    public HistorySpan version(String chatId) {
+        if (isSegmented() || !isValidChatId(chatId)) {
+            return span(chatId);
+        }
+        Path path = resolvePath(chatId);
+        try {
+            return Files.exists(path)
+                    ? new HistorySpan(0L, Files.size(path), Files.getLastModifiedTime(path).toMillis())
+                    : null;
+        } catch (IOException ex) {
+            return null;
+        }
+    }
+
+    /**
+     * 按逻辑偏移读取分段历史的字节区间 [from, to)。
+     */
+    public byte[] read(String chatId, long from, long to) {
+        if (!isSegmented() || !isValidChatId(chatId) || to <= from) {
+            return new byte[0];
+        }
+        return withEntry(chatId, entry -> {
+            try {
+                entry.segments.refresh();
+                return entry.segments.read(from, to);
+            } catch (IOException ex) {
+                throw new IllegalStateException("Cannot read chat history segments for chatId=" + chatId, ex);
+            }
+        });
+    }
+
+    /**
+     * 分段引擎下读取全部历史行；JSONL 引擎返回 null，由调用方直接读文件。
+     */
+    List<String> readAllLines(String chatId) {
+        if (!isSegmented() || !isValidChatId(chatId)) {
+            return null;
+        }
+        return withEntry(chatId, entry -> {
+            try {
+                catchUp(entry);
+                return splitLines(entry.segments.read(entry.segments.startOffset(), entry.segments.endOffset()));
+            } catch (IOException ex) {
+                log.warn("Cannot read chat history segments chatId={}", chatId, ex);
+                return List.of();
+            }
+        });
+    }
+
+    /**
+     * 分段引擎下只读取最后 runs 个含 step 的 run：按索引定位其中最早的 run 首行，从该偏移读到末尾。
+     * JSONL 引擎返回 null。
+     */
+    List<String> readRecentRunLines(String chatId, int runs) {
+        if (!isSegmented() || !isValidChatId(chatId)) {
+            return null;
+        }
+        return withEntry(chatId, entry -> {
+            try {
+                catchUp(entry);
+                List<String> stepRunIds = new ArrayList<>(entry.index.stepRunIds);
+                if (stepRunIds.isEmpty()) {
+                    return List.of();
+                }
+                long from = Long.MAX_VALUE;
+                for (String runId : stepRunIds.subList(Math.max(0, stepRunIds.size() - runs), stepRunIds.size())) {
+                    from = Math.min(from, entry.index.runOffsets.getOrDefault(runId, entry.segments.startOffset()));
+                }
+                from = Math.max(from, entry.segments.startOffset());
+                return splitLines(entry.segments.read(from, entry.segments.endOffset()));
+            } catch (IOException ex) {
+                log.warn("Cannot read chat history segments chatId={}", chatId, ex);
+                return List.of();
+            }
+        });
+    }
+
+    /**
+     * 分段引擎下按 run 窗口裁剪：只删除完全早于窗口内最早 run 的已封存段，不重写任何文件。
+     * 返回删除的段数。
+     */
+    int trimSegments(String chatId, int keepRuns) {
+        if (!isSegmented() || !isValidChatId(chatId)) {
+            return 0;
+        }
+        return withEntry(chatId, entry -> {
+            try {
+                catchUp(entry);
+                List<Long> runOffsets = new ArrayList<>(entry.index.runOffsets.values());
+                if (runOffsets.size() <= keepRuns) {
+                    return 0;
+                }
+                long keepFrom = Long.MAX_VALUE;
+                for (Long offset : runOffsets.subList(runOffsets.size() - keepRuns, runOffsets.size())) {
+                    keepFrom = Math.min(keepFrom, offset);
+                }
+                int dropped = entry.segments.dropBefore(keepFrom);
+                if (dropped > 0) {
+                    entry.resetIndex();
+                    notifyTruncated(chatId);
+                }
+                return dropped;
+            } catch (IOException ex) {
+                throw new IllegalStateException("Cannot trim chat history segments for chatId=" + chatId, ex);
+            }
+        });
+    }
+
+    /**
+     * JSONL 引擎下在 chat 的写锁内整体重写历史文件：rewriter 返回 null 表示无需改动。
+     * 先写临时文件再原子替换，随后关闭旧通道并丢弃索引，期间该 chat 的追加都会排在重写之后。
+     */
+    boolean rewriteLines(String chatId, UnaryOperator<List<String>> rewriter) {
+        if (isSegmented() || !isValidChatId(chatId)) {
+            return false;
+        }
+        return withEntry(chatId, entry -> {
+            if (!Files.exists(entry.path)) {
+                return false;
+            }
+            try {
+                List<String> lines = Files.readAllLines(entry.path, resolveCharset()).stream()
+                        .filter(StringUtils::hasText)
+                        .toList();
+                List<String> rewritten = lines.isEmpty() ? null : rewriter.apply(lines);
+                if (rewritten == null) {
+                    return false;
+                }
+                String content = rewritten.isEmpty() ? "" : String.join(System.lineSeparator(), rewritten) + System.lineSeparator();
+                Path temp = Files.createTempFile(entry.path.toAbsolutePath().getParent(), chatId, ".rewrite.tmp");
+                try {
+                    Files.writeString(temp, content, resolveCharset(), StandardOpenOption.TRUNCATE_EXISTING);
+                    Files.move(temp, entry.path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                } finally {
+                    Files.deleteIfExists(temp);
+                }
+                entry.closeChannel();
+                entry.resetIndex();
+                notifyTruncated(chatId);
+                return true;
+            } catch (IOException ex) {
+                throw new IllegalStateException("Cannot rewrite chat history for chatId=" + chatId, ex);
+            }
+        });
+    }
+
+    /**
+     * 把 chat 历史导出为单个 JSONL 文件，两种引擎都可用，供外部工具读取。
+     */
+    public void exportJsonl(String chatId, Path target) {
+        if (!isValidChatId(chatId) || target == null) {
+            return;
+        }
+        withEntry(chatId, entry -> {
+            try {
+                Path parent = target.toAbsolutePath().getParent();
+                Files.createDirectories(parent);
+                Path temp = Files.createTempFile(parent, chatId, ".export.tmp");
+                try {
+                    try (OutputStream out = Files.newOutputStream(temp, StandardOpenOption.TRUNCATE_EXISTING)) {
+                        if (entry.segments != null) {
+                            catchUp(entry);
+                            entry.segments.exportTo(out);
+                        } else if (Files.exists(entry.path)) {
+                            Files.copy(entry.path, out);
+                        }
+                    }
+                    Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                } finally {
+                    Files.deleteIfExists(temp);
+                }
+                return null;
+            } catch (IOException ex) {
+                throw new IllegalStateException("Cannot export chat history for chatId=" + chatId, ex);
+            }
+        });
+    }
+
+    /**
+     * 迁移目录中所有 {@code <chatId>.jsonl}，返回成功迁移的 chat 数；JSONL 引擎下不做任何事。
+     */
+    public int migrateAll() {
+        if (!isSegmented()) {
+            return 0;
+        }
+        Path dir = resolveDir();
+        if (!Files.isDirectory(dir)) {
+            return 0;
+        }
+        List<String> chatIds;
+        try (Stream<Path> files = Files.list(dir)) {
+            chatIds = files.map(path -> path.getFileName().toString())
+                    .filter(name -> name.endsWith(".jsonl"))
+                    .map(name -> name.substring(0, name.length() - ".jsonl".length()))
+                    .filter(this::isValidChatId)
+                    .toList();
+        } catch (IOException ex) {
+            log.warn("Cannot list chat histories for migration dir={}", dir, ex);
+            return 0;
+        }
+        int migrated = 0;
+        for (String chatId : chatIds) {
+            if (exists(chatId) && !Files.exists(resolvePath(chatId))) {
+                migrated++;
+            }
+        }
+        return migrated;
+    }
+
+    /**
+     * 文件被整体重写（例如按窗口裁剪）后调用，关闭通道并丢弃索引，下次访问时重建。
+     */
+    public void invalidate(String chatId) {
+        ChatHistoryEntry removed;
+        synchronized (entries) {
+            removed = entries.remove(chatId);
+        }
+        if (removed != null) {
+            synchronized (removed) {
+                removed.close();
+            }
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        List<ChatHistoryEntry> drained;
+        synchronized (entries) {
+            drained = new ArrayList<>(entries.values());
+            entries.clear();
+        }
+        for (ChatHistoryEntry entry : drained) {
+            synchronized (entry) {
+                entry.close();
+            }
+        }
+    }
+
+    int openHistoryCount() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    private IndexedLine readIndexedLine(String chatId, Function<HistoryIndex, Long> offsetSelector) {
+        if (!hasText(chatId)) {
+            return IndexedLine.ABSENT;
+        }
+        return withEntry(chatId, entry -> {
+            try {
+                catchUp(entry);
+            } catch (IOException ex) {
+                log.warn("Cannot index chat history path={}", entry.path, ex);
+                return IndexedLine.UNAVAILABLE;
+            }
+            long offset = offsetSelector.apply(entry.index);
+            if (offset < 0) {
+                return IndexedLine.ABSENT;
+            }
+            try {
+                String line;
+                if (entry.segments != null) {
+                    byte[] raw = entry.segments.readLine(offset);
+                    line = raw == null ? null : new String(raw, resolveCharset()).trim();
+                } else {
+                    line = readLineAt(entry.path, offset);
+                }
+                return line == null ? IndexedLine.UNAVAILABLE : new IndexedLine(true, line);
+            } catch (IOException ex) {
+                log.warn("Cannot read indexed chat history line chatId={}, offset={}", chatId, offset, ex);
+                return IndexedLine.UNAVAILABLE;
+            }
+        });
+    }
+
+    private <T> T withEntry(String chatId, Function<ChatHistoryEntry, T> action) {
+        while (true) {
+            ChatHistoryEntry entry = acquire(chatId);
+            synchronized (entry) {
+                if (entry.closed) {
+                    continue;
+                }
+                return action.apply(entry);
+            }
+        }
+    }
+
+    private ChatHistoryEntry acquire(String chatId) {
+        List<ChatHistoryEntry> evicted = new ArrayList<>();
+        ChatHistoryEntry entry;
+        synchronized (entries) {
+            entry = entries.get(chatId);
+            if (entry == null) {
+                SegmentedChatLog segments = isSegmented()
+                        ? new SegmentedChatLog(resolveDir().resolve(chatId + SEGMENTS_DIR_SUFFIX), segmentMaxBytes(), this::writeSegmentIndex)
+                        : null;
+                entry = new ChatHistoryEntry(resolvePath(chatId), segments);
+                entries.put(chatId, entry);
+                int limit = maxOpenHistories();
+                var iterator = entries.entrySet().iterator();
+                while (entries.size() - evicted.size() > limit && iterator.hasNext()) {
+                    Map.Entry<String, ChatHistoryEntry> eldest = iterator.next();
+                    if (eldest.getValue() == entry) {
+                        continue;
+                    }
+                    evicted.add(eldest.getValue());
+                    iterator.remove();
+                }
+            }
+        }
+        for (ChatHistoryEntry stale : evicted) {
+            synchronized (stale) {
+                stale.close();
+            }
+        }
+        return entry;
+    }
+
+    private void catchUpQuietly(ChatHistoryEntry entry) {
+        try {
+            catchUp(entry);
+        } catch (IOException ex) {
+            log.warn("Cannot index chat history path={}", entry.path, ex);
+        }
+    }
+
+    private void notifyTruncated(String chatId) {
+        for (Consumer<String> listener : truncationListeners) {
+            try {
+                listener.accept(chatId);
+            } catch (RuntimeException ex) {
+                log.warn("Chat history truncation listener failed chatId={}", chatId, ex);
+            }
+        }
+    }
+
+    /**
+     * 把索引追平到文件当前长度：只扫描 indexedBytes 之后新增的完整行；文件变短说明被重写，整体重建。
+     */
+    private void catchUp(ChatHistoryEntry entry) throws IOException {
+        if (entry.segments != null) {
+            catchUpSegments(entry);
+            return;
+        }
+        if (!Files.exists(entry.path)) {
+            if (entry.indexedBytes > 0) {
+                entry.resetIndex();
+            }
+            return;
+        }
+        long size = Files.size(entry.path);
+        if (size < entry.indexedBytes) {
+            entry.resetIndex();
+        }
+        if (size == entry.indexedBytes) {
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(entry.path, StandardOpenOption.READ)) {
+            channel.position(entry.indexedBytes);
+            ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+            ByteArrayOutputStream pending = new ByteArrayOutputStream();
+            long lineStart = entry.indexedBytes;
+            long position = entry.indexedBytes;
+            while (channel.read(buffer) > 0) {
+                buffer.flip();
+                while (buffer.hasRemaining()) {
+                    byte value = buffer.get();
+                    position++;
+                    if (value != '\n') {
+                        pending.write(value);
+                        continue;
+                    }
+                    indexRawLine(entry.index, pending.toByteArray(), lineStart);
+                    pending.reset();
+                    lineStart = position;
+                    entry.indexedBytes = position;
+                }
+                buffer.clear();
+            }
+        }
+    }
+
+    /**
+     * 分段版本的追平：首次打开或头部段被删除时合并已封存段的稀疏索引，之后只扫描新增字节。
+     */
+    private void catchUpSegments(ChatHistoryEntry entry) throws IOException {
+        SegmentedChatLog segments = entry.segments;
+        segments.refresh();
+        if (segments.isEmpty() && Files.exists(entry.path)) {
+            migrate(entry);
+        }
+        if (segments.isEmpty()) {
+            if (entry.indexedBytes > 0) {
+                entry.resetIndex();
+            }
+            entry.segmentsOrigin = 0L;
+            return;
+        }
+        long end = segments.endOffset();
+        if (entry.segmentsOrigin != segments.startOffset() || end < entry.indexedBytes) {
+            entry.resetIndex();
+            for (SegmentedChatLog.Segment sealed : segments.sealedSegments()) {
+                entry.index.merge(loadSegmentIndex(sealed));
+            }
+            entry.segmentsOrigin = segments.startOffset();
+            entry.indexedBytes = segments.activeStartOffset();
+        }
+        if (end > entry.indexedBytes) {
+            entry.indexedBytes += indexBytes(entry.index, segments.read(entry.indexedBytes, end), entry.indexedBytes);
+        }
+    }
+
+    /**
+     * 把 {@code <chatId>.jsonl} 逐行写入分段（滚动时生成各段索引），完成后改名为 {@code .jsonl.migrated}。
+     */
+    private void migrate(ChatHistoryEntry entry) throws IOException {
+        try (InputStream in = Files.newInputStream(entry.path)) {
+            ByteArrayOutputStream line = new ByteArrayOutputStream();
+            byte[] buffer = new byte[64 * 1024];
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                for (int i = 0; i < read; i++) {
+                    line.write(buffer[i]);
+                    if (buffer[i] == '\n') {
+                        entry.segments.append(line.toByteArray());
+                        line.reset();
+                    }
+                }
+            }
+            if (line.size() > 0) {
+                line.write('\n');
+                entry.segments.append(line.toByteArray());
+            }
+        }
+        Files.move(entry.path, entry.path.resolveSibling(entry.path.getFileName() + MIGRATED_SUFFIX), StandardCopyOption.REPLACE_EXISTING);
+        entry.segments.refresh();
+        log.info("Migrated chat history {} to segments dir={}", entry.path.getFileName(), entry.segments.dir());
+    }
+
+    private HistoryIndex loadSegmentIndex(SegmentedChatLog.Segment segment) throws IOException {
+        if (Files.exists(segment.indexPath())) {
+            try {
+                return objectMapper.readValue(segment.indexPath().toFile(), HistoryIndex.class);
+            } catch (IOException ex) {
+                log.warn("Rebuild unreadable chat segment index path={}", segment.indexPath(), ex);
+            }
+        }
+        return writeSegmentIndex(segment);
+    }
+
+    /**
+     * 扫描已封存的段生成稀疏索引并原子落盘；段封存后内容不再变化，索引只需生成一次。
+     */
+    private HistoryIndex writeSegmentIndex(SegmentedChatLog.Segment segment) throws IOException {
+        HistoryIndex index = new HistoryIndex();
+        indexBytes(index, Files.readAllBytes(segment.logPath()), segment.baseOffset());
+        Path temp = Files.createTempFile(segment.indexPath().getParent(), segment.logPath().getFileName().toString(), ".tmp");
+        try {
+            objectMapper.writeValue(temp.toFile(), index);
+            Files.move(temp, segment.indexPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        return index;
+    }
+
+    /**
+     * 索引 bytes 中所有以换行结尾的完整行，返回消费的字节数；末尾的半行留待下次。
+     */
+    private long indexBytes(HistoryIndex index, byte[] bytes, long baseOffset) {
+        int start = 0;
+        for (int i = 0; i < bytes.length; i++) {
+            if (bytes[i] != '\n') {
+                continue;
+            }
+            byte[] line = new byte[i - start];
+            System.arraycopy(bytes, start, line, 0, line.length);
+            indexRawLine(index, line, baseOffset + start);
+            start = i + 1;
+        }
+        return start;
+    }
+
+    private List<String> splitLines(byte[] bytes) {
+        String content = new String(bytes, resolveCharset());
+        List<String> lines = new ArrayList<>();
+        for (String line : content.split("\n")) {
+            if (StringUtils.hasText(line)) {
+                lines.add(line.trim());
+            }
+        }
+        return lines;
+    }
+
+    private void indexRawLine(HistoryIndex index, byte[] rawLine, long offset) {
+        if (rawLine.length == 0) {
+            return;
+        }
+        String line = new String(rawLine, resolveCharset()).trim();
+        if (!StringUtils.hasText(line) || line.contains(EVENT_LINE_MARKER)) {
+            return;
+        }
+        JsonNode node;
+        try {
+            node = objectMapper.readTree(line);
+        } catch (Exception ignored) {
+            return;
+        }
+        if (node == null || !node.isObject()) {
+            return;
+        }
+        String runId = node.path("runId").asText(null);
+        switch (node.path("_type").asText("")) {
+            case "query" -> {
+                if (hasText(runId)) {
+                    index.recordRun(runId, offset, false);
+                    index.queryHiddenByRunId.putIfAbsent(runId, node.path("hidden").asBoolean(false));
+                }
+            }
+            case "step" -> {
+                if (hasText(runId)) {
+                    index.recordRun(runId, offset, true);
+                }
+                JsonNode tasks = node.path("plan").path("tasks");
+                if (tasks.isArray() && !tasks.isEmpty()) {
+                    index.latestPlanOffset = offset;
+                }
+                if (node.hasNonNull("system")) {
+                    index.latestSystemOffset = offset;
+                }
+                JsonNode items = node.path("artifacts").path("items");
+                if (items.isArray() && !items.isEmpty()) {
+                    index.latestArtifactOffset = offset;
+                }
+                JsonNode messages = node.path("messages");
+                if (hasText(runId) && messages.isArray()) {
+                    for (JsonNode message : messages) {
+                        index.recordTextBlocks(
+                                runId,
+                                message.path("_reasoningId").asText(null),
+                                message.path("_contentId").asText(null)
+                        );
+                    }
+                }
+            }
+            default -> {
+            }
+        }
+    }
+
+    private void indexLine(HistoryIndex index, Object line, long offset) {
+        if (line instanceof ChatStorageTypes.QueryLine query) {
+            if (hasText(query.runId)) {
+                index.recordRun(query.runId, offset, false);
+                index.queryHiddenByRunId.putIfAbsent(query.runId, Boolean.TRUE.equals(query.hidden));
+            }
+            return;
+        }
+        if (!(line instanceof ChatStorageTypes.StepLine step)) {
+            return;
+        }
+        if (hasText(step.runId)) {
+            index.recordRun(step.runId, offset, true);
+        }
+        if (step.plan != null && step.plan.tasks != null && !step.plan.tasks.isEmpty()) {
+            index.latestPlanOffset = offset;
+        }
+        if (step.system != null) {
+            index.latestSystemOffset = offset;
+        }
+        if (step.artifacts != null && step.artifacts.items != null && !step.artifacts.items.isEmpty()) {
+            index.latestArtifactOffset = offset;
+        }
+        if (hasText(step.runId) && step.messages != null) {
+            for (ChatStorageTypes.StoredMessage message : step.messages) {
+                if (message != null) {
+                    index.recordTextBlocks(step.runId, message.reasoningId, message.contentId);
+                }
+            }
+        }
+    }
+
+    private String readLineAt(Path path, long offset) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            channel.position(offset);
+            ByteBuffer buffer = ByteBuffer.allocate(16 * 1024);
+            ByteArrayOutputStream line = new ByteArrayOutputStream();
+            while (channel.read(buffer) > 0) {
+                buffer.flip();
+                while (buffer.hasRemaining()) {
+                    byte value = buffer.get();
+                    if (value == '\n') {
+                        return new String(line.toByteArray(), resolveCharset()).trim();
+                    }
+                    line.write(value);
+                }
+                buffer.clear();
+            }
+            return line.size() == 0 ? null : new String(line.toByteArray(), resolveCharset()).trim();
+        }
+    }
+
+    private byte[] encodeLine(String chatId, Object line) {
+        try {
+            return (objectMapper.writeValueAsString(line) + System.lineSeparator()).getBytes(resolveCharset());
+        } catch (IOException ex) {
+            throw new IllegalStateException("Cannot serialize chat history line for chatId=" + chatId, ex);
+        }
+    }
+
+    private int maxOpenHistories() {
+        int configured = properties.getMaxOpenHistories();
+        return configured > 0 ? configured : DEFAULT_MAX_OPEN_HISTORIES;
+    }
+
+    private long segmentMaxBytes() {
+        long configured = properties.getSegmentMaxBytes();
+        return configured > 0 ? configured : DEFAULT_SEGMENT_MAX_BYTES;
+    }
+
+    private boolean isValidChatId(String chatId) {
+        return StringHelpers.isValidChatId(chatId);
+    }
+
+    private Path resolveDir() {
+        return Paths.get(properties.getDir()).toAbsolutePath().normalize();
+    }
+
+    private Path resolvePath(String chatId) {
+        return resolveDir().resolve(chatId + ".jsonl");
+    }
+
+    private Charset resolveCharset() {
+        String configured = properties.getCharset();
+        if (!StringUtils.hasText(configured)) {
+            return StandardCharsets.UTF_8;
+        }
+        try {
+            return Charset.forName(configured.trim());
+        } catch (Exception ignored) {
+            return StandardCharsets.UTF_8;
+        }
+    }
+
+    static int extractTextBlockSequence(String runId, String id, String separator) {
+        if (!hasText(runId) || !hasText(id) || !id.startsWith(runId + separator)) {
+            return 0;
+        }
+        String suffix = id.substring((runId + separator).length());
+        try {
+            return Integer.parseInt(suffix);
+        } catch (NumberFormatException ignored) {
+            return 0;
+        }
+    }
+
+    /**
+     * 历史索引；偏移都是逻辑偏移。分段引擎下每个已封存段各有一份，以 JSON 落盘为该段的稀疏索引。
+     */
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    static final class HistoryIndex {
+        public LinkedHashMap<String, Long> runOffsets = new LinkedHashMap<>();
+        public LinkedHashSet<String> stepRunIds = new LinkedHashSet<>();
+        public Map<String, Boolean> queryHiddenByRunId = new HashMap<>();
+        public Map<String, int[]> textBlockSequencesByRunId = new HashMap<>();
+        public long latestPlanOffset = -1L;
+        public long latestSystemOffset = -1L;
+        public long latestArtifactOffset = -1L;
+
+        private void recordRun(String runId, long offset, boolean step) {
+            runOffsets.putIfAbsent(runId, offset);
+            if (step) {
+                stepRunIds.add(runId);
+            }
+        }
+
+        private void recordTextBlocks(String runId, String reasoningId, String contentId) {
+            int reasoningSeq = extractTextBlockSequence(runId, reasoningId, "_r_");
+            int contentSeq = extractTextBlockSequence(runId, contentId, "_c_");
+            if (reasoningSeq <= 0 && contentSeq <= 0) {
+                return;
+            }
+            int[] sequences = textBlockSequencesByRunId.computeIfAbsent(runId, key -> new int[2]);
+            sequences[0] = Math.max(sequences[0], reasoningSeq);
+            sequences[1] = Math.max(sequences[1], contentSeq);
+        }
+
+        /**
+         * 按段顺序合并：较早段的 run 首行偏移与隐藏标记优先，较晚段的最近行偏移覆盖。
+         */
+        private void merge(HistoryIndex later) {
+            later.runOffsets.forEach(runOffsets::putIfAbsent);
+            stepRunIds.addAll(later.stepRunIds);
+            later.queryHiddenByRunId.forEach(queryHiddenByRunId::putIfAbsent);
+            later.textBlockSequencesByRunId.forEach((runId, sequences) -> {
+                int[] merged = textBlockSequencesByRunId.computeIfAbsent(runId, key -> new int[2]);
+                merged[0] = Math.max(merged[0], sequences[0]);
+                merged[1] = Math.max(merged[1], sequences[1]);
+            });
+            latestPlanOffset = later.latestPlanOffset >= 0 ? later.latestPlanOffset : latestPlanOffset;
+            latestSystemOffset = later.latestSystemOffset >= 0 ? later.latestSystemOffset : latestSystemOffset;
+            latestArtifactOffset = later.latestArtifactOffset >= 0 ? later.latestArtifactOffset : latestArtifactOffset;
+        }
+    }
+
+    private static final class ChatHistoryEntry {
+        private final Path path;
+        private final SegmentedChatLog segments;
+        private HistoryIndex index = new HistoryIndex();
+        private FileChannel channel;
+        private long indexedBytes;
+        private long segmentsOrigin = -1L;
+        private boolean closed;
+
+        private ChatHistoryEntry(Path path, SegmentedChatLog segments) {
+            this.path = path;
+            this.segments = segments;
+        }
+
+        private FileChannel openChannel() throws IOException {
+            if (channel == null || !channel.isOpen()) {
+                Files.createDirectories(path.getParent());
+                channel = FileChannel.open(
+                        path,
+                        StandardOpenOption.CREATE,
+                        StandardOpenOption.WRITE,
+                        StandardOpenOption.APPEND
+                );
+            }
+            return channel;
+        }
+
+        private void resetIndex() {
+            index = new HistoryIndex();
+            indexedBytes = 0L;
+            segmentsOrigin = -1L;
+        }
+
+        private void closeChannel() {
+            if (segments != null) {
+                segments.close();
+            }
+            if (channel == null) {
+                return;
+            }
+            try {
+                channel.close();
+            } catch (IOException ex) {
+                log.debug("Cannot close chat history channel path={}", path, ex);
+            }
+            channel = null;
+        }
+
+        private void close() {
+            closed = true;
+            closeChannel();
+        }
+    }
+}
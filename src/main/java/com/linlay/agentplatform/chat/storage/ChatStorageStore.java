@@ -9,20 +9,18 @@ import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
 
-import java.io.IOException;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Objects;
 import java.util.Set;
+import java.util.function.Function;
 
 import static com.linlay.agentplatform.util.StringHelpers.hasText;
 
@@ -34,20 +32,65 @@ public class ChatStorageStore {
     private final ObjectMapper objectMapper;
     private final ChatStorageProperties properties;
     private final StoredMessageConverter storedMessageConverter;
+    private final ChatHistoryWriter historyWriter;
 
-    public ChatStorageStore(ObjectMapper objectMapper, ChatStorageProperties properties) {
+    public record HistoryRun(String runId, List<ChatMessage> messages) {
+    }
+
+    public record RunContext(
+            List<HistoryRun> historyRuns,
+            ChatStorageTypes.PlanState latestPlan,
+            ChatStorageTypes.SystemSnapshot latestSystem
+    ) {
+        public List<ChatMessage> historyMessages() {
+            List<ChatMessage> messages = new ArrayList<>();
+            for (HistoryRun run : historyRuns) {
+                messages.addAll(run.messages());
+            }
+            return List.copyOf(messages);
+        }
+    }
+
+    public ChatStorageStore(ObjectMapper objectMapper, ChatStorageProperties properties, ChatHistoryWriter historyWriter) {
         this.objectMapper = objectMapper;
         this.properties = properties;
         this.storedMessageConverter = new StoredMessageConverter(objectMapper, properties);
+        this.historyWriter = historyWriter;
     }
 
     public List<ChatMessage> loadHistoryMessages(String chatId) {
+        return new RunContext(loadHistoryRuns(chatId), null, null).historyMessages();
+    }
+
+    /**
+     * 按 run 分组返回窗口内的历史消息，run 按出现顺序排列，供按 token 预算裁剪与摘要使用。
+     */
+    public List<HistoryRun> loadHistoryRuns(String chatId) {
         if (!isValidChatId(chatId)) {
             return List.of();
         }
 
+        List<String> recentLines = historyWriter.readRecentRunLines(chatId, normalizedWindowSize());
+        return groupHistoryRuns(recentLines == null ? readAllParsedLines(chatId) : parseLines(recentLines));
+    }
+
+    /**
+     * run 启动时一次取回历史窗口、最近的 plan 与 system 快照。
+     * JSONL 引擎只读取并解析一遍文件；分段引擎按索引只读窗口内的 run，plan/system 各定位一行。
+     */
+    public RunContext loadRunContext(String chatId) {
+        if (!isValidChatId(chatId)) {
+            return new RunContext(List.of(), null, null);
+        }
+        if (historyWriter.isSegmented()) {
+            return new RunContext(loadHistoryRuns(chatId), loadLatestPlanState(chatId), loadLatestSystemSnapshot(chatId));
+        }
+        List<ParsedLine> lines = readAllParsedLines(chatId);
+        return new RunContext(groupHistoryRuns(lines), findLatestPlanState(lines), findLatestSystemSnapshot(lines));
+    }
+
+    private List<HistoryRun> groupHistoryRuns(List<ParsedLine> allLines) {
         int windowSize = normalizedWindowSize();
-        List<ParsedLine> allLines = readAllParsedLines(chatId);
         LinkedHashMap<String, List<ParsedStepLine>> stepsByRunId = new LinkedHashMap<>();
         for (ParsedLine line : allLines) {
             if (line instanceof ParsedStepLine step) {
@@ -59,10 +102,11 @@ public class ChatStorageStore {
         int fromIndex = Math.max(0, runIds.size() - windowSize);
         List<String> recentRunIds = runIds.subList(fromIndex, runIds.size());
 
-        List<ChatMessage> messages = new ArrayList<>();
+        List<HistoryRun> runs = new ArrayList<>();
         for (String runId : recentRunIds) {
             List<ParsedStepLine> steps = stepsByRunId.get(runId);
             steps.sort(Comparator.comparingInt(ParsedStepLine::seq));
+            List<ChatMessage> messages = new ArrayList<>();
             for (ParsedStepLine step : steps) {
                 if (step.messages() == null) {
                     continue;
@@ -74,8 +118,11 @@ public class ChatStorageStore {
                     }
                 }
             }
+            if (!messages.isEmpty()) {
+                runs.add(new HistoryRun(runId, List.copyOf(messages)));
+            }
         }
-        return List.copyOf(messages);
+        return List.copyOf(runs);
     }
 
     public void appendQueryLine(String chatId, String runId, Map<String, Object> query) {
@@ -90,7 +137,10 @@ public class ChatStorageStore {
         line.updatedAt = now;
         line.hidden = extractHiddenQueryFlag(query) ? Boolean.TRUE : null;
         line.query = normalizeQueryWithoutHidden(query);
-        appendLine(chatId, line);
+        historyWriter.sequenced(chatId, () -> {
+            historyWriter.append(chatId, line);
+            return null;
+        });
     }
 
     public void appendStepLine(
@@ -111,91 +161,129 @@ public class ChatStorageStore {
         String normalizedRunId = normalizeRunId(runId);
         ChatStorageTypes.SystemSnapshot normalizedSystem = storedMessageConverter.normalizeSystemSnapshot(system);
         Set<String> runtimeActionTools = storedMessageConverter.extractActionToolNames(normalizedSystem);
-        TextBlockSequenceState sequenceState = nextTextBlockSequenceState(chatId, normalizedRunId);
-        List<ChatStorageTypes.StoredMessage> storedMessages = storedMessageConverter.convertRunMessages(
-                normalizedRunId,
-                runMessages,
-                runtimeActionTools,
-                sequenceState
-        );
-        if (storedMessages.isEmpty()) {
-            return;
-        }
+        historyWriter.sequenced(chatId, () -> {
+            TextBlockSequenceState sequenceState = historyWriter.nextTextBlockSequenceState(chatId, normalizedRunId);
+            List<ChatStorageTypes.StoredMessage> storedMessages = storedMessageConverter.convertRunMessages(
+                    normalizedRunId,
+                    runMessages,
+                    runtimeActionTools,
+                    sequenceState
+            );
+            if (storedMessages.isEmpty()) {
+                return null;
+            }
 
-        ChatStorageTypes.StepLine line = new ChatStorageTypes.StepLine();
-        line.chatId = chatId;
-        line.runId = normalizedRunId;
-        line.stage = hasText(stage) ? stage.trim() : "oneshot";
-        line.seq = seq;
-        line.taskId = hasText(taskId) ? taskId.trim() : null;
-        line.updatedAt = System.currentTimeMillis();
-        line.system = normalizedSystem;
-        line.plan = storedMessageConverter.normalizePlanState(plan);
-        line.artifacts = storedMessageConverter.normalizeArtifactState(artifacts);
-        line.messages = storedMessages;
-        appendLine(chatId, line);
+            ChatStorageTypes.StepLine line = new ChatStorageTypes.StepLine();
+            line.chatId = chatId;
+            line.runId = normalizedRunId;
+            line.stage = hasText(stage) ? stage.trim() : "oneshot";
+            line.seq = seq;
+            line.taskId = hasText(taskId) ? taskId.trim() : null;
+            line.updatedAt = System.currentTimeMillis();
+            line.system = normalizedSystem;
+            line.plan = storedMessageConverter.normalizePlanState(plan);
+            line.artifacts = storedMessageConverter.normalizeArtifactState(artifacts);
+            line.messages = storedMessages;
+            historyWriter.append(chatId, line);
+            return null;
+        });
     }
 
     public ChatStorageTypes.PlanState loadLatestPlanState(String chatId) {
         if (!isValidChatId(chatId)) {
             return null;
         }
-        List<ParsedLine> lines = readAllParsedLines(chatId);
-        for (int i = lines.size() - 1; i >= 0; i--) {
-            if (lines.get(i) instanceof ParsedStepLine step && step.plan() != null) {
-                ChatStorageTypes.PlanState normalized = storedMessageConverter.normalizePlanState(step.plan());
-                if (normalized != null && normalized.tasks != null && !normalized.tasks.isEmpty()) {
-                    return normalized;
-                }
-            }
-        }
-        return null;
+        return loadLatestIndexed(
+                chatId,
+                historyWriter.readLatestPlanLine(chatId),
+                step -> {
+                    ChatStorageTypes.PlanState normalized = storedMessageConverter.normalizePlanState(step.plan());
+                    return normalized != null && normalized.tasks != null && !normalized.tasks.isEmpty() ? normalized : null;
+                },
+                this::findLatestPlanState
+        );
     }
 
     public ChatStorageTypes.SystemSnapshot loadLatestSystemSnapshot(String chatId) {
         if (!isValidChatId(chatId)) {
             return null;
         }
-        List<ParsedLine> lines = readAllParsedLines(chatId);
-        for (int i = lines.size() - 1; i >= 0; i--) {
-            if (lines.get(i) instanceof ParsedStepLine step && step.system() != null) {
-                return step.system();
-            }
-        }
-        return null;
+        return loadLatestIndexed(
+                chatId,
+                historyWriter.readLatestSystemLine(chatId),
+                ParsedStepLine::system,
+                this::findLatestSystemSnapshot
+        );
     }
 
     public ChatStorageTypes.ArtifactState loadLatestArtifactState(String chatId) {
         if (!isValidChatId(chatId)) {
             return null;
         }
-        List<ParsedLine> lines = readAllParsedLines(chatId);
-        for (int i = lines.size() - 1; i >= 0; i--) {
-            if (lines.get(i) instanceof ParsedStepLine step && step.artifacts() != null) {
-                ChatStorageTypes.ArtifactState normalized = storedMessageConverter.normalizeArtifactState(step.artifacts());
-                if (normalized != null && normalized.items != null && !normalized.items.isEmpty()) {
-                    return normalized;
+        return loadLatestIndexed(
+                chatId,
+                historyWriter.readLatestArtifactLine(chatId),
+                this::normalizedArtifacts,
+                lines -> {
+                    for (int i = lines.size() - 1; i >= 0; i--) {
+                        if (lines.get(i) instanceof ParsedStepLine step) {
+                            ChatStorageTypes.ArtifactState normalized = normalizedArtifacts(step);
+                            if (normalized != null) {
+                                return normalized;
+                            }
+                        }
+                    }
+                    return null;
                 }
+        );
+    }
+
+    private ChatStorageTypes.ArtifactState normalizedArtifacts(ParsedStepLine step) {
+        if (step.artifacts() == null) {
+            return null;
+        }
+        ChatStorageTypes.ArtifactState normalized = storedMessageConverter.normalizeArtifactState(step.artifacts());
+        return normalized != null && normalized.items != null && !normalized.items.isEmpty() ? normalized : null;
+    }
+
+    /**
+     * 索引已追平时以索引为准：未命中说明历史中没有这类行，直接返回 null，不再全量扫描。
+     * 只有索引不可用（追平或读取失败、索引行无法解析）时才退回扫描全部历史。
+     */
+    private <T> T loadLatestIndexed(
+            String chatId,
+            ChatHistoryWriter.IndexedLine indexed,
+            Function<ParsedStepLine, T> extractor,
+            Function<List<ParsedLine>, T> scanner
+    ) {
+        if (indexed.indexed()) {
+            if (indexed.line() == null) {
+                return null;
+            }
+            if (parseParsedLine(indexed.line()) instanceof ParsedStepLine step) {
+                return extractor.apply(step);
             }
         }
-        return null;
+        return scanner.apply(readAllParsedLines(chatId));
     }
 
+    /**
+     * 只保留最近 k 个 run：JSONL 引擎重写文件；分段引擎只删除完全落在窗口之外的整段。
+     * 裁剪排在该 chat 已入队事件之后执行，避免旧 run 的事件在裁剪后才落盘。
+     */
     public void trimToWindow(String chatId) {
-        int windowSize = normalizedWindowSize();
-        Path path = resolvePath(chatId);
-        if (!Files.exists(path)) {
+        historyWriter.sequenced(chatId, () -> {
+            trimToWindow(chatId, normalizedWindowSize());
+            return null;
+        });
+    }
+
+    private void trimToWindow(String chatId, int windowSize) {
+        if (historyWriter.isSegmented()) {
+            historyWriter.trimSegments(chatId, windowSize);
             return;
         }
-
-        try {
-            List<String> rawLines = Files.readAllLines(path, resolveCharset()).stream()
-                    .filter(StringUtils::hasText)
-                    .toList();
-            if (rawLines.isEmpty()) {
-                return;
-            }
-
+        historyWriter.rewriteLines(chatId, rawLines -> {
             LinkedHashMap<String, List<Integer>> lineIndexesByRunId = new LinkedHashMap<>();
             for (int i = 0; i < rawLines.size(); i++) {
                 String runId = extractRunId(rawLines.get(i));
@@ -205,7 +293,7 @@ public class ChatStorageStore {
             }
 
             if (lineIndexesByRunId.size() <= windowSize) {
-                return;
+                return null;
             }
 
             List<String> runIds = new ArrayList<>(lineIndexesByRunId.keySet());
@@ -221,19 +309,8 @@ public class ChatStorageStore {
                     retained.add(rawLines.get(i));
                 }
             }
-
-            String content = String.join(System.lineSeparator(), retained) + System.lineSeparator();
-            Files.writeString(
-                    path,
-                    content,
-                    resolveCharset(),
-                    StandardOpenOption.CREATE,
-                    StandardOpenOption.TRUNCATE_EXISTING,
-                    StandardOpenOption.WRITE
-            );
-        } catch (IOException ex) {
-            throw new IllegalStateException("Cannot trim chat storage for chatId=" + chatId, ex);
-        }
+            return retained;
+        });
     }
 
     public boolean isSameSystem(ChatStorageTypes.SystemSnapshot left, ChatStorageTypes.SystemSnapshot right) {
@@ -245,30 +322,59 @@ public class ChatStorageStore {
         return leftNode.equals(rightNode);
     }
 
+    private ChatStorageTypes.PlanState findLatestPlanState(List<ParsedLine> lines) {
+        for (int i = lines.size() - 1; i >= 0; i--) {
+            if (lines.get(i) instanceof ParsedStepLine step && step.plan() != null) {
+                ChatStorageTypes.PlanState normalized = storedMessageConverter.normalizePlanState(step.plan());
+                if (normalized != null && normalized.tasks != null && !normalized.tasks.isEmpty()) {
+                    return normalized;
+                }
+            }
+        }
+        return null;
+    }
+
+    private ChatStorageTypes.SystemSnapshot findLatestSystemSnapshot(List<ParsedLine> lines) {
+        for (int i = lines.size() - 1; i >= 0; i--) {
+            if (lines.get(i) instanceof ParsedStepLine step && step.system() != null) {
+                return step.system();
+            }
+        }
+        return null;
+    }
+
     private List<ParsedLine> readAllParsedLines(String chatId) {
+        List<String> segmentedLines = historyWriter.readAllLines(chatId);
+        if (segmentedLines != null) {
+            return parseLines(segmentedLines);
+        }
         Path path = resolvePath(chatId);
         if (!Files.exists(path)) {
             return List.of();
         }
 
         try {
-            List<ParsedLine> lines = new ArrayList<>();
-            for (String rawLine : Files.readAllLines(path, resolveCharset())) {
-                if (!StringUtils.hasText(rawLine)) {
-                    continue;
-                }
-                ParsedLine parsed = parseParsedLine(rawLine);
-                if (parsed != null) {
-                    lines.add(parsed);
-                }
-            }
-            return List.copyOf(lines);
+            return parseLines(Files.readAllLines(path, resolveCharset()));
         } catch (Exception ex) {
             log.warn("Cannot read chat storage file for chatId={}, fallback to empty history", chatId, ex);
             return List.of();
         }
     }
 
+    private List<ParsedLine> parseLines(List<String> rawLines) {
+        List<ParsedLine> lines = new ArrayList<>();
+        for (String rawLine : rawLines) {
+            if (!StringUtils.hasText(rawLine)) {
+                continue;
+            }
+            ParsedLine parsed = parseParsedLine(rawLine);
+            if (parsed != null) {
+                lines.add(parsed);
+            }
+        }
+        return List.copyOf(lines);
+    }
+
     private ParsedLine parseParsedLine(String rawLine) {
         try {
             JsonNode node = objectMapper.readTree(rawLine);
@@ -362,24 +468,6 @@ public class ChatStorageStore {
         return null;
     }
 
-    private void appendLine(String chatId, Object line) {
-        Path path = resolvePath(chatId);
-        try {
-            Files.createDirectories(path.getParent());
-            String jsonLine = objectMapper.writeValueAsString(line) + System.lineSeparator();
-            Files.writeString(
-                    path,
-                    jsonLine,
-                    resolveCharset(),
-                    StandardOpenOption.CREATE,
-                    StandardOpenOption.APPEND,
-                    StandardOpenOption.WRITE
-            );
-        } catch (IOException ex) {
-            throw new IllegalStateException("Cannot append chat storage line for chatId=" + chatId, ex);
-        }
-    }
-
     private boolean extractHiddenQueryFlag(Map<String, Object> query) {
         if (query == null) {
             return false;
@@ -416,36 +504,6 @@ public class ChatStorageStore {
         return Long.toString(System.currentTimeMillis(), 36);
     }
 
-    private TextBlockSequenceState nextTextBlockSequenceState(String chatId, String runId) {
-        int maxReasoningSeq = 0;
-        int maxContentSeq = 0;
-        for (ParsedLine line : readAllParsedLines(chatId)) {
-            if (!(line instanceof ParsedStepLine step) || !Objects.equals(runId, step.runId()) || step.messages() == null) {
-                continue;
-            }
-            for (ChatStorageTypes.StoredMessage message : step.messages()) {
-                if (message == null) {
-                    continue;
-                }
-                maxReasoningSeq = Math.max(maxReasoningSeq, extractTextBlockSequence(runId, message.reasoningId, "_r_"));
-                maxContentSeq = Math.max(maxContentSeq, extractTextBlockSequence(runId, message.contentId, "_c_"));
-            }
-        }
-        return new TextBlockSequenceState(maxReasoningSeq + 1, maxContentSeq + 1);
-    }
-
-    private int extractTextBlockSequence(String runId, String id, String separator) {
-        if (!hasText(runId) || !hasText(id) || !id.startsWith(runId + separator)) {
-            return 0;
-        }
-        String suffix = id.substring((runId + separator).length());
-        try {
-            return Integer.parseInt(suffix);
-        } catch (NumberFormatException ignored) {
-            return 0;
-        }
-    }
-
     private int normalizedWindowSize() {
         return Math.max(1, properties.getK());
     }
@@ -0,0 +1,118 @@
+package com.linlay.agentplatform.chat.storage;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.linlay.agentplatform.config.properties.ChatStorageProperties;
+import com.linlay.agentplatform.util.StringHelpers;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+
+import static com.linlay.agentplatform.util.StringHelpers.hasText;
+
+/**
+ * 聊天滚动摘要的旁路存储：与 {@code <chatId>.jsonl} 同目录的 {@code <chatId>.summary.json}。
+ * <p>
+ * 摘要覆盖从会话开始到 {@code throughRunId}（含）为止的全部 run；写入先落临时文件再原子替换，
+ * 读取失败按无摘要处理，不影响正常加载历史。
+ * <p>
+ * 摘要只对当前历史成立：历史被裁剪或重写时由写入器通知删除，历史被删除后在下次读取时删除。
+ */
+@Service
+public class ChatSummaryStore {
+
+    private static final Logger log = LoggerFactory.getLogger(ChatSummaryStore.class);
+
+    private final ObjectMapper objectMapper;
+    private final ChatStorageProperties properties;
+    private final ChatHistoryWriter historyWriter;
+
+    public record ChatSummary(String throughRunId, String summary, long updatedAt) {
+    }
+
+    public ChatSummaryStore(ObjectMapper objectMapper, ChatStorageProperties properties) {
+        this(objectMapper, properties, null);
+    }
+
+    @Autowired
+    public ChatSummaryStore(ObjectMapper objectMapper, ChatStorageProperties properties, ChatHistoryWriter historyWriter) {
+        this.objectMapper = objectMapper;
+        this.properties = properties;
+        this.historyWriter = historyWriter;
+        if (historyWriter != null) {
+            historyWriter.onTruncate(this::invalidate);
+        }
+    }
+
+    public ChatSummary load(String chatId) {
+        if (!StringHelpers.isValidChatId(chatId)) {
+            return null;
+        }
+        Path path = resolvePath(chatId);
+        if (!Files.isRegularFile(path)) {
+            return null;
+        }
+        if (historyWriter != null && historyWriter.version(chatId) == null) {
+            invalidate(chatId);
+            return null;
+        }
+        try {
+            ChatSummary summary = objectMapper.readValue(path.toFile(), ChatSummary.class);
+            if (summary == null || !hasText(summary.throughRunId()) || !hasText(summary.summary())) {
+                return null;
+            }
+            return summary;
+        } catch (Exception ex) {
+            log.warn("Cannot read chat summary for chatId={}, ignore it", chatId, ex);
+            return null;
+        }
+    }
+
+    public void save(String chatId, ChatSummary summary) {
+        if (!StringHelpers.isValidChatId(chatId) || summary == null) {
+            return;
+        }
+        if (historyWriter != null && historyWriter.version(chatId) == null) {
+            // 后台摘要完成前历史已被删除
+            return;
+        }
+        Path path = resolvePath(chatId);
+        try {
+            Files.createDirectories(path.getParent());
+            Path temp = Files.createTempFile(path.getParent(), chatId + ".summary", ".tmp");
+            try {
+                objectMapper.writeValue(temp.toFile(), summary);
+                Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        } catch (IOException ex) {
+            throw new IllegalStateException("Cannot write chat summary for chatId=" + chatId, ex);
+        }
+    }
+
+    /**
+     * 删除 chat 的摘要；摘要描述的 run 已不在历史中时调用。
+     */
+    public void invalidate(String chatId) {
+        if (!StringHelpers.isValidChatId(chatId)) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(resolvePath(chatId));
+        } catch (IOException ex) {
+            log.warn("Cannot delete chat summary for chatId={}", chatId, ex);
+        }
+    }
+
+    private Path resolvePath(String chatId) {
+        Path dir = Paths.get(properties.getDir()).toAbsolutePath().normalize();
+        return dir.resolve(chatId + ".summary.json");
+    }
+}
@@ -0,0 +1,314 @@
+package com.linlay.agentplatform.chat.storage;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * 单个 chat 的分段历史：{@code <dir>/<chatId>.segments/} 下按大小滚动的段文件，段内仍是 JSONL 行。
+ * <p>
+ * 段文件以其在整个 chat 中的起始逻辑偏移命名（{@code 00000000000000000000.log}），
+ * 段之间的逻辑偏移连续，删除头部整段后剩余段的偏移保持不变。每个已封存的段旁边有一份稀疏索引
+ * {@code <base>.idx.json}，由 {@link SegmentIndexer} 在封存时生成；只有最后一个活跃段需要扫描。
+ * 读取按逻辑偏移定位到段后通过内存映射拷贝所需区间；已封存的段不再变化，整段映射一次后缓存复用，
+ * 活跃段仍在增长，每次读取按需映射。实例不是线程安全的，由调用方串行访问。
+ */
+final class SegmentedChatLog {
+
+    private static final Logger log = LoggerFactory.getLogger(SegmentedChatLog.class);
+    static final String SEGMENT_SUFFIX = ".log";
+    static final String INDEX_SUFFIX = ".idx.json";
+
+    private final Path dir;
+    private final long maxSegmentBytes;
+    private final SegmentIndexer indexer;
+    private final List<Segment> segments = new ArrayList<>();
+    private final Map<Segment, MappedByteBuffer> sealedMappings = new HashMap<>();
+    private FileChannel activeChannel;
+    private Segment activeChannelSegment;
+
+    @FunctionalInterface
+    interface SegmentIndexer {
+        void index(Segment segment) throws IOException;
+    }
+
+    record Segment(long baseOffset, Path logPath, Path indexPath) {
+    }
+
+    SegmentedChatLog(Path dir, long maxSegmentBytes, SegmentIndexer indexer) {
+        this.dir = dir;
+        this.maxSegmentBytes = Math.max(1L, maxSegmentBytes);
+        this.indexer = indexer;
+    }
+
+    Path dir() {
+        return dir;
+    }
+
+    /**
+     * 重新列出段文件；其它写入器可能已滚动或删除段。
+     */
+    void refresh() throws IOException {
+        segments.clear();
+        if (!Files.isDirectory(dir)) {
+            sealedMappings.clear();
+            closeChannel();
+            return;
+        }
+        try (Stream<Path> files = Files.list(dir)) {
+            files.map(this::toSegment)
+                    .filter(segment -> segment != null)
+                    .sorted((left, right) -> Long.compare(left.baseOffset(), right.baseOffset()))
+                    .forEach(segments::add);
+        }
+        sealedMappings.keySet().retainAll(sealedSegments());
+        if (activeChannelSegment != null && !activeChannelSegment.equals(active())) {
+            closeChannel();
+        }
+    }
+
+    boolean isEmpty() {
+        return segments.isEmpty();
+    }
+
+    long startOffset() {
+        return segments.isEmpty() ? 0L : segments.get(0).baseOffset();
+    }
+
+    long activeStartOffset() {
+        Segment active = active();
+        return active == null ? 0L : active.baseOffset();
+    }
+
+    long endOffset() throws IOException {
+        Segment active = active();
+        return active == null ? 0L : active.baseOffset() + size(active);
+    }
+
+    long lastModified() throws IOException {
+        Segment active = active();
+        return active == null || !Files.exists(active.logPath()) ? 0L : Files.getLastModifiedTime(active.logPath()).toMillis();
+    }
+
+    List<Segment> sealedSegments() {
+        return segments.isEmpty() ? List.of() : List.copyOf(segments.subList(0, segments.size() - 1));
+    }
+
+    /**
+     * 追加一批完整的行并返回写入起点的逻辑偏移；活跃段写满时先封存再滚动到新段。
+     */
+    long append(byte[] bytes) throws IOException {
+        Segment active = active();
+        if (active == null) {
+            active = createSegment(0L);
+        } else {
+            long activeSize = size(active);
+            if (activeSize > 0 && activeSize + bytes.length > maxSegmentBytes) {
+                closeChannel();
+                indexer.index(active);
+                active = createSegment(active.baseOffset() + activeSize);
+            }
+        }
+        FileChannel channel = channelFor(active);
+        long offset = active.baseOffset() + channel.size();
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        return offset;
+    }
+
+    /**
+     * 读取逻辑区间 [from, to) 的字节，跨段时按顺序拼接。
+     */
+    byte[] read(long from, long to) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream((int) Math.min(Integer.MAX_VALUE - 8, Math.max(0L, to - from)));
+        for (Segment segment : segments) {
+            long segmentSize = size(segment);
+            long segmentEnd = segment.baseOffset() + segmentSize;
+            if (segmentEnd <= from || segment.baseOffset() >= to) {
+                continue;
+            }
+            long localFrom = Math.max(0L, from - segment.baseOffset());
+            long localTo = Math.min(segmentSize, to - segment.baseOffset());
+            ByteBuffer mapped = slice(segment, segmentSize, localFrom, localTo - localFrom);
+            if (mapped == null) {
+                continue;
+            }
+            byte[] chunk = new byte[mapped.remaining()];
+            mapped.get(chunk);
+            out.writeBytes(chunk);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * 读取逻辑偏移处的一整行（不含换行符）；偏移越界返回 null。
+     */
+    byte[] readLine(long offset) throws IOException {
+        Segment segment = segmentAt(offset);
+        if (segment == null) {
+            return null;
+        }
+        long local = offset - segment.baseOffset();
+        long segmentSize = size(segment);
+        ByteBuffer mapped = slice(segment, segmentSize, local, segmentSize - local);
+        if (mapped == null) {
+            return null;
+        }
+        int length = 0;
+        while (length < mapped.limit() && mapped.get(length) != '\n') {
+            length++;
+        }
+        byte[] line = new byte[length];
+        mapped.get(0, line);
+        return line;
+    }
+
+    /**
+     * 删除完全位于 offset 之前的已封存段，活跃段永远保留；返回删除的段数。
+     */
+    int dropBefore(long offset) throws IOException {
+        int dropped = 0;
+        for (Segment segment : sealedSegments()) {
+            if (segment.baseOffset() + size(segment) > offset) {
+                break;
+            }
+            sealedMappings.remove(segment);
+            Files.deleteIfExists(segment.indexPath());
+            Files.deleteIfExists(segment.logPath());
+            dropped++;
+        }
+        if (dropped > 0) {
+            refresh();
+        }
+        return dropped;
+    }
+
+    /**
+     * 按顺序把所有段拼接成一份 JSONL 写入 out。
+     */
+    void exportTo(OutputStream out) throws IOException {
+        for (Segment segment : segments) {
+            Files.copy(segment.logPath(), out);
+        }
+    }
+
+    void close() {
+        sealedMappings.clear();
+        closeChannel();
+    }
+
+    private Segment active() {
+        return segments.isEmpty() ? null : segments.get(segments.size() - 1);
+    }
+
+    private Segment segmentAt(long offset) throws IOException {
+        for (int i = segments.size() - 1; i >= 0; i--) {
+            Segment segment = segments.get(i);
+            if (offset >= segment.baseOffset()) {
+                return offset < segment.baseOffset() + size(segment) ? segment : null;
+            }
+        }
+        return null;
+    }
+
+    private Segment createSegment(long baseOffset) throws IOException {
+        Files.createDirectories(dir);
+        String name = String.format("%020d", baseOffset);
+        Segment segment = new Segment(baseOffset, dir.resolve(name + SEGMENT_SUFFIX), dir.resolve(name + INDEX_SUFFIX));
+        if (!Files.exists(segment.logPath())) {
+            Files.createFile(segment.logPath());
+        }
+        segments.add(segment);
+        return segment;
+    }
+
+    private FileChannel channelFor(Segment segment) throws IOException {
+        if (activeChannel == null || !activeChannel.isOpen() || !segment.equals(activeChannelSegment)) {
+            closeChannel();
+            activeChannel = FileChannel.open(segment.logPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            activeChannelSegment = segment;
+        }
+        return activeChannel;
+    }
+
+    /**
+     * 段内区间 [position, position + length) 的只读视图；已封存段复用缓存的整段映射，
+     * 段长度与缓存不一致（段被删除后重建）时重新映射。
+     */
+    private ByteBuffer slice(Segment segment, long segmentSize, long position, long length) throws IOException {
+        if (length <= 0) {
+            return null;
+        }
+        if (segment.equals(active())) {
+            return map(segment, position, length);
+        }
+        MappedByteBuffer mapped = sealedMappings.get(segment);
+        if (mapped == null || mapped.capacity() != segmentSize) {
+            mapped = map(segment, 0L, segmentSize);
+            if (mapped == null) {
+                return null;
+            }
+            sealedMappings.put(segment, mapped);
+        }
+        return mapped.slice((int) position, (int) length);
+    }
+
+    int cachedMappings() {
+        return sealedMappings.size();
+    }
+
+    private MappedByteBuffer map(Segment segment, long position, long length) throws IOException {
+        if (length <= 0) {
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(segment.logPath(), StandardOpenOption.READ)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+        }
+    }
+
+    private Segment toSegment(Path file) {
+        String name = file.getFileName().toString();
+        if (!name.endsWith(SEGMENT_SUFFIX)) {
+            return null;
+        }
+        String base = name.substring(0, name.length() - SEGMENT_SUFFIX.length());
+        try {
+            return new Segment(Long.parseLong(base), file, dir.resolve(base + INDEX_SUFFIX));
+        } catch (NumberFormatException ignored) {
+            return null;
+        }
+    }
+
+    private static long size(Segment segment) throws IOException {
+        return Files.exists(segment.logPath()) ? Files.size(segment.logPath()) : 0L;
+    }
+
+    private void closeChannel() {
+        if (activeChannel == null) {
+            return;
+        }
+        try {
+            activeChannel.close();
+        } catch (IOException ex) {
+            log.debug("Cannot close chat segment channel dir={}", dir, ex);
+        }
+        activeChannel = null;
+        activeChannelSegment = null;
+    }
+}
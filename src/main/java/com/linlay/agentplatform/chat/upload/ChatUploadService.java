@@ -1,14 +1,16 @@
 package com.linlay.agentplatform.chat.upload;
 
+import com.linlay.agentplatform.chat.asset.ChatAssetAclIndex;
 import com.linlay.agentplatform.chat.asset.ChatDataPathService;
 import com.linlay.agentplatform.chat.history.ChatRecordStore;
+import com.linlay.agentplatform.config.properties.ChatStorageProperties;
 import com.linlay.agentplatform.model.api.UploadResponse;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.codec.multipart.FilePart;
-import org.springframework.core.io.buffer.DataBufferUtils;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
 import org.springframework.web.server.ResponseStatusException;
@@ -20,7 +22,6 @@ import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
-import java.security.MessageDigest;
 import java.text.Normalizer;
 import java.time.Instant;
 import java.util.HashMap;
@@ -31,6 +32,7 @@ import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
 import java.util.stream.Stream;
 
 @Service
@@ -41,47 +43,160 @@ public class ChatUploadService {
 
     private final ChatDataPathService chatDataPathService;
     private final ChatRecordStore chatRecordStore;
+    private final ChatAssetAclIndex chatAssetAclIndex;
+    private final long maxBytes;
+    private final long partialTtlMs;
+    private final ChatUploadSpool spool = new ChatUploadSpool();
     private final ConcurrentMap<String, Object> chatLocks = new ConcurrentHashMap<>();
 
     public ChatUploadService(ChatDataPathService chatDataPathService, ChatRecordStore chatRecordStore) {
+        this(chatDataPathService, chatRecordStore, null, null);
+    }
+
+    @Autowired
+    public ChatUploadService(
+            ChatDataPathService chatDataPathService,
+            ChatRecordStore chatRecordStore,
+            ChatAssetAclIndex chatAssetAclIndex,
+            ChatStorageProperties chatStorageProperties
+    ) {
+        ChatStorageProperties.UploadProperties uploadProperties = chatStorageProperties == null
+                ? new ChatStorageProperties.UploadProperties()
+                : chatStorageProperties.getUpload();
         this.chatDataPathService = chatDataPathService;
         this.chatRecordStore = chatRecordStore;
+        this.chatAssetAclIndex = chatAssetAclIndex;
+        this.maxBytes = uploadProperties.getMaxBytes();
+        this.partialTtlMs = uploadProperties.getPartialTtlMs();
     }
 
     public Mono<UploadResponse> upload(String requestId, String chatId, String sha256, FilePart filePart) {
+        return upload(requestId, chatId, sha256, filePart, null, null);
+    }
+
+    /**
+     * 流式上传：内容边接收边写入暂存文件并增量计算 SHA-256，只有最终移动和写 manifest 时才持有 chat 锁。
+     * <p>
+     * totalSizeBytes 非空时为分片续传：每片从 offset 处续写同一 requestId 的暂存文件，
+     * 未收齐时返回已接收字节数（{@code upload} 为空），收齐的那一片完成校验与落盘。
+     */
+    public Mono<UploadResponse> upload(
+            String rawRequestId,
+            String rawChatId,
+            String rawSha256,
+            FilePart filePart,
+            Long offset,
+            Long totalSizeBytes
+    ) {
         if (filePart == null) {
             return Mono.error(new IllegalArgumentException("file is required"));
         }
-        return DataBufferUtils.join(filePart.content())
-                .map(dataBuffer -> {
-                    byte[] bytes = new byte[dataBuffer.readableByteCount()];
-                    dataBuffer.read(bytes);
-                    DataBufferUtils.release(dataBuffer);
-                    return bytes;
-                })
-                .defaultIfEmpty(new byte[0])
-                .flatMap(bytes -> Mono.fromCallable(() -> uploadBytes(requestId, chatId, sha256, filePart, bytes))
-                        .subscribeOn(Schedulers.boundedElastic()));
+        String requestId;
+        String chatId;
+        try {
+            requestId = requireRequestId(rawRequestId);
+            validateChunk(rawChatId, offset, totalSizeBytes);
+            chatId = resolveChatId(rawChatId);
+        } catch (RuntimeException ex) {
+            return Mono.error(ex);
+        }
+        long startOffset = offset == null ? 0L : offset;
+        long limit = totalSizeBytes == null ? maxBytes : totalSizeBytes;
+        Supplier<RuntimeException> overLimit = totalSizeBytes == null
+                ? () -> new ResponseStatusException(HttpStatus.PAYLOAD_TOO_LARGE, "upload exceeds max size of " + maxBytes + " bytes")
+                : () -> new IllegalArgumentException("upload exceeds declared totalSizeBytes");
+        return Mono.fromCallable(() -> openSpool(requestId, chatId, startOffset))
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMap(session -> spool.write(session, filePart.content(), limit, overLimit)
+                        .then(Mono.fromCallable(() -> completeOrReport(session, requestId, chatId, rawSha256, filePart, totalSizeBytes))
+                                .subscribeOn(Schedulers.boundedElastic()))
+                        .doOnError(ex -> {
+                            if (totalSizeBytes == null || ex instanceof IllegalArgumentException || ex instanceof ResponseStatusException) {
+                                spool.discard(session);
+                            } else {
+                                // 分片传输中断时保留已写入的部分，客户端按已接收字节数续传
+                                spool.release(session);
+                            }
+                        })
+                        .doOnCancel(() -> spool.release(session)));
     }
 
-    private UploadResponse uploadBytes(String rawRequestId, String rawChatId, String rawSha256, FilePart filePart, byte[] bytes) {
-        String requestId = requireRequestId(rawRequestId);
-        String chatId = StringUtils.hasText(rawChatId)
-                ? chatDataPathService.normalizeChatId(rawChatId)
-                : UUID.randomUUID().toString();
+    /**
+     * 查询分片上传进度：已完成时返回完整结果，否则返回已接收字节数，客户端据此决定续传的 offset。
+     */
+    public Mono<UploadResponse> status(String rawRequestId, String rawChatId) {
+        return Mono.fromCallable(() -> {
+            String requestId = requireRequestId(rawRequestId);
+            if (!StringUtils.hasText(rawChatId)) {
+                throw new IllegalArgumentException("chatId is required");
+            }
+            String chatId = chatDataPathService.normalizeChatId(rawChatId);
+            Path chatDir = chatDataPathService.resolveChatDir(chatId);
+            ChatUploadManifestStore.StoredUpload existing = Files.isDirectory(chatDir)
+                    ? ChatUploadManifestStore.findByRequestId(chatDir, requestId).orElse(null)
+                    : null;
+            if (existing != null) {
+                return toUploadResponse(existing);
+            }
+            return new UploadResponse(requestId, chatId, null, spool.received(ChatUploadSpool.spoolPath(chatDir, requestId)));
+        }).subscribeOn(Schedulers.boundedElastic());
+    }
+
+    private ChatUploadSpool.Session openSpool(String requestId, String chatId, long offset) {
+        Path chatDir = ensureChatDir(chatId);
+        ensureChatRecord(chatId);
+        if (offset == 0) {
+            spool.purgeStale(ChatUploadSpool.spoolDir(chatDir), partialTtlMs, Instant.now().toEpochMilli());
+        }
+        try {
+            return spool.acquire(ChatUploadSpool.spoolPath(chatDir, requestId), offset);
+        } catch (ResponseStatusException ex) {
+            throw ex;
+        } catch (Exception ex) {
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Failed to prepare upload spool", ex);
+        }
+    }
+
+    private UploadResponse completeOrReport(
+            ChatUploadSpool.Session session,
+            String requestId,
+            String chatId,
+            String rawSha256,
+            FilePart filePart,
+            Long totalSizeBytes
+    ) {
+        if (totalSizeBytes != null && session.size() < totalSizeBytes) {
+            spool.release(session);
+            return new UploadResponse(requestId, chatId, null, session.size());
+        }
+        long sizeBytes = session.size();
+        String actualSha256 = spool.finish(session);
+        try {
+            return storeUpload(session.file(), requestId, chatId, rawSha256, filePart, sizeBytes, actualSha256);
+        } finally {
+            spool.discard(session);
+        }
+    }
+
+    private UploadResponse storeUpload(
+            Path spoolFile,
+            String requestId,
+            String chatId,
+            String rawSha256,
+            FilePart filePart,
+            long sizeBytes,
+            String actualSha256
+    ) {
         String sha256 = ChatUploadManifestStore.normalizeSha256(rawSha256);
         String originalName = originalFilename(filePart.filename());
         String mimeType = resolveMimeType(originalName, filePart.headers().getContentType());
         String type = classifyType(mimeType);
-        long sizeBytes = bytes.length;
-        String actualSha256 = sha256Hex(bytes);
         if (StringUtils.hasText(sha256) && !sha256.equalsIgnoreCase(actualSha256)) {
             throw new IllegalArgumentException("upload.sha256 does not match payload digest");
         }
 
         synchronized (lockFor(chatId)) {
             Path chatDir = ensureChatDir(chatId);
-            ensureChatRecord(chatId);
 
             ChatUploadManifestStore.StoredUpload existing = ChatUploadManifestStore.findByRequestId(chatDir, requestId)
                     .orElse(null);
@@ -102,14 +217,12 @@ public class ChatUploadService {
             if (!assetPath.startsWith(chatDir)) {
                 throw new IllegalArgumentException("upload target path is invalid");
             }
-            Path tempPath = assetPath.resolveSibling(assetPath.getFileName() + ".uploading");
             long now = Instant.now().toEpochMilli();
             try {
                 if (assetPath.getParent() != null) {
                     Files.createDirectories(assetPath.getParent());
                 }
-                Files.write(tempPath, bytes);
-                moveReplacing(tempPath, assetPath);
+                moveReplacing(spoolFile, assetPath);
                 ChatUploadManifestStore.StoredUpload stored = new ChatUploadManifestStore.StoredUpload(
                         requestId,
                         chatId,
@@ -125,25 +238,13 @@ public class ChatUploadService {
                         now
                 );
                 writeManifest(chatDir, stored);
+                if (chatAssetAclIndex != null) {
+                    chatAssetAclIndex.grant(chatId, chatDataPathService.toAssetUrl(chatId, relativePath));
+                }
                 return toUploadResponse(stored);
+            } catch (ResponseStatusException | IllegalArgumentException ex) {
+                throw ex;
             } catch (Exception ex) {
-                try {
-                    Files.deleteIfExists(tempPath);
-                } catch (Exception cleanupEx) {
-                    log.debug(
-                            "Failed to delete temporary upload file after store failure chatId={}, requestId={}, tempPath={}, fallback=ignore cleanup failure",
-                            chatId,
-                            requestId,
-                            tempPath,
-                            cleanupEx
-                    );
-                }
-                if (ex instanceof ResponseStatusException responseStatusException) {
-                    throw responseStatusException;
-                }
-                if (ex instanceof IllegalArgumentException illegalArgumentException) {
-                    throw illegalArgumentException;
-                }
                 throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Failed to store upload", ex);
             }
         }
@@ -191,6 +292,34 @@ public class ChatUploadService {
         }
     }
 
+    private String resolveChatId(String rawChatId) {
+        return StringUtils.hasText(rawChatId)
+                ? chatDataPathService.normalizeChatId(rawChatId)
+                : UUID.randomUUID().toString();
+    }
+
+    private void validateChunk(String rawChatId, Long offset, Long totalSizeBytes) {
+        if (offset != null && offset < 0) {
+            throw new IllegalArgumentException("offset must not be negative");
+        }
+        // 续传片只能写入首片生成的 chat：缺 chatId 会落到新生成的 chat 下，变成没有首片的孤儿暂存
+        if (offset != null && offset > 0 && !StringUtils.hasText(rawChatId)) {
+            throw new IllegalArgumentException("chatId is required when offset is set");
+        }
+        if (totalSizeBytes == null) {
+            if (offset != null && offset > 0) {
+                throw new IllegalArgumentException("totalSizeBytes is required when offset is set");
+            }
+            return;
+        }
+        if (totalSizeBytes < 0) {
+            throw new IllegalArgumentException("totalSizeBytes must not be negative");
+        }
+        if (maxBytes > 0 && totalSizeBytes > maxBytes) {
+            throw new ResponseStatusException(HttpStatus.PAYLOAD_TOO_LARGE, "upload exceeds max size of " + maxBytes + " bytes");
+        }
+    }
+
     private String requireRequestId(String rawRequestId) {
         if (!StringUtils.hasText(rawRequestId)) {
             throw new IllegalArgumentException("requestId is required");
@@ -349,20 +478,6 @@ public class ChatUploadService {
         return normalized.startsWith("image/") ? "image" : "file";
     }
 
-    private String sha256Hex(byte[] payload) {
-        try {
-            MessageDigest digest = MessageDigest.getInstance("SHA-256");
-            byte[] bytes = digest.digest(payload);
-            StringBuilder builder = new StringBuilder(bytes.length * 2);
-            for (byte value : bytes) {
-                builder.append(String.format("%02x", value & 0xff));
-            }
-            return builder.toString();
-        } catch (Exception ex) {
-            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Failed to compute upload digest", ex);
-        }
-    }
-
     private Object lockFor(String chatId) {
         return chatLocks.computeIfAbsent(chatId, ignored -> new Object());
     }
@@ -0,0 +1,233 @@
+package com.linlay.agentplatform.chat.upload;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * 上传内容的落盘暂存：按 requestId 写入 {@code <chatDir>/.uploads/spool/<hash>.part}，边写边更新 SHA-256。
+ * <p>
+ * 同一 requestId 的分片从上一片的结尾续写；已写入字节的摘要状态保存在内存里，
+ * 进程重启或上一片写入失败后摘要与文件长度对不上时，从磁盘重新计算一次。
+ * 同一时刻每个暂存文件只允许一个写入方。
+ */
+final class ChatUploadSpool {
+
+    private static final Logger log = LoggerFactory.getLogger(ChatUploadSpool.class);
+    static final String PART_SUFFIX = ".part";
+
+    private final ConcurrentMap<Path, Session> sessions = new ConcurrentHashMap<>();
+
+    static Path spoolDir(Path chatDir) {
+        return chatDir.resolve(".uploads").resolve("spool");
+    }
+
+    static Path spoolPath(Path chatDir, String requestId) {
+        byte[] hash = newDigest().digest(requestId.getBytes(StandardCharsets.UTF_8));
+        return spoolDir(chatDir).resolve(HexFormat.of().formatHex(hash, 0, 16) + PART_SUFFIX);
+    }
+
+    /**
+     * 占用暂存文件准备从 offset 处写入。offset 为 0 时丢弃已有内容重新开始，
+     * 否则必须等于已接收的字节数；并发写同一 requestId 或偏移不一致时返回 409。
+     */
+    Session acquire(Path file, long offset) throws IOException {
+        Session session = sessions.computeIfAbsent(file, Session::new);
+        synchronized (session) {
+            if (session.busy) {
+                throw new ResponseStatusException(HttpStatus.CONFLICT, "upload is already in progress for requestId");
+            }
+            Files.createDirectories(file.getParent());
+            if (offset == 0) {
+                Files.deleteIfExists(file);
+                session.digest = newDigest();
+                session.size = 0L;
+            } else {
+                long received = Files.isRegularFile(file) ? Files.size(file) : 0L;
+                if (offset != received) {
+                    throw new ResponseStatusException(
+                            HttpStatus.CONFLICT,
+                            "upload offset mismatch, expected offset " + received
+                    );
+                }
+                if (session.digest == null || session.size != received) {
+                    rehash(session);
+                }
+            }
+            session.busy = true;
+            return session;
+        }
+    }
+
+    /**
+     * 把内容追加到暂存文件末尾；超过 limit 时在接收过程中立即中止，不再继续读入后续数据。
+     */
+    Mono<Void> write(Session session, Flux<DataBuffer> content, long limit, Supplier<RuntimeException> overLimit) {
+        long position = session.size;
+        Flux<DataBuffer> digested = content.handle((buffer, sink) -> {
+            int readable = buffer.readableByteCount();
+            if (limit > 0 && session.size + readable > limit) {
+                DataBufferUtils.release(buffer);
+                sink.error(overLimit.get());
+                return;
+            }
+            try (DataBuffer.ByteBufferIterator iterator = buffer.readableByteBuffers()) {
+                while (iterator.hasNext()) {
+                    session.digest.update(iterator.next());
+                }
+            }
+            session.size += readable;
+            sink.next(buffer);
+        });
+        return Mono.using(
+                        () -> AsynchronousFileChannel.open(session.file, StandardOpenOption.CREATE, StandardOpenOption.WRITE),
+                        channel -> DataBufferUtils.write(digested, channel, position)
+                                .doOnNext(DataBufferUtils::release)
+                                .then(),
+                        this::closeQuietly
+                )
+                .doOnError(ignored -> session.digest = null);
+    }
+
+    /**
+     * 已写入内容的完整摘要；调用后摘要状态被消耗，会话应在暂存文件移走后 {@link #discard(Session)}。
+     */
+    String finish(Session session) {
+        return HexFormat.of().formatHex(session.digest.digest());
+    }
+
+    void release(Session session) {
+        synchronized (session) {
+            session.busy = false;
+        }
+    }
+
+    void discard(Session session) {
+        sessions.remove(session.file, session);
+        release(session);
+        deleteQuietly(session.file);
+    }
+
+    long received(Path file) {
+        try {
+            return Files.isRegularFile(file) ? Files.size(file) : 0L;
+        } catch (IOException ex) {
+            return 0L;
+        }
+    }
+
+    /**
+     * 删除超过 ttlMs 未更新且没有写入方的暂存文件。
+     */
+    void purgeStale(Path spoolDir, long ttlMs, long nowMs) {
+        if (ttlMs <= 0 || !Files.isDirectory(spoolDir)) {
+            return;
+        }
+        try (Stream<Path> files = Files.list(spoolDir)) {
+            files.filter(path -> path.getFileName().toString().endsWith(PART_SUFFIX))
+                    .filter(path -> isStale(path, ttlMs, nowMs))
+                    .forEach(path -> {
+                        Session session = sessions.get(path);
+                        if (session != null) {
+                            synchronized (session) {
+                                if (session.busy) {
+                                    return;
+                                }
+                                sessions.remove(path, session);
+                            }
+                        }
+                        deleteQuietly(path);
+                    });
+        } catch (IOException ex) {
+            log.debug("Failed to list upload spool dir={}, fallback=skip purge", spoolDir, ex);
+        }
+    }
+
+    private boolean isStale(Path path, long ttlMs, long nowMs) {
+        try {
+            return nowMs - Files.getLastModifiedTime(path).toMillis() > ttlMs;
+        } catch (IOException ex) {
+            return false;
+        }
+    }
+
+    private void rehash(Session session) throws IOException {
+        MessageDigest digest = newDigest();
+        long size = 0L;
+        if (Files.isRegularFile(session.file)) {
+            byte[] buffer = new byte[64 * 1024];
+            try (InputStream in = Files.newInputStream(session.file)) {
+                int read;
+                while ((read = in.read(buffer)) > 0) {
+                    digest.update(buffer, 0, read);
+                    size += read;
+                }
+            }
+        }
+        session.digest = digest;
+        session.size = size;
+    }
+
+    private void closeQuietly(AsynchronousFileChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException ex) {
+            log.debug("Failed to close upload spool channel", ex);
+        }
+    }
+
+    private void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException ex) {
+            log.debug("Failed to delete upload spool file={}, fallback=ignore cleanup failure", file, ex);
+        }
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException("SHA-256 is not available", ex);
+        }
+    }
+
+    static final class Session {
+        private final Path file;
+        private volatile MessageDigest digest;
+        private volatile long size;
+        private boolean busy;
+
+        private Session(Path file) {
+            this.file = file;
+        }
+
+        Path file() {
+            return file;
+        }
+
+        long size() {
+            return size;
+        }
+    }
+}
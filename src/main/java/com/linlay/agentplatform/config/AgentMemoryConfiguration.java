@@ -3,6 +3,7 @@ package com.linlay.agentplatform.config;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.linlay.agentplatform.memory.AgentMemoryService;
 import com.linlay.agentplatform.config.properties.AgentMemoryProperties;
+import com.linlay.agentplatform.memory.embedding.EmbeddingCacheRepository;
 import com.linlay.agentplatform.memory.embedding.EmbeddingService;
 import com.linlay.agentplatform.llm.ProviderRegistryService;
 import com.linlay.agentplatform.memory.store.AgentMemoryStore;
@@ -13,14 +14,32 @@ import org.springframework.web.reactive.function.client.WebClient;
 @Configuration
 public class AgentMemoryConfiguration {
 
+    @Bean
+    public EmbeddingCacheRepository embeddingCacheRepository(
+            AgentMemoryService agentMemoryService,
+            AgentMemoryProperties agentMemoryProperties
+    ) {
+        return new EmbeddingCacheRepository(
+                agentMemoryService,
+                agentMemoryProperties.getEmbeddingCache().getMaxPersistedEntries()
+        );
+    }
+
     @Bean
     public EmbeddingService embeddingService(
             ProviderRegistryService providerRegistryService,
             AgentMemoryProperties agentMemoryProperties,
             WebClient.Builder loggingWebClientBuilder,
-            ObjectMapper objectMapper
+            ObjectMapper objectMapper,
+            EmbeddingCacheRepository embeddingCacheRepository
     ) {
-        return new EmbeddingService(providerRegistryService, agentMemoryProperties, loggingWebClientBuilder, objectMapper);
+        return new EmbeddingService(
+                providerRegistryService,
+                agentMemoryProperties,
+                loggingWebClientBuilder,
+                objectMapper,
+                embeddingCacheRepository
+        );
     }
 
     @Bean
@@ -179,17 +179,18 @@ public class DirectoryWatchService implements DisposableBean {
         registerRoot(roots, RootKind.MCP_SERVERS, mcpProperties.getRegistry().getExternalDir(), true,
                 changedPath -> {
                     mcpServerRegistryService.refreshServers();
-                    CatalogDiff diff = mcpToolSyncService.refreshTools();
-                    if (diff.isEmpty()) {
-                        return;
-                    }
-                    Set<String> affectedAgents = agentRegistry.findAgentIdsByTools(diff.changedKeys());
-                    agentRegistry.refreshAgentsByIds(affectedAgents, "mcp-registry-directory");
+                    mcpToolSyncService.refreshTools(diff -> {
+                        Set<String> affectedAgents = agentRegistry.findAgentIdsByTools(diff.changedKeys());
+                        agentRegistry.refreshAgentsByIds(affectedAgents, "mcp-registry-directory");
+                    });
                 });
         registerRoot(roots, RootKind.VIEWPORT_SERVERS, viewportServerProperties.getRegistry().getExternalDir(), true,
                 changedPath -> {
                     viewportServerRegistryService.refreshServers();
-                    viewportSyncService.refreshViewports();
+                    // agent 不缓存视口（渲染时按 key 实时查询），每个 server 发布后只需记录这一步的变化
+                    viewportSyncService.refreshViewports(diff -> log.info(
+                            "Viewport catalog updated by viewport-registry-directory, changedKeys={}",
+                            diff.changedKeys()));
                 });
         registerRoot(roots, RootKind.SCHEDULES, scheduleProperties.getExternalDir(), true,
                 changedPath -> scheduledQueryOrchestrator.refreshAndReconcile());
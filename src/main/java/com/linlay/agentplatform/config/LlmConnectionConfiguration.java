@@ -25,20 +25,17 @@ public class LlmConnectionConfiguration {
     private static final Logger log = LoggerFactory.getLogger(LlmConnectionConfiguration.class);
     private static final String LLM_WIRETAP_LOGGER = "com.linlay.agentplatform.llm.wiretap";
 
+    /**
+     * embedding、MCP 等辅助 HTTP 调用共用的 WebClient.Builder。LLM 流式调用不走这里，
+     * 而是使用 ProviderWebClientCache 中按 provider 独立的连接池。
+     */
     @Bean
-    public ConnectionProvider llmConnectionProvider() {
-        return ConnectionProvider.builder("llm-pool")
+    public WebClient.Builder loggingWebClientBuilder(LlmInteractionLogProperties logProperties) {
+        HttpClient httpClient = HttpClient.create(ConnectionProvider.builder("http-pool")
                 .maxIdleTime(Duration.ofSeconds(30))
                 .maxLifeTime(Duration.ofMinutes(5))
                 .evictInBackground(Duration.ofSeconds(30))
-                .build();
-    }
-
-    @Bean
-    public WebClient.Builder loggingWebClientBuilder(
-            LlmInteractionLogProperties logProperties,
-            ConnectionProvider llmConnectionProvider) {
-        HttpClient httpClient = HttpClient.create(llmConnectionProvider);
+                .build());
         if (logProperties.isEnabled() && !logProperties.isMaskSensitive()) {
             httpClient = httpClient.wiretap(LLM_WIRETAP_LOGGER, LogLevel.DEBUG, AdvancedByteBufFormat.TEXTUAL);
         }
@@ -24,7 +24,8 @@ public final class OpenAiCompatConfigSupport {
             "tools",
             "tool_choice",
             "parallel_tool_calls",
-            "response_format"
+            "response_format",
+            "prompt_cache_key"
     );
 
     private OpenAiCompatConfigSupport() {
@@ -68,10 +69,18 @@ public final class OpenAiCompatConfigSupport {
             whenReasoningEnabled = asNullableMap(whenReasoningEnabledNode);
             validateReservedRequestKeys(whenReasoningEnabled, scope);
         }
-        if (whenReasoningEnabled == null) {
+        PromptCacheMode promptCache = null;
+        JsonNode promptCacheNode = node.path("promptCache");
+        if (!promptCacheNode.isMissingNode() && !promptCacheNode.isNull()) {
+            if (!promptCacheNode.isTextual()) {
+                throw new IllegalStateException("Invalid OpenAI compat request.promptCache in " + scope + ": must be a string");
+            }
+            promptCache = PromptCacheMode.valueOf(promptCacheNode.asText().trim().toUpperCase(Locale.ROOT));
+        }
+        if (whenReasoningEnabled == null && promptCache == null) {
             return null;
         }
-        return new OpenAiCompatRequestConfig(whenReasoningEnabled);
+        return new OpenAiCompatRequestConfig(whenReasoningEnabled, promptCache);
     }
 
     private static OpenAiCompatResponseConfig parseResponse(JsonNode node, String scope) {
@@ -138,7 +147,11 @@ public final class OpenAiCompatConfigSupport {
             return base;
         }
         Map<String, Object> merged = mergeNullableMaps(base.whenReasoningEnabled(), override.whenReasoningEnabled());
-        return merged == null ? null : new OpenAiCompatRequestConfig(merged);
+        PromptCacheMode promptCache = override.promptCache() != null ? override.promptCache() : base.promptCache();
+        if (merged == null && promptCache == null) {
+            return null;
+        }
+        return new OpenAiCompatRequestConfig(merged, promptCache);
     }
 
     private static OpenAiCompatResponseConfig mergeResponse(OpenAiCompatResponseConfig base, OpenAiCompatResponseConfig override) {
@@ -4,12 +4,16 @@ import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.Map;
 
-public record OpenAiCompatRequestConfig(Map<String, Object> whenReasoningEnabled) {
+public record OpenAiCompatRequestConfig(Map<String, Object> whenReasoningEnabled, PromptCacheMode promptCache) {
 
     public OpenAiCompatRequestConfig {
         whenReasoningEnabled = immutableNullableMap(whenReasoningEnabled);
     }
 
+    public OpenAiCompatRequestConfig(Map<String, Object> whenReasoningEnabled) {
+        this(whenReasoningEnabled, null);
+    }
+
     private static Map<String, Object> immutableNullableMap(Map<String, Object> source) {
         if (source == null) {
             return null;
@@ -0,0 +1,7 @@
+package com.linlay.agentplatform.config;
+
+public enum PromptCacheMode {
+    NONE,
+    CACHE_CONTROL,
+    PROMPT_CACHE_KEY
+}
@@ -10,12 +10,23 @@ public record ProviderConfig(
         String baseUrl,
         String apiKey,
         String defaultModel,
-        Map<ModelProtocol, ProtocolConfig> protocols
+        Map<ModelProtocol, ProtocolConfig> protocols,
+        ProviderPoolConfig pool
 ) {
     public ProviderConfig {
         protocols = protocols == null ? Map.of() : Map.copyOf(new LinkedHashMap<>(protocols));
     }
 
+    public ProviderConfig(
+            String key,
+            String baseUrl,
+            String apiKey,
+            String defaultModel,
+            Map<ModelProtocol, ProtocolConfig> protocols
+    ) {
+        this(key, baseUrl, apiKey, defaultModel, protocols, null);
+    }
+
     public ProtocolConfig getProtocol(ModelProtocol protocol) {
         if (protocol == null) {
             return null;
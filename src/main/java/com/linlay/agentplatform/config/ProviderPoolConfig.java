@@ -0,0 +1,12 @@
+package com.linlay.agentplatform.config;
+
+/**
+ * provider 级连接池覆盖项；为 null 的字段沿用 {@code agent.providers.pool} 的全局默认值。
+ */
+public record ProviderPoolConfig(
+        Integer maxConnections,
+        Integer pendingAcquireMaxCount,
+        Long pendingAcquireTimeoutMs,
+        Long maxIdleTimeMs
+) {
+}
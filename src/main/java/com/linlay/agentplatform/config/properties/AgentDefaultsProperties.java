@@ -37,12 +37,14 @@ public class AgentDefaultsProperties {
                 new Budget.Scope(
                         budget.getModel().getMaxCalls(),
                         budget.getModel().getTimeoutMs(),
-                        budget.getModel().getRetryCount()
+                        budget.getModel().getRetryCount(),
+                        budget.getModel().getMaxConcurrency()
                 ),
                 new Budget.Scope(
                         budget.getTool().getMaxCalls(),
                         budget.getTool().getTimeoutMs(),
-                        budget.getTool().getRetryCount()
+                        budget.getTool().getRetryCount(),
+                        budget.getTool().getMaxConcurrency()
                 )
         );
     }
@@ -61,8 +63,8 @@ public class AgentDefaultsProperties {
 
     public static class BudgetProperties {
         private long runTimeoutMs = 300_000L;
-        private final ScopeProperties model = new ScopeProperties(30, 120_000L, 0);
-        private final ScopeProperties tool = new ScopeProperties(20, 120_000L, 0);
+        private final ScopeProperties model = new ScopeProperties(30, 120_000L, 0, 1);
+        private final ScopeProperties tool = new ScopeProperties(20, 120_000L, 0, 4);
 
         public long getRunTimeoutMs() {
             return runTimeoutMs;
@@ -85,14 +87,16 @@ public class AgentDefaultsProperties {
         private int maxCalls;
         private long timeoutMs;
         private int retryCount;
+        private int maxConcurrency;
 
         public ScopeProperties() {
         }
 
-        public ScopeProperties(int maxCalls, long timeoutMs, int retryCount) {
+        public ScopeProperties(int maxCalls, long timeoutMs, int retryCount, int maxConcurrency) {
             this.maxCalls = maxCalls;
             this.timeoutMs = timeoutMs;
             this.retryCount = retryCount;
+            this.maxConcurrency = maxConcurrency;
         }
 
         public int getMaxCalls() {
@@ -118,6 +122,14 @@ public class AgentDefaultsProperties {
         public void setRetryCount(int retryCount) {
             this.retryCount = retryCount;
         }
+
+        public int getMaxConcurrency() {
+            return maxConcurrency;
+        }
+
+        public void setMaxConcurrency(int maxConcurrency) {
+            this.maxConcurrency = maxConcurrency;
+        }
     }
 
     public static class ReactProperties {
@@ -19,6 +19,9 @@ public class AgentMemoryProperties {
     private Storage storage = new Storage();
     private AutoRemember autoRemember = new AutoRemember();
     private Remember remember = new Remember();
+    private VectorIndex vectorIndex = new VectorIndex();
+    private EmbeddingCache embeddingCache = new EmbeddingCache();
+    private EmbeddingBatch embeddingBatch = new EmbeddingBatch();
 
     public String getDbFileName() {
         return dbFileName;
@@ -132,6 +135,30 @@ public class AgentMemoryProperties {
         this.remember = remember == null ? new Remember() : remember;
     }
 
+    public VectorIndex getVectorIndex() {
+        return vectorIndex;
+    }
+
+    public void setVectorIndex(VectorIndex vectorIndex) {
+        this.vectorIndex = vectorIndex == null ? new VectorIndex() : vectorIndex;
+    }
+
+    public EmbeddingCache getEmbeddingCache() {
+        return embeddingCache;
+    }
+
+    public void setEmbeddingCache(EmbeddingCache embeddingCache) {
+        this.embeddingCache = embeddingCache == null ? new EmbeddingCache() : embeddingCache;
+    }
+
+    public EmbeddingBatch getEmbeddingBatch() {
+        return embeddingBatch;
+    }
+
+    public void setEmbeddingBatch(EmbeddingBatch embeddingBatch) {
+        this.embeddingBatch = embeddingBatch == null ? new EmbeddingBatch() : embeddingBatch;
+    }
+
     public static class Storage {
 
         private String dir = "runtime/memory";
@@ -179,4 +206,97 @@ public class AgentMemoryProperties {
             this.timeoutMs = timeoutMs;
         }
     }
+
+    public static class VectorIndex {
+
+        private boolean enabled = true;
+        private int exactSearchThreshold = 1_000;
+        private int m = 16;
+        private int efConstruction = 100;
+        private int efSearch = 64;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public int getExactSearchThreshold() {
+            return exactSearchThreshold;
+        }
+
+        public void setExactSearchThreshold(int exactSearchThreshold) {
+            this.exactSearchThreshold = exactSearchThreshold;
+        }
+
+        public int getM() {
+            return m;
+        }
+
+        public void setM(int m) {
+            this.m = m;
+        }
+
+        public int getEfConstruction() {
+            return efConstruction;
+        }
+
+        public void setEfConstruction(int efConstruction) {
+            this.efConstruction = efConstruction;
+        }
+
+        public int getEfSearch() {
+            return efSearch;
+        }
+
+        public void setEfSearch(int efSearch) {
+            this.efSearch = efSearch;
+        }
+    }
+
+    public static class EmbeddingCache {
+
+        private int maxEntries = 10_000;
+        private int maxPersistedEntries = 100_000;
+
+        public int getMaxEntries() {
+            return maxEntries;
+        }
+
+        public void setMaxEntries(int maxEntries) {
+            this.maxEntries = maxEntries;
+        }
+
+        public int getMaxPersistedEntries() {
+            return maxPersistedEntries;
+        }
+
+        public void setMaxPersistedEntries(int maxPersistedEntries) {
+            this.maxPersistedEntries = maxPersistedEntries;
+        }
+    }
+
+    public static class EmbeddingBatch {
+
+        private long windowMs = 10L;
+        private int maxSize = 64;
+
+        public long getWindowMs() {
+            return windowMs;
+        }
+
+        public void setWindowMs(long windowMs) {
+            this.windowMs = windowMs;
+        }
+
+        public int getMaxSize() {
+            return maxSize;
+        }
+
+        public void setMaxSize(int maxSize) {
+            this.maxSize = maxSize;
+        }
+    }
 }
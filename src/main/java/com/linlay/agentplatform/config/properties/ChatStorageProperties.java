@@ -9,7 +9,15 @@ public class ChatStorageProperties {
     private int k = 20;
     private String charset = "UTF-8";
     private java.util.List<String> actionTools = java.util.List.of();
+    private int maxOpenHistories = 256;
+    private int snapshotCacheSize = 64;
+    private int assetAclCacheSize = 1024;
+    private long assetAclNegativeTtlMs = 10_000L;
+    private String engine = "jsonl";
+    private long segmentMaxBytes = 4L * 1024 * 1024;
     private IndexProperties index = new IndexProperties();
+    private PersistenceProperties persistence = new PersistenceProperties();
+    private UploadProperties upload = new UploadProperties();
 
     public String getDir() {
         return dir;
@@ -43,6 +51,54 @@ public class ChatStorageProperties {
         this.actionTools = actionTools == null ? java.util.List.of() : java.util.List.copyOf(actionTools);
     }
 
+    public int getMaxOpenHistories() {
+        return maxOpenHistories;
+    }
+
+    public void setMaxOpenHistories(int maxOpenHistories) {
+        this.maxOpenHistories = maxOpenHistories;
+    }
+
+    public int getSnapshotCacheSize() {
+        return snapshotCacheSize;
+    }
+
+    public void setSnapshotCacheSize(int snapshotCacheSize) {
+        this.snapshotCacheSize = snapshotCacheSize;
+    }
+
+    public int getAssetAclCacheSize() {
+        return assetAclCacheSize;
+    }
+
+    public void setAssetAclCacheSize(int assetAclCacheSize) {
+        this.assetAclCacheSize = assetAclCacheSize;
+    }
+
+    public long getAssetAclNegativeTtlMs() {
+        return assetAclNegativeTtlMs;
+    }
+
+    public void setAssetAclNegativeTtlMs(long assetAclNegativeTtlMs) {
+        this.assetAclNegativeTtlMs = assetAclNegativeTtlMs;
+    }
+
+    public String getEngine() {
+        return engine;
+    }
+
+    public void setEngine(String engine) {
+        this.engine = engine;
+    }
+
+    public long getSegmentMaxBytes() {
+        return segmentMaxBytes;
+    }
+
+    public void setSegmentMaxBytes(long segmentMaxBytes) {
+        this.segmentMaxBytes = segmentMaxBytes;
+    }
+
     public IndexProperties getIndex() {
         return index;
     }
@@ -51,9 +107,30 @@ public class ChatStorageProperties {
         this.index = index == null ? new IndexProperties() : index;
     }
 
+    public PersistenceProperties getPersistence() {
+        return persistence;
+    }
+
+    public void setPersistence(PersistenceProperties persistence) {
+        this.persistence = persistence == null ? new PersistenceProperties() : persistence;
+    }
+
+    public UploadProperties getUpload() {
+        return upload;
+    }
+
+    public void setUpload(UploadProperties upload) {
+        this.upload = upload == null ? new UploadProperties() : upload;
+    }
+
     public static class IndexProperties {
         private String sqliteFile = "chats.db";
         private boolean autoRebuildOnIncompatibleSchema = true;
+        private int readerPoolSize = 4;
+        private long mmapSizeBytes = 64L * 1024 * 1024;
+        private int busyTimeoutMs = 5000;
+        private int defaultPageSize = 50;
+        private int maxPageSize = 200;
 
         public String getSqliteFile() {
             return sqliteFile;
@@ -70,5 +147,96 @@ public class ChatStorageProperties {
         public void setAutoRebuildOnIncompatibleSchema(boolean autoRebuildOnIncompatibleSchema) {
             this.autoRebuildOnIncompatibleSchema = autoRebuildOnIncompatibleSchema;
         }
+
+        public int getReaderPoolSize() {
+            return readerPoolSize;
+        }
+
+        public void setReaderPoolSize(int readerPoolSize) {
+            this.readerPoolSize = readerPoolSize;
+        }
+
+        public long getMmapSizeBytes() {
+            return mmapSizeBytes;
+        }
+
+        public void setMmapSizeBytes(long mmapSizeBytes) {
+            this.mmapSizeBytes = mmapSizeBytes;
+        }
+
+        public int getBusyTimeoutMs() {
+            return busyTimeoutMs;
+        }
+
+        public void setBusyTimeoutMs(int busyTimeoutMs) {
+            this.busyTimeoutMs = busyTimeoutMs;
+        }
+
+        public int getDefaultPageSize() {
+            return defaultPageSize;
+        }
+
+        public void setDefaultPageSize(int defaultPageSize) {
+            this.defaultPageSize = defaultPageSize;
+        }
+
+        public int getMaxPageSize() {
+            return maxPageSize;
+        }
+
+        public void setMaxPageSize(int maxPageSize) {
+            this.maxPageSize = maxPageSize;
+        }
+    }
+
+    public static class PersistenceProperties {
+        private long flushIntervalMs = 50;
+        private int batchSize = 64;
+        private int maxPendingPerChat = 1024;
+
+        public long getFlushIntervalMs() {
+            return flushIntervalMs;
+        }
+
+        public void setFlushIntervalMs(long flushIntervalMs) {
+            this.flushIntervalMs = flushIntervalMs;
+        }
+
+        public int getBatchSize() {
+            return batchSize;
+        }
+
+        public void setBatchSize(int batchSize) {
+            this.batchSize = batchSize;
+        }
+
+        public int getMaxPendingPerChat() {
+            return maxPendingPerChat;
+        }
+
+        public void setMaxPendingPerChat(int maxPendingPerChat) {
+            this.maxPendingPerChat = maxPendingPerChat;
+        }
+    }
+
+    public static class UploadProperties {
+        private long maxBytes = 1024L * 1024 * 1024;
+        private long partialTtlMs = 24L * 60 * 60 * 1000;
+
+        public long getMaxBytes() {
+            return maxBytes;
+        }
+
+        public void setMaxBytes(long maxBytes) {
+            this.maxBytes = maxBytes;
+        }
+
+        public long getPartialTtlMs() {
+            return partialTtlMs;
+        }
+
+        public void setPartialTtlMs(long partialTtlMs) {
+            this.partialTtlMs = partialTtlMs;
+        }
     }
 }
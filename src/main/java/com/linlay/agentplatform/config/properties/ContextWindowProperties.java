@@ -0,0 +1,102 @@
+package com.linlay.agentplatform.config.properties;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@ConfigurationProperties(prefix = "agent.context")
+public class ContextWindowProperties {
+
+    private boolean enabled = true;
+    private int defaultMaxInputTokens = 32_000;
+    private int reserveTokens = 1_024;
+    private double historyRatio = 0.5d;
+    private int toolResultMaxTokens = 4_000;
+    private Summary summary = new Summary();
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public int getDefaultMaxInputTokens() {
+        return defaultMaxInputTokens;
+    }
+
+    public void setDefaultMaxInputTokens(int defaultMaxInputTokens) {
+        this.defaultMaxInputTokens = defaultMaxInputTokens;
+    }
+
+    public int getReserveTokens() {
+        return reserveTokens;
+    }
+
+    public void setReserveTokens(int reserveTokens) {
+        this.reserveTokens = reserveTokens;
+    }
+
+    public double getHistoryRatio() {
+        return historyRatio;
+    }
+
+    public void setHistoryRatio(double historyRatio) {
+        this.historyRatio = historyRatio;
+    }
+
+    public int getToolResultMaxTokens() {
+        return toolResultMaxTokens;
+    }
+
+    public void setToolResultMaxTokens(int toolResultMaxTokens) {
+        this.toolResultMaxTokens = toolResultMaxTokens;
+    }
+
+    public Summary getSummary() {
+        return summary;
+    }
+
+    public void setSummary(Summary summary) {
+        this.summary = summary == null ? new Summary() : summary;
+    }
+
+    public static class Summary {
+
+        private boolean enabled = true;
+        private String modelKey;
+        private int maxInputTokens = 16_000;
+        private int maxChars = 4_000;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public String getModelKey() {
+            return modelKey;
+        }
+
+        public void setModelKey(String modelKey) {
+            this.modelKey = modelKey;
+        }
+
+        public int getMaxInputTokens() {
+            return maxInputTokens;
+        }
+
+        public void setMaxInputTokens(int maxInputTokens) {
+            this.maxInputTokens = maxInputTokens;
+        }
+
+        public int getMaxChars() {
+            return maxChars;
+        }
+
+        public void setMaxChars(int maxChars) {
+            this.maxChars = maxChars;
+        }
+    }
+}
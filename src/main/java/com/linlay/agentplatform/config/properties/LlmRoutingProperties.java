@@ -0,0 +1,98 @@
+package com.linlay.agentplatform.config.properties;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@ConfigurationProperties(prefix = "agent.llm.routing")
+public class LlmRoutingProperties {
+
+    private boolean enabled = true;
+    private int windowSize = 50;
+    private long windowMs = 60_000L;
+    private int minSamples = 5;
+    private double errorRateThreshold = 0.5d;
+    private long slowTtftMs = 30_000L;
+    private long firstTokenTimeoutMs = 0L;
+    private boolean hedgeEnabled = false;
+    private long hedgeMinDelayMs = 500L;
+    private long hedgeMaxDelayMs = 10_000L;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public int getWindowSize() {
+        return windowSize;
+    }
+
+    public void setWindowSize(int windowSize) {
+        this.windowSize = windowSize;
+    }
+
+    public long getWindowMs() {
+        return windowMs;
+    }
+
+    public void setWindowMs(long windowMs) {
+        this.windowMs = windowMs;
+    }
+
+    public int getMinSamples() {
+        return minSamples;
+    }
+
+    public void setMinSamples(int minSamples) {
+        this.minSamples = minSamples;
+    }
+
+    public double getErrorRateThreshold() {
+        return errorRateThreshold;
+    }
+
+    public void setErrorRateThreshold(double errorRateThreshold) {
+        this.errorRateThreshold = errorRateThreshold;
+    }
+
+    public long getSlowTtftMs() {
+        return slowTtftMs;
+    }
+
+    public void setSlowTtftMs(long slowTtftMs) {
+        this.slowTtftMs = slowTtftMs;
+    }
+
+    public long getFirstTokenTimeoutMs() {
+        return firstTokenTimeoutMs;
+    }
+
+    public void setFirstTokenTimeoutMs(long firstTokenTimeoutMs) {
+        this.firstTokenTimeoutMs = firstTokenTimeoutMs;
+    }
+
+    public boolean isHedgeEnabled() {
+        return hedgeEnabled;
+    }
+
+    public void setHedgeEnabled(boolean hedgeEnabled) {
+        this.hedgeEnabled = hedgeEnabled;
+    }
+
+    public long getHedgeMinDelayMs() {
+        return hedgeMinDelayMs;
+    }
+
+    public void setHedgeMinDelayMs(long hedgeMinDelayMs) {
+        this.hedgeMinDelayMs = hedgeMinDelayMs;
+    }
+
+    public long getHedgeMaxDelayMs() {
+        return hedgeMaxDelayMs;
+    }
+
+    public void setHedgeMaxDelayMs(long hedgeMaxDelayMs) {
+        this.hedgeMaxDelayMs = hedgeMaxDelayMs;
+    }
+}
@@ -13,6 +13,7 @@ public class McpProperties implements RemoteServerProperties {
     private int connectTimeoutMs = 3_000;
     private int retry = 1;
     private long reconnectIntervalMs = 60_000;
+    private int syncConcurrency = 4;
     private Registry registry = new Registry();
 
     public boolean isEnabled() {
@@ -55,6 +56,14 @@ public class McpProperties implements RemoteServerProperties {
         this.reconnectIntervalMs = reconnectIntervalMs;
     }
 
+    public int getSyncConcurrency() {
+        return syncConcurrency;
+    }
+
+    public void setSyncConcurrency(int syncConcurrency) {
+        this.syncConcurrency = syncConcurrency;
+    }
+
     public Registry getRegistry() {
         return registry;
     }
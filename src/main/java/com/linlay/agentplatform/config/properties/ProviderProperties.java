@@ -7,6 +7,7 @@ public class ProviderProperties {
 
     private String externalDir = "runtime/registries/providers";
     private long refreshIntervalMs = 30_000L;
+    private Pool pool = new Pool();
 
     public String getExternalDir() {
         return externalDir;
@@ -23,4 +24,70 @@ public class ProviderProperties {
     public void setRefreshIntervalMs(long refreshIntervalMs) {
         this.refreshIntervalMs = refreshIntervalMs;
     }
+
+    public Pool getPool() {
+        return pool;
+    }
+
+    public void setPool(Pool pool) {
+        this.pool = pool == null ? new Pool() : pool;
+    }
+
+    public static class Pool {
+
+        private int maxConnections = 64;
+        private int pendingAcquireMaxCount = 256;
+        private long pendingAcquireTimeoutMs = 45_000L;
+        private long maxIdleTimeMs = 30_000L;
+        private long maxLifeTimeMs = 300_000L;
+        private long evictIntervalMs = 30_000L;
+
+        public int getMaxConnections() {
+            return maxConnections;
+        }
+
+        public void setMaxConnections(int maxConnections) {
+            this.maxConnections = maxConnections;
+        }
+
+        public int getPendingAcquireMaxCount() {
+            return pendingAcquireMaxCount;
+        }
+
+        public void setPendingAcquireMaxCount(int pendingAcquireMaxCount) {
+            this.pendingAcquireMaxCount = pendingAcquireMaxCount;
+        }
+
+        public long getPendingAcquireTimeoutMs() {
+            return pendingAcquireTimeoutMs;
+        }
+
+        public void setPendingAcquireTimeoutMs(long pendingAcquireTimeoutMs) {
+            this.pendingAcquireTimeoutMs = pendingAcquireTimeoutMs;
+        }
+
+        public long getMaxIdleTimeMs() {
+            return maxIdleTimeMs;
+        }
+
+        public void setMaxIdleTimeMs(long maxIdleTimeMs) {
+            this.maxIdleTimeMs = maxIdleTimeMs;
+        }
+
+        public long getMaxLifeTimeMs() {
+            return maxLifeTimeMs;
+        }
+
+        public void setMaxLifeTimeMs(long maxLifeTimeMs) {
+            this.maxLifeTimeMs = maxLifeTimeMs;
+        }
+
+        public long getEvictIntervalMs() {
+            return evictIntervalMs;
+        }
+
+        public void setEvictIntervalMs(long evictIntervalMs) {
+            this.evictIntervalMs = evictIntervalMs;
+        }
+    }
 }
@@ -0,0 +1,89 @@
+package com.linlay.agentplatform.config.properties;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@ConfigurationProperties(prefix = "agent.admission")
+public class RunAdmissionProperties {
+
+    private boolean enabled = true;
+    private int maxConcurrentRuns = 200;
+    private int maxRunsPerAgent = 50;
+    private int maxRunsPerSubject = 8;
+    private int maxQueuedRuns = 500;
+    private long queueTimeoutMs = 30_000L;
+    private long retryAfterSeconds = 5L;
+    private int interactiveWeight = 4;
+    private int scheduledWeight = 1;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public int getMaxConcurrentRuns() {
+        return maxConcurrentRuns;
+    }
+
+    public void setMaxConcurrentRuns(int maxConcurrentRuns) {
+        this.maxConcurrentRuns = maxConcurrentRuns;
+    }
+
+    public int getMaxRunsPerAgent() {
+        return maxRunsPerAgent;
+    }
+
+    public void setMaxRunsPerAgent(int maxRunsPerAgent) {
+        this.maxRunsPerAgent = maxRunsPerAgent;
+    }
+
+    public int getMaxRunsPerSubject() {
+        return maxRunsPerSubject;
+    }
+
+    public void setMaxRunsPerSubject(int maxRunsPerSubject) {
+        this.maxRunsPerSubject = maxRunsPerSubject;
+    }
+
+    public int getMaxQueuedRuns() {
+        return maxQueuedRuns;
+    }
+
+    public void setMaxQueuedRuns(int maxQueuedRuns) {
+        this.maxQueuedRuns = maxQueuedRuns;
+    }
+
+    public long getQueueTimeoutMs() {
+        return queueTimeoutMs;
+    }
+
+    public void setQueueTimeoutMs(long queueTimeoutMs) {
+        this.queueTimeoutMs = queueTimeoutMs;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+
+    public void setRetryAfterSeconds(long retryAfterSeconds) {
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public int getInteractiveWeight() {
+        return interactiveWeight;
+    }
+
+    public void setInteractiveWeight(int interactiveWeight) {
+        this.interactiveWeight = interactiveWeight;
+    }
+
+    public int getScheduledWeight() {
+        return scheduledWeight;
+    }
+
+    public void setScheduledWeight(int scheduledWeight) {
+        this.scheduledWeight = scheduledWeight;
+    }
+}
@@ -0,0 +1,26 @@
+package com.linlay.agentplatform.config.properties;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@ConfigurationProperties(prefix = "agent.run-executor")
+public class RunExecutorProperties {
+
+    private int maxConcurrentRuns = 1000;
+    private int maxQueuedRuns = 10_000;
+
+    public int getMaxConcurrentRuns() {
+        return maxConcurrentRuns;
+    }
+
+    public void setMaxConcurrentRuns(int maxConcurrentRuns) {
+        this.maxConcurrentRuns = maxConcurrentRuns;
+    }
+
+    public int getMaxQueuedRuns() {
+        return maxQueuedRuns;
+    }
+
+    public void setMaxQueuedRuns(int maxQueuedRuns) {
+        this.maxQueuedRuns = maxQueuedRuns;
+    }
+}
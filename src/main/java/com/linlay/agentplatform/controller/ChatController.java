@@ -2,12 +2,22 @@ package com.linlay.agentplatform.controller;
 
 import com.linlay.agentplatform.model.api.ApiResponse;
 import com.linlay.agentplatform.model.api.ChatDetailResponse;
+import com.linlay.agentplatform.model.api.ChatPageResponse;
 import com.linlay.agentplatform.model.api.ChatSummaryResponse;
 import com.linlay.agentplatform.model.api.MarkChatReadRequest;
 import com.linlay.agentplatform.model.api.MarkChatReadResponse;
 import com.linlay.agentplatform.security.ChatImageTokenHelper;
 import com.linlay.agentplatform.chat.history.ChatRecordStore;
 import jakarta.validation.Valid;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
@@ -15,13 +25,21 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Flux;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.List;
 
 @RestController
 @RequestMapping("/api")
 public class ChatController {
 
+    private static final Logger log = LoggerFactory.getLogger(ChatController.class);
+    private static final MediaType JSONL = MediaType.parseMediaType("application/x-ndjson");
+    private static final int EXPORT_BUFFER_SIZE = 8192;
+
     private final ChatRecordStore chatRecordStore;
     private final ChatImageTokenHelper chatImageTokenHelper;
 
@@ -38,6 +56,16 @@ public class ChatController {
         return ApiResponse.success(chatRecordStore.listChats(lastRunId, agentKey));
     }
 
+    @GetMapping("/chats/page")
+    public ApiResponse<ChatPageResponse> chatPage(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Long sinceVersion,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) String agentKey
+    ) {
+        return ApiResponse.success(chatRecordStore.listChatPage(cursor, sinceVersion, limit, agentKey));
+    }
+
     @PostMapping("/read")
     public ApiResponse<MarkChatReadResponse> markRead(@Valid @RequestBody MarkChatReadRequest request) {
         ChatRecordStore.MarkChatReadResult result = chatRecordStore.markChatRead(request.chatId());
@@ -48,9 +76,11 @@ public class ChatController {
     public ApiResponse<ChatDetailResponse> chat(
             @RequestParam String chatId,
             @RequestParam(defaultValue = "false") boolean includeRawMessages,
+            @RequestParam(required = false) Integer lastRuns,
+            @RequestParam(required = false) String beforeRunId,
             ServerWebExchange exchange
     ) {
-        ChatDetailResponse detail = chatRecordStore.loadChat(chatId, includeRawMessages);
+        ChatDetailResponse detail = chatRecordStore.loadChat(chatId, includeRawMessages, lastRuns, beforeRunId);
         String chatImageToken = chatImageTokenHelper.issueChatImageToken(exchange, detail.chatId());
         return ApiResponse.success(new ChatDetailResponse(
                 detail.chatId(),
@@ -60,7 +90,40 @@ public class ChatController {
                 detail.events(),
                 detail.plan(),
                 detail.artifact(),
-                detail.references()
+                detail.references(),
+                detail.hasMoreRuns(),
+                detail.nextBeforeRunId()
         ));
     }
+
+    /**
+     * 以附件形式下载 chat 的完整历史 JSONL；先导出到临时文件，响应写完后删除。
+     */
+    @GetMapping("/chat/export")
+    public ResponseEntity<Flux<DataBuffer>> exportChat(@RequestParam String chatId) throws IOException {
+        Path exported = Files.createTempFile("chat-export-", ".jsonl");
+        try {
+            chatRecordStore.exportChat(chatId, exported);
+        } catch (RuntimeException ex) {
+            deleteQuietly(exported);
+            throw ex;
+        }
+        Flux<DataBuffer> body = DataBufferUtils.read(exported, DefaultDataBufferFactory.sharedInstance, EXPORT_BUFFER_SIZE)
+                .doFinally(signal -> deleteQuietly(exported));
+        return ResponseEntity.ok()
+                .contentType(JSONL)
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                        .filename(chatId + ".jsonl")
+                        .build()
+                        .toString())
+                .body(body);
+    }
+
+    private void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException ex) {
+            log.warn("Cannot delete chat export temp file={}", path, ex);
+        }
+    }
 }
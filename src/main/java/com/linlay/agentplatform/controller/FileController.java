@@ -8,14 +8,14 @@ import com.linlay.agentplatform.model.api.UploadResponse;
 import com.linlay.agentplatform.security.ChatImageTokenService;
 import com.linlay.agentplatform.security.ChatImageTokenService.VerifyResult;
 import com.linlay.agentplatform.chat.asset.ChatAssetAccessService;
+import com.linlay.agentplatform.chat.asset.ChatAssetValidators;
 import com.linlay.agentplatform.chat.asset.ChatDataPathService;
 import com.linlay.agentplatform.chat.upload.ChatUploadService;
 import com.linlay.agentplatform.util.LoggingSanitizer;
 import com.linlay.agentplatform.util.ResourcePathNormalizer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.core.io.Resource;
-import org.springframework.core.io.UrlResource;
+import org.springframework.core.io.FileSystemResource;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
@@ -37,6 +37,8 @@ import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.LinkOption;
 import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.LinkedHashMap;
 import java.util.Map;
 
@@ -46,6 +48,7 @@ public class FileController {
 
     private static final Logger log = LoggerFactory.getLogger(FileController.class);
     private static final String CACHE_CONTROL_NO_STORE = "private, no-store";
+    private static final long TICKET_CACHE_MAX_AGE_SECONDS = 3600L;
 
     private static final Map<String, String> EXTRA_MIME_TYPES = Map.ofEntries(
             Map.entry(".svg", "image/svg+xml"),
@@ -74,6 +77,7 @@ public class FileController {
     private final boolean resourceTicketEnabled;
     private final LoggingAgentProperties loggingAgentProperties;
     private final ChatUploadService chatUploadService;
+    private final ChatAssetValidators chatAssetValidators;
 
     public FileController(
             ChatDataPathService chatDataPathService,
@@ -81,7 +85,8 @@ public class FileController {
             ChatImageTokenService chatImageTokenService,
             ChatAssetAccessService chatAssetAccessService,
             LoggingAgentProperties loggingAgentProperties,
-            ChatUploadService chatUploadService
+            ChatUploadService chatUploadService,
+            ChatAssetValidators chatAssetValidators
     ) {
         this.dataDir = chatDataPathService.dataDir();
         this.chatImageTokenService = chatImageTokenService;
@@ -89,6 +94,7 @@ public class FileController {
         this.resourceTicketEnabled = chatImageTokenProperties.isResourceTicketEnabled();
         this.loggingAgentProperties = loggingAgentProperties;
         this.chatUploadService = chatUploadService;
+        this.chatAssetValidators = chatAssetValidators;
     }
 
     @GetMapping("/resource")
@@ -136,7 +142,7 @@ public class FileController {
         }
 
         try {
-            return Mono.just(buildFileResponse(filePath, filename, download));
+            return Mono.just(buildFileResponse(filePath, filename, download, ticketVerifyResult));
         } catch (Exception e) {
             return Mono.just(jsonResponse(HttpStatus.INTERNAL_SERVER_ERROR, ApiResponse.failure(500, "Failed to read file")));
         }
@@ -147,14 +153,30 @@ public class FileController {
             @RequestPart("requestId") String requestId,
             @RequestPart(value = "chatId", required = false) String chatId,
             @RequestPart(value = "sha256", required = false) String sha256,
+            @RequestPart(value = "offset", required = false) String offset,
+            @RequestPart(value = "totalSizeBytes", required = false) String totalSizeBytes,
             @RequestPart("file") FilePart file,
             ServerWebExchange exchange
     ) {
-        return chatUploadService.upload(requestId, chatId, sha256, file)
+        Long chunkOffset;
+        Long chunkTotal;
+        try {
+            chunkOffset = parseOptionalLong("offset", offset);
+            chunkTotal = parseOptionalLong("totalSizeBytes", totalSizeBytes);
+        } catch (IllegalArgumentException ex) {
+            return Mono.error(ex);
+        }
+        return chatUploadService.upload(requestId, chatId, sha256, file, chunkOffset, chunkTotal)
                 .map(response -> {
                     exchange.getAttributes().put(ApiRequestLoggingWebFilter.ATTR_REQUEST_ID, response.requestId());
                     Map<String, Object> bodySummary = new LinkedHashMap<>();
                     bodySummary.put("chatId", response.chatId());
+                    if (response.upload() == null) {
+                        bodySummary.put("receivedBytes", response.receivedBytes());
+                        bodySummary.put("totalSizeBytes", chunkTotal);
+                        exchange.getAttributes().put(ApiRequestLoggingWebFilter.ATTR_BODY_SUMMARY, bodySummary);
+                        return ApiResponse.success(response);
+                    }
                     bodySummary.put("name", response.upload().name());
                     bodySummary.put("sizeBytes", response.upload().sizeBytes());
                     bodySummary.put("mimeType", response.upload().mimeType());
@@ -167,6 +189,25 @@ public class FileController {
                 });
     }
 
+    @GetMapping("/upload")
+    public Mono<ApiResponse<UploadResponse>> uploadStatus(
+            @RequestParam("requestId") String requestId,
+            @RequestParam("chatId") String chatId
+    ) {
+        return chatUploadService.status(requestId, chatId).map(ApiResponse::success);
+    }
+
+    private Long parseOptionalLong(String name, String raw) {
+        if (!StringUtils.hasText(raw)) {
+            return null;
+        }
+        try {
+            return Long.parseLong(raw.trim());
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException(name + " must be an integer");
+        }
+    }
+
     private String guessContentType(String filename) {
         int dotIndex = filename.lastIndexOf('.');
         if (dotIndex >= 0) {
@@ -180,8 +221,18 @@ public class FileController {
         return guessed != null ? guessed : "application/octet-stream";
     }
 
-    private ResponseEntity<?> buildFileResponse(Path filePath, String filename, boolean download) throws Exception {
-        Resource resource = new UrlResource(filePath.toUri());
+    /**
+     * 文件响应带强 ETag 与 Last-Modified，条件请求由 ResponseEntity 处理器统一返回 304；
+     * Range 请求由资源写出器返回 206，Netty 传输下整文件与单区间都走零拷贝。
+     * 带有效资源票据的请求 URL 随票据变化，可以在票据有效期内被客户端私有缓存。
+     */
+    private ResponseEntity<?> buildFileResponse(
+            Path filePath,
+            String filename,
+            boolean download,
+            VerifyResult ticketVerifyResult
+    ) throws Exception {
+        ChatAssetValidators.Validators validators = chatAssetValidators.resolve(dataDir, filePath);
         String contentType = guessContentType(filename);
         boolean isImage = contentType.startsWith("image/");
         String disposition;
@@ -197,8 +248,21 @@ public class FileController {
         return ResponseEntity.ok()
                 .header(HttpHeaders.CONTENT_TYPE, contentType)
                 .header(HttpHeaders.CONTENT_DISPOSITION, disposition)
-                .header(HttpHeaders.CACHE_CONTROL, CACHE_CONTROL_NO_STORE)
-                .body(resource);
+                .header(HttpHeaders.CACHE_CONTROL, cacheControl(ticketVerifyResult))
+                .eTag(validators.eTag())
+                .lastModified(validators.lastModifiedMs())
+                .body(new FileSystemResource(filePath));
+    }
+
+    private String cacheControl(VerifyResult ticketVerifyResult) {
+        if (ticketVerifyResult == null || ticketVerifyResult.claims() == null || ticketVerifyResult.claims().expiresAt() == null) {
+            return CACHE_CONTROL_NO_STORE;
+        }
+        long remainingSeconds = Duration.between(Instant.now(), ticketVerifyResult.claims().expiresAt()).getSeconds();
+        if (remainingSeconds <= 0) {
+            return CACHE_CONTROL_NO_STORE;
+        }
+        return "private, max-age=" + Math.min(remainingSeconds, TICKET_CACHE_MAX_AGE_SECONDS);
     }
 
     private ResponseEntity<?> forbiddenToken(String message, String errorCode) {
@@ -1,8 +1,6 @@
 package com.linlay.agentplatform.controller;
 
-import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.linlay.agentplatform.config.ApiRequestLoggingWebFilter;
 import com.linlay.agentplatform.model.api.ApiResponse;
 import com.linlay.agentplatform.model.api.InterruptRequest;
@@ -13,16 +11,20 @@ import com.linlay.agentplatform.model.api.SteerResponse;
 import com.linlay.agentplatform.model.api.SubmitRequest;
 import com.linlay.agentplatform.model.api.SubmitResponse;
 import com.linlay.agentplatform.security.ChatImageTokenHelper;
+import com.linlay.agentplatform.security.JwksJwtVerifier;
+import com.linlay.agentplatform.engine.exception.RunAdmissionRejectedException;
 import com.linlay.agentplatform.engine.query.ActiveRunService;
 import com.linlay.agentplatform.engine.query.AgentQueryService;
+import com.linlay.agentplatform.engine.query.RunAdmissionService;
 import com.linlay.agentplatform.engine.runtime.tool.FrontendSubmitCoordinator;
+import com.linlay.agentplatform.stream.model.StreamSseEvent;
 import com.linlay.agentplatform.stream.service.SseFlushWriter;
 import jakarta.validation.Valid;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
-import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.http.server.reactive.ServerHttpResponse;
 import org.springframework.util.StringUtils;
 import org.springframework.web.bind.annotation.PostMapping;
@@ -42,7 +44,6 @@ import java.util.Map;
 public class QueryController {
 
     private static final Logger log = LoggerFactory.getLogger(QueryController.class);
-    private static final String SSE_EVENT_MESSAGE = "message";
     private static final String SSE_DONE_SENTINEL = "[DONE]";
 
     private final AgentQueryService agentQueryService;
@@ -50,6 +51,7 @@ public class QueryController {
     private final FrontendSubmitCoordinator frontendSubmitCoordinator;
     private final ActiveRunService activeRunService;
     private final ChatImageTokenHelper chatImageTokenHelper;
+    private final RunAdmissionService runAdmissionService;
     private final ObjectMapper objectMapper;
 
     public QueryController(
@@ -58,6 +60,7 @@ public class QueryController {
             FrontendSubmitCoordinator frontendSubmitCoordinator,
             ActiveRunService activeRunService,
             ChatImageTokenHelper chatImageTokenHelper,
+            RunAdmissionService runAdmissionService,
             ObjectMapper objectMapper
     ) {
         this.agentQueryService = agentQueryService;
@@ -65,6 +68,7 @@ public class QueryController {
         this.frontendSubmitCoordinator = frontendSubmitCoordinator;
         this.activeRunService = activeRunService;
         this.chatImageTokenHelper = chatImageTokenHelper;
+        this.runAdmissionService = runAdmissionService;
         this.objectMapper = objectMapper;
     }
 
@@ -74,38 +78,15 @@ public class QueryController {
             ServerHttpResponse response,
             ServerWebExchange exchange
     ) {
+        JwksJwtVerifier.JwtPrincipal principal;
+        RunAdmissionService.Ticket ticket;
         try {
-            AgentQueryService.QuerySession session = agentQueryService.prepare(
-                    request,
-                    chatImageTokenHelper.resolvePrincipal(exchange)
+            principal = chatImageTokenHelper.resolvePrincipal(exchange);
+            ticket = new RunAdmissionService.Ticket(
+                    agentQueryService.resolveAgentKey(request),
+                    principal == null ? null : principal.subject(),
+                    RunAdmissionService.Source.INTERACTIVE
             );
-            exchange.getAttributes().put(ApiRequestLoggingWebFilter.ATTR_REQUEST_ID, session.request().requestId());
-            exchange.getAttributes().put(ApiRequestLoggingWebFilter.ATTR_RUN_ID, session.request().runId());
-            Map<String, Object> bodySummary = new LinkedHashMap<>();
-            bodySummary.put("chatId", session.request().chatId());
-            if (StringUtils.hasText(session.request().agentKey())) {
-                bodySummary.put("agentKey", session.request().agentKey());
-            }
-            if (StringUtils.hasText(session.request().teamId())) {
-                bodySummary.put("teamId", session.request().teamId());
-            }
-            bodySummary.put("requestId", session.request().requestId());
-            bodySummary.put("runId", session.request().runId());
-            if (session.request().stream() != null) {
-                bodySummary.put("stream", session.request().stream());
-            }
-            bodySummary.put("messageChars", session.request().message() == null ? 0 : session.request().message().length());
-            exchange.getAttributes().put(ApiRequestLoggingWebFilter.ATTR_BODY_SUMMARY, bodySummary);
-            String chatImageToken = chatImageTokenHelper.issueChatImageToken(exchange, session.request().chatId());
-            Flux<ServerSentEvent<String>> stream = agentQueryService.stream(session);
-            if (StringUtils.hasText(chatImageToken)) {
-                stream = stream.map(event -> attachChatImageTokenForChatStart(event, chatImageToken));
-            }
-            stream = stream.concatWith(Flux.just(ServerSentEvent.<String>builder()
-                    .event(SSE_EVENT_MESSAGE)
-                    .data(SSE_DONE_SENTINEL)
-                    .build()));
-            return sseFlushWriter.write(response, stream);
         } catch (IllegalArgumentException ex) {
             log.warn("Reject /api/query before SSE start: {}", ex.getMessage());
             return writeJsonFailure(response, HttpStatus.BAD_REQUEST, ApiResponse.failure(HttpStatus.BAD_REQUEST.value(), ex.getMessage()));
@@ -117,6 +98,17 @@ public class QueryController {
                     ApiResponse.failure(HttpStatus.INTERNAL_SERVER_ERROR.value(), "Internal server error")
             );
         }
+        return runAdmissionService.acquire(ticket)
+                .flatMap(permit -> startQuery(request, principal, permit, response, exchange))
+                .onErrorResume(RunAdmissionRejectedException.class, ex -> {
+                    log.warn("Reject /api/query by admission control agentKey={}: {}", ticket.agentKey(), ex.getMessage());
+                    response.getHeaders().set(HttpHeaders.RETRY_AFTER, String.valueOf(ex.retryAfterSeconds()));
+                    return writeJsonFailure(
+                            response,
+                            HttpStatus.TOO_MANY_REQUESTS,
+                            ApiResponse.failure(HttpStatus.TOO_MANY_REQUESTS.value(), ex.getMessage())
+                    );
+                });
     }
 
     @PostMapping("/submit")
@@ -184,40 +176,63 @@ public class QueryController {
         ));
     }
 
-    private ServerSentEvent<String> attachChatImageTokenForChatStart(ServerSentEvent<String> event, String chatImageToken) {
-        if (event == null || !StringUtils.hasText(event.data())) {
-            return event;
-        }
+    private Mono<Void> startQuery(
+            QueryRequest request,
+            JwksJwtVerifier.JwtPrincipal principal,
+            RunAdmissionService.Permit permit,
+            ServerHttpResponse response,
+            ServerWebExchange exchange
+    ) {
         try {
-            JsonNode root = objectMapper.readTree(event.data());
-            if (!(root instanceof ObjectNode objectNode)) {
-                return event;
+            AgentQueryService.QuerySession session = agentQueryService.prepare(request, principal);
+            exchange.getAttributes().put(ApiRequestLoggingWebFilter.ATTR_REQUEST_ID, session.request().requestId());
+            exchange.getAttributes().put(ApiRequestLoggingWebFilter.ATTR_RUN_ID, session.request().runId());
+            Map<String, Object> bodySummary = new LinkedHashMap<>();
+            bodySummary.put("chatId", session.request().chatId());
+            if (StringUtils.hasText(session.request().agentKey())) {
+                bodySummary.put("agentKey", session.request().agentKey());
             }
-            if (!"chat.start".equals(objectNode.path("type").asText())) {
-                return event;
+            if (StringUtils.hasText(session.request().teamId())) {
+                bodySummary.put("teamId", session.request().teamId());
             }
-            objectNode.put("chatImageToken", chatImageToken);
-            return rebuildEvent(event, objectNode);
-        } catch (Exception ignored) {
-            return event;
+            bodySummary.put("requestId", session.request().requestId());
+            bodySummary.put("runId", session.request().runId());
+            if (session.request().stream() != null) {
+                bodySummary.put("stream", session.request().stream());
+            }
+            bodySummary.put("messageChars", session.request().message() == null ? 0 : session.request().message().length());
+            exchange.getAttributes().put(ApiRequestLoggingWebFilter.ATTR_BODY_SUMMARY, bodySummary);
+            String chatImageToken = chatImageTokenHelper.issueChatImageToken(principal, session.request().chatId());
+            Flux<StreamSseEvent> stream = agentQueryService.stream(session);
+            if (StringUtils.hasText(chatImageToken)) {
+                stream = stream.map(event -> attachChatImageTokenForChatStart(event, chatImageToken));
+            }
+            stream = stream.concatWith(Flux.just(StreamSseEvent.raw(StreamSseEvent.EVENT_MESSAGE, SSE_DONE_SENTINEL)))
+                    .doFinally(signalType -> permit.release());
+            return sseFlushWriter.write(response, stream)
+                    .doFinally(signalType -> permit.release());
+        } catch (IllegalArgumentException ex) {
+            permit.release();
+            log.warn("Reject /api/query before SSE start: {}", ex.getMessage());
+            return writeJsonFailure(response, HttpStatus.BAD_REQUEST, ApiResponse.failure(HttpStatus.BAD_REQUEST.value(), ex.getMessage()));
+        } catch (Exception ex) {
+            permit.release();
+            log.error("Fail /api/query before SSE start", ex);
+            return writeJsonFailure(
+                    response,
+                    HttpStatus.INTERNAL_SERVER_ERROR,
+                    ApiResponse.failure(HttpStatus.INTERNAL_SERVER_ERROR.value(), "Internal server error")
+            );
         }
     }
 
-    private ServerSentEvent<String> rebuildEvent(ServerSentEvent<String> original, ObjectNode data) {
-        ServerSentEvent.Builder<String> builder = ServerSentEvent.builder(data.toString());
-        if (StringUtils.hasText(original.event())) {
-            builder.event(original.event());
-        }
-        if (StringUtils.hasText(original.id())) {
-            builder.id(original.id());
-        }
-        if (StringUtils.hasText(original.comment())) {
-            builder.comment(original.comment());
-        }
-        if (original.retry() != null) {
-            builder.retry(original.retry());
+    private StreamSseEvent attachChatImageTokenForChatStart(StreamSseEvent event, String chatImageToken) {
+        if (event == null || !"chat.start".equals(event.type())) {
+            return event;
         }
-        return builder.build();
+        Map<String, Object> data = new LinkedHashMap<>(event.data());
+        data.put("chatImageToken", chatImageToken);
+        return event.withData(data);
     }
 
     private Mono<Void> writeJsonFailure(
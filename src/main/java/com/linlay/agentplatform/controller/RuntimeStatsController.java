@@ -0,0 +1,49 @@
+package com.linlay.agentplatform.controller;
+
+import com.linlay.agentplatform.chat.history.ChatEventPersistenceQueue;
+import com.linlay.agentplatform.engine.query.RunAdmissionService;
+import com.linlay.agentplatform.engine.runtime.AgentRunExecutor;
+import com.linlay.agentplatform.llm.LlmService;
+import com.linlay.agentplatform.model.api.ApiResponse;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 运行时指标快照。工程未引入 micrometer，各组件的计数器统一从这里以 JSON 暴露，供外部监控轮询。
+ */
+@RestController
+@RequestMapping("/api")
+public class RuntimeStatsController {
+
+    private final AgentRunExecutor agentRunExecutor;
+    private final RunAdmissionService runAdmissionService;
+    private final LlmService llmService;
+    private final ChatEventPersistenceQueue chatEventPersistenceQueue;
+
+    public RuntimeStatsController(
+            AgentRunExecutor agentRunExecutor,
+            RunAdmissionService runAdmissionService,
+            LlmService llmService,
+            ChatEventPersistenceQueue chatEventPersistenceQueue
+    ) {
+        this.agentRunExecutor = agentRunExecutor;
+        this.runAdmissionService = runAdmissionService;
+        this.llmService = llmService;
+        this.chatEventPersistenceQueue = chatEventPersistenceQueue;
+    }
+
+    @GetMapping("/runtime/stats")
+    public ApiResponse<Map<String, Object>> stats() {
+        Map<String, Object> data = new LinkedHashMap<>();
+        data.put("runExecutor", agentRunExecutor.stats());
+        data.put("runAdmission", runAdmissionService.stats());
+        data.put("llmConnectionPools", llmService.connectionPoolStats());
+        data.put("llmRoutes", llmService.routeStats());
+        data.put("chatEventPersistence", chatEventPersistenceQueue.stats());
+        return ApiResponse.success(data);
+    }
+}
@@ -1,6 +1,7 @@
 package com.linlay.agentplatform.engine;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.linlay.agentplatform.engine.context.ContextWindowManager;
 import com.linlay.agentplatform.engine.definition.Agent;
 import com.linlay.agentplatform.engine.definition.AgentControl;
 import com.linlay.agentplatform.engine.definition.AgentDefinition;
@@ -9,6 +10,7 @@ import com.linlay.agentplatform.engine.mode.OneshotMode;
 import com.linlay.agentplatform.engine.mode.PlanExecuteMode;
 import com.linlay.agentplatform.engine.mode.ReactMode;
 import com.linlay.agentplatform.engine.mode.StageSettings;
+import com.linlay.agentplatform.engine.runtime.AgentRunExecutor;
 import com.linlay.agentplatform.engine.runtime.AgentRuntimeMode;
 import com.linlay.agentplatform.engine.runtime.AgentRunLifecycle;
 import com.linlay.agentplatform.engine.runtime.AgentRunSnapshotLogger;
@@ -16,6 +18,7 @@ import com.linlay.agentplatform.engine.sandbox.ContainerHubSandboxService;
 import com.linlay.agentplatform.engine.runtime.ExecutionContext;
 import com.linlay.agentplatform.engine.runtime.RunControl;
 import com.linlay.agentplatform.engine.runtime.RunInputBroker;
+import com.linlay.agentplatform.engine.runtime.RunPreludeTimings;
 import com.linlay.agentplatform.engine.runtime.SkillPromptBundle;
 import com.linlay.agentplatform.engine.runtime.TextBlockIdAssigner;
 import com.linlay.agentplatform.engine.runtime.tool.ToolExecutionService;
@@ -53,7 +56,6 @@ import org.slf4j.LoggerFactory;
 import org.springframework.util.StringUtils;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.FluxSink;
-import reactor.core.scheduler.Schedulers;
 
 import java.util.ArrayList;
 import java.util.LinkedHashMap;
@@ -62,6 +64,7 @@ import java.util.Locale;
 import java.util.Map;
 import java.nio.file.Path;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 public class DefinitionDrivenAgent implements Agent {
 
@@ -88,6 +91,8 @@ public class DefinitionDrivenAgent implements Agent {
     private final AgentRunSnapshotLogger snapshotLogger;
     private final AgentRunLifecycle runLifecycle;
     private final RuntimeContextPromptService runtimeContextPromptService;
+    private final AgentRunExecutor agentRunExecutor;
+    private final ContextWindowManager contextWindowManager;
 
     public DefinitionDrivenAgent(
             AgentDefinition definition,
@@ -146,8 +151,99 @@ public class DefinitionDrivenAgent implements Agent {
             ContainerHubSandboxService containerHubSandboxService,
             RuntimeContextPromptService runtimeContextPromptService,
             AgentDefaultsProperties agentDefaultsProperties
+    ) {
+        this(
+                definition,
+                llmService,
+                toolRegistry,
+                toolFileRegistryService,
+                objectMapper,
+                chatWindowMemoryStore,
+                frontendSubmitCoordinator,
+                skillRegistryService,
+                agentMemoryService,
+                agentMemoryStore,
+                agentMemoryProperties,
+                globalMemoryRequestService,
+                loggingAgentProperties,
+                toolInvoker,
+                activeRunService,
+                containerHubSandboxService,
+                runtimeContextPromptService,
+                agentDefaultsProperties,
+                null
+        );
+    }
+
+    public DefinitionDrivenAgent(
+            AgentDefinition definition,
+            LlmService llmService,
+            ToolRegistry toolRegistry,
+            ToolFileRegistryService toolFileRegistryService,
+            ObjectMapper objectMapper,
+            ChatStorageStore chatWindowMemoryStore,
+            FrontendSubmitCoordinator frontendSubmitCoordinator,
+            SkillRegistryService skillRegistryService,
+            AgentMemoryService agentMemoryService,
+            AgentMemoryStore agentMemoryStore,
+            AgentMemoryProperties agentMemoryProperties,
+            GlobalMemoryRequestService globalMemoryRequestService,
+            LoggingAgentProperties loggingAgentProperties,
+            ToolInvoker toolInvoker,
+            ActiveRunService activeRunService,
+            ContainerHubSandboxService containerHubSandboxService,
+            RuntimeContextPromptService runtimeContextPromptService,
+            AgentDefaultsProperties agentDefaultsProperties,
+            AgentRunExecutor agentRunExecutor
+    ) {
+        this(
+                definition,
+                llmService,
+                toolRegistry,
+                toolFileRegistryService,
+                objectMapper,
+                chatWindowMemoryStore,
+                frontendSubmitCoordinator,
+                skillRegistryService,
+                agentMemoryService,
+                agentMemoryStore,
+                agentMemoryProperties,
+                globalMemoryRequestService,
+                loggingAgentProperties,
+                toolInvoker,
+                activeRunService,
+                containerHubSandboxService,
+                runtimeContextPromptService,
+                agentDefaultsProperties,
+                agentRunExecutor,
+                null
+        );
+    }
+
+    public DefinitionDrivenAgent(
+            AgentDefinition definition,
+            LlmService llmService,
+            ToolRegistry toolRegistry,
+            ToolFileRegistryService toolFileRegistryService,
+            ObjectMapper objectMapper,
+            ChatStorageStore chatWindowMemoryStore,
+            FrontendSubmitCoordinator frontendSubmitCoordinator,
+            SkillRegistryService skillRegistryService,
+            AgentMemoryService agentMemoryService,
+            AgentMemoryStore agentMemoryStore,
+            AgentMemoryProperties agentMemoryProperties,
+            GlobalMemoryRequestService globalMemoryRequestService,
+            LoggingAgentProperties loggingAgentProperties,
+            ToolInvoker toolInvoker,
+            ActiveRunService activeRunService,
+            ContainerHubSandboxService containerHubSandboxService,
+            RuntimeContextPromptService runtimeContextPromptService,
+            AgentDefaultsProperties agentDefaultsProperties,
+            AgentRunExecutor agentRunExecutor,
+            ContextWindowManager contextWindowManager
     ) {
         this.definition = definition;
+        this.agentRunExecutor = agentRunExecutor == null ? AgentRunExecutor.fallback() : agentRunExecutor;
         this.toolRegistry = toolRegistry;
         this.toolFileRegistryService = toolFileRegistryService;
         this.chatWindowMemoryStore = chatWindowMemoryStore;
@@ -160,6 +256,7 @@ public class DefinitionDrivenAgent implements Agent {
         this.activeRunService = activeRunService;
         this.containerHubSandboxService = containerHubSandboxService;
         this.runtimeContextPromptService = runtimeContextPromptService;
+        this.contextWindowManager = contextWindowManager;
         this.localToolDescriptorsByName = loadLocalToolDescriptors();
         ToolResolution toolResolution = resolveConfiguredTools(definition.tools());
         this.configuredToolsByName = toolResolution.tools();
@@ -184,7 +281,13 @@ public class DefinitionDrivenAgent implements Agent {
                 loggingAgentProperties,
                 toolInvoker
         );
-        this.services = new OrchestratorServices(llmService, toolExecutionService, objectMapper, agentDefaultsProperties);
+        this.services = new OrchestratorServices(
+                llmService,
+                toolExecutionService,
+                objectMapper,
+                agentDefaultsProperties,
+                contextWindowManager
+        );
         this.runLifecycle = new AgentRunLifecycle(definition.id(), containerHubSandboxService);
     }
 
@@ -373,54 +476,67 @@ public class DefinitionDrivenAgent implements Agent {
         snapshotLogger.logRunSnapshot(request);
 
         return Flux.defer(() -> {
-                    List<ChatMessage> historyMessages = loadHistoryMessages(request.chatId());
-                    ChatStorageTypes.PlanState latestPlanState = loadLatestPlanState(request.chatId());
-                    ChatStorageTypes.SystemSnapshot latestSystem = loadLatestSystemSnapshot(request.chatId());
-                    String runId = resolveRunId(request);
-                    RunControl runControl = activeRunService == null
-                            ? new RunControl()
-                            : activeRunService.findControl(runId).orElseGet(RunControl::new);
-                    runControl.enqueueQuery(new RunInputBroker.QueryEnvelope(request.requestId(), request.message()));
-                    ExecutionContext[] contextHolder = new ExecutionContext[1];
-                    TurnTraceWriter trace = new TurnTraceWriter(
-                            chatWindowMemoryStore,
-                            () -> buildSystemSnapshot(request, contextHolder[0]),
-                            request,
-                            runId,
-                            latestSystem
+                    RunPreludeTimings timings = new RunPreludeTimings();
+                    CompletableFuture<RunHistory> historyFuture = CompletableFuture.supplyAsync(
+                            () -> timings.time("history", () -> loadRunHistory(request.chatId())),
+                            agentRunExecutor.preludeExecutor()
                     );
-                    SkillPromptBundle skillPromptBundle = resolveSkillPrompts();
-                    String runtimeContextPrompt = buildRuntimeContextPrompt(request);
-                    ExecutionContext context = ExecutionContext.builder(definition, request)
-                            .historyMessages(historyMessages)
-                            .baseSystemPrompt(buildBaseSystemPrompt())
-                            .runtimeContextPrompt(runtimeContextPrompt)
-                            .memoryPrompt(buildMemoryPrompt())
-                            .skillCatalogPrompt(skillPromptBundle.catalogPrompt())
-                            .resolvedSkillsById(skillPromptBundle.resolvedSkillsById())
-                            .resolvedToolDescriptorsByName(configuredToolDescriptorsByName)
-                            .localNativeToolsByName(localNativeToolsByName)
-                            .runControl(runControl)
-                            .build();
-                    contextHolder[0] = context;
-                    if (latestPlanState != null) {
-                        context.initializePlan(latestPlanState.planId, toPlanTasks(latestPlanState.tasks));
+                    CompletableFuture<ExecutionContext.SandboxSession> sandboxFuture = prefetchSandbox(request, timings);
+                    ExecutionContext[] contextHolder = new ExecutionContext[1];
+                    try {
+                        String runId = resolveRunId(request);
+                        RunControl runControl = activeRunService == null
+                                ? new RunControl()
+                                : activeRunService.findControl(runId).orElseGet(RunControl::new);
+                        runControl.enqueueQuery(new RunInputBroker.QueryEnvelope(request.requestId(), request.message()));
+                        SkillPromptBundle skillPromptBundle = timings.time("skills", this::resolveSkillPrompts);
+                        String runtimeContextPrompt = timings.time("prompt", () -> buildRuntimeContextPrompt(request));
+                        RunHistory history = historyFuture.join();
+                        TurnTraceWriter trace = new TurnTraceWriter(
+                                chatWindowMemoryStore,
+                                () -> buildSystemSnapshot(request, contextHolder[0]),
+                                request,
+                                runId,
+                                history.latestSystem()
+                        );
+                        ExecutionContext context = ExecutionContext.builder(definition, request)
+                                .historyMessages(history.messages())
+                                .baseSystemPrompt(buildBaseSystemPrompt())
+                                .runtimeContextPrompt(runtimeContextPrompt)
+                                .memoryPrompt(buildMemoryPrompt())
+                                .skillCatalogPrompt(skillPromptBundle.catalogPrompt())
+                                .resolvedSkillsById(skillPromptBundle.resolvedSkillsById())
+                                .resolvedToolDescriptorsByName(configuredToolDescriptorsByName)
+                                .localNativeToolsByName(localNativeToolsByName)
+                                .runControl(runControl)
+                                .preludeTimings(timings)
+                                .sandboxPrefetch(sandboxFuture)
+                                .build();
+                        contextHolder[0] = context;
+                        ChatStorageTypes.PlanState latestPlanState = history.latestPlan();
+                        if (latestPlanState != null) {
+                            context.initializePlan(latestPlanState.planId, toPlanTasks(latestPlanState.tasks));
+                        }
+                        TextBlockIdAssigner textBlockIdAssigner = new TextBlockIdAssigner(runId);
+                        return Flux.<AgentDelta>create(
+                                        sink -> runLifecycle.run(definition, context, configuredToolsByName, services, sink),
+                                        FluxSink.OverflowStrategy.BUFFER
+                                )
+                                .map(textBlockIdAssigner::assign)
+                                .doOnNext(trace::capture)
+                                .doOnComplete(() -> finalizeRunArtifacts(request, trace, contextHolder[0]))
+                                .doFinally(signalType -> {
+                                    if (containerHubSandboxService != null) {
+                                        containerHubSandboxService.closeQuietly(context);
+                                    }
+                                });
+                    } catch (RuntimeException | Error ex) {
+                        // 预创建的沙箱只在返回的 Flux 结束时释放；在此之前失败要就地释放，已交给上下文的随上下文关闭
+                        releaseSandbox(request, sandboxFuture, contextHolder[0]);
+                        throw ex;
                     }
-                    TextBlockIdAssigner textBlockIdAssigner = new TextBlockIdAssigner(runId);
-                    return Flux.<AgentDelta>create(
-                                    sink -> runLifecycle.run(definition, context, configuredToolsByName, services, sink),
-                                    FluxSink.OverflowStrategy.BUFFER
-                            )
-                            .map(textBlockIdAssigner::assign)
-                            .doOnNext(trace::capture)
-                            .doOnComplete(() -> finalizeRunArtifacts(request, trace, contextHolder[0]))
-                            .doFinally(signalType -> {
-                                if (containerHubSandboxService != null) {
-                                    containerHubSandboxService.closeQuietly(context);
-                                }
-                            });
                 })
-                .subscribeOn(Schedulers.boundedElastic());
+                .transform(agentRunExecutor::admit);
     }
 
     private ToolResolution resolveConfiguredTools(List<String> configuredTools) {
@@ -552,39 +668,57 @@ public class DefinitionDrivenAgent implements Agent {
         return "";
     }
 
-    private List<ChatMessage> loadHistoryMessages(String chatId) {
+    /**
+     * 一次扫描取回历史窗口、最近计划与系统快照；在 run 开始时与沙箱创建、提示词构建并发执行。
+     */
+    private RunHistory loadRunHistory(String chatId) {
         if (chatWindowMemoryStore == null || !StringUtils.hasText(chatId)) {
-            return List.of();
+            return RunHistory.EMPTY;
         }
+        ChatStorageStore.RunContext loaded;
         try {
-            return chatWindowMemoryStore.loadHistoryMessages(chatId);
+            loaded = chatWindowMemoryStore.loadRunContext(chatId);
+        } catch (Exception ex) {
+            log.warn("[agent:{}] failed to load run context chatId={}", id(), chatId, ex);
+            return RunHistory.EMPTY;
+        }
+        List<ChatMessage> messages;
+        try {
+            messages = contextWindowManager == null
+                    ? loaded.historyMessages()
+                    : contextWindowManager.fitHistory(chatId, loaded.historyRuns(), definition.modelKey());
         } catch (Exception ex) {
             log.warn("[agent:{}] failed to load chat history chatId={}", id(), chatId, ex);
-            return List.of();
+            messages = List.of();
         }
+        return new RunHistory(messages, loaded.latestPlan(), loaded.latestSystem());
     }
 
-    private ChatStorageTypes.PlanState loadLatestPlanState(String chatId) {
-        if (chatWindowMemoryStore == null || !StringUtils.hasText(chatId)) {
-            return null;
-        }
-        try {
-            return chatWindowMemoryStore.loadLatestPlanState(chatId);
-        } catch (Exception ex) {
-            log.warn("[agent:{}] failed to load latest plan snapshot chatId={}", id(), chatId, ex);
+    /**
+     * 沙箱创建只依赖定义与请求，提前在后台发起；不需要沙箱时返回 null。
+     */
+    private CompletableFuture<ExecutionContext.SandboxSession> prefetchSandbox(AgentRequest request, RunPreludeTimings timings) {
+        if (containerHubSandboxService == null || !containerHubSandboxService.requiresSandbox(definition)) {
             return null;
         }
+        return CompletableFuture.supplyAsync(
+                () -> timings.time("sandbox", () -> containerHubSandboxService.open(definition, request)),
+                agentRunExecutor.preludeExecutor()
+        );
     }
 
-    private ChatStorageTypes.SystemSnapshot loadLatestSystemSnapshot(String chatId) {
-        if (chatWindowMemoryStore == null || !StringUtils.hasText(chatId)) {
-            return null;
+    private void releaseSandbox(
+            AgentRequest request,
+            CompletableFuture<ExecutionContext.SandboxSession> sandboxFuture,
+            ExecutionContext context
+    ) {
+        if (containerHubSandboxService == null) {
+            return;
         }
-        try {
-            return chatWindowMemoryStore.loadLatestSystemSnapshot(chatId);
-        } catch (Exception ex) {
-            log.warn("[agent:{}] failed to load latest system snapshot chatId={}", id(), chatId, ex);
-            return null;
+        if (context != null) {
+            containerHubSandboxService.closeQuietly(context);
+        } else {
+            containerHubSandboxService.releasePrefetch(definition, request, sandboxFuture);
         }
     }
 
@@ -831,6 +965,14 @@ public class DefinitionDrivenAgent implements Agent {
         return AgentDelta.normalizePlanTaskStatus(raw);
     }
 
+    private record RunHistory(
+            List<ChatMessage> messages,
+            ChatStorageTypes.PlanState latestPlan,
+            ChatStorageTypes.SystemSnapshot latestSystem
+    ) {
+        private static final RunHistory EMPTY = new RunHistory(List.of(), null, null);
+    }
+
     private record ToolResolution(
             Map<String, BaseTool> tools,
             Map<String, ToolDescriptor> descriptors,
@@ -0,0 +1,434 @@
+package com.linlay.agentplatform.engine.context;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.linlay.agentplatform.chat.storage.ChatMessage;
+import com.linlay.agentplatform.chat.storage.ChatStorageStore;
+import com.linlay.agentplatform.chat.storage.ChatSummaryStore;
+import com.linlay.agentplatform.config.properties.ContextWindowProperties;
+import com.linlay.agentplatform.llm.LlmService;
+import com.linlay.agentplatform.model.ModelDefinition;
+import com.linlay.agentplatform.model.ModelRegistryService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 按 token 预算管理发送给模型的上下文。
+ * <p>
+ * 预算取模型注册表中的 {@code maxInputTokens}（缺省用配置默认值）减去预留量。
+ * 加载历史时，超出历史预算的较早 run 由滚动摘要替代：摘要持久化在聊天 JSONL 旁的 sidecar 文件中，
+ * 只在出现新的溢出 run 时于后台增量重算一次；摘要尚未生成前溢出的 run 直接丢弃。
+ * 每次模型调用前，超长工具结果按首尾保留的方式确定性截断（相同输入得到相同输出，不破坏 prompt 缓存前缀），
+ * 仍超预算时从最早的消息单元（assistant 及其工具结果）开始丢弃，最后一条用户消息及之后的内容不会被丢弃，
+ * 必要时只把本轮较早的工具结果替换为占位说明。
+ */
+@Component
+public class ContextWindowManager {
+
+    private static final Logger log = LoggerFactory.getLogger(ContextWindowManager.class);
+
+    static final String SUMMARY_PREFIX = "以下是本会话较早轮次的摘要，供理解上下文使用：\n";
+    static final String SUMMARY_SYSTEM_PROMPT = """
+            你负责压缩对话历史。请把已有摘要与新的对话内容合并为一份简洁的摘要，
+            保留用户目标、关键事实与数据、已做出的决定、工具调用得到的重要结果以及未完成事项，不要编造内容。
+            直接输出摘要正文。""";
+    private static final String SUMMARY_STAGE = "context-summary";
+    private static final int MESSAGE_OVERHEAD_TOKENS = 4;
+    private static final int MIN_TOOL_RESULT_TOKENS = 256;
+
+    private final ContextWindowProperties properties;
+    private final ModelRegistryService modelRegistryService;
+    private final TokenEstimator tokenEstimator;
+    private final ObjectMapper objectMapper;
+    private final ChatSummaryStore summaryStore;
+    private final LlmService llmService;
+    private final Set<String> summarizingChats = ConcurrentHashMap.newKeySet();
+
+    @Autowired
+    public ContextWindowManager(
+            ContextWindowProperties properties,
+            ModelRegistryService modelRegistryService,
+            TokenEstimator tokenEstimator,
+            ObjectMapper objectMapper,
+            ChatSummaryStore summaryStore,
+            LlmService llmService
+    ) {
+        this.properties = properties == null ? new ContextWindowProperties() : properties;
+        this.modelRegistryService = modelRegistryService;
+        this.tokenEstimator = tokenEstimator == null ? new HeuristicTokenEstimator() : tokenEstimator;
+        this.objectMapper = objectMapper == null ? new ObjectMapper() : objectMapper;
+        this.summaryStore = summaryStore;
+        this.llmService = llmService;
+    }
+
+    /**
+     * 模型可用的输入 token 预算。
+     */
+    public int budget(String modelKey) {
+        int maxInputTokens = findModel(modelKey)
+                .map(ModelDefinition::maxInputTokens)
+                .filter(value -> value > 0)
+                .orElse(properties.getDefaultMaxInputTokens());
+        return Math.max(1, maxInputTokens - Math.max(0, properties.getReserveTokens()));
+    }
+
+    /**
+     * 把窗口内的历史 run 裁剪到历史预算内；已被摘要覆盖的 run 以一条摘要消息代替。
+     */
+    public List<ChatMessage> fitHistory(String chatId, List<ChatStorageStore.HistoryRun> runs, String modelKey) {
+        List<ChatStorageStore.HistoryRun> safeRuns = runs == null ? List.of() : runs;
+        if (!properties.isEnabled()) {
+            return flatten(safeRuns);
+        }
+        ChatSummaryStore.ChatSummary summary = summaryStore == null ? null : summaryStore.load(chatId);
+        int start = 0;
+        List<ChatMessage> messages = new ArrayList<>();
+        if (summary != null) {
+            for (int i = 0; i < safeRuns.size(); i++) {
+                if (summary.throughRunId().equals(safeRuns.get(i).runId())) {
+                    start = i + 1;
+                }
+            }
+            messages.add(new ChatMessage.SystemMsg(SUMMARY_PREFIX + summary.summary()));
+        }
+        double ratio = Math.min(1d, Math.max(0d, properties.getHistoryRatio()));
+        int historyBudget = (int) (budget(modelKey) * ratio) - countAll(messages);
+
+        int keepFrom = safeRuns.size();
+        int used = 0;
+        List<List<ChatMessage>> kept = new ArrayList<>();
+        for (int i = safeRuns.size() - 1; i >= start; i--) {
+            List<ChatMessage> runMessages = elideToolResults(safeRuns.get(i).messages());
+            int tokens = countAll(runMessages);
+            if (used + tokens > historyBudget) {
+                break;
+            }
+            used += tokens;
+            keepFrom = i;
+            kept.add(0, runMessages);
+        }
+        kept.forEach(messages::addAll);
+
+        if (keepFrom > start) {
+            List<ChatStorageStore.HistoryRun> overflow = safeRuns.subList(start, keepFrom);
+            log.debug("Context history over budget chatId={}, dropped runs={}, kept runs={}, historyTokens={}",
+                    chatId, overflow.size(), safeRuns.size() - keepFrom, used);
+            scheduleSummary(chatId, modelKey, summary, List.copyOf(overflow));
+        }
+        return List.copyOf(messages);
+    }
+
+    /**
+     * 单次模型调用前的裁剪；不修改入参列表，返回实际发送的消息。
+     */
+    public List<ChatMessage> fitTurn(
+            String modelKey,
+            String systemPrompt,
+            List<ChatMessage> messages,
+            String userPrompt,
+            List<LlmService.LlmFunctionTool> tools
+    ) {
+        if (!properties.isEnabled() || messages == null || messages.isEmpty()) {
+            return messages;
+        }
+        int budget = budget(modelKey);
+        int fixed = count(systemPrompt) + count(userPrompt) + countTools(tools);
+        List<ChatMessage> fitted = elideToolResults(messages);
+        int total = fixed + countAll(fitted);
+        if (total <= budget) {
+            return fitted;
+        }
+        int originalTotal = total;
+        fitted = new ArrayList<>(fitted);
+
+        int protectedFrom = lastUserIndex(fitted);
+        int index = 0;
+        while (total > budget && index < protectedFrom) {
+            if (fitted.get(index) instanceof ChatMessage.SystemMsg) {
+                index++;
+                continue;
+            }
+            int end = index + 1;
+            while (end < protectedFrom && fitted.get(end) instanceof ChatMessage.ToolResultMsg) {
+                end++;
+            }
+            List<ChatMessage> unit = fitted.subList(index, end);
+            total -= countAll(unit);
+            unit.clear();
+            protectedFrom -= end - index;
+        }
+
+        if (total > budget) {
+            int lastToolIndex = -1;
+            for (int i = fitted.size() - 1; i >= 0; i--) {
+                if (fitted.get(i) instanceof ChatMessage.ToolResultMsg) {
+                    lastToolIndex = i;
+                    break;
+                }
+            }
+            for (int i = Math.max(0, protectedFrom); i < lastToolIndex && total > budget; i++) {
+                if (fitted.get(i) instanceof ChatMessage.ToolResultMsg toolResult) {
+                    ChatMessage.ToolResultMsg compacted = compactToolResult(toolResult);
+                    total += count(compacted) - count(toolResult);
+                    fitted.set(i, compacted);
+                }
+            }
+        }
+
+        if (total > budget) {
+            log.warn("Context still over budget after trimming model={}, tokens={}, budget={}", modelKey, total, budget);
+        } else {
+            log.debug("Context trimmed model={}, tokens {} -> {}, budget={}", modelKey, originalTotal, total, budget);
+        }
+        return List.copyOf(fitted);
+    }
+
+    public int count(ChatMessage message) {
+        if (message == null) {
+            return 0;
+        }
+        if (message instanceof ChatMessage.AssistantMsg assistant) {
+            int tokens = MESSAGE_OVERHEAD_TOKENS + count(assistant.text());
+            for (ChatMessage.AssistantMsg.ToolCall call : assistant.toolCalls()) {
+                if (call != null) {
+                    tokens += MESSAGE_OVERHEAD_TOKENS + count(call.name()) + count(call.arguments());
+                }
+            }
+            return tokens;
+        }
+        if (message instanceof ChatMessage.ToolResultMsg toolResult) {
+            int tokens = 0;
+            for (ChatMessage.ToolResultMsg.ToolResponse response : toolResult.responses()) {
+                if (response != null) {
+                    tokens += MESSAGE_OVERHEAD_TOKENS + count(response.name()) + count(response.responseData());
+                }
+            }
+            return tokens;
+        }
+        return MESSAGE_OVERHEAD_TOKENS + count(message.text());
+    }
+
+    int countAll(List<ChatMessage> messages) {
+        int tokens = 0;
+        for (ChatMessage message : messages) {
+            tokens += count(message);
+        }
+        return tokens;
+    }
+
+    /**
+     * 首尾保留的确定性截断，中间替换为省略说明；总长度控制在 maxTokens 的九成左右，保证重复截断结果不变。
+     */
+    String elide(String text, int maxTokens) {
+        int tokens = count(text);
+        if (tokens <= maxTokens) {
+            return text;
+        }
+        int keepChars = (int) ((long) text.length() * maxTokens * 9 / 10 / tokens);
+        int headChars = keepChars * 2 / 3;
+        int head = charBoundary(text, headChars);
+        int tail = charBoundary(text, text.length() - (keepChars - headChars));
+        String headText = text.substring(0, head);
+        String tailText = text.substring(Math.max(head, tail));
+        int omitted = Math.max(0, tokens - count(headText) - count(tailText));
+        return headText + "\n...[已省略约 " + omitted + " tokens]...\n" + tailText;
+    }
+
+    private int count(String text) {
+        return tokenEstimator.count(text);
+    }
+
+    private int countTools(List<LlmService.LlmFunctionTool> tools) {
+        if (tools == null || tools.isEmpty()) {
+            return 0;
+        }
+        try {
+            return count(objectMapper.writeValueAsString(tools));
+        } catch (JsonProcessingException ex) {
+            return 0;
+        }
+    }
+
+    private List<ChatMessage> elideToolResults(List<ChatMessage> messages) {
+        int maxTokens = properties.getToolResultMaxTokens();
+        if (maxTokens <= 0) {
+            return messages;
+        }
+        int limit = Math.max(MIN_TOOL_RESULT_TOKENS, maxTokens);
+        List<ChatMessage> result = null;
+        for (int i = 0; i < messages.size(); i++) {
+            if (!(messages.get(i) instanceof ChatMessage.ToolResultMsg toolResult)) {
+                continue;
+            }
+            boolean changed = false;
+            List<ChatMessage.ToolResultMsg.ToolResponse> responses = new ArrayList<>(toolResult.responses().size());
+            for (ChatMessage.ToolResultMsg.ToolResponse response : toolResult.responses()) {
+                if (response != null && response.responseData() != null && count(response.responseData()) > limit) {
+                    responses.add(new ChatMessage.ToolResultMsg.ToolResponse(
+                            response.id(),
+                            response.name(),
+                            elide(response.responseData(), limit)
+                    ));
+                    changed = true;
+                } else {
+                    responses.add(response);
+                }
+            }
+            if (changed) {
+                if (result == null) {
+                    result = new ArrayList<>(messages);
+                }
+                result.set(i, new ChatMessage.ToolResultMsg(List.copyOf(responses)));
+            }
+        }
+        return result == null ? messages : result;
+    }
+
+    private ChatMessage.ToolResultMsg compactToolResult(ChatMessage.ToolResultMsg toolResult) {
+        List<ChatMessage.ToolResultMsg.ToolResponse> responses = new ArrayList<>(toolResult.responses().size());
+        for (ChatMessage.ToolResultMsg.ToolResponse response : toolResult.responses()) {
+            if (response == null) {
+                continue;
+            }
+            responses.add(new ChatMessage.ToolResultMsg.ToolResponse(
+                    response.id(),
+                    response.name(),
+                    "[工具结果已省略以节省上下文，原始长度约 " + count(response.responseData()) + " tokens]"
+            ));
+        }
+        return new ChatMessage.ToolResultMsg(List.copyOf(responses));
+    }
+
+    private void scheduleSummary(
+            String chatId,
+            String modelKey,
+            ChatSummaryStore.ChatSummary previous,
+            List<ChatStorageStore.HistoryRun> overflow
+    ) {
+        ContextWindowProperties.Summary summaryProperties = properties.getSummary();
+        if (!summaryProperties.isEnabled() || summaryStore == null || llmService == null || overflow.isEmpty()) {
+            return;
+        }
+        String summaryModelKey = StringUtils.hasText(summaryProperties.getModelKey())
+                ? summaryProperties.getModelKey()
+                : modelKey;
+        Optional<ModelDefinition> model = findModel(summaryModelKey);
+        if (model.isEmpty()) {
+            log.debug("Skip context summary chatId={}, unknown model={}", chatId, summaryModelKey);
+            return;
+        }
+        if (!summarizingChats.add(chatId)) {
+            return;
+        }
+        ModelDefinition definition = model.get();
+        String throughRunId = overflow.get(overflow.size() - 1).runId();
+        String transcript = elide(renderTranscript(previous, overflow), Math.max(MIN_TOOL_RESULT_TOKENS, summaryProperties.getMaxInputTokens()));
+        llmService.completeText(
+                        definition.key(),
+                        definition.provider(),
+                        definition.modelId(),
+                        definition.protocol(),
+                        SUMMARY_SYSTEM_PROMPT,
+                        transcript,
+                        SUMMARY_STAGE
+                )
+                .subscribeOn(Schedulers.boundedElastic())
+                .doFinally(ignored -> summarizingChats.remove(chatId))
+                .subscribe(
+                        text -> saveSummary(chatId, throughRunId, text),
+                        ex -> log.warn("Context summary failed chatId={}, throughRunId={}", chatId, throughRunId, ex)
+                );
+    }
+
+    private void saveSummary(String chatId, String throughRunId, String text) {
+        if (!StringUtils.hasText(text)) {
+            return;
+        }
+        String summary = text.trim();
+        int maxChars = properties.getSummary().getMaxChars();
+        if (maxChars > 0 && summary.length() > maxChars) {
+            summary = summary.substring(0, charBoundary(summary, maxChars));
+        }
+        try {
+            summaryStore.save(chatId, new ChatSummaryStore.ChatSummary(throughRunId, summary, System.currentTimeMillis()));
+            log.info("Context summary updated chatId={}, throughRunId={}, chars={}", chatId, throughRunId, summary.length());
+        } catch (RuntimeException ex) {
+            log.warn("Cannot persist context summary chatId={}", chatId, ex);
+        }
+    }
+
+    private String renderTranscript(ChatSummaryStore.ChatSummary previous, List<ChatStorageStore.HistoryRun> overflow) {
+        StringBuilder builder = new StringBuilder();
+        if (previous != null) {
+            builder.append("已有摘要：\n").append(previous.summary()).append("\n\n");
+        }
+        builder.append("需要并入摘要的对话：\n");
+        int toolLimit = Math.max(MIN_TOOL_RESULT_TOKENS, properties.getToolResultMaxTokens() / 4);
+        for (ChatStorageStore.HistoryRun run : overflow) {
+            for (ChatMessage message : run.messages()) {
+                if (message instanceof ChatMessage.UserMsg user) {
+                    builder.append("用户：").append(user.text()).append('\n');
+                } else if (message instanceof ChatMessage.AssistantMsg assistant) {
+                    if (StringUtils.hasText(assistant.text())) {
+                        builder.append("助手：").append(assistant.text()).append('\n');
+                    }
+                    for (ChatMessage.AssistantMsg.ToolCall call : assistant.toolCalls()) {
+                        if (call != null) {
+                            builder.append("助手调用工具 ").append(call.name()).append('：').append(call.arguments()).append('\n');
+                        }
+                    }
+                } else if (message instanceof ChatMessage.ToolResultMsg toolResult) {
+                    for (ChatMessage.ToolResultMsg.ToolResponse response : toolResult.responses()) {
+                        if (response != null) {
+                            builder.append("工具 ").append(response.name()).append(" 返回：")
+                                    .append(elide(String.valueOf(response.responseData()), toolLimit)).append('\n');
+                        }
+                    }
+                }
+            }
+        }
+        return builder.toString();
+    }
+
+    private Optional<ModelDefinition> findModel(String modelKey) {
+        if (modelRegistryService == null || !StringUtils.hasText(modelKey)) {
+            return Optional.empty();
+        }
+        return modelRegistryService.find(modelKey);
+    }
+
+    private static List<ChatMessage> flatten(List<ChatStorageStore.HistoryRun> runs) {
+        List<ChatMessage> messages = new ArrayList<>();
+        for (ChatStorageStore.HistoryRun run : runs) {
+            messages.addAll(run.messages());
+        }
+        return List.copyOf(messages);
+    }
+
+    private static int lastUserIndex(List<ChatMessage> messages) {
+        for (int i = messages.size() - 1; i >= 0; i--) {
+            if (messages.get(i) instanceof ChatMessage.UserMsg) {
+                return i;
+            }
+        }
+        return 0;
+    }
+
+    private static int charBoundary(String text, int index) {
+        int bounded = Math.max(0, Math.min(text.length(), index));
+        if (bounded > 0 && bounded < text.length() && Character.isLowSurrogate(text.charAt(bounded))) {
+            bounded--;
+        }
+        return bounded;
+    }
+}
@@ -0,0 +1,41 @@
+package com.linlay.agentplatform.engine.context;
+
+import org.springframework.stereotype.Component;
+
+/**
+ * 不依赖词表的 token 估算：中日韩字符按每字 1 token，其余字符按每 4 个字符 1 token，结果向上取整。
+ * 对主流 BPE 分词器通常略微高估，用于预算判断偏保守。
+ */
+@Component
+public class HeuristicTokenEstimator implements TokenEstimator {
+
+    @Override
+    public int count(String text) {
+        if (text == null || text.isEmpty()) {
+            return 0;
+        }
+        int wide = 0;
+        int other = 0;
+        for (int i = 0; i < text.length(); ) {
+            int codePoint = text.codePointAt(i);
+            if (isWide(codePoint)) {
+                wide++;
+            } else {
+                other++;
+            }
+            i += Character.charCount(codePoint);
+        }
+        return wide + (other + 3) / 4;
+    }
+
+    private static boolean isWide(int codePoint) {
+        if (codePoint < 0x2E80) {
+            return false;
+        }
+        Character.UnicodeScript script = Character.UnicodeScript.of(codePoint);
+        return script == Character.UnicodeScript.HAN
+                || script == Character.UnicodeScript.HIRAGANA
+                || script == Character.UnicodeScript.KATAKANA
+                || script == Character.UnicodeScript.HANGUL;
+    }
+}
@@ -0,0 +1,9 @@
+package com.linlay.agentplatform.engine.context;
+
+/**
+ * 本地 token 计数器。默认实现为启发式估算；需要精确计数时注册一个标注 {@code @Primary} 的实现（如基于 BPE 词表）即可替换。
+ */
+public interface TokenEstimator {
+
+    int count(String text);
+}
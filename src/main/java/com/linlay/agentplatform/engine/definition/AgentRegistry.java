@@ -3,6 +3,8 @@ package com.linlay.agentplatform.engine.definition;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.linlay.agentplatform.engine.DefinitionDrivenAgent;
 import com.linlay.agentplatform.engine.prompt.RuntimeContextPromptService;
+import com.linlay.agentplatform.engine.context.ContextWindowManager;
+import com.linlay.agentplatform.engine.runtime.AgentRunExecutor;
 import com.linlay.agentplatform.engine.sandbox.ContainerHubSandboxService;
 import com.linlay.agentplatform.engine.runtime.tool.ToolInvokerRouter;
 import com.linlay.agentplatform.config.properties.AgentDefaultsProperties;
@@ -59,6 +61,8 @@ public class AgentRegistry {
     private final ActiveRunService activeRunService;
     private final ContainerHubSandboxService containerHubSandboxService;
     private final RuntimeContextPromptService runtimeContextPromptService;
+    private final AgentRunExecutor agentRunExecutor;
+    private final ContextWindowManager contextWindowManager;
 
     private final Object reloadLock = new Object();
     private volatile Map<String, Agent> agents = Map.of();
@@ -85,7 +89,9 @@ public class AgentRegistry {
             ToolInvokerRouter toolInvokerRouter,
             ActiveRunService activeRunService,
             ObjectProvider<ContainerHubSandboxService> containerHubSandboxServiceProvider,
-            ObjectProvider<RuntimeContextPromptService> runtimeContextPromptServiceProvider
+            ObjectProvider<RuntimeContextPromptService> runtimeContextPromptServiceProvider,
+            ObjectProvider<AgentRunExecutor> agentRunExecutorProvider,
+            ObjectProvider<ContextWindowManager> contextWindowManagerProvider
     ) {
         this.definitionLoader = definitionLoader;
         this.llmService = llmService;
@@ -105,6 +111,8 @@ public class AgentRegistry {
         this.activeRunService = activeRunService;
         this.containerHubSandboxService = containerHubSandboxServiceProvider.getIfAvailable();
         this.runtimeContextPromptService = runtimeContextPromptServiceProvider.getIfAvailable(RuntimeContextPromptService::new);
+        this.agentRunExecutor = agentRunExecutorProvider.getIfAvailable(AgentRunExecutor::fallback);
+        this.contextWindowManager = contextWindowManagerProvider.getIfAvailable();
         refreshAgents();
     }
 
@@ -140,7 +148,11 @@ public class AgentRegistry {
                 activeRunService,
                 containerHubSandboxServiceProvider,
                 new org.springframework.beans.factory.support.StaticListableBeanFactory()
-                        .getBeanProvider(RuntimeContextPromptService.class)
+                        .getBeanProvider(RuntimeContextPromptService.class),
+                new org.springframework.beans.factory.support.StaticListableBeanFactory()
+                        .getBeanProvider(AgentRunExecutor.class),
+                new org.springframework.beans.factory.support.StaticListableBeanFactory()
+                        .getBeanProvider(ContextWindowManager.class)
         );
     }
 
@@ -298,7 +310,9 @@ public class AgentRegistry {
                 activeRunService,
                 containerHubSandboxService,
                 runtimeContextPromptService,
-                agentDefaultsProperties
+                agentDefaultsProperties,
+                agentRunExecutor,
+                contextWindowManager
         );
     }
 
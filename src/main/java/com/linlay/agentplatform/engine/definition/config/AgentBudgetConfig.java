@@ -78,7 +78,8 @@ public class AgentBudgetConfig {
         return new Budget.Scope(
                 scope.maxCalls == null ? base.maxCalls() : scope.maxCalls,
                 scope.timeoutMs == null ? base.timeoutMs() : scope.timeoutMs,
-                scope.retryCount == null ? base.retryCount() : scope.retryCount
+                scope.retryCount == null ? base.retryCount() : scope.retryCount,
+                scope.maxConcurrency == null ? base.maxConcurrency() : scope.maxConcurrency
         );
     }
 
@@ -87,6 +88,7 @@ public class AgentBudgetConfig {
         private Integer maxCalls;
         private Long timeoutMs;
         private Integer retryCount;
+        private Integer maxConcurrency;
 
         public Integer getMaxCalls() {
             return maxCalls;
@@ -111,5 +113,13 @@ public class AgentBudgetConfig {
         public void setRetryCount(Integer retryCount) {
             this.retryCount = retryCount;
         }
+
+        public Integer getMaxConcurrency() {
+            return maxConcurrency;
+        }
+
+        public void setMaxConcurrency(Integer maxConcurrency) {
+            this.maxConcurrency = maxConcurrency;
+        }
     }
 }
@@ -0,0 +1,15 @@
+package com.linlay.agentplatform.engine.exception;
+
+public class RunAdmissionRejectedException extends RuntimeException {
+
+    private final long retryAfterSeconds;
+
+    public RunAdmissionRejectedException(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public long retryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
@@ -6,6 +6,7 @@ import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.linlay.agentplatform.chat.storage.ChatMessage;
+import com.linlay.agentplatform.engine.context.ContextWindowManager;
 import com.linlay.agentplatform.engine.runtime.PlannedToolCall;
 import com.linlay.agentplatform.engine.runtime.ExecutionContext;
 import com.linlay.agentplatform.engine.exception.FatalToolExecutionException;
@@ -55,6 +56,7 @@ public class OrchestratorServices {
     private final ObjectMapper objectMapper;
     private final ModelTurnAccumulator modelTurnAccumulator;
     private final int defaultMaxTokens;
+    private final ContextWindowManager contextWindowManager;
 
     public OrchestratorServices(
             LlmService llmService,
@@ -69,12 +71,23 @@ public class OrchestratorServices {
             ToolExecutionService toolExecutionService,
             ObjectMapper objectMapper,
             AgentDefaultsProperties defaults
+    ) {
+        this(llmService, toolExecutionService, objectMapper, defaults, null);
+    }
+
+    public OrchestratorServices(
+            LlmService llmService,
+            ToolExecutionService toolExecutionService,
+            ObjectMapper objectMapper,
+            AgentDefaultsProperties defaults,
+            ContextWindowManager contextWindowManager
     ) {
         this.llmService = llmService;
         this.toolExecutionService = toolExecutionService;
         this.objectMapper = objectMapper;
         this.modelTurnAccumulator = new ModelTurnAccumulator(objectMapper);
         this.defaultMaxTokens = defaults == null ? 4096 : defaults.defaultMaxTokens();
+        this.contextWindowManager = contextWindowManager;
     }
 
     public LlmService llmService() {
@@ -151,22 +164,34 @@ public class OrchestratorServices {
         injectPendingSteers(context, sink);
         failIfInterrupted(context);
         context.incrementModelCalls();
-        String stageSystemPrompt = context.stageSystemPrompt(
-                stageSettings.instructionsPrompt(),
-                stageSettings.systemPrompt()
-        );
-        String mergedSystemPrompt = stageSystemPrompt;
-        // System prompt merge order is strict:
-        // 1) stage system prompt (agent.json stage-level prompt),
-        // 2) skill catalog blocks (system),
-        // 3) backend tool appendix (system).
-        String effectiveSystemPrompt = toolExecutionService.applyBackendPrompts(
-                mergedSystemPrompt,
+        // System prompt layout keeps a byte-stable prefix for provider prompt caching:
+        // 1) stable stage prompt (base, instructions, stage prompt, skill catalog),
+        // 2) backend tool appendix,
+        // 3) volatile runtime context and memory (changes every run) last.
+        String stablePrompt = toolExecutionService.applyBackendPrompts(
+                context.stablePrompt(stageSettings.instructionsPrompt(), stageSettings.systemPrompt()),
                 stageTools,
                 context.definition().agentMode().toolAppend(),
                 includeAfterCallHints
         );
+        String volatilePrompt = context.volatilePrompt();
+        String effectiveSystemPrompt = StringUtils.hasText(volatilePrompt)
+                ? (StringUtils.hasText(stablePrompt) ? stablePrompt + "\n\n" + volatilePrompt : volatilePrompt)
+                : stablePrompt;
+        List<ChatMessage> fittedMessages = contextWindowManager == null
+                ? messages
+                : contextWindowManager.fitTurn(
+                        resolveModelKey(stageSettings, context),
+                        effectiveSystemPrompt,
+                        messages,
+                        userPrompt,
+                        tools
+                );
 
+        if (context.modelCalls() == 1 && context.preludeTimings() != null) {
+            log.info("[agent:{}] first LLM request runId={}, stage={}, prelude {}",
+                    context.definition().id(), context.request().runId(), stage, context.preludeTimings().describe());
+        }
         context.runControl().transitionState(RunLoopState.MODEL_STREAMING);
         long modelStartNanos = System.nanoTime();
         try {
@@ -177,7 +202,7 @@ public class OrchestratorServices {
                     resolveModel(stageSettings, context),
                     resolveProtocol(stageSettings, context),
                     effectiveSystemPrompt,
-                    messages,
+                    fittedMessages,
                     userPrompt,
                     tools,
                     toolChoice,
@@ -188,7 +213,8 @@ public class OrchestratorServices {
                     context.budget().model().timeoutMs(),
                     stage,
                     parallelToolCalls,
-                    context.runControl().cancelSignal()
+                    context.runControl().cancelSignal(),
+                    stablePrompt
             )).toIterable(),
                     context,
                     stage,
@@ -525,6 +551,14 @@ public class OrchestratorServices {
         }
     }
 
+    private String resolveModelKey(StageSettings stageSettings, ExecutionContext context) {
+        String modelKey = normalize(stageSettings.modelKey());
+        if (StringUtils.hasText(modelKey)) {
+            return modelKey;
+        }
+        return context.definition().modelKey();
+    }
+
     private String resolveProvider(StageSettings stageSettings, ExecutionContext context) {
         String provider = normalize(stageSettings.providerKey());
         if (StringUtils.hasText(provider)) {
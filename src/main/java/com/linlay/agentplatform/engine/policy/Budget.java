@@ -6,20 +6,31 @@ public record Budget(
         Scope tool
 ) {
 
+    /**
+     * @param maxConcurrency 同一轮模型输出中可并行执行的调用数上限，目前仅 tool scope 生效；1 表示严格串行，0 表示沿用默认值。
+     */
     public record Scope(
             int maxCalls,
             long timeoutMs,
-            int retryCount
+            int retryCount,
+            int maxConcurrency
     ) {
         public Scope {
             if (retryCount < 0) {
                 retryCount = 0;
             }
+            if (maxConcurrency < 0) {
+                maxConcurrency = 0;
+            }
+        }
+
+        public Scope(int maxCalls, long timeoutMs, int retryCount) {
+            this(maxCalls, timeoutMs, retryCount, 0);
         }
     }
 
-    private static final Scope DEFAULT_MODEL_SCOPE = new Scope(30, 120_000, 0);
-    private static final Scope DEFAULT_TOOL_SCOPE = new Scope(50, 300_000, 0);
+    private static final Scope DEFAULT_MODEL_SCOPE = new Scope(30, 120_000, 0, 1);
+    private static final Scope DEFAULT_TOOL_SCOPE = new Scope(50, 300_000, 0, 4);
     private static final long DEFAULT_RUN_TIMEOUT_MS = 300_000L;
 
     public static final Budget DEFAULT = new Budget(DEFAULT_RUN_TIMEOUT_MS, DEFAULT_MODEL_SCOPE, DEFAULT_TOOL_SCOPE);
@@ -37,6 +48,7 @@ public record Budget(
         int maxCalls = input.maxCalls() > 0 ? input.maxCalls() : fallback.maxCalls();
         long timeoutMs = input.timeoutMs() > 0 ? input.timeoutMs() : fallback.timeoutMs();
         int retryCount = Math.max(0, input.retryCount());
-        return new Scope(maxCalls, timeoutMs, retryCount);
+        int maxConcurrency = input.maxConcurrency() > 0 ? input.maxConcurrency() : fallback.maxConcurrency();
+        return new Scope(maxCalls, timeoutMs, retryCount, maxConcurrency);
     }
 }
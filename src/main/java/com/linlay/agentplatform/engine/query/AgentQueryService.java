@@ -1,6 +1,7 @@
 package com.linlay.agentplatform.engine.query;
 import com.linlay.agentplatform.stream.model.StreamEnvelope;
 import com.linlay.agentplatform.stream.model.StreamRequest;
+import com.linlay.agentplatform.stream.model.StreamSseEvent;
 import com.linlay.agentplatform.stream.service.AgentDeltaToStreamInputMapper;
 import com.linlay.agentplatform.stream.service.RenderQueue;
 import com.linlay.agentplatform.stream.service.SseEventNormalizer;
@@ -13,7 +14,6 @@ import com.linlay.agentplatform.engine.sandbox.SandboxContextResolver;
 import com.linlay.agentplatform.engine.sandbox.SandboxLevel;
 import com.linlay.agentplatform.config.properties.LoggingAgentProperties;
 import com.linlay.agentplatform.config.properties.ContainerHubToolProperties;
-import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.linlay.agentplatform.engine.definition.Agent;
@@ -24,6 +24,7 @@ import com.linlay.agentplatform.model.AgentDelta;
 import com.linlay.agentplatform.model.RuntimeRequestContext;
 import com.linlay.agentplatform.security.JwksJwtVerifier;
 import com.linlay.agentplatform.chat.asset.ChatAssetCatalogService;
+import com.linlay.agentplatform.chat.history.ChatEventPersistenceQueue;
 import com.linlay.agentplatform.chat.history.ChatRecordStore;
 import com.linlay.agentplatform.catalog.team.TeamDescriptor;
 import com.linlay.agentplatform.catalog.team.TeamRegistryService;
@@ -33,11 +34,11 @@ import com.linlay.agentplatform.util.RunIdGenerator;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.lang.Nullable;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
 import java.util.HashSet;
 import java.util.LinkedHashMap;
@@ -48,7 +49,6 @@ import java.util.Optional;
 import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.atomic.AtomicLong;
-import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 /**
@@ -63,7 +63,6 @@ public class AgentQueryService {
 
     private static final String AUTO_AGENT = "auto";
     private static final String DEFAULT_AGENT = "default";
-    private static final Pattern EVENT_TYPE_PATTERN = Pattern.compile("\"type\":\"([^\"]+)\"");
     private static final Pattern REFERENCE_MARKER_PATTERN = Pattern.compile("#\\{\\{\\s*[-\\w]+(?:\\s*:[^}]+)?\\s*}}");
     private static final Logger log = LoggerFactory.getLogger(AgentQueryService.class);
 
@@ -81,6 +80,7 @@ public class AgentQueryService {
     private final SseEventNormalizer sseEventNormalizer;
     private final SandboxContextResolver sandboxContextResolver;
     private final ContainerHubToolProperties containerHubToolProperties;
+    private final ChatEventPersistenceQueue chatEventPersistenceQueue;
 
     @Autowired
     public AgentQueryService(
@@ -97,7 +97,8 @@ public class AgentQueryService {
             RuntimeContextPromptService runtimeContextPromptService,
             SseEventNormalizer sseEventNormalizer,
             SandboxContextResolver sandboxContextResolver,
-            ContainerHubToolProperties containerHubToolProperties
+            ContainerHubToolProperties containerHubToolProperties,
+            ChatEventPersistenceQueue chatEventPersistenceQueue
     ) {
         this.agentRegistry = agentRegistry;
         this.streamSseStreamer = streamSseStreamer;
@@ -113,12 +114,32 @@ public class AgentQueryService {
         this.sseEventNormalizer = sseEventNormalizer;
         this.sandboxContextResolver = sandboxContextResolver;
         this.containerHubToolProperties = containerHubToolProperties == null ? new ContainerHubToolProperties() : containerHubToolProperties;
+        this.chatEventPersistenceQueue = chatEventPersistenceQueue;
     }
 
     public QuerySession prepare(QueryRequest request) {
         return prepare(request, null);
     }
 
+    /**
+     * 只读地解析本次请求最终会落到的 agentKey，供准入控制在 run 创建前使用；不会创建或绑定 chat。
+     */
+    public String resolveAgentKey(QueryRequest request) {
+        String chatId = normalizeNullable(request.chatId());
+        String boundTeamId = null;
+        String boundAgentKey = null;
+        if (chatId != null) {
+            boundTeamId = Optional.ofNullable(chatRecordStore.findBoundTeamId(chatId))
+                    .orElse(Optional.empty())
+                    .orElse(null);
+            boundAgentKey = Optional.ofNullable(chatRecordStore.findBoundAgentKey(chatId))
+                    .orElse(Optional.empty())
+                    .orElse(null);
+        }
+        String effectiveTeamId = resolveEffectiveTeamId(request.teamId(), boundTeamId, boundAgentKey);
+        return resolveAgent(resolveEffectiveAgentKey(request, boundAgentKey, effectiveTeamId)).id();
+    }
+
     public QuerySession prepare(QueryRequest request, JwksJwtVerifier.JwtPrincipal principal) {
         String chatId = parseOrGenerateUuid(request.chatId(), "chatId");
         String boundTeamId = Optional.ofNullable(chatRecordStore.findBoundTeamId(chatId))
@@ -222,11 +243,12 @@ public class AgentQueryService {
                 new RuntimeContextPromptService(),
                 sseEventNormalizer,
                 sandboxContextResolver,
-                new ContainerHubToolProperties()
+                new ContainerHubToolProperties(),
+                null
         );
     }
 
-    public Flux<ServerSentEvent<String>> stream(QuerySession session) {
+    public Flux<StreamSseEvent> stream(QuerySession session) {
         ActiveRunService.ActiveRunSession activeSession = activeRunService == null
                 ? null
                 : activeRunService.register(session.request().runId(), session.request().chatId(), session.request().agentKey());
@@ -250,39 +272,33 @@ public class AgentQueryService {
         boolean[] completed = {false};
         AtomicLong eventSeq = new AtomicLong(0L);
         Set<String> hiddenToolIds = new HashSet<>();
-        Flux<ServerSentEvent<String>> stream = streamSseStreamer.stream(session.request(), inputs)
+        Flux<StreamSseEvent> stream = streamSseStreamer.stream(session.request(), inputs)
                 .concatMap(event -> {
-                    ServerSentEvent<String> normalized = normalizeEvent(event, hiddenToolIds);
+                    StreamSseEvent normalized = normalizeEvent(event, hiddenToolIds);
                     if (normalized != null) {
                         return Flux.just(normalized);
                     }
                     return Flux.empty();
                 })
                 .doOnNext(event -> {
-                    if (event == null || !StringUtils.hasText(event.data())) {
+                    String type = event == null ? null : event.type();
+                    if (type == null) {
                         return;
                     }
-                    JsonNode node;
-                    try {
-                        node = objectMapper.readTree(event.data());
-                    } catch (Exception ignored) {
-                        return;
-                    }
-                    String type = node.path("type").asText(null);
                     if ("content.delta".equals(type)) {
-                        String delta = node.path("delta").asText("");
+                        String delta = event.text("delta");
                         if (StringUtils.hasText(delta)) {
                             assistantContent.append(delta);
                         }
                     } else if ("content.snapshot".equals(type)) {
-                        String text = node.path("text").asText("");
+                        String text = event.text("text");
                         if (StringUtils.hasText(text)) {
                             assistantContent.setLength(0);
                             assistantContent.append(text);
                         }
                     } else if (("run.complete".equals(type) || "run.error".equals(type)) && !completed[0]) {
                         completed[0] = true;
-                        long completedAt = node.path("timestamp").asLong(System.currentTimeMillis());
+                        long completedAt = event.longValue("timestamp", System.currentTimeMillis());
                         String assistantText = assistantContent.toString().trim();
                         chatRecordStore.onRunCompleted(new ChatRecordStore.RunCompletion(
                                 session.request().chatId(),
@@ -294,7 +310,7 @@ public class AgentQueryService {
                     }
                 })
                 .doOnNext(event -> {
-                    String eventType = extractEventType(event.data());
+                    String eventType = event.type();
                     if (!isToolEvent(eventType)) {
                         return;
                     }
@@ -306,11 +322,20 @@ public class AgentQueryService {
                     );
                 })
                 .doOnNext(event -> logSseEvent(session, event, eventSeq.incrementAndGet()))
-                .doOnNext(event -> chatRecordStore.appendEvent(
-                        session.request().chatId(),
-                        event.data(),
-                        Boolean.TRUE.equals(session.request().hidden())
-                ));
+                .doOnNext(event -> {
+                    if (event.data() == null) {
+                        return;
+                    }
+                    persistEvent(session.request().chatId(), event, Boolean.TRUE.equals(session.request().hidden()));
+                });
+        if (chatEventPersistenceQueue != null) {
+            String chatId = session.request().chatId();
+            stream = stream
+                    .concatMap(event -> isTerminalEvent(event.type())
+                            ? Mono.fromFuture(() -> chatEventPersistenceQueue.flush(chatId)).thenReturn(event)
+                            : Mono.just(event))
+                    .doFinally(signalType -> chatEventPersistenceQueue.flush(chatId));
+        }
         if (activeSession != null) {
             stream = stream.doFinally(signalType -> activeRunService.finish(session.request().runId()));
         }
@@ -320,7 +345,31 @@ public class AgentQueryService {
         return stream;
     }
 
-    private ServerSentEvent<String> normalizeEvent(ServerSentEvent<String> event, Set<String> hiddenToolIds) {
+    private void persistEvent(String chatId, StreamSseEvent event, boolean hidden) {
+        byte[] json = serializedData(event);
+        if (chatEventPersistenceQueue != null) {
+            chatEventPersistenceQueue.submit(chatId, event.data(), json, hidden);
+            return;
+        }
+        chatRecordStore.appendEvent(chatId, event.data(), json, hidden);
+    }
+
+    /**
+     * 事件的 JSON 字节只序列化一次：这里缓存到事件上，SSE 出口写响应时直接复用。
+     */
+    private byte[] serializedData(StreamSseEvent event) {
+        try {
+            return event.dataBytes(objectMapper);
+        } catch (IllegalStateException ex) {
+            return null;
+        }
+    }
+
+    private boolean isTerminalEvent(String eventType) {
+        return "run.complete".equals(eventType) || "run.error".equals(eventType) || "run.cancel".equals(eventType);
+    }
+
+    private StreamSseEvent normalizeEvent(StreamSseEvent event, Set<String> hiddenToolIds) {
         return sseEventNormalizer.normalizeEvent(event, hiddenToolIds);
     }
 
@@ -333,40 +382,29 @@ public class AgentQueryService {
         return merged;
     }
 
-    private String extractEventType(String eventData) {
-        if (!StringUtils.hasText(eventData)) {
-            return null;
-        }
-        Matcher matcher = EVENT_TYPE_PATTERN.matcher(eventData);
-        if (!matcher.find()) {
-            return null;
-        }
-        return matcher.group(1);
-    }
-
     private boolean isToolEvent(String eventType) {
         return eventType != null && eventType.startsWith("tool.");
     }
 
-    private void logSseEvent(QuerySession session, ServerSentEvent<String> event, long seq) {
+    private void logSseEvent(QuerySession session, StreamSseEvent event, long seq) {
         if (loggingAgentProperties == null || !loggingAgentProperties.getSse().isEnabled()) {
             return;
         }
-        String eventType = extractEventType(event == null ? null : event.data());
+        String eventType = event == null ? null : event.type();
         if (!StringUtils.hasText(eventType)) {
             eventType = StringUtils.hasText(event == null ? null : event.event()) ? event.event() : "unknown";
         }
         if (!allowSseEvent(eventType)) {
             return;
         }
-        if (loggingAgentProperties.getSse().isIncludePayload() && event != null && StringUtils.hasText(event.data())) {
+        if (loggingAgentProperties.getSse().isIncludePayload() && event != null && event.hasData()) {
             log.info(
                     "api.sse.event seq={}, requestId={}, runId={}, eventType={}, payload={}",
                     seq,
                     session.request().requestId(),
                     session.request().runId(),
                     eventType,
-                    LoggingSanitizer.sanitizeText(event.data())
+                    LoggingSanitizer.sanitizeText(event.dataString(objectMapper))
             );
             return;
         }
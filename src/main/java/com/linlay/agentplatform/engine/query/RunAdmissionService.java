@@ -0,0 +1,374 @@
+package com.linlay.agentplatform.engine.query;
+
+import com.linlay.agentplatform.config.properties.RunAdmissionProperties;
+import com.linlay.agentplatform.engine.exception.RunAdmissionRejectedException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * run 准入控制。
+ * <p>
+ * 在 run 开始前按全局、agent、JWT subject 三个维度限制并发 run 数。超出限制的请求进入有界等待队列，
+ * 队列按租户（subject / 计划任务）分桶，以加权公平的虚拟时间选出下一个放行的请求：
+ * 交互请求默认权重高于计划任务，单个租户的突发不会饿死其他租户。队列已满或等待超时时以
+ * {@link RunAdmissionRejectedException} 拒绝，并附带 Retry-After 建议。
+ */
+@Component
+public class RunAdmissionService {
+
+    private static final Logger log = LoggerFactory.getLogger(RunAdmissionService.class);
+    private static final String ANONYMOUS_SUBJECT = "anonymous";
+    private static final String SCHEDULE_SUBJECT = "schedule";
+
+    public enum Source {
+        INTERACTIVE,
+        SCHEDULED
+    }
+
+    public record Ticket(String agentKey, String subject, Source source) {
+        public Ticket {
+            agentKey = StringUtils.hasText(agentKey) ? agentKey.trim() : "";
+            source = source == null ? Source.INTERACTIVE : source;
+            if (source == Source.SCHEDULED) {
+                subject = SCHEDULE_SUBJECT;
+            } else {
+                subject = StringUtils.hasText(subject) ? subject.trim() : ANONYMOUS_SUBJECT;
+            }
+        }
+
+        private String tenantKey() {
+            return source.name() + ":" + subject;
+        }
+    }
+
+    private final boolean enabled;
+    private final int maxConcurrentRuns;
+    private final int maxRunsPerAgent;
+    private final int maxRunsPerSubject;
+    private final int maxQueuedRuns;
+    private final long queueTimeoutMs;
+    private final long retryAfterSeconds;
+    private final int interactiveWeight;
+    private final int scheduledWeight;
+
+    private final Map<String, TenantQueue> tenants = new LinkedHashMap<>();
+    private final Map<String, Integer> activeByAgent = new HashMap<>();
+    private final Map<String, Integer> activeBySubject = new HashMap<>();
+    private int activeRuns;
+    private int queuedRuns;
+    private double virtualClock;
+
+    private long admittedRuns;
+    private long queuedTotal;
+    private long rejectedRuns;
+    private long timedOutRuns;
+    private int maxQueuedObserved;
+
+    public RunAdmissionService(RunAdmissionProperties properties) {
+        RunAdmissionProperties effective = properties == null ? new RunAdmissionProperties() : properties;
+        this.enabled = effective.isEnabled();
+        this.maxConcurrentRuns = Math.max(1, effective.getMaxConcurrentRuns());
+        this.maxRunsPerAgent = Math.max(1, effective.getMaxRunsPerAgent());
+        this.maxRunsPerSubject = Math.max(1, effective.getMaxRunsPerSubject());
+        this.maxQueuedRuns = Math.max(0, effective.getMaxQueuedRuns());
+        this.queueTimeoutMs = Math.max(0L, effective.getQueueTimeoutMs());
+        this.retryAfterSeconds = Math.max(1L, effective.getRetryAfterSeconds());
+        this.interactiveWeight = Math.max(1, effective.getInteractiveWeight());
+        this.scheduledWeight = Math.max(1, effective.getScheduledWeight());
+    }
+
+    /**
+     * 申请一个 run 名额。名额可用时立即完成，否则排队等待；调用方必须在 run 结束后调用 {@link Permit#release()}。
+     */
+    public Mono<Permit> acquire(Ticket ticket) {
+        if (!enabled) {
+            return Mono.just(Permit.NOOP);
+        }
+        Ticket effective = ticket == null ? new Ticket(null, null, Source.INTERACTIVE) : ticket;
+        return Mono.<Permit>create(sink -> {
+            Waiter waiter = new Waiter(effective, sink);
+            List<Waiter> granted;
+            synchronized (this) {
+                if (queuedRuns >= maxQueuedRuns && !canAdmit(effective)) {
+                    rejectedRuns++;
+                    sink.error(reject("Run admission queue is full"));
+                    return;
+                }
+                TenantQueue tenant = tenants.computeIfAbsent(effective.tenantKey(), key -> new TenantQueue(weightOf(effective)));
+                if (tenant.waiters.isEmpty()) {
+                    tenant.finishTag = Math.max(tenant.finishTag, virtualClock);
+                }
+                tenant.waiters.addLast(waiter);
+                queuedRuns++;
+                granted = dispatchLocked();
+                if (!granted.contains(waiter)) {
+                    queuedTotal++;
+                    maxQueuedObserved = Math.max(maxQueuedObserved, queuedRuns);
+                    if (queueTimeoutMs > 0) {
+                        waiter.timeout = Schedulers.parallel().schedule(() -> expire(waiter), queueTimeoutMs, TimeUnit.MILLISECONDS);
+                    }
+                }
+            }
+            sink.onDispose(() -> cancel(waiter));
+            grant(granted);
+        }).doOnNext(Permit::claim).doOnDiscard(Permit.class, Permit::abandon);
+    }
+
+    public synchronized Stats stats() {
+        return new Stats(
+                activeRuns,
+                queuedRuns,
+                admittedRuns,
+                queuedTotal,
+                rejectedRuns,
+                timedOutRuns,
+                maxQueuedObserved
+        );
+    }
+
+    private boolean canAdmit(Ticket ticket) {
+        return activeRuns < maxConcurrentRuns
+                && activeByAgent.getOrDefault(ticket.agentKey(), 0) < maxRunsPerAgent
+                && activeBySubject.getOrDefault(ticket.subject(), 0) < maxRunsPerSubject;
+    }
+
+    /**
+     * 在全局名额允许时反复挑选 finishTag 最小、且队内存在可放行请求的租户。
+     */
+    private List<Waiter> dispatchLocked() {
+        List<Waiter> granted = new ArrayList<>();
+        while (activeRuns < maxConcurrentRuns) {
+            TenantQueue selected = null;
+            Waiter candidate = null;
+            for (TenantQueue tenant : tenants.values()) {
+                if (selected != null && tenant.finishTag >= selected.finishTag) {
+                    continue;
+                }
+                Waiter eligible = firstEligible(tenant);
+                if (eligible != null) {
+                    selected = tenant;
+                    candidate = eligible;
+                }
+            }
+            if (candidate == null) {
+                break;
+            }
+            selected.waiters.remove(candidate);
+            queuedRuns--;
+            virtualClock = Math.max(virtualClock, selected.finishTag);
+            selected.finishTag = virtualClock + 1.0d / selected.weight;
+            admitLocked(candidate.ticket);
+            candidate.permit = new Permit(this, candidate.ticket);
+            granted.add(candidate);
+        }
+        tenants.values().removeIf(tenant -> tenant.waiters.isEmpty() && tenant.finishTag <= virtualClock);
+        return granted;
+    }
+
+    private Waiter firstEligible(TenantQueue tenant) {
+        for (Waiter waiter : tenant.waiters) {
+            if (canAdmit(waiter.ticket)) {
+                return waiter;
+            }
+        }
+        return null;
+    }
+
+    private void admitLocked(Ticket ticket) {
+        activeRuns++;
+        admittedRuns++;
+        activeByAgent.merge(ticket.agentKey(), 1, Integer::sum);
+        activeBySubject.merge(ticket.subject(), 1, Integer::sum);
+    }
+
+    private void release(Ticket ticket) {
+        List<Waiter> granted;
+        synchronized (this) {
+            activeRuns--;
+            decrement(activeByAgent, ticket.agentKey());
+            decrement(activeBySubject, ticket.subject());
+            granted = dispatchLocked();
+        }
+        grant(granted);
+    }
+
+    /**
+     * 把 dispatch 选出的名额交给订阅方。订阅方已取消的跳过，其名额由 {@link #cancel(Waiter)} 归还。
+     */
+    private void grant(List<Waiter> granted) {
+        for (Waiter waiter : granted) {
+            if (waiter.timeout != null) {
+                waiter.timeout.dispose();
+            }
+            Permit permit;
+            synchronized (this) {
+                if (waiter.cancelled) {
+                    continue;
+                }
+                permit = waiter.permit;
+            }
+            waiter.sink.success(permit);
+        }
+    }
+
+    private void expire(Waiter waiter) {
+        synchronized (this) {
+            if (!removeQueued(waiter)) {
+                return;
+            }
+            timedOutRuns++;
+        }
+        log.warn(
+                "Run admission timed out after {}ms agentKey={}, subject={}, source={}",
+                queueTimeoutMs,
+                waiter.ticket.agentKey(),
+                waiter.ticket.subject(),
+                waiter.ticket.source()
+        );
+        waiter.sink.error(reject("Run admission wait timed out"));
+    }
+
+    /**
+     * 订阅取消或结束时调用：仍在排队的移出队列；已分到名额但尚未被订阅方接收的，归还名额。
+     */
+    private void cancel(Waiter waiter) {
+        Permit undelivered = null;
+        synchronized (this) {
+            waiter.cancelled = true;
+            if (!removeQueued(waiter)) {
+                undelivered = waiter.permit;
+            }
+        }
+        if (waiter.timeout != null) {
+            waiter.timeout.dispose();
+        }
+        if (undelivered != null) {
+            undelivered.abandon();
+        }
+    }
+
+    private boolean removeQueued(Waiter waiter) {
+        TenantQueue tenant = tenants.get(waiter.ticket.tenantKey());
+        if (tenant == null) {
+            return false;
+        }
+        Iterator<Waiter> iterator = tenant.waiters.iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next() == waiter) {
+                iterator.remove();
+                queuedRuns--;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private RunAdmissionRejectedException reject(String reason) {
+        return new RunAdmissionRejectedException(
+                reason + ": maxConcurrentRuns=" + maxConcurrentRuns + ", maxQueuedRuns=" + maxQueuedRuns,
+                retryAfterSeconds
+        );
+    }
+
+    private int weightOf(Ticket ticket) {
+        return ticket.source() == Source.SCHEDULED ? scheduledWeight : interactiveWeight;
+    }
+
+    private static void decrement(Map<String, Integer> counters, String key) {
+        counters.computeIfPresent(key, (ignored, value) -> value <= 1 ? null : value - 1);
+    }
+
+    public static final class Permit {
+
+        static final Permit NOOP = new Permit(null, null);
+
+        private static final int PENDING = 0;
+        private static final int CLAIMED = 1;
+        private static final int RELEASED = 2;
+
+        private final RunAdmissionService owner;
+        private final Ticket ticket;
+        private final AtomicInteger state = new AtomicInteger(PENDING);
+
+        private Permit(RunAdmissionService owner, Ticket ticket) {
+            this.owner = owner;
+            this.ticket = ticket;
+        }
+
+        /**
+         * 归还名额；可重复调用，只有第一次生效。
+         */
+        public void release() {
+            if (owner != null && state.getAndSet(RELEASED) != RELEASED) {
+                owner.release(ticket);
+            }
+        }
+
+        /**
+         * 订阅方收到名额，此后只能由订阅方归还。
+         */
+        private void claim() {
+            state.compareAndSet(PENDING, CLAIMED);
+        }
+
+        /**
+         * 名额尚未被订阅方收到时归还；已被收到则什么也不做。
+         */
+        private void abandon() {
+            if (owner != null && state.compareAndSet(PENDING, RELEASED)) {
+                owner.release(ticket);
+            }
+        }
+    }
+
+    public record Stats(
+            int activeRuns,
+            int queuedRuns,
+            long admittedRuns,
+            long queuedTotal,
+            long rejectedRuns,
+            long timedOutRuns,
+            int maxQueuedObserved
+    ) {
+    }
+
+    private static final class TenantQueue {
+        private final int weight;
+        private final ArrayDeque<Waiter> waiters = new ArrayDeque<>();
+        private double finishTag;
+
+        private TenantQueue(int weight) {
+            this.weight = weight;
+        }
+    }
+
+    private static final class Waiter {
+        private final Ticket ticket;
+        private final MonoSink<Permit> sink;
+        private Disposable timeout;
+        /** 以下两个字段由 RunAdmissionService 的监视器保护。 */
+        private Permit permit;
+        private boolean cancelled;
+
+        private Waiter(Ticket ticket, MonoSink<Permit> sink) {
+            this.ticket = ticket;
+            this.sink = sink;
+        }
+    }
+}
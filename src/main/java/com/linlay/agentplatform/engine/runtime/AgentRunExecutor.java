@@ -0,0 +1,196 @@
+package com.linlay.agentplatform.engine.runtime;
+
+import com.linlay.agentplatform.config.properties.RunExecutorProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * agent run 的执行器：每个 run 占用一个虚拟线程。
+ * <p>
+ * run 循环大部分时间阻塞在模型流、工具 future 与前端提交上，虚拟线程阻塞时不占平台线程，
+ * 单节点可同时挂起数千个 run。并发上限由信号量控制，超出上限的 run 在虚拟线程上排队等待许可，
+ * 排队数超过 maxQueuedRuns 时直接拒绝，由 Reactor 以错误信号结束该 run。
+ */
+@Component
+public class AgentRunExecutor implements Executor, DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(AgentRunExecutor.class);
+
+    private static volatile AgentRunExecutor fallback;
+
+    private final int maxConcurrentRuns;
+    private final int maxQueuedRuns;
+    private final Semaphore permits;
+    private final ExecutorService executor;
+    private final Executor preludeExecutor;
+    private final Scheduler scheduler;
+
+    /** 已接纳但尚未结束的 run 数（排队 + 执行中），上限为 maxConcurrentRuns + maxQueuedRuns。 */
+    private final AtomicLong admittedRuns = new AtomicLong();
+    private final AtomicLong submittedRuns = new AtomicLong();
+    private final AtomicLong rejectedRuns = new AtomicLong();
+    private final AtomicLong completedRuns = new AtomicLong();
+    private final AtomicLong activeRuns = new AtomicLong();
+    private final AtomicLong queuedRuns = new AtomicLong();
+    private final AtomicLong maxQueuedObserved = new AtomicLong();
+    private final AtomicLong totalQueueWaitMs = new AtomicLong();
+
+    public AgentRunExecutor(RunExecutorProperties properties) {
+        RunExecutorProperties effective = properties == null ? new RunExecutorProperties() : properties;
+        this.maxConcurrentRuns = Math.max(1, effective.getMaxConcurrentRuns());
+        this.maxQueuedRuns = Math.max(0, effective.getMaxQueuedRuns());
+        this.permits = new Semaphore(maxConcurrentRuns, true);
+        this.executor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("agent-run-", 0).factory());
+        this.preludeExecutor = executor::execute;
+        this.scheduler = Schedulers.fromExecutor(this);
+    }
+
+    /**
+     * 未注入 Spring bean 时（如直接构造 agent 的测试）使用的进程级默认实例。
+     */
+    public static AgentRunExecutor fallback() {
+        AgentRunExecutor current = fallback;
+        if (current == null) {
+            synchronized (AgentRunExecutor.class) {
+                current = fallback;
+                if (current == null) {
+                    current = new AgentRunExecutor(new RunExecutorProperties());
+                    fallback = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    public Scheduler scheduler() {
+        return scheduler;
+    }
+
+    /**
+     * 把整个 run 订阅到执行器上：只有订阅本身走一次准入并占用一个许可。
+     * 下游跨线程发出的 request(n) 直接在请求线程上转给上游，不再回到调度器重复准入，
+     * 否则执行器饱和时正在流式输出的 run 会被自己的背压请求排队或拒绝。
+     */
+    public <T> Flux<T> admit(Flux<T> run) {
+        return run.subscribeOn(scheduler, false);
+    }
+
+    /**
+     * run 启动阶段并发预取（历史、沙箱）用的执行器：直接跑在虚拟线程上，不经过准入。
+     * 这些任务属于已被接纳的 run，再走准入会与 run 自身争抢许可。
+     */
+    public Executor preludeExecutor() {
+        return preludeExecutor;
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        if (!tryAdmit()) {
+            rejectedRuns.incrementAndGet();
+            throw new RejectedExecutionException(
+                    "Agent run queue is full: maxConcurrentRuns=" + maxConcurrentRuns + ", maxQueuedRuns=" + maxQueuedRuns
+            );
+        }
+        submittedRuns.incrementAndGet();
+        long queued = queuedRuns.incrementAndGet();
+        maxQueuedObserved.accumulateAndGet(queued, Math::max);
+        long enqueuedAt = System.nanoTime();
+        try {
+            executor.execute(() -> runAdmitted(task, enqueuedAt));
+        } catch (RejectedExecutionException ex) {
+            queuedRuns.decrementAndGet();
+            admittedRuns.decrementAndGet();
+            rejectedRuns.incrementAndGet();
+            throw ex;
+        }
+    }
+
+    /**
+     * 先用 CAS 占住一个名额再入队，并发提交也不会越过 maxConcurrentRuns + maxQueuedRuns。
+     */
+    private boolean tryAdmit() {
+        long limit = (long) maxConcurrentRuns + maxQueuedRuns;
+        while (true) {
+            long current = admittedRuns.get();
+            if (current >= limit) {
+                return false;
+            }
+            if (admittedRuns.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    private void runAdmitted(Runnable task, long enqueuedAt) {
+        try {
+            try {
+                permits.acquire();
+            } catch (InterruptedException ex) {
+                queuedRuns.decrementAndGet();
+                Thread.currentThread().interrupt();
+                return;
+            }
+            queuedRuns.decrementAndGet();
+            long waitMs = (System.nanoTime() - enqueuedAt) / 1_000_000L;
+            totalQueueWaitMs.addAndGet(waitMs);
+            if (waitMs > 1_000L) {
+                log.warn("Agent run waited {}ms for an executor slot, maxConcurrentRuns={}", waitMs, maxConcurrentRuns);
+            }
+            activeRuns.incrementAndGet();
+            try {
+                task.run();
+            } finally {
+                activeRuns.decrementAndGet();
+                completedRuns.incrementAndGet();
+                permits.release();
+            }
+        } finally {
+            admittedRuns.decrementAndGet();
+        }
+    }
+
+    public Stats stats() {
+        return new Stats(
+                maxConcurrentRuns,
+                maxQueuedRuns,
+                submittedRuns.get(),
+                rejectedRuns.get(),
+                completedRuns.get(),
+                activeRuns.get(),
+                queuedRuns.get(),
+                maxQueuedObserved.get(),
+                totalQueueWaitMs.get()
+        );
+    }
+
+    @Override
+    public void destroy() {
+        scheduler.dispose();
+        executor.shutdownNow();
+    }
+
+    public record Stats(
+            int maxConcurrentRuns,
+            int maxQueuedRuns,
+            long submittedRuns,
+            long rejectedRuns,
+            long completedRuns,
+            long activeRuns,
+            long queuedRuns,
+            long maxQueuedObserved,
+            long totalQueueWaitMs
+    ) {
+    }
+}
@@ -23,7 +23,10 @@ import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 public class ExecutionContext {
 
@@ -42,6 +45,8 @@ public class ExecutionContext {
     private final Map<String, BaseTool> localNativeToolsByName;
     private final SkillAppend skillAppend;
     private final RunControl runControl;
+    private final RunPreludeTimings preludeTimings;
+    private final AtomicReference<CompletableFuture<SandboxSession>> sandboxPrefetch;
 
     private final List<ChatMessage> conversationMessages;
     private final List<ChatMessage> planMessages;
@@ -54,6 +59,7 @@ public class ExecutionContext {
     private SandboxSession sandboxSession;
     private Consumer<AgentDelta> deltaEmitter;
     private ToolInvocationContext activeToolInvocation;
+    private final ThreadLocal<ToolScope> toolScope = new ThreadLocal<>();
 
     private int modelCalls;
     private int toolCalls;
@@ -72,6 +78,8 @@ public class ExecutionContext {
         this.localNativeToolsByName = normalizeLocalTools(builder.localNativeToolsByName);
         this.skillAppend = builder.skillAppend == null ? SkillAppend.DEFAULTS : builder.skillAppend;
         this.runControl = builder.runControl == null ? new RunControl() : builder.runControl;
+        this.preludeTimings = builder.preludeTimings;
+        this.sandboxPrefetch = new AtomicReference<>(builder.sandboxPrefetch);
 
         this.conversationMessages = new ArrayList<>();
         if (builder.historyMessages != null) {
@@ -136,6 +144,13 @@ public class ExecutionContext {
         this.sandboxSession = null;
     }
 
+    /**
+     * 取走 run 启动时并发创建中的沙箱；只有第一次调用能拿到，之后返回 null。
+     */
+    public CompletableFuture<SandboxSession> takeSandboxPrefetch() {
+        return sandboxPrefetch.getAndSet(null);
+    }
+
     public void bindDeltaEmitter(Consumer<AgentDelta> deltaEmitter) {
         this.deltaEmitter = deltaEmitter;
     }
@@ -145,6 +160,11 @@ public class ExecutionContext {
     }
 
     public void emitDelta(AgentDelta delta) {
+        ToolScope scope = toolScope.get();
+        if (scope != null) {
+            scope.emit(delta);
+            return;
+        }
         Consumer<AgentDelta> emitter = this.deltaEmitter;
         if (emitter != null && delta != null) {
             emitter.accept(delta);
@@ -152,6 +172,11 @@ public class ExecutionContext {
     }
 
     public void deferToolDelta(AgentDelta delta) {
+        ToolScope scope = toolScope.get();
+        if (scope != null) {
+            scope.defer(delta);
+            return;
+        }
         if (delta != null) {
             deferredToolDeltas.add(delta);
         }
@@ -166,8 +191,52 @@ public class ExecutionContext {
         return drained;
     }
 
+    /**
+     * 捕获调用线程当前的增量出口（工具作用域或运行级发射器），供其他线程上的回调继续投递到同一次工具调用。
+     * MCP 流式通知在 IO 线程上到达，此时线程局部的工具作用域已不可见。
+     */
+    public Consumer<AgentDelta> captureDeltaEmitter() {
+        ToolScope scope = toolScope.get();
+        if (scope != null) {
+            return scope::emit;
+        }
+        Consumer<AgentDelta> emitter = this.deltaEmitter;
+        if (emitter == null) {
+            return delta -> {
+            };
+        }
+        return delta -> {
+            if (delta != null) {
+                emitter.accept(delta);
+            }
+        };
+    }
+
     public ToolInvocationContext activeToolInvocation() {
-        return activeToolInvocation;
+        ToolScope scope = toolScope.get();
+        return scope != null ? scope.invocation() : activeToolInvocation;
+    }
+
+    public ToolScope currentToolScope() {
+        return toolScope.get();
+    }
+
+    /**
+     * 在当前线程上以给定的工具作用域执行 work。并行工具调用各自持有作用域，
+     * 期间 activeToolInvocation / emitDelta / deferToolDelta 只作用于该作用域，不触碰共享的单槽绑定。
+     */
+    public <T> T callInToolScope(ToolScope scope, Supplier<T> work) {
+        ToolScope previous = toolScope.get();
+        toolScope.set(scope);
+        try {
+            return work.get();
+        } finally {
+            if (previous == null) {
+                toolScope.remove();
+            } else {
+                toolScope.set(previous);
+            }
+        }
     }
 
     public void bindToolInvocation(ToolInvocationContext toolInvocationContext) {
@@ -236,25 +305,38 @@ public class ExecutionContext {
         return localNativeToolsByName.get(normalized);
     }
 
+    /**
+     * 完整的阶段 system 提示词：稳定前缀在前，易变的运行时上下文与记忆在后。
+     */
     public String stageSystemPrompt(String instructionsPrompt, String stageSystemPrompt) {
+        return joinPromptSections(List.of(stablePrompt(instructionsPrompt, stageSystemPrompt), volatilePrompt()));
+    }
+
+    /**
+     * 稳定前缀：基础提示词、指令、阶段提示词与技能目录，同一 agent 的多次调用之间逐字节一致，可命中 provider 前缀缓存。
+     */
+    public String stablePrompt(String instructionsPrompt, String stageSystemPrompt) {
+        return joinPromptSections(List.of(
+                baseSystemPrompt,
+                instructionsPrompt == null ? "" : instructionsPrompt.trim(),
+                stageSystemPrompt == null ? "" : stageSystemPrompt.trim(),
+                skillCatalogPrompt
+        ));
+    }
+
+    /**
+     * 易变尾部：运行时上下文（含当前时间、身份、目录）与记忆召回，每次 run 都可能不同。
+     */
+    public String volatilePrompt() {
+        return joinPromptSections(List.of(runtimeContextPrompt, memoryPrompt));
+    }
+
+    private static String joinPromptSections(List<String> candidates) {
         List<String> sections = new ArrayList<>();
-        if (StringUtils.hasText(baseSystemPrompt)) {
-            sections.add(baseSystemPrompt);
-        }
-        if (StringUtils.hasText(runtimeContextPrompt)) {
-            sections.add(runtimeContextPrompt);
-        }
-        if (StringUtils.hasText(instructionsPrompt)) {
-            sections.add(instructionsPrompt.trim());
-        }
-        if (StringUtils.hasText(memoryPrompt)) {
-            sections.add(memoryPrompt.trim());
-        }
-        if (StringUtils.hasText(stageSystemPrompt)) {
-            sections.add(stageSystemPrompt.trim());
-        }
-        if (StringUtils.hasText(skillCatalogPrompt)) {
-            sections.add(skillCatalogPrompt);
+        for (String candidate : candidates) {
+            if (StringUtils.hasText(candidate)) {
+                sections.add(candidate);
+            }
         }
         return String.join("\n\n", sections);
     }
@@ -385,6 +467,13 @@ public class ExecutionContext {
         return modelCalls;
     }
 
+    /**
+     * run 启动准备阶段的耗时记录；未经 agent 入口构建的上下文为 null。
+     */
+    public RunPreludeTimings preludeTimings() {
+        return preludeTimings;
+    }
+
     public int toolCalls() {
         return toolCalls;
     }
@@ -524,6 +613,57 @@ public class ExecutionContext {
     ) {
     }
 
+    /**
+     * 单次工具调用的私有缓冲：工具执行期间发出的 delta 先暂存，由调用方按调用顺序统一输出。
+     * 给定 liveEmitter 时 emitDelta 不再暂存，到达即转发，用于并行调用的实时进度；deferToolDelta 仍暂存。
+     */
+    public static final class ToolScope {
+        private final ToolInvocationContext invocation;
+        private final Consumer<AgentDelta> liveEmitter;
+        private final List<AgentDelta> emittedDeltas = new ArrayList<>();
+        private final List<AgentDelta> deferredDeltas = new ArrayList<>();
+
+        public ToolScope(ToolInvocationContext invocation) {
+            this(invocation, null);
+        }
+
+        public ToolScope(ToolInvocationContext invocation, Consumer<AgentDelta> liveEmitter) {
+            this.invocation = invocation;
+            this.liveEmitter = liveEmitter;
+        }
+
+        public ToolInvocationContext invocation() {
+            return invocation;
+        }
+
+        public synchronized List<AgentDelta> emittedDeltas() {
+            return List.copyOf(emittedDeltas);
+        }
+
+        public synchronized List<AgentDelta> deferredDeltas() {
+            return List.copyOf(deferredDeltas);
+        }
+
+        private void emit(AgentDelta delta) {
+            if (delta == null) {
+                return;
+            }
+            if (liveEmitter != null) {
+                liveEmitter.accept(delta);
+                return;
+            }
+            synchronized (this) {
+                emittedDeltas.add(delta);
+            }
+        }
+
+        private synchronized void defer(AgentDelta delta) {
+            if (delta != null) {
+                deferredDeltas.add(delta);
+            }
+        }
+    }
+
     public static final class Builder {
         private final AgentDefinition definition;
         private final AgentRequest request;
@@ -537,6 +677,8 @@ public class ExecutionContext {
         private Map<String, BaseTool> localNativeToolsByName = Map.of();
         private SkillAppend skillAppend;
         private RunControl runControl;
+        private RunPreludeTimings preludeTimings;
+        private CompletableFuture<SandboxSession> sandboxPrefetch;
 
         private Builder(AgentDefinition definition, AgentRequest request) {
             this.definition = definition;
@@ -596,6 +738,16 @@ public class ExecutionContext {
             return this;
         }
 
+        public Builder preludeTimings(RunPreludeTimings preludeTimings) {
+            this.preludeTimings = preludeTimings;
+            return this;
+        }
+
+        public Builder sandboxPrefetch(CompletableFuture<SandboxSession> sandboxPrefetch) {
+            this.sandboxPrefetch = sandboxPrefetch;
+            return this;
+        }
+
         public ExecutionContext build() {
             return new ExecutionContext(this);
         }
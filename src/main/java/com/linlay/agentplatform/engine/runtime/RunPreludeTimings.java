@@ -0,0 +1,53 @@
+package com.linlay.agentplatform.engine.runtime;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * 记录 run 从开始到发出第一次模型请求之间各准备阶段的耗时。
+ * <p>
+ * 阶段可能在不同线程上并发执行，因此各阶段耗时之和可以大于总耗时。
+ */
+public final class RunPreludeTimings {
+
+    private final long startNanos = System.nanoTime();
+    private final Map<String, Long> phasesMs = new LinkedHashMap<>();
+
+    public <T> T time(String phase, Supplier<T> action) {
+        long phaseStart = System.nanoTime();
+        try {
+            return action.get();
+        } finally {
+            record(phase, phaseStart);
+        }
+    }
+
+    public void record(String phase, long phaseStartNanos) {
+        long elapsedMs = (System.nanoTime() - phaseStartNanos) / 1_000_000L;
+        synchronized (phasesMs) {
+            phasesMs.merge(phase, elapsedMs, Long::sum);
+        }
+    }
+
+    public long elapsedMs() {
+        return (System.nanoTime() - startNanos) / 1_000_000L;
+    }
+
+    public Map<String, Long> phases() {
+        synchronized (phasesMs) {
+            return Map.copyOf(phasesMs);
+        }
+    }
+
+    /**
+     * 形如 {@code total=42ms, history=12ms, prompt=5ms} 的摘要，阶段按首次记录的顺序排列。
+     */
+    public String describe() {
+        StringBuilder builder = new StringBuilder("total=").append(elapsedMs()).append("ms");
+        synchronized (phasesMs) {
+            phasesMs.forEach((phase, ms) -> builder.append(", ").append(phase).append('=').append(ms).append("ms"));
+        }
+        return builder.toString();
+    }
+}
@@ -1,5 +1,6 @@
 package com.linlay.agentplatform.engine.runtime.tool;
 
+import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ObjectNode;
@@ -8,18 +9,27 @@ import com.linlay.agentplatform.config.properties.McpProperties;
 import com.linlay.agentplatform.integration.mcp.McpServerAvailabilityGate;
 import com.linlay.agentplatform.integration.mcp.McpServerRegistryService;
 import com.linlay.agentplatform.integration.mcp.McpStreamableHttpClient;
+import com.linlay.agentplatform.model.AgentDelta;
 import com.linlay.agentplatform.tool.ToolDescriptor;
 import com.linlay.agentplatform.tool.ToolRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
 import org.springframework.util.StringUtils;
 
 import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 @Component
 public class McpToolInvoker implements ToolInvoker {
 
+    private static final Logger log = LoggerFactory.getLogger(McpToolInvoker.class);
+    private static final String PROGRESS_NOTIFICATION = "notifications/progress";
+    private static final TypeReference<Map<String, Object>> PROGRESS_TYPE = new TypeReference<>() {
+    };
+
     private final ToolRegistry toolRegistry;
     private final McpProperties properties;
     private final McpServerRegistryService serverRegistryService;
@@ -72,12 +82,14 @@ public class McpToolInvoker implements ToolInvoker {
             );
         }
 
+        Consumer<JsonNode> notificationListener = buildNotificationListener(toolName, context);
         try {
             JsonNode result = streamableHttpClient.callTool(
                     server,
                     tool.name(),
                     args == null ? Map.of() : args,
-                    buildMeta(tool.name(), context)
+                    buildMeta(tool.name(), context),
+                    notificationListener
             );
             availabilityGate.markSuccess(server.serverKey());
             return normalizeCallResult(toolName, result);
@@ -91,6 +103,42 @@ public class McpToolInvoker implements ToolInvoker {
         }
     }
 
+    /**
+     * 通知在 IO 线程上回调，需在调用线程上提前捕获当前工具调用的 toolId 与增量出口，
+     * 才能把 {@code notifications/progress} 作为 tool.progress 送回运行中的 agent。
+     */
+    private Consumer<JsonNode> buildNotificationListener(String toolName, ExecutionContext context) {
+        ExecutionContext.ToolInvocationContext invocation = context == null ? null : context.activeToolInvocation();
+        String toolId = invocation == null ? null : invocation.toolId();
+        Consumer<AgentDelta> emitter = context == null ? null : context.captureDeltaEmitter();
+        return notification -> {
+            logNotification(toolName, context, notification);
+            if (emitter == null || !StringUtils.hasText(toolId)
+                    || !PROGRESS_NOTIFICATION.equals(notification.path("method").asText(""))) {
+                return;
+            }
+            JsonNode params = notification.path("params");
+            Map<String, Object> progress = params.isObject()
+                    ? objectMapper.convertValue(params, PROGRESS_TYPE)
+                    : Map.of();
+            emitter.accept(AgentDelta.toolProgress(toolId, progress));
+        };
+    }
+
+    private void logNotification(String toolName, ExecutionContext context, JsonNode notification) {
+        if (!log.isDebugEnabled()) {
+            return;
+        }
+        String runId = context == null || context.request() == null ? null : context.request().runId();
+        log.debug(
+                "MCP tool notification runId={}, tool={}, method={}, params={}",
+                runId,
+                toolName,
+                notification.path("method").asText(""),
+                notification.path("params")
+        );
+    }
+
     private JsonNode normalizeCallResult(String toolName, JsonNode rpcResult) {
         if (rpcResult == null || rpcResult.isNull()) {
             return error(toolName, "mcp_empty_result", "MCP result is empty");
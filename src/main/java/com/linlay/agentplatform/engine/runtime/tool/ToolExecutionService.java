@@ -33,13 +33,18 @@ import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 public class ToolExecutionService {
 
@@ -53,11 +58,10 @@ public class ToolExecutionService {
     );
     private static final Logger log = LoggerFactory.getLogger(ToolExecutionService.class);
 
-    private static final ExecutorService BACKEND_TOOL_EXECUTOR = Executors.newCachedThreadPool(runnable -> {
-        Thread thread = new Thread(runnable, "agent-platform-backend-tool");
-        thread.setDaemon(true);
-        return thread;
-    });
+    // 后端工具调用大多阻塞在 IO / 子进程 / future.get 上，每次调用使用一个虚拟线程，不再受平台线程池大小限制。
+    private static final ExecutorService BACKEND_TOOL_EXECUTOR = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("agent-platform-backend-tool-", 0).factory()
+    );
 
     private final ToolRegistry toolRegistry;
     private final ToolArgumentResolver toolArgumentResolver;
@@ -151,78 +155,290 @@ public class ToolExecutionService {
             preparedCalls.add(new PreparedToolCall(callId, toolName, toolType, resolvedArgs, argsJson));
         }
 
-        for (PreparedToolCall call : preparedCalls) {
-            failIfInterrupted(context);
-            if (context != null) {
-                context.runControl().transitionState(RunLoopState.TOOL_EXECUTING);
-            }
-            if (emitToolCallDelta) {
-                appendDelta(
-                        deltas,
-                        preExecutionEmitter,
-                        AgentDelta.toolCalls(List.of(new ToolCallDelta(call.callId(), call.toolType(), call.toolName(), call.argsJson())), taskId)
-                );
+        int maxConcurrency = toolConcurrency(context);
+        int index = 0;
+        while (index < preparedCalls.size()) {
+            int groupEnd = parallelGroupEnd(preparedCalls, index, enabledToolsByName, maxConcurrency);
+            boolean fatal = groupEnd - index > 1
+                    ? executeParallelGroup(preparedCalls.subList(index, groupEnd), enabledToolsByName, records, runId,
+                    context, emitToolCallDelta, taskId, preExecutionEmitter, deltas, events, maxConcurrency)
+                    : executeSequential(preparedCalls.get(index), enabledToolsByName, records, runId,
+                    context, emitToolCallDelta, taskId, preExecutionEmitter, deltas, events);
+            if (fatal) {
+                break;
             }
-            long invokeStartNanos = System.nanoTime();
-            toolInvocationLogger.logInvocationStart(
+            index = groupEnd;
+        }
+
+        if (context != null && !context.isInterrupted()) {
+            context.runControl().transitionState(RunLoopState.IDLE);
+        }
+
+        return new ToolExecutionBatch(List.copyOf(deltas), List.copyOf(events));
+    }
+
+    private boolean executeSequential(
+            PreparedToolCall call,
+            Map<String, BaseTool> enabledToolsByName,
+            List<Map<String, Object>> records,
+            String runId,
+            ExecutionContext context,
+            boolean emitToolCallDelta,
+            String taskId,
+            Consumer<AgentDelta> preExecutionEmitter,
+            List<AgentDelta> deltas,
+            List<ToolExecutionEvent> events
+    ) {
+        failIfInterrupted(context);
+        if (context != null) {
+            context.runControl().transitionState(RunLoopState.TOOL_EXECUTING);
+        }
+        if (emitToolCallDelta) {
+            appendToolCallDelta(deltas, preExecutionEmitter, call, taskId);
+        }
+        long invokeStartNanos = System.nanoTime();
+        toolInvocationLogger.logInvocationStart(runId, taskId, call.callId(), call.toolName(), call.toolType(), call.argsJson());
+        FrontendToolHandler.InvokeResult invokeResult;
+        bindToolContext(context, call.callId(), call.toolName(), taskId, delta -> appendDelta(deltas, preExecutionEmitter, delta));
+        try {
+            invokeResult = invokeByKind(
                     runId,
-                    taskId,
                     call.callId(),
                     call.toolName(),
                     call.toolType(),
-                    call.argsJson()
+                    call.resolvedArgs(),
+                    enabledToolsByName,
+                    context
             );
-            FrontendToolHandler.InvokeResult invokeResult;
-            bindToolContext(context, call.callId(), call.toolName(), taskId, delta -> appendDelta(deltas, preExecutionEmitter, delta));
-            try {
-                invokeResult = invokeByKind(
-                        runId,
-                        call.callId(),
-                        call.toolName(),
-                        call.toolType(),
-                        call.resolvedArgs(),
-                        enabledToolsByName,
-                        context
-                );
-            } finally {
-                clearToolContext(context);
-            }
-            if (invokeResult.submitDelta() != null) {
-                appendDelta(deltas, preExecutionEmitter, invokeResult.submitDelta());
+        } finally {
+            clearToolContext(context);
+        }
+        if (invokeResult.submitDelta() != null) {
+            appendDelta(deltas, preExecutionEmitter, invokeResult.submitDelta());
+        }
+        List<AgentDelta> deferred = context == null ? List.of() : context.drainDeferredToolDeltas();
+        return completeCall(call, invokeResult.resultNode(), deferred, records, runId, context, taskId, deltas, events,
+                invokeStartNanos);
+    }
+
+    /**
+     * 并发执行一组相邻的、互不依赖的后端工具调用。提交前先按计划顺序写出全部 toolCalls delta，
+     * toolResult delta、records 与事件仍按原顺序逐个写出。
+     * <p>
+     * 有实时输出通道时，各调用的 emitDelta 进度到达即转发（组内多个调用的进度会交错）；
+     * 没有时按调用顺序在各自结果前输出。组内某个调用返回致命错误后，尚未结束的兄弟调用被取消，
+     * 以“已取消”的错误结果记录，随后由调用方停止后续分组。
+     */
+    private boolean executeParallelGroup(
+            List<PreparedToolCall> group,
+            Map<String, BaseTool> enabledToolsByName,
+            List<Map<String, Object>> records,
+            String runId,
+            ExecutionContext context,
+            boolean emitToolCallDelta,
+            String taskId,
+            Consumer<AgentDelta> preExecutionEmitter,
+            List<AgentDelta> deltas,
+            List<ToolExecutionEvent> events,
+            int maxConcurrency
+    ) {
+        failIfInterrupted(context);
+        if (context != null) {
+            context.runControl().transitionState(RunLoopState.TOOL_EXECUTING);
+        }
+        Semaphore permits = new Semaphore(Math.max(1, maxConcurrency));
+        List<ExecutionContext.ToolScope> scopes = new ArrayList<>(group.size());
+        List<Future<JsonNode>> futures = new CopyOnWriteArrayList<>();
+        AtomicInteger fatalIndex = new AtomicInteger(-1);
+        Object liveLock = new Object();
+        Consumer<AgentDelta> liveEmitter = preExecutionEmitter == null ? null : delta -> {
+            synchronized (liveLock) {
+                preExecutionEmitter.accept(delta);
             }
-            JsonNode resultNode = invokeResult.resultNode();
-            String resultText = toResultText(resultNode);
-            deltas.add(AgentDelta.toolResult(call.callId(), resultText));
-            if (context != null) {
-                deltas.addAll(context.drainDeferredToolDeltas());
+        };
+        long[] startNanos = new long[group.size()];
+        if (emitToolCallDelta) {
+            for (PreparedToolCall call : group) {
+                appendToolCallDelta(deltas, preExecutionEmitter, call, taskId);
             }
-            records.add(buildToolRecord(call.callId(), call.toolName(), call.toolType(), call.resolvedArgs(), resultNode));
-            events.add(new ToolExecutionEvent(call.callId(), call.toolName(), call.toolType(), call.argsJson(), resultText));
-            toolInvocationLogger.logInvocationEnd(
-                    runId,
-                    taskId,
-                    call.callId(),
-                    call.toolName(),
-                    call.toolType(),
-                    resultNode,
-                    (System.nanoTime() - invokeStartNanos) / 1_000_000L
+        }
+        for (int i = 0; i < group.size(); i++) {
+            PreparedToolCall call = group.get(i);
+            int callIndex = i;
+            ExecutionContext.ToolScope scope = new ExecutionContext.ToolScope(
+                    new ExecutionContext.ToolInvocationContext(call.callId(), call.toolName(), taskId),
+                    liveEmitter
             );
+            scopes.add(scope);
+            startNanos[i] = System.nanoTime();
+            toolInvocationLogger.logInvocationStart(runId, taskId, call.callId(), call.toolName(), call.toolType(), call.argsJson());
+            futures.add(BACKEND_TOOL_EXECUTOR.submit(() -> {
+                permits.acquire();
+                try {
+                    if (fatalIndex.get() >= 0) {
+                        return cancelledResult(call.toolName());
+                    }
+                    Supplier<JsonNode> work = () -> invokeByKind(
+                            runId,
+                            call.callId(),
+                            call.toolName(),
+                            call.toolType(),
+                            call.resolvedArgs(),
+                            enabledToolsByName,
+                            context
+                    ).resultNode();
+                    JsonNode resultNode = context == null ? work.get() : context.callInToolScope(scope, work);
+                    if (isFatalToolError(resultNode) && fatalIndex.compareAndSet(-1, callIndex)) {
+                        cancelSiblings(futures, callIndex);
+                    }
+                    return resultNode;
+                } finally {
+                    permits.release();
+                }
+            }));
+        }
+        if (fatalIndex.get() >= 0) {
+            // 致命错误可能早于后面几个调用的 future 入列，入列完成后再补一次取消
+            cancelSiblings(futures, fatalIndex.get());
+        }
 
-            AgentDelta planDelta = planToolHandler.planUpdateDelta(context, call.toolName(), call.resolvedArgs(), resultNode);
-            if (planDelta != null) {
-                deltas.add(planDelta);
+        try {
+            boolean fatal = false;
+            for (int i = 0; i < group.size(); i++) {
+                Future<JsonNode> future = futures.get(i);
+                JsonNode resultNode = future.isCancelled()
+                        ? cancelledResult(group.get(i).toolName())
+                        : awaitParallelResult(future, group.get(i).toolName(), context);
+                ExecutionContext.ToolScope scope = scopes.get(i);
+                for (AgentDelta delta : scope.emittedDeltas()) {
+                    appendDelta(deltas, preExecutionEmitter, delta);
+                }
+                fatal |= completeCall(group.get(i), resultNode, scope.deferredDeltas(), records, runId, context, taskId,
+                        deltas, events, startNanos[i]);
             }
+            return fatal;
+        } finally {
+            for (Future<JsonNode> future : futures) {
+                future.cancel(true);
+            }
+        }
+    }
 
-            if (isFatalToolError(resultNode)) {
-                break;
+    private void cancelSiblings(List<Future<JsonNode>> futures, int fatalIndex) {
+        for (int i = 0; i < futures.size(); i++) {
+            if (i != fatalIndex) {
+                futures.get(i).cancel(true);
             }
         }
+    }
 
-        if (context != null && !context.isInterrupted()) {
-            context.runControl().transitionState(RunLoopState.IDLE);
+    private ObjectNode cancelledResult(String toolName) {
+        return errorResult(toolName, "cancelled", "Cancelled because another tool call in the same batch failed fatally");
+    }
+
+    private JsonNode awaitParallelResult(Future<JsonNode> future, String toolName, ExecutionContext context) {
+        try {
+            return future.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            if (context != null && context.isInterrupted()) {
+                throw new RunInterruptedException();
+            }
+            throw new RuntimeException("Parallel tool invocation interrupted", ex);
+        } catch (CancellationException ex) {
+            return cancelledResult(toolName);
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if (isInterrupted(context, cause)) {
+                throw new RunInterruptedException();
+            }
+            return errorResult(toolName, cause == null ? ex.getMessage() : cause.getMessage());
         }
+    }
 
-        return new ToolExecutionBatch(List.copyOf(deltas), List.copyOf(events));
+    private boolean completeCall(
+            PreparedToolCall call,
+            JsonNode resultNode,
+            List<AgentDelta> deferredDeltas,
+            List<Map<String, Object>> records,
+            String runId,
+            ExecutionContext context,
+            String taskId,
+            List<AgentDelta> deltas,
+            List<ToolExecutionEvent> events,
+            long invokeStartNanos
+    ) {
+        String resultText = toResultText(resultNode);
+        deltas.add(AgentDelta.toolResult(call.callId(), resultText));
+        deltas.addAll(deferredDeltas);
+        records.add(buildToolRecord(call.callId(), call.toolName(), call.toolType(), call.resolvedArgs(), resultNode));
+        events.add(new ToolExecutionEvent(call.callId(), call.toolName(), call.toolType(), call.argsJson(), resultText));
+        toolInvocationLogger.logInvocationEnd(
+                runId,
+                taskId,
+                call.callId(),
+                call.toolName(),
+                call.toolType(),
+                resultNode,
+                (System.nanoTime() - invokeStartNanos) / 1_000_000L
+        );
+
+        AgentDelta planDelta = planToolHandler.planUpdateDelta(context, call.toolName(), call.resolvedArgs(), resultNode);
+        if (planDelta != null) {
+            deltas.add(planDelta);
+        }
+        return isFatalToolError(resultNode);
+    }
+
+    private void appendToolCallDelta(
+            List<AgentDelta> deltas,
+            Consumer<AgentDelta> preExecutionEmitter,
+            PreparedToolCall call,
+            String taskId
+    ) {
+        appendDelta(
+                deltas,
+                preExecutionEmitter,
+                AgentDelta.toolCalls(List.of(new ToolCallDelta(call.callId(), call.toolType(), call.toolName(), call.argsJson())), taskId)
+        );
+    }
+
+    /**
+     * 从 start 起向后收集可并行的相邻调用，返回分组的结束下标（不含）；start 本身不可并行时分组只含它自己。
+     */
+    private int parallelGroupEnd(
+            List<PreparedToolCall> calls,
+            int start,
+            Map<String, BaseTool> enabledToolsByName,
+            int maxConcurrency
+    ) {
+        int end = start;
+        if (maxConcurrency > 1) {
+            while (end < calls.size() && isParallelizable(calls.get(end), enabledToolsByName)) {
+                end++;
+            }
+        }
+        return Math.max(end, start + 1);
+    }
+
+    private boolean isParallelizable(PreparedToolCall call, Map<String, BaseTool> enabledToolsByName) {
+        if (enabledToolsByName == null || !enabledToolsByName.containsKey(call.toolName())) {
+            return false;
+        }
+        if (planToolHandler.handles(call.toolName()) || isActionType(call.toolType())) {
+            return false;
+        }
+        ToolDescriptor descriptor = resolveToolDescriptor(call.toolName(), enabledToolsByName);
+        return descriptor != null
+                && descriptor.kind() == ToolKind.BACKEND
+                && !descriptor.isSerialOnly();
+    }
+
+    private int toolConcurrency(ExecutionContext context) {
+        Budget.Scope scope = context == null || context.budget() == null
+                ? Budget.DEFAULT.tool()
+                : context.budget().tool();
+        return Math.max(1, scope.maxConcurrency());
     }
 
     private void appendDelta(List<AgentDelta> deltas, Consumer<AgentDelta> preExecutionEmitter, AgentDelta delta) {
@@ -449,13 +665,17 @@ public class ToolExecutionService {
             long timeoutMs,
             ExecutionContext context
     ) throws TimeoutException {
-        Future<JsonNode> future = BACKEND_TOOL_EXECUTOR.submit(() -> toolInvoker.invoke(toolName, args, context));
+        ExecutionContext.ToolScope scope = context == null ? null : context.currentToolScope();
+        Future<JsonNode> future = BACKEND_TOOL_EXECUTOR.submit(() -> scope == null
+                ? toolInvoker.invoke(toolName, args, context)
+                : context.callInToolScope(scope, () -> toolInvoker.invoke(toolName, args, context)));
         try {
             return future.get(timeoutMs, TimeUnit.MILLISECONDS);
         } catch (TimeoutException ex) {
             future.cancel(true);
             throw new TimeoutException("Backend tool timeout: tool=" + toolName + ", timeoutMs=" + timeoutMs);
         } catch (InterruptedException ex) {
+            future.cancel(true);
             Thread.currentThread().interrupt();
             if (context != null && context.isInterrupted()) {
                 throw new RunInterruptedException();
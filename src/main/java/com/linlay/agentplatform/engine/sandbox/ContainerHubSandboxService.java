@@ -6,6 +6,7 @@ import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.linlay.agentplatform.engine.definition.AgentDefinition;
 import com.linlay.agentplatform.engine.runtime.ExecutionContext;
 import com.linlay.agentplatform.config.properties.ContainerHubToolProperties;
+import com.linlay.agentplatform.model.AgentRequest;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.DisposableBean;
@@ -15,6 +16,8 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
@@ -63,37 +66,92 @@ public class ContainerHubSandboxService implements DisposableBean {
         return definition != null && definition.tools().stream().anyMatch(TOOL_NAME::equals);
     }
 
+    /**
+     * 为上下文打开沙箱；run 启动时已并发预创建的直接等待其结果，预创建失败按原异常抛出，不再重试。
+     */
     public void openIfNeeded(ExecutionContext context) {
-        if (context == null || !requiresSandbox(context.definition())) {
+        if (context == null || context.sandboxSession() != null) {
             return;
         }
+        CompletableFuture<ExecutionContext.SandboxSession> prefetch = context.takeSandboxPrefetch();
+        ExecutionContext.SandboxSession session = prefetch == null
+                ? open(context.definition(), context.request())
+                : awaitPrefetch(prefetch);
+        if (session != null) {
+            context.bindSandboxSession(session);
+        }
+    }
+
+    /**
+     * 只依赖 agent 定义与请求打开沙箱，可在构建执行上下文之前并发调用；不需要沙箱时返回 null。
+     */
+    public ExecutionContext.SandboxSession open(AgentDefinition definition, AgentRequest request) {
+        if (definition == null || request == null || !requiresSandbox(definition)) {
+            return null;
+        }
         if (!properties.isEnabled()) {
             throw new IllegalStateException("container-hub sandbox is disabled. Configure agent.tools.container-hub.enabled=true");
         }
-        String environmentId = resolveEnvironmentId(context.definition());
+        String environmentId = resolveEnvironmentId(definition);
         if (!StringUtils.hasText(environmentId)) {
-            throw new IllegalStateException("container-hub environmentId is required for agent " + context.definition().id());
+            throw new IllegalStateException("container-hub environmentId is required for agent " + definition.id());
         }
 
-        SandboxLevel level = resolveLevel(context.definition());
-        switch (level) {
-            case RUN -> openRunSession(context, environmentId);
-            case AGENT -> acquireAgentSession(context, environmentId);
-            case GLOBAL -> acquireGlobalSession(context, environmentId);
-        }
+        SandboxLevel level = resolveLevel(definition);
+        return switch (level) {
+            case RUN -> openRunSession(definition, request, environmentId);
+            case AGENT -> acquireAgentSession(definition, request, environmentId);
+            case GLOBAL -> acquireGlobalSession(definition, request, environmentId);
+        };
     }
 
     public void closeQuietly(ExecutionContext context) {
+        CompletableFuture<ExecutionContext.SandboxSession> prefetch = context == null ? null : context.takeSandboxPrefetch();
+        if (prefetch != null) {
+            // run 在打开沙箱前就结束了：等预创建完成后再释放，避免会话泄漏
+            prefetch.whenComplete((session, ex) -> {
+                if (session != null) {
+                    context.bindSandboxSession(session);
+                    closeQuietly(context);
+                }
+            });
+            return;
+        }
         if (context == null || context.sandboxSession() == null) {
             return;
         }
-        ExecutionContext.SandboxSession session = context.sandboxSession();
+        try {
+            closeSession(context.definition(), context.request(), context.sandboxSession());
+        } finally {
+            context.clearSandboxSession();
+        }
+    }
+
+    /**
+     * 释放还没有交给执行上下文的预创建沙箱：run 在上下文构建完成之前失败时调用，预创建结束后再关闭。
+     */
+    public void releasePrefetch(
+            AgentDefinition definition,
+            AgentRequest request,
+            CompletableFuture<ExecutionContext.SandboxSession> prefetch
+    ) {
+        if (prefetch == null) {
+            return;
+        }
+        prefetch.whenComplete((session, ex) -> {
+            if (session != null) {
+                closeSession(definition, request, session);
+            }
+        });
+    }
+
+    private void closeSession(AgentDefinition definition, AgentRequest request, ExecutionContext.SandboxSession session) {
         SandboxLevel level = session.level();
         try {
             switch (level != null ? level : SandboxLevel.RUN) {
                 case RUN -> scheduleAsyncDestroy(session.sessionId());
                 case AGENT -> {
-                    String agentKey = context.definition() != null ? context.definition().id() : null;
+                    String agentKey = definition != null ? definition.id() : null;
                     releaseAgentSession(agentKey);
                 }
                 case GLOBAL -> {
@@ -102,23 +160,33 @@ public class ContainerHubSandboxService implements DisposableBean {
             }
         } catch (Exception ex) {
             log.warn("container-hub sandbox close failed for runId={}, sessionId={}, level={}",
-                    context.request().runId(), session.sessionId(), level, ex);
-        } finally {
-            context.clearSandboxSession();
+                    request == null ? null : request.runId(), session.sessionId(), level, ex);
         }
     }
 
-    private void openRunSession(ExecutionContext context, String environmentId) {
-        String sessionId = buildSessionId("run", context.request().runId());
+    private ExecutionContext.SandboxSession awaitPrefetch(CompletableFuture<ExecutionContext.SandboxSession> prefetch) {
+        try {
+            return prefetch.join();
+        } catch (CompletionException ex) {
+            Throwable cause = ex.getCause() == null ? ex : ex.getCause();
+            if (cause instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IllegalStateException(cause.getMessage(), cause);
+        }
+    }
+
+    private ExecutionContext.SandboxSession openRunSession(AgentDefinition definition, AgentRequest request, String environmentId) {
+        String sessionId = buildSessionId("run", request.runId());
         SandboxLevel level = SandboxLevel.RUN;
         List<ContainerHubMountResolver.MountSpec> mounts = mountResolver.resolve(
                 level,
-                context.request().chatId(),
-                context.definition().id(),
-                resolveExtraMounts(context.definition())
+                request.chatId(),
+                definition.id(),
+                resolveExtraMounts(definition)
         );
 
-        ObjectNode payload = buildCreatePayload(sessionId, environmentId, buildLabels(context), mounts, DEFAULT_WORKSPACE_CWD);
+        ObjectNode payload = buildCreatePayload(sessionId, environmentId, buildLabels(definition, request), mounts, DEFAULT_WORKSPACE_CWD);
         JsonNode response = client.createSession(payload);
         if (isErrorResponse(response)) {
             throw new IllegalStateException("container-hub sandbox create failed: " + readError(response));
@@ -132,16 +200,16 @@ public class ContainerHubSandboxService implements DisposableBean {
         if (!StringUtils.hasText(defaultCwd)) {
             defaultCwd = DEFAULT_WORKSPACE_CWD;
         }
-        context.bindSandboxSession(new ExecutionContext.SandboxSession(
+        return new ExecutionContext.SandboxSession(
                 returnedSessionId,
                 environmentId,
-                effectiveCwd(level, context.request().chatId()),
+                effectiveCwd(level, request.chatId()),
                 level
-        ));
+        );
     }
 
-    private void acquireAgentSession(ExecutionContext context, String environmentId) {
-        String agentKey = context.definition().id();
+    private ExecutionContext.SandboxSession acquireAgentSession(AgentDefinition definition, AgentRequest request, String environmentId) {
+        String agentKey = definition.id();
         ManagedSession managed = agentSessions.compute(agentKey, (key, existing) -> {
             if (existing != null) {
                 existing.activeUsers.incrementAndGet();
@@ -152,11 +220,11 @@ public class ContainerHubSandboxService implements DisposableBean {
             String sessionId = buildSessionId("agent", agentKey);
             List<ContainerHubMountResolver.MountSpec> mounts = mountResolver.resolve(
                     SandboxLevel.AGENT,
-                    context.request().chatId(),
-                    context.definition().id(),
-                    resolveExtraMounts(context.definition())
+                    request.chatId(),
+                    definition.id(),
+                    resolveExtraMounts(definition)
             );
-            ObjectNode payload = buildCreatePayload(sessionId, environmentId, buildLabels(context), mounts, DEFAULT_WORKSPACE_CWD);
+            ObjectNode payload = buildCreatePayload(sessionId, environmentId, buildLabels(definition, request), mounts, DEFAULT_WORKSPACE_CWD);
             JsonNode response = client.createSession(payload);
             if (isErrorResponse(response)) {
                 throw new IllegalStateException("container-hub sandbox create failed: " + readError(response));
@@ -179,12 +247,12 @@ public class ContainerHubSandboxService implements DisposableBean {
             return session;
         });
 
-        context.bindSandboxSession(new ExecutionContext.SandboxSession(
+        return new ExecutionContext.SandboxSession(
                 managed.sessionId,
                 managed.environmentId,
-                effectiveCwd(SandboxLevel.AGENT, context.request().chatId()),
+                effectiveCwd(SandboxLevel.AGENT, request.chatId()),
                 SandboxLevel.AGENT
-        ));
+        );
     }
 
     private void releaseAgentSession(String agentKey) {
@@ -202,40 +270,38 @@ public class ContainerHubSandboxService implements DisposableBean {
         }
     }
 
-    private void acquireGlobalSession(ExecutionContext context, String environmentId) {
+    private ExecutionContext.SandboxSession acquireGlobalSession(AgentDefinition definition, AgentRequest request, String environmentId) {
         ManagedSession current = globalSession;
         if (current != null) {
             current.activeUsers.incrementAndGet();
             current.lastAccessedMs.set(System.currentTimeMillis());
-            context.bindSandboxSession(new ExecutionContext.SandboxSession(
+            return new ExecutionContext.SandboxSession(
                     current.sessionId,
                     current.environmentId,
-                    effectiveCwd(SandboxLevel.GLOBAL, context.request().chatId()),
+                    effectiveCwd(SandboxLevel.GLOBAL, request.chatId()),
                     SandboxLevel.GLOBAL
-            ));
-            return;
+            );
         }
         synchronized (globalSessionLock) {
             current = globalSession;
             if (current != null) {
                 current.activeUsers.incrementAndGet();
                 current.lastAccessedMs.set(System.currentTimeMillis());
-                context.bindSandboxSession(new ExecutionContext.SandboxSession(
+                return new ExecutionContext.SandboxSession(
                         current.sessionId,
                         current.environmentId,
-                        effectiveCwd(SandboxLevel.GLOBAL, context.request().chatId()),
+                        effectiveCwd(SandboxLevel.GLOBAL, request.chatId()),
                         SandboxLevel.GLOBAL
-                ));
-                return;
+                );
             }
             String sessionId = "global-singleton";
             List<ContainerHubMountResolver.MountSpec> mounts = mountResolver.resolve(
                     SandboxLevel.GLOBAL,
-                    context.request().chatId(),
-                    context.definition().id(),
-                    resolveExtraMounts(context.definition())
+                    request.chatId(),
+                    definition.id(),
+                    resolveExtraMounts(definition)
             );
-            ObjectNode payload = buildCreatePayload(sessionId, environmentId, buildLabels(context), mounts, DEFAULT_WORKSPACE_CWD);
+            ObjectNode payload = buildCreatePayload(sessionId, environmentId, buildLabels(definition, request), mounts, DEFAULT_WORKSPACE_CWD);
             JsonNode response = client.createSession(payload);
             if (isErrorResponse(response)) {
                 throw new IllegalStateException("container-hub sandbox create failed: " + readError(response));
@@ -256,12 +322,12 @@ public class ContainerHubSandboxService implements DisposableBean {
             );
             this.globalSession = session;
             log.info("container-hub global session created, sessionId={}", returnedSessionId);
-            context.bindSandboxSession(new ExecutionContext.SandboxSession(
+            return new ExecutionContext.SandboxSession(
                     returnedSessionId,
                     environmentId,
-                    effectiveCwd(SandboxLevel.GLOBAL, context.request().chatId()),
+                    effectiveCwd(SandboxLevel.GLOBAL, request.chatId()),
                     SandboxLevel.GLOBAL
-            ));
+            );
         }
     }
 
@@ -408,12 +474,12 @@ public class ContainerHubSandboxService implements DisposableBean {
         return DEFAULT_WORKSPACE_CWD + "/" + chatId.trim();
     }
 
-    private Map<String, String> buildLabels(ExecutionContext context) {
+    private Map<String, String> buildLabels(AgentDefinition definition, AgentRequest request) {
         Map<String, String> labels = new LinkedHashMap<>();
         labels.put("managed-by", "agent-platform-runner");
-        labels.put("chatId", context.request().chatId());
-        labels.put("runId", context.request().runId());
-        labels.put("agentKey", context.definition().id());
+        labels.put("chatId", request.chatId());
+        labels.put("runId", request.runId());
+        labels.put("agentKey", definition.id());
         labels.values().removeIf(value -> !StringUtils.hasText(value));
         return labels;
     }
@@ -60,14 +60,14 @@ public class McpReconnectOrchestrator extends AbstractReconnectOrchestrator {
             return;
         }
         try {
-            CatalogDiff diff = mcpToolSyncService.refreshToolsForServers(dueServerKeys);
-            if (diff.isEmpty()) {
-                return;
-            }
-            Set<String> affectedAgents = agentRegistry.findAgentIdsByTools(diff.changedKeys());
-            agentRegistry.refreshAgentsByIds(affectedAgents, "mcp-reconnect");
+            mcpToolSyncService.refreshToolsForServers(dueServerKeys, this::refreshAffectedAgents);
         } catch (Exception ex) {
             log.warn("Error retrying unavailable MCP servers: {}", dueServerKeys, ex);
         }
     }
+
+    private void refreshAffectedAgents(CatalogDiff diff) {
+        Set<String> affectedAgents = agentRegistry.findAgentIdsByTools(diff.changedKeys());
+        agentRegistry.refreshAgentsByIds(affectedAgents, "mcp-reconnect");
+    }
 }
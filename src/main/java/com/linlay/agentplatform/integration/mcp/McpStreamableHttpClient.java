@@ -9,27 +9,44 @@ import com.linlay.agentplatform.tool.ToolMetadataValidator;
 import com.linlay.agentplatform.integration.viewport.ViewportServerRegistryService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.http.client.reactive.ReactorClientHttpConnector;
 import org.springframework.stereotype.Component;
 import org.springframework.util.StringUtils;
+import org.springframework.web.reactive.function.client.ClientResponse;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+import reactor.netty.http.HttpProtocol;
 import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
 
 import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
-
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * MCP Streamable HTTP 客户端。每个端点维持一个长期复用的连接池，并沿用 initialize 返回的 {@code Mcp-Session-Id}；
+ * 会话过期（404）时重新 initialize 后重试。
+ */
 @Component
-public class McpStreamableHttpClient {
+public class McpStreamableHttpClient implements DisposableBean {
 
     private static final Logger log = LoggerFactory.getLogger(McpStreamableHttpClient.class);
+    static final String SESSION_HEADER = "Mcp-Session-Id";
+    private static final int MAX_CONNECTIONS_PER_ENDPOINT = 32;
+    private static final Duration POOLED_CONNECTION_MAX_IDLE = Duration.ofSeconds(60);
 
     private final ObjectMapper objectMapper;
     private final WebClient.Builder webClientBuilder;
+    private final ConcurrentMap<String, ServerConnection> connections = new ConcurrentHashMap<>();
 
     public McpStreamableHttpClient(
             ObjectMapper objectMapper,
@@ -48,8 +65,10 @@ public class McpStreamableHttpClient {
     }
 
     private void initialize(ServerEndpoint server, String protocolVersion) {
+        String resolvedVersion = StringUtils.hasText(protocolVersion) ? protocolVersion : "2025-06";
+        connectionFor(server).protocolVersion = resolvedVersion;
         ObjectNode params = objectMapper.createObjectNode();
-        params.put("protocolVersion", StringUtils.hasText(protocolVersion) ? protocolVersion : "2025-06");
+        params.put("protocolVersion", resolvedVersion);
         params.set("capabilities", objectMapper.createObjectNode());
         ObjectNode clientInfo = objectMapper.createObjectNode();
         clientInfo.put("name", "agent-platform-runner");
@@ -84,6 +103,7 @@ public class McpStreamableHttpClient {
             String afterCallHint = text(node.get("afterCallHint"));
             JsonNode schema = node.get("inputSchema");
             boolean toolAction = node.path("toolAction").asBoolean(false);
+            boolean serialOnly = node.path("serialOnly").asBoolean(false);
             String toolType = text(node.get("toolType"));
             String viewportKey = text(node.get("viewportKey"));
             Map<String, Object> inputSchema = toInputSchema(schema);
@@ -120,7 +140,8 @@ public class McpStreamableHttpClient {
                     toolAction,
                     toolType,
                     viewportKey,
-                    List.copyOf(aliases)
+                    List.copyOf(aliases),
+                    serialOnly
             ));
         }
         return List.copyOf(definitions);
@@ -131,6 +152,19 @@ public class McpStreamableHttpClient {
             String toolName,
             Map<String, Object> args,
             Map<String, Object> meta
+    ) {
+        return callTool(server, toolName, args, meta, null);
+    }
+
+    /**
+     * @param notificationListener 接收调用过程中服务端推送的通知（如 {@code notifications/progress}），在消息到达时回调
+     */
+    public JsonNode callTool(
+            McpServerRegistryService.RegisteredServer server,
+            String toolName,
+            Map<String, Object> args,
+            Map<String, Object> meta,
+            Consumer<JsonNode> notificationListener
     ) {
         ObjectNode params = objectMapper.createObjectNode();
         params.put("name", toolName);
@@ -138,7 +172,7 @@ public class McpStreamableHttpClient {
         if (meta != null && !meta.isEmpty()) {
             params.set("_meta", objectMapper.valueToTree(meta));
         }
-        RpcResponse response = callRpc(toEndpoint(server), "tools/call", params);
+        RpcResponse response = callRpc(toEndpoint(server), "tools/call", params, notificationListener);
         if (response.error() != null) {
             throw new RpcErrorException("MCP tools/call failed", response.error());
         }
@@ -201,37 +235,48 @@ public class McpStreamableHttpClient {
     }
 
     private RpcResponse callRpc(ServerEndpoint server, String method, ObjectNode params) {
+        return callRpc(server, method, params, null);
+    }
+
+    private RpcResponse callRpc(ServerEndpoint server, String method, ObjectNode params, Consumer<JsonNode> notificationListener) {
+        String requestId = UUID.randomUUID().toString();
         ObjectNode request = objectMapper.createObjectNode();
         request.put("jsonrpc", "2.0");
-        request.put("id", UUID.randomUUID().toString());
+        request.put("id", requestId);
         request.put("method", method);
         request.set("params", params == null ? objectMapper.createObjectNode() : params);
 
+        ServerConnection connection = connectionFor(server);
+        boolean initializeCall = "initialize".equals(method);
         int attempts = Math.max(0, server.retry());
         RuntimeException lastError = null;
+        boolean sessionRenewed = false;
         for (int attempt = 0; attempt <= attempts; attempt++) {
+            String sessionId = initializeCall ? null : connection.sessionId;
+            long initializeGeneration = initializeCall ? connection.beginInitialize() : 0L;
             try {
-                String body = buildClient(server).post()
+                JsonNode payload = connection.webClient.post()
                         .uri(server.endpointUrl())
                         .contentType(MediaType.APPLICATION_JSON)
                         .accept(MediaType.APPLICATION_JSON, MediaType.TEXT_EVENT_STREAM)
-                        .headers(headers -> applyHeaders(headers, server.headers()))
+                        .headers(headers -> {
+                            applyHeaders(headers, server.headers());
+                            if (StringUtils.hasText(sessionId)) {
+                                headers.set(SESSION_HEADER, sessionId);
+                            }
+                        })
                         .bodyValue(request)
-                        .exchangeToMono(response -> response.bodyToFlux(String.class)
-                                .collect(StringBuilder::new, StringBuilder::append)
-                                .map(StringBuilder::toString)
-                                .defaultIfEmpty(""))
+                        .exchangeToMono(response -> {
+                            if (StringUtils.hasText(sessionId) && response.statusCode().value() == 404) {
+                                return response.releaseBody().then(Mono.error(new SessionExpiredException(sessionId)));
+                            }
+                            if (initializeCall) {
+                                connection.adoptSession(initializeGeneration, response.headers().asHttpHeaders().getFirst(SESSION_HEADER));
+                            }
+                            return readPayload(response, requestId, server, method, notificationListener);
+                        })
                         .block(Duration.ofMillis(Math.max(1, server.readTimeoutMs())));
-                JsonNode payload = parseResponsePayload(body);
                 if (payload == null || payload.isNull()) {
-                    if (StringUtils.hasText(body)) {
-                        log.debug(
-                                "Failed to parse MCP response payload serverKey={}, method={}, fallback=empty payload body={}",
-                                server.serverKey(),
-                                method,
-                                abbreviateForLog(body)
-                        );
-                    }
                     throw new IllegalStateException("MCP call returned empty payload");
                 }
                 JsonNode result = payload.get("result");
@@ -239,6 +284,18 @@ public class McpStreamableHttpClient {
                 return new RpcResponse(result, error);
             } catch (RuntimeException ex) {
                 lastError = ex;
+                if (ex instanceof SessionExpiredException) {
+                    // 服务端已丢弃会话：按协议重新 initialize 拿新会话后再重试本次调用
+                    log.info("MCP session expired serverKey={}, method={}, re-initializing", server.serverKey(), method);
+                    connection.compareAndClearSession(sessionId);
+                    reinitialize(server, connection);
+                    if (!sessionRenewed) {
+                        // 会话续期不占用重试次数，但只续一次
+                        sessionRenewed = true;
+                        attempt--;
+                    }
+                    continue;
+                }
                 String reason = summarizeException(ex);
                 log.warn("MCP call failed serverKey={}, method={}, attempt={}/{}: {}",
                         server.serverKey(),
@@ -259,13 +316,100 @@ public class McpStreamableHttpClient {
         throw lastError == null ? new IllegalStateException("MCP call failed: " + method) : lastError;
     }
 
-    private WebClient buildClient(ServerEndpoint server) {
-        HttpClient httpClient = HttpClient.create()
-                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, Math.max(1, server.connectTimeoutMs()))
-                .responseTimeout(Duration.ofMillis(Math.max(1, server.readTimeoutMs())));
-        return webClientBuilder
-                .clientConnector(new ReactorClientHttpConnector(httpClient))
-                .build();
+    /**
+     * SSE 响应按事件增量解析：通知在到达时交给 listener，拿到与请求 id 匹配的响应后立即结束读取；
+     * 没有匹配 id 时取最后一个带 result/error 的消息。其它响应按完整 body 解析。
+     */
+    private Mono<JsonNode> readPayload(
+            ClientResponse response,
+            String requestId,
+            ServerEndpoint server,
+            String method,
+            Consumer<JsonNode> notificationListener
+    ) {
+        MediaType contentType = response.headers().contentType().orElse(null);
+        if (contentType == null || !MediaType.TEXT_EVENT_STREAM.isCompatibleWith(contentType)) {
+            return response.bodyToFlux(String.class)
+                    .collect(StringBuilder::new, StringBuilder::append)
+                    .map(StringBuilder::toString)
+                    .defaultIfEmpty("")
+                    .mapNotNull(body -> {
+                        JsonNode payload = parseResponsePayload(body);
+                        if ((payload == null || payload.isNull()) && StringUtils.hasText(body)) {
+                            log.debug(
+                                    "Failed to parse MCP response payload serverKey={}, method={}, fallback=empty payload body={}",
+                                    server.serverKey(),
+                                    method,
+                                    abbreviateForLog(body)
+                            );
+                        }
+                        return payload;
+                    });
+        }
+        AtomicReference<JsonNode> lastResponse = new AtomicReference<>();
+        return response.bodyToFlux(String.class)
+                .concatMapIterable(data -> {
+                    JsonNode message = parseResponsePayload(data);
+                    return message == null || message.isNull() ? List.<JsonNode>of() : List.of(message);
+                })
+                .filter(message -> {
+                    if (!message.has("result") && !message.has("error")) {
+                        if (message.hasNonNull("method") && notificationListener != null) {
+                            notifyQuietly(notificationListener, message, server, method);
+                        }
+                        return false;
+                    }
+                    lastResponse.set(message);
+                    return requestId.equals(message.path("id").asText(null));
+                })
+                .next()
+                .switchIfEmpty(Mono.fromSupplier(lastResponse::get));
+    }
+
+    private void notifyQuietly(Consumer<JsonNode> listener, JsonNode notification, ServerEndpoint server, String method) {
+        try {
+            listener.accept(notification);
+        } catch (RuntimeException ex) {
+            log.debug("MCP notification listener failed serverKey={}, method={}, fallback=ignore", server.serverKey(), method, ex);
+        }
+    }
+
+    private void reinitialize(ServerEndpoint server, ServerConnection connection) {
+        String protocolVersion = connection.protocolVersion;
+        if (protocolVersion == null) {
+            return;
+        }
+        try {
+            initialize(server, protocolVersion);
+        } catch (RuntimeException ex) {
+            log.warn("MCP re-initialize failed serverKey={}: {}", server.serverKey(), summarizeException(ex));
+        }
+    }
+
+    /**
+     * 每个端点一个长期复用的连接（独立连接池 + WebClient），会话 id 也挂在连接上；
+     * 注册配置中的超时变化时换新连接并释放旧连接池。
+     */
+    private ServerConnection connectionFor(ServerEndpoint server) {
+        ServerConnection current = connections.get(server.endpointUrl());
+        if (current != null && current.matches(server)) {
+            return current;
+        }
+        return connections.compute(server.endpointUrl(), (ignored, existing) -> {
+            if (existing != null && existing.matches(server)) {
+                return existing;
+            }
+            if (existing != null) {
+                existing.dispose();
+            }
+            return new ServerConnection(server, webClientBuilder);
+        });
+    }
+
+    @Override
+    public void destroy() {
+        connections.values().forEach(ServerConnection::dispose);
+        connections.clear();
     }
 
     private void applyHeaders(HttpHeaders headers, Map<String, String> configuredHeaders) {
@@ -440,8 +584,22 @@ public class McpStreamableHttpClient {
             boolean toolAction,
             String toolType,
             String viewportKey,
-            List<String> aliases
+            List<String> aliases,
+            boolean serialOnly
     ) {
+        public McpToolDefinition(
+                String name,
+                String label,
+                String description,
+                String afterCallHint,
+                Map<String, Object> inputSchema,
+                boolean toolAction,
+                String toolType,
+                String viewportKey,
+                List<String> aliases
+        ) {
+            this(name, label, description, afterCallHint, inputSchema, toolAction, toolType, viewportKey, aliases, false);
+        }
     }
 
     public record RemoteViewportSummary(
@@ -498,6 +656,72 @@ public class McpStreamableHttpClient {
         }
     }
 
+    /**
+     * 同一端点的所有调用共享的连接池与会话。https 端点通过 ALPN 协商 HTTP/2，并发调用在同一条 TLS 连接上多路复用；
+     * 其余情况在连接池内复用 keep-alive 连接，避免每次调用都重新建连和握手。
+     */
+    private static final class ServerConnection {
+        private final int connectTimeoutMs;
+        private final int readTimeoutMs;
+        private final ConnectionProvider provider;
+        private final WebClient webClient;
+        private volatile String sessionId;
+        private volatile String protocolVersion;
+        private long initializeGeneration;
+
+        private ServerConnection(ServerEndpoint server, WebClient.Builder webClientBuilder) {
+            this.connectTimeoutMs = server.connectTimeoutMs();
+            this.readTimeoutMs = server.readTimeoutMs();
+            this.provider = ConnectionProvider.builder("mcp-" + server.serverKey())
+                    .maxConnections(MAX_CONNECTIONS_PER_ENDPOINT)
+                    .pendingAcquireMaxCount(-1)
+                    .maxIdleTime(POOLED_CONNECTION_MAX_IDLE)
+                    .build();
+            HttpClient httpClient = HttpClient.create(provider)
+                    .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, Math.max(1, server.connectTimeoutMs()))
+                    .responseTimeout(Duration.ofMillis(Math.max(1, server.readTimeoutMs())));
+            if (server.endpointUrl().regionMatches(true, 0, "https:", 0, 6)) {
+                httpClient = httpClient.protocol(HttpProtocol.H2, HttpProtocol.HTTP11);
+            }
+            this.webClient = webClientBuilder.clone()
+                    .clientConnector(new ReactorClientHttpConnector(httpClient))
+                    .build();
+        }
+
+        private boolean matches(ServerEndpoint server) {
+            return connectTimeoutMs == server.connectTimeoutMs() && readTimeoutMs == server.readTimeoutMs();
+        }
+
+        private synchronized long beginInitialize() {
+            return ++initializeGeneration;
+        }
+
+        /**
+         * 只采用最近一次发起的 initialize 下发的会话 id：超时被放弃的旧 initialize 晚到时不能覆盖新会话。
+         */
+        private synchronized void adoptSession(long generation, String nextSessionId) {
+            if (generation == initializeGeneration) {
+                sessionId = nextSessionId;
+            }
+        }
+
+        private synchronized void compareAndClearSession(String expected) {
+            if (expected != null && expected.equals(sessionId)) {
+                sessionId = null;
+            }
+        }
+
+        private void dispose() {
+            provider.disposeLater().subscribe();
+        }
+    }
+
+    private static final class SessionExpiredException extends IllegalStateException {
+        private SessionExpiredException(String sessionId) {
+            super("MCP session expired: " + sessionId);
+        }
+    }
+
     private record ServerEndpoint(
             String serverKey,
             String endpointUrl,
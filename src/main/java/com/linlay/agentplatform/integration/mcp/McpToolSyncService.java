@@ -1,6 +1,7 @@
 package com.linlay.agentplatform.integration.mcp;
 
 import com.linlay.agentplatform.config.properties.McpProperties;
+import com.linlay.agentplatform.integration.remoteserver.RemoteServerSyncFanOut;
 import com.linlay.agentplatform.util.CatalogDiff;
 import com.linlay.agentplatform.tool.ToolDescriptor;
 import jakarta.annotation.PostConstruct;
@@ -10,6 +11,7 @@ import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
 
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Comparator;
@@ -20,16 +22,22 @@ import java.util.Locale;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
 
 @Service
 public class McpToolSyncService {
 
     private static final Logger log = LoggerFactory.getLogger(McpToolSyncService.class);
+    /** 每个 server 同步时依次发出 initialize 与 tools/list 两次请求。 */
+    private static final int SYNC_CALLS_PER_SERVER = 2;
     private final McpProperties properties;
     private final McpServerRegistryService serverRegistryService;
     private final McpServerAvailabilityGate availabilityGate;
     private final McpStreamableHttpClient streamableHttpClient;
     private final Object refreshLock = new Object();
+    /** 仍在后台拉取（包括已超过截止时间被放弃）的 server key，下一轮同步跳过它们。 */
+    private final Set<String> inFlightSyncs = ConcurrentHashMap.newKeySet();
 
     private volatile Map<String, ToolDescriptor> toolsByName = Map.of();
     private volatile Map<String, String> aliasToCanonical = Map.of();
@@ -64,10 +72,22 @@ public class McpToolSyncService {
     }
 
     public CatalogDiff refreshTools() {
-        return refreshToolsInternal(null);
+        return refreshTools(null);
+    }
+
+    /**
+     * 并发同步全部 server；每个 server 完成后立即发布，并把这一步的变化交给 onPublished，
+     * 健康 server 的工具不必等待最慢的 server。返回值是整次刷新前后的总变化。
+     */
+    public CatalogDiff refreshTools(Consumer<CatalogDiff> onPublished) {
+        return refreshToolsInternal(null, onPublished);
     }
 
     public CatalogDiff refreshToolsForServers(Collection<String> serverKeys) {
+        return refreshToolsForServers(serverKeys, null);
+    }
+
+    public CatalogDiff refreshToolsForServers(Collection<String> serverKeys, Consumer<CatalogDiff> onPublished) {
         if (serverKeys == null || serverKeys.isEmpty()) {
             return new CatalogDiff(Set.of(), Set.of(), Set.of());
         }
@@ -81,10 +101,10 @@ public class McpToolSyncService {
         if (normalizedKeys.isEmpty()) {
             return new CatalogDiff(Set.of(), Set.of(), Set.of());
         }
-        return refreshToolsInternal(Set.copyOf(normalizedKeys));
+        return refreshToolsInternal(Set.copyOf(normalizedKeys), onPublished);
     }
 
-    private CatalogDiff refreshToolsInternal(Set<String> targetServerKeys) {
+    private CatalogDiff refreshToolsInternal(Set<String> targetServerKeys, Consumer<CatalogDiff> onPublished) {
         synchronized (refreshLock) {
             Map<String, ToolDescriptor> before = toolsByName;
             if (!properties.isEnabled()) {
@@ -92,7 +112,9 @@ public class McpToolSyncService {
                 aliasToCanonical = Map.of();
                 snapshotsByServerKey = Map.of();
                 availabilityGate.prune(Set.of());
-                return CatalogDiff.between(before, toolsByName);
+                CatalogDiff diff = CatalogDiff.between(before, toolsByName);
+                notifyPublished(diff, onPublished);
+                return diff;
             }
 
             List<McpServerRegistryService.RegisteredServer> servers = serverRegistryService.list();
@@ -103,35 +125,73 @@ public class McpToolSyncService {
             availabilityGate.prune(activeServerKeys);
 
             Map<String, ServerToolSnapshot> nextSnapshots = new LinkedHashMap<>(snapshotsByServerKey);
-            Set<String> selectedServerKeys = targetServerKeys == null
-                    ? activeServerKeys
-                    : activeServerKeys.stream()
-                            .filter(targetServerKeys::contains)
-                            .collect(java.util.stream.Collectors.toSet());
-
-            for (McpServerRegistryService.RegisteredServer server : servers) {
+            if (nextSnapshots.keySet().removeIf(serverKey -> !activeServerKeys.contains(serverKey))) {
+                publishStep(servers, nextSnapshots, onPublished);
+            }
+            List<McpServerRegistryService.RegisteredServer> selectedServers = servers.stream()
+                    .filter(server -> targetServerKeys == null || targetServerKeys.contains(normalize(server.serverKey())))
+                    .toList();
+
+            for (RemoteServerSyncFanOut.Outcome<McpServerRegistryService.RegisteredServer, ServerToolSnapshot> outcome
+                    : RemoteServerSyncFanOut.fetch(
+                            selectedServers,
+                            properties.getSyncConcurrency(),
+                            this::syncDeadline,
+                            server -> normalize(server.serverKey()),
+                            inFlightSyncs,
+                            server -> () -> fetchServerSnapshot(server))) {
+                McpServerRegistryService.RegisteredServer server = outcome.server();
                 String serverKey = normalize(server.serverKey());
-                if (!selectedServerKeys.contains(serverKey)) {
-                    continue;
-                }
-                try {
-                    streamableHttpClient.initialize(server, properties.getProtocolVersion());
-                    List<McpStreamableHttpClient.McpToolDefinition> tools = streamableHttpClient.listTools(server);
-                    nextSnapshots.put(serverKey, buildServerSnapshot(server, tools));
-                    availabilityGate.markSuccess(serverKey);
-                } catch (Exception ex) {
+                if (!outcome.succeeded()) {
                     availabilityGate.markFailure(serverKey);
                     log.warn("Failed to sync MCP capabilities from server '{}': {}",
                             server.serverKey(),
-                            summarizeException(ex));
+                            summarizeException(outcome.error()));
                     if (log.isDebugEnabled()) {
-                        log.debug("MCP tool sync stack server='{}'", server.serverKey(), ex);
+                        log.debug("MCP tool sync stack server='{}'", server.serverKey(), outcome.error());
                     }
+                    continue;
                 }
+                nextSnapshots.put(serverKey, outcome.result());
+                availabilityGate.markSuccess(serverKey);
+                publishStep(servers, nextSnapshots, onPublished);
             }
 
-            nextSnapshots.keySet().removeIf(serverKey -> !activeServerKeys.contains(serverKey));
-            return publishSnapshots(before, servers, nextSnapshots);
+            return CatalogDiff.between(before, toolsByName);
+        }
+    }
+
+    private ServerToolSnapshot fetchServerSnapshot(McpServerRegistryService.RegisteredServer server) {
+        streamableHttpClient.initialize(server, properties.getProtocolVersion());
+        List<McpStreamableHttpClient.McpToolDefinition> tools = streamableHttpClient.listTools(server);
+        return buildServerSnapshot(server, tools);
+    }
+
+    private Duration syncDeadline(McpServerRegistryService.RegisteredServer server) {
+        return RemoteServerSyncFanOut.deadline(
+                server.connectTimeoutMs(),
+                server.readTimeoutMs(),
+                server.retry(),
+                SYNC_CALLS_PER_SERVER
+        );
+    }
+
+    private void publishStep(
+            List<McpServerRegistryService.RegisteredServer> servers,
+            Map<String, ServerToolSnapshot> nextSnapshots,
+            Consumer<CatalogDiff> onPublished
+    ) {
+        notifyPublished(publishSnapshots(toolsByName, servers, nextSnapshots), onPublished);
+    }
+
+    private void notifyPublished(CatalogDiff diff, Consumer<CatalogDiff> onPublished) {
+        if (onPublished == null || diff.isEmpty()) {
+            return;
+        }
+        try {
+            onPublished.accept(diff);
+        } catch (Exception ex) {
+            log.warn("Failed to apply MCP tool changes {}: {}", diff.changedKeys(), summarizeException(ex));
         }
     }
 
@@ -229,7 +289,8 @@ public class McpToolSyncService {
                     "mcp",
                     normalize(server.serverKey()),
                     tool.viewportKey(),
-                    "mcp://" + server.serverKey()
+                    "mcp://" + server.serverKey(),
+                    tool.serialOnly()
             );
             descriptors.put(toolName, descriptor);
             registerAliases(server, toolName, tool.aliases(), aliasToCanonical);
@@ -0,0 +1,128 @@
+package com.linlay.agentplatform.integration.remoteserver;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * 并发同步多个远端 server 的能力清单：最多 concurrency 个 server 同时拉取，每个 server 有独立的截止时间。
+ * <p>
+ * 结果按完成顺序在调用线程上逐个返回，调用方可以每拿到一个结果就发布一次，
+ * 慢或不可达的 server 只影响它自己，不会拖住其它 server 的发布。
+ * <p>
+ * 超过截止时间的拉取留在后台直到客户端自身超时才结束，期间它的 server key 一直留在调用方持有的 inFlight 集合里，
+ * 下一轮同步直接跳过该 server 并记为失败，因此后台残留的拉取每个 server 最多一个。
+ */
+public final class RemoteServerSyncFanOut {
+
+    /** 超过截止时间的请求不打断，留在后台按客户端自身的超时结束，结果直接丢弃。 */
+    private static final Executor SYNC_EXECUTOR = task -> Schedulers.boundedElastic().schedule(task);
+
+    private RemoteServerSyncFanOut() {
+    }
+
+    public static <S, R> Iterable<Outcome<S, R>> fetch(
+            List<S> servers,
+            int concurrency,
+            Function<S, Duration> deadline,
+            Function<S, String> serverKey,
+            Set<String> inFlight,
+            Function<S, Callable<R>> fetcher
+    ) {
+        if (servers == null || servers.isEmpty()) {
+            return List.of();
+        }
+        int effectiveConcurrency = Math.max(1, Math.min(concurrency, servers.size()));
+        return Flux.fromIterable(servers)
+                .flatMap(server -> fetchOne(server, deadline, serverKey.apply(server), inFlight, fetcher), effectiveConcurrency)
+                .toIterable(effectiveConcurrency);
+    }
+
+    private static <S, R> Mono<Outcome<S, R>> fetchOne(
+            S server,
+            Function<S, Duration> deadline,
+            String key,
+            Set<String> inFlight,
+            Function<S, Callable<R>> fetcher
+    ) {
+        if (!inFlight.add(key)) {
+            return Mono.just(Outcome.failure(server, new IllegalStateException("previous sync still in flight")));
+        }
+        CompletableFuture<R> future;
+        try {
+            future = CompletableFuture.supplyAsync(releasing(call(fetcher.apply(server)), key, inFlight), SYNC_EXECUTOR);
+        } catch (RuntimeException ex) {
+            inFlight.remove(key);
+            return Mono.just(Outcome.failure(server, ex));
+        }
+        // 超时取消订阅时不取消 future：key 要等后台拉取真正结束才释放
+        return Mono.fromFuture(future, true)
+                .timeout(deadline.apply(server))
+                .map(result -> Outcome.<S, R>success(server, result))
+                .onErrorResume(ex -> Mono.just(Outcome.failure(server, describeError(ex, server, deadline))))
+                .defaultIfEmpty(Outcome.success(server, null));
+    }
+
+    /**
+     * 单个 server 的截止时间：initialize 与列表请求各自按 retry 次数重试，每次最多耗时连接加读取超时。
+     */
+    public static Duration deadline(int connectTimeoutMs, int readTimeoutMs, int retry, int calls) {
+        long perAttemptMs = Math.max(1L, connectTimeoutMs) + Math.max(1L, readTimeoutMs);
+        return Duration.ofMillis(perAttemptMs * (Math.max(0, retry) + 1L) * Math.max(1, calls));
+    }
+
+    private static <R> Supplier<R> call(Callable<R> callable) {
+        return () -> {
+            try {
+                return callable.call();
+            } catch (RuntimeException ex) {
+                throw ex;
+            } catch (Exception ex) {
+                throw new CompletionException(ex);
+            }
+        };
+    }
+
+    private static <R> Supplier<R> releasing(Supplier<R> supplier, String key, Set<String> inFlight) {
+        return () -> {
+            try {
+                return supplier.get();
+            } finally {
+                inFlight.remove(key);
+            }
+        };
+    }
+
+    private static <S> Throwable describeError(Throwable ex, S server, Function<S, Duration> deadline) {
+        if (ex instanceof TimeoutException) {
+            return new TimeoutException("sync exceeded deadline of " + deadline.apply(server).toMillis() + "ms");
+        }
+        return ex;
+    }
+
+    public record Outcome<S, R>(S server, R result, Throwable error) {
+
+        static <S, R> Outcome<S, R> success(S server, R result) {
+            return new Outcome<>(server, result, null);
+        }
+
+        static <S, R> Outcome<S, R> failure(S server, Throwable error) {
+            return new Outcome<>(server, null, error);
+        }
+
+        public boolean succeeded() {
+            return error == null;
+        }
+    }
+}
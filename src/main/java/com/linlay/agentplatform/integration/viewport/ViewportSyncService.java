@@ -3,12 +3,14 @@ package com.linlay.agentplatform.integration.viewport;
 import com.linlay.agentplatform.config.properties.ViewportServerProperties;
 import com.linlay.agentplatform.util.CatalogDiff;
 import com.linlay.agentplatform.integration.mcp.McpStreamableHttpClient;
+import com.linlay.agentplatform.integration.remoteserver.RemoteServerSyncFanOut;
 import jakarta.annotation.PostConstruct;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
 
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Comparator;
@@ -19,17 +21,23 @@ import java.util.Locale;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
 
 @Service
 public class ViewportSyncService {
 
     private static final Logger log = LoggerFactory.getLogger(ViewportSyncService.class);
+    /** 每个 server 同步时依次发出 initialize 与 viewports/list 两次请求。 */
+    private static final int SYNC_CALLS_PER_SERVER = 2;
 
     private final ViewportServerProperties properties;
     private final ViewportServerRegistryService serverRegistryService;
     private final ViewportServerAvailabilityGate availabilityGate;
     private final McpStreamableHttpClient streamableHttpClient;
     private final Object refreshLock = new Object();
+    /** 仍在后台拉取（包括已超过截止时间被放弃）的 server key，下一轮同步跳过它们。 */
+    private final Set<String> inFlightSyncs = ConcurrentHashMap.newKeySet();
 
     private volatile Map<String, RemoteViewportBinding> viewportByKey = Map.of();
     private volatile Map<String, ServerViewportSnapshot> snapshotsByServerKey = Map.of();
@@ -52,10 +60,22 @@ public class ViewportSyncService {
     }
 
     public CatalogDiff refreshViewports() {
-        return refreshViewportsInternal(null);
+        return refreshViewports(null);
+    }
+
+    /**
+     * 并发同步全部 server；每个 server 完成后立即发布，并把这一步的变化交给 onPublished。
+     * 返回值是整次刷新前后的总变化。
+     */
+    public CatalogDiff refreshViewports(Consumer<CatalogDiff> onPublished) {
+        return refreshViewportsInternal(null, onPublished);
     }
 
     public CatalogDiff refreshViewportsForServers(Collection<String> serverKeys) {
+        return refreshViewportsForServers(serverKeys, null);
+    }
+
+    public CatalogDiff refreshViewportsForServers(Collection<String> serverKeys, Consumer<CatalogDiff> onPublished) {
         if (serverKeys == null || serverKeys.isEmpty()) {
             return new CatalogDiff(Set.of(), Set.of(), Set.of());
         }
@@ -69,7 +89,7 @@ public class ViewportSyncService {
         if (normalizedKeys.isEmpty()) {
             return new CatalogDiff(Set.of(), Set.of(), Set.of());
         }
-        return refreshViewportsInternal(Set.copyOf(normalizedKeys));
+        return refreshViewportsInternal(Set.copyOf(normalizedKeys), onPublished);
     }
 
     public Optional<RemoteViewportBinding> findViewport(String viewportKey) {
@@ -85,14 +105,16 @@ public class ViewportSyncService {
                 .toList();
     }
 
-    private CatalogDiff refreshViewportsInternal(Set<String> targetServerKeys) {
+    private CatalogDiff refreshViewportsInternal(Set<String> targetServerKeys, Consumer<CatalogDiff> onPublished) {
         synchronized (refreshLock) {
             Map<String, RemoteViewportBinding> before = viewportByKey;
             if (!properties.isEnabled()) {
                 viewportByKey = Map.of();
                 snapshotsByServerKey = Map.of();
                 availabilityGate.prune(Set.of());
-                return CatalogDiff.between(before, viewportByKey);
+                CatalogDiff diff = CatalogDiff.between(before, viewportByKey);
+                notifyPublished(diff, onPublished);
+                return diff;
             }
 
             List<ViewportServerRegistryService.RegisteredServer> servers = serverRegistryService.list();
@@ -103,47 +125,80 @@ public class ViewportSyncService {
             availabilityGate.prune(activeServerKeys);
 
             Map<String, ServerViewportSnapshot> nextSnapshots = new LinkedHashMap<>(snapshotsByServerKey);
-            Set<String> selectedServerKeys = targetServerKeys == null
-                    ? activeServerKeys
-                    : activeServerKeys.stream().filter(targetServerKeys::contains).collect(java.util.stream.Collectors.toSet());
+            if (nextSnapshots.keySet().removeIf(serverKey -> !activeServerKeys.contains(serverKey))) {
+                publishStep(servers, nextSnapshots, onPublished);
+            }
+            List<ViewportServerRegistryService.RegisteredServer> selectedServers = servers.stream()
+                    .filter(server -> targetServerKeys == null || targetServerKeys.contains(normalize(server.serverKey())))
+                    .toList();
 
-            for (ViewportServerRegistryService.RegisteredServer server : servers) {
+            for (RemoteServerSyncFanOut.Outcome<ViewportServerRegistryService.RegisteredServer, ServerViewportSnapshot> outcome
+                    : RemoteServerSyncFanOut.fetch(
+                            selectedServers,
+                            properties.getSyncConcurrency(),
+                            this::syncDeadline,
+                            server -> normalize(server.serverKey()),
+                            inFlightSyncs,
+                            server -> () -> fetchServerSnapshot(server))) {
+                ViewportServerRegistryService.RegisteredServer server = outcome.server();
                 String serverKey = normalize(server.serverKey());
-                if (!selectedServerKeys.contains(serverKey)) {
-                    continue;
-                }
-                try {
-                    streamableHttpClient.initialize(server, properties.getProtocolVersion());
-                    List<McpStreamableHttpClient.RemoteViewportSummary> summaries = streamableHttpClient.listViewports(server);
-                    nextSnapshots.put(serverKey, buildServerSnapshot(server, summaries));
-                    availabilityGate.markSuccess(serverKey);
-                } catch (McpStreamableHttpClient.RpcErrorException ex) {
-                    if (isUnsupportedViewports(ex.error())) {
-                        log.info("Viewport server '{}' does not support viewports protocol, skip registration", server.serverKey());
-                        nextSnapshots.put(serverKey, new ServerViewportSnapshot(Map.of()));
-                        availabilityGate.markSuccess(serverKey);
-                        continue;
-                    }
+                if (!outcome.succeeded()) {
                     availabilityGate.markFailure(serverKey);
                     log.warn("Failed to sync viewport capabilities from server '{}': {}",
                             server.serverKey(),
-                            summarizeException(ex));
+                            summarizeException(outcome.error()));
                     if (log.isDebugEnabled()) {
-                        log.debug("Viewport sync stack server='{}'", server.serverKey(), ex);
-                    }
-                } catch (Exception ex) {
-                    availabilityGate.markFailure(serverKey);
-                    log.warn("Failed to sync viewport capabilities from server '{}': {}",
-                            server.serverKey(),
-                            summarizeException(ex));
-                    if (log.isDebugEnabled()) {
-                        log.debug("Viewport sync stack server='{}'", server.serverKey(), ex);
+                        log.debug("Viewport sync stack server='{}'", server.serverKey(), outcome.error());
                     }
+                    continue;
                 }
+                nextSnapshots.put(serverKey, outcome.result());
+                availabilityGate.markSuccess(serverKey);
+                publishStep(servers, nextSnapshots, onPublished);
             }
 
-            nextSnapshots.keySet().removeIf(serverKey -> !activeServerKeys.contains(serverKey));
-            return publishSnapshots(before, servers, nextSnapshots);
+            return CatalogDiff.between(before, viewportByKey);
+        }
+    }
+
+    private ServerViewportSnapshot fetchServerSnapshot(ViewportServerRegistryService.RegisteredServer server) {
+        streamableHttpClient.initialize(server, properties.getProtocolVersion());
+        try {
+            return buildServerSnapshot(server, streamableHttpClient.listViewports(server));
+        } catch (McpStreamableHttpClient.RpcErrorException ex) {
+            if (!isUnsupportedViewports(ex.error())) {
+                throw ex;
+            }
+            log.info("Viewport server '{}' does not support viewports protocol, skip registration", server.serverKey());
+            return new ServerViewportSnapshot(Map.of());
+        }
+    }
+
+    private Duration syncDeadline(ViewportServerRegistryService.RegisteredServer server) {
+        return RemoteServerSyncFanOut.deadline(
+                server.connectTimeoutMs(),
+                server.readTimeoutMs(),
+                server.retry(),
+                SYNC_CALLS_PER_SERVER
+        );
+    }
+
+    private void publishStep(
+            List<ViewportServerRegistryService.RegisteredServer> servers,
+            Map<String, ServerViewportSnapshot> nextSnapshots,
+            Consumer<CatalogDiff> onPublished
+    ) {
+        notifyPublished(publishSnapshots(viewportByKey, servers, nextSnapshots), onPublished);
+    }
+
+    private void notifyPublished(CatalogDiff diff, Consumer<CatalogDiff> onPublished) {
+        if (onPublished == null || diff.isEmpty()) {
+            return;
+        }
+        try {
+            onPublished.accept(diff);
+        } catch (Exception ex) {
+            log.warn("Failed to apply viewport changes {}: {}", diff.changedKeys(), summarizeException(ex));
         }
     }
 
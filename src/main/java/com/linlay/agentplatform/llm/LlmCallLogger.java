@@ -6,6 +6,7 @@ import com.linlay.agentplatform.chat.storage.ChatMessage;
 import com.linlay.agentplatform.stream.model.LlmDelta;
 import com.linlay.agentplatform.stream.model.ToolCallDelta;
 import com.linlay.agentplatform.config.properties.LlmInteractionLogProperties;
+import com.linlay.agentplatform.stream.adapter.openai.OpenAiSseDeltaParser;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.util.StringUtils;
@@ -184,6 +185,29 @@ class LlmCallLogger {
         logger.info(message(traceId, stage, "LLM stream history messages detail:\n{}"), builder);
     }
 
+    /**
+     * 记录一次调用的 token 用量与 provider 前缀缓存命中情况；usage 为空时不输出。
+     */
+    void logUsage(Logger logger, String traceId, String stage, Map<String, Object> usage) {
+        if (!enabled || usage == null || usage.isEmpty()) {
+            return;
+        }
+        long promptTokens = longValue(usage.get("prompt_tokens"));
+        long cachedTokens = longValue(usage.get(OpenAiSseDeltaParser.CACHED_TOKENS));
+        logger.info(
+                message(traceId, stage, "usage", "promptTokens={}, cachedTokens={}, cacheHit={}, cacheHitRatio={}, completionTokens={}"),
+                promptTokens,
+                cachedTokens,
+                cachedTokens > 0,
+                promptTokens > 0 ? String.format(Locale.ROOT, "%.2f", (double) cachedTokens / promptTokens) : "0.00",
+                longValue(usage.get("completion_tokens"))
+        );
+    }
+
+    private static long longValue(Object value) {
+        return value instanceof Number number ? number.longValue() : 0L;
+    }
+
     void appendDeltaLog(StringBuilder buffer, LlmDelta delta, String traceId, String stage) {
         if (!enabled || delta == null) {
             return;
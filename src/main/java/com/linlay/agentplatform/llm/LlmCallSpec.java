@@ -8,6 +8,10 @@ import reactor.core.publisher.Mono;
 
 import java.util.List;
 
+/**
+ * 一次模型调用的完整参数。stableSystemPrompt 是 systemPrompt 中跨 run 不变的前缀，
+ * 用于 provider 前缀缓存的 key 与断点；为空时整个 systemPrompt 视为稳定前缀。
+ */
 public record LlmCallSpec(
         String modelKey,
         String providerKey,
@@ -25,8 +29,32 @@ public record LlmCallSpec(
         Long timeoutMs,
         String stage,
         boolean parallelToolCalls,
-        Mono<Void> cancelSignal
+        Mono<Void> cancelSignal,
+        String stableSystemPrompt
 ) {
+    public LlmCallSpec(
+            String modelKey,
+            String providerKey,
+            String model,
+            ModelProtocol protocol,
+            String systemPrompt,
+            List<ChatMessage> messages,
+            String userPrompt,
+            List<LlmService.LlmFunctionTool> tools,
+            ToolChoice toolChoice,
+            String jsonSchema,
+            ComputePolicy compute,
+            boolean reasoningEnabled,
+            Integer maxTokens,
+            Long timeoutMs,
+            String stage,
+            boolean parallelToolCalls,
+            Mono<Void> cancelSignal
+    ) {
+        this(modelKey, providerKey, model, protocol, systemPrompt, messages, userPrompt, tools, toolChoice, jsonSchema,
+                compute, reasoningEnabled, maxTokens, timeoutMs, stage, parallelToolCalls, cancelSignal, null);
+    }
+
     public LlmCallSpec {
         modelKey = modelKey == null || modelKey.isBlank() ? null : modelKey.trim();
         if (messages == null) {
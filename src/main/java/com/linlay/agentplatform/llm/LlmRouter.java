@@ -0,0 +1,243 @@
+package com.linlay.agentplatform.llm;
+
+import com.linlay.agentplatform.config.properties.LlmRoutingProperties;
+import com.linlay.agentplatform.model.ModelDefinition;
+import com.linlay.agentplatform.model.ModelProtocol;
+import com.linlay.agentplatform.model.ModelRegistryService;
+import com.linlay.agentplatform.stream.model.LlmDelta;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+/**
+ * 模型调用路由：按模型声明的 fallbacks 组装候选链，并按 provider 维护滚动窗口内的首 token 耗时与错误率。
+ * <p>
+ * 错误率过高或 p95 首 token 耗时超过阈值的 provider 视为降级，排到候选链末尾；窗口只统计最近 windowMs 内的样本，
+ * 降级 provider 即使不再被调用，其失败样本过期后也会恢复到原位，重新接受真实流量的检验；
+ * 尚未输出任何 delta 的调用失败（含首 token 超时）时切换到下一个候选，已输出内容后不再切换，避免重复输出。
+ * 开启 hedge 时，主候选在 p95 首 token 截止时间内仍无输出则并发请求下一个候选，先出结果者胜出，另一路被取消。
+ */
+class LlmRouter {
+
+    private static final Logger log = LoggerFactory.getLogger(LlmRouter.class);
+
+    private final ModelRegistryService modelRegistryService;
+    private final LlmRoutingProperties properties;
+    private final LongSupplier clock;
+    private final Map<String, ProviderWindow> windows = new ConcurrentHashMap<>();
+
+    record Candidate(String modelKey, String providerKey, String model, ModelProtocol protocol) {
+    }
+
+    LlmRouter(ModelRegistryService modelRegistryService, LlmRoutingProperties properties) {
+        this(modelRegistryService, properties, System::currentTimeMillis);
+    }
+
+    LlmRouter(ModelRegistryService modelRegistryService, LlmRoutingProperties properties, LongSupplier clock) {
+        this.modelRegistryService = modelRegistryService;
+        this.properties = properties == null ? new LlmRoutingProperties() : properties;
+        this.clock = clock;
+    }
+
+    /**
+     * 主模型加上其 fallbacks 组成的候选链；健康的 provider 在前，降级的 provider 保持相对顺序排到末尾。
+     */
+    List<Candidate> candidates(LlmCallSpec spec) {
+        Candidate primary = new Candidate(spec.modelKey(), spec.providerKey(), spec.model(), spec.protocol());
+        if (!properties.isEnabled() || spec.modelKey() == null || modelRegistryService == null) {
+            return List.of(primary);
+        }
+        List<Candidate> candidates = new ArrayList<>();
+        candidates.add(primary);
+        Set<String> seen = new LinkedHashSet<>();
+        seen.add(spec.modelKey());
+        modelRegistryService.find(spec.modelKey()).map(ModelDefinition::fallbacks).orElse(List.of())
+                .forEach(fallbackKey -> {
+                    if (!seen.add(fallbackKey)) {
+                        return;
+                    }
+                    modelRegistryService.find(fallbackKey).ifPresentOrElse(
+                            definition -> candidates.add(new Candidate(
+                                    definition.key(),
+                                    definition.provider(),
+                                    definition.modelId(),
+                                    definition.protocol()
+                            )),
+                            () -> log.warn("Skip unknown fallback model={} for model={}", fallbackKey, spec.modelKey())
+                    );
+                });
+        if (candidates.size() == 1) {
+            return candidates;
+        }
+        List<Candidate> healthy = new ArrayList<>();
+        List<Candidate> degraded = new ArrayList<>();
+        for (Candidate candidate : candidates) {
+            (isDegraded(candidate.providerKey()) ? degraded : healthy).add(candidate);
+        }
+        healthy.addAll(degraded);
+        return List.copyOf(healthy);
+    }
+
+    /**
+     * 按候选链依次尝试；attempt 负责为单个候选发起真实调用。
+     */
+    Flux<LlmDelta> route(List<Candidate> candidates, Function<Candidate, Flux<LlmDelta>> attempt) {
+        if (candidates == null || candidates.isEmpty()) {
+            return Flux.error(new IllegalArgumentException("candidates must not be empty"));
+        }
+        if (!properties.isEnabled()) {
+            return attempt.apply(candidates.get(0));
+        }
+        return attemptFrom(candidates, 0, attempt);
+    }
+
+    Map<String, LlmService.ProviderRouteStats> stats() {
+        Map<String, LlmService.ProviderRouteStats> stats = new LinkedHashMap<>();
+        windows.keySet().stream().sorted().forEach(providerKey -> {
+            ProviderWindow window = windows.get(providerKey);
+            if (window != null) {
+                stats.put(providerKey, window.snapshot(properties, clock.getAsLong()));
+            }
+        });
+        return stats;
+    }
+
+    boolean isDegraded(String providerKey) {
+        ProviderWindow window = providerKey == null ? null : windows.get(providerKey);
+        return window != null && window.snapshot(properties, clock.getAsLong()).degraded();
+    }
+
+    private Flux<LlmDelta> attemptFrom(List<Candidate> candidates, int index, Function<Candidate, Flux<LlmDelta>> attempt) {
+        Candidate candidate = candidates.get(index);
+        Flux<LlmDelta> flux = instrument(candidate, attempt);
+        int next = index + 1;
+        if (properties.isHedgeEnabled() && next < candidates.size()) {
+            Candidate hedge = candidates.get(next);
+            Duration delay = hedgeDelay(candidate.providerKey());
+            Flux<LlmDelta> hedged = Mono.delay(delay)
+                    .doOnNext(ignored -> log.info("Hedge LLM request provider={}, model={} after {} ms without first token from provider={}",
+                            hedge.providerKey(), hedge.model(), delay.toMillis(), candidate.providerKey()))
+                    .thenMany(Flux.defer(() -> instrument(hedge, attempt)));
+            flux = Flux.firstWithValue(flux, hedged);
+            next++;
+        }
+        if (next >= candidates.size()) {
+            return flux;
+        }
+        int fallbackIndex = next;
+        AtomicBoolean emitted = new AtomicBoolean();
+        return flux
+                .doOnNext(ignored -> emitted.set(true))
+                .onErrorResume(ex -> !emitted.get(), ex -> {
+                    Candidate fallback = candidates.get(fallbackIndex);
+                    log.warn("LLM provider={} model={} failed before first token, fail over to provider={} model={}: {}",
+                            candidate.providerKey(), candidate.model(), fallback.providerKey(), fallback.model(), ex.toString());
+                    return attemptFrom(candidates, fallbackIndex, attempt).onErrorMap(failure -> {
+                        if (failure != ex) {
+                            failure.addSuppressed(ex);
+                        }
+                        return failure;
+                    });
+                });
+    }
+
+    private Flux<LlmDelta> instrument(Candidate candidate, Function<Candidate, Flux<LlmDelta>> attempt) {
+        return Flux.defer(() -> {
+            long startNanos = System.nanoTime();
+            AtomicBoolean first = new AtomicBoolean(true);
+            Flux<LlmDelta> flux = Flux.defer(() -> attempt.apply(candidate));
+            if (properties.getFirstTokenTimeoutMs() > 0) {
+                flux = flux.timeout(Mono.delay(Duration.ofMillis(properties.getFirstTokenTimeoutMs())), ignored -> Mono.never());
+            }
+            return flux
+                    .doOnNext(ignored -> {
+                        if (first.compareAndSet(true, false)) {
+                            window(candidate.providerKey()).record((System.nanoTime() - startNanos) / 1_000_000L, false, clock.getAsLong());
+                        }
+                    })
+                    .doOnError(ex -> {
+                        if (first.compareAndSet(true, false)) {
+                            window(candidate.providerKey()).record(-1L, true, clock.getAsLong());
+                        }
+                    });
+        });
+    }
+
+    private Duration hedgeDelay(String providerKey) {
+        long min = Math.max(0L, properties.getHedgeMinDelayMs());
+        long max = Math.max(min, properties.getHedgeMaxDelayMs());
+        ProviderWindow window = providerKey == null ? null : windows.get(providerKey);
+        long p95 = window == null ? -1L : window.snapshot(properties, clock.getAsLong()).p95TtftMs();
+        long delay = p95 < 0 ? max : Math.min(max, Math.max(min, p95));
+        return Duration.ofMillis(delay);
+    }
+
+    private ProviderWindow window(String providerKey) {
+        String key = providerKey == null ? "" : providerKey;
+        return windows.computeIfAbsent(key, ignored -> new ProviderWindow(Math.max(1, properties.getWindowSize())));
+    }
+
+    /**
+     * 固定容量的环形窗口，每个样本带记录时间，快照时只统计 windowMs 内的样本；ttft 为 -1 表示该次调用在首 token 前失败。
+     */
+    private static final class ProviderWindow {
+
+        private final long[] ttftMs;
+        private final long[] recordedAtMs;
+        private int next;
+        private int size;
+
+        private ProviderWindow(int capacity) {
+            this.ttftMs = new long[capacity];
+            this.recordedAtMs = new long[capacity];
+        }
+
+        private synchronized void record(long ttft, boolean error, long nowMs) {
+            ttftMs[next] = error ? -1L : Math.max(0L, ttft);
+            recordedAtMs[next] = nowMs;
+            next = (next + 1) % ttftMs.length;
+            size = Math.min(size + 1, ttftMs.length);
+        }
+
+        private synchronized LlmService.ProviderRouteStats snapshot(LlmRoutingProperties properties, long nowMs) {
+            long windowMs = properties.getWindowMs();
+            long[] successes = new long[size];
+            int successCount = 0;
+            int samples = 0;
+            for (int i = 0; i < size; i++) {
+                if (windowMs > 0 && nowMs - recordedAtMs[i] > windowMs) {
+                    continue;
+                }
+                samples++;
+                if (ttftMs[i] >= 0) {
+                    successes[successCount++] = ttftMs[i];
+                }
+            }
+            int errors = samples - successCount;
+            double errorRate = samples == 0 ? 0d : (double) errors / samples;
+            long p95 = -1L;
+            if (successCount > 0) {
+                Arrays.sort(successes, 0, successCount);
+                p95 = successes[Math.min(successCount - 1, (int) Math.ceil(successCount * 0.95d) - 1)];
+            }
+            boolean enoughSamples = samples >= Math.max(1, properties.getMinSamples());
+            boolean degraded = enoughSamples && (errorRate >= properties.getErrorRateThreshold()
+                    || (properties.getSlowTtftMs() > 0 && p95 > properties.getSlowTtftMs()));
+            return new LlmService.ProviderRouteStats(samples, errors, errorRate, p95, degraded);
+        }
+    }
+}
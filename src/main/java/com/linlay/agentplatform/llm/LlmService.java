@@ -6,6 +6,7 @@ import com.linlay.agentplatform.chat.storage.ChatMessage;
 import com.linlay.agentplatform.engine.policy.ComputePolicy;
 import com.linlay.agentplatform.engine.policy.ToolChoice;
 import com.linlay.agentplatform.config.properties.LlmInteractionLogProperties;
+import com.linlay.agentplatform.config.properties.LlmRoutingProperties;
 import com.linlay.agentplatform.config.properties.ProviderProperties;
 import com.linlay.agentplatform.model.ModelRegistryService;
 import com.linlay.agentplatform.config.properties.ModelProperties;
@@ -13,24 +14,46 @@ import com.linlay.agentplatform.llm.ProviderRegistryService;
 import com.linlay.agentplatform.model.ModelProtocol;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
-import reactor.netty.resources.ConnectionProvider;
 
 import java.time.Duration;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
 
 @Service
-public class LlmService {
+public class LlmService implements DisposableBean {
 
     private static final Logger log = LoggerFactory.getLogger(LlmService.class);
 
     private final OpenAiCompatibleSseClient openAiCompatibleSseClient;
     private final LlmCallLogger callLogger;
+    private final LlmRouter router;
+
+    public record ConnectionPoolStats(
+            int maxConnections,
+            int allocatedConnections,
+            int acquiredConnections,
+            int idleConnections,
+            int pendingAcquires,
+            int maxPendingAcquires,
+            long clientBuilds
+    ) {
+    }
+
+    public record ProviderRouteStats(
+            int samples,
+            int errors,
+            double errorRate,
+            long p95TtftMs,
+            boolean degraded
+    ) {
+    }
 
     public record LlmFunctionTool(
             String name,
@@ -50,13 +73,24 @@ public class LlmService {
         );
     }
 
+    public LlmService(
+            ProviderRegistryService providerRegistryService,
+            ModelRegistryService modelRegistryService,
+            ObjectMapper objectMapper,
+            LlmInteractionLogProperties logProperties,
+            ProviderProperties providerProperties
+    ) {
+        this(providerRegistryService, modelRegistryService, objectMapper, logProperties, providerProperties, null);
+    }
+
     @Autowired
     public LlmService(
             ProviderRegistryService providerRegistryService,
             ModelRegistryService modelRegistryService,
             ObjectMapper objectMapper,
             LlmInteractionLogProperties logProperties,
-            ConnectionProvider llmConnectionProvider
+            ProviderProperties providerProperties,
+            LlmRoutingProperties routingProperties
     ) {
         this.callLogger = new LlmCallLogger(logProperties);
         this.openAiCompatibleSseClient = new OpenAiCompatibleSseClient(
@@ -64,8 +98,28 @@ public class LlmService {
                 modelRegistryService,
                 objectMapper,
                 this.callLogger,
-                llmConnectionProvider
+                new ProviderWebClientCache(providerProperties == null ? null : providerProperties.getPool())
         );
+        this.router = new LlmRouter(modelRegistryService, routingProperties);
+    }
+
+    /**
+     * 各 provider 连接池的当前占用快照，用于观察连接池是否饱和。
+     */
+    public Map<String, ConnectionPoolStats> connectionPoolStats() {
+        return openAiCompatibleSseClient.connectionPoolStats();
+    }
+
+    /**
+     * 各 provider 滚动窗口内的首 token 耗时与错误率，以及是否被判定为降级。
+     */
+    public Map<String, ProviderRouteStats> routeStats() {
+        return router.stats();
+    }
+
+    @Override
+    public void destroy() {
+        openAiCompatibleSseClient.close();
     }
 
     private static ProviderRegistryService emptyProviderRegistryService() {
@@ -184,6 +238,7 @@ public class LlmService {
                     spec.providerKey(),
                     spec.model(),
                     spec.systemPrompt(),
+                    spec.stableSystemPrompt(),
                     spec.messages(),
                     spec.userPrompt(),
                     spec.tools(),
@@ -204,12 +259,13 @@ public class LlmService {
             callLogger.logHistoryMessages(log, traceId, spec.stage(), spec.messages());
             callLogger.info(log, callLogger.message(traceId, spec.stage(), "LLM delta stream user prompt:\n{}"), callLogger.normalizePrompt(spec.stage(), spec.userPrompt()));
 
-            Flux<LlmDelta> deltaFlux = openAiCompatibleSseClient.streamDeltasRawSse(
-                    spec.modelKey(),
-                    spec.providerKey(),
-                    spec.model(),
-                    spec.protocol(),
+            Flux<LlmDelta> deltaFlux = router.route(router.candidates(spec), candidate -> openAiCompatibleSseClient.streamDeltasRawSse(
+                    candidate.modelKey(),
+                    candidate.providerKey(),
+                    candidate.model(),
+                    candidate.protocol(),
                     spec.systemPrompt(),
+                    spec.stableSystemPrompt(),
                     spec.messages(),
                     spec.userPrompt(),
                     spec.tools(),
@@ -221,8 +277,9 @@ public class LlmService {
                     spec.maxTokens(),
                     traceId,
                     spec.stage()
-            );
+            ));
 
+            AtomicReference<Map<String, Object>> lastUsage = new AtomicReference<>();
             Flux<LlmDelta> cancelAwareFlux = deltaFlux.takeUntilOther(spec.cancelSignal());
             return cancelAwareFlux
                     .filter(delta -> delta != null
@@ -231,13 +288,21 @@ public class LlmService {
                             || (delta.toolCalls() != null && !delta.toolCalls().isEmpty())
                             || StringUtils.hasText(delta.finishReason())
                             || (delta.usage() != null && !delta.usage().isEmpty())))
-                    .doOnNext(delta -> callLogger.appendDeltaLog(responseBuffer, delta, traceId, spec.stage()))
-                    .doOnComplete(() -> callLogger.info(
-                            log,
-                            callLogger.message(traceId, spec.stage(), "LLM delta stream response finished in {} ms:\n{}"),
-                            callLogger.elapsedMs(startNanos),
-                            responseBuffer
-                    ))
+                    .doOnNext(delta -> {
+                        if (delta.usage() != null && !delta.usage().isEmpty()) {
+                            lastUsage.set(delta.usage());
+                        }
+                        callLogger.appendDeltaLog(responseBuffer, delta, traceId, spec.stage());
+                    })
+                    .doOnComplete(() -> {
+                        callLogger.logUsage(log, traceId, spec.stage(), lastUsage.get());
+                        callLogger.info(
+                                log,
+                                callLogger.message(traceId, spec.stage(), "LLM delta stream response finished in {} ms:\n{}"),
+                                callLogger.elapsedMs(startNanos),
+                                responseBuffer
+                        );
+                    })
                     .doOnError(ex -> log.error(
                             callLogger.message(traceId, spec.stage(), "LLM delta stream failed in {} ms, partial response:\n{}"),
                             callLogger.elapsedMs(startNanos),
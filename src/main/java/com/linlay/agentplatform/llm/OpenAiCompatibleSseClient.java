@@ -3,7 +3,9 @@ package com.linlay.agentplatform.llm;
 import com.linlay.agentplatform.config.OpenAiCompatConfig;
 import com.linlay.agentplatform.config.OpenAiCompatConfigSupport;
 import com.linlay.agentplatform.config.OpenAiCompatRequestConfig;
+import com.linlay.agentplatform.config.PromptCacheMode;
 import com.linlay.agentplatform.stream.adapter.openai.OpenAiSseDeltaParser;
+import com.linlay.agentplatform.stream.adapter.openai.OpenAiSseFrameDecoder;
 import com.linlay.agentplatform.stream.model.LlmDelta;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.linlay.agentplatform.chat.storage.ChatMessage;
@@ -17,31 +19,37 @@ import com.linlay.agentplatform.llm.ProviderRegistryService;
 import com.linlay.agentplatform.model.ModelProtocol;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.http.HttpHeaders;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
 import org.springframework.http.MediaType;
-import org.springframework.http.client.reactive.ReactorClientHttpConnector;
 import org.springframework.util.StringUtils;
 import org.springframework.web.reactive.function.client.WebClient;
 import reactor.core.publisher.Flux;
-import reactor.netty.http.client.HttpClient;
-import reactor.netty.resources.ConnectionProvider;
 import reactor.util.retry.Retry;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HexFormat;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * 原生 WebClient SSE 路径：直接构建 OpenAI Compatible HTTP 请求，解析 SSE delta。
+ * <p>
+ * WebClient 与连接池按 provider 复用；provider/model 的 compat 合并结果按配置快照缓存，配置刷新后自动重算。
+ * 请求体按固定顺序组装（system、历史、本轮用户输入；工具定义按名称排序），相同前缀逐字节一致，便于 provider 命中前缀缓存。
  */
-class OpenAiCompatibleSseClient {
+class OpenAiCompatibleSseClient implements AutoCloseable {
 
     private static final Logger log = LoggerFactory.getLogger(OpenAiCompatibleSseClient.class);
 
@@ -49,16 +57,29 @@ class OpenAiCompatibleSseClient {
     private final ModelRegistryService modelRegistryService;
     private final ObjectMapper objectMapper;
     private final LlmCallLogger callLogger;
-    private final ConnectionProvider connectionProvider;
+    private final ProviderWebClientCache webClientCache;
+    private final Map<String, CompatEntry> compatCache = new ConcurrentHashMap<>();
 
     OpenAiCompatibleSseClient(ProviderRegistryService providerRegistryService, ModelRegistryService modelRegistryService,
                               ObjectMapper objectMapper,
-                              LlmCallLogger callLogger, ConnectionProvider connectionProvider) {
+                              LlmCallLogger callLogger, ProviderWebClientCache webClientCache) {
         this.providerRegistryService = providerRegistryService;
         this.modelRegistryService = modelRegistryService;
         this.objectMapper = objectMapper;
         this.callLogger = callLogger;
-        this.connectionProvider = connectionProvider;
+        this.webClientCache = webClientCache == null ? new ProviderWebClientCache(null) : webClientCache;
+        if (providerRegistryService != null) {
+            providerRegistryService.onRefresh(diff -> this.webClientCache.evict(diff.removedKeys()));
+        }
+    }
+
+    Map<String, LlmService.ConnectionPoolStats> connectionPoolStats() {
+        return webClientCache.stats();
+    }
+
+    @Override
+    public void close() {
+        webClientCache.close();
     }
 
     Flux<LlmDelta> streamDeltasRawSse(
@@ -67,6 +88,7 @@ class OpenAiCompatibleSseClient {
             String model,
             ModelProtocol protocol,
             String systemPrompt,
+            String stableSystemPrompt,
             List<ChatMessage> historyMessages,
             String userPrompt,
             List<LlmService.LlmFunctionTool> tools,
@@ -85,6 +107,7 @@ class OpenAiCompatibleSseClient {
                 model,
                 protocol,
                 systemPrompt,
+                stableSystemPrompt,
                 historyMessages,
                 userPrompt,
                 tools,
@@ -106,6 +129,7 @@ class OpenAiCompatibleSseClient {
             String model,
             ModelProtocol protocol,
             String systemPrompt,
+            String stableSystemPrompt,
             List<ChatMessage> historyMessages,
             String userPrompt,
             List<LlmService.LlmFunctionTool> tools,
@@ -121,14 +145,15 @@ class OpenAiCompatibleSseClient {
     ) {
         return Flux.defer(() -> {
             ProviderConfig config = resolveProviderConfig(providerKey);
-            OpenAiCompatConfig compat = resolveEffectiveCompat(providerKey, modelKey, protocol);
-            OpenAiSseDeltaParser parser = buildSseDeltaParser(providerKey, modelKey, protocol);
-            WebClient webClient = buildRawWebClient(config);
+            OpenAiCompatConfig compat = resolveEffectiveCompat(config, modelKey, protocol);
+            OpenAiSseDeltaParser parser = new OpenAiSseDeltaParser(objectMapper, compat);
+            WebClient webClient = webClientCache.webClient(config);
             Map<String, Object> request = buildRawStreamRequest(
                     modelKey,
                     providerKey,
                     model,
                     systemPrompt,
+                    stableSystemPrompt,
                     historyMessages,
                     userPrompt,
                     tools,
@@ -154,29 +179,30 @@ class OpenAiCompatibleSseClient {
                     .accept(MediaType.TEXT_EVENT_STREAM)
                     .bodyValue(request)
                     .retrieve()
-                    .bodyToFlux(String.class)
+                    .bodyToFlux(DataBuffer.class)
                     .doOnNext(chunk -> firstChunkReceived.set(true))
                     .retryWhen(Retry.max(1)
                             .filter(ex -> !firstChunkReceived.get() && isConnectionError(ex)))
-                    .doOnNext(rawChunk -> {
-                        callLogger.debug(
-                                log,
-                                callLogger.message(traceId, stage, "raw", "{}"),
-                                callLogger.sanitizeText(rawChunk)
-                        );
+                    .transform(body -> decodeDeltas(body, parser, (payload, offset, length) -> {
+                        boolean debugRaw = callLogger.isEnabled() && log.isDebugEnabled();
+                        if (!debugRaw && !planStageRawLogging) {
+                            return;
+                        }
+                        String rawChunk = new String(payload, offset, length, StandardCharsets.UTF_8);
+                        if (debugRaw) {
+                            callLogger.debug(
+                                    log,
+                                    callLogger.message(traceId, stage, "raw", "{}"),
+                                    callLogger.sanitizeText(rawChunk)
+                            );
+                        }
                         if (planStageRawLogging) {
                             int chunk = rawChunkIndex.getAndIncrement();
                             long elapsedMs = elapsedMs(rawStartNanos);
                             callLogger.info(log, callLogger.message(traceId, stage, "raw-plan", "[chunkIndex={}][elapsedMs={}] {}"),
                                     chunk, elapsedMs, rawChunk);
                         }
-                    })
-                    .handle((rawChunk, sink) -> {
-                        LlmDelta delta = parser.parseOrNull(rawChunk);
-                        if (delta != null) {
-                            sink.next(delta);
-                        }
-                    });
+                    }));
         });
     }
 
@@ -228,14 +254,15 @@ class OpenAiCompatibleSseClient {
             callLogger.info(log, callLogger.message(traceId, stage, "LLM raw SSE content stream user prompt:\n{}"), callLogger.normalizePrompt(stage, userPrompt));
 
             ProviderConfig config = resolveProviderConfig(providerKey);
-            OpenAiCompatConfig compat = resolveEffectiveCompat(providerKey, modelKey, protocol);
-            OpenAiSseDeltaParser parser = buildSseDeltaParser(providerKey, modelKey, protocol);
-            WebClient webClient = buildRawWebClient(config);
+            OpenAiCompatConfig compat = resolveEffectiveCompat(config, modelKey, protocol);
+            OpenAiSseDeltaParser parser = new OpenAiSseDeltaParser(objectMapper, compat);
+            WebClient webClient = webClientCache.webClient(config);
             Map<String, Object> request = buildRawStreamRequest(
                     modelKey,
                     providerKey,
                     model,
                     systemPrompt,
+                    null,
                     historyMessages,
                     userPrompt,
                     List.of(),
@@ -253,13 +280,13 @@ class OpenAiCompatibleSseClient {
                     .accept(MediaType.TEXT_EVENT_STREAM)
                     .bodyValue(request)
                     .retrieve()
-                    .bodyToFlux(String.class)
+                    .bodyToFlux(DataBuffer.class)
                     .doOnNext(chunk -> firstChunkReceived.set(true))
                     .retryWhen(Retry.max(1)
                             .filter(ex -> !firstChunkReceived.get() && isConnectionError(ex)))
-                    .<String>handle((rawChunk, sink) -> {
-                        LlmDelta delta = parser.parseOrNull(rawChunk);
-                        if (delta != null && delta.content() != null && !delta.content().isEmpty()) {
+                    .transform(body -> decodeDeltas(body, parser, null))
+                    .<String>handle((delta, sink) -> {
+                        if (delta.content() != null && !delta.content().isEmpty()) {
                             sink.next(delta.content());
                         }
                     })
@@ -286,6 +313,50 @@ class OpenAiCompatibleSseClient {
 
     // --- private helpers ---
 
+    /**
+     * 在 DataBuffer 上直接切分 SSE 帧并解析 delta；buffer 在解码后立即释放，帧负载不经过字符串。
+     */
+    private Flux<LlmDelta> decodeDeltas(
+            Flux<DataBuffer> body,
+            OpenAiSseDeltaParser parser,
+            OpenAiSseFrameDecoder.FrameConsumer rawFrameListener
+    ) {
+        OpenAiSseFrameDecoder decoder = new OpenAiSseFrameDecoder();
+        return body.concatMapIterable(buffer -> {
+                    List<LlmDelta> deltas = new ArrayList<>(2);
+                    try {
+                        decoder.decode(buffer, (payload, offset, length) ->
+                                collectDelta(parser, rawFrameListener, payload, offset, length, deltas));
+                    } finally {
+                        DataBufferUtils.release(buffer);
+                    }
+                    return deltas;
+                })
+                .concatWith(Flux.defer(() -> {
+                    List<LlmDelta> deltas = new ArrayList<>(1);
+                    decoder.finish((payload, offset, length) ->
+                            collectDelta(parser, rawFrameListener, payload, offset, length, deltas));
+                    return Flux.fromIterable(deltas);
+                }));
+    }
+
+    private void collectDelta(
+            OpenAiSseDeltaParser parser,
+            OpenAiSseFrameDecoder.FrameConsumer rawFrameListener,
+            byte[] payload,
+            int offset,
+            int length,
+            List<LlmDelta> deltas
+    ) {
+        if (rawFrameListener != null) {
+            rawFrameListener.accept(payload, offset, length);
+        }
+        LlmDelta delta = parser.parseOrNull(payload, offset, length);
+        if (delta != null) {
+            deltas.add(delta);
+        }
+    }
+
     private ProviderConfig resolveProviderConfig(String providerKey) {
         if (providerRegistryService == null) {
             throw new IllegalStateException("Provider registry not configured");
@@ -303,21 +374,6 @@ class OpenAiCompatibleSseClient {
         return config;
     }
 
-    private WebClient buildRawWebClient(ProviderConfig config) {
-        if (config == null) {
-            throw new IllegalStateException("Provider config not found");
-        }
-        HttpClient httpClient = connectionProvider != null
-                ? HttpClient.create(connectionProvider)
-                : HttpClient.create();
-        return WebClient.builder()
-                .clientConnector(new ReactorClientHttpConnector(httpClient))
-                .baseUrl(config.baseUrl())
-                .defaultHeader(HttpHeaders.AUTHORIZATION, "Bearer " + config.apiKey())
-                .defaultHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
-                .build();
-    }
-
     String resolveRawCompletionsUri(String providerKey, ModelProtocol protocol) {
         ProviderConfig config = resolveProviderConfig(providerKey);
         ProtocolConfig protocolConfig = config.getProtocol(protocol);
@@ -385,6 +441,40 @@ class OpenAiCompatibleSseClient {
             ComputePolicy computePolicy,
             boolean reasoningEnabled,
             Integer maxTokens
+    ) {
+        return buildRequestBody(
+                modelKey,
+                providerKey,
+                model,
+                systemPrompt,
+                null,
+                historyMessages,
+                userPrompt,
+                tools,
+                parallelToolCalls,
+                toolChoice,
+                jsonSchema,
+                computePolicy,
+                reasoningEnabled,
+                maxTokens
+        );
+    }
+
+    Map<String, Object> buildRequestBody(
+            String modelKey,
+            String providerKey,
+            String model,
+            String systemPrompt,
+            String stableSystemPrompt,
+            List<ChatMessage> historyMessages,
+            String userPrompt,
+            List<LlmService.LlmFunctionTool> tools,
+            boolean parallelToolCalls,
+            ToolChoice toolChoice,
+            String jsonSchema,
+            ComputePolicy computePolicy,
+            boolean reasoningEnabled,
+            Integer maxTokens
     ) {
         OpenAiCompatConfig compat = resolveEffectiveCompat(providerKey, modelKey, ModelProtocol.OPENAI);
         return buildRawStreamRequest(
@@ -392,6 +482,7 @@ class OpenAiCompatibleSseClient {
                 providerKey,
                 model,
                 systemPrompt,
+                stableSystemPrompt,
                 historyMessages,
                 userPrompt,
                 tools,
@@ -410,6 +501,7 @@ class OpenAiCompatibleSseClient {
             String providerKey,
             String model,
             String systemPrompt,
+            String stableSystemPrompt,
             List<ChatMessage> historyMessages,
             String userPrompt,
             List<LlmService.LlmFunctionTool> tools,
@@ -425,7 +517,8 @@ class OpenAiCompatibleSseClient {
         request.put("model", model);
         request.put("stream", true);
         request.put("stream_options", Map.of("include_usage", true));
-        request.put("messages", buildRawMessages(systemPrompt, historyMessages, userPrompt));
+        List<Map<String, Object>> messages = buildRawMessages(systemPrompt, historyMessages, userPrompt);
+        request.put("messages", messages);
 
         if (maxTokens != null && maxTokens > 0) {
             request.put("max_tokens", maxTokens);
@@ -447,10 +540,110 @@ class OpenAiCompatibleSseClient {
             request.put("tool_choice", toToolChoiceValue(toolChoice));
             request.put("parallel_tool_calls", parallelToolCalls);
         }
+        applyPromptCache(request, messages, stableSystemPrefix(systemPrompt, stableSystemPrompt), compat,
+                StringUtils.hasText(userPrompt));
         applyCompatRequest(request, compat, reasoningEnabled);
         return request;
     }
 
+    /**
+     * system 提示词中跨 run 不变的前缀：调用方给出的稳定前缀确实是 system 提示词的前缀时取它，否则整段视为稳定。
+     */
+    private static String stableSystemPrefix(String systemPrompt, String stableSystemPrompt) {
+        if (systemPrompt == null || systemPrompt.isBlank()) {
+            return "";
+        }
+        if (stableSystemPrompt != null && systemPrompt.startsWith(stableSystemPrompt)) {
+            return stableSystemPrompt;
+        }
+        return systemPrompt;
+    }
+
+    /**
+     * 按 compat.request.promptCache 附加 provider 前缀缓存提示：
+     * CACHE_CONTROL 在 system 消息的稳定前缀末尾（运行时上下文等易变尾部之前）与本轮输入之前的最后一条消息上打 ephemeral 断点，
+     * 同一 agent 的不同 run 共享 system 前缀，同一 run 的多轮调用共享已发送的历史；
+     * PROMPT_CACHE_KEY 只按 model、system 稳定前缀与工具定义生成 {@code prompt_cache_key}，让共享前缀的请求路由到同一缓存。
+     */
+    private void applyPromptCache(
+            Map<String, Object> request,
+            List<Map<String, Object>> messages,
+            String stableSystemPrefix,
+            OpenAiCompatConfig compat,
+            boolean endsWithUserPrompt
+    ) {
+        PromptCacheMode mode = compat == null || compat.request() == null ? null : compat.request().promptCache();
+        if (mode == null || mode == PromptCacheMode.NONE || messages.isEmpty()) {
+            return;
+        }
+        if (mode == PromptCacheMode.PROMPT_CACHE_KEY) {
+            request.put("prompt_cache_key", promptCacheKey(request, stableSystemPrefix));
+            return;
+        }
+        if ("system".equals(messages.getFirst().get("role"))) {
+            markSystemCacheBreakpoint(messages.getFirst(), stableSystemPrefix);
+        }
+        int prefixEnd = endsWithUserPrompt ? messages.size() - 1 : messages.size();
+        for (int i = prefixEnd - 1; i > 0; i--) {
+            if (markCacheBreakpoint(messages.get(i))) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * 把 system 消息拆成稳定前缀与易变尾部两段，断点打在稳定前缀上；没有稳定前缀时不打断点。
+     */
+    private void markSystemCacheBreakpoint(Map<String, Object> message, String stableSystemPrefix) {
+        if (!(message.get("content") instanceof String text) || stableSystemPrefix.isBlank()) {
+            return;
+        }
+        Map<String, Object> stablePart = new LinkedHashMap<>();
+        stablePart.put("type", "text");
+        stablePart.put("text", stableSystemPrefix);
+        stablePart.put("cache_control", Map.of("type", "ephemeral"));
+        String volatileTail = text.substring(stableSystemPrefix.length());
+        if (volatileTail.isBlank()) {
+            message.put("content", List.of(stablePart));
+            return;
+        }
+        Map<String, Object> volatilePart = new LinkedHashMap<>();
+        volatilePart.put("type", "text");
+        volatilePart.put("text", volatileTail);
+        message.put("content", List.of(stablePart, volatilePart));
+    }
+
+    private boolean markCacheBreakpoint(Map<String, Object> message) {
+        if (!(message.get("content") instanceof String text) || text.isBlank()) {
+            return false;
+        }
+        Map<String, Object> part = new LinkedHashMap<>();
+        part.put("type", "text");
+        part.put("text", text);
+        part.put("cache_control", Map.of("type", "ephemeral"));
+        message.put("content", List.of(part));
+        return true;
+    }
+
+    private String promptCacheKey(Map<String, Object> request, String stableSystemPrefix) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(String.valueOf(request.get("model")).getBytes(StandardCharsets.UTF_8));
+            if (!stableSystemPrefix.isBlank()) {
+                digest.update((byte) 0);
+                digest.update(stableSystemPrefix.getBytes(StandardCharsets.UTF_8));
+            }
+            Object tools = request.get("tools");
+            if (tools != null) {
+                digest.update((byte) 0);
+                digest.update(objectMapper.writeValueAsBytes(tools));
+            }
+            return "pc-" + HexFormat.of().formatHex(digest.digest(), 0, 16);
+        } catch (NoSuchAlgorithmException | IOException ex) {
+            throw new IllegalStateException("Cannot compute prompt cache key", ex);
+        }
+    }
+
     private void applyCompatRequest(Map<String, Object> request, OpenAiCompatConfig compat, boolean reasoningEnabled) {
         if (!reasoningEnabled || compat == null || compat.request() == null) {
             return;
@@ -472,19 +665,29 @@ class OpenAiCompatibleSseClient {
     }
 
     private OpenAiCompatConfig resolveEffectiveCompat(String providerKey, String modelKey, ModelProtocol protocol) {
-        ProviderConfig providerConfig = resolveProviderConfig(providerKey);
+        return resolveEffectiveCompat(resolveProviderConfig(providerKey), modelKey, protocol);
+    }
+
+    private OpenAiCompatConfig resolveEffectiveCompat(ProviderConfig providerConfig, String modelKey, ModelProtocol protocol) {
+        ModelDefinition modelDefinition = resolveModelDefinition(modelKey);
+        String cacheKey = providerConfig.key() + "|" + (modelKey == null ? "" : modelKey) + "|" + protocol;
+        CompatEntry cached = compatCache.get(cacheKey);
+        if (cached != null && cached.providerConfig() == providerConfig && cached.modelDefinition() == modelDefinition) {
+            return cached.compat();
+        }
         ProtocolConfig protocolConfig = providerConfig.getProtocol(protocol);
         OpenAiCompatConfig providerCompat = protocolConfig == null ? null : protocolConfig.compat();
-        OpenAiCompatConfig modelCompat = resolveModelCompat(modelKey);
-        return OpenAiCompatConfigSupport.merge(providerCompat, modelCompat);
+        OpenAiCompatConfig modelCompat = modelDefinition == null ? null : modelDefinition.compat();
+        OpenAiCompatConfig merged = OpenAiCompatConfigSupport.merge(providerCompat, modelCompat);
+        compatCache.put(cacheKey, new CompatEntry(providerConfig, modelDefinition, merged));
+        return merged;
     }
 
-    private OpenAiCompatConfig resolveModelCompat(String modelKey) {
+    private ModelDefinition resolveModelDefinition(String modelKey) {
         if (!StringUtils.hasText(modelKey) || modelRegistryService == null) {
             return null;
         }
-        ModelDefinition modelDefinition = modelRegistryService.find(modelKey).orElse(null);
-        return modelDefinition == null ? null : modelDefinition.compat();
+        return modelRegistryService.find(modelKey).orElse(null);
     }
 
     private Map<String, Object> buildJsonSchemaFormat(String schema) {
@@ -671,4 +874,11 @@ class OpenAiCompatibleSseClient {
         Throwable cause = ex.getCause();
         return cause instanceof IOException;
     }
+
+    private record CompatEntry(
+            ProviderConfig providerConfig,
+            ModelDefinition modelDefinition,
+            OpenAiCompatConfig compat
+    ) {
+    }
 }
@@ -7,6 +7,7 @@ import com.linlay.agentplatform.config.OpenAiCompatConfig;
 import com.linlay.agentplatform.config.OpenAiCompatConfigSupport;
 import com.linlay.agentplatform.config.ProtocolConfig;
 import com.linlay.agentplatform.config.ProviderConfig;
+import com.linlay.agentplatform.config.ProviderPoolConfig;
 import com.linlay.agentplatform.config.properties.ProviderProperties;
 import com.linlay.agentplatform.model.ModelProtocol;
 import com.linlay.agentplatform.util.CatalogDiff;
@@ -26,6 +27,8 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
 import java.util.stream.Stream;
 
 @Service
@@ -38,6 +41,7 @@ public class ProviderRegistryService {
 
     private final Object reloadLock = new Object();
     private volatile Map<String, ProviderConfig> byKey = Map.of();
+    private final List<Consumer<CatalogDiff>> refreshListeners = new CopyOnWriteArrayList<>();
 
     public ProviderRegistryService(
             ProviderProperties properties
@@ -60,6 +64,15 @@ public class ProviderRegistryService {
         return Optional.ofNullable(byKey.get(StringHelpers.normalizeKey(providerKey)));
     }
 
+    /**
+     * 注册 provider 集合变化监听；每次刷新产生非空差异后在刷新锁内回调，用于释放依附于已移除 provider 的资源。
+     */
+    public void onRefresh(Consumer<CatalogDiff> listener) {
+        if (listener != null) {
+            refreshListeners.add(listener);
+        }
+    }
+
     public CatalogDiff refreshProviders() {
         synchronized (reloadLock) {
             Path dir = Path.of(properties.getExternalDir()).toAbsolutePath().normalize();
@@ -67,7 +80,7 @@ public class ProviderRegistryService {
 
             if (!Files.exists(dir)) {
                 byKey = Map.of();
-                return CatalogDiff.between(before, byKey);
+                return notifyRefresh(CatalogDiff.between(before, byKey));
             }
             if (!Files.isDirectory(dir)) {
                 log.warn("Configured providers directory is not a directory: {}", dir);
@@ -105,8 +118,22 @@ public class ProviderRegistryService {
             byKey = Map.copyOf(loaded);
             CatalogDiff diff = CatalogDiff.between(before, byKey);
             log.debug("Refreshed provider registry, size={}, changed={}", loaded.size(), diff.changedKeys().size());
+            return notifyRefresh(diff);
+        }
+    }
+
+    private CatalogDiff notifyRefresh(CatalogDiff diff) {
+        if (diff.isEmpty()) {
             return diff;
         }
+        for (Consumer<CatalogDiff> listener : refreshListeners) {
+            try {
+                listener.accept(diff);
+            } catch (RuntimeException ex) {
+                log.warn("Provider refresh listener failed", ex);
+            }
+        }
+        return diff;
     }
 
     private Optional<ProviderConfig> tryLoad(Path file) {
@@ -167,10 +194,31 @@ public class ProviderRegistryService {
                     baseUrl,
                     StringHelpers.trimToEmpty(root.path("apiKey").asText("")),
                     StringHelpers.trimToEmpty(root.path("defaultModel").asText("")),
-                    protocols
+                    protocols,
+                    parsePool(root.path("pool"))
             ));
         } catch (IOException ex) {
             throw new IllegalStateException("Failed to parse provider config file: " + file, ex);
         }
     }
+
+    private ProviderPoolConfig parsePool(JsonNode node) {
+        if (node == null || !node.isObject()) {
+            return null;
+        }
+        return new ProviderPoolConfig(
+                positiveIntOrNull(node.path("maxConnections")),
+                positiveIntOrNull(node.path("pendingAcquireMaxCount")),
+                positiveLongOrNull(node.path("pendingAcquireTimeoutMs")),
+                positiveLongOrNull(node.path("maxIdleTimeMs"))
+        );
+    }
+
+    private Integer positiveIntOrNull(JsonNode node) {
+        return node.canConvertToInt() && node.asInt() > 0 ? node.asInt() : null;
+    }
+
+    private Long positiveLongOrNull(JsonNode node) {
+        return node.canConvertToLong() && node.asLong() > 0 ? node.asLong() : null;
+    }
 }
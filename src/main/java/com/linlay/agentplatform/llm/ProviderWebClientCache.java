@@ -0,0 +1,262 @@
+package com.linlay.agentplatform.llm;
+
+import com.linlay.agentplatform.config.ProviderConfig;
+import com.linlay.agentplatform.config.ProviderPoolConfig;
+import com.linlay.agentplatform.config.properties.ProviderProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.Disposable;
+import reactor.core.scheduler.Schedulers;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionPoolMetrics;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.net.SocketAddress;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 按 provider 缓存 WebClient 与独立连接池。
+ * <p>
+ * 缓存项记录构建时的 {@link ProviderConfig}；provider 刷新后配置不再相等时重建客户端，
+ * 已从配置中移除的 provider 由 {@link #evict} 立即摘除（连接池与指标一并退役），
+ * 旧连接池在其上的连接全部归还后才释放，不会打断进行中的流。仍有连接被占用的旧连接池由后台定时巡检，
+ * 最后一个连接归还后的下一次巡检即释放，巡检在没有待释放连接池时自动停止。
+ */
+class ProviderWebClientCache implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(ProviderWebClientCache.class);
+    private static final Duration RETIRED_SWEEP_INTERVAL = Duration.ofSeconds(1);
+
+    private final ProviderProperties.Pool defaults;
+    private final Duration sweepInterval;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    /** 以下两个字段由 retired 自身的监视器保护。 */
+    private final List<Entry> retired = new ArrayList<>();
+    private Disposable sweeper;
+    private final AtomicLong clientBuilds = new AtomicLong();
+
+    ProviderWebClientCache(ProviderProperties.Pool defaults) {
+        this(defaults, RETIRED_SWEEP_INTERVAL);
+    }
+
+    ProviderWebClientCache(ProviderProperties.Pool defaults, Duration sweepInterval) {
+        this.defaults = defaults == null ? new ProviderProperties.Pool() : defaults;
+        this.sweepInterval = sweepInterval;
+    }
+
+    WebClient webClient(ProviderConfig config) {
+        Entry current = entries.get(config.key());
+        if (current != null && current.config.equals(config)) {
+            return current.webClient;
+        }
+        Entry[] replaced = new Entry[1];
+        Entry entry = entries.compute(config.key(), (key, existing) -> {
+            if (existing != null && existing.config.equals(config)) {
+                return existing;
+            }
+            replaced[0] = existing;
+            return build(config);
+        });
+        if (replaced[0] != null) {
+            retire(replaced[0]);
+        }
+        return entry.webClient;
+    }
+
+    /**
+     * 摘除不再配置的 provider 的缓存项；其连接池按退役流程在连接归还后释放。
+     */
+    void evict(Collection<String> providerKeys) {
+        if (providerKeys == null) {
+            return;
+        }
+        for (String key : providerKeys) {
+            Entry removed = entries.remove(key);
+            if (removed != null) {
+                log.debug("Evicted LLM web client of removed provider={}", key);
+                retire(removed);
+            }
+        }
+    }
+
+    Map<String, LlmService.ConnectionPoolStats> stats() {
+        Map<String, LlmService.ConnectionPoolStats> stats = new LinkedHashMap<>();
+        entries.values().stream()
+                .sorted((left, right) -> left.config.key().compareTo(right.config.key()))
+                .forEach(entry -> stats.put(entry.config.key(), entry.metrics.snapshot(entry.maxConnections, clientBuilds.get())));
+        return stats;
+    }
+
+    int retiredPools() {
+        synchronized (retired) {
+            return retired.size();
+        }
+    }
+
+    @Override
+    public void close() {
+        List<Entry> all = new ArrayList<>(entries.values());
+        entries.clear();
+        synchronized (retired) {
+            all.addAll(retired);
+            retired.clear();
+            stopSweeperLocked();
+        }
+        for (Entry entry : all) {
+            entry.pool.dispose();
+        }
+    }
+
+    private Entry build(ProviderConfig config) {
+        ProviderPoolConfig override = config.pool();
+        int maxConnections = positiveOr(override == null ? null : override.maxConnections(), defaults.getMaxConnections());
+        int pendingAcquireMaxCount = positiveOr(
+                override == null ? null : override.pendingAcquireMaxCount(),
+                defaults.getPendingAcquireMaxCount()
+        );
+        long pendingAcquireTimeoutMs = positiveOr(
+                override == null ? null : override.pendingAcquireTimeoutMs(),
+                defaults.getPendingAcquireTimeoutMs()
+        );
+        long maxIdleTimeMs = positiveOr(override == null ? null : override.maxIdleTimeMs(), defaults.getMaxIdleTimeMs());
+        PoolMetrics metrics = new PoolMetrics();
+        ConnectionProvider.Builder builder = ConnectionProvider.builder("llm-pool-" + config.key())
+                .maxConnections(maxConnections)
+                .pendingAcquireMaxCount(pendingAcquireMaxCount)
+                .pendingAcquireTimeout(Duration.ofMillis(pendingAcquireTimeoutMs))
+                .maxIdleTime(Duration.ofMillis(maxIdleTimeMs))
+                .metrics(true, () -> metrics);
+        if (defaults.getMaxLifeTimeMs() > 0) {
+            builder.maxLifeTime(Duration.ofMillis(defaults.getMaxLifeTimeMs()));
+        }
+        if (defaults.getEvictIntervalMs() > 0) {
+            builder.evictInBackground(Duration.ofMillis(defaults.getEvictIntervalMs()));
+        }
+        ConnectionProvider pool = builder.build();
+        WebClient webClient = WebClient.builder()
+                .clientConnector(new ReactorClientHttpConnector(HttpClient.create(pool)))
+                .baseUrl(config.baseUrl())
+                .defaultHeader(HttpHeaders.AUTHORIZATION, "Bearer " + config.apiKey())
+                .defaultHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                .build();
+        clientBuilds.incrementAndGet();
+        log.debug("Built LLM web client provider={}, maxConnections={}, pendingAcquireMaxCount={}",
+                config.key(), maxConnections, pendingAcquireMaxCount);
+        return new Entry(config, pool, webClient, metrics, maxConnections);
+    }
+
+    private void retire(Entry entry) {
+        synchronized (retired) {
+            retired.add(entry);
+        }
+        sweepRetired();
+    }
+
+    private void sweepRetired() {
+        List<Entry> idle = new ArrayList<>();
+        synchronized (retired) {
+            retired.removeIf(entry -> {
+                if (entry.metrics.acquired() > 0) {
+                    return false;
+                }
+                idle.add(entry);
+                return true;
+            });
+            if (retired.isEmpty()) {
+                stopSweeperLocked();
+            } else if (sweeper == null) {
+                sweeper = Schedulers.parallel().schedulePeriodically(
+                        this::sweepRetired,
+                        sweepInterval.toMillis(),
+                        sweepInterval.toMillis(),
+                        TimeUnit.MILLISECONDS
+                );
+            }
+        }
+        for (Entry entry : idle) {
+            entry.pool.disposeLater().subscribe(
+                    ignored -> {
+                    },
+                    ex -> log.debug("Cannot dispose retired LLM connection pool provider={}", entry.config.key(), ex)
+            );
+        }
+    }
+
+    private void stopSweeperLocked() {
+        if (sweeper != null) {
+            sweeper.dispose();
+            sweeper = null;
+        }
+    }
+
+    private static int positiveOr(Integer value, int fallback) {
+        return value != null && value > 0 ? value : Math.max(1, fallback);
+    }
+
+    private static long positiveOr(Long value, long fallback) {
+        return value != null && value > 0 ? value : Math.max(1L, fallback);
+    }
+
+    private record Entry(
+            ProviderConfig config,
+            ConnectionProvider pool,
+            WebClient webClient,
+            PoolMetrics metrics,
+            int maxConnections
+    ) {
+    }
+
+    /**
+     * 接收 reactor-netty 按远端地址注册的连接池指标，汇总成 provider 级快照。
+     */
+    private static final class PoolMetrics implements ConnectionProvider.MeterRegistrar {
+
+        private final Map<SocketAddress, ConnectionPoolMetrics> byAddress = new ConcurrentHashMap<>();
+
+        @Override
+        public void registerMetrics(String poolName, String id, SocketAddress remoteAddress, ConnectionPoolMetrics metrics) {
+            byAddress.put(remoteAddress, metrics);
+        }
+
+        @Override
+        public void deRegisterMetrics(String poolName, String id, SocketAddress remoteAddress) {
+            byAddress.remove(remoteAddress);
+        }
+
+        private int acquired() {
+            int acquired = 0;
+            for (ConnectionPoolMetrics metrics : byAddress.values()) {
+                acquired += metrics.acquiredSize();
+            }
+            return acquired;
+        }
+
+        private LlmService.ConnectionPoolStats snapshot(int maxConnections, long clientBuilds) {
+            int allocated = 0;
+            int acquired = 0;
+            int idle = 0;
+            int pending = 0;
+            int maxPending = 0;
+            for (ConnectionPoolMetrics metrics : byAddress.values()) {
+                allocated += metrics.allocatedSize();
+                acquired += metrics.acquiredSize();
+                idle += metrics.idleSize();
+                pending += metrics.pendingAcquireSize();
+                maxPending = Math.max(maxPending, metrics.maxPendingAcquireSize());
+            }
+            return new LlmService.ConnectionPoolStats(maxConnections, allocated, acquired, idle, pending, maxPending, clientBuilds);
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package com.linlay.agentplatform.memory.embedding;
+
+import com.linlay.agentplatform.memory.AgentMemoryService;
+import com.linlay.agentplatform.util.SqliteConnectionPool;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * memory.db 中的 embedding 结果缓存表，按「模型 + 文本」的内容哈希寻址，进程重启后相同文本无需再次请求 provider。
+ * <p>
+ * 读写复用 {@link SqliteConnectionPool}：查找走并发的读连接，写入在独占写连接上成批提交，不再每次新建连接。
+ * 行数超过上限时按写入时间淘汰最旧的记录。
+ */
+public class EmbeddingCacheRepository implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(EmbeddingCacheRepository.class);
+    private static final int PRUNE_EVERY_INSERTS = 512;
+    private static final int READER_CONNECTIONS = 2;
+    private static final int BUSY_TIMEOUT_MS = 5000;
+
+    private final AgentMemoryService agentMemoryService;
+    private final int maxEntries;
+    private final Object poolLock = new Object();
+    private volatile SqliteConnectionPool pool;
+    private volatile Path poolPath;
+    private int insertsSincePrune;
+
+    public EmbeddingCacheRepository(AgentMemoryService agentMemoryService, int maxEntries) {
+        this.agentMemoryService = agentMemoryService == null ? new AgentMemoryService() : agentMemoryService;
+        this.maxEntries = maxEntries;
+    }
+
+    public Optional<float[]> find(String key) {
+        if (maxEntries <= 0 || key == null) {
+            return Optional.empty();
+        }
+        try {
+            return initializedPool().read(connection -> {
+                PreparedStatement statement = connection.prepare("SELECT EMBEDDING_ FROM EMBEDDING_CACHE WHERE KEY_ = ?");
+                statement.setString(1, key);
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    return resultSet.next() ? Optional.ofNullable(decode(resultSet.getBytes(1))) : Optional.<float[]>empty();
+                }
+            });
+        } catch (SQLException | IOException ex) {
+            log.debug("Cannot read embedding cache key={}", key, ex);
+            return Optional.empty();
+        }
+    }
+
+    public void saveAll(Map<String, float[]> embeddings) {
+        if (maxEntries <= 0 || embeddings == null || embeddings.isEmpty()) {
+            return;
+        }
+        try {
+            initializedPool().write(connection -> {
+                long now = System.currentTimeMillis();
+                PreparedStatement statement = connection.prepare(
+                        "INSERT OR REPLACE INTO EMBEDDING_CACHE (KEY_, EMBEDDING_, CREATED_AT_) VALUES (?, ?, ?)");
+                for (Map.Entry<String, float[]> entry : embeddings.entrySet()) {
+                    statement.setString(1, entry.getKey());
+                    statement.setBytes(2, encode(entry.getValue()));
+                    statement.setLong(3, now);
+                    statement.addBatch();
+                }
+                statement.executeBatch();
+                // 写连接独占，计数只在写事务内修改
+                insertsSincePrune += embeddings.size();
+                if (insertsSincePrune >= PRUNE_EVERY_INSERTS) {
+                    prune(connection);
+                    insertsSincePrune = 0;
+                }
+                return null;
+            });
+        } catch (SQLException | IOException ex) {
+            log.debug("Cannot persist {} embedding cache entries", embeddings.size(), ex);
+        }
+    }
+
+    @Override
+    public void close() {
+        synchronized (poolLock) {
+            if (pool != null) {
+                pool.close();
+            }
+        }
+    }
+
+    private void prune(SqliteConnectionPool.PooledConnection connection) throws SQLException {
+        PreparedStatement statement = connection.prepare("""
+                DELETE FROM EMBEDDING_CACHE
+                WHERE KEY_ NOT IN (
+                  SELECT KEY_ FROM EMBEDDING_CACHE ORDER BY CREATED_AT_ DESC LIMIT ?
+                )
+                """);
+        statement.setInt(1, maxEntries);
+        statement.executeUpdate();
+    }
+
+    /**
+     * 取当前 memory.db 的连接池；首次使用、路径变化或库文件被删除时关闭旧连接并建表。
+     */
+    private SqliteConnectionPool initializedPool() throws SQLException, IOException {
+        Path dbPath = agentMemoryService.resolveMemoryDbPath();
+        SqliteConnectionPool current = pool;
+        if (current != null && dbPath.equals(poolPath) && Files.isRegularFile(dbPath)) {
+            return current;
+        }
+        synchronized (poolLock) {
+            if (pool != null && dbPath.equals(poolPath) && Files.isRegularFile(dbPath)) {
+                return pool;
+            }
+            if (pool != null) {
+                pool.close();
+            }
+            Path parent = dbPath.getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            SqliteConnectionPool created = pool != null && dbPath.equals(poolPath)
+                    ? pool
+                    : new SqliteConnectionPool(dbPath, READER_CONNECTIONS, 0L, BUSY_TIMEOUT_MS);
+            created.write(connection -> {
+                try (Statement statement = connection.connection().createStatement()) {
+                    statement.execute("""
+                            CREATE TABLE IF NOT EXISTS EMBEDDING_CACHE (
+                              KEY_ TEXT PRIMARY KEY,
+                              EMBEDDING_ BLOB NOT NULL,
+                              CREATED_AT_ INTEGER NOT NULL
+                            )
+                            """);
+                    statement.execute("CREATE INDEX IF NOT EXISTS IDX_EMBEDDING_CACHE_CREATED_AT_ ON EMBEDDING_CACHE(CREATED_AT_)");
+                }
+                return null;
+            });
+            poolPath = dbPath;
+            pool = created;
+            return created;
+        }
+    }
+
+    private byte[] encode(float[] embedding) {
+        ByteBuffer buffer = ByteBuffer.allocate(embedding.length * Float.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.asFloatBuffer().put(embedding);
+        return buffer.array();
+    }
+
+    private float[] decode(byte[] bytes) {
+        if (bytes == null || bytes.length == 0 || bytes.length % Float.BYTES != 0) {
+            return null;
+        }
+        float[] values = new float[bytes.length / Float.BYTES];
+        ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer().get(values);
+        return values;
+    }
+}
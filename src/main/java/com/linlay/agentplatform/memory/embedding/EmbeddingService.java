@@ -11,12 +11,33 @@ import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.util.StringUtils;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.time.Duration;
 import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * OpenAI 兼容 {@code /v1/embeddings} 客户端。
+ * <p>
+ * 结果按「模型 + 文本」的内容哈希缓存两级：进程内 LRU 与 memory.db 中的 {@link EmbeddingCacheRepository}。
+ * 未命中的单条 {@link #embed(String)} 进入微批队列，窗口内的并发请求合并为一次 {@code embedBatch} 调用；
+ * WebClient 按 provider 的 baseUrl/apiKey 缓存复用，共享底层连接池。
+ */
 public class EmbeddingService {
 
     private static final Logger log = LoggerFactory.getLogger(EmbeddingService.class);
@@ -25,24 +46,84 @@ public class EmbeddingService {
     private final AgentMemoryProperties properties;
     private final WebClient.Builder webClientBuilder;
     private final ObjectMapper objectMapper;
+    private final EmbeddingCacheRepository cacheRepository;
+    private final LinkedHashMap<String, float[]> cache;
+    private final int cacheMaxEntries;
+    private final long batchWindowMs;
+    private final int batchMaxSize;
+    private final ScheduledExecutorService batchScheduler;
+    /** 持久化缓存的写后线程：SQLite 写事务不能跑在 Netty 事件循环上，结果也不必等写入完成再返回。 */
+    private final ExecutorService persistExecutor;
+    private final List<PendingEmbedding> pending = new ArrayList<>();
+    private boolean flushScheduled;
+    private volatile CachedClient cachedClient;
 
     public EmbeddingService(
             ProviderRegistryService providerRegistryService,
             AgentMemoryProperties properties,
             WebClient.Builder webClientBuilder,
             ObjectMapper objectMapper
+    ) {
+        this(providerRegistryService, properties, webClientBuilder, objectMapper, null);
+    }
+
+    public EmbeddingService(
+            ProviderRegistryService providerRegistryService,
+            AgentMemoryProperties properties,
+            WebClient.Builder webClientBuilder,
+            ObjectMapper objectMapper,
+            EmbeddingCacheRepository cacheRepository
     ) {
         this.providerRegistryService = providerRegistryService;
         this.properties = properties == null ? new AgentMemoryProperties() : properties;
         this.webClientBuilder = webClientBuilder;
         this.objectMapper = objectMapper == null ? new ObjectMapper() : objectMapper;
+        this.cacheRepository = cacheRepository;
+        this.cacheMaxEntries = Math.max(0, this.properties.getEmbeddingCache().getMaxEntries());
+        this.cache = new LinkedHashMap<>(16, 0.75f, true);
+        this.batchWindowMs = this.properties.getEmbeddingBatch().getWindowMs();
+        this.batchMaxSize = Math.max(1, this.properties.getEmbeddingBatch().getMaxSize());
+        if (batchWindowMs > 0) {
+            this.batchScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "memory-embedding-batch");
+                t.setDaemon(true);
+                return t;
+            });
+        } else {
+            this.batchScheduler = null;
+        }
+        this.persistExecutor = cacheRepository == null ? null : Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "memory-embedding-persist");
+            t.setDaemon(true);
+            return t;
+        });
     }
 
     public Optional<float[]> embed(String text) {
         if (!StringUtils.hasText(text)) {
             return Optional.empty();
         }
-        return embedBatch(List.of(text)).stream().findFirst().orElse(Optional.empty());
+        if (!isAvailable()) {
+            return Optional.empty();
+        }
+        String key = cacheKey(text);
+        Optional<float[]> cached = cachedEmbedding(key);
+        if (cached.isPresent()) {
+            return cached;
+        }
+        if (batchScheduler == null) {
+            return embedBatch(List.of(text)).stream().findFirst().orElse(Optional.empty());
+        }
+        CompletableFuture<Optional<float[]>> future = enqueue(text, key);
+        try {
+            return future.get(Math.max(1, properties.getEmbeddingTimeoutMs()) + batchWindowMs + 1_000L, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return Optional.empty();
+        } catch (Exception ex) {
+            log.debug("Embedding request failed, fallback to FTS-only search", ex);
+            return Optional.empty();
+        }
     }
 
     public List<Optional<float[]>> embedBatch(List<String> texts) {
@@ -52,25 +133,29 @@ public class EmbeddingService {
         if (!isAvailable()) {
             return emptyResults(texts.size());
         }
-        ProviderConfig provider = providerRegistryService.find(properties.getEmbeddingProviderKey()).orElse(null);
-        if (provider == null || !StringUtils.hasText(provider.baseUrl())) {
-            return emptyResults(texts.size());
+        List<Optional<float[]>> results = new ArrayList<>(emptyResults(texts.size()));
+        List<String> missingTexts = new ArrayList<>();
+        List<Integer> missingIndexes = new ArrayList<>();
+        for (int index = 0; index < texts.size(); index++) {
+            String text = texts.get(index);
+            Optional<float[]> cached = StringUtils.hasText(text) ? cachedEmbedding(cacheKey(text)) : Optional.empty();
+            if (cached.isPresent()) {
+                results.set(index, cached);
+            } else {
+                missingTexts.add(text);
+                missingIndexes.add(index);
+            }
         }
-
-        try {
-            JsonNode response = buildClient(provider)
-                    .post()
-                    .uri(uriBuilder -> uriBuilder.path("/v1/embeddings").build())
-                    .contentType(MediaType.APPLICATION_JSON)
-                    .bodyValue(buildRequest(texts))
-                    .retrieve()
-                    .bodyToMono(JsonNode.class)
-                    .block(Duration.ofMillis(Math.max(1, properties.getEmbeddingTimeoutMs())));
-            return parseEmbeddings(response, texts.size());
-        } catch (Exception ex) {
-            log.debug("Embedding request failed, fallback to FTS-only search", ex);
-            return emptyResults(texts.size());
+        if (missingTexts.isEmpty()) {
+            return List.copyOf(results);
+        }
+        List<Optional<float[]>> fetched = requestEmbeddings(missingTexts)
+                .blockOptional(Duration.ofMillis(Math.max(1, properties.getEmbeddingTimeoutMs()) + 1_000L))
+                .orElseGet(() -> emptyResults(missingTexts.size()));
+        for (int i = 0; i < missingIndexes.size(); i++) {
+            results.set(missingIndexes.get(i), fetched.get(i));
         }
+        return List.copyOf(results);
     }
 
     public boolean isAvailable() {
@@ -83,12 +168,195 @@ public class EmbeddingService {
                 .isPresent();
     }
 
-    private WebClient buildClient(ProviderConfig provider) {
-        WebClient.Builder builder = webClientBuilder.clone().baseUrl(provider.baseUrl().trim());
-        if (StringUtils.hasText(provider.apiKey())) {
-            builder.defaultHeader(HttpHeaders.AUTHORIZATION, "Bearer " + provider.apiKey().trim());
+    public void close() {
+        if (batchScheduler != null) {
+            batchScheduler.shutdownNow();
+        }
+        List<PendingEmbedding> abandoned;
+        synchronized (pending) {
+            abandoned = new ArrayList<>(pending);
+            pending.clear();
+        }
+        abandoned.forEach(item -> item.future().complete(Optional.empty()));
+        if (persistExecutor != null) {
+            // 已排队的缓存写入在关闭前落盘
+            persistExecutor.shutdown();
+            try {
+                persistExecutor.awaitTermination(5, TimeUnit.SECONDS);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private CompletableFuture<Optional<float[]>> enqueue(String text, String key) {
+        PendingEmbedding item = new PendingEmbedding(text, key, new CompletableFuture<>());
+        boolean flushNow = false;
+        synchronized (pending) {
+            pending.add(item);
+            if (pending.size() >= batchMaxSize) {
+                flushNow = true;
+            } else if (!flushScheduled) {
+                flushScheduled = true;
+                try {
+                    batchScheduler.schedule(this::flushPending, batchWindowMs, TimeUnit.MILLISECONDS);
+                } catch (RejectedExecutionException ex) {
+                    flushNow = true;
+                }
+            }
+        }
+        if (flushNow) {
+            flushPending();
+        }
+        return item.future();
+    }
+
+    /**
+     * 取出当前窗口内的请求（按 batchMaxSize 分段），相同文本只请求一次，响应在 Reactor 线程上完成各自的 future。
+     */
+    private void flushPending() {
+        List<PendingEmbedding> batch;
+        synchronized (pending) {
+            flushScheduled = false;
+            if (pending.isEmpty()) {
+                return;
+            }
+            batch = new ArrayList<>(pending);
+            pending.clear();
+        }
+        for (int from = 0; from < batch.size(); from += batchMaxSize) {
+            List<PendingEmbedding> chunk = batch.subList(from, Math.min(batch.size(), from + batchMaxSize));
+            Map<String, String> textsByKey = new LinkedHashMap<>();
+            for (PendingEmbedding item : chunk) {
+                textsByKey.putIfAbsent(item.key(), item.text());
+            }
+            List<String> keys = List.copyOf(textsByKey.keySet());
+            requestEmbeddings(List.copyOf(textsByKey.values()))
+                    .defaultIfEmpty(emptyResults(keys.size()))
+                    .subscribe(results -> {
+                        Map<String, Optional<float[]>> byKey = new LinkedHashMap<>();
+                        for (int i = 0; i < keys.size(); i++) {
+                            byKey.put(keys.get(i), results.get(i));
+                        }
+                        for (PendingEmbedding item : chunk) {
+                            item.future().complete(byKey.getOrDefault(item.key(), Optional.empty()));
+                        }
+                    }, error -> chunk.forEach(item -> item.future().complete(Optional.empty())));
+        }
+    }
+
+    /**
+     * 请求 provider 并写入两级缓存；失败、超时或 provider 不可用时发出与输入等长的空结果。
+     */
+    private Mono<List<Optional<float[]>>> requestEmbeddings(List<String> texts) {
+        ProviderConfig provider = providerRegistryService.find(properties.getEmbeddingProviderKey()).orElse(null);
+        if (provider == null || !StringUtils.hasText(provider.baseUrl())) {
+            return Mono.just(emptyResults(texts.size()));
+        }
+        return Mono.defer(() -> clientFor(provider)
+                        .post()
+                        .uri(uriBuilder -> uriBuilder.path("/v1/embeddings").build())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .bodyValue(buildRequest(texts))
+                        .retrieve()
+                        .bodyToMono(JsonNode.class))
+                .timeout(Duration.ofMillis(Math.max(1, properties.getEmbeddingTimeoutMs())))
+                .map(response -> {
+                    List<Optional<float[]>> results = parseEmbeddings(response, texts.size());
+                    rememberEmbeddings(texts, results);
+                    return results;
+                })
+                .onErrorResume(ex -> {
+                    log.debug("Embedding request failed, fallback to FTS-only search", ex);
+                    return Mono.just(emptyResults(texts.size()));
+                });
+    }
+
+    private WebClient clientFor(ProviderConfig provider) {
+        String baseUrl = provider.baseUrl().trim();
+        String apiKey = StringUtils.hasText(provider.apiKey()) ? provider.apiKey().trim() : null;
+        CachedClient current = cachedClient;
+        if (current != null && current.baseUrl().equals(baseUrl) && Objects.equals(current.apiKey(), apiKey)) {
+            return current.client();
+        }
+        WebClient.Builder builder = webClientBuilder.clone().baseUrl(baseUrl);
+        if (apiKey != null) {
+            builder.defaultHeader(HttpHeaders.AUTHORIZATION, "Bearer " + apiKey);
+        }
+        CachedClient created = new CachedClient(baseUrl, apiKey, builder.build());
+        cachedClient = created;
+        return created.client();
+    }
+
+    private Optional<float[]> cachedEmbedding(String key) {
+        if (cacheMaxEntries > 0) {
+            synchronized (cache) {
+                float[] cached = cache.get(key);
+                if (cached != null) {
+                    return Optional.of(cached.clone());
+                }
+            }
+        }
+        if (cacheRepository == null) {
+            return Optional.empty();
+        }
+        Optional<float[]> persisted = cacheRepository.find(key)
+                .filter(embedding -> embedding.length == properties.getEmbeddingDimension());
+        persisted.ifPresent(embedding -> putCache(key, embedding));
+        return persisted;
+    }
+
+    private void rememberEmbeddings(List<String> texts, List<Optional<float[]>> results) {
+        Map<String, float[]> fresh = new LinkedHashMap<>();
+        for (int i = 0; i < texts.size(); i++) {
+            Optional<float[]> result = results.get(i);
+            if (result.isPresent() && StringUtils.hasText(texts.get(i))) {
+                String key = cacheKey(texts.get(i));
+                putCache(key, result.get());
+                fresh.put(key, result.get());
+            }
+        }
+        if (persistExecutor != null && !fresh.isEmpty()) {
+            persistBehind(fresh);
+        }
+    }
+
+    private void persistBehind(Map<String, float[]> fresh) {
+        try {
+            persistExecutor.execute(() -> {
+                try {
+                    cacheRepository.saveAll(fresh);
+                } catch (RuntimeException ex) {
+                    log.debug("Failed to persist embedding cache entries, keep memory cache only", ex);
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            log.debug("Embedding cache persist executor closed, skip {} entries", fresh.size());
+        }
+    }
+
+    private void putCache(String key, float[] embedding) {
+        if (cacheMaxEntries <= 0) {
+            return;
+        }
+        synchronized (cache) {
+            cache.put(key, embedding.clone());
+            while (cache.size() > cacheMaxEntries) {
+                cache.remove(cache.keySet().iterator().next());
+            }
+        }
+    }
+
+    private String cacheKey(String text) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(properties.getEmbeddingModel().trim().getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(text.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException("SHA-256 not available", ex);
         }
-        return builder.build();
     }
 
     private JsonNode buildRequest(List<String> texts) {
@@ -138,4 +406,10 @@ public class EmbeddingService {
         }
         return List.copyOf(results);
     }
+
+    private record PendingEmbedding(String text, String key, CompletableFuture<Optional<float[]>> future) {
+    }
+
+    private record CachedClient(String baseUrl, String apiKey, WebClient client) {
+    }
 }
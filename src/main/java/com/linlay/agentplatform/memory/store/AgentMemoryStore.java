@@ -11,6 +11,7 @@ import org.springframework.util.StringUtils;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.sql.Connection;
@@ -23,8 +24,11 @@ import java.time.Instant;
 import java.time.LocalDate;
 import java.time.ZoneId;
 import java.util.ArrayList;
+import java.util.Base64;
 import java.util.Collection;
 import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
@@ -43,12 +47,16 @@ public class AgentMemoryStore {
     private static final String MATCH_HYBRID = "hybrid";
     private static final String MATCH_FTS = "fts";
     private static final String MATCH_VECTOR = "vector";
+    private static final int VECTOR_INDEX_PERSIST_EVERY = 256;
+    private static final int ID_BATCH_SIZE = 500;
 
     private final AgentMemoryProperties properties;
     private final AgentMemoryService agentMemoryService;
     private final EmbeddingService embeddingService;
     private final Map<String, Object> dbLocks = new ConcurrentHashMap<>();
     private final Set<String> initializedDatabases = ConcurrentHashMap.newKeySet();
+    // 按 agentKey 划分的向量索引，读写均在 lockFor(dbPath) 内进行
+    private final Map<String, MemoryVectorIndex> vectorIndexes = new HashMap<>();
 
     public AgentMemoryStore(
             AgentMemoryProperties properties,
@@ -135,6 +143,9 @@ public class AgentMemoryStore {
                 statement.setInt(15, 0);
                 statement.setNull(16, java.sql.Types.BIGINT);
                 statement.executeUpdate();
+                if (embedding.isPresent()) {
+                    indexWrittenEmbedding(connection, normalizedAgentKey, id, normalizedCategory, embedding.get());
+                }
             } catch (SQLException ex) {
                 throw new IllegalStateException("Cannot write memory for agentKey=" + normalizedAgentKey, ex);
             }
@@ -248,11 +259,13 @@ public class AgentMemoryStore {
         String normalizedAgentKey = requireText(agentKey, "agentKey");
         String normalizedCategory = normalizeOptionalCategory(category);
         Path dbPath = resolveDbPath();
+        // 与 write 一致，在库锁之外计算 embedding，并发检索的 embed 请求才能在 EmbeddingService 中合批
+        Optional<float[]> queryEmbedding = safeEmbed(normalizedQuery);
         synchronized (lockFor(dbPath)) {
             ensureInitialized(dbPath);
             try (Connection connection = openConnection(dbPath)) {
                 Map<String, CandidateScore> ftsScores = ftsCandidates(connection, normalizedAgentKey, normalizedCategory, normalizedQuery, normalizedLimit * 3);
-                Map<String, CandidateScore> vectorScores = vectorCandidates(connection, normalizedAgentKey, normalizedCategory, normalizedQuery, normalizedLimit * 3);
+                Map<String, CandidateScore> vectorScores = vectorCandidates(connection, normalizedAgentKey, normalizedCategory, queryEmbedding, normalizedLimit * 3);
 
                 if (ftsScores.isEmpty() && vectorScores.isEmpty()) {
                     return List.of();
@@ -322,7 +335,11 @@ public class AgentMemoryStore {
                          """)) {
                 statement.setString(1, normalizedAgentKey);
                 statement.setString(2, normalizedId);
-                return statement.executeUpdate() > 0;
+                boolean deleted = statement.executeUpdate() > 0;
+                if (deleted) {
+                    unindexDeletedMemory(connection, normalizedAgentKey, normalizedId);
+                }
+                return deleted;
             } catch (SQLException ex) {
                 throw new IllegalStateException("Cannot delete memory id=" + normalizedId, ex);
             }
@@ -338,6 +355,20 @@ public class AgentMemoryStore {
                 .toList();
     }
 
+    /**
+     * 把尚未落盘的向量索引写到 memory.db 旁，下次启动时只需追平新增记录。
+     */
+    public void close() {
+        Path dbPath = resolveDbPath();
+        synchronized (lockFor(dbPath)) {
+            for (Map.Entry<String, MemoryVectorIndex> entry : vectorIndexes.entrySet()) {
+                if (entry.getValue().pendingMutations() > 0) {
+                    saveVectorIndex(entry.getKey(), entry.getValue());
+                }
+            }
+        }
+    }
+
     private Map<String, CandidateScore> ftsCandidates(
             Connection connection,
             String agentKey,
@@ -423,17 +454,46 @@ public class AgentMemoryStore {
             Connection connection,
             String agentKey,
             String category,
-            String query,
+            Optional<float[]> queryEmbedding,
             int limit
     ) throws SQLException {
-        if (embeddingService == null) {
-            return Map.of();
-        }
-        Optional<float[]> queryEmbedding = safeEmbed(query);
         if (queryEmbedding.isEmpty()) {
             return Map.of();
         }
         float[] queryVector = queryEmbedding.get();
+        AgentMemoryProperties.VectorIndex indexProperties = properties.getVectorIndex();
+        if (indexProperties == null || !indexProperties.isEnabled()) {
+            return scanVectorCandidates(connection, agentKey, category, queryVector, limit);
+        }
+        MemoryVectorIndex index = vectorIndex(connection, agentKey);
+        List<MemoryVectorIndex.Hit> hits = index.search(
+                queryVector,
+                Math.max(1, limit),
+                category,
+                indexProperties.getEfSearch(),
+                indexProperties.getExactSearchThreshold()
+        );
+        if (hits.isEmpty()) {
+            return Map.of();
+        }
+        Map<String, MemoryRecord> records = loadRecordsByIds(connection, agentKey, hits.stream().map(MemoryVectorIndex.Hit::id).toList());
+        Map<String, CandidateScore> candidates = new LinkedHashMap<>();
+        for (MemoryVectorIndex.Hit hit : hits) {
+            MemoryRecord record = records.get(hit.id());
+            if (record != null) {
+                candidates.put(hit.id(), new CandidateScore(record, hit.score()));
+            }
+        }
+        return candidates;
+    }
+
+    private Map<String, CandidateScore> scanVectorCandidates(
+            Connection connection,
+            String agentKey,
+            String category,
+            float[] queryVector,
+            int limit
+    ) throws SQLException {
         String sql = """
                 SELECT ID_, AGENT_KEY_, SUBJECT_KEY_, SUMMARY_, SOURCE_TYPE_, CATEGORY_,
                        IMPORTANCE_, TAGS_, EMBEDDING_, EMBEDDING_MODEL_, TS_, UPDATED_AT_,
@@ -457,7 +517,7 @@ public class AgentMemoryStore {
                     if (storedVector == null || storedVector.length != queryVector.length) {
                         continue;
                     }
-                    double cosine = cosineSimilarity(queryVector, storedVector);
+                    double cosine = VectorMath.cosine(queryVector, storedVector);
                     candidates.add(new CandidateScore(record, cosine));
                 }
                 return candidates.stream()
@@ -468,6 +528,230 @@ public class AgentMemoryStore {
         }
     }
 
+    private Map<String, MemoryRecord> loadRecordsByIds(Connection connection, String agentKey, List<String> ids) throws SQLException {
+        String placeholders = String.join(",", java.util.Collections.nCopies(ids.size(), "?"));
+        String sql = """
+                SELECT ID_, AGENT_KEY_, SUBJECT_KEY_, SUMMARY_, SOURCE_TYPE_, CATEGORY_,
+                       IMPORTANCE_, TAGS_, EMBEDDING_, EMBEDDING_MODEL_, TS_, UPDATED_AT_,
+                       ACCESS_COUNT_, LAST_ACCESSED_AT_
+                FROM MEMORIES
+                WHERE AGENT_KEY_ = ?
+                """
+                + " AND ID_ IN (" + placeholders + ")";
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            statement.setString(1, agentKey);
+            for (int i = 0; i < ids.size(); i++) {
+                statement.setString(i + 2, ids.get(i));
+            }
+            try (ResultSet resultSet = statement.executeQuery()) {
+                Map<String, MemoryRecord> records = new HashMap<>();
+                while (resultSet.next()) {
+                    MemoryRecord record = mapRecord(resultSet);
+                    records.put(record.id(), record);
+                }
+                return records;
+            }
+        }
+    }
+
+    /**
+     * 取 agent 的向量索引：优先加载持久化文件；其版本与数据库的向量变更版本不一致（重启期间有增删）时，
+     * 按 id 集合差补入新增记录、删除已不存在的记录，墓碑过多或文件不可用时从数据库整体重建。
+     */
+    private MemoryVectorIndex vectorIndex(Connection connection, String agentKey) throws SQLException {
+        MemoryVectorIndex index = vectorIndexes.get(agentKey);
+        if (index != null) {
+            return index;
+        }
+        Path indexPath = resolveVectorIndexPath(agentKey);
+        try {
+            index = MemoryVectorIndex.load(indexPath);
+        } catch (IOException ex) {
+            log.warn("Cannot load memory vector index, rebuilding from database. path={}", indexPath, ex);
+        }
+        long version = vectorVersion(connection, agentKey);
+        if (index != null && (index.version() != version || index.indexedCount() != embeddingRowCount(connection, agentKey))) {
+            reconcileVectorIndex(connection, agentKey, index);
+            if (index.needsRebuild()) {
+                log.info("Memory vector index has too many tombstones after catch-up, rebuilding. agentKey={}", agentKey);
+                index = null;
+            }
+        }
+        if (index == null) {
+            index = newVectorIndex();
+            indexEmbeddings(connection, agentKey, index, null);
+        }
+        index.version(version);
+        vectorIndexes.put(agentKey, index);
+        if (index.pendingMutations() > 0) {
+            saveVectorIndex(agentKey, index);
+        }
+        return index;
+    }
+
+    private MemoryVectorIndex newVectorIndex() {
+        AgentMemoryProperties.VectorIndex indexProperties = properties.getVectorIndex();
+        return indexProperties == null
+                ? new MemoryVectorIndex(16, 100)
+                : new MemoryVectorIndex(indexProperties.getM(), indexProperties.getEfConstruction());
+    }
+
+    /**
+     * 以数据库为准核对索引：索引中有而库中没有的 id 打墓碑，库中有而索引中没有的 id 补入。
+     */
+    private void reconcileVectorIndex(Connection connection, String agentKey, MemoryVectorIndex index) throws SQLException {
+        Set<String> stored = new HashSet<>();
+        try (PreparedStatement statement = connection.prepareStatement(
+                "SELECT ID_ FROM MEMORIES WHERE AGENT_KEY_ = ? AND EMBEDDING_ IS NOT NULL")) {
+            statement.setString(1, agentKey);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    stored.add(resultSet.getString(1));
+                }
+            }
+        }
+        Set<String> indexed = index.indexedIds();
+        int removed = 0;
+        for (String id : indexed) {
+            if (!stored.contains(id) && index.remove(id)) {
+                removed++;
+            }
+        }
+        stored.removeAll(indexed);
+        if (!stored.isEmpty()) {
+            indexEmbeddings(connection, agentKey, index, stored);
+        }
+        log.info("Memory vector index caught up. agentKey={}, added={}, removed={}", agentKey, stored.size(), removed);
+    }
+
+    /**
+     * 把带 embedding 的记忆加入索引；ids 为 null 时加入该 agent 的全部记忆，否则按批只读取指定 id。
+     */
+    private void indexEmbeddings(Connection connection, String agentKey, MemoryVectorIndex index, Collection<String> ids) throws SQLException {
+        String sql = """
+                SELECT ID_, CATEGORY_, EMBEDDING_
+                FROM MEMORIES
+                WHERE AGENT_KEY_ = ?
+                  AND EMBEDDING_ IS NOT NULL
+                """;
+        if (ids == null) {
+            try (PreparedStatement statement = connection.prepareStatement(sql + " ORDER BY rowid")) {
+                statement.setString(1, agentKey);
+                addEncodedRows(statement, index);
+            }
+            return;
+        }
+        List<String> pending = new ArrayList<>(ids);
+        for (int from = 0; from < pending.size(); from += ID_BATCH_SIZE) {
+            List<String> batch = pending.subList(from, Math.min(pending.size(), from + ID_BATCH_SIZE));
+            String placeholders = String.join(",", java.util.Collections.nCopies(batch.size(), "?"));
+            try (PreparedStatement statement = connection.prepareStatement(sql + " AND ID_ IN (" + placeholders + ") ORDER BY rowid")) {
+                statement.setString(1, agentKey);
+                for (int i = 0; i < batch.size(); i++) {
+                    statement.setString(i + 2, batch.get(i));
+                }
+                addEncodedRows(statement, index);
+            }
+        }
+    }
+
+    private void addEncodedRows(PreparedStatement statement, MemoryVectorIndex index) throws SQLException {
+        try (ResultSet resultSet = statement.executeQuery()) {
+            while (resultSet.next()) {
+                index.addEncoded(
+                        resultSet.getString("ID_"),
+                        resultSet.getString("CATEGORY_"),
+                        resultSet.getBytes("EMBEDDING_")
+                );
+            }
+        }
+    }
+
+    private int embeddingRowCount(Connection connection, String agentKey) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(
+                "SELECT COUNT(1) FROM MEMORIES WHERE AGENT_KEY_ = ? AND EMBEDDING_ IS NOT NULL")) {
+            statement.setString(1, agentKey);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                return resultSet.next() ? resultSet.getInt(1) : 0;
+            }
+        }
+    }
+
+    /**
+     * 该 agent 带 embedding 记忆的变更版本，由 MEMORIES 上的触发器在增删或改写 embedding 时递增，只增不减。
+     */
+    private long vectorVersion(Connection connection, String agentKey) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(
+                "SELECT VERSION_ FROM MEMORY_VECTOR_VERSIONS WHERE AGENT_KEY_ = ?")) {
+            statement.setString(1, agentKey);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                return resultSet.next() ? resultSet.getLong(1) : 0L;
+            }
+        }
+    }
+
+    /**
+     * 新记忆直接插入已加载的索引并同步版本；索引尚未加载时什么都不做，首次检索加载时会按版本核对追平。
+     */
+    private void indexWrittenEmbedding(
+            Connection connection,
+            String agentKey,
+            String id,
+            String category,
+            float[] embedding
+    ) throws SQLException {
+        MemoryVectorIndex index = vectorIndexes.get(agentKey);
+        if (index == null) {
+            return;
+        }
+        index.add(id, category, embedding);
+        index.version(vectorVersion(connection, agentKey));
+        if (index.pendingMutations() >= VECTOR_INDEX_PERSIST_EVERY) {
+            saveVectorIndex(agentKey, index);
+        }
+    }
+
+    private void unindexDeletedMemory(Connection connection, String agentKey, String id) throws SQLException {
+        MemoryVectorIndex index = vectorIndexes.get(agentKey);
+        if (index == null || !index.remove(id)) {
+            return;
+        }
+        if (index.needsRebuild()) {
+            invalidateVectorIndex(agentKey);
+            return;
+        }
+        index.version(vectorVersion(connection, agentKey));
+        if (index.pendingMutations() >= VECTOR_INDEX_PERSIST_EVERY) {
+            saveVectorIndex(agentKey, index);
+        }
+    }
+
+    private void invalidateVectorIndex(String agentKey) {
+        vectorIndexes.remove(agentKey);
+        Path indexPath = resolveVectorIndexPath(agentKey);
+        try {
+            Files.deleteIfExists(indexPath);
+        } catch (IOException ex) {
+            log.warn("Cannot delete memory vector index. path={}", indexPath, ex);
+        }
+    }
+
+    private void saveVectorIndex(String agentKey, MemoryVectorIndex index) {
+        Path indexPath = resolveVectorIndexPath(agentKey);
+        try {
+            index.save(indexPath);
+        } catch (IOException ex) {
+            log.warn("Cannot persist memory vector index. path={}", indexPath, ex);
+        }
+    }
+
+    private Path resolveVectorIndexPath(String agentKey) {
+        Path dbPath = resolveDbPath().toAbsolutePath().normalize();
+        String fileName = Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(agentKey.getBytes(StandardCharsets.UTF_8));
+        return dbPath.resolveSibling(dbPath.getFileName() + ".vectors").resolve(fileName + ".hnsw");
+    }
+
     private void ensureInitialized(Path dbPath) {
         String key = dbPath.toAbsolutePath().normalize().toString();
         if (!Files.isRegularFile(dbPath)) {
@@ -541,6 +825,34 @@ public class AgentMemoryStore {
                           VALUES ('delete', old.rowid, old.SUMMARY_, old.SUBJECT_KEY_, old.CATEGORY_, old.TAGS_);
                         END
                         """);
+                statement.execute("""
+                        CREATE TABLE IF NOT EXISTS MEMORY_VECTOR_VERSIONS (
+                          AGENT_KEY_ TEXT PRIMARY KEY,
+                          VERSION_ INTEGER NOT NULL
+                        )
+                        """);
+                statement.execute("""
+                        CREATE TRIGGER IF NOT EXISTS MEMORIES_VECTOR_AI AFTER INSERT ON MEMORIES
+                        WHEN new.EMBEDDING_ IS NOT NULL BEGIN
+                          INSERT INTO MEMORY_VECTOR_VERSIONS(AGENT_KEY_, VERSION_) VALUES (new.AGENT_KEY_, 1)
+                          ON CONFLICT(AGENT_KEY_) DO UPDATE SET VERSION_ = VERSION_ + 1;
+                        END
+                        """);
+                statement.execute("""
+                        CREATE TRIGGER IF NOT EXISTS MEMORIES_VECTOR_AD AFTER DELETE ON MEMORIES
+                        WHEN old.EMBEDDING_ IS NOT NULL BEGIN
+                          INSERT INTO MEMORY_VECTOR_VERSIONS(AGENT_KEY_, VERSION_) VALUES (old.AGENT_KEY_, 1)
+                          ON CONFLICT(AGENT_KEY_) DO UPDATE SET VERSION_ = VERSION_ + 1;
+                        END
+                        """);
+                statement.execute("""
+                        CREATE TRIGGER IF NOT EXISTS MEMORIES_VECTOR_AU AFTER UPDATE OF EMBEDDING_, AGENT_KEY_, CATEGORY_ ON MEMORIES BEGIN
+                          INSERT INTO MEMORY_VECTOR_VERSIONS(AGENT_KEY_, VERSION_) VALUES (old.AGENT_KEY_, 1)
+                          ON CONFLICT(AGENT_KEY_) DO UPDATE SET VERSION_ = VERSION_ + 1;
+                          INSERT INTO MEMORY_VECTOR_VERSIONS(AGENT_KEY_, VERSION_) VALUES (new.AGENT_KEY_, 1)
+                          ON CONFLICT(AGENT_KEY_) DO UPDATE SET VERSION_ = VERSION_ + 1;
+                        END
+                        """);
                 statement.execute("INSERT INTO MEMORIES_FTS(MEMORIES_FTS) VALUES('rebuild')");
                 if (newDatabase || tableRowCount(connection) == 0) {
                     rebuildFromJournal(connection);
@@ -548,6 +860,7 @@ public class AgentMemoryStore {
             } catch (SQLException ex) {
                 throw new IllegalStateException("Cannot initialize memory database: " + dbPath, ex);
             }
+            vectorIndexes.clear();
             initializedDatabases.add(key);
         }
     }
@@ -721,24 +1034,6 @@ public class AgentMemoryStore {
         return Map.copyOf(normalized);
     }
 
-    private double cosineSimilarity(float[] left, float[] right) {
-        if (left == null || right == null || left.length == 0 || left.length != right.length) {
-            return 0d;
-        }
-        double dot = 0d;
-        double leftNorm = 0d;
-        double rightNorm = 0d;
-        for (int i = 0; i < left.length; i++) {
-            dot += left[i] * right[i];
-            leftNorm += left[i] * left[i];
-            rightNorm += right[i] * right[i];
-        }
-        if (leftNorm == 0d || rightNorm == 0d) {
-            return 0d;
-        }
-        return dot / (Math.sqrt(leftNorm) * Math.sqrt(rightNorm));
-    }
-
     private byte[] serializeEmbedding(float[] embedding) {
         ByteBuffer buffer = ByteBuffer.allocate(embedding.length * Float.BYTES)
                 .order(ByteOrder.LITTLE_ENDIAN);
@@ -752,11 +1047,8 @@ public class AgentMemoryStore {
         if (bytes == null || bytes.length == 0 || bytes.length % Float.BYTES != 0) {
             return null;
         }
-        ByteBuffer buffer = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
         float[] values = new float[bytes.length / Float.BYTES];
-        for (int i = 0; i < values.length; i++) {
-            values[i] = buffer.getFloat();
-        }
+        ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer().get(values);
         return values;
     }
 
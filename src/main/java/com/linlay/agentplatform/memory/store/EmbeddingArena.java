@@ -0,0 +1,169 @@
+package com.linlay.agentplatform.memory.store;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * 定长向量的连续存储。
+ * <p>
+ * 向量按槽位顺序写入大块 float 页，每页容纳整数个向量，打分时直接在页内偏移上做点积，检索期间不为单条向量分配对象。
+ * 写入时即按预先计算的范数归一化，余弦相似度因此退化为点积。
+ * <p>
+ * 首页按预计向量数（未知时为 {@value #MIN_PAGE_VECTORS} 条）分配，写满后按两倍扩容直到整页大小，
+ * 记忆很少的 agent 不会一上来就占用整页内存；槽位到页的映射始终按整页计算，扩容只影响当前末页。
+ */
+final class EmbeddingArena {
+
+    private static final int PAGE_FLOATS = 1 << 20;
+    private static final int MIN_PAGE_VECTORS = 16;
+
+    private final int dimension;
+    private final int vectorsPerPage;
+    private final int initialPageVectors;
+    private float[][] pages = new float[0][];
+    private int size;
+
+    EmbeddingArena(int dimension) {
+        this(dimension, 0);
+    }
+
+    EmbeddingArena(int dimension, int expectedVectors) {
+        if (dimension <= 0) {
+            throw new IllegalArgumentException("dimension must be positive");
+        }
+        this.dimension = dimension;
+        this.vectorsPerPage = Math.max(1, PAGE_FLOATS / dimension);
+        this.initialPageVectors = Math.min(vectorsPerPage, Math.max(MIN_PAGE_VECTORS, expectedVectors));
+    }
+
+    int dimension() {
+        return dimension;
+    }
+
+    int size() {
+        return size;
+    }
+
+    long allocatedFloats() {
+        long total = 0L;
+        for (float[] page : pages) {
+            total += page.length;
+        }
+        return total;
+    }
+
+    /**
+     * 追加一条向量并返回槽位；维度不符或零向量返回 -1，不占用槽位。
+     */
+    int append(float[] vector) {
+        if (vector == null || vector.length != dimension) {
+            return -1;
+        }
+        float[] page = reserve();
+        System.arraycopy(vector, 0, page, offset(size), dimension);
+        return commitNormalized(page);
+    }
+
+    /**
+     * 直接从 EMBEDDING_ 列的小端 float 编码追加，省去中间 float[]。
+     */
+    int appendLittleEndian(byte[] encoded) {
+        if (encoded == null || encoded.length != dimension * Float.BYTES) {
+            return -1;
+        }
+        float[] page = reserve();
+        ByteBuffer.wrap(encoded).order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer().get(page, offset(size), dimension);
+        return commitNormalized(page);
+    }
+
+    /**
+     * 读入一条已归一化的向量（持久化文件中的格式）。
+     */
+    int read(DataInput in) throws IOException {
+        float[] page = reserve();
+        int offset = offset(size);
+        for (int i = 0; i < dimension; i++) {
+            page[offset + i] = in.readFloat();
+        }
+        return size++;
+    }
+
+    void write(int slot, DataOutput out) throws IOException {
+        float[] page = pages[slot / vectorsPerPage];
+        int offset = offset(slot);
+        for (int i = 0; i < dimension; i++) {
+            out.writeFloat(page[offset + i]);
+        }
+    }
+
+    /**
+     * 槽位向量与已归一化查询向量的点积。
+     */
+    double dot(int slot, float[] query) {
+        return VectorMath.dot(pages[slot / vectorsPerPage], offset(slot), query, 0, dimension);
+    }
+
+    double dot(int left, int right) {
+        return VectorMath.dot(
+                pages[left / vectorsPerPage],
+                offset(left),
+                pages[right / vectorsPerPage],
+                offset(right),
+                dimension
+        );
+    }
+
+    static float[] normalize(float[] vector) {
+        double norm = VectorMath.dot(vector, 0, vector, 0, vector.length);
+        if (norm == 0d) {
+            return null;
+        }
+        float scale = (float) (1d / Math.sqrt(norm));
+        float[] normalized = new float[vector.length];
+        for (int i = 0; i < vector.length; i++) {
+            normalized[i] = vector[i] * scale;
+        }
+        return normalized;
+    }
+
+    /**
+     * 返回能容纳下一个槽位的页：首页从 initialPageVectors 起按两倍扩容，之后的页已处于大容量阶段，直接按整页分配。
+     */
+    private float[] reserve() {
+        int pageIndex = size / vectorsPerPage;
+        int fullPageFloats = vectorsPerPage * dimension;
+        if (pageIndex == pages.length) {
+            pages = Arrays.copyOf(pages, pages.length + 1);
+            pages[pageIndex] = new float[pageIndex == 0 ? initialPageVectors * dimension : fullPageFloats];
+        }
+        float[] page = pages[pageIndex];
+        int required = offset(size) + dimension;
+        if (page.length < required) {
+            page = Arrays.copyOf(page, Math.min(fullPageFloats, Math.max(required, page.length * 2)));
+            pages[pageIndex] = page;
+        }
+        return page;
+    }
+
+    private int commitNormalized(float[] page) {
+        int offset = offset(size);
+        double norm = VectorMath.dot(page, offset, page, offset, dimension);
+        if (norm == 0d || Double.isNaN(norm) || Double.isInfinite(norm)) {
+            Arrays.fill(page, offset, offset + dimension, 0f);
+            return -1;
+        }
+        float scale = (float) (1d / Math.sqrt(norm));
+        for (int i = offset; i < offset + dimension; i++) {
+            page[i] *= scale;
+        }
+        return size++;
+    }
+
+    private int offset(int slot) {
+        return (slot % vectorsPerPage) * dimension;
+    }
+}
@@ -0,0 +1,514 @@
+package com.linlay.agentplatform.memory.store;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.Set;
+import java.util.function.IntPredicate;
+
+/**
+ * 单个 agent 的内存向量索引（HNSW）。
+ * <p>
+ * 向量存放在 {@link EmbeddingArena} 中并在写入时归一化，相似度即点积。新记忆增量插入图中；删除只打墓碑，墓碑过多时由调用方整体失效并重建。
+ * 存活节点数不超过精确检索阈值时直接线性扫描内存中的向量。本类不做同步，调用方需持有对应 memory 库的锁。
+ */
+final class MemoryVectorIndex {
+
+    private static final int MAGIC = 0x4D564958;
+    private static final int FORMAT_VERSION = 2;
+    private static final int[] NO_NEIGHBORS = new int[0];
+    private static final Comparator<Candidate> BY_SCORE = Comparator.comparingDouble(Candidate::score);
+
+    private final int m;
+    private final int maxNeighborsLayer0;
+    private final int efConstruction;
+    private final double levelMultiplier;
+    private final Random random;
+    private final Map<String, Integer> nodesById = new HashMap<>();
+    private final Set<String> skippedIds = new LinkedHashSet<>();
+
+    private EmbeddingArena arena;
+    private String[] ids = new String[16];
+    private String[] categories = new String[16];
+    private int[][][] neighbors = new int[16][][];
+    private boolean[] deleted = new boolean[16];
+    private int[] visitMarks = new int[16];
+    private int visitEpoch;
+    private int size;
+    private int deletedCount;
+    private long version;
+    private int entryPoint = -1;
+    private int maxLevel = -1;
+    private int pendingMutations;
+
+    MemoryVectorIndex(int m, int efConstruction) {
+        this.m = Math.max(2, m);
+        this.maxNeighborsLayer0 = this.m * 2;
+        this.efConstruction = Math.max(this.m, efConstruction);
+        this.levelMultiplier = 1d / Math.log(this.m);
+        this.random = new Random(this.m * 31L + this.efConstruction);
+    }
+
+    /**
+     * 加入一条记忆向量；维度与索引不一致或为零向量的记忆只记录 id，不参与检索。
+     */
+    boolean add(String id, String category, float[] vector) {
+        if (!acceptNew(id)) {
+            return false;
+        }
+        EmbeddingArena target = vector == null ? null : arenaFor(vector.length);
+        return addNode(id, category, target == null ? -1 : target.append(vector));
+    }
+
+    /**
+     * 同 {@link #add}，但直接接收 EMBEDDING_ 列的小端编码，向量解码后写入 arena，不经过中间数组。
+     */
+    boolean addEncoded(String id, String category, byte[] embedding) {
+        if (!acceptNew(id)) {
+            return false;
+        }
+        boolean aligned = embedding != null && embedding.length % Float.BYTES == 0;
+        EmbeddingArena target = aligned ? arenaFor(embedding.length / Float.BYTES) : null;
+        return addNode(id, category, target == null ? -1 : target.appendLittleEndian(embedding));
+    }
+
+    boolean remove(String id) {
+        if (skippedIds.remove(id)) {
+            pendingMutations++;
+            return true;
+        }
+        Integer node = nodesById.get(id);
+        if (node == null || deleted[node]) {
+            return false;
+        }
+        deleted[node] = true;
+        deletedCount++;
+        pendingMutations++;
+        return true;
+    }
+
+    /**
+     * 墓碑超过总节点数四分之一时，图的连通质量和内存占用都开始变差，应整体重建。
+     */
+    boolean needsRebuild() {
+        return deletedCount > 0 && deletedCount * 4 > size;
+    }
+
+    int liveCount() {
+        return size - deletedCount;
+    }
+
+    /**
+     * 索引已覆盖的带 embedding 记忆数，用于和数据库行数核对。
+     */
+    int indexedCount() {
+        return liveCount() + skippedIds.size();
+    }
+
+    /**
+     * 已覆盖的 embedding 记忆 id（含未参与检索的），用于和数据库按集合差核对。
+     */
+    Set<String> indexedIds() {
+        Set<String> indexed = new LinkedHashSet<>(skippedIds);
+        for (int node = 0; node < size; node++) {
+            if (!deleted[node]) {
+                indexed.add(ids[node]);
+            }
+        }
+        return indexed;
+    }
+
+    /**
+     * 索引对应的数据库向量变更版本，持久化后用于判断重启期间是否有增删。
+     */
+    long version() {
+        return version;
+    }
+
+    void version(long version) {
+        this.version = version;
+    }
+
+    int pendingMutations() {
+        return pendingMutations;
+    }
+
+    List<Hit> search(float[] query, int k, String category, int efSearch, int exactThreshold) {
+        if (query == null || arena == null || query.length != arena.dimension() || k <= 0 || liveCount() == 0) {
+            return List.of();
+        }
+        float[] normalized = EmbeddingArena.normalize(query);
+        if (normalized == null) {
+            return List.of();
+        }
+        IntPredicate accepted = node -> !deleted[node] && (category == null || category.equals(categories[node]));
+        if (liveCount() <= exactThreshold) {
+            return exactSearch(normalized, k, accepted);
+        }
+        NodeScorer scorer = node -> arena.dot(node, normalized);
+        int current = entryPoint;
+        for (int level = maxLevel; level > 0; level--) {
+            current = greedySearch(scorer, current, level);
+        }
+        List<Candidate> found = searchLayer(scorer, current, Math.max(efSearch, k), 0, accepted);
+        List<Hit> hits = new ArrayList<>(Math.min(k, found.size()));
+        for (int i = 0; i < found.size() && hits.size() < k; i++) {
+            Candidate candidate = found.get(i);
+            hits.add(new Hit(ids[candidate.node()], candidate.score()));
+        }
+        return List.copyOf(hits);
+    }
+
+    void save(Path path) throws IOException {
+        Path parent = path.getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeInt(m);
+            out.writeInt(efConstruction);
+            out.writeInt(arena == null ? 0 : arena.dimension());
+            out.writeLong(version);
+            out.writeInt(entryPoint);
+            out.writeInt(maxLevel);
+            out.writeInt(skippedIds.size());
+            for (String skippedId : skippedIds) {
+                out.writeUTF(skippedId);
+            }
+            out.writeInt(size);
+            for (int node = 0; node < size; node++) {
+                out.writeUTF(ids[node]);
+                out.writeBoolean(categories[node] != null);
+                if (categories[node] != null) {
+                    out.writeUTF(categories[node]);
+                }
+                out.writeBoolean(deleted[node]);
+                arena.write(node, out);
+                out.writeInt(neighbors[node].length);
+                for (int[] layer : neighbors[node]) {
+                    out.writeInt(layer.length);
+                    for (int neighbor : layer) {
+                        out.writeInt(neighbor);
+                    }
+                }
+            }
+        }
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        pendingMutations = 0;
+    }
+
+    /**
+     * 读取持久化的索引；文件不存在或格式不兼容时返回 null，由调用方从数据库重建。
+     */
+    static MemoryVectorIndex load(Path path) throws IOException {
+        if (!Files.isRegularFile(path)) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), 1 << 16))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+                return null;
+            }
+            MemoryVectorIndex index = new MemoryVectorIndex(in.readInt(), in.readInt());
+            int dimension = in.readInt();
+            index.version = in.readLong();
+            index.entryPoint = in.readInt();
+            index.maxLevel = in.readInt();
+            int skipped = in.readInt();
+            for (int i = 0; i < skipped; i++) {
+                index.skippedIds.add(in.readUTF());
+            }
+            int count = in.readInt();
+            index.arena = dimension > 0 ? new EmbeddingArena(dimension, count) : null;
+            index.ensureCapacity(count);
+            for (int node = 0; node < count; node++) {
+                index.ids[node] = in.readUTF();
+                index.categories[node] = in.readBoolean() ? in.readUTF() : null;
+                index.deleted[node] = in.readBoolean();
+                if (index.deleted[node]) {
+                    index.deletedCount++;
+                }
+                index.arena.read(in);
+                int levels = in.readInt();
+                int[][] layers = new int[levels][];
+                for (int level = 0; level < levels; level++) {
+                    int[] layer = new int[in.readInt()];
+                    for (int i = 0; i < layer.length; i++) {
+                        layer[i] = in.readInt();
+                    }
+                    layers[level] = layer;
+                }
+                index.neighbors[node] = layers;
+                index.nodesById.put(index.ids[node], node);
+            }
+            index.size = count;
+            return index;
+        }
+    }
+
+    private boolean acceptNew(String id) {
+        return id != null && !nodesById.containsKey(id) && !skippedIds.contains(id);
+    }
+
+    private EmbeddingArena arenaFor(int dimension) {
+        if (dimension <= 0) {
+            return null;
+        }
+        if (arena == null) {
+            arena = new EmbeddingArena(dimension);
+        }
+        return arena.dimension() == dimension ? arena : null;
+    }
+
+    /**
+     * 节点编号与 arena 槽位一一对应：两者只在这里同步增长，向量写入失败（slot 为 -1）时只记录 id。
+     */
+    private boolean addNode(String id, String category, int slot) {
+        pendingMutations++;
+        if (slot < 0) {
+            skippedIds.add(id);
+            return false;
+        }
+        int node = size++;
+        ensureCapacity(size);
+        ids[node] = id;
+        categories[node] = category;
+        nodesById.put(id, node);
+        insert(node);
+        return true;
+    }
+
+    private void insert(int node) {
+        int level = (int) Math.floor(-Math.log(1d - random.nextDouble()) * levelMultiplier);
+        int[][] layers = new int[level + 1][];
+        Arrays.fill(layers, NO_NEIGHBORS);
+        neighbors[node] = layers;
+        if (entryPoint < 0) {
+            entryPoint = node;
+            maxLevel = level;
+            return;
+        }
+        NodeScorer scorer = other -> arena.dot(node, other);
+        int current = entryPoint;
+        for (int layer = maxLevel; layer > level; layer--) {
+            current = greedySearch(scorer, current, layer);
+        }
+        for (int layer = Math.min(level, maxLevel); layer >= 0; layer--) {
+            List<Candidate> found = searchLayer(scorer, current, efConstruction, layer, ignored -> true);
+            int[] selected = new int[Math.min(m, found.size())];
+            for (int i = 0; i < selected.length; i++) {
+                selected[i] = found.get(i).node();
+            }
+            layers[layer] = selected;
+            int maxNeighbors = layer == 0 ? maxNeighborsLayer0 : m;
+            for (int neighbor : selected) {
+                connect(neighbor, node, layer, maxNeighbors);
+            }
+            current = found.get(0).node();
+        }
+        if (level > maxLevel) {
+            maxLevel = level;
+            entryPoint = node;
+        }
+    }
+
+    private void connect(int from, int to, int layer, int maxNeighbors) {
+        int[] current = neighbors[from][layer];
+        if (current.length < maxNeighbors) {
+            int[] grown = Arrays.copyOf(current, current.length + 1);
+            grown[current.length] = to;
+            neighbors[from][layer] = grown;
+            return;
+        }
+        List<Candidate> candidates = new ArrayList<>(current.length + 1);
+        for (int neighbor : current) {
+            candidates.add(new Candidate(neighbor, arena.dot(from, neighbor)));
+        }
+        candidates.add(new Candidate(to, arena.dot(from, to)));
+        candidates.sort(BY_SCORE.reversed());
+        int[] kept = new int[maxNeighbors];
+        for (int i = 0; i < maxNeighbors; i++) {
+            kept[i] = candidates.get(i).node();
+        }
+        neighbors[from][layer] = kept;
+    }
+
+    private int greedySearch(NodeScorer scorer, int start, int layer) {
+        int current = start;
+        double best = scorer.score(current);
+        boolean improved = true;
+        while (improved) {
+            improved = false;
+            for (int neighbor : neighbors[current][layer]) {
+                double score = scorer.score(neighbor);
+                if (score > best) {
+                    best = score;
+                    current = neighbor;
+                    improved = true;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * 在单层上做 beam search；不满足过滤条件的节点仍用于导航，只是不进入结果集。结果按相似度降序返回。
+     */
+    private List<Candidate> searchLayer(NodeScorer scorer, int entry, int ef, int layer, IntPredicate accepted) {
+        int epoch = nextVisitEpoch();
+        PriorityQueue<Candidate> frontier = new PriorityQueue<>(BY_SCORE.reversed());
+        PriorityQueue<Candidate> results = new PriorityQueue<>(BY_SCORE);
+        Candidate start = new Candidate(entry, scorer.score(entry));
+        visitMarks[entry] = epoch;
+        frontier.add(start);
+        if (accepted.test(entry)) {
+            results.add(start);
+        }
+        while (!frontier.isEmpty()) {
+            Candidate closest = frontier.poll();
+            if (results.size() >= ef && closest.score() < results.peek().score()) {
+                break;
+            }
+            for (int neighbor : neighbors[closest.node()][layer]) {
+                if (visitMarks[neighbor] == epoch) {
+                    continue;
+                }
+                visitMarks[neighbor] = epoch;
+                double score = scorer.score(neighbor);
+                if (results.size() < ef || score > results.peek().score()) {
+                    Candidate candidate = new Candidate(neighbor, score);
+                    frontier.add(candidate);
+                    if (accepted.test(neighbor)) {
+                        results.add(candidate);
+                        if (results.size() > ef) {
+                            results.poll();
+                        }
+                    }
+                }
+            }
+        }
+        List<Candidate> ordered = new ArrayList<>(results);
+        ordered.sort(BY_SCORE.reversed());
+        return ordered;
+    }
+
+    /**
+     * 线性扫描 arena；top-k 用基本类型数组维护小顶堆，扫描过程中不产生对象。
+     */
+    private List<Hit> exactSearch(float[] query, int k, IntPredicate accepted) {
+        int capacity = Math.min(k, size);
+        int[] heapNodes = new int[capacity];
+        double[] heapScores = new double[capacity];
+        int heapSize = 0;
+        for (int node = 0; node < size; node++) {
+            if (!accepted.test(node)) {
+                continue;
+            }
+            double score = arena.dot(node, query);
+            if (heapSize < capacity) {
+                heapNodes[heapSize] = node;
+                heapScores[heapSize] = score;
+                siftUp(heapNodes, heapScores, heapSize++);
+            } else if (score > heapScores[0]) {
+                heapNodes[0] = node;
+                heapScores[0] = score;
+                siftDown(heapNodes, heapScores, heapSize);
+            }
+        }
+        Hit[] hits = new Hit[heapSize];
+        for (int i = heapSize - 1; i >= 0; i--) {
+            hits[i] = new Hit(ids[heapNodes[0]], heapScores[0]);
+            heapNodes[0] = heapNodes[i];
+            heapScores[0] = heapScores[i];
+            siftDown(heapNodes, heapScores, i);
+        }
+        return List.of(hits);
+    }
+
+    private static void siftUp(int[] nodes, double[] scores, int index) {
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (scores[parent] <= scores[index]) {
+                return;
+            }
+            swap(nodes, scores, parent, index);
+            index = parent;
+        }
+    }
+
+    private static void siftDown(int[] nodes, double[] scores, int heapSize) {
+        int index = 0;
+        while (true) {
+            int left = index * 2 + 1;
+            if (left >= heapSize) {
+                return;
+            }
+            int smallest = left + 1 < heapSize && scores[left + 1] < scores[left] ? left + 1 : left;
+            if (scores[index] <= scores[smallest]) {
+                return;
+            }
+            swap(nodes, scores, index, smallest);
+            index = smallest;
+        }
+    }
+
+    private static void swap(int[] nodes, double[] scores, int left, int right) {
+        int node = nodes[left];
+        nodes[left] = nodes[right];
+        nodes[right] = node;
+        double score = scores[left];
+        scores[left] = scores[right];
+        scores[right] = score;
+    }
+
+    private int nextVisitEpoch() {
+        if (++visitEpoch == Integer.MAX_VALUE) {
+            Arrays.fill(visitMarks, 0);
+            visitEpoch = 1;
+        }
+        return visitEpoch;
+    }
+
+    private void ensureCapacity(int required) {
+        if (required <= ids.length) {
+            return;
+        }
+        int capacity = Math.max(required, ids.length + (ids.length >> 1));
+        ids = Arrays.copyOf(ids, capacity);
+        categories = Arrays.copyOf(categories, capacity);
+        neighbors = Arrays.copyOf(neighbors, capacity);
+        deleted = Arrays.copyOf(deleted, capacity);
+        visitMarks = Arrays.copyOf(visitMarks, capacity);
+    }
+
+    record Hit(String id, double score) {
+        Hit {
+            Objects.requireNonNull(id, "id");
+        }
+    }
+
+    private record Candidate(int node, double score) {
+    }
+
+    @FunctionalInterface
+    private interface NodeScorer {
+        double score(int node);
+    }
+}
@@ -0,0 +1,39 @@
+package com.linlay.agentplatform.memory.store;
+
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * 基于 JDK Vector API 的点积。只能由 {@link VectorMath} 在运行时加载：未加载 jdk.incubator.vector 模块时加载本类会失败。
+ * 本类在 pom 中单独带孵化模块编译。
+ */
+final class SimdVectorMath implements VectorMath.Kernel {
+
+    private static final VectorSpecies<Float> SPECIES = FloatVector.SPECIES_PREFERRED;
+
+    SimdVectorMath() {
+    }
+
+    @Override
+    public int lanes() {
+        return SPECIES.length();
+    }
+
+    @Override
+    public double dot(float[] left, int leftOffset, float[] right, int rightOffset, int length) {
+        FloatVector sum = FloatVector.zero(SPECIES);
+        int i = 0;
+        int bound = SPECIES.loopBound(length);
+        for (; i < bound; i += SPECIES.length()) {
+            FloatVector a = FloatVector.fromArray(SPECIES, left, leftOffset + i);
+            FloatVector b = FloatVector.fromArray(SPECIES, right, rightOffset + i);
+            sum = a.fma(b, sum);
+        }
+        double result = sum.reduceLanes(VectorOperators.ADD);
+        for (; i < length; i++) {
+            result += left[leftOffset + i] * right[rightOffset + i];
+        }
+        return result;
+    }
+}
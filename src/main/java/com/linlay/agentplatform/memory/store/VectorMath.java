@@ -0,0 +1,79 @@
+package com.linlay.agentplatform.memory.store;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 记忆检索用的向量运算。JVM 以 {@code --add-modules jdk.incubator.vector} 启动时走 SIMD 实现，否则退回标量循环。
+ * <p>
+ * SIMD 实现 {@link SimdVectorMath} 单独编译，这里只在运行时按类名加载，主代码编译不依赖孵化模块。
+ */
+final class VectorMath {
+
+    private static final Logger log = LoggerFactory.getLogger(VectorMath.class);
+    private static final String VECTOR_MODULE = "jdk.incubator.vector";
+    private static final String SIMD_KERNEL_CLASS = VectorMath.class.getPackageName() + ".SimdVectorMath";
+    private static final Kernel SIMD = loadSimdKernel();
+
+    /**
+     * 可替换的点积实现。
+     */
+    interface Kernel {
+
+        double dot(float[] left, int leftOffset, float[] right, int rightOffset, int length);
+
+        int lanes();
+    }
+
+    private VectorMath() {
+    }
+
+    static boolean simdEnabled() {
+        return SIMD != null;
+    }
+
+    static double dot(float[] left, int leftOffset, float[] right, int rightOffset, int length) {
+        if (SIMD != null) {
+            return SIMD.dot(left, leftOffset, right, rightOffset, length);
+        }
+        return scalarDot(left, leftOffset, right, rightOffset, length);
+    }
+
+    static double scalarDot(float[] left, int leftOffset, float[] right, int rightOffset, int length) {
+        double sum = 0d;
+        for (int i = 0; i < length; i++) {
+            sum += left[leftOffset + i] * right[rightOffset + i];
+        }
+        return sum;
+    }
+
+    static double cosine(float[] left, float[] right) {
+        if (left == null || right == null || left.length == 0 || left.length != right.length) {
+            return 0d;
+        }
+        double leftNorm = dot(left, 0, left, 0, left.length);
+        double rightNorm = dot(right, 0, right, 0, right.length);
+        if (leftNorm == 0d || rightNorm == 0d) {
+            return 0d;
+        }
+        return dot(left, 0, right, 0, left.length) / (Math.sqrt(leftNorm) * Math.sqrt(rightNorm));
+    }
+
+    private static Kernel loadSimdKernel() {
+        if (ModuleLayer.boot().findModule(VECTOR_MODULE).isEmpty()) {
+            log.debug("{} not present, memory vector scoring uses scalar loops", VECTOR_MODULE);
+            return null;
+        }
+        try {
+            Kernel kernel = Class.forName(SIMD_KERNEL_CLASS)
+                    .asSubclass(Kernel.class)
+                    .getDeclaredConstructor()
+                    .newInstance();
+            log.debug("memory vector scoring uses SIMD, lanes={}", kernel.lanes());
+            return kernel;
+        } catch (ReflectiveOperationException | LinkageError | ClassCastException ex) {
+            log.debug("Cannot load Vector API, memory vector scoring uses scalar loops", ex);
+            return null;
+        }
+    }
+}
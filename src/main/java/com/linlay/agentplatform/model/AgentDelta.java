@@ -4,6 +4,8 @@ import com.linlay.agentplatform.chat.event.ArtifactEventPayload;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.linlay.agentplatform.stream.model.ToolCallDelta;
 
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
@@ -26,7 +28,8 @@ public record AgentDelta(
         String finishReason,
         RunError error,
         String stageMarker,
-        Map<String, Object> usage
+        Map<String, Object> usage,
+        List<ToolProgress> toolProgresses
 ) {
 
     public AgentDelta {
@@ -59,6 +62,11 @@ public record AgentDelta(
         } else {
             artifactPublishes = List.copyOf(artifactPublishes);
         }
+        if (toolProgresses == null) {
+            toolProgresses = List.of();
+        } else {
+            toolProgresses = List.copyOf(toolProgresses);
+        }
     }
 
     public static AgentDelta reasoning(String delta) {
@@ -66,7 +74,7 @@ public record AgentDelta(
     }
 
     public static AgentDelta reasoning(String delta, String taskId) {
-        return new AgentDelta(delta, null, null, null, null, List.of(), List.of(), List.of(), List.of(), null, null, null, null, normalizeTaskId(taskId), null, null, null, null);
+        return new AgentDelta(delta, null, null, null, null, List.of(), List.of(), List.of(), List.of(), null, null, null, null, normalizeTaskId(taskId), null, null, null, null, null);
     }
 
     public static AgentDelta content(String delta) {
@@ -74,7 +82,7 @@ public record AgentDelta(
     }
 
     public static AgentDelta content(String delta, String taskId) {
-        return new AgentDelta(null, delta, null, null, null, List.of(), List.of(), List.of(), List.of(), null, null, null, null, normalizeTaskId(taskId), null, null, null, null);
+        return new AgentDelta(null, delta, null, null, null, List.of(), List.of(), List.of(), List.of(), null, null, null, null, normalizeTaskId(taskId), null, null, null, null, null);
     }
 
     public static AgentDelta userMessage(String message) {
@@ -82,7 +90,7 @@ public record AgentDelta(
     }
 
     public static AgentDelta userMessage(String message, String taskId) {
-        return new AgentDelta(null, null, message, null, null, List.of(), List.of(), List.of(), List.of(), null, null, null, null, normalizeTaskId(taskId), null, null, null, null);
+        return new AgentDelta(null, null, message, null, null, List.of(), List.of(), List.of(), List.of(), null, null, null, null, normalizeTaskId(taskId), null, null, null, null, null);
     }
 
     public static AgentDelta toolCalls(List<ToolCallDelta> toolCalls) {
@@ -90,7 +98,7 @@ public record AgentDelta(
     }
 
     public static AgentDelta toolCalls(List<ToolCallDelta> toolCalls, String taskId) {
-        return new AgentDelta(null, null, null, null, null, toolCalls, List.of(), List.of(), List.of(), null, null, null, null, normalizeTaskId(taskId), null, null, null, null);
+        return new AgentDelta(null, null, null, null, null, toolCalls, List.of(), List.of(), List.of(), null, null, null, null, normalizeTaskId(taskId), null, null, null, null, null);
     }
 
     public static AgentDelta toolEnd(String toolId) {
@@ -102,7 +110,7 @@ public record AgentDelta(
     }
 
     public static AgentDelta toolEnds(List<String> toolIds) {
-        return new AgentDelta(null, null, null, null, null, List.of(), toolIds, List.of(), List.of(), null, null, null, null, null, null, null, null, null);
+        return new AgentDelta(null, null, null, null, null, List.of(), toolIds, List.of(), List.of(), null, null, null, null, null, null, null, null, null, null);
     }
 
     public static AgentDelta toolResult(String toolId, JsonNode result) {
@@ -118,7 +126,7 @@ public record AgentDelta(
     }
 
     public static AgentDelta toolResult(String toolId, String result) {
-        return new AgentDelta(null, null, null, null, null, List.of(), List.of(), List.of(new ToolResult(toolId, result)), List.of(), null, null, null, null, null, null, null, null, null);
+        return new AgentDelta(null, null, null, null, null, List.of(), List.of(), List.of(new ToolResult(toolId, result)), List.of(), null, null, null, null, null, null, null, null, null, null);
     }
 
     public static AgentDelta artifactPublished(
@@ -145,12 +153,13 @@ public record AgentDelta(
                 null,
                 null,
                 null,
+                null,
                 null
         );
     }
 
     public static AgentDelta planUpdate(String planId, String chatId, List<PlanTask> plan) {
-        return new AgentDelta(null, null, null, null, null, List.of(), List.of(), List.of(), List.of(), new PlanUpdate(planId, chatId, plan), null, null, null, null, null, null, null, null);
+        return new AgentDelta(null, null, null, null, null, List.of(), List.of(), List.of(), List.of(), new PlanUpdate(planId, chatId, plan), null, null, null, null, null, null, null, null, null);
     }
 
     public static AgentDelta requestSubmit(
@@ -179,6 +188,7 @@ public record AgentDelta(
                 null,
                 null,
                 null,
+                null,
                 null
         );
     }
@@ -202,6 +212,7 @@ public record AgentDelta(
                 null,
                 null,
                 null,
+                null,
                 null
         );
     }
@@ -210,43 +221,51 @@ public record AgentDelta(
         String normalizedTaskId = requireTaskId(taskId, "task.start");
         String normalizedRunId = requireRunId(runId);
         TaskLifecycle lifecycle = new TaskLifecycle("start", normalizedTaskId, normalizedRunId, normalizeText(taskName), normalizeText(description), null);
-        return new AgentDelta(null, null, null, null, null, List.of(), List.of(), List.of(), List.of(), null, null, null, lifecycle, normalizedTaskId, null, null, null, null);
+        return new AgentDelta(null, null, null, null, null, List.of(), List.of(), List.of(), List.of(), null, null, null, lifecycle, normalizedTaskId, null, null, null, null, null);
     }
 
     public static AgentDelta taskComplete(String taskId) {
         String normalizedTaskId = requireTaskId(taskId, "task.complete");
         TaskLifecycle lifecycle = new TaskLifecycle("complete", normalizedTaskId, null, null, null, null);
-        return new AgentDelta(null, null, null, null, null, List.of(), List.of(), List.of(), List.of(), null, null, null, lifecycle, normalizedTaskId, null, null, null, null);
+        return new AgentDelta(null, null, null, null, null, List.of(), List.of(), List.of(), List.of(), null, null, null, lifecycle, normalizedTaskId, null, null, null, null, null);
     }
 
     public static AgentDelta taskCancel(String taskId) {
         String normalizedTaskId = requireTaskId(taskId, "task.cancel");
         TaskLifecycle lifecycle = new TaskLifecycle("cancel", normalizedTaskId, null, null, null, null);
-        return new AgentDelta(null, null, null, null, null, List.of(), List.of(), List.of(), List.of(), null, null, null, lifecycle, normalizedTaskId, null, null, null, null);
+        return new AgentDelta(null, null, null, null, null, List.of(), List.of(), List.of(), List.of(), null, null, null, lifecycle, normalizedTaskId, null, null, null, null, null);
     }
 
     public static AgentDelta taskFail(String taskId, Map<String, Object> error) {
         String normalizedTaskId = requireTaskId(taskId, "task.fail");
         Map<String, Object> normalizedError = error == null ? Map.of("message", "Task failed") : Map.copyOf(error);
         TaskLifecycle lifecycle = new TaskLifecycle("fail", normalizedTaskId, null, null, null, normalizedError);
-        return new AgentDelta(null, null, null, null, null, List.of(), List.of(), List.of(), List.of(), null, null, null, lifecycle, normalizedTaskId, null, null, null, null);
+        return new AgentDelta(null, null, null, null, null, List.of(), List.of(), List.of(), List.of(), null, null, null, lifecycle, normalizedTaskId, null, null, null, null, null);
     }
 
     public static AgentDelta finish(String finishReason) {
-        return new AgentDelta(null, null, null, null, null, List.of(), List.of(), List.of(), List.of(), null, null, null, null, null, finishReason, null, null, null);
+        return new AgentDelta(null, null, null, null, null, List.of(), List.of(), List.of(), List.of(), null, null, null, null, null, finishReason, null, null, null, null);
     }
 
     public static AgentDelta runError(RunError error) {
         Objects.requireNonNull(error, "error");
-        return new AgentDelta(null, null, null, null, null, List.of(), List.of(), List.of(), List.of(), null, null, null, null, null, null, error, null, null);
+        return new AgentDelta(null, null, null, null, null, List.of(), List.of(), List.of(), List.of(), null, null, null, null, null, null, error, null, null, null);
     }
 
     public static AgentDelta stageMarker(String marker) {
-        return new AgentDelta(null, null, null, null, null, List.of(), List.of(), List.of(), List.of(), null, null, null, null, null, null, null, marker, null);
+        return new AgentDelta(null, null, null, null, null, List.of(), List.of(), List.of(), List.of(), null, null, null, null, null, null, null, marker, null, null);
+    }
+
+    public static AgentDelta toolProgress(String toolId, Map<String, Object> progress) {
+        String normalizedToolId = normalizeText(toolId);
+        if (normalizedToolId == null) {
+            throw new IllegalArgumentException("tool.progress requires non-blank toolId");
+        }
+        return new AgentDelta(null, null, null, null, null, List.of(), List.of(), List.of(), List.of(), null, null, null, null, null, null, null, null, null, List.of(new ToolProgress(normalizedToolId, progress)));
     }
 
     public static AgentDelta usage(Map<String, Object> usage) {
-        return new AgentDelta(null, null, null, null, null, List.of(), List.of(), List.of(), List.of(), null, null, null, null, null, null, null, null, usage);
+        return new AgentDelta(null, null, null, null, null, List.of(), List.of(), List.of(), List.of(), null, null, null, null, null, null, null, null, usage, null);
     }
 
     public AgentDelta withReasoningId(String value) {
@@ -268,7 +287,8 @@ public record AgentDelta(
                 finishReason,
                 error,
                 stageMarker,
-                usage
+                usage,
+                toolProgresses
         );
     }
 
@@ -291,7 +311,8 @@ public record AgentDelta(
                 finishReason,
                 error,
                 stageMarker,
-                usage
+                usage,
+                toolProgresses
         );
     }
 
@@ -341,6 +362,15 @@ public record AgentDelta(
     ) {
     }
 
+    public record ToolProgress(
+            String toolId,
+            Map<String, Object> progress
+    ) {
+        public ToolProgress {
+            progress = progress == null ? Map.of() : Collections.unmodifiableMap(new LinkedHashMap<>(progress));
+        }
+    }
+
     public record ArtifactPublished(
             String artifactId,
             String chatId,
@@ -16,9 +16,32 @@ public record ModelDefinition(
         Integer maxOutputTokens,
         Pricing pricing,
         OpenAiCompatConfig compat,
-        String sourceFile
+        String sourceFile,
+        List<String> fallbacks
 ) {
 
+    public ModelDefinition {
+        fallbacks = fallbacks == null ? List.of() : List.copyOf(fallbacks);
+    }
+
+    public ModelDefinition(
+            String key,
+            String provider,
+            ModelProtocol protocol,
+            String modelId,
+            boolean isReasoner,
+            boolean isFunction,
+            Integer maxTokens,
+            Integer maxInputTokens,
+            Integer maxOutputTokens,
+            Pricing pricing,
+            OpenAiCompatConfig compat,
+            String sourceFile
+    ) {
+        this(key, provider, protocol, modelId, isReasoner, isFunction, maxTokens, maxInputTokens, maxOutputTokens,
+                pricing, compat, sourceFile, List.of());
+    }
+
     public record Pricing(
             Integer promptPointsPer1k,
             Integer completionPointsPer1k,
@@ -187,7 +187,8 @@ public class ModelRegistryService {
                     optionalInt(root, "maxOutputTokens"),
                     pricing,
                     compat,
-                    file.toString()
+                    file.toString(),
+                    parseFallbacks(key, root.path("fallbacks"))
             ));
         } catch (Exception ex) {
             log.warn("Skip invalid model file: {}", file, ex);
@@ -195,6 +196,20 @@ public class ModelRegistryService {
         }
     }
 
+    private List<String> parseFallbacks(String key, JsonNode node) {
+        if (node == null || !node.isArray()) {
+            return List.of();
+        }
+        List<String> fallbacks = new ArrayList<>();
+        for (JsonNode item : node) {
+            String fallback = normalize(item.asText(""));
+            if (!fallback.isBlank() && !fallback.equals(key) && !fallbacks.contains(fallback)) {
+                fallbacks.add(fallback);
+            }
+        }
+        return List.copyOf(fallbacks);
+    }
+
     private ModelDefinition.Pricing parsePricing(JsonNode node) {
         if (node == null || !node.isObject()) {
             return new ModelDefinition.Pricing(0, 0, 0, 1.0, List.of());
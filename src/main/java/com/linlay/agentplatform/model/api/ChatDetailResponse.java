@@ -15,6 +15,21 @@ public record ChatDetailResponse(
         List<Map<String, Object>> events,
         ChatStorageTypes.PlanState plan,
         ChatStorageTypes.ArtifactState artifact,
-        List<QueryRequest.Reference> references
+        List<QueryRequest.Reference> references,
+        Boolean hasMoreRuns,
+        String nextBeforeRunId
 ) {
+
+    public ChatDetailResponse(
+            String chatId,
+            String chatName,
+            String chatImageToken,
+            List<Map<String, Object>> rawMessages,
+            List<Map<String, Object>> events,
+            ChatStorageTypes.PlanState plan,
+            ChatStorageTypes.ArtifactState artifact,
+            List<QueryRequest.Reference> references
+    ) {
+        this(chatId, chatName, chatImageToken, rawMessages, events, plan, artifact, references, null, null);
+    }
 }
@@ -0,0 +1,11 @@
+package com.linlay.agentplatform.model.api;
+
+import java.util.List;
+
+public record ChatPageResponse(
+        List<ChatSummaryResponse> chats,
+        String nextCursor,
+        boolean hasMore,
+        long version
+) {
+}
@@ -1,10 +1,20 @@
 package com.linlay.agentplatform.model.api;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * 上传结果；分片上传未收齐时 {@code upload} 为空，{@code receivedBytes} 为已接收的字节数。
+ */
 public record UploadResponse(
         String requestId,
         String chatId,
-        UploadTicket upload
+        UploadTicket upload,
+        @JsonInclude(JsonInclude.Include.NON_NULL) Long receivedBytes
 ) {
+    public UploadResponse(String requestId, String chatId, UploadTicket upload) {
+        this(requestId, chatId, upload, null);
+    }
+
     public record UploadTicket(
             String id,
             String type,
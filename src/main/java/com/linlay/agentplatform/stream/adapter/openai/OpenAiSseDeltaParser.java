@@ -6,12 +6,16 @@ import com.linlay.agentplatform.config.ReasoningFormat;
 import com.linlay.agentplatform.config.ThinkTagConfig;
 import com.linlay.agentplatform.stream.model.LlmDelta;
 import com.linlay.agentplatform.stream.model.ToolCallDelta;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.linlay.agentplatform.util.StringHelpers;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.LinkedHashMap;
 import java.util.List;
@@ -20,6 +24,8 @@ import java.util.Objects;
 
 public class OpenAiSseDeltaParser {
 
+    public static final String CACHED_TOKENS = "cached_tokens";
+
     private static final Logger log = LoggerFactory.getLogger(OpenAiSseDeltaParser.class);
 
     private final ObjectMapper objectMapper;
@@ -30,6 +36,7 @@ public class OpenAiSseDeltaParser {
     private final String thinkTagEnd;
     private final boolean stripThinkTagFromContent;
     private final StringBuilder thinkBuffer = new StringBuilder();
+    private final DeltaFields fields = new DeltaFields();
     private boolean insideThinkTag;
 
     public OpenAiSseDeltaParser(ObjectMapper objectMapper) {
@@ -54,88 +61,240 @@ public class OpenAiSseDeltaParser {
         if (payload == null) {
             return null;
         }
-        try {
-            JsonNode root = objectMapper.readTree(payload);
-            Map<String, Object> usage = parseUsage(root.get("usage"));
-            JsonNode choices = root.path("choices");
-            if (!choices.isArray() || choices.isEmpty()) {
-                if (usage != null && !usage.isEmpty()) {
-                    return new LlmDelta(null, null, null, null, usage);
+        try (JsonParser parser = objectMapper.getFactory().createParser(payload)) {
+            return parse(parser);
+        } catch (Exception ex) {
+            log.warn("Failed to parse OpenAI SSE chunk: {}", rawChunk, ex);
+            return null;
+        }
+    }
+
+    /**
+     * 直接解析一个 SSE data 负载的字节区间（不含 {@code data:} 前缀），避免先解码成字符串再构建 JSON 树。
+     */
+    public LlmDelta parseOrNull(byte[] payload, int offset, int length) {
+        if (payload == null || length <= 0) {
+            return null;
+        }
+        try (JsonParser parser = objectMapper.getFactory().createParser(payload, offset, length)) {
+            return parse(parser);
+        } catch (Exception ex) {
+            log.warn("Failed to parse OpenAI SSE chunk: {}", new String(payload, offset, length, StandardCharsets.UTF_8), ex);
+            return null;
+        }
+    }
+
+    /**
+     * 以流式 token 方式只读取 choices[0].delta 中关心的字段，其余子树直接跳过。
+     */
+    private LlmDelta parse(JsonParser parser) throws IOException {
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+            return null;
+        }
+        fields.reset();
+        Map<String, Object> usage = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+            if ("usage".equals(field) && value == JsonToken.START_OBJECT) {
+                usage = parseUsage(parser.readValueAsTree());
+            } else if ("choices".equals(field) && value == JsonToken.START_ARRAY) {
+                readChoices(parser);
+            } else {
+                parser.skipChildren();
+            }
+        }
+        if (!fields.hasChoice) {
+            if (usage != null && !usage.isEmpty()) {
+                return new LlmDelta(null, null, null, null, usage);
+            }
+            return null;
+        }
+
+        String reasoning = null;
+        if (reasoningFormats.contains(ReasoningFormat.REASONING_CONTENT)) {
+            reasoning = appendText(reasoning, fields.reasoningContent);
+        }
+        if (reasoningFormats.contains(ReasoningFormat.REASONING_DETAILS_TEXT)) {
+            reasoning = appendText(reasoning, fields.reasoningDetails == null ? null : fields.reasoningDetails.toString());
+        }
+        ParsedThinkTagContent parsedContent = parseThinkTagContent(fields.content);
+        String content = parsedContent.content();
+        if (hasText(parsedContent.reasoning())) {
+            reasoning = appendText(reasoning, parsedContent.reasoning());
+        }
+        String finishReason = fields.finishReason;
+        List<ToolCallDelta> toolCalls = fields.toolCalls;
+
+        boolean empty = !hasText(reasoning)
+                && !hasText(content)
+                && toolCalls == null
+                && !hasText(finishReason)
+                && (usage == null || usage.isEmpty());
+        if (empty) {
+            return null;
+        }
+        return new LlmDelta(
+                reasoning,
+                content,
+                toolCalls,
+                finishReason,
+                usage
+        );
+    }
+
+    private void readChoices(JsonParser parser) throws IOException {
+        JsonToken token;
+        while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+            if (!fields.hasChoice && token == JsonToken.START_OBJECT) {
+                fields.hasChoice = true;
+                readChoice(parser);
+            } else {
+                parser.skipChildren();
+            }
+        }
+    }
+
+    private void readChoice(JsonParser parser) throws IOException {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+            if ("delta".equals(field) && value == JsonToken.START_OBJECT) {
+                readDelta(parser);
+            } else if ("finish_reason".equals(field)) {
+                fields.finishReason = readText(parser);
+            } else {
+                parser.skipChildren();
+            }
+        }
+    }
+
+    private void readDelta(JsonParser parser) throws IOException {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+            switch (field) {
+                case "content" -> fields.content = readText(parser);
+                case "reasoning_content" -> fields.reasoningContent = readText(parser);
+                case "reasoning_details" -> {
+                    if (value == JsonToken.START_ARRAY) {
+                        readReasoningDetails(parser);
+                    } else {
+                        parser.skipChildren();
+                    }
                 }
-                return null;
+                case "tool_calls" -> {
+                    if (value == JsonToken.START_ARRAY) {
+                        readToolCalls(parser);
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+                default -> parser.skipChildren();
             }
+        }
+    }
 
-            JsonNode firstChoice = choices.get(0);
-            JsonNode deltaNode = firstChoice.path("delta");
-            String reasoning = parseReasoning(deltaNode);
-            ParsedThinkTagContent parsedContent = parseThinkTagContent(optionalText(deltaNode.get("content")));
-            String content = parsedContent.content();
-            if (hasText(parsedContent.reasoning())) {
-                reasoning = appendText(reasoning, parsedContent.reasoning());
+    private void readReasoningDetails(JsonParser parser) throws IOException {
+        JsonToken token;
+        while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+            if (token != JsonToken.START_OBJECT) {
+                parser.skipChildren();
+                continue;
             }
-            String finishReason = optionalText(firstChoice.get("finish_reason"));
-
-            List<ToolCallDelta> toolCalls = new ArrayList<>();
-            JsonNode toolCallsNode = deltaNode.path("tool_calls");
-            if (toolCallsNode.isArray()) {
-                for (JsonNode toolCallNode : toolCallsNode) {
-                    String id = optionalText(toolCallNode.get("id"));
-                    Integer index = optionalInt(toolCallNode.get("index"));
-                    String type = optionalText(toolCallNode.get("type"));
-                    JsonNode functionNode = toolCallNode.path("function");
-                    String name = optionalText(functionNode.get("name"));
-                    String arguments = optionalText(functionNode.get("arguments"));
-                    if (!hasText(id) && index == null && !hasText(name) && !hasText(arguments)) {
-                        continue;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                parser.nextToken();
+                if ("text".equals(field)) {
+                    String text = readText(parser);
+                    if (hasText(text)) {
+                        if (fields.reasoningDetails == null) {
+                            fields.reasoningDetails = new StringBuilder();
+                        }
+                        fields.reasoningDetails.append(text);
                     }
-                    toolCalls.add(new ToolCallDelta(id, index, type, name, arguments));
+                } else {
+                    parser.skipChildren();
                 }
             }
+        }
+    }
 
-            boolean empty = !hasText(reasoning)
-                    && !hasText(content)
-                    && toolCalls.isEmpty()
-                    && !hasText(finishReason)
-                    && (usage == null || usage.isEmpty());
-            if (empty) {
-                return null;
+    private void readToolCalls(JsonParser parser) throws IOException {
+        JsonToken token;
+        while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+            if (token != JsonToken.START_OBJECT) {
+                parser.skipChildren();
+                continue;
             }
-            return new LlmDelta(
-                    reasoning,
-                    content,
-                    toolCalls.isEmpty() ? null : toolCalls,
-                    finishReason,
-                    usage
-            );
-        } catch (Exception ex) {
-            log.warn("Failed to parse OpenAI SSE chunk: {}", rawChunk, ex);
-            return null;
+            String id = null;
+            Integer index = null;
+            String type = null;
+            String name = null;
+            String arguments = null;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+                switch (field) {
+                    case "id" -> id = readText(parser);
+                    case "index" -> index = readInt(parser);
+                    case "type" -> type = readText(parser);
+                    case "function" -> {
+                        if (value != JsonToken.START_OBJECT) {
+                            parser.skipChildren();
+                            break;
+                        }
+                        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                            String functionField = parser.currentName();
+                            parser.nextToken();
+                            if ("name".equals(functionField)) {
+                                name = readText(parser);
+                            } else if ("arguments".equals(functionField)) {
+                                arguments = readText(parser);
+                            } else {
+                                parser.skipChildren();
+                            }
+                        }
+                    }
+                    default -> parser.skipChildren();
+                }
+            }
+            if (!hasText(id) && index == null && !hasText(name) && !hasText(arguments)) {
+                continue;
+            }
+            if (fields.toolCalls == null) {
+                fields.toolCalls = new ArrayList<>(1);
+            }
+            fields.toolCalls.add(new ToolCallDelta(id, index, type, name, arguments));
         }
     }
 
-    private String parseReasoning(JsonNode deltaNode) {
-        String reasoning = null;
-        if (reasoningFormats.contains(ReasoningFormat.REASONING_CONTENT)) {
-            reasoning = appendText(reasoning, optionalText(deltaNode.get("reasoning_content")));
+    private String readText(JsonParser parser) throws IOException {
+        JsonToken token = parser.currentToken();
+        if (token == null || token == JsonToken.VALUE_NULL) {
+            return null;
         }
-        if (reasoningFormats.contains(ReasoningFormat.REASONING_DETAILS_TEXT)) {
-            reasoning = appendText(reasoning, parseReasoningDetails(deltaNode.get("reasoning_details")));
+        if (token == JsonToken.START_OBJECT || token == JsonToken.START_ARRAY) {
+            JsonNode node = parser.readValueAsTree();
+            return node == null ? null : node.toString();
         }
-        return reasoning;
+        return parser.getText();
     }
 
-    private String parseReasoningDetails(JsonNode node) {
-        if (node == null || node.isNull() || node.isMissingNode() || !node.isArray()) {
-            return null;
+    private Integer readInt(JsonParser parser) throws IOException {
+        JsonToken token = parser.currentToken();
+        if (token == JsonToken.VALUE_NUMBER_INT) {
+            return parser.getIntValue();
         }
-        StringBuilder builder = new StringBuilder();
-        for (JsonNode item : node) {
-            String text = optionalText(item.get("text"));
-            if (hasText(text)) {
-                builder.append(text);
+        if (token == JsonToken.VALUE_STRING) {
+            try {
+                return Integer.parseInt(parser.getText());
+            } catch (NumberFormatException ignored) {
+                return null;
             }
         }
-        return builder.isEmpty() ? null : builder.toString();
+        parser.skipChildren();
+        return null;
     }
 
     private ParsedThinkTagContent parseThinkTagContent(String rawContent) {
@@ -246,7 +405,36 @@ public class OpenAiSseDeltaParser {
                 usage.put(entry.getKey(), normalized);
             }
         });
-        return usage.isEmpty() ? null : usage;
+        if (usage.isEmpty()) {
+            return null;
+        }
+        if (!usage.containsKey(CACHED_TOKENS)) {
+            Long cachedTokens = cachedTokens(usageNode);
+            if (cachedTokens != null) {
+                usage.put(CACHED_TOKENS, cachedTokens);
+            }
+        }
+        return usage;
+    }
+
+    /**
+     * 各 provider 报告前缀缓存命中的字段不同（OpenAI/Qwen 的 prompt_tokens_details.cached_tokens、
+     * DeepSeek 的 prompt_cache_hit_tokens、Anthropic 兼容层的 cache_read_input_tokens），统一归一到顶层 cached_tokens。
+     */
+    private Long cachedTokens(JsonNode usageNode) {
+        JsonNode details = usageNode.path("prompt_tokens_details").path("cached_tokens");
+        if (details.isNumber()) {
+            return details.asLong();
+        }
+        JsonNode deepSeek = usageNode.path("prompt_cache_hit_tokens");
+        if (deepSeek.isNumber()) {
+            return deepSeek.asLong();
+        }
+        JsonNode anthropic = usageNode.path("cache_read_input_tokens");
+        if (anthropic.isNumber()) {
+            return anthropic.asLong();
+        }
+        return null;
     }
 
     private Object normalizeUsageValue(JsonNode valueNode) {
@@ -299,37 +487,31 @@ public class OpenAiSseDeltaParser {
         return payload;
     }
 
-    private String optionalText(JsonNode node) {
-        if (node == null || node.isNull() || node.isMissingNode()) {
-            return null;
-        }
-        if (node.isTextual()) {
-            return node.asText();
-        }
-        return node.toString();
-    }
-
-    private Integer optionalInt(JsonNode node) {
-        if (node == null || node.isNull() || node.isMissingNode()) {
-            return null;
-        }
-        if (node.isInt() || node.isLong()) {
-            return node.asInt();
-        }
-        if (node.isTextual()) {
-            try {
-                return Integer.parseInt(node.asText());
-            } catch (NumberFormatException ignored) {
-                return null;
-            }
-        }
-        return null;
-    }
-
     private boolean hasText(String text) {
         return StringHelpers.hasText(text);
     }
 
     private record ParsedThinkTagContent(String reasoning, String content) {
     }
+
+    /**
+     * 单帧解析的中间结果；解析器实例按流独占使用，因此复用同一个对象。
+     */
+    private static final class DeltaFields {
+        private boolean hasChoice;
+        private String content;
+        private String reasoningContent;
+        private StringBuilder reasoningDetails;
+        private String finishReason;
+        private List<ToolCallDelta> toolCalls;
+
+        private void reset() {
+            hasChoice = false;
+            content = null;
+            reasoningContent = null;
+            reasoningDetails = null;
+            finishReason = null;
+            toolCalls = null;
+        }
+    }
 }
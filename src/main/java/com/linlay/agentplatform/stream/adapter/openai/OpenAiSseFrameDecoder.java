@@ -0,0 +1,148 @@
+package com.linlay.agentplatform.stream.adapter.openai;
+
+import org.springframework.core.io.buffer.DataBuffer;
+
+import java.util.Arrays;
+
+/**
+ * 在字节层面把上游 SSE 响应切分成 data 帧。
+ * <p>
+ * 输入是任意边界的 {@link DataBuffer}（一行、一个事件甚至一个 UTF-8 字符都可能被拆开），
+ * 解码器在内部可复用的字节数组中拼接当前行与当前事件，遇到空行时把事件的 data 负载
+ * 以字节区间回调出去，全程不解码成字符串。多个 data 行按 SSE 规范以换行拼接；
+ * {@code [DONE]} 与注释、event/id/retry 行被忽略。不以字段名开头的 JSON 行视为独立负载，兼容非标准 provider。
+ * <p>
+ * 实例有状态，只能被一个响应流按顺序使用。
+ */
+public class OpenAiSseFrameDecoder {
+
+    private static final byte[] DATA_FIELD = {'d', 'a', 't', 'a', ':'};
+    private static final byte[] DONE = {'[', 'D', 'O', 'N', 'E', ']'};
+
+    private byte[] line = new byte[256];
+    private int lineLength;
+    private byte[] frame = new byte[1024];
+    private int frameLength;
+
+    @FunctionalInterface
+    public interface FrameConsumer {
+        void accept(byte[] payload, int offset, int length);
+    }
+
+    /**
+     * 消费 buffer 中全部可读字节；完整的帧通过 consumer 回调，不完整的部分留待下一个 buffer。
+     * 回调参数引用内部数组，只在回调期间有效。调用方负责释放 buffer。
+     */
+    public void decode(DataBuffer buffer, FrameConsumer consumer) {
+        int position = buffer.readPosition();
+        int end = buffer.writePosition();
+        while (position < end) {
+            int newline = buffer.indexOf(b -> b == '\n', position);
+            int lineEnd = newline < 0 || newline >= end ? end : newline;
+            appendLine(buffer, position, lineEnd - position);
+            if (lineEnd == end) {
+                position = end;
+                break;
+            }
+            completeLine(consumer);
+            position = lineEnd + 1;
+        }
+        buffer.readPosition(end);
+    }
+
+    /**
+     * 流结束时冲刷未以空行结尾的最后一个事件。
+     */
+    public void finish(FrameConsumer consumer) {
+        if (lineLength > 0) {
+            completeLine(consumer);
+        }
+        dispatch(consumer);
+    }
+
+    private void appendLine(DataBuffer buffer, int position, int length) {
+        if (length <= 0) {
+            return;
+        }
+        ensureLineCapacity(lineLength + length);
+        buffer.readPosition(position);
+        buffer.read(line, lineLength, length);
+        lineLength += length;
+    }
+
+    private void completeLine(FrameConsumer consumer) {
+        int length = lineLength;
+        if (length > 0 && line[length - 1] == '\r') {
+            length--;
+        }
+        lineLength = 0;
+        if (length == 0) {
+            dispatch(consumer);
+            return;
+        }
+        if (startsWith(line, length, DATA_FIELD)) {
+            int start = DATA_FIELD.length;
+            if (start < length && line[start] == ' ') {
+                start++;
+            }
+            appendFrame(start, length - start);
+            return;
+        }
+        int first = firstNonWhitespace(line, length);
+        if (first < length && line[first] == '{') {
+            dispatch(consumer);
+            appendFrame(first, length - first);
+            dispatch(consumer);
+        }
+    }
+
+    private void appendFrame(int start, int length) {
+        int required = frameLength + length + (frameLength > 0 ? 1 : 0);
+        if (required > frame.length) {
+            frame = Arrays.copyOf(frame, Math.max(required, frame.length * 2));
+        }
+        if (frameLength > 0) {
+            frame[frameLength++] = '\n';
+        }
+        System.arraycopy(line, start, frame, frameLength, length);
+        frameLength += length;
+    }
+
+    private void dispatch(FrameConsumer consumer) {
+        if (frameLength == 0) {
+            return;
+        }
+        int start = firstNonWhitespace(frame, frameLength);
+        int end = frameLength;
+        while (end > start && isWhitespace(frame[end - 1])) {
+            end--;
+        }
+        frameLength = 0;
+        if (end <= start || Arrays.equals(frame, start, end, DONE, 0, DONE.length)) {
+            return;
+        }
+        consumer.accept(frame, start, end - start);
+    }
+
+    private void ensureLineCapacity(int required) {
+        if (required > line.length) {
+            line = Arrays.copyOf(line, Math.max(required, line.length * 2));
+        }
+    }
+
+    private static boolean startsWith(byte[] source, int length, byte[] prefix) {
+        return length >= prefix.length && Arrays.equals(source, 0, prefix.length, prefix, 0, prefix.length);
+    }
+
+    private static int firstNonWhitespace(byte[] source, int length) {
+        int index = 0;
+        while (index < length && isWhitespace(source[index])) {
+            index++;
+        }
+        return index;
+    }
+
+    private static boolean isWhitespace(byte value) {
+        return value == ' ' || value == '\t' || value == '\r' || value == '\n';
+    }
+}
@@ -31,13 +31,13 @@ public class StreamSseAutoConfiguration {
 
     @Bean
     @ConditionalOnMissingBean
-    public StreamSseStreamer streamSseStreamer(StreamEventAssembler eventAssembler, ObjectMapper objectMapper, StreamSseProperties properties) {
-        return new StreamSseStreamer(eventAssembler, objectMapper, properties.streamTimeout(), properties.heartbeatInterval());
+    public StreamSseStreamer streamSseStreamer(StreamEventAssembler eventAssembler, StreamSseProperties properties) {
+        return new StreamSseStreamer(eventAssembler, properties.streamTimeout(), properties.heartbeatInterval());
     }
 
     @Bean
     @ConditionalOnMissingBean
-    public SseFlushWriter sseFlushWriter() {
-        return new SseFlushWriter();
+    public SseFlushWriter sseFlushWriter(ObjectMapper objectMapper) {
+        return new SseFlushWriter(objectMapper);
     }
 }
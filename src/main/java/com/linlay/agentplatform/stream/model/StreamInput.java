@@ -15,6 +15,7 @@ public sealed interface StreamInput permits
         StreamInput.ToolArgs,
         StreamInput.ToolEnd,
         StreamInput.ToolResult,
+        StreamInput.ToolProgress,
         StreamInput.ArtifactPublish,
         StreamInput.ActionArgs,
         StreamInput.ActionEnd,
@@ -102,6 +103,13 @@ public sealed interface StreamInput permits
         }
     }
 
+    record ToolProgress(String toolId, Map<String, Object> progress) implements StreamInput {
+        public ToolProgress {
+            requireNonBlank(toolId, "toolId");
+            requireNonNull(progress, "progress");
+        }
+    }
+
     record ArtifactPublish(
             String artifactId,
             String chatId,
@@ -0,0 +1,162 @@
+package com.linlay.agentplatform.stream.model;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * SSE 事件的类型化载体。
+ * <p>
+ * 从 StreamEventAssembler 产出到写出 HTTP 响应之间，事件始终以 type + data Map 的形式流转，
+ * 规范化、持久化、日志与渲染队列直接读取字段；JSON 仅在首次需要字节时序列化一次并缓存，
+ * 由 SseFlushWriter 在出口处复用。
+ */
+public final class StreamSseEvent {
+
+    public static final String EVENT_MESSAGE = "message";
+    public static final String EVENT_HEARTBEAT = "heartbeat";
+    private static final String HEARTBEAT_COMMENT = "heartbeat";
+
+    private final String event;
+    private final String comment;
+    private final String type;
+    private final Map<String, Object> data;
+    private final String rawData;
+    private volatile byte[] dataBytes;
+
+    private StreamSseEvent(String event, String comment, String type, Map<String, Object> data, String rawData) {
+        this.event = event;
+        this.comment = comment;
+        this.type = type;
+        this.data = data == null ? null : Collections.unmodifiableMap(data);
+        this.rawData = rawData;
+        if (rawData != null) {
+            this.dataBytes = rawData.getBytes(StandardCharsets.UTF_8);
+        }
+    }
+
+    public static StreamSseEvent of(StreamEvent streamEvent) {
+        return new StreamSseEvent(EVENT_MESSAGE, null, streamEvent.type(), streamEvent.toData(), null);
+    }
+
+    public static StreamSseEvent message(Map<String, Object> data) {
+        Map<String, Object> copy = data == null ? new LinkedHashMap<>() : new LinkedHashMap<>(data);
+        Object type = copy.get("type");
+        return new StreamSseEvent(EVENT_MESSAGE, null, type instanceof String text ? text : null, copy, null);
+    }
+
+    public static StreamSseEvent heartbeatComment() {
+        return new StreamSseEvent(null, HEARTBEAT_COMMENT, null, null, null);
+    }
+
+    public static StreamSseEvent heartbeat() {
+        return new StreamSseEvent(EVENT_HEARTBEAT, null, null, null, null);
+    }
+
+    /**
+     * 非 JSON 的原样数据帧，例如传输层终止帧 {@code [DONE]}。
+     */
+    public static StreamSseEvent raw(String event, String data) {
+        return new StreamSseEvent(event, null, null, null, data);
+    }
+
+    public String event() {
+        return event;
+    }
+
+    public String comment() {
+        return comment;
+    }
+
+    public String type() {
+        return type;
+    }
+
+    public Map<String, Object> data() {
+        return data;
+    }
+
+    public boolean hasData() {
+        return data != null || rawData != null;
+    }
+
+    public boolean isHeartbeatComment() {
+        return comment != null && event == null && !hasData() && HEARTBEAT_COMMENT.equals(comment.trim());
+    }
+
+    public Object get(String key) {
+        return data == null ? null : data.get(key);
+    }
+
+    public String text(String key) {
+        Object value = get(key);
+        if (value instanceof String text) {
+            return text;
+        }
+        if (value instanceof Number || value instanceof Boolean) {
+            return String.valueOf(value);
+        }
+        return null;
+    }
+
+    public long longValue(String key, long fallback) {
+        Object value = get(key);
+        if (value instanceof Number number) {
+            return number.longValue();
+        }
+        if (value instanceof String text) {
+            try {
+                return Long.parseLong(text.trim());
+            } catch (NumberFormatException ignored) {
+                return fallback;
+            }
+        }
+        return fallback;
+    }
+
+    /**
+     * 以新的 data 重建事件，保留 SSE 帧属性；缓存的序列化结果随之失效。
+     */
+    public StreamSseEvent withData(Map<String, Object> newData) {
+        Map<String, Object> copy = newData == null ? new LinkedHashMap<>() : new LinkedHashMap<>(newData);
+        Object newType = copy.get("type");
+        return new StreamSseEvent(event, comment, newType instanceof String text ? text : type, copy, null);
+    }
+
+    /**
+     * 返回 data 字段的 UTF-8 字节；JSON 事件首次调用时序列化并缓存，之后复用同一份结果。
+     */
+    public byte[] dataBytes(ObjectMapper objectMapper) {
+        byte[] cached = dataBytes;
+        if (cached != null) {
+            return cached;
+        }
+        if (data == null) {
+            return null;
+        }
+        try {
+            cached = objectMapper.writeValueAsBytes(data);
+        } catch (JsonProcessingException ex) {
+            throw new IllegalStateException("Cannot serialize stream SSE event", ex);
+        }
+        dataBytes = cached;
+        return cached;
+    }
+
+    public String dataString(ObjectMapper objectMapper) {
+        byte[] bytes = dataBytes(objectMapper);
+        return bytes == null ? null : new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public String toString() {
+        if (rawData != null) {
+            return "StreamSseEvent{event=" + event + ", raw=" + rawData + "}";
+        }
+        return "StreamSseEvent{event=" + event + ", comment=" + comment + ", type=" + type + "}";
+    }
+}
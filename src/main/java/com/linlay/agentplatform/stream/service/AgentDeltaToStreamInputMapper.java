@@ -26,7 +26,7 @@ import static com.linlay.agentplatform.util.StringHelpers.hasText;
  * <p>
  * 该类负责三类映射语义：
  * 1) 文本块（reasoning/content）按块分配独立 ID，块结束后不可复用；
- * 2) tool/action 增量参数与结果事件保持顺序并补齐必要元数据；
+ * 2) tool/action 增量参数、执行进度与结果事件保持顺序并补齐必要元数据；
  * 3) 计划更新、运行结束等控制事件透传为对应流式事件。
  */
 public class AgentDeltaToStreamInputMapper {
@@ -152,6 +152,17 @@ public class AgentDeltaToStreamInputMapper {
             }
         }
 
+        if (delta.toolProgresses() != null && !delta.toolProgresses().isEmpty()) {
+            for (AgentDelta.ToolProgress toolProgress : delta.toolProgresses()) {
+                if (toolProgress == null
+                        || !hasText(toolProgress.toolId())
+                        || actionToolIds.contains(toolProgress.toolId())) {
+                    continue;
+                }
+                inputs.add(new StreamInput.ToolProgress(toolProgress.toolId(), toolProgress.progress()));
+            }
+        }
+
         if (delta.toolResults() != null && !delta.toolResults().isEmpty()) {
             for (AgentDelta.ToolResult toolResult : delta.toolResults()) {
                 if (toolResult == null || !hasText(toolResult.toolId())) {
@@ -254,6 +265,7 @@ public class AgentDeltaToStreamInputMapper {
                 || (delta.toolCalls() != null && !delta.toolCalls().isEmpty())
                 || (delta.toolEnds() != null && !delta.toolEnds().isEmpty())
                 || (delta.toolResults() != null && !delta.toolResults().isEmpty())
+                || (delta.toolProgresses() != null && !delta.toolProgresses().isEmpty())
                 || (delta.artifactPublishes() != null && !delta.artifactPublishes().isEmpty())
                 || delta.planUpdate() != null
                 || delta.requestSubmit() != null
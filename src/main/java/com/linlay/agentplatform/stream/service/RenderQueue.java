@@ -1,12 +1,10 @@
 package com.linlay.agentplatform.stream.service;
 
-import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.linlay.agentplatform.config.properties.H2aProperties;
+import com.linlay.agentplatform.stream.model.StreamSseEvent;
 import jakarta.annotation.PreDestroy;
-import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.stereotype.Component;
-import org.springframework.util.StringUtils;
 import reactor.core.Disposable;
 import reactor.core.publisher.Flux;
 import reactor.core.scheduler.Scheduler;
@@ -15,13 +13,14 @@ import reactor.core.scheduler.Schedulers;
 import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 @Component
 public class RenderQueue {
 
-    private static final String SSE_EVENT_MESSAGE = "message";
+    private static final Set<String> TERMINAL_EVENT_TYPES = Set.of("run.complete", "run.cancel", "run.error");
 
     private final ObjectMapper objectMapper;
     private final H2aProperties properties;
@@ -37,7 +36,7 @@ public class RenderQueue {
         sharedScheduler.dispose();
     }
 
-    public Flux<ServerSentEvent<String>> buffer(Flux<ServerSentEvent<String>> source) {
+    public Flux<StreamSseEvent> buffer(Flux<StreamSseEvent> source) {
         H2aProperties.Render render = properties.getRender();
         if (render.getFlushIntervalMs() <= 0L
                 && render.getMaxBufferedChars() <= 0
@@ -47,13 +46,13 @@ public class RenderQueue {
 
         return Flux.create(sink -> {
             Object monitor = new Object();
-            List<ServerSentEvent<String>> pending = new ArrayList<>();
+            List<StreamSseEvent> pending = new ArrayList<>();
             int[] bufferedChars = {0};
             Scheduler.Worker worker = sharedScheduler.createWorker();
             AtomicBoolean timerScheduled = new AtomicBoolean(false);
 
             Runnable flush = () -> {
-                List<ServerSentEvent<String>> drained;
+                List<StreamSseEvent> drained;
                 synchronized (monitor) {
                     if (pending.isEmpty()) {
                         timerScheduled.set(false);
@@ -104,11 +103,11 @@ public class RenderQueue {
         });
     }
 
-    private boolean shouldPassThroughHeartbeat(H2aProperties.Render render, ServerSentEvent<String> event) {
-        return render.isHeartbeatPassThrough() && event != null && StringUtils.hasText(event.comment());
+    private boolean shouldPassThroughHeartbeat(H2aProperties.Render render, StreamSseEvent event) {
+        return render.isHeartbeatPassThrough() && event != null && event.comment() != null && !event.comment().isBlank();
     }
 
-    private boolean shouldFlush(H2aProperties.Render render, int bufferedEvents, int bufferedChars, ServerSentEvent<String> latest) {
+    private boolean shouldFlush(H2aProperties.Render render, int bufferedEvents, int bufferedChars, StreamSseEvent latest) {
         if (isTerminalEvent(latest)) {
             return true;
         }
@@ -118,23 +117,18 @@ public class RenderQueue {
         return render.getMaxBufferedChars() > 0 && bufferedChars >= render.getMaxBufferedChars();
     }
 
-    private int estimateChars(ServerSentEvent<String> event) {
-        if (event == null || event.data() == null) {
+    private int estimateChars(StreamSseEvent event) {
+        if (event == null || !event.hasData()) {
             return 0;
         }
-        return event.data().length();
+        // 序列化结果缓存在事件上，出口写入时直接复用，不会产生第二次编码。
+        byte[] data = event.dataBytes(objectMapper);
+        return data == null ? 0 : data.length;
     }
 
-    private boolean isTerminalEvent(ServerSentEvent<String> event) {
-        if (event == null || !StringUtils.hasText(event.data()) || !SSE_EVENT_MESSAGE.equals(event.event())) {
-            return false;
-        }
-        try {
-            JsonNode root = objectMapper.readTree(event.data());
-            String type = root.path("type").asText("");
-            return "run.complete".equals(type) || "run.cancel".equals(type) || "run.error".equals(type);
-        } catch (Exception ignored) {
-            return false;
-        }
+    private boolean isTerminalEvent(StreamSseEvent event) {
+        return event != null
+                && StreamSseEvent.EVENT_MESSAGE.equals(event.event())
+                && TERMINAL_EVENT_TYPES.contains(event.type());
     }
 }
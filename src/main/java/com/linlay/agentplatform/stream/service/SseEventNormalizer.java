@@ -1,18 +1,16 @@
 package com.linlay.agentplatform.stream.service;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.linlay.agentplatform.config.properties.FrontendToolProperties;
+import com.linlay.agentplatform.stream.model.StreamSseEvent;
 import com.linlay.agentplatform.tool.ToolRegistry;
 import com.linlay.agentplatform.stream.autoconfigure.StreamSseProperties;
 import com.linlay.agentplatform.tool.ToolDescriptor;
 import com.linlay.agentplatform.integration.viewport.ViewportRegistryService;
-import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.stereotype.Component;
 import org.springframework.util.StringUtils;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -21,62 +19,50 @@ import java.util.Set;
 @Component
 public class SseEventNormalizer {
 
-    private final ObjectMapper objectMapper;
     private final ToolRegistry toolRegistry;
     private final ViewportRegistryService viewportRegistryService;
     private final FrontendToolProperties frontendToolProperties;
     private final StreamSseProperties streamSseProperties;
 
     public SseEventNormalizer(
-            ObjectMapper objectMapper,
             ToolRegistry toolRegistry,
             ViewportRegistryService viewportRegistryService,
             FrontendToolProperties frontendToolProperties,
             StreamSseProperties streamSseProperties
     ) {
-        this.objectMapper = objectMapper;
         this.toolRegistry = toolRegistry;
         this.viewportRegistryService = viewportRegistryService;
         this.frontendToolProperties = frontendToolProperties;
         this.streamSseProperties = streamSseProperties == null ? new StreamSseProperties(null, null, false) : streamSseProperties;
     }
 
-    public ServerSentEvent<String> normalizeEvent(ServerSentEvent<String> event, Set<String> hiddenToolIds) {
+    public StreamSseEvent normalizeEvent(StreamSseEvent event, Set<String> hiddenToolIds) {
         if (event == null) {
             return null;
         }
 
-        ServerSentEvent<String> heartbeatNormalized = normalizeHeartbeatCommentEvent(event);
-        if (heartbeatNormalized != event) {
-            return heartbeatNormalized;
+        if (event.isHeartbeatComment()) {
+            return StreamSseEvent.heartbeat();
         }
 
-        if (!StringUtils.hasText(event.data())) {
-            return event;
-        }
-        JsonNode root;
-        try {
-            root = objectMapper.readTree(event.data());
-        } catch (Exception ignored) {
-            return event;
-        }
-        if (!(root instanceof ObjectNode objectNode)) {
+        Map<String, Object> data = event.data();
+        if (data == null) {
             return event;
         }
 
-        String type = objectNode.path("type").asText();
+        String type = event.type();
         if ("plan.update".equals(type)) {
-            ObjectNode normalized = objectMapper.createObjectNode();
-            putIfPresent(normalized, "seq", objectNode.get("seq"));
+            Map<String, Object> normalized = new LinkedHashMap<>();
+            putIfPresent(normalized, "seq", data.get("seq"));
             normalized.put("type", "plan.update");
-            putIfPresent(normalized, "planId", objectNode.get("planId"));
-            putIfPresent(normalized, "chatId", objectNode.get("chatId"));
-            putIfPresent(normalized, "plan", objectNode.get("plan"));
-            putIfPresent(normalized, "timestamp", objectNode.get("timestamp"));
-            return rebuildEvent(event, normalized);
+            putIfPresent(normalized, "planId", data.get("planId"));
+            putIfPresent(normalized, "chatId", data.get("chatId"));
+            putIfPresent(normalized, "plan", data.get("plan"));
+            putIfPresent(normalized, "timestamp", data.get("timestamp"));
+            return event.withData(normalized);
         }
 
-        if (shouldHideToolEvent(type, objectNode, hiddenToolIds)) {
+        if (shouldHideToolEvent(type, data, hiddenToolIds)) {
             return null;
         }
 
@@ -84,8 +70,11 @@ public class SseEventNormalizer {
             return null;
         }
 
-        if (normalizeFrontendToolEvent(type, objectNode)) {
-            return rebuildEvent(event, objectNode);
+        Map<String, Object> frontendFields = resolveFrontendToolFields(type, data);
+        if (frontendFields != null) {
+            Map<String, Object> normalized = new LinkedHashMap<>(data);
+            normalized.putAll(frontendFields);
+            return event.withData(normalized);
         }
 
         return event;
@@ -98,35 +87,14 @@ public class SseEventNormalizer {
         return "tool.args".equals(eventType) || "tool.result".equals(eventType);
     }
 
-    ServerSentEvent<String> normalizeHeartbeatCommentEvent(ServerSentEvent<String> event) {
-        if (!StringUtils.hasText(event.comment())
-                || StringUtils.hasText(event.event())
-                || StringUtils.hasText(event.data())) {
-            return event;
-        }
-        if (!"heartbeat".equals(event.comment().trim())) {
-            return event;
-        }
-
-        ServerSentEvent.Builder<String> builder = ServerSentEvent.builder();
-        builder.event("heartbeat");
-        if (StringUtils.hasText(event.id())) {
-            builder.id(event.id());
-        }
-        if (event.retry() != null) {
-            builder.retry(event.retry());
-        }
-        return builder.build();
-    }
-
-    boolean normalizeFrontendToolEvent(String eventType, ObjectNode root) {
+    Map<String, Object> resolveFrontendToolFields(String eventType, Map<String, Object> data) {
         if (!"tool.start".equals(eventType) && !"tool.snapshot".equals(eventType)) {
-            return false;
+            return null;
         }
 
-        String toolName = root.path("toolName").asText(null);
+        String toolName = textValue(data.get("toolName"));
         if (!StringUtils.hasText(toolName)) {
-            return false;
+            return null;
         }
 
         return toolRegistry.descriptor(toolName)
@@ -136,23 +104,24 @@ public class SseEventNormalizer {
                             ? descriptor.viewportKey().trim()
                             : null;
                     if (!StringUtils.hasText(viewportKey)) {
-                        return false;
+                        return null;
                     }
-                    root.put("viewportKey", viewportKey);
-                    root.put("toolType", resolveViewportToolType(descriptor.toolType(), viewportKey));
-                    root.put("toolTimeout", Math.max(1L, frontendToolProperties.getSubmitTimeoutMs()));
-                    return true;
+                    Map<String, Object> fields = new LinkedHashMap<>();
+                    fields.put("viewportKey", viewportKey);
+                    fields.put("toolType", resolveViewportToolType(descriptor.toolType(), viewportKey));
+                    fields.put("toolTimeout", Math.max(1L, frontendToolProperties.getSubmitTimeoutMs()));
+                    return fields;
                 })
-                .orElse(false);
+                .orElse(null);
     }
 
-    boolean shouldHideToolEvent(String eventType, ObjectNode root, Set<String> hiddenToolIds) {
-        if (root == null || hiddenToolIds == null || !StringUtils.hasText(eventType)) {
+    boolean shouldHideToolEvent(String eventType, Map<String, Object> data, Set<String> hiddenToolIds) {
+        if (data == null || hiddenToolIds == null || !StringUtils.hasText(eventType)) {
             return false;
         }
         if ("tool.start".equals(eventType) || "tool.snapshot".equals(eventType)) {
-            String toolName = root.path("toolName").asText(null);
-            String toolId = root.path("toolId").asText(null);
+            String toolName = textValue(data.get("toolName"));
+            String toolId = textValue(data.get("toolId"));
             boolean hidden = toolRegistry.descriptor(toolName)
                     .map(descriptor -> Boolean.FALSE.equals(descriptor.clientVisible()))
                     .orElse(false);
@@ -164,7 +133,7 @@ public class SseEventNormalizer {
         if (!eventType.startsWith("tool.")) {
             return false;
         }
-        String toolId = root.path("toolId").asText(null);
+        String toolId = textValue(data.get("toolId"));
         if (!StringUtils.hasText(toolId)) {
             return false;
         }
@@ -185,35 +154,14 @@ public class SseEventNormalizer {
                 .orElse("html");
     }
 
-    private void putIfPresent(ObjectNode target, String key, JsonNode value) {
-        if (target == null || key == null || value == null || value.isMissingNode()) {
+    private void putIfPresent(Map<String, Object> target, String key, Object value) {
+        if (target == null || key == null || value == null) {
             return;
         }
-        target.set(key, value);
-    }
-
-    private String toJson(ObjectNode node) {
-        try {
-            return objectMapper.writeValueAsString(node);
-        } catch (JsonProcessingException ex) {
-            return "{}";
-        }
+        target.put(key, value);
     }
 
-    private ServerSentEvent<String> rebuildEvent(ServerSentEvent<String> original, ObjectNode data) {
-        ServerSentEvent.Builder<String> builder = ServerSentEvent.builder(toJson(data));
-        if (StringUtils.hasText(original.event())) {
-            builder.event(original.event());
-        }
-        if (StringUtils.hasText(original.id())) {
-            builder.id(original.id());
-        }
-        if (StringUtils.hasText(original.comment())) {
-            builder.comment(original.comment());
-        }
-        if (original.retry() != null) {
-            builder.retry(original.retry());
-        }
-        return builder.build();
+    private String textValue(Object value) {
+        return value instanceof String text ? text : null;
     }
 }
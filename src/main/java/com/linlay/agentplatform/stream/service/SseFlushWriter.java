@@ -1,54 +1,140 @@
 package com.linlay.agentplatform.stream.service;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.linlay.agentplatform.stream.model.StreamSseEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
 import org.springframework.http.MediaType;
-import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.http.server.reactive.ServerHttpResponse;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 import static com.linlay.agentplatform.util.StringHelpers.hasText;
 
+/**
+ * SSE 出口写入器：类型化事件在这里被编码为字节，JSON data 复用事件上缓存的序列化结果。
+ */
 public class SseFlushWriter {
 
-    public Mono<Void> write(ServerHttpResponse response, Flux<ServerSentEvent<String>> events) {
+    private static final Logger log = LoggerFactory.getLogger(SseFlushWriter.class);
+    private static final byte[] EVENT_PREFIX = "event:".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] DATA_PREFIX = "data:".getBytes(StandardCharsets.UTF_8);
+    private static final byte NEWLINE = '\n';
+
+    private final ObjectMapper objectMapper;
+
+    public SseFlushWriter(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    public Mono<Void> write(ServerHttpResponse response, Flux<StreamSseEvent> events) {
         response.getHeaders().setContentType(MediaType.TEXT_EVENT_STREAM);
         response.getHeaders().set("X-Accel-Buffering", "no");
         response.getHeaders().set("Cache-Control", "no-cache, no-transform");
         response.getHeaders().set("Connection", "keep-alive");
 
+        DataBufferFactory bufferFactory = response.bufferFactory();
         return response.writeAndFlushWith(
-                events.map(this::encode)
-                        .map(response.bufferFactory()::wrap)
+                events.map(event -> encode(bufferFactory, event))
                         .map(Mono::just)
         );
     }
 
-    private byte[] encode(ServerSentEvent<String> event) {
-        StringBuilder builder = new StringBuilder();
-        if (hasText(event.id())) {
-            builder.append("id:").append(event.id()).append('\n');
+    DataBuffer encode(DataBufferFactory bufferFactory, StreamSseEvent event) {
+        byte[] eventName = hasText(event.event()) ? event.event().getBytes(StandardCharsets.UTF_8) : null;
+        byte[] comment = event.comment() == null ? null : encodeComment(event.comment());
+        byte[] data = resolveData(event);
+        boolean multiLineData = data != null && containsLineBreak(data);
+        if (multiLineData) {
+            data = encodeMultiLineData(new String(data, StandardCharsets.UTF_8));
+        }
+
+        int capacity = 1;
+        if (eventName != null) {
+            capacity += EVENT_PREFIX.length + eventName.length + 1;
         }
-        if (hasText(event.event())) {
-            builder.append("event:").append(event.event()).append('\n');
+        if (comment != null) {
+            capacity += comment.length;
         }
-        if (event.retry() != null) {
-            builder.append("retry:").append(event.retry().toMillis()).append('\n');
+        if (data != null) {
+            capacity += multiLineData ? data.length : DATA_PREFIX.length + data.length + 1;
         }
-        if (event.comment() != null) {
-            String[] commentLines = event.comment().split("\\R", -1);
-            for (String line : commentLines) {
-                builder.append(':').append(line).append('\n');
+
+        DataBuffer buffer = bufferFactory.allocateBuffer(capacity);
+        if (eventName != null) {
+            buffer.write(EVENT_PREFIX).write(eventName).write(NEWLINE);
+        }
+        if (comment != null) {
+            buffer.write(comment);
+        }
+        if (data != null) {
+            if (multiLineData) {
+                buffer.write(data);
+            } else {
+                buffer.write(DATA_PREFIX).write(data).write(NEWLINE);
             }
         }
+        buffer.write(NEWLINE);
+        return buffer;
+    }
 
-        if (event.data() != null) {
-            String[] dataLines = event.data().split("\\R", -1);
-            for (String line : dataLines) {
-                builder.append("data:").append(line).append('\n');
+    private byte[] resolveData(StreamSseEvent event) {
+        if (!event.hasData()) {
+            return null;
+        }
+        try {
+            return event.dataBytes(objectMapper);
+        } catch (IllegalStateException ex) {
+            log.warn("Cannot serialize SSE event type={}, fallback to run.error", event.type(), ex);
+            // 顶替无法序列化的事件，沿用它的 seq，客户端看到的序号仍然连续递增
+            Map<String, Object> fallback = new LinkedHashMap<>();
+            fallback.put("seq", event.longValue("seq", 0L));
+            fallback.put("type", "run.error");
+            fallback.put("timestamp", System.currentTimeMillis());
+            putIfText(fallback, "chatId", event.text("chatId"));
+            putIfText(fallback, "runId", event.text("runId"));
+            fallback.put("error", Map.of("message", "Internal serialization failure"));
+            try {
+                return objectMapper.writeValueAsBytes(fallback);
+            } catch (Exception fallbackEx) {
+                return ("{\"seq\":" + fallback.get("seq") + ",\"type\":\"run.error\"}").getBytes(StandardCharsets.UTF_8);
             }
         }
-        builder.append('\n');
+    }
+
+    private void putIfText(Map<String, Object> target, String key, String value) {
+        if (hasText(value)) {
+            target.put(key, value);
+        }
+    }
+
+    private byte[] encodeComment(String comment) {
+        StringBuilder builder = new StringBuilder();
+        for (String line : comment.split("\\R", -1)) {
+            builder.append(':').append(line).append('\n');
+        }
+        return builder.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private byte[] encodeMultiLineData(String data) {
+        StringBuilder builder = new StringBuilder();
+        for (String line : data.split("\\R", -1)) {
+            builder.append("data:").append(line).append('\n');
+        }
         return builder.toString().getBytes(StandardCharsets.UTF_8);
     }
+
+    private boolean containsLineBreak(byte[] data) {
+        for (byte value : data) {
+            if (value == '\n' || value == '\r') {
+                return true;
+            }
+        }
+        return false;
+    }
 }
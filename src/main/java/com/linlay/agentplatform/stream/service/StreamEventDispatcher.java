@@ -200,6 +200,19 @@ final class StreamEventDispatcher {
             events.add(next("tool.end", payload));
             return true;
         }
+        if (input instanceof StreamInput.ToolProgress value) {
+            ensureRunContext();
+            // 进度是尽力而为的旁路信息：引用未知工具时直接丢弃，不能因此中断运行
+            if (!state.hasKnownTool(value.toolId())) {
+                return true;
+            }
+            closeTextBlocks(events);
+            Map<String, Object> payload = new LinkedHashMap<>();
+            payload.put("toolId", value.toolId());
+            payload.put("progress", value.progress());
+            events.add(next("tool.progress", payload));
+            return true;
+        }
         if (input instanceof StreamInput.ToolResult value) {
             ensureRunContext();
             closeTextBlocks(events);
@@ -4,57 +4,48 @@ import com.linlay.agentplatform.stream.model.StreamEvent;
 import com.linlay.agentplatform.stream.model.StreamEnvelope;
 import com.linlay.agentplatform.stream.model.StreamInput;
 import com.linlay.agentplatform.stream.model.StreamRequest;
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import org.springframework.http.codec.ServerSentEvent;
+import com.linlay.agentplatform.stream.model.StreamSseEvent;
 import reactor.core.Disposable;
 import reactor.core.publisher.Flux;
 
 import java.time.Duration;
-import java.util.Map;
 import java.util.Objects;
 import java.util.concurrent.TimeoutException;
 
 public class StreamSseStreamer {
 
-    private static final String SSE_EVENT_MESSAGE = "message";
     private static final Duration DEFAULT_STREAM_TIMEOUT = Duration.ofMinutes(5);
     private static final Duration DEFAULT_HEARTBEAT_INTERVAL = Duration.ofSeconds(15);
-    private static final ServerSentEvent<String> HEARTBEAT = ServerSentEvent.<String>builder()
-            .comment("heartbeat")
-            .build();
+    private static final StreamSseEvent HEARTBEAT = StreamSseEvent.heartbeatComment();
 
     private final StreamEventAssembler eventAssembler;
-    private final ObjectMapper objectMapper;
     private final Duration streamTimeout;
     private final Duration heartbeatInterval;
 
-    public StreamSseStreamer(StreamEventAssembler eventAssembler, ObjectMapper objectMapper) {
-        this(eventAssembler, objectMapper, DEFAULT_STREAM_TIMEOUT, DEFAULT_HEARTBEAT_INTERVAL);
+    public StreamSseStreamer(StreamEventAssembler eventAssembler) {
+        this(eventAssembler, DEFAULT_STREAM_TIMEOUT, DEFAULT_HEARTBEAT_INTERVAL);
     }
 
-    public StreamSseStreamer(StreamEventAssembler eventAssembler, ObjectMapper objectMapper,
-                          Duration streamTimeout, Duration heartbeatInterval) {
+    public StreamSseStreamer(StreamEventAssembler eventAssembler, Duration streamTimeout, Duration heartbeatInterval) {
         this.eventAssembler = Objects.requireNonNull(eventAssembler, "eventAssembler cannot be null");
-        this.objectMapper = Objects.requireNonNull(objectMapper, "objectMapper cannot be null");
         this.streamTimeout = streamTimeout != null ? streamTimeout : DEFAULT_STREAM_TIMEOUT;
         this.heartbeatInterval = heartbeatInterval != null ? heartbeatInterval : DEFAULT_HEARTBEAT_INTERVAL;
     }
 
-    public Flux<ServerSentEvent<String>> stream(StreamRequest request, Flux<StreamEnvelope> inputs) {
+    public Flux<StreamSseEvent> stream(StreamRequest request, Flux<StreamEnvelope> inputs) {
         Objects.requireNonNull(request, "request cannot be null");
         Objects.requireNonNull(inputs, "inputs cannot be null");
 
         StreamEventAssembler.EventStreamState state = eventAssembler.begin(request);
 
-        Flux<ServerSentEvent<String>> bootstrapFlux = Flux.fromIterable(state.bootstrapEvents())
+        Flux<StreamSseEvent> bootstrapFlux = Flux.fromIterable(state.bootstrapEvents())
                 .map(this::toSse);
 
-        Flux<ServerSentEvent<String>> bodyFlux = inputs
+        Flux<StreamSseEvent> bodyFlux = inputs
                 .concatMap(input -> Flux.fromIterable(state.consume(input)))
                 .map(this::toSse);
 
-        Flux<ServerSentEvent<String>> bodyWithHeartbeat = Flux.create(sink -> {
+        Flux<StreamSseEvent> bodyWithHeartbeat = Flux.create(sink -> {
             Disposable heartbeat = Flux.interval(heartbeatInterval)
                     .subscribe(tick -> sink.next(HEARTBEAT));
             bodyFlux.subscribe(
@@ -71,7 +62,7 @@ public class StreamSseStreamer {
             sink.onDispose(heartbeat::dispose);
         });
 
-        Flux<ServerSentEvent<String>> completeFlux = Flux.defer(() ->
+        Flux<StreamSseEvent> completeFlux = Flux.defer(() ->
                 Flux.fromIterable(state.complete()).map(this::toSse)
         );
 
@@ -80,38 +71,14 @@ public class StreamSseStreamer {
                 .concatWith(completeFlux)
                 .timeout(streamTimeout)
                 .onErrorResume(ex -> {
-                    try {
-                        Throwable cause = ex instanceof TimeoutException
-                                ? new RuntimeException("Stream timed out after " + streamTimeout)
-                                : ex;
-                        return Flux.fromIterable(state.fail(cause)).map(this::toSse);
-                    } catch (Exception fallbackEx) {
-                        StreamEvent fallback = new StreamEvent(
-                                0L,
-                                "run.error",
-                                System.currentTimeMillis(),
-                                Map.of("error", Map.of("message", "Internal serialization failure"))
-                        );
-                        return Flux.just(ServerSentEvent.<String>builder()
-                                .event(SSE_EVENT_MESSAGE)
-                                .data(toJson(fallback.toData()))
-                                .build());
-                    }
+                    Throwable cause = ex instanceof TimeoutException
+                            ? new RuntimeException("Stream timed out after " + streamTimeout)
+                            : ex;
+                    return Flux.fromIterable(state.fail(cause)).map(this::toSse);
                 });
     }
 
-    private ServerSentEvent<String> toSse(StreamEvent event) {
-        return ServerSentEvent.<String>builder()
-                .event(SSE_EVENT_MESSAGE)
-                .data(toJson(event.toData()))
-                .build();
-    }
-
-    private String toJson(Object value) {
-        try {
-            return objectMapper.writeValueAsString(value);
-        } catch (JsonProcessingException ex) {
-            throw new IllegalStateException("Cannot serialize stream SSE event", ex);
-        }
+    private StreamSseEvent toSse(StreamEvent event) {
+        return StreamSseEvent.of(event);
     }
 }
@@ -191,12 +191,8 @@ public class SystemBash extends AbstractDeterministicTool {
 
         ProcessStreamCollector stdoutCollector = new ProcessStreamCollector(process.getInputStream(), MAX_OUTPUT_CHARS);
         ProcessStreamCollector stderrCollector = new ProcessStreamCollector(process.getErrorStream(), MAX_OUTPUT_CHARS);
-        Thread stdoutThread = new Thread(stdoutCollector, "system-bash-stdout");
-        Thread stderrThread = new Thread(stderrCollector, "system-bash-stderr");
-        stdoutThread.setDaemon(true);
-        stderrThread.setDaemon(true);
-        stdoutThread.start();
-        stderrThread.start();
+        Thread stdoutThread = Thread.ofVirtual().name("system-bash-stdout").start(stdoutCollector);
+        Thread stderrThread = Thread.ofVirtual().name("system-bash-stderr").start(stderrCollector);
 
         boolean timedOut = false;
         int exitCode = -1;
@@ -15,8 +15,28 @@ public record ToolDescriptor(
         String sourceType,
         String sourceKey,
         String viewportKey,
-        String sourceFile
+        String sourceFile,
+        Boolean serialOnly
 ) {
+    public ToolDescriptor(
+            String name,
+            String label,
+            String description,
+            String afterCallHint,
+            Map<String, Object> parameters,
+            Boolean strict,
+            Boolean clientVisible,
+            Boolean toolAction,
+            String toolType,
+            String sourceType,
+            String sourceKey,
+            String viewportKey,
+            String sourceFile
+    ) {
+        this(name, label, description, afterCallHint, parameters, strict, clientVisible, toolAction,
+                toolType, sourceType, sourceKey, viewportKey, sourceFile, null);
+    }
+
     public ToolDescriptor {
         if (parameters == null || parameters.isEmpty()) {
             parameters = Map.of(
@@ -33,6 +53,7 @@ public record ToolDescriptor(
         afterCallHint = afterCallHint == null || afterCallHint.isBlank() ? null : afterCallHint.trim();
         clientVisible = clientVisible == null ? Boolean.TRUE : clientVisible;
         toolAction = toolAction == null ? Boolean.FALSE : toolAction;
+        serialOnly = serialOnly == null ? Boolean.FALSE : serialOnly;
         toolType = toolType == null || toolType.isBlank() ? null : toolType.trim();
         viewportKey = viewportKey == null || viewportKey.isBlank() ? null : viewportKey.trim();
         sourceType = sourceType == null || sourceType.isBlank() ? "local" : sourceType.trim().toLowerCase();
@@ -47,6 +68,13 @@ public record ToolDescriptor(
         return Boolean.TRUE.equals(toolAction);
     }
 
+    /**
+     * 有顺序依赖或共享外部状态的工具声明 serialOnly，同一轮的并行调用会在它前后切开、单独执行。
+     */
+    public boolean isSerialOnly() {
+        return Boolean.TRUE.equals(serialOnly);
+    }
+
     public boolean hasViewport() {
         return !isAction() && hasText(toolType) && hasText(viewportKey);
     }
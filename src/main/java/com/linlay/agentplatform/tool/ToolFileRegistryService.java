@@ -200,6 +200,7 @@ public class ToolFileRegistryService {
         Boolean strict = root.has("strict") ? root.path("strict").asBoolean(false) : null;
         Boolean clientVisible = root.has("clientVisible") ? root.path("clientVisible").asBoolean(true) : null;
         Boolean toolAction = root.has("toolAction") ? root.path("toolAction").asBoolean(false) : null;
+        Boolean serialOnly = root.has("serialOnly") ? root.path("serialOnly").asBoolean(false) : null;
         String toolType = root.has("toolType") && root.get("toolType").isTextual()
                 ? root.get("toolType").asText()
                 : null;
@@ -234,7 +235,8 @@ public class ToolFileRegistryService {
                 source.startsWith("classpath:") ? "local" : "agent-local",
                 null,
                 viewportKey,
-                source
+                source,
+                serialOnly
         );
 
         ToolDescriptor old = loaded.putIfAbsent(normalizedName, descriptor);
@@ -292,7 +292,8 @@ public class ToolRegistry {
                 descriptor.sourceType(),
                 descriptor.sourceKey(),
                 descriptor.viewportKey(),
-                descriptor.sourceFile()
+                descriptor.sourceFile(),
+                descriptor.serialOnly()
         );
     }
 }
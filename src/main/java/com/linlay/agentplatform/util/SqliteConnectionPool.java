@@ -0,0 +1,197 @@
+package com.linlay.agentplatform.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * SQLite 的小型连接池，聊天索引与 memory.db 中的 embedding 缓存共用。
+ * <p>
+ * 数据库以 WAL 模式运行：一个独占的写连接串行执行写事务，若干读连接并发读取，
+ * 读写互不阻塞。每个连接缓存自己的 PreparedStatement，连接出错后关闭并在下次借出时重新打开。
+ */
+public final class SqliteConnectionPool implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(SqliteConnectionPool.class);
+
+    private final Path dbPath;
+    private final long mmapSizeBytes;
+    private final int busyTimeoutMs;
+    private final PooledConnection writer;
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private final BlockingQueue<PooledConnection> readers;
+    private final List<PooledConnection> allReaders;
+
+    public SqliteConnectionPool(Path dbPath, int readerCount, long mmapSizeBytes, int busyTimeoutMs) {
+        this.dbPath = dbPath;
+        this.mmapSizeBytes = Math.max(0L, mmapSizeBytes);
+        this.busyTimeoutMs = Math.max(0, busyTimeoutMs);
+        this.writer = new PooledConnection();
+        int size = Math.max(1, readerCount);
+        this.readers = new ArrayBlockingQueue<>(size);
+        this.allReaders = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            PooledConnection reader = new PooledConnection();
+            readers.add(reader);
+            allReaders.add(reader);
+        }
+    }
+
+    public <T> T read(SqlWork<T> work) throws SQLException {
+        PooledConnection connection;
+        try {
+            connection = readers.take();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for sqlite reader connection", ex);
+        }
+        try {
+            connection.ensureOpen();
+            return work.apply(connection);
+        } catch (SQLException ex) {
+            connection.invalidate();
+            throw ex;
+        } finally {
+            readers.add(connection);
+        }
+    }
+
+    /**
+     * 在写连接上执行一个事务：正常返回时提交，抛出任何异常时回滚并原样抛出。
+     */
+    public <T> T write(SqlWork<T> work) throws SQLException {
+        writeLock.lock();
+        try {
+            writer.ensureOpen();
+            Connection connection = writer.connection;
+            connection.setAutoCommit(false);
+            try {
+                T result = work.apply(writer);
+                connection.commit();
+                return result;
+            } catch (SQLException | RuntimeException ex) {
+                rollbackQuietly(connection);
+                if (ex instanceof SQLException) {
+                    writer.invalidate();
+                }
+                throw ex;
+            } finally {
+                if (!connection.isClosed()) {
+                    connection.setAutoCommit(true);
+                }
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * 关闭全部空闲连接；之后的借用会重新打开。用于 schema 重建等需要独占数据库文件的场景。
+     */
+    public void reset() {
+        writeLock.lock();
+        List<PooledConnection> drained = new ArrayList<>(allReaders.size());
+        try {
+            writer.invalidate();
+            while (drained.size() < allReaders.size()) {
+                drained.add(readers.take());
+            }
+            for (PooledConnection reader : drained) {
+                reader.invalidate();
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } finally {
+            readers.addAll(drained);
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public void close() {
+        reset();
+    }
+
+    private void rollbackQuietly(Connection connection) {
+        try {
+            if (!connection.isClosed()) {
+                connection.rollback();
+            }
+        } catch (SQLException ex) {
+            log.debug("Cannot rollback sqlite transaction dbPath={}", dbPath, ex);
+        }
+    }
+
+    @FunctionalInterface
+    public interface SqlWork<T> {
+        T apply(PooledConnection connection) throws SQLException;
+    }
+
+    public final class PooledConnection {
+        private Connection connection;
+        private final Map<String, PreparedStatement> statements = new HashMap<>();
+
+        /**
+         * 返回缓存的 PreparedStatement，调用方不得关闭它；参数在复用前已清空。
+         */
+        public PreparedStatement prepare(String sql) throws SQLException {
+            PreparedStatement statement = statements.get(sql);
+            if (statement == null || statement.isClosed()) {
+                statement = connection.prepareStatement(sql);
+                statements.put(sql, statement);
+            } else {
+                statement.clearParameters();
+            }
+            return statement;
+        }
+
+        public Connection connection() {
+            return connection;
+        }
+
+        private void ensureOpen() throws SQLException {
+            if (connection != null && !connection.isClosed()) {
+                return;
+            }
+            statements.clear();
+            connection = DriverManager.getConnection("jdbc:sqlite:" + dbPath);
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("PRAGMA journal_mode=WAL");
+                statement.execute("PRAGMA synchronous=NORMAL");
+                statement.execute("PRAGMA busy_timeout=" + busyTimeoutMs);
+                statement.execute("PRAGMA mmap_size=" + mmapSizeBytes);
+            }
+        }
+
+        private void invalidate() {
+            for (PreparedStatement statement : statements.values()) {
+                try {
+                    statement.close();
+                } catch (SQLException ignored) {
+                }
+            }
+            statements.clear();
+            if (connection != null) {
+                try {
+                    connection.close();
+                } catch (SQLException ex) {
+                    log.debug("Cannot close sqlite connection dbPath={}", dbPath, ex);
+                }
+                connection = null;
+            }
+        }
+    }
+}
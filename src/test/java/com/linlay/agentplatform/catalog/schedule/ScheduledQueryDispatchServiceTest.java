@@ -7,12 +7,12 @@ import com.linlay.agentplatform.model.AgentRequest;
 import com.linlay.agentplatform.model.api.QueryRequest;
 import com.linlay.agentplatform.engine.query.AgentQueryService;
 import com.linlay.agentplatform.stream.model.StreamRequest;
+import com.linlay.agentplatform.stream.model.StreamSseEvent;
 import com.linlay.agentplatform.catalog.team.TeamDescriptor;
 import com.linlay.agentplatform.catalog.team.TeamRegistryService;
 import org.junit.jupiter.api.Test;
 import org.mockito.ArgumentCaptor;
 import org.slf4j.LoggerFactory;
-import org.springframework.http.codec.ServerSentEvent;
 import reactor.core.publisher.Flux;
 
 import java.util.List;
@@ -35,8 +35,7 @@ class ScheduledQueryDispatchServiceTest {
         AgentQueryService agentQueryService = mock(AgentQueryService.class);
         TeamRegistryService teamRegistryService = mock(TeamRegistryService.class);
         SchedulePushNotifier pushNotifier = mock(SchedulePushNotifier.class);
-        com.fasterxml.jackson.databind.ObjectMapper objectMapper = new com.fasterxml.jackson.databind.ObjectMapper();
-        ScheduledQueryDispatchService service = new ScheduledQueryDispatchService(agentQueryService, teamRegistryService, pushNotifier, objectMapper);
+        ScheduledQueryDispatchService service = new ScheduledQueryDispatchService(agentQueryService, teamRegistryService, pushNotifier);
         ListAppender<ILoggingEvent> appender = attachAppender();
 
         try {
@@ -141,8 +140,7 @@ class ScheduledQueryDispatchServiceTest {
         AgentQueryService agentQueryService = mock(AgentQueryService.class);
         TeamRegistryService teamRegistryService = mock(TeamRegistryService.class);
         SchedulePushNotifier pushNotifier = mock(SchedulePushNotifier.class);
-        com.fasterxml.jackson.databind.ObjectMapper objectMapper = new com.fasterxml.jackson.databind.ObjectMapper();
-        ScheduledQueryDispatchService service = new ScheduledQueryDispatchService(agentQueryService, teamRegistryService, pushNotifier, objectMapper);
+        ScheduledQueryDispatchService service = new ScheduledQueryDispatchService(agentQueryService, teamRegistryService, pushNotifier);
 
         AgentQueryService.QuerySession session = new AgentQueryService.QuerySession(
                 null,
@@ -199,8 +197,7 @@ class ScheduledQueryDispatchServiceTest {
         AgentQueryService agentQueryService = mock(AgentQueryService.class);
         TeamRegistryService teamRegistryService = mock(TeamRegistryService.class);
         SchedulePushNotifier pushNotifier = mock(SchedulePushNotifier.class);
-        com.fasterxml.jackson.databind.ObjectMapper objectMapper = new com.fasterxml.jackson.databind.ObjectMapper();
-        ScheduledQueryDispatchService service = new ScheduledQueryDispatchService(agentQueryService, teamRegistryService, pushNotifier, objectMapper);
+        ScheduledQueryDispatchService service = new ScheduledQueryDispatchService(agentQueryService, teamRegistryService, pushNotifier);
         ListAppender<ILoggingEvent> appender = attachAppender();
 
         try {
@@ -237,8 +234,7 @@ class ScheduledQueryDispatchServiceTest {
         AgentQueryService agentQueryService = mock(AgentQueryService.class);
         TeamRegistryService teamRegistryService = mock(TeamRegistryService.class);
         SchedulePushNotifier pushNotifier = mock(SchedulePushNotifier.class);
-        com.fasterxml.jackson.databind.ObjectMapper objectMapper = new com.fasterxml.jackson.databind.ObjectMapper();
-        ScheduledQueryDispatchService service = new ScheduledQueryDispatchService(agentQueryService, teamRegistryService, pushNotifier, objectMapper);
+        ScheduledQueryDispatchService service = new ScheduledQueryDispatchService(agentQueryService, teamRegistryService, pushNotifier);
 
         String chatId = "123e4567-e89b-12d3-a456-426614174000";
         AgentQueryService.QuerySession session = new AgentQueryService.QuerySession(
@@ -251,10 +247,10 @@ class ScheduledQueryDispatchServiceTest {
         );
         when(agentQueryService.prepare(any(QueryRequest.class))).thenReturn(session);
 
-        Flux<ServerSentEvent<String>> sseStream = Flux.just(
-                ServerSentEvent.<String>builder().data("{\"type\":\"content.delta\",\"delta\":\"Hello \"}").build(),
-                ServerSentEvent.<String>builder().data("{\"type\":\"content.delta\",\"delta\":\"World\"}").build(),
-                ServerSentEvent.<String>builder().data("{\"type\":\"content.end\"}").build()
+        Flux<StreamSseEvent> sseStream = Flux.just(
+                StreamSseEvent.message(Map.of("type", "content.delta", "delta", "Hello ")),
+                StreamSseEvent.message(Map.of("type", "content.delta", "delta", "World")),
+                StreamSseEvent.message(Map.of("type", "content.end"))
         );
         when(agentQueryService.stream(any(AgentQueryService.QuerySession.class))).thenReturn(sseStream);
 
@@ -278,8 +274,7 @@ class ScheduledQueryDispatchServiceTest {
         AgentQueryService agentQueryService = mock(AgentQueryService.class);
         TeamRegistryService teamRegistryService = mock(TeamRegistryService.class);
         SchedulePushNotifier pushNotifier = mock(SchedulePushNotifier.class);
-        com.fasterxml.jackson.databind.ObjectMapper objectMapper = new com.fasterxml.jackson.databind.ObjectMapper();
-        ScheduledQueryDispatchService service = new ScheduledQueryDispatchService(agentQueryService, teamRegistryService, pushNotifier, objectMapper);
+        ScheduledQueryDispatchService service = new ScheduledQueryDispatchService(agentQueryService, teamRegistryService, pushNotifier);
 
         AgentQueryService.QuerySession session = new AgentQueryService.QuerySession(
                 null,
@@ -291,7 +286,7 @@ class ScheduledQueryDispatchServiceTest {
         );
         when(agentQueryService.prepare(any(QueryRequest.class))).thenReturn(session);
         when(agentQueryService.stream(any(AgentQueryService.QuerySession.class))).thenReturn(Flux.just(
-                ServerSentEvent.<String>builder().data("{\"type\":\"content.delta\",\"delta\":\"text\"}").build()
+                StreamSseEvent.message(Map.of("type", "content.delta", "delta", "text"))
         ));
 
         ScheduledQueryDescriptor descriptor = new ScheduledQueryDescriptor(
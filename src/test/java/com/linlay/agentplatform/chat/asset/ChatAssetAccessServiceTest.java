@@ -1,19 +1,26 @@
 package com.linlay.agentplatform.chat.asset;
 
 import com.linlay.agentplatform.chat.history.ChatRecordStore;
+import com.linlay.agentplatform.chat.storage.ChatHistoryWriter;
 import com.linlay.agentplatform.config.properties.ChatStorageProperties;
 import com.linlay.agentplatform.model.api.ChatDetailResponse;
 import com.linlay.agentplatform.model.api.QueryRequest;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
 
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 class ChatAssetAccessServiceTest {
@@ -77,6 +84,89 @@ class ChatAssetAccessServiceTest {
         assertThat(service.canRead(chatId, chatId + "/image.png")).isTrue();
     }
 
+    @Test
+    void shouldServeRepeatedChecksFromIndexAndReplayHistoryOnlyWhenItChanges() {
+        String chatId = "123e4567-e89b-12d3-a456-426614174023";
+        String otherChatId = "123e4567-e89b-12d3-a456-426614174024";
+        ChatRecordStore chatRecordStore = mock(ChatRecordStore.class);
+        when(chatRecordStore.loadChat(chatId, false))
+                .thenReturn(chatWithSnapshotText(chatId, "![a](/api/resource?file=" + otherChatId + "%2Fa.png)"))
+                .thenReturn(chatWithSnapshotText(chatId, "![b](/api/resource?file=" + otherChatId + "%2Fb.png)"));
+        ChatHistoryWriter chatHistoryWriter = mock(ChatHistoryWriter.class);
+        when(chatHistoryWriter.version(chatId)).thenReturn(new ChatHistoryWriter.HistorySpan(0L, 10L, 1L));
+
+        ChatStorageProperties properties = new ChatStorageProperties();
+        properties.setDir(tempDir.toString());
+        ChatAssetAccessService service = new ChatAssetAccessService(
+                chatRecordStore, newCatalogService(), chatHistoryWriter, new ChatAssetAclIndex(properties));
+
+        for (int i = 0; i < 50; i++) {
+            assertThat(service.canRead(chatId, otherChatId + "/a.png")).isTrue();
+            assertThat(service.canRead(chatId, otherChatId + "/b.png")).isFalse();
+        }
+        verify(chatRecordStore, times(1)).loadChat(chatId, false);
+
+        when(chatHistoryWriter.version(chatId)).thenReturn(new ChatHistoryWriter.HistorySpan(0L, 20L, 2L));
+        assertThat(service.canRead(chatId, otherChatId + "/b.png")).isTrue();
+        assertThat(service.canRead(chatId, otherChatId + "/a.png")).isTrue();
+        verify(chatRecordStore, times(2)).loadChat(chatId, false);
+    }
+
+    @Test
+    void trimmedOrDeletedHistoryShouldNoLongerAllowItsDroppedReferences() {
+        String chatId = "123e4567-e89b-12d3-a456-426614174026";
+        String otherChatId = "123e4567-e89b-12d3-a456-426614174027";
+        ChatRecordStore chatRecordStore = mock(ChatRecordStore.class);
+        when(chatRecordStore.loadChat(chatId, false))
+                .thenReturn(chatWithSnapshotText(chatId, "![a](/api/resource?file=" + otherChatId + "%2Fa.png)"))
+                .thenReturn(chatWithSnapshotText(chatId, "![b](/api/resource?file=" + otherChatId + "%2Fb.png)"))
+                .thenThrow(new IllegalStateException("chat history deleted"));
+        ChatHistoryWriter chatHistoryWriter = mock(ChatHistoryWriter.class);
+        when(chatHistoryWriter.version(chatId)).thenReturn(new ChatHistoryWriter.HistorySpan(0L, 10L, 1L));
+        ChatAssetAccessService service = new ChatAssetAccessService(
+                chatRecordStore, newCatalogService(), chatHistoryWriter, new ChatAssetAclIndex(new ChatStorageProperties()));
+        ArgumentCaptor<Consumer<String>> truncationListener = ArgumentCaptor.captor();
+        verify(chatHistoryWriter).onTruncate(truncationListener.capture());
+
+        assertThat(service.canRead(chatId, otherChatId + "/a.png")).isTrue();
+
+        // 裁剪后立刻又追加了新 run：版本仍在增长，但被裁掉的 a.png 不能再放行
+        truncationListener.getValue().accept(chatId);
+        when(chatHistoryWriter.version(chatId)).thenReturn(new ChatHistoryWriter.HistorySpan(0L, 30L, 2L));
+        assertThat(service.canRead(chatId, otherChatId + "/a.png")).isFalse();
+        assertThat(service.canRead(chatId, otherChatId + "/b.png")).isTrue();
+        verify(chatRecordStore, times(2)).loadChat(chatId, false);
+
+        when(chatHistoryWriter.version(chatId)).thenReturn(null);
+        assertThat(service.canRead(chatId, otherChatId + "/b.png")).isFalse();
+    }
+
+    @Test
+    void grantedAssetShouldBeReadableWithoutReplayingHistory() {
+        String chatId = "123e4567-e89b-12d3-a456-426614174025";
+        ChatRecordStore chatRecordStore = mock(ChatRecordStore.class);
+        ChatAssetAclIndex aclIndex = new ChatAssetAclIndex(new ChatStorageProperties());
+        ChatAssetAccessService service = new ChatAssetAccessService(chatRecordStore, newCatalogService(), null, aclIndex);
+
+        aclIndex.grant(chatId, "/api/resource?file=" + chatId + "%2Fuploads%2Fphoto.png");
+
+        assertThat(service.canRead(chatId, chatId + "/uploads/photo.png")).isTrue();
+        verify(chatRecordStore, never()).loadChat(chatId, false);
+    }
+
+    private ChatDetailResponse chatWithSnapshotText(String chatId, String text) {
+        return new ChatDetailResponse(
+                chatId,
+                "chat",
+                null,
+                null,
+                List.of(Map.of("type", "content.snapshot", "text", text)),
+                null,
+                null,
+                null
+        );
+    }
+
     private ChatAssetCatalogService newCatalogService() {
         ChatStorageProperties chatStorageProperties = new ChatStorageProperties();
         chatStorageProperties.setDir(tempDir.toString());
@@ -0,0 +1,42 @@
+package com.linlay.agentplatform.chat.asset;
+
+import com.linlay.agentplatform.chat.upload.ChatUploadManifestStore;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ChatAssetValidatorsTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void shouldUseManifestDigestForUploadsAndSizeWithMtimeOtherwise() throws Exception {
+        String chatId = "123e4567-e89b-12d3-a456-426614174020";
+        Path chatDir = tempDir.resolve(chatId);
+        Files.createDirectories(chatDir);
+        Path uploaded = Files.writeString(chatDir.resolve("notes.txt"), "hello");
+        Path generated = Files.writeString(chatDir.resolve("result.md"), "# result");
+        long now = System.currentTimeMillis();
+        Files.setLastModifiedTime(uploaded, FileTime.fromMillis(now - 1_000L));
+        String sha256 = "2cf24dba5fb0a30e26e83b2ac5b9e29e1b161e5c1fa7425e73043362938b9824";
+        ChatUploadManifestStore.write(chatDir, new ChatUploadManifestStore.StoredUpload(
+                "req-1", chatId, "r01", "file", "notes.txt", 5L, "text/plain", sha256,
+                "notes.txt", ChatUploadManifestStore.STATUS_COMPLETED, now, now
+        ));
+        ChatAssetValidators validators = new ChatAssetValidators();
+
+        assertThat(validators.resolve(tempDir, uploaded).eTag()).isEqualTo("\"sha256-" + sha256 + "\"");
+        ChatAssetValidators.Validators first = validators.resolve(tempDir, generated);
+        assertThat(first.eTag()).isEqualTo("\"" + Long.toHexString(8L) + "-" + Long.toHexString(first.lastModifiedMs()) + "\"");
+
+        Files.writeString(uploaded, "HELLO");
+        Files.setLastModifiedTime(uploaded, FileTime.fromMillis(now + 60_000L));
+        assertThat(validators.resolve(tempDir, uploaded).eTag()).doesNotContain("sha256-");
+    }
+}
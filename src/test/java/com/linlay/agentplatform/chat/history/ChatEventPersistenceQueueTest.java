@@ -0,0 +1,150 @@
+package com.linlay.agentplatform.chat.history;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.linlay.agentplatform.chat.storage.ChatHistoryWriter;
+import com.linlay.agentplatform.chat.storage.ChatStorageStore;
+import com.linlay.agentplatform.chat.storage.ChatStorageTypes;
+import com.linlay.agentplatform.config.properties.ChatStorageProperties;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ChatEventPersistenceQueueTest {
+
+    private static final String CHAT_ID = "123e4567-e89b-12d3-a456-426614174201";
+
+    @TempDir
+    Path tempDir;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private ChatEventPersistenceQueue queue;
+    private ChatStorageProperties properties;
+    private ChatHistoryWriter historyWriter;
+    private ChatRecordStore recordStore;
+
+    @AfterEach
+    void tearDown() {
+        if (queue != null) {
+            queue.destroy();
+        }
+    }
+
+    @Test
+    void shouldSkipDeltaEventsAndPersistLifecycleEventsOnFlush() throws Exception {
+        queue = newQueue(60_000L, 64, 1024);
+
+        queue.submit(CHAT_ID, event("content.delta", 1), false);
+        queue.submit(CHAT_ID, event("reasoning.delta", 2), false);
+        queue.submit(CHAT_ID, event("request.steer", 3), false);
+        queue.submit(CHAT_ID, event("run.complete", 4), false);
+
+        assertThat(historyLines()).isEmpty();
+        assertThat(queue.stats().pendingEvents()).isEqualTo(2);
+
+        queue.flush(CHAT_ID).get(5, TimeUnit.SECONDS);
+
+        List<String> lines = historyLines();
+        assertThat(lines).hasSize(2);
+        assertThat(objectMapper.readTree(lines.get(0)).path("event").path("type").asText()).isEqualTo("request.steer");
+        assertThat(objectMapper.readTree(lines.get(1)).path("event").path("type").asText()).isEqualTo("run.complete");
+        ChatEventPersistenceQueue.Stats stats = queue.stats();
+        assertThat(stats.skippedEvents()).isEqualTo(2);
+        assertThat(stats.persistedEvents()).isEqualTo(2);
+        assertThat(stats.flushedBatches()).isEqualTo(1);
+        assertThat(stats.pendingEvents()).isZero();
+    }
+
+    @Test
+    void shouldFlushInlineWhenPerChatQueueIsFull() throws Exception {
+        queue = newQueue(60_000L, 2, 2);
+
+        for (int i = 0; i < 5; i++) {
+            queue.submit(CHAT_ID, event("request.steer", i), false);
+        }
+        queue.flush(CHAT_ID).get(5, TimeUnit.SECONDS);
+
+        List<String> lines = historyLines();
+        assertThat(lines).hasSize(5);
+        for (int i = 0; i < lines.size(); i++) {
+            assertThat(objectMapper.readTree(lines.get(i)).path("event").path("seq").asInt()).isEqualTo(i);
+        }
+        assertThat(queue.stats().maxPendingObserved()).isLessThanOrEqualTo(2);
+    }
+
+    @Test
+    void shouldWriteThroughWhenFlushIntervalIsDisabled() throws Exception {
+        queue = newQueue(0L, 64, 1024);
+
+        queue.submit(CHAT_ID, event("run.error", 1), false);
+
+        assertThat(historyLines()).hasSize(1);
+    }
+
+    @Test
+    void shouldWriteStepLinesAfterEventsAlreadyQueuedForTheSameChat() throws Exception {
+        queue = newQueue(60_000L, 64, 1024);
+        ChatStorageStore storageStore = new ChatStorageStore(objectMapper, properties, historyWriter);
+
+        queue.submit(CHAT_ID, event("request.steer", 1), false);
+        storageStore.appendStepLine(CHAT_ID, "run_pq", "oneshot", 1, null, null, null, null,
+                List.of(ChatStorageTypes.RunMessage.user("hello", 1707000900005L)));
+        queue.submit(CHAT_ID, event("run.complete", 2), false);
+        queue.flush(CHAT_ID).get(5, TimeUnit.SECONDS);
+
+        List<String> lines = historyLines();
+        assertThat(lines).hasSize(3);
+        assertThat(objectMapper.readTree(lines.get(0)).path("event").path("type").asText()).isEqualTo("request.steer");
+        assertThat(objectMapper.readTree(lines.get(1)).path("_type").asText()).isEqualTo("step");
+        assertThat(objectMapper.readTree(lines.get(2)).path("event").path("type").asText()).isEqualTo("run.complete");
+    }
+
+    @Test
+    void loadChatShouldSeeEventsStillQueuedMidRun() {
+        queue = newQueue(60_000L, 64, 1024);
+        recordStore.ensureChat(CHAT_ID, "demo", "Demo", "hello");
+
+        queue.submit(CHAT_ID, event("request.steer", 1), false);
+
+        assertThat(recordStore.loadChat(CHAT_ID, false).events())
+                .extracting(event -> event.get("type"))
+                .contains("request.steer");
+        assertThat(queue.stats().pendingEvents()).isZero();
+    }
+
+    private ChatEventPersistenceQueue newQueue(long flushIntervalMs, int batchSize, int maxPendingPerChat) {
+        properties = new ChatStorageProperties();
+        properties.setDir(tempDir.resolve("chats").toString());
+        properties.getIndex().setSqliteFile(tempDir.resolve("chats").resolve("chats.db").toString());
+        properties.getPersistence().setFlushIntervalMs(flushIntervalMs);
+        properties.getPersistence().setBatchSize(batchSize);
+        properties.getPersistence().setMaxPendingPerChat(maxPendingPerChat);
+        historyWriter = new ChatHistoryWriter(objectMapper, properties);
+        recordStore = new ChatRecordStore(objectMapper, properties, historyWriter);
+        recordStore.initializeDatabase();
+        return new ChatEventPersistenceQueue(recordStore, properties);
+    }
+
+    private Map<String, Object> event(String type, int seq) {
+        return Map.of(
+                "seq", seq,
+                "type", type,
+                "timestamp", 1707000900000L + seq,
+                "chatId", CHAT_ID,
+                "runId", "run_pq",
+                "message", "m" + seq
+        );
+    }
+
+    private List<String> historyLines() throws Exception {
+        Path path = tempDir.resolve("chats").resolve(CHAT_ID + ".jsonl");
+        return Files.exists(path) ? Files.readAllLines(path) : List.of();
+    }
+}
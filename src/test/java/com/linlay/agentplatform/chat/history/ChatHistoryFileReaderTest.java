@@ -0,0 +1,67 @@
+package com.linlay.agentplatform.chat.history;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ChatHistoryFileReaderTest {
+
+    @TempDir
+    Path tempDir;
+
+    private final ChatHistoryFileReader reader = new ChatHistoryFileReader(new ObjectMapper(), () -> StandardCharsets.UTF_8);
+
+    @Test
+    void shouldOnlyConsumeCompleteLinesAndReuseCursorWhenUnchanged() throws Exception {
+        Path history = tempDir.resolve("chat.jsonl");
+        append(history, step("run_001", "u1") + "\n");
+
+        ChatHistoryFileReader.Cursor cursor = reader.read(history, null);
+        long version = cursor.version();
+        assertThat(cursor.result().runs()).extracting(ChatHistoryRunSnapshot::runId).containsExactly("run_001");
+        assertThat(reader.read(history, cursor)).isSameAs(cursor);
+        assertThat(cursor.version()).isEqualTo(version);
+
+        String next = step("run_002", "u2");
+        append(history, next.substring(0, 20));
+        assertThat(reader.read(history, cursor)).isSameAs(cursor);
+        assertThat(cursor.result().runs()).hasSize(1);
+
+        append(history, next.substring(20) + "\n");
+        assertThat(reader.read(history, cursor)).isSameAs(cursor);
+        assertThat(cursor.version()).isGreaterThan(version);
+        assertThat(cursor.result().runs()).extracting(ChatHistoryRunSnapshot::runId).containsExactly("run_001", "run_002");
+        assertThat(cursor.result().runs()).extracting(ChatHistoryRunSnapshot::runId)
+                .containsExactlyElementsOf(reader.read(history).runs().stream().map(ChatHistoryRunSnapshot::runId).toList());
+    }
+
+    @Test
+    void shouldReplayFromStartWhenConsumedPrefixChanges() throws Exception {
+        Path history = tempDir.resolve("chat.jsonl");
+        append(history, step("run_aaa", "u1") + "\n");
+        ChatHistoryFileReader.Cursor cursor = reader.read(history, null);
+
+        Files.writeString(history, step("run_bbb", "u1") + "\n" + step("run_ccc", "u2") + "\n", StandardCharsets.UTF_8);
+
+        ChatHistoryFileReader.Cursor replayed = reader.read(history, cursor);
+        assertThat(replayed).isNotSameAs(cursor);
+        assertThat(replayed.result().runs()).extracting(ChatHistoryRunSnapshot::runId).containsExactly("run_bbb", "run_ccc");
+    }
+
+    private String step(String runId, String text) {
+        return "{\"_type\":\"step\",\"chatId\":\"c1\",\"runId\":\"" + runId + "\",\"_stage\":\"oneshot\",\"_seq\":1,"
+                + "\"updatedAt\":1707000000000,\"messages\":[{\"role\":\"user\",\"content\":[{\"type\":\"text\",\"text\":\""
+                + text + "\"}],\"ts\":1707000000000}]}";
+    }
+
+    private void append(Path path, String text) throws Exception {
+        Files.writeString(path, text, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+}
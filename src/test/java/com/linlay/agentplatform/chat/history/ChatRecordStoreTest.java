@@ -4,6 +4,7 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.linlay.agentplatform.chat.asset.ChatAssetCatalogService;
 import com.linlay.agentplatform.chat.asset.ChatDataPathService;
 import com.linlay.agentplatform.chat.index.ChatNotFoundException;
+import com.linlay.agentplatform.chat.storage.ChatHistoryWriter;
 import com.linlay.agentplatform.config.properties.ChatStorageProperties;
 import com.linlay.agentplatform.model.api.ChatDetailResponse;
 import com.linlay.agentplatform.model.api.ChatSummaryResponse;
@@ -515,7 +516,7 @@ class ChatRecordStoreTest {
         properties.setDir(chatDir.toString());
         properties.getIndex().setSqliteFile("chats.db");
 
-        ChatRecordStore store = new ChatRecordStore(objectMapper, properties);
+        ChatRecordStore store = new ChatRecordStore(objectMapper, properties, new ChatHistoryWriter(objectMapper, properties));
         store.initializeDatabase();
 
         assertThat(chatDir.resolve("chats.db")).exists();
@@ -546,7 +547,7 @@ class ChatRecordStoreTest {
         ChatStorageProperties properties = new ChatStorageProperties();
         properties.setDir(chatDir.toString());
         properties.getIndex().setSqliteFile(dbPath.toString());
-        ChatRecordStore store = new ChatRecordStore(objectMapper, properties);
+        ChatRecordStore store = new ChatRecordStore(objectMapper, properties, new ChatHistoryWriter(objectMapper, properties));
         store.initializeDatabase();
 
         assertThat(dbPath).exists();
@@ -585,7 +586,7 @@ class ChatRecordStoreTest {
         properties.getIndex().setSqliteFile(dbPath.toString());
         properties.getIndex().setAutoRebuildOnIncompatibleSchema(false);
 
-        ChatRecordStore store = new ChatRecordStore(objectMapper, properties);
+        ChatRecordStore store = new ChatRecordStore(objectMapper, properties, new ChatHistoryWriter(objectMapper, properties));
         assertThatThrownBy(store::initializeDatabase)
                 .isInstanceOf(IllegalStateException.class)
                 .hasMessageContaining("Incompatible CHATS schema")
@@ -1005,6 +1006,71 @@ class ChatRecordStoreTest {
                 .doesNotContain("run.complete");
     }
 
+    @Test
+    void appendEventShouldWritePreSerializedEventBytesVerbatim() throws Exception {
+        String chatId = "123e4567-e89b-12d3-a456-426614174031";
+        Path chatDir = tempDir.resolve("chats");
+        writeIndex(chatDir, chatId, "序列化复用", 1707000700000L, 1707000700000L);
+
+        ChatRecordStore store = newStore();
+        Map<String, Object> data = Map.of(
+                "seq", 5,
+                "type", "run.complete",
+                "timestamp", 1707000700002L,
+                "runId", "run_009"
+        );
+        byte[] json = "{\"seq\":5,\"type\":\"run.complete\",\"timestamp\":1707000700002,\"runId\":\"run_009\",\"cached\":true}"
+                .getBytes(java.nio.charset.StandardCharsets.UTF_8);
+        store.appendEvent(chatId, data, json, false);
+
+        List<String> lines = Files.readAllLines(chatDir.resolve(chatId + ".jsonl"));
+        assertThat(lines).hasSize(1);
+        assertThat(lines.get(0)).contains(new String(json, java.nio.charset.StandardCharsets.UTF_8));
+        assertThat(objectMapper.readTree(lines.get(0)).path("runId").asText()).isEqualTo("run_009");
+    }
+
+    @Test
+    void appendEventShouldKeepEveryLineIntactUnderConcurrentWritersAcrossChats() throws Exception {
+        String chatA = "123e4567-e89b-12d3-a456-426614174031";
+        String chatB = "123e4567-e89b-12d3-a456-426614174032";
+        ChatRecordStore store = newStore();
+        store.ensureChat(chatA, "demo", "Demo Agent", "a");
+        store.ensureChat(chatB, "demo", "Demo Agent", "b");
+
+        int eventsPerWriter = 50;
+        List<Thread> writers = new java.util.ArrayList<>();
+        for (String chatId : List.of(chatA, chatB)) {
+            for (int writer = 0; writer < 4; writer++) {
+                int writerIndex = writer;
+                writers.add(Thread.ofPlatform().start(() -> {
+                    for (int i = 0; i < eventsPerWriter; i++) {
+                        store.appendEvent(chatId, Map.of(
+                                "seq", writerIndex * eventsPerWriter + i,
+                                "type", "request.steer",
+                                "timestamp", 1707000800000L + i,
+                                "chatId", chatId,
+                                "runId", "run_cc",
+                                "steerId", "steer_" + writerIndex + "_" + i,
+                                "message", "并发写入",
+                                "role", "user"
+                        ), false);
+                    }
+                }));
+            }
+        }
+        for (Thread writer : writers) {
+            writer.join();
+        }
+
+        for (String chatId : List.of(chatA, chatB)) {
+            List<String> lines = Files.readAllLines(tempDir.resolve("chats").resolve(chatId + ".jsonl"));
+            assertThat(lines).hasSize(4 * eventsPerWriter);
+            for (String line : lines) {
+                assertThat(objectMapper.readTree(line).path("event").path("steerId").asText()).startsWith("steer_");
+            }
+        }
+    }
+
     @Test
     void loadChatShouldAcceptNonUuidChatId() {
         ChatRecordStore store = newStore();
@@ -1036,6 +1102,122 @@ class ChatRecordStoreTest {
         assertThat(store.findBoundAgentKey(chatId)).contains("demo");
     }
 
+    @Test
+    void loadChatShouldApplyAppendedRunsAndRebuildAfterRewrite() throws Exception {
+        String chatId = "123e4567-e89b-12d3-a456-426614174070";
+        Path chatDir = tempDir.resolve("chats");
+        writeIndex(chatDir, chatId, "增量会话", 1707000000000L, 1707000000000L);
+        Path historyPath = chatDir.resolve(chatId + ".jsonl");
+        writeRun(historyPath, chatId, "run_001", "第一问", 1707000000000L);
+
+        ChatRecordStore store = newStore();
+        assertThat(runIds(store.loadChat(chatId, false))).containsExactly("run_001");
+        ChatDetailResponse unchanged = store.loadChat(chatId, false);
+        assertThat(store.loadChat(chatId, false).events()).isSameAs(unchanged.events());
+
+        writeRun(historyPath, chatId, "run_002", "第二问", 1707000001000L);
+        ChatDetailResponse appended = store.loadChat(chatId, true);
+        assertThat(runIds(appended)).containsExactly("run_001", "run_002");
+        assertThat(appended.rawMessages()).extracting(item -> item.get("runId"))
+                .containsExactly("run_001", "run_001", "run_002", "run_002");
+
+        Files.delete(historyPath);
+        writeRun(historyPath, chatId, "run_003", "重写后", 1707000002000L);
+        assertThat(runIds(store.loadChat(chatId, false))).containsExactly("run_003");
+    }
+
+    @Test
+    void loadChatShouldRebuildOnlyRunsTouchedByAppendedLines() throws Exception {
+        String chatId = "123e4567-e89b-12d3-a456-426614174073";
+        Path chatDir = tempDir.resolve("chats");
+        writeIndex(chatDir, chatId, "增量重建", 1707000000000L, 1707000000000L);
+        Path historyPath = chatDir.resolve(chatId + ".jsonl");
+        writeRun(historyPath, chatId, "run_001", "一", 1707000000000L);
+        writeRun(historyPath, chatId, "run_002", "二", 1707000001000L);
+
+        ChatRecordStore store = newStore();
+        List<Map<String, Object>> before = store.loadChat(chatId, false).events();
+
+        writeJsonLine(historyPath, stepLine(chatId, "run_002", "oneshot", 2, null, 1707000002000L,
+                List.of(assistantContentMessage("二补充", 1707000002000L))));
+        List<Map<String, Object>> appended = store.loadChat(chatId, false).events();
+        assertThat(appended).isEqualTo(newStore().loadChat(chatId, false).events());
+        List<Map<String, Object>> firstRunBefore = before.subList(0, before.indexOf(before.stream()
+                .filter(event -> "run_002".equals(event.get("runId")) && "run.start".equals(event.get("type")))
+                .findFirst().orElseThrow()) - 1);
+        for (int i = 0; i < firstRunBefore.size(); i++) {
+            assertThat(appended.get(i)).isSameAs(firstRunBefore.get(i));
+        }
+
+        writeJsonLine(historyPath, stepLine(chatId, "run_001", "oneshot", 2, null, 1707000003000L,
+                List.of(assistantContentMessage("一补充", 1707000003000L))));
+        ChatDetailResponse reordered = store.loadChat(chatId, false);
+        assertThat(runIds(reordered)).containsExactly("run_002", "run_001");
+        assertThat(reordered.events()).isEqualTo(newStore().loadChat(chatId, false).events());
+    }
+
+    @Test
+    void loadChatShouldPageByLastRunsAndBeforeRunId() throws Exception {
+        String chatId = "123e4567-e89b-12d3-a456-426614174071";
+        Path chatDir = tempDir.resolve("chats");
+        writeIndex(chatDir, chatId, "分页会话", 1707000000000L, 1707000000000L);
+        Path historyPath = chatDir.resolve(chatId + ".jsonl");
+        writeRun(historyPath, chatId, "run_001", "一", 1707000000000L);
+        writeRun(historyPath, chatId, "run_002", "二", 1707000001000L);
+        writeRun(historyPath, chatId, "run_003", "三", 1707000002000L);
+
+        ChatRecordStore store = newStore();
+        ChatDetailResponse full = store.loadChat(chatId, false);
+        assertThat(runIds(full)).containsExactly("run_001", "run_002", "run_003");
+        assertThat(full.hasMoreRuns()).isNull();
+        assertThat(full.nextBeforeRunId()).isNull();
+
+        ChatDetailResponse latest = store.loadChat(chatId, true, 2, null);
+        assertThat(runIds(latest)).containsExactly("run_002", "run_003");
+        assertThat(latest.rawMessages()).extracting(item -> item.get("runId"))
+                .containsExactly("run_002", "run_002", "run_003", "run_003");
+        assertThat(latest.hasMoreRuns()).isTrue();
+        assertThat(latest.nextBeforeRunId()).isEqualTo("run_002");
+
+        ChatDetailResponse older = store.loadChat(chatId, false, 2, latest.nextBeforeRunId());
+        assertThat(runIds(older)).containsExactly("run_001");
+        assertThat(older.hasMoreRuns()).isFalse();
+        assertThat(older.nextBeforeRunId()).isNull();
+
+        assertThatThrownBy(() -> store.loadChat(chatId, false, 2, "run_missing"))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void loadChatShouldReadSegmentedHistoryIncrementally() throws Exception {
+        String chatId = "123e4567-e89b-12d3-a456-426614174072";
+        Path chatDir = tempDir.resolve("chats");
+        writeIndex(chatDir, chatId, "分段会话", 1707000000000L, 1707000000000L);
+        writeRun(chatDir.resolve(chatId + ".jsonl"), chatId, "run_001", "迁移前", 1707000000000L);
+        ChatStorageProperties properties = new ChatStorageProperties();
+        properties.setDir(chatDir.toString());
+        properties.getIndex().setSqliteFile(chatDir.resolve("chats.db").toString());
+        properties.setEngine("segmented");
+        properties.setSegmentMaxBytes(1);
+        ChatHistoryWriter historyWriter = new ChatHistoryWriter(objectMapper, properties);
+        ChatRecordStore store = new ChatRecordStore(objectMapper, properties, null, null, historyWriter);
+        store.initializeDatabase();
+
+        ChatDetailResponse migrated = store.loadChat(chatId, false);
+        assertThat(runIds(migrated)).containsExactly("run_001");
+        assertThat(chatDir.resolve(chatId + ".jsonl")).doesNotExist();
+        assertThat(store.loadChat(chatId, false).events()).isSameAs(migrated.events());
+
+        historyWriter.appendAll(chatId, List.of(
+                queryLine(chatId, "run_002", query("run_002", chatId, "迁移后", List.of())),
+                stepLine(chatId, "run_002", "oneshot", 1, null, 1707000001000L,
+                        List.of(userMessage("迁移后", 1707000001000L), assistantContentMessage("答：迁移后", 1707000001001L)))
+        ));
+        assertThat(runIds(store.loadChat(chatId, false))).containsExactly("run_001", "run_002");
+        assertThat(runIds(store.loadChat(chatId, false, 1, null))).containsExactly("run_002");
+        historyWriter.close();
+    }
+
     private ChatRecordStore newStore() {
         return newStore(null);
     }
@@ -1046,7 +1228,8 @@ class ChatRecordStoreTest {
         properties.getIndex().setSqliteFile(tempDir.resolve("chats").resolve("chats.db").toString());
         ChatAssetCatalogService chatAssetCatalogService =
                 new ChatAssetCatalogService(new ChatDataPathService(properties));
-        ChatRecordStore store = new ChatRecordStore(objectMapper, properties, toolRegistry, chatAssetCatalogService);
+        ChatRecordStore store = new ChatRecordStore(
+                objectMapper, properties, toolRegistry, chatAssetCatalogService, new ChatHistoryWriter(objectMapper, properties));
         store.initializeDatabase();
         return store;
     }
@@ -1116,6 +1299,19 @@ class ChatRecordStoreTest {
         }
     }
 
+    private void writeRun(Path historyPath, String chatId, String runId, String text, long ts) throws Exception {
+        writeJsonLine(historyPath, queryLine(chatId, runId, query(runId, chatId, text, List.of())));
+        writeJsonLine(historyPath, stepLine(chatId, runId, "oneshot", 1, null, ts,
+                List.of(userMessage(text, ts), assistantContentMessage("答：" + text, ts + 1))));
+    }
+
+    private List<Object> runIds(ChatDetailResponse detail) {
+        return detail.events().stream()
+                .filter(event -> "run.start".equals(event.get("type")))
+                .map(event -> event.get("runId"))
+                .toList();
+    }
+
     private void writeJsonLine(Path path, Object value) throws Exception {
         Files.createDirectories(path.getParent());
         String line = objectMapper.writeValueAsString(value) + System.lineSeparator();
@@ -0,0 +1,219 @@
+package com.linlay.agentplatform.chat.index;
+
+import com.linlay.agentplatform.chat.history.ChatRecordStore;
+import com.linlay.agentplatform.config.properties.ChatStorageProperties;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Throughput comparison between the per-call DriverManager connection used before pooling and the pooled WAL index.
+ * Run with {@code mvn test -Dtest=ChatIndexRepositoryBenchmarkTest -Dbenchmark=true}.
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class ChatIndexRepositoryBenchmarkTest {
+
+    private static final int CHATS = 200;
+    private static final long DURATION_MS = 3000;
+    private static final int READERS = 4;
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void comparePerCallConnectionsWithPooledWalIndex() throws Exception {
+        ChatStorageProperties properties = new ChatStorageProperties();
+        properties.setDir(tempDir.toString());
+        properties.getIndex().setSqliteFile(tempDir.resolve("chats.db").toString());
+        ChatIndexRepository repository = new ChatIndexRepository(properties);
+        repository.initializeDatabase();
+        List<String> chatIds = new ArrayList<>();
+        for (int i = 0; i < CHATS; i++) {
+            String chatId = UUID.randomUUID().toString();
+            repository.ensureChat(chatId, "demo", "Demo", null, "hello " + i);
+            chatIds.add(chatId);
+        }
+
+        Path legacyDb = tempDir.resolve("legacy.db");
+        LegacyIndex legacy = new LegacyIndex(legacyDb);
+        legacy.seed(chatIds);
+
+        Result legacyResult = run(
+                chatId -> legacy.loadChatRecord(chatId),
+                legacy::listChats,
+                (chatId, runId) -> legacy.onRunCompleted(chatId, runId),
+                chatIds
+        );
+        Result pooledResult = run(
+                repository::loadChatRecord,
+                () -> repository.listChats(null, null),
+                (chatId, runId) -> repository.onRunCompleted(new ChatRecordStore.RunCompletion(chatId, runId, "answer", null, System.currentTimeMillis())),
+                chatIds
+        );
+        repository.close();
+
+        System.out.printf("chat index benchmark (%d ms, %d readers + 1 writer)%n", DURATION_MS, READERS);
+        System.out.printf("  per-call connections: reads %.0f ops/s, writes %.0f ops/s%n", legacyResult.readsPerSecond(), legacyResult.writesPerSecond());
+        System.out.printf("  pooled WAL index:     reads %.0f ops/s, writes %.0f ops/s%n", pooledResult.readsPerSecond(), pooledResult.writesPerSecond());
+        assertThat(pooledResult.reads()).isPositive();
+        assertThat(pooledResult.writes()).isPositive();
+    }
+
+    private Result run(Reader loadChat, Lister listChats, Writer writer, List<String> chatIds) throws Exception {
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicLong reads = new AtomicLong();
+        AtomicLong writes = new AtomicLong();
+        List<Thread> threads = new ArrayList<>();
+        for (int r = 0; r < READERS; r++) {
+            int offset = r;
+            threads.add(Thread.ofPlatform().start(() -> {
+                int i = offset;
+                while (running.get()) {
+                    try {
+                        if (i % 20 == 0) {
+                            listChats.list();
+                        } else {
+                            loadChat.load(chatIds.get(i % chatIds.size()));
+                        }
+                        reads.incrementAndGet();
+                    } catch (Exception ignored) {
+                    }
+                    i++;
+                }
+            }));
+        }
+        threads.add(Thread.ofPlatform().start(() -> {
+            long i = 0;
+            while (running.get()) {
+                try {
+                    writer.complete(chatIds.get((int) (i % chatIds.size())), Long.toString(1_000_000 + i, 36));
+                    writes.incrementAndGet();
+                } catch (Exception ignored) {
+                }
+                i++;
+            }
+        }));
+        Thread.sleep(DURATION_MS);
+        running.set(false);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        return new Result(reads.get(), writes.get());
+    }
+
+    private record Result(long reads, long writes) {
+        double readsPerSecond() {
+            return reads * 1000.0 / DURATION_MS;
+        }
+
+        double writesPerSecond() {
+            return writes * 1000.0 / DURATION_MS;
+        }
+    }
+
+    @FunctionalInterface
+    private interface Reader {
+        Object load(String chatId) throws Exception;
+    }
+
+    @FunctionalInterface
+    private interface Lister {
+        Object list() throws Exception;
+    }
+
+    @FunctionalInterface
+    private interface Writer {
+        void complete(String chatId, String runId) throws Exception;
+    }
+
+    /**
+     * Reproduces the previous access pattern: one monitor, a fresh connection per call, SQLite defaults.
+     */
+    private static final class LegacyIndex {
+        private final String url;
+        private final Object lock = new Object();
+
+        private LegacyIndex(Path dbPath) {
+            this.url = "jdbc:sqlite:" + dbPath;
+        }
+
+        private void seed(List<String> chatIds) throws SQLException {
+            try (Connection connection = DriverManager.getConnection(url)) {
+                connection.createStatement().execute("""
+                        CREATE TABLE CHATS (
+                          CHAT_ID_ TEXT PRIMARY KEY, CHAT_NAME_ TEXT NOT NULL, AGENT_KEY_ TEXT NOT NULL,
+                          LAST_RUN_ID_ TEXT NOT NULL, LAST_RUN_CONTENT_ TEXT NOT NULL, UPDATED_AT_ INTEGER NOT NULL
+                        )
+                        """);
+                for (String chatId : chatIds) {
+                    try (PreparedStatement statement = connection.prepareStatement(
+                            "INSERT INTO CHATS VALUES (?, 'chat', 'demo', '', '', 0)")) {
+                        statement.setString(1, chatId);
+                        statement.executeUpdate();
+                    }
+                }
+            }
+        }
+
+        private Object loadChatRecord(String chatId) throws SQLException {
+            synchronized (lock) {
+                try (Connection connection = DriverManager.getConnection(url);
+                     PreparedStatement statement = connection.prepareStatement("SELECT * FROM CHATS WHERE CHAT_ID_ = ?")) {
+                    statement.setString(1, chatId);
+                    try (ResultSet resultSet = statement.executeQuery()) {
+                        return resultSet.next() ? resultSet.getString(1) : null;
+                    }
+                }
+            }
+        }
+
+        private Object listChats() throws SQLException {
+            synchronized (lock) {
+                try (Connection connection = DriverManager.getConnection(url);
+                     PreparedStatement statement = connection.prepareStatement(
+                             "SELECT * FROM CHATS ORDER BY LAST_RUN_ID_ DESC, UPDATED_AT_ DESC");
+                     ResultSet resultSet = statement.executeQuery()) {
+                    int count = 0;
+                    while (resultSet.next()) {
+                        count++;
+                    }
+                    return count;
+                }
+            }
+        }
+
+        private void onRunCompleted(String chatId, String runId) throws SQLException {
+            synchronized (lock) {
+                try (Connection connection = DriverManager.getConnection(url)) {
+                    connection.setAutoCommit(false);
+                    try (PreparedStatement select = connection.prepareStatement("SELECT * FROM CHATS WHERE CHAT_ID_ = ?")) {
+                        select.setString(1, chatId);
+                        select.executeQuery().close();
+                    }
+                    try (PreparedStatement update = connection.prepareStatement(
+                            "UPDATE CHATS SET LAST_RUN_ID_ = ?, LAST_RUN_CONTENT_ = 'answer', UPDATED_AT_ = ? WHERE CHAT_ID_ = ?")) {
+                        update.setString(1, runId);
+                        update.setLong(2, System.currentTimeMillis());
+                        update.setString(3, chatId);
+                        update.executeUpdate();
+                    }
+                    connection.commit();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package com.linlay.agentplatform.chat.index;
+
+import com.linlay.agentplatform.chat.history.ChatRecordStore;
+import com.linlay.agentplatform.config.properties.ChatStorageProperties;
+import com.linlay.agentplatform.model.api.ChatPageResponse;
+import com.linlay.agentplatform.model.api.ChatSummaryResponse;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ChatIndexRepositoryTest {
+
+    @TempDir
+    Path tempDir;
+
+    private ChatIndexRepository repository;
+
+    @AfterEach
+    void tearDown() {
+        if (repository != null) {
+            repository.close();
+        }
+    }
+
+    @Test
+    void shouldRunChatIndexInWalMode() throws Exception {
+        repository = newRepository();
+        repository.ensureChat(UUID.randomUUID().toString(), "demo", "Demo", null, "hello");
+
+        try (Connection connection = DriverManager.getConnection("jdbc:sqlite:" + tempDir.resolve("chats.db"));
+             Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("PRAGMA journal_mode")) {
+            assertThat(resultSet.next()).isTrue();
+            assertThat(resultSet.getString(1)).isEqualToIgnoringCase("wal");
+        }
+    }
+
+    @Test
+    void shouldRollbackWriterTransactionWhenChatIsMissing() {
+        repository = newRepository();
+        String chatId = UUID.randomUUID().toString();
+
+        assertThatThrownBy(() -> repository.markChatRead(chatId)).isInstanceOf(ChatNotFoundException.class);
+
+        String existing = UUID.randomUUID().toString();
+        repository.ensureChat(existing, "demo", "Demo", null, "hello");
+        assertThat(repository.markChatRead(existing).readStatus()).isEqualTo(1);
+        assertThat(repository.loadChatRecord(existing)).isNotNull();
+    }
+
+    @Test
+    void shouldServeConcurrentReadersWhileRunsComplete() throws Exception {
+        repository = newRepository();
+        List<String> chatIds = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            String chatId = UUID.randomUUID().toString();
+            repository.ensureChat(chatId, "demo", "Demo", null, "hello " + i);
+            chatIds.add(chatId);
+        }
+
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        List<Thread> threads = new ArrayList<>();
+        threads.add(Thread.ofPlatform().start(() -> {
+            try {
+                for (int i = 0; i < 200; i++) {
+                    String chatId = chatIds.get(i % chatIds.size());
+                    repository.onRunCompleted(new ChatRecordStore.RunCompletion(chatId, "run" + (1000 + i), "answer " + i, null, 1L + i));
+                }
+            } catch (Throwable ex) {
+                failure.compareAndSet(null, ex);
+            }
+        }));
+        for (int reader = 0; reader < 4; reader++) {
+            threads.add(Thread.ofPlatform().start(() -> {
+                try {
+                    for (int i = 0; i < 100; i++) {
+                        assertThat(repository.listChats(null, null)).hasSize(chatIds.size());
+                        assertThat(repository.loadChatRecord(chatIds.get(i % chatIds.size()))).isNotNull();
+                    }
+                } catch (Throwable ex) {
+                    failure.compareAndSet(null, ex);
+                }
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertThat(failure.get()).isNull();
+        assertThat(repository.listChats("run1198", null)).hasSize(1);
+    }
+
+    @Test
+    void shouldPageChatsWithKeysetCursor() {
+        repository = newRepository();
+        for (int i = 0; i < 5; i++) {
+            repository.ensureChat(UUID.randomUUID().toString(), "demo", "Demo", null, "hello " + i);
+        }
+        List<String> expected = repository.listChats(null, null).stream()
+                .map(ChatSummaryResponse::chatId)
+                .toList();
+
+        List<String> paged = new ArrayList<>();
+        String cursor = null;
+        int pages = 0;
+        do {
+            ChatPageResponse page = repository.listChatPage(cursor, null, 2, null);
+            page.chats().forEach(chat -> paged.add(chat.chatId()));
+            cursor = page.nextCursor();
+            assertThat(page.hasMore()).isEqualTo(cursor != null);
+            pages++;
+        } while (cursor != null);
+
+        assertThat(pages).isEqualTo(3);
+        assertThat(paged).doesNotHaveDuplicates().containsExactlyInAnyOrderElementsOf(expected);
+    }
+
+    @Test
+    void shouldReturnOnlyChatsChangedSinceVersion() {
+        repository = newRepository();
+        String first = UUID.randomUUID().toString();
+        String second = UUID.randomUUID().toString();
+        repository.ensureChat(first, "demo", "Demo", null, "hello");
+        repository.ensureChat(second, "demo", "Demo", null, "world");
+
+        long version = repository.listChatPage(null, null, null, null).version();
+        ChatPageResponse unchanged = repository.listChatPage(null, version, null, null);
+        assertThat(unchanged.chats()).isEmpty();
+        assertThat(unchanged.version()).isEqualTo(version);
+
+        repository.onRunCompleted(new ChatRecordStore.RunCompletion(first, "run2000", "answer", null, 5L));
+        ChatPageResponse changed = repository.listChatPage(null, version, null, null);
+        assertThat(changed.chats()).extracting(ChatSummaryResponse::chatId).containsExactly(first);
+        assertThat(changed.version()).isGreaterThan(version);
+
+        repository.markChatRead(second);
+        ChatPageResponse read = repository.listChatPage(null, changed.version(), null, null);
+        assertThat(read.chats()).extracting(ChatSummaryResponse::chatId).containsExactly(second);
+    }
+
+    @Test
+    void shouldRejectMalformedCursor() {
+        repository = newRepository();
+
+        assertThatThrownBy(() -> repository.listChatPage("not-a-cursor", null, null, null))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private ChatIndexRepository newRepository() {
+        ChatStorageProperties properties = new ChatStorageProperties();
+        properties.setDir(tempDir.toString());
+        properties.getIndex().setSqliteFile(tempDir.resolve("chats.db").toString());
+        ChatIndexRepository created = new ChatIndexRepository(properties);
+        created.initializeDatabase();
+        return created;
+    }
+}
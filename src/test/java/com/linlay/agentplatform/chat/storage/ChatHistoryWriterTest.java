@@ -0,0 +1,235 @@
+package com.linlay.agentplatform.chat.storage;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.linlay.agentplatform.config.properties.ChatStorageProperties;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ChatHistoryWriterTest {
+
+    @TempDir
+    Path tempDir;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private ChatHistoryWriter writer;
+
+    @AfterEach
+    void tearDown() {
+        if (writer != null) {
+            writer.close();
+        }
+    }
+
+    @Test
+    void shouldIndexAppendedLinesWithoutRereadingHistory() throws Exception {
+        writer = new ChatHistoryWriter(objectMapper, properties(8));
+        String chatId = "chat_writer_1";
+
+        writer.append(chatId, queryLine(chatId, "run_1", true));
+        writer.append(chatId, stepLine(chatId, "run_1", "run_1_r_2", "run_1_c_3", true));
+        writer.append(chatId, stepLine(chatId, "run_1", null, null, false));
+
+        assertThat(writer.isHiddenRun(chatId, "run_1")).isTrue();
+        assertThat(writer.isHiddenRun(chatId, "run_2")).isFalse();
+        assertThat(writer.nextTextBlockSequenceState(chatId, "run_1"))
+                .isEqualTo(new TextBlockSequenceState(3, 4));
+        assertThat(writer.nextTextBlockSequenceState(chatId, "run_2"))
+                .isEqualTo(new TextBlockSequenceState(1, 1));
+        assertThat(writer.readLatestPlanLine(chatId).line()).contains("\"taskId\":\"task_1\"");
+        assertThat(writer.readLatestSystemLine(chatId).line()).contains("\"model\":\"gpt-test\"");
+        assertThat(writer.readLatestArtifactLine(chatId).line()).isNull();
+
+        List<String> lines = Files.readAllLines(tempDir.resolve("chat_writer_1.jsonl"));
+        assertThat(lines).hasSize(3);
+    }
+
+    @Test
+    void shouldCatchUpWhenAnotherWriterAppendsToSameFile() throws Exception {
+        ChatStorageProperties properties = properties(8);
+        writer = new ChatHistoryWriter(objectMapper, properties);
+        String chatId = "chat_writer_2";
+        writer.append(chatId, queryLine(chatId, "run_1", false));
+        assertThat(writer.isHiddenRun(chatId, "run_2")).isFalse();
+
+        ChatHistoryWriter other = new ChatHistoryWriter(objectMapper, properties);
+        other.append(chatId, queryLine(chatId, "run_2", true));
+        other.append(chatId, stepLine(chatId, "run_2", "run_2_r_5", null, true));
+        other.close();
+
+        assertThat(writer.isHiddenRun(chatId, "run_2")).isTrue();
+        assertThat(writer.nextTextBlockSequenceState(chatId, "run_2"))
+                .isEqualTo(new TextBlockSequenceState(6, 1));
+        assertThat(writer.readLatestPlanLine(chatId).line()).contains("\"runId\":\"run_2\"");
+    }
+
+    @Test
+    void shouldRebuildIndexAfterFileIsRewritten() throws Exception {
+        writer = new ChatHistoryWriter(objectMapper, properties(8));
+        String chatId = "chat_writer_3";
+        writer.append(chatId, queryLine(chatId, "run_1", true));
+        writer.append(chatId, stepLine(chatId, "run_1", null, null, true));
+        assertThat(writer.readLatestPlanLine(chatId).line()).isNotNull();
+
+        Path path = tempDir.resolve(chatId + ".jsonl");
+        Files.writeString(
+                path,
+                objectMapper.writeValueAsString(queryLine(chatId, "run_9", false)) + System.lineSeparator(),
+                StandardCharsets.UTF_8,
+                StandardOpenOption.TRUNCATE_EXISTING
+        );
+
+        assertThat(writer.isHiddenRun(chatId, "run_1")).isFalse();
+        assertThat(writer.readLatestPlanLine(chatId).line()).isNull();
+
+        writer.invalidate(chatId);
+        writer.append(chatId, stepLine(chatId, "run_9", null, null, true));
+        assertThat(writer.readLatestPlanLine(chatId).line()).contains("\"runId\":\"run_9\"");
+        assertThat(Files.readAllLines(path)).hasSize(2);
+    }
+
+    @Test
+    void shouldNotifyTruncationListenersOnRewriteButNotOnAppend() {
+        writer = new ChatHistoryWriter(objectMapper, properties(8));
+        String chatId = "chat_writer_4";
+        List<String> truncated = new java.util.ArrayList<>();
+        writer.onTruncate(truncated::add);
+
+        writer.append(chatId, queryLine(chatId, "run_1", false));
+        writer.append(chatId, queryLine(chatId, "run_2", false));
+        assertThat(truncated).isEmpty();
+
+        assertThat(writer.rewriteLines(chatId, lines -> null)).isFalse();
+        assertThat(truncated).isEmpty();
+        assertThat(writer.rewriteLines(chatId, lines -> lines.subList(1, lines.size()))).isTrue();
+        assertThat(truncated).containsExactly(chatId);
+    }
+
+    @Test
+    void shouldEvictLeastRecentlyUsedHistoriesBeyondLimit() {
+        writer = new ChatHistoryWriter(objectMapper, properties(2));
+        writer.append("chat_a", queryLine("chat_a", "run_a", true));
+        writer.append("chat_b", queryLine("chat_b", "run_b", false));
+        writer.append("chat_c", queryLine("chat_c", "run_c", false));
+
+        assertThat(writer.openHistoryCount()).isEqualTo(2);
+        assertThat(writer.isHiddenRun("chat_a", "run_a")).isTrue();
+        assertThat(writer.openHistoryCount()).isEqualTo(2);
+    }
+
+    @Test
+    void segmentedEngineShouldMigrateJsonlAndExportItBack() throws Exception {
+        String chatId = "123e4567-e89b-12d3-a456-426614174100";
+        writer = new ChatHistoryWriter(objectMapper, properties(8));
+        writer.append(chatId, queryLine(chatId, "run_1", true));
+        writer.append(chatId, stepLine(chatId, "run_1", "run_1_r_2", null, true));
+        writer.append(chatId, queryLine(chatId, "run_2", false));
+        writer.append(chatId, stepLine(chatId, "run_2", null, "run_2_c_4", false));
+        writer.close();
+        Path jsonl = tempDir.resolve(chatId + ".jsonl");
+        String original = Files.readString(jsonl);
+
+        ChatStorageProperties segmented = properties(8);
+        segmented.setEngine("segmented");
+        segmented.setSegmentMaxBytes(1);
+        writer = new ChatHistoryWriter(objectMapper, segmented);
+
+        assertThat(writer.migrateAll()).isEqualTo(1);
+        assertThat(jsonl).doesNotExist();
+        assertThat(tempDir.resolve(chatId + ".jsonl.migrated")).exists();
+        assertThat(writer.isHiddenRun(chatId, "run_1")).isTrue();
+        assertThat(writer.nextTextBlockSequenceState(chatId, "run_2")).isEqualTo(new TextBlockSequenceState(1, 5));
+        assertThat(writer.readLatestPlanLine(chatId).line()).contains("\"runId\":\"run_1\"");
+        assertThat(writer.readRecentRunLines(chatId, 1)).hasSize(2).allMatch(line -> line.contains("\"runId\":\"run_2\""));
+
+        writer.append(chatId, stepLine(chatId, "run_2", null, null, true));
+        ChatHistoryWriter cold = new ChatHistoryWriter(objectMapper, segmented);
+        assertThat(cold.readLatestPlanLine(chatId).line()).contains("\"runId\":\"run_2\"");
+        assertThat(cold.readAllLines(chatId)).hasSize(5);
+        cold.close();
+
+        Path exported = tempDir.resolve("export").resolve(chatId + ".jsonl");
+        writer.exportJsonl(chatId, exported);
+        assertThat(Files.readString(exported)).startsWith(original);
+        assertThat(Files.readAllLines(exported)).hasSize(5);
+    }
+
+    @Test
+    void segmentedLogShouldMapSealedSegmentsOnceAndDropMappingsWithSegments() throws Exception {
+        SegmentedChatLog segments = new SegmentedChatLog(tempDir.resolve("chat.segments"), 1, segment -> {
+        });
+        segments.append("{\"n\":1}\n".getBytes(StandardCharsets.UTF_8));
+        long second = segments.append("{\"n\":2}\n".getBytes(StandardCharsets.UTF_8));
+        segments.append("{\"n\":3}\n".getBytes(StandardCharsets.UTF_8));
+        String all = "{\"n\":1}\n{\"n\":2}\n{\"n\":3}\n";
+
+        assertThat(new String(segments.read(0, segments.endOffset()), StandardCharsets.UTF_8)).isEqualTo(all);
+        assertThat(segments.cachedMappings()).isEqualTo(2);
+        assertThat(new String(segments.read(0, segments.endOffset()), StandardCharsets.UTF_8)).isEqualTo(all);
+        assertThat(new String(segments.readLine(second), StandardCharsets.UTF_8)).isEqualTo("{\"n\":2}");
+        assertThat(segments.cachedMappings()).isEqualTo(2);
+
+        assertThat(segments.dropBefore(second)).isEqualTo(1);
+        assertThat(segments.cachedMappings()).isEqualTo(1);
+        assertThat(new String(segments.read(second, segments.endOffset()), StandardCharsets.UTF_8))
+                .isEqualTo("{\"n\":2}\n{\"n\":3}\n");
+        segments.close();
+        assertThat(segments.cachedMappings()).isZero();
+    }
+
+    private ChatStorageProperties properties(int maxOpenHistories) {
+        ChatStorageProperties properties = new ChatStorageProperties();
+        properties.setDir(tempDir.toString());
+        properties.setMaxOpenHistories(maxOpenHistories);
+        return properties;
+    }
+
+    private ChatStorageTypes.QueryLine queryLine(String chatId, String runId, boolean hidden) {
+        ChatStorageTypes.QueryLine line = new ChatStorageTypes.QueryLine();
+        line.chatId = chatId;
+        line.runId = runId;
+        line.updatedAt = 1L;
+        line.hidden = hidden ? Boolean.TRUE : null;
+        return line;
+    }
+
+    private ChatStorageTypes.StepLine stepLine(
+            String chatId,
+            String runId,
+            String reasoningId,
+            String contentId,
+            boolean withPlanAndSystem
+    ) {
+        ChatStorageTypes.StepLine line = new ChatStorageTypes.StepLine();
+        line.chatId = chatId;
+        line.runId = runId;
+        line.stage = "oneshot";
+        line.seq = 1;
+        line.updatedAt = 2L;
+        if (withPlanAndSystem) {
+            ChatStorageTypes.PlanTaskState task = new ChatStorageTypes.PlanTaskState();
+            task.taskId = "task_1";
+            task.description = "do it";
+            task.status = "init";
+            line.plan = new ChatStorageTypes.PlanState();
+            line.plan.planId = "plan_1";
+            line.plan.tasks = List.of(task);
+            line.system = new ChatStorageTypes.SystemSnapshot();
+            line.system.model = "gpt-test";
+        }
+        ChatStorageTypes.StoredMessage message = new ChatStorageTypes.StoredMessage();
+        message.role = "assistant";
+        message.reasoningId = reasoningId;
+        message.contentId = contentId;
+        line.messages.add(message);
+        return line;
+    }
+}
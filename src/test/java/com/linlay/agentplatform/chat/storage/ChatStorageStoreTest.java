@@ -10,10 +10,14 @@ import org.junit.jupiter.api.io.TempDir;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.LinkedHashMap;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
 
 class ChatStorageStoreTest {
 
@@ -29,7 +33,7 @@ class ChatStorageStoreTest {
         properties.setK(20);
         properties.setActionTools(List.of("switch_frontend_theme"));
 
-        ChatStorageStore store = new ChatStorageStore(objectMapper, properties);
+        ChatStorageStore store = new ChatStorageStore(objectMapper, properties, new ChatHistoryWriter(objectMapper, properties));
 
         String chatId = "123e4567-e89b-12d3-a456-426614174000";
         String runId = "run_001";
@@ -120,7 +124,7 @@ class ChatStorageStoreTest {
         properties.setDir(tempDir.resolve("chats").toString());
         properties.setK(20);
 
-        ChatStorageStore store = new ChatStorageStore(objectMapper, properties);
+        ChatStorageStore store = new ChatStorageStore(objectMapper, properties, new ChatHistoryWriter(objectMapper, properties));
 
         String chatId = "123e4567-e89b-12d3-a456-426614174008";
         String runId = "run_hidden_001";
@@ -145,7 +149,7 @@ class ChatStorageStoreTest {
         properties.setDir(tempDir.resolve("chats").toString());
         properties.setK(20);
 
-        ChatStorageStore store = new ChatStorageStore(objectMapper, properties);
+        ChatStorageStore store = new ChatStorageStore(objectMapper, properties, new ChatHistoryWriter(objectMapper, properties));
 
         String chatId = "123e4567-e89b-12d3-a456-426614174005";
         String runId = "run_005";
@@ -200,7 +204,7 @@ class ChatStorageStoreTest {
         properties.setDir(tempDir.resolve("chats").toString());
         properties.setK(20);
 
-        ChatStorageStore store = new ChatStorageStore(objectMapper, properties);
+        ChatStorageStore store = new ChatStorageStore(objectMapper, properties, new ChatHistoryWriter(objectMapper, properties));
         String chatId = "123e4567-e89b-12d3-a456-426614174006";
         String callId = "call_action_explicit_1";
 
@@ -243,13 +247,47 @@ class ChatStorageStoreTest {
         assertThat(toolResult.has("_toolId")).isFalse();
     }
 
+    @Test
+    void trimToWindowShouldNotLoseLinesAppendedConcurrently() throws Exception {
+        ChatStorageProperties properties = new ChatStorageProperties();
+        properties.setDir(tempDir.resolve("chats").toString());
+        properties.setK(2);
+        ChatStorageStore store = new ChatStorageStore(objectMapper, properties, new ChatHistoryWriter(objectMapper, properties));
+        String chatId = "123e4567-e89b-12d3-a456-426614174009";
+        int runs = 40;
+
+        Thread trimmer = new Thread(() -> {
+            for (int i = 0; i < runs; i++) {
+                store.trimToWindow(chatId);
+            }
+        });
+        trimmer.start();
+        for (int run = 1; run <= runs; run++) {
+            String runId = "run_%03d".formatted(run);
+            store.appendQueryLine(chatId, runId, query(runId, chatId, "u" + run));
+            store.appendStepLine(chatId, runId, "oneshot", 1, null, null, null, null,
+                    List.of(ChatStorageTypes.RunMessage.user("u" + run, run * 1000L)));
+        }
+        trimmer.join();
+        store.trimToWindow(chatId);
+
+        List<String> lines = Files.readAllLines(tempDir.resolve("chats").resolve(chatId + ".jsonl")).stream()
+                .filter(line -> !line.isBlank())
+                .toList();
+        List<String> runIds = new ArrayList<>();
+        for (String line : lines) {
+            runIds.add(objectMapper.readTree(line).path("runId").asText());
+        }
+        assertThat(runIds).containsExactly("run_039", "run_039", "run_040", "run_040");
+    }
+
     @Test
     void shouldTrimToConfiguredWindowSizeByRunId() throws Exception {
         ChatStorageProperties properties = new ChatStorageProperties();
         properties.setDir(tempDir.resolve("chats").toString());
         properties.setK(2);
 
-        ChatStorageStore store = new ChatStorageStore(objectMapper, properties);
+        ChatStorageStore store = new ChatStorageStore(objectMapper, properties, new ChatHistoryWriter(objectMapper, properties));
 
         String chatId = "123e4567-e89b-12d3-a456-426614174001";
 
@@ -300,13 +338,125 @@ class ChatStorageStoreTest {
         assertThat(((ChatMessage.AssistantMsg) historyMessages.get(3)).text()).isEqualTo("a3");
     }
 
+    @Test
+    void segmentedEngineShouldServeWindowAndLatestStateFromSparseIndexAndTrimWholeSegments() throws Exception {
+        ChatStorageProperties properties = new ChatStorageProperties();
+        properties.setDir(tempDir.resolve("chats").toString());
+        properties.setK(2);
+        properties.setEngine("segmented");
+        properties.setSegmentMaxBytes(1);
+        ChatStorageStore store = new ChatStorageStore(objectMapper, properties, new ChatHistoryWriter(objectMapper, properties));
+        String chatId = "123e4567-e89b-12d3-a456-426614174010";
+
+        for (int run = 1; run <= 3; run++) {
+            String runId = "run_00" + run;
+            store.appendQueryLine(chatId, runId, query(runId, chatId, "u" + run));
+            store.appendStepLine(chatId, runId, "oneshot", 1, null,
+                    run == 1 ? systemSnapshot("gpt-5.2", "system", true) : null, null, null,
+                    List.of(
+                            ChatStorageTypes.RunMessage.user("u" + run, run * 1000L),
+                            ChatStorageTypes.RunMessage.assistantContent("a" + run, run * 1000L + 1, 2L, null)
+                    ));
+        }
+
+        Path segmentsDir = tempDir.resolve("chats").resolve(chatId + ".segments");
+        assertThat(Files.exists(tempDir.resolve("chats").resolve(chatId + ".jsonl"))).isFalse();
+        assertThat(segmentFiles(segmentsDir, ".log")).hasSize(6);
+        assertThat(segmentFiles(segmentsDir, ".idx.json")).hasSize(5);
+
+        ChatStorageStore cold = new ChatStorageStore(objectMapper, properties, new ChatHistoryWriter(objectMapper, properties));
+        assertThat(cold.loadHistoryRuns(chatId)).extracting(ChatStorageStore.HistoryRun::runId)
+                .containsExactly("run_002", "run_003");
+        assertThat(cold.loadLatestSystemSnapshot(chatId).model).isEqualTo("gpt-5.2");
+
+        cold.trimToWindow(chatId);
+
+        assertThat(segmentFiles(segmentsDir, ".log")).hasSize(4);
+        assertThat(cold.loadLatestSystemSnapshot(chatId)).isNull();
+        assertThat(cold.loadHistoryMessages(chatId)).extracting(ChatMessage::text).containsExactly("u2", "a2", "u3", "a3");
+    }
+
+    @Test
+    void segmentedRunContextShouldTrustIndexMissesInsteadOfScanningAllSegments() {
+        ChatStorageProperties properties = new ChatStorageProperties();
+        properties.setDir(tempDir.resolve("chats").toString());
+        properties.setEngine("segmented");
+        properties.setSegmentMaxBytes(1);
+        ChatHistoryWriter writer = spy(new ChatHistoryWriter(objectMapper, properties));
+        ChatStorageStore store = new ChatStorageStore(objectMapper, properties, writer);
+        String chatId = "123e4567-e89b-12d3-a456-426614174012";
+
+        for (int run = 1; run <= 3; run++) {
+            String runId = "run_00" + run;
+            store.appendStepLine(chatId, runId, "oneshot", 1, null,
+                    run == 1 ? systemSnapshot("gpt-5.2", "system", true) : null, null, null,
+                    List.of(ChatStorageTypes.RunMessage.user("u" + run, run * 1000L)));
+        }
+
+        ChatStorageStore.RunContext context = store.loadRunContext(chatId);
+
+        assertThat(context.latestPlan()).isNull();
+        assertThat(context.latestSystem().model).isEqualTo("gpt-5.2");
+        assertThat(store.loadLatestArtifactState(chatId)).isNull();
+        verify(writer, never()).readAllLines(chatId);
+    }
+
+    @Test
+    void shouldGroupHistoryMessagesByRun() {
+        ChatStorageProperties properties = new ChatStorageProperties();
+        properties.setDir(tempDir.resolve("chats").toString());
+        ChatStorageStore store = new ChatStorageStore(objectMapper, properties, new ChatHistoryWriter(objectMapper, properties));
+        String chatId = "123e4567-e89b-12d3-a456-426614174009";
+
+        store.appendStepLine(chatId, "run_001", "oneshot", 1, null, null, null, null,
+                List.of(ChatStorageTypes.RunMessage.user("u1", 1000L)));
+        store.appendStepLine(chatId, "run_002", "oneshot", 1, null, null, null, null,
+                List.of(ChatStorageTypes.RunMessage.user("u2", 2000L)));
+        store.appendStepLine(chatId, "run_001", "oneshot", 2, null, null, null, null,
+                List.of(ChatStorageTypes.RunMessage.assistantContent("a1", 1001L, 2L, null)));
+
+        List<ChatStorageStore.HistoryRun> runs = store.loadHistoryRuns(chatId);
+
+        assertThat(runs).extracting(ChatStorageStore.HistoryRun::runId).containsExactly("run_001", "run_002");
+        assertThat(runs.get(0).messages()).extracting(ChatMessage::text).containsExactly("u1", "a1");
+        assertThat(store.loadHistoryMessages(chatId)).extracting(ChatMessage::text).containsExactly("u1", "a1", "u2");
+    }
+
+    @Test
+    void loadRunContextShouldReturnWindowLatestPlanAndSystemTogether() {
+        ChatStorageProperties properties = new ChatStorageProperties();
+        properties.setDir(tempDir.resolve("chats").toString());
+        properties.setK(1);
+        ChatStorageStore store = new ChatStorageStore(objectMapper, properties, new ChatHistoryWriter(objectMapper, properties));
+        String chatId = "123e4567-e89b-12d3-a456-426614174011";
+
+        store.appendStepLine(chatId, "run_001", "plan", 1, null,
+                systemSnapshot("qwen3-max", "system", true),
+                planState("plan_chat_011", List.of(task("task0", "收集信息", "completed"))),
+                null,
+                List.of(ChatStorageTypes.RunMessage.user("u1", 1000L)));
+        store.appendStepLine(chatId, "run_002", "oneshot", 1, null, null, null, null,
+                List.of(
+                        ChatStorageTypes.RunMessage.user("u2", 2000L),
+                        ChatStorageTypes.RunMessage.assistantContent("a2", 2001L, 1L, null)
+                ));
+
+        ChatStorageStore.RunContext context = new ChatStorageStore(objectMapper, properties, new ChatHistoryWriter(objectMapper, properties)).loadRunContext(chatId);
+
+        assertThat(context.historyRuns()).extracting(ChatStorageStore.HistoryRun::runId).containsExactly("run_002");
+        assertThat(context.historyMessages()).extracting(ChatMessage::text).containsExactly("u2", "a2");
+        assertThat(context.latestPlan().planId).isEqualTo("plan_chat_011");
+        assertThat(context.latestSystem().model).isEqualTo("qwen3-max");
+        assertThat(store.loadRunContext("   ").historyRuns()).isEmpty();
+    }
+
     @Test
     void shouldPersistSystemOnlyWhenProvided() throws Exception {
         ChatStorageProperties properties = new ChatStorageProperties();
         properties.setDir(tempDir.resolve("chats").toString());
         properties.setK(20);
 
-        ChatStorageStore store = new ChatStorageStore(objectMapper, properties);
+        ChatStorageStore store = new ChatStorageStore(objectMapper, properties, new ChatHistoryWriter(objectMapper, properties));
 
         String chatId = "123e4567-e89b-12d3-a456-426614174002";
 
@@ -357,7 +507,7 @@ class ChatStorageStoreTest {
         properties.setDir(tempDir.resolve("chats").toString());
         properties.setK(20);
 
-        ChatStorageStore store = new ChatStorageStore(objectMapper, properties);
+        ChatStorageStore store = new ChatStorageStore(objectMapper, properties, new ChatHistoryWriter(objectMapper, properties));
         String chatId = "123e4567-e89b-12d3-a456-426614174003";
 
         // Plan step with initial plan
@@ -411,7 +561,7 @@ class ChatStorageStoreTest {
         properties.setDir(tempDir.resolve("chats").toString());
         properties.setK(20);
 
-        ChatStorageStore store = new ChatStorageStore(objectMapper, properties);
+        ChatStorageStore store = new ChatStorageStore(objectMapper, properties, new ChatHistoryWriter(objectMapper, properties));
         String chatId = "123e4567-e89b-12d3-a456-426614174013";
 
         store.appendQueryLine(chatId, "run_001", query("run_001", chatId, "生成文件"));
@@ -458,7 +608,7 @@ class ChatStorageStoreTest {
         properties.setDir(tempDir.resolve("chats").toString());
         properties.setK(20);
 
-        ChatStorageStore store = new ChatStorageStore(objectMapper, properties);
+        ChatStorageStore store = new ChatStorageStore(objectMapper, properties, new ChatHistoryWriter(objectMapper, properties));
         String chatId = "123e4567-e89b-12d3-a456-426614174004";
 
         store.appendQueryLine(chatId, "run_001", query("run_001", chatId, "help"));
@@ -494,7 +644,7 @@ class ChatStorageStoreTest {
         properties.setDir(tempDir.resolve("chats").toString());
         properties.setK(20);
 
-        ChatStorageStore store = new ChatStorageStore(objectMapper, properties);
+        ChatStorageStore store = new ChatStorageStore(objectMapper, properties, new ChatHistoryWriter(objectMapper, properties));
         String chatId = "123e4567-e89b-12d3-a456-426614174007";
         String runId = "run_010";
 
@@ -531,7 +681,7 @@ class ChatStorageStoreTest {
         properties.setDir(tempDir.resolve("chats").toString());
         properties.setK(20);
 
-        ChatStorageStore store = new ChatStorageStore(objectMapper, properties);
+        ChatStorageStore store = new ChatStorageStore(objectMapper, properties, new ChatHistoryWriter(objectMapper, properties));
 
         ChatStorageTypes.SystemSnapshot a = systemSnapshot("gpt-5.2", "prompt", true);
         ChatStorageTypes.SystemSnapshot b = systemSnapshot("gpt-5.2", "prompt", true);
@@ -542,6 +692,12 @@ class ChatStorageStoreTest {
         assertThat(store.isSameSystem(null, b)).isFalse();
     }
 
+    private List<Path> segmentFiles(Path dir, String suffix) throws Exception {
+        try (var files = Files.list(dir)) {
+            return files.filter(path -> path.getFileName().toString().endsWith(suffix)).sorted().toList();
+        }
+    }
+
     private Map<String, Object> query(String requestId, String chatId, String message) {
         Map<String, Object> query = new LinkedHashMap<>();
         query.put("requestId", requestId);
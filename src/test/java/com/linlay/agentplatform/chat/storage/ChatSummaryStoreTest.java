@@ -0,0 +1,57 @@
+package com.linlay.agentplatform.chat.storage;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.linlay.agentplatform.config.properties.ChatStorageProperties;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ChatSummaryStoreTest {
+
+    private static final String CHAT_ID = "123e4567-e89b-12d3-a456-426614174030";
+
+    @TempDir
+    Path tempDir;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void summaryShouldBeDroppedWhenHistoryIsTrimmedOrDeleted() throws Exception {
+        ChatStorageProperties properties = new ChatStorageProperties();
+        properties.setDir(tempDir.resolve("chats").toString());
+        properties.setK(1);
+        ChatHistoryWriter writer = new ChatHistoryWriter(objectMapper, properties);
+        ChatStorageStore store = new ChatStorageStore(objectMapper, properties, writer);
+        ChatSummaryStore summaryStore = new ChatSummaryStore(objectMapper, properties, writer);
+        Path summaryPath = tempDir.resolve("chats").resolve(CHAT_ID + ".summary.json");
+
+        appendRun(store, "run_001");
+        appendRun(store, "run_002");
+        summaryStore.save(CHAT_ID, new ChatSummaryStore.ChatSummary("run_001", "earlier turns", 1L));
+        assertThat(summaryStore.load(CHAT_ID).throughRunId()).isEqualTo("run_001");
+
+        store.trimToWindow(CHAT_ID);
+
+        assertThat(Files.exists(summaryPath)).isFalse();
+        assertThat(summaryStore.load(CHAT_ID)).isNull();
+
+        summaryStore.save(CHAT_ID, new ChatSummaryStore.ChatSummary("run_002", "latest turn", 2L));
+        assertThat(summaryStore.load(CHAT_ID)).isNotNull();
+        Files.delete(tempDir.resolve("chats").resolve(CHAT_ID + ".jsonl"));
+
+        assertThat(summaryStore.load(CHAT_ID)).isNull();
+        assertThat(Files.exists(summaryPath)).isFalse();
+        summaryStore.save(CHAT_ID, new ChatSummaryStore.ChatSummary("run_002", "late background summary", 3L));
+        assertThat(Files.exists(summaryPath)).isFalse();
+    }
+
+    private void appendRun(ChatStorageStore store, String runId) {
+        store.appendStepLine(CHAT_ID, runId, "oneshot", 1, null, null, null, null,
+                List.of(ChatStorageTypes.RunMessage.user("u-" + runId, 1000L)));
+    }
+}
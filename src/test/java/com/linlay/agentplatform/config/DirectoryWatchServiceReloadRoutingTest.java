@@ -34,8 +34,10 @@ import java.nio.file.Path;
 import java.util.LinkedHashSet;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anySet;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.mock;
@@ -165,8 +167,12 @@ class DirectoryWatchServiceReloadRoutingTest {
 
         Set<String> changedTools = Set.of("mock.weather.query");
         Set<String> affectedAgents = Set.of("agent.gamma");
-        when(mcpToolSyncService.refreshTools())
-                .thenReturn(new CatalogDiff(Set.of(), changedTools, Set.of()));
+        CatalogDiff changed = new CatalogDiff(Set.of(), changedTools, Set.of());
+        when(mcpToolSyncService.refreshTools(any())).thenAnswer(invocation -> {
+            Consumer<CatalogDiff> onPublished = invocation.getArgument(0);
+            onPublished.accept(changed);
+            return changed;
+        });
         when(agentRegistry.findAgentIdsByTools(changedTools)).thenReturn(affectedAgents);
 
         DirectoryWatchService service = createService(
@@ -186,7 +192,7 @@ class DirectoryWatchServiceReloadRoutingTest {
             trigger(service, tempDir.resolve("mcp-servers"), tempDir.resolve("mcp-servers").resolve("nested/server.yml"));
 
             verify(mcpServerRegistryService).refreshServers();
-            verify(mcpToolSyncService).refreshTools();
+            verify(mcpToolSyncService).refreshTools(any());
             verify(agentRegistry).findAgentIdsByTools(changedTools);
             verify(agentRegistry).refreshAgentsByIds(affectedAgents, "mcp-registry-directory");
             verify(agentRegistry, never()).refreshAgents();
@@ -262,6 +268,12 @@ class DirectoryWatchServiceReloadRoutingTest {
         AgentRegistry agentRegistry = mock(AgentRegistry.class);
         ViewportServerRegistryService viewportServerRegistryService = mock(ViewportServerRegistryService.class);
         ViewportSyncService viewportSyncService = mock(ViewportSyncService.class);
+        CatalogDiff changed = new CatalogDiff(Set.of("show_weather_card"), Set.of(), Set.of());
+        when(viewportSyncService.refreshViewports(any())).thenAnswer(invocation -> {
+            Consumer<CatalogDiff> onPublished = invocation.getArgument(0);
+            onPublished.accept(changed);
+            return changed;
+        });
 
         DirectoryWatchService service = createService(
                 agentRegistry,
@@ -280,7 +292,7 @@ class DirectoryWatchServiceReloadRoutingTest {
             trigger(service, tempDir.resolve("viewport-servers"), tempDir.resolve("viewport-servers").resolve("nested/server.yml"));
 
             verify(viewportServerRegistryService).refreshServers();
-            verify(viewportSyncService).refreshViewports();
+            verify(viewportSyncService).refreshViewports(any());
             verify(agentRegistry, never()).refreshAgentsByIds(anySet(), anyString());
             verify(agentRegistry, never()).refreshAgents();
         } finally {
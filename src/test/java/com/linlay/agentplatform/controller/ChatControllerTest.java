@@ -0,0 +1,64 @@
+package com.linlay.agentplatform.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.linlay.agentplatform.chat.history.ChatRecordStore;
+import com.linlay.agentplatform.chat.index.ChatNotFoundException;
+import com.linlay.agentplatform.chat.storage.ChatHistoryWriter;
+import com.linlay.agentplatform.config.properties.ChatStorageProperties;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import reactor.core.publisher.Flux;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ChatControllerTest {
+
+    @TempDir
+    Path tempDir;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void exportChatShouldStreamWholeHistoryAsJsonlAttachment() throws Exception {
+        String chatId = "123e4567-e89b-12d3-a456-426614174200";
+        String history = "{\"_type\":\"query\",\"chatId\":\"" + chatId + "\",\"runId\":\"run_1\"}\n"
+                + "{\"_type\":\"step\",\"chatId\":\"" + chatId + "\",\"runId\":\"run_1\"}\n";
+        Path chatDir = tempDir.resolve("chats");
+        Files.createDirectories(chatDir);
+        Files.writeString(chatDir.resolve(chatId + ".jsonl"), history);
+        ChatHistoryWriter historyWriter = new ChatHistoryWriter(objectMapper, properties(chatDir));
+        ChatController controller = new ChatController(
+                new ChatRecordStore(objectMapper, properties(chatDir), historyWriter), null);
+
+        try {
+            ResponseEntity<Flux<DataBuffer>> response = controller.exportChat(chatId);
+
+            assertThat(response.getHeaders().getContentType()).hasToString("application/x-ndjson");
+            assertThat(response.getHeaders().getFirst(HttpHeaders.CONTENT_DISPOSITION))
+                    .isEqualTo("attachment; filename=\"" + chatId + ".jsonl\"");
+            DataBuffer body = DataBufferUtils.join(response.getBody()).block();
+            assertThat(body.toString(StandardCharsets.UTF_8)).isEqualTo(history);
+            DataBufferUtils.release(body);
+            assertThatThrownBy(() -> controller.exportChat("123e4567-e89b-12d3-a456-426614174201"))
+                    .isInstanceOf(ChatNotFoundException.class);
+        } finally {
+            historyWriter.close();
+        }
+    }
+
+    private ChatStorageProperties properties(Path chatDir) {
+        ChatStorageProperties properties = new ChatStorageProperties();
+        properties.setDir(chatDir.toString());
+        properties.getIndex().setSqliteFile(chatDir.resolve("chats.db").toString());
+        return properties;
+    }
+}
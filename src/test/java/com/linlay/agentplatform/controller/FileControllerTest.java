@@ -141,6 +141,50 @@ class FileControllerTest {
                         assertThat(value).startsWith("attachment"));
     }
 
+    @Test
+    void shouldAnswerConditionalGetWithNotModified() throws Exception {
+        Path dataDir = Path.of(chatStorageProperties.getDir());
+        Files.writeString(dataDir.resolve("conditional.pdf"), "%PDF-1.4 conditional");
+
+        String eTag = webTestClient.get()
+                .uri(resourceApiUri("conditional.pdf"))
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().exists(HttpHeaders.LAST_MODIFIED)
+                .returnResult(byte[].class)
+                .getResponseHeaders()
+                .getETag();
+        assertThat(eTag).startsWith("\"").endsWith("\"");
+
+        webTestClient.get()
+                .uri(resourceApiUri("conditional.pdf"))
+                .header(HttpHeaders.IF_NONE_MATCH, eTag)
+                .exchange()
+                .expectStatus().isNotModified()
+                .expectBody().isEmpty();
+
+        Files.writeString(dataDir.resolve("conditional.pdf"), "%PDF-1.4 conditional, changed");
+        webTestClient.get()
+                .uri(resourceApiUri("conditional.pdf"))
+                .header(HttpHeaders.IF_NONE_MATCH, eTag)
+                .exchange()
+                .expectStatus().isOk();
+    }
+
+    @Test
+    void shouldServeRequestedByteRange() throws Exception {
+        Path dataDir = Path.of(chatStorageProperties.getDir());
+        Files.writeString(dataDir.resolve("range.csv"), "0123456789");
+
+        webTestClient.get()
+                .uri(resourceApiUri("range.csv"))
+                .header(HttpHeaders.RANGE, "bytes=2-5")
+                .exchange()
+                .expectStatus().isEqualTo(206)
+                .expectHeader().valueEquals(HttpHeaders.CONTENT_RANGE, "bytes 2-5/10")
+                .expectBody(String.class).isEqualTo("2345");
+    }
+
     @Test
     void shouldReturn404WhenFileNotFound() {
         webTestClient.get()
@@ -46,6 +46,7 @@ import static org.assertj.core.api.Assertions.assertThat;
                 "agent.providers.siliconflow.default-model=test-siliconflow-model",
                 "agent.auth.enabled=false",
                 "chat.storage.dir=${java.io.tmpdir}/agent-platform-runner-upload-chats-${random.uuid}",
+                "chat.storage.upload.max-bytes=65536",
                 "chat.storage.index.sqlite-file=${java.io.tmpdir}/agent-platform-runner-upload-chats-db-${random.uuid}/chats.db",
                 "agent.skills.external-dir=${java.io.tmpdir}/agent-platform-runner-upload-skills-${random.uuid}",
                 "agent.schedule.external-dir=${java.io.tmpdir}/agent-platform-runner-upload-schedules-${random.uuid}"
@@ -247,6 +248,109 @@ class FileControllerUploadTest {
         assertThat(data.path("upload").path("id").asText()).isEqualTo("r01");
     }
 
+    @Test
+    void postUploadShouldResumeChunkedUploadAndRejectOffsetMismatch() throws Exception {
+        String chatId = UUID.randomUUID().toString();
+        byte[] payload = "hello chunked upload".getBytes(StandardCharsets.UTF_8);
+        byte[] head = java.util.Arrays.copyOfRange(payload, 0, 8);
+        byte[] tail = java.util.Arrays.copyOfRange(payload, 8, payload.length);
+
+        JsonNode partial = responseData(webTestClient.post()
+                .uri("/api/upload")
+                .contentType(MediaType.MULTIPART_FORM_DATA)
+                .body(BodyInserters.fromMultipartData(chunk(chatId, "req-upload-chunk", head, 0, payload.length, null)))
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .returnResult());
+        assertThat(partial.path("upload").isNull()).isTrue();
+        assertThat(partial.path("receivedBytes").asLong()).isEqualTo(8L);
+
+        webTestClient.post()
+                .uri("/api/upload")
+                .contentType(MediaType.MULTIPART_FORM_DATA)
+                .body(BodyInserters.fromMultipartData(chunk(chatId, "req-upload-chunk", tail, 4, payload.length, null)))
+                .exchange()
+                .expectStatus().isEqualTo(409);
+
+        JsonNode status = responseData(webTestClient.get()
+                .uri("/api/upload?requestId=req-upload-chunk&chatId=" + chatId)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .returnResult());
+        assertThat(status.path("receivedBytes").asLong()).isEqualTo(8L);
+
+        JsonNode completed = responseData(webTestClient.post()
+                .uri("/api/upload")
+                .contentType(MediaType.MULTIPART_FORM_DATA)
+                .body(BodyInserters.fromMultipartData(chunk(chatId, "req-upload-chunk", tail, 8, payload.length, sha256Hex(payload))))
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .returnResult());
+        assertThat(completed.has("receivedBytes")).isFalse();
+        assertThat(completed.path("upload").path("sizeBytes").asLong()).isEqualTo(payload.length);
+        assertThat(completed.path("upload").path("sha256").asText()).isEqualTo(sha256Hex(payload));
+        Path chatDir = Path.of(chatStorageProperties.getDir()).resolve(chatId);
+        assertThat(Files.readAllBytes(chatDir.resolve("chunked.txt"))).isEqualTo(payload);
+        try (java.util.stream.Stream<Path> spool = Files.list(chatDir.resolve(".uploads").resolve("spool"))) {
+            assertThat(spool).isEmpty();
+        }
+    }
+
+    @Test
+    void postUploadShouldRejectResumedChunkWithoutChatIdOrRequestId() throws Exception {
+        byte[] tail = "tail".getBytes(StandardCharsets.UTF_8);
+        Path chatsDir = Path.of(chatStorageProperties.getDir());
+        Files.createDirectories(chatsDir);
+        long chatDirsBefore = countDirectories(chatsDir);
+
+        webTestClient.post()
+                .uri("/api/upload")
+                .contentType(MediaType.MULTIPART_FORM_DATA)
+                .body(BodyInserters.fromMultipartData(chunk(null, "req-upload-orphan", tail, 8, 12, null)))
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody()
+                .jsonPath("$.msg").isEqualTo("chatId is required when offset is set");
+
+        webTestClient.post()
+                .uri("/api/upload")
+                .contentType(MediaType.MULTIPART_FORM_DATA)
+                .body(BodyInserters.fromMultipartData(chunk(UUID.randomUUID().toString(), "", tail, 8, 12, null)))
+                .exchange()
+                .expectStatus().isBadRequest();
+
+        assertThat(countDirectories(chatsDir)).isEqualTo(chatDirsBefore);
+    }
+
+    @Test
+    void postUploadShouldRejectPayloadOverMaxBytesWithoutLeavingFile() throws Exception {
+        String chatId = UUID.randomUUID().toString();
+        byte[] payload = new byte[(int) chatStorageProperties.getUpload().getMaxBytes() + 1];
+
+        webTestClient.post()
+                .uri("/api/upload")
+                .contentType(MediaType.MULTIPART_FORM_DATA)
+                .body(BodyInserters.fromMultipartData(multipart(chatId, "req-upload-too-large", "large.bin",
+                        MediaType.APPLICATION_OCTET_STREAM, payload, null)))
+                .exchange()
+                .expectStatus().isEqualTo(413);
+
+        Path chatDir = Path.of(chatStorageProperties.getDir()).resolve(chatId);
+        assertThat(Files.exists(chatDir.resolve("large.bin"))).isFalse();
+        try (java.util.stream.Stream<Path> spool = Files.list(chatDir.resolve(".uploads").resolve("spool"))) {
+            assertThat(spool).isEmpty();
+        }
+    }
+
+    private long countDirectories(Path dir) throws Exception {
+        try (java.util.stream.Stream<Path> entries = Files.list(dir)) {
+            return entries.filter(Files::isDirectory).count();
+        }
+    }
+
     private EntityExchangeResult<byte[]> upload(
             String chatId,
             String requestId,
@@ -287,6 +391,29 @@ class FileControllerUploadTest {
         return builder.build();
     }
 
+    private org.springframework.util.MultiValueMap<String, HttpEntity<?>> chunk(
+            String chatId,
+            String requestId,
+            byte[] bytes,
+            long offset,
+            long totalSizeBytes,
+            String sha256
+    ) {
+        MultipartBodyBuilder builder = new MultipartBodyBuilder();
+        builder.part("requestId", requestId);
+        if (chatId != null) {
+            builder.part("chatId", chatId);
+        }
+        builder.part("offset", String.valueOf(offset));
+        builder.part("totalSizeBytes", String.valueOf(totalSizeBytes));
+        if (sha256 != null) {
+            builder.part("sha256", sha256);
+        }
+        builder.part("file", new NamedByteArrayResource("chunked.txt", bytes))
+                .contentType(MediaType.TEXT_PLAIN);
+        return builder.build();
+    }
+
     private JsonNode responseData(EntityExchangeResult<byte[]> result) throws Exception {
         JsonNode root = objectMapper.readTree(result.getResponseBodyContent());
         return root.path("data");
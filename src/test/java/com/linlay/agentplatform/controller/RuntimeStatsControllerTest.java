@@ -0,0 +1,52 @@
+package com.linlay.agentplatform.controller;
+
+import com.linlay.agentplatform.chat.history.ChatEventPersistenceQueue;
+import com.linlay.agentplatform.config.properties.RunAdmissionProperties;
+import com.linlay.agentplatform.config.properties.RunExecutorProperties;
+import com.linlay.agentplatform.engine.query.RunAdmissionService;
+import com.linlay.agentplatform.engine.runtime.AgentRunExecutor;
+import com.linlay.agentplatform.llm.LlmService;
+import com.linlay.agentplatform.model.api.ApiResponse;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RuntimeStatsControllerTest {
+
+    @Test
+    void statsShouldExposeRuntimeCounters() {
+        RunExecutorProperties properties = new RunExecutorProperties();
+        properties.setMaxConcurrentRuns(4);
+        properties.setMaxQueuedRuns(8);
+        AgentRunExecutor executor = new AgentRunExecutor(properties);
+        ChatEventPersistenceQueue persistenceQueue = new ChatEventPersistenceQueue(null, null);
+        try {
+            RuntimeStatsController controller = new RuntimeStatsController(
+                    executor,
+                    new RunAdmissionService(new RunAdmissionProperties()),
+                    new LlmService(),
+                    persistenceQueue
+            );
+
+            ApiResponse<Map<String, Object>> response = controller.stats();
+
+            assertThat(response.code()).isZero();
+            assertThat(response.data().get("runExecutor")).isInstanceOfSatisfying(AgentRunExecutor.Stats.class, stats -> {
+                assertThat(stats.maxConcurrentRuns()).isEqualTo(4);
+                assertThat(stats.maxQueuedRuns()).isEqualTo(8);
+            });
+            assertThat(response.data().get("runAdmission")).isInstanceOfSatisfying(RunAdmissionService.Stats.class,
+                    stats -> assertThat(stats.activeRuns()).isZero());
+            assertThat(response.data()).containsKeys("llmConnectionPools", "llmRoutes");
+            assertThat(response.data().get("chatEventPersistence")).isInstanceOfSatisfying(ChatEventPersistenceQueue.Stats.class, stats -> {
+                assertThat(stats.pendingEvents()).isZero();
+                assertThat(stats.backpressureFlushes()).isZero();
+            });
+        } finally {
+            persistenceQueue.destroy();
+            executor.destroy();
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.linlay.agentplatform.engine;
 
+import com.linlay.agentplatform.chat.storage.ChatHistoryWriter;
 import com.linlay.agentplatform.stream.model.LlmDelta;
 import com.linlay.agentplatform.stream.model.ToolCallDelta;
 import com.fasterxml.jackson.databind.JsonNode;
@@ -1062,7 +1063,7 @@ class DefinitionDrivenAgentTest {
     }
 
     @Test
-    void shouldInjectRuntimeContextBeforeStageMarkdownAndPersistIntoSystemSnapshot() throws Exception {
+    void shouldInjectRuntimeContextAfterStablePromptAndPersistIntoSystemSnapshot() throws Exception {
         Path runtimeHome = Files.createTempDirectory("runtime-home");
         Path externalOwner = Files.createTempDirectory("runtime-owner-external");
         Files.createDirectories(runtimeHome.resolve("configs"));
@@ -1121,7 +1122,7 @@ class DefinitionDrivenAgentTest {
 
         ChatStorageProperties properties = new ChatStorageProperties();
         properties.setDir(runtimeHome.resolve("chats").toString());
-        ChatStorageStore chatWindowMemoryStore = new ChatStorageStore(objectMapper, properties);
+        ChatStorageStore chatWindowMemoryStore = new ChatStorageStore(objectMapper, properties, new ChatHistoryWriter(objectMapper, properties));
 
         String originalUserDir = System.getProperty("user.dir");
         System.setProperty("user.dir", runtimeHome.toString());
@@ -1200,9 +1201,9 @@ class DefinitionDrivenAgentTest {
             assertThat(systemPrompt).contains("plain markdown");
             assertThat(systemPrompt).contains("yaml prompt");
             assertThat(systemPrompt).doesNotContain("runner_working_directory:");
-            assertThat(systemPrompt.indexOf("soul prompt")).isLessThan(systemPrompt.indexOf("Runtime Context: Context"));
-            assertThat(systemPrompt.indexOf("Runtime Context: Context")).isLessThan(systemPrompt.indexOf("plain markdown"));
+            assertThat(systemPrompt.indexOf("soul prompt")).isLessThan(systemPrompt.indexOf("plain markdown"));
             assertThat(systemPrompt.indexOf("plain markdown")).isLessThan(systemPrompt.indexOf("yaml prompt"));
+            assertThat(systemPrompt.indexOf("yaml prompt")).isLessThan(systemPrompt.indexOf("Runtime Context: Context"));
 
             ChatStorageTypes.SystemSnapshot snapshot = chatWindowMemoryStore.loadLatestSystemSnapshot(chatId);
             assertThat(snapshot).isNotNull();
@@ -1344,7 +1345,7 @@ class DefinitionDrivenAgentTest {
         ChatStorageProperties properties = new ChatStorageProperties();
         properties.setDir(memoryDir.toString());
         properties.setK(20);
-        ChatStorageStore memoryStore = new ChatStorageStore(objectMapper, properties);
+        ChatStorageStore memoryStore = new ChatStorageStore(objectMapper, properties, new ChatHistoryWriter(objectMapper, properties));
         String chatId = UUID.randomUUID().toString();
         String runId = "run_trace_ids";
 
@@ -2785,6 +2786,84 @@ class DefinitionDrivenAgentTest {
         assertThat(httpClient.events()).containsExactly("create", "execute", "execute", "stop");
     }
 
+    @Test
+    void preludeFailureShouldStopPrefetchedSandboxThatNoContextOwns() throws Exception {
+        RecordingHttpClient httpClient = new RecordingHttpClient();
+        httpClient.register("/api/sessions/create", request -> {
+            httpClient.record("create");
+            return new StubHttpResponse(request, 200, """
+                    {"session_id":"run-run1","cwd":"/workspace","status":"running"}
+                    """);
+        });
+        httpClient.register("/api/sessions/run-run1/stop", request -> {
+            httpClient.record("stop");
+            return new StubHttpResponse(request, 200, """
+                    {"session_id":"run-run1","status":"stopped"}
+                    """);
+        });
+        ContainerHubToolProperties properties = containerHubProperties("http://container-hub.test", "shell");
+        ContainerHubClient client = new ContainerHubClient(properties, objectMapper, httpClient);
+        ContainerHubSandboxService sandboxService = new ContainerHubSandboxService(
+                properties, client, containerHubMountResolver(properties, null, null));
+        ToolRegistry toolRegistry = new ToolRegistry(List.of(new SystemContainerHubBash(properties, client)));
+        SkillRegistryService skillRegistryService = mock(SkillRegistryService.class);
+        // 调用线程上的 run 快照日志正常返回，只让 run 虚拟线程上的 prelude 失败
+        when(skillRegistryService.find("broken_skill")).thenAnswer(invocation -> {
+            if (Thread.currentThread().isVirtual()) {
+                throw new IllegalStateException("skill registry unavailable");
+            }
+            return Optional.empty();
+        });
+
+        AgentDefinition definition = new AgentDefinition(
+                "sandboxed-runner",
+                "sandboxed-runner",
+                null,
+                "demo",
+                "role",
+                null,
+                "bailian",
+                "qwen3-max",
+                null,
+                AgentRuntimeMode.REACT,
+                new RunSpec(ToolChoice.AUTO, Budget.DEFAULT),
+                new ReactMode(new StageSettings("sys", null, null, List.of("_sandbox_bash_"), false, ComputePolicy.MEDIUM), 3, null, null),
+                List.of("_sandbox_bash_"),
+                List.of("broken_skill"),
+                new AgentDefinition.SandboxConfig("shell"),
+                List.of()
+        );
+        DefinitionDrivenAgent agent = createAgent(
+                definition,
+                new StubLlmService() {
+                    @Override
+                    protected Flux<LlmDelta> deltaByStage(String stage) {
+                        return Flux.empty();
+                    }
+                },
+                toolRegistry,
+                objectMapper,
+                null,
+                null,
+                skillRegistryService,
+                new LoggingAgentProperties(),
+                new LocalToolInvoker(toolRegistry),
+                null,
+                sandboxService
+        );
+
+        assertThatThrownBy(() -> agent.stream(new AgentRequest("test", "chat1", "req1", "run1", Map.of()))
+                .collectList()
+                .block(Duration.ofSeconds(3)))
+                .hasMessageContaining("skill registry unavailable");
+
+        long deadline = System.currentTimeMillis() + 2_000L;
+        while (!httpClient.events().contains("stop") && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertThat(httpClient.events()).containsExactly("create", "stop");
+    }
+
     @Test
     void sandboxedValidationAgentShouldInjectSkillCatalogAndExecuteBashThenPythonInContainerHub() throws Exception {
         RecordingHttpClient httpClient = new RecordingHttpClient();
@@ -0,0 +1,219 @@
+package com.linlay.agentplatform.engine.context;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.linlay.agentplatform.chat.storage.ChatMessage;
+import com.linlay.agentplatform.chat.storage.ChatStorageStore;
+import com.linlay.agentplatform.chat.storage.ChatSummaryStore;
+import com.linlay.agentplatform.config.properties.ChatStorageProperties;
+import com.linlay.agentplatform.config.properties.ContextWindowProperties;
+import com.linlay.agentplatform.config.properties.ModelProperties;
+import com.linlay.agentplatform.config.properties.ProviderProperties;
+import com.linlay.agentplatform.llm.LlmService;
+import com.linlay.agentplatform.llm.ProviderRegistryService;
+import com.linlay.agentplatform.model.ModelProtocol;
+import com.linlay.agentplatform.model.ModelRegistryService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import reactor.core.publisher.Mono;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ContextWindowManagerTest {
+
+    private static final String CHAT_ID = "123e4567-e89b-12d3-a456-426614174000";
+
+    @TempDir
+    Path tempDir;
+
+    private ModelRegistryService modelRegistryService;
+    private ChatSummaryStore summaryStore;
+    private final List<String> summaryPrompts = new CopyOnWriteArrayList<>();
+
+    @BeforeEach
+    void setUp() throws Exception {
+        Path providersDir = tempDir.resolve("providers");
+        Files.createDirectories(providersDir);
+        Files.writeString(providersDir.resolve("east.yml"), """
+                key: east
+                baseUrl: https://east.example.com
+                apiKey: dummy
+                defaultModel: dummy-model
+                """);
+        Path modelsDir = tempDir.resolve("models");
+        Files.createDirectories(modelsDir);
+        Files.writeString(modelsDir.resolve("small.yml"), """
+                key: small
+                provider: east
+                protocol: OPENAI
+                modelId: small-model
+                maxInputTokens: 2000
+                """);
+        ProviderProperties providerProperties = new ProviderProperties();
+        providerProperties.setExternalDir(providersDir.toString());
+        ModelProperties modelProperties = new ModelProperties();
+        modelProperties.setExternalDir(modelsDir.toString());
+        modelRegistryService = new ModelRegistryService(
+                new ObjectMapper(),
+                modelProperties,
+                new ProviderRegistryService(providerProperties)
+        );
+        ChatStorageProperties storageProperties = new ChatStorageProperties();
+        storageProperties.setDir(tempDir.resolve("chats").toString());
+        summaryStore = new ChatSummaryStore(new ObjectMapper(), storageProperties);
+    }
+
+    @Test
+    void heuristicEstimatorShouldCountCjkPerCharacterAndLatinPerFourCharacters() {
+        HeuristicTokenEstimator estimator = new HeuristicTokenEstimator();
+
+        assertThat(estimator.count(null)).isZero();
+        assertThat(estimator.count("abcdefgh")).isEqualTo(2);
+        assertThat(estimator.count("abcde")).isEqualTo(2);
+        assertThat(estimator.count("你好世界")).isEqualTo(4);
+        assertThat(estimator.count("你好 ab")).isEqualTo(3);
+    }
+
+    @Test
+    void shouldUseModelMaxInputTokensOrConfiguredDefault() {
+        ContextWindowProperties properties = new ContextWindowProperties();
+        properties.setReserveTokens(100);
+        ContextWindowManager manager = manager(properties);
+
+        assertThat(manager.budget("small")).isEqualTo(1900);
+        assertThat(manager.budget("unknown")).isEqualTo(properties.getDefaultMaxInputTokens() - 100);
+    }
+
+    @Test
+    void elisionShouldKeepHeadAndTailAndBeStableWhenAppliedAgain() {
+        ContextWindowManager manager = manager(new ContextWindowProperties());
+        String text = "HEAD" + "x".repeat(8_000) + "TAIL";
+
+        String elided = manager.elide(text, 300);
+
+        assertThat(elided).startsWith("HEAD").endsWith("TAIL").contains("...[已省略约 ");
+        assertThat(new HeuristicTokenEstimator().count(elided)).isLessThanOrEqualTo(300);
+        assertThat(manager.elide(elided, 300)).isSameAs(elided);
+        assertThat(manager.elide(text, 300)).isEqualTo(elided);
+    }
+
+    @Test
+    void fitTurnShouldDropOldestUnitsButKeepLatestUserTurn() {
+        ContextWindowProperties properties = new ContextWindowProperties();
+        properties.setReserveTokens(0);
+        ContextWindowManager manager = manager(properties);
+        List<ChatMessage> messages = List.of(
+                new ChatMessage.UserMsg("old question " + "a".repeat(4_000)),
+                new ChatMessage.AssistantMsg("", List.of(new ChatMessage.AssistantMsg.ToolCall("call_1", "function", "bash", "{}"))),
+                new ChatMessage.ToolResultMsg(List.of(new ChatMessage.ToolResultMsg.ToolResponse("call_1", "bash", "b".repeat(4_000)))),
+                new ChatMessage.AssistantMsg("old answer"),
+                new ChatMessage.UserMsg("new question"),
+                new ChatMessage.AssistantMsg("", List.of(new ChatMessage.AssistantMsg.ToolCall("call_2", "function", "bash", "{}"))),
+                new ChatMessage.ToolResultMsg(List.of(new ChatMessage.ToolResultMsg.ToolResponse("call_2", "bash", "c".repeat(4_000))))
+        );
+
+        List<ChatMessage> fitted = manager.fitTurn("small", "system", messages, null, List.of());
+
+        assertThat(fitted).containsExactlyElementsOf(messages.subList(3, messages.size()));
+        assertThat(messages).hasSize(7);
+        assertThat(manager.fitTurn("small", "system", messages.subList(3, 7), null, List.of())).isEqualTo(messages.subList(3, 7));
+    }
+
+    @Test
+    void fitTurnShouldCompactEarlierToolResultsOfCurrentTurnWhenStillOverBudget() {
+        ContextWindowProperties properties = new ContextWindowProperties();
+        properties.setReserveTokens(0);
+        ContextWindowManager manager = manager(properties);
+        List<ChatMessage> messages = List.of(
+                new ChatMessage.UserMsg("question"),
+                new ChatMessage.AssistantMsg("", List.of(new ChatMessage.AssistantMsg.ToolCall("call_1", "function", "bash", "{}"))),
+                new ChatMessage.ToolResultMsg(List.of(new ChatMessage.ToolResultMsg.ToolResponse("call_1", "bash", "b".repeat(6_000)))),
+                new ChatMessage.AssistantMsg("", List.of(new ChatMessage.AssistantMsg.ToolCall("call_2", "function", "bash", "{}"))),
+                new ChatMessage.ToolResultMsg(List.of(new ChatMessage.ToolResultMsg.ToolResponse("call_2", "bash", "c".repeat(6_000))))
+        );
+
+        List<ChatMessage> fitted = manager.fitTurn("small", "system", messages, null, List.of());
+
+        assertThat(fitted).hasSize(5);
+        assertThat(((ChatMessage.ToolResultMsg) fitted.get(2)).responses().get(0).responseData()).startsWith("[工具结果已省略");
+        assertThat(fitted.get(4)).isEqualTo(messages.get(4));
+    }
+
+    @Test
+    void fitHistoryShouldSummarizeOverflowRunsOnceAndReuseSummary() throws Exception {
+        ContextWindowProperties properties = new ContextWindowProperties();
+        properties.setReserveTokens(0);
+        ContextWindowManager manager = manager(properties);
+        List<ChatStorageStore.HistoryRun> runs = List.of(
+                run("run_1", "first " + "a".repeat(1_600)),
+                run("run_2", "second " + "b".repeat(1_600)),
+                run("run_3", "third " + "c".repeat(1_600))
+        );
+
+        List<ChatMessage> first = manager.fitHistory(CHAT_ID, runs, "small");
+
+        assertThat(first).containsExactlyElementsOf(concat(runs.get(1).messages(), runs.get(2).messages()));
+        waitUntil(() -> summaryStore.load(CHAT_ID) != null);
+        ChatSummaryStore.ChatSummary summary = summaryStore.load(CHAT_ID);
+        assertThat(summary.throughRunId()).isEqualTo("run_1");
+        assertThat(summaryPrompts).hasSize(1);
+        assertThat(summaryPrompts.get(0)).contains("用户：first");
+
+        List<ChatMessage> second = manager.fitHistory(CHAT_ID, runs, "small");
+
+        assertThat(second.get(0)).isEqualTo(new ChatMessage.SystemMsg(ContextWindowManager.SUMMARY_PREFIX + "summary of run_1"));
+        assertThat(second.subList(1, second.size())).containsExactlyElementsOf(concat(runs.get(1).messages(), runs.get(2).messages()));
+        assertThat(summaryPrompts).hasSize(1);
+    }
+
+    private ContextWindowManager manager(ContextWindowProperties properties) {
+        LlmService llmService = new LlmService() {
+            @Override
+            public Mono<String> completeText(
+                    String modelKey,
+                    String providerKey,
+                    String model,
+                    ModelProtocol protocol,
+                    String systemPrompt,
+                    String userPrompt,
+                    String stage
+            ) {
+                summaryPrompts.add(userPrompt);
+                return Mono.just("summary of run_1");
+            }
+        };
+        return new ContextWindowManager(
+                properties,
+                modelRegistryService,
+                new HeuristicTokenEstimator(),
+                new ObjectMapper(),
+                summaryStore,
+                llmService
+        );
+    }
+
+    private ChatStorageStore.HistoryRun run(String runId, String question) {
+        return new ChatStorageStore.HistoryRun(runId, List.of(
+                new ChatMessage.UserMsg(question),
+                new ChatMessage.AssistantMsg("answer " + runId)
+        ));
+    }
+
+    private List<ChatMessage> concat(List<ChatMessage> left, List<ChatMessage> right) {
+        return java.util.stream.Stream.concat(left.stream(), right.stream()).toList();
+    }
+
+    private void waitUntil(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000L;
+        while (!condition.getAsBoolean()) {
+            assertThat(System.currentTimeMillis()).isLessThan(deadline);
+            Thread.sleep(10L);
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package com.linlay.agentplatform.engine.definition;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.linlay.agentplatform.chat.storage.ChatHistoryWriter;
 import com.linlay.agentplatform.config.properties.AgentProperties;
 import com.linlay.agentplatform.engine.runtime.tool.LocalToolInvoker;
 import com.linlay.agentplatform.engine.runtime.tool.McpToolInvoker;
@@ -52,7 +53,8 @@ class AgentRegistryTest {
         ToolRegistry toolRegistry = new ToolRegistry(List.of(TestSystemBashFactory.defaultBash()));
         ChatStorageProperties memoryProperties = new ChatStorageProperties();
         memoryProperties.setDir(tempDir.resolve("chats").toString());
-        ChatStorageStore memoryStore = new ChatStorageStore(new ObjectMapper(), memoryProperties);
+        ObjectMapper storeMapper = new ObjectMapper();
+        ChatStorageStore memoryStore = new ChatStorageStore(storeMapper, memoryProperties, new ChatHistoryWriter(storeMapper, memoryProperties));
         StaticListableBeanFactory beanFactory = new StaticListableBeanFactory();
         ToolInvokerRouter toolInvokerRouter = new ToolInvokerRouter(
                 toolRegistry,
@@ -326,7 +328,8 @@ class AgentRegistryTest {
         ToolRegistry toolRegistry = new ToolRegistry(List.of(TestSystemBashFactory.defaultBash()));
         ChatStorageProperties memoryProperties = new ChatStorageProperties();
         memoryProperties.setDir(tempDir.resolve("chats").toString());
-        ChatStorageStore memoryStore = new ChatStorageStore(new ObjectMapper(), memoryProperties);
+        ObjectMapper storeMapper = new ObjectMapper();
+        ChatStorageStore memoryStore = new ChatStorageStore(storeMapper, memoryProperties, new ChatHistoryWriter(storeMapper, memoryProperties));
         StaticListableBeanFactory beanFactory = new StaticListableBeanFactory();
         ToolInvokerRouter toolInvokerRouter = new ToolInvokerRouter(
                 toolRegistry,
@@ -1,5 +1,6 @@
 package com.linlay.agentplatform.engine.query;
 
+import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.linlay.agentplatform.engine.prompt.RuntimeContextPromptService;
 import com.linlay.agentplatform.engine.runtime.tool.FrontendSubmitCoordinator;
@@ -22,6 +23,7 @@ import com.linlay.agentplatform.chat.history.ChatRecordStore;
 import com.linlay.agentplatform.integration.viewport.ViewportRegistryService;
 import com.linlay.agentplatform.stream.autoconfigure.StreamSseProperties;
 import com.linlay.agentplatform.stream.model.StreamRequest;
+import com.linlay.agentplatform.stream.model.StreamSseEvent;
 import com.linlay.agentplatform.stream.service.SseEventNormalizer;
 import com.linlay.agentplatform.stream.service.StreamSseStreamer;
 import com.linlay.agentplatform.catalog.team.TeamRegistryService;
@@ -33,7 +35,6 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.junit.jupiter.api.io.TempDir;
 import org.springframework.boot.test.system.OutputCaptureExtension;
-import org.springframework.http.codec.ServerSentEvent;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Sinks;
 
@@ -52,6 +53,7 @@ import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyMap;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -478,8 +480,8 @@ class AgentQueryServiceTest {
 
         com.linlay.agentplatform.stream.service.StreamSseStreamer streamer = mock(com.linlay.agentplatform.stream.service.StreamSseStreamer.class);
         when(streamer.stream(any(StreamRequest.class), any())).thenReturn(Flux.just(
-                ServerSentEvent.builder("{\"type\":\"content.delta\",\"delta\":\"hello\"}").build(),
-                ServerSentEvent.builder("{\"type\":\"run.complete\",\"runId\":\"run-1\",\"timestamp\":100}").build()
+                event("{\"type\":\"content.delta\",\"delta\":\"hello\"}"),
+                event("{\"type\":\"run.complete\",\"runId\":\"run-1\",\"timestamp\":100}")
         ));
 
         ChatRecordStore chatRecordStore = mock(ChatRecordStore.class);
@@ -503,7 +505,7 @@ class AgentQueryServiceTest {
                 new AgentRequest("fallback", UUID.randomUUID().toString(), "req-1", "run-1", Map.of())
         );
 
-        List<ServerSentEvent<String>> events = service.stream(session).collectList().block();
+        List<StreamSseEvent> events = service.stream(session).collectList().block();
         assertThat(events).hasSize(2);
         verify(chatRecordStore).onRunCompleted(any(ChatRecordStore.RunCompletion.class));
     }
@@ -518,12 +520,12 @@ class AgentQueryServiceTest {
 
         com.linlay.agentplatform.stream.service.StreamSseStreamer streamer = mock(com.linlay.agentplatform.stream.service.StreamSseStreamer.class);
         when(streamer.stream(any(StreamRequest.class), any())).thenReturn(Flux.just(
-                ServerSentEvent.builder("{\"type\":\"tool.start\",\"toolName\":\"_plan_add_tasks_\",\"toolId\":\"call_hidden_1\",\"runId\":\"run-1\"}").build(),
-                ServerSentEvent.builder("{\"type\":\"tool.args\",\"toolId\":\"call_hidden_1\",\"delta\":\"{}\"}").build(),
-                ServerSentEvent.builder("{\"type\":\"tool.end\",\"toolId\":\"call_hidden_1\"}").build(),
-                ServerSentEvent.builder("{\"type\":\"tool.result\",\"toolId\":\"call_hidden_1\",\"result\":\"ok\"}").build(),
-                ServerSentEvent.builder("{\"type\":\"content.delta\",\"delta\":\"final\"}").build(),
-                ServerSentEvent.builder("{\"type\":\"run.complete\",\"runId\":\"run-1\",\"timestamp\":200}").build()
+                event("{\"type\":\"tool.start\",\"toolName\":\"_plan_add_tasks_\",\"toolId\":\"call_hidden_1\",\"runId\":\"run-1\"}"),
+                event("{\"type\":\"tool.args\",\"toolId\":\"call_hidden_1\",\"delta\":\"{}\"}"),
+                event("{\"type\":\"tool.end\",\"toolId\":\"call_hidden_1\"}"),
+                event("{\"type\":\"tool.result\",\"toolId\":\"call_hidden_1\",\"result\":\"ok\"}"),
+                event("{\"type\":\"content.delta\",\"delta\":\"final\"}"),
+                event("{\"type\":\"run.complete\",\"runId\":\"run-1\",\"timestamp\":200}")
         ));
 
         ChatRecordStore chatRecordStore = mock(ChatRecordStore.class);
@@ -548,11 +550,11 @@ class AgentQueryServiceTest {
                 new AgentRequest("fallback", chatId, "req-1", "run-1", Map.of())
         );
 
-        List<ServerSentEvent<String>> events = service.stream(session).collectList().block();
+        List<StreamSseEvent> events = service.stream(session).collectList().block();
         assertThat(events).hasSize(2);
-        assertThat(events.stream().map(ServerSentEvent::data))
+        assertThat(events.stream().map(event -> event.dataString(objectMapper)))
                 .allMatch(item -> item.contains("\"content.delta\"") || item.contains("\"run.complete\""));
-        verify(chatRecordStore, times(2)).appendEvent(any(String.class), any(String.class), anyBoolean());
+        verify(chatRecordStore, times(2)).appendEvent(any(String.class), anyMap(), any(byte[].class), anyBoolean());
     }
 
     @Test
@@ -562,11 +564,11 @@ class AgentQueryServiceTest {
 
         StreamSseStreamer streamer = mock(StreamSseStreamer.class);
         when(streamer.stream(any(StreamRequest.class), any())).thenReturn(Flux.just(
-                ServerSentEvent.builder("{\"type\":\"tool.start\",\"toolName\":\"bash\",\"toolId\":\"call_1\",\"runId\":\"run-1\"}").build(),
-                ServerSentEvent.builder("{\"type\":\"tool.args\",\"toolId\":\"call_1\",\"delta\":\"{\\\"command\\\":\\\"pwd\\\"}\"}").build(),
-                ServerSentEvent.builder("{\"type\":\"tool.end\",\"toolId\":\"call_1\"}").build(),
-                ServerSentEvent.builder("{\"type\":\"tool.result\",\"toolId\":\"call_1\",\"result\":\"/workspace\"}").build(),
-                ServerSentEvent.builder("{\"type\":\"run.complete\",\"runId\":\"run-1\",\"timestamp\":200}").build()
+                event("{\"type\":\"tool.start\",\"toolName\":\"bash\",\"toolId\":\"call_1\",\"runId\":\"run-1\"}"),
+                event("{\"type\":\"tool.args\",\"toolId\":\"call_1\",\"delta\":\"{\\\"command\\\":\\\"pwd\\\"}\"}"),
+                event("{\"type\":\"tool.end\",\"toolId\":\"call_1\"}"),
+                event("{\"type\":\"tool.result\",\"toolId\":\"call_1\",\"result\":\"/workspace\"}"),
+                event("{\"type\":\"run.complete\",\"runId\":\"run-1\",\"timestamp\":200}")
         ));
 
         ChatRecordStore chatRecordStore = mock(ChatRecordStore.class);
@@ -592,16 +594,16 @@ class AgentQueryServiceTest {
                 new AgentRequest("fallback", chatId, "req-1", "run-1", Map.of())
         );
 
-        List<ServerSentEvent<String>> events = service.stream(session).collectList().block();
+        List<StreamSseEvent> events = service.stream(session).collectList().block();
 
         assertThat(events).hasSize(3);
-        assertThat(events.stream().map(ServerSentEvent::data))
+        assertThat(events.stream().map(event -> event.dataString(objectMapper)))
                 .anyMatch(item -> item.contains("\"type\":\"tool.start\""))
                 .anyMatch(item -> item.contains("\"type\":\"tool.end\""))
                 .anyMatch(item -> item.contains("\"type\":\"run.complete\""));
-        assertThat(events.stream().map(ServerSentEvent::data))
+        assertThat(events.stream().map(event -> event.dataString(objectMapper)))
                 .noneMatch(item -> item.contains("\"type\":\"tool.args\"") || item.contains("\"type\":\"tool.result\""));
-        verify(chatRecordStore, times(3)).appendEvent(any(String.class), any(String.class), anyBoolean());
+        verify(chatRecordStore, times(3)).appendEvent(any(String.class), anyMap(), any(byte[].class), anyBoolean());
     }
 
     @Test
@@ -611,11 +613,11 @@ class AgentQueryServiceTest {
 
         StreamSseStreamer streamer = mock(StreamSseStreamer.class);
         when(streamer.stream(any(StreamRequest.class), any())).thenReturn(Flux.just(
-                ServerSentEvent.builder("{\"type\":\"tool.start\",\"toolName\":\"bash\",\"toolId\":\"call_1\",\"runId\":\"run-1\"}").build(),
-                ServerSentEvent.builder("{\"type\":\"tool.args\",\"toolId\":\"call_1\",\"delta\":\"{\\\"command\\\":\\\"pwd\\\"}\"}").build(),
-                ServerSentEvent.builder("{\"type\":\"tool.end\",\"toolId\":\"call_1\"}").build(),
-                ServerSentEvent.builder("{\"type\":\"tool.result\",\"toolId\":\"call_1\",\"result\":\"/workspace\"}").build(),
-                ServerSentEvent.builder("{\"type\":\"run.complete\",\"runId\":\"run-1\",\"timestamp\":200}").build()
+                event("{\"type\":\"tool.start\",\"toolName\":\"bash\",\"toolId\":\"call_1\",\"runId\":\"run-1\"}"),
+                event("{\"type\":\"tool.args\",\"toolId\":\"call_1\",\"delta\":\"{\\\"command\\\":\\\"pwd\\\"}\"}"),
+                event("{\"type\":\"tool.end\",\"toolId\":\"call_1\"}"),
+                event("{\"type\":\"tool.result\",\"toolId\":\"call_1\",\"result\":\"/workspace\"}"),
+                event("{\"type\":\"run.complete\",\"runId\":\"run-1\",\"timestamp\":200}")
         ));
 
         ChatRecordStore chatRecordStore = mock(ChatRecordStore.class);
@@ -641,16 +643,16 @@ class AgentQueryServiceTest {
                 new AgentRequest("fallback", chatId, "req-1", "run-1", Map.of())
         );
 
-        List<ServerSentEvent<String>> events = service.stream(session).collectList().block();
+        List<StreamSseEvent> events = service.stream(session).collectList().block();
 
         assertThat(events).hasSize(5);
-        assertThat(events.stream().map(ServerSentEvent::data))
+        assertThat(events.stream().map(event -> event.dataString(objectMapper)))
                 .anyMatch(item -> item.contains("\"type\":\"tool.start\""))
                 .anyMatch(item -> item.contains("\"type\":\"tool.args\""))
                 .anyMatch(item -> item.contains("\"type\":\"tool.end\""))
                 .anyMatch(item -> item.contains("\"type\":\"tool.result\""))
                 .anyMatch(item -> item.contains("\"type\":\"run.complete\""));
-        verify(chatRecordStore, times(5)).appendEvent(any(String.class), any(String.class), anyBoolean());
+        verify(chatRecordStore, times(5)).appendEvent(any(String.class), anyMap(), any(byte[].class), anyBoolean());
     }
 
     @Test
@@ -663,8 +665,7 @@ class AgentQueryServiceTest {
         AgentQueryService service = newService(
                 mock(AgentRegistry.class),
                 new StreamSseStreamer(
-                        new com.linlay.agentplatform.stream.service.StreamEventAssembler(),
-                        objectMapper
+                        new com.linlay.agentplatform.stream.service.StreamEventAssembler()
                 ),
                 mock(ChatRecordStore.class),
                 mock(ToolRegistry.class),
@@ -684,7 +685,7 @@ class AgentQueryServiceTest {
                 new AgentRequest("fallback", chatId, "req-1", "run-1", Map.of())
         );
 
-        CompletableFuture<List<ServerSentEvent<String>>> collectedFuture = CompletableFuture.supplyAsync(() ->
+        CompletableFuture<List<StreamSseEvent>> collectedFuture = CompletableFuture.supplyAsync(() ->
                 service.stream(session).collectList().block(Duration.ofSeconds(5))
         );
 
@@ -714,10 +715,10 @@ class AgentQueryServiceTest {
         upstream.tryEmitNext(AgentDelta.finish("stop"));
         upstream.tryEmitComplete();
 
-        List<ServerSentEvent<String>> events = collectedFuture.join();
+        List<StreamSseEvent> events = collectedFuture.join();
         List<String> payloads = new ArrayList<>();
-        for (ServerSentEvent<String> event : events) {
-            payloads.add(event.data());
+        for (StreamSseEvent event : events) {
+            payloads.add(event.dataString(objectMapper));
         }
 
         assertThat(payloads).noneMatch(item -> item != null && item.contains("\"type\":\"request.steer\""));
@@ -725,6 +726,15 @@ class AgentQueryServiceTest {
         assertThat(payloads).anyMatch(item -> item != null && item.contains("\"type\":\"run.complete\""));
     }
 
+    private StreamSseEvent event(String json) {
+        try {
+            return StreamSseEvent.message(objectMapper.readValue(json, new TypeReference<Map<String, Object>>() {
+            }));
+        } catch (Exception ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
     private ToolDescriptor hiddenTool(String toolName) {
         return new ToolDescriptor(
                 toolName,
@@ -806,14 +816,14 @@ class AgentQueryServiceTest {
                 renderQueue,
                 runtimeContextPromptService == null ? new RuntimeContextPromptService() : runtimeContextPromptService,
                 new SseEventNormalizer(
-                        objectMapper,
                         effectiveToolRegistry,
                         viewportRegistryService,
                         frontendToolProperties,
                         streamSseProperties == null ? new StreamSseProperties(null, null, false) : streamSseProperties
                 ),
                 sandboxContextResolver,
-                containerHubToolProperties
+                containerHubToolProperties,
+                null
         );
     }
 }
@@ -0,0 +1,190 @@
+package com.linlay.agentplatform.engine.query;
+
+import com.linlay.agentplatform.config.properties.RunAdmissionProperties;
+import com.linlay.agentplatform.engine.exception.RunAdmissionRejectedException;
+import org.junit.jupiter.api.Test;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class RunAdmissionServiceTest {
+
+    @Test
+    void shouldQueueRunsBeyondPerSubjectAndPerAgentLimits() {
+        RunAdmissionProperties properties = properties(10, 2, 1, 10);
+        RunAdmissionService service = new RunAdmissionService(properties);
+
+        RunAdmissionService.Permit alice = service.acquire(interactive("agent-a", "alice")).block(Duration.ofSeconds(1));
+        List<String> admitted = new CopyOnWriteArrayList<>();
+        List<RunAdmissionService.Permit> permits = new CopyOnWriteArrayList<>();
+        service.acquire(interactive("agent-b", "alice")).subscribe(permit -> {
+            admitted.add("alice-2");
+            permits.add(permit);
+        });
+        service.acquire(interactive("agent-a", "bob")).subscribe(permit -> {
+            admitted.add("bob");
+            permits.add(permit);
+        });
+        service.acquire(interactive("agent-a", "carol")).subscribe(permit -> {
+            admitted.add("carol");
+            permits.add(permit);
+        });
+
+        assertThat(admitted).containsExactly("bob");
+        assertThat(service.stats().activeRuns()).isEqualTo(2);
+        assertThat(service.stats().queuedRuns()).isEqualTo(2);
+
+        alice.release();
+        alice.release();
+        assertThat(admitted).containsExactlyInAnyOrder("bob", "alice-2", "carol");
+        assertThat(service.stats().activeRuns()).isEqualTo(3);
+        assertThat(service.stats().queuedRuns()).isZero();
+
+        permits.forEach(RunAdmissionService.Permit::release);
+        assertThat(service.stats().activeRuns()).isZero();
+    }
+
+    @Test
+    void shouldRejectWhenQueueIsFull() {
+        RunAdmissionService service = new RunAdmissionService(properties(1, 10, 10, 1));
+
+        service.acquire(interactive("agent", "alice")).block(Duration.ofSeconds(1));
+        Disposable queued = service.acquire(interactive("agent", "bob")).subscribe();
+
+        assertThatThrownBy(() -> service.acquire(interactive("agent", "carol")).block(Duration.ofSeconds(1)))
+                .isInstanceOf(RunAdmissionRejectedException.class)
+                .satisfies(ex -> assertThat(((RunAdmissionRejectedException) ex).retryAfterSeconds()).isEqualTo(7));
+        assertThat(service.stats().rejectedRuns()).isEqualTo(1);
+
+        queued.dispose();
+        assertThat(service.stats().queuedRuns()).isZero();
+    }
+
+    @Test
+    void shouldTimeOutQueuedRuns() {
+        RunAdmissionProperties properties = properties(1, 10, 10, 10);
+        properties.setQueueTimeoutMs(50);
+        RunAdmissionService service = new RunAdmissionService(properties);
+
+        service.acquire(interactive("agent", "alice")).block(Duration.ofSeconds(1));
+
+        assertThatThrownBy(() -> service.acquire(interactive("agent", "bob")).block(Duration.ofSeconds(2)))
+                .isInstanceOf(RunAdmissionRejectedException.class);
+        assertThat(service.stats().timedOutRuns()).isEqualTo(1);
+        assertThat(service.stats().queuedRuns()).isZero();
+    }
+
+    @Test
+    void scheduledBurstShouldNotStarveInteractiveUsers() {
+        RunAdmissionProperties properties = properties(1, 100, 100, 100);
+        RunAdmissionService service = new RunAdmissionService(properties);
+
+        RunAdmissionService.Permit first = service.acquire(scheduled("agent")).block(Duration.ofSeconds(1));
+        List<String> order = new CopyOnWriteArrayList<>();
+        List<RunAdmissionService.Permit> permits = new CopyOnWriteArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            String label = "schedule-" + i;
+            service.acquire(scheduled("agent")).subscribe(permit -> {
+                order.add(label);
+                permits.add(permit);
+            });
+        }
+        for (String subject : List.of("alice", "bob")) {
+            service.acquire(interactive("agent", subject)).subscribe(permit -> {
+                order.add(subject);
+                permits.add(permit);
+            });
+        }
+
+        first.release();
+        for (int i = 0; i < 8; i++) {
+            permits.get(i).release();
+        }
+
+        List<String> firstFour = new ArrayList<>(order.subList(0, 4));
+        assertThat(firstFour).contains("alice", "bob");
+        assertThat(order).hasSize(8);
+        assertThat(service.stats().activeRuns()).isZero();
+    }
+
+    @Test
+    void cancellingQueuedRunWhileItIsGrantedShouldNotLeakTheSlot() throws Exception {
+        RunAdmissionService service = new RunAdmissionService(properties(1, 10, 10, 10));
+
+        for (int i = 0; i < 500; i++) {
+            RunAdmissionService.Permit holder = service.acquire(interactive("agent", "alice")).block(Duration.ofSeconds(1));
+            List<RunAdmissionService.Permit> delivered = new CopyOnWriteArrayList<>();
+            Disposable queued = service.acquire(interactive("agent", "bob"))
+                    .flatMap(permit -> {
+                        delivered.add(permit);
+                        return Mono.empty();
+                    })
+                    .subscribe();
+            assertThat(service.stats().queuedRuns()).isEqualTo(1);
+
+            CyclicBarrier barrier = new CyclicBarrier(2);
+            Thread releaser = Thread.ofPlatform().start(() -> {
+                await(barrier);
+                holder.release();
+            });
+            Thread canceller = Thread.ofPlatform().start(() -> {
+                await(barrier);
+                queued.dispose();
+            });
+            releaser.join(5_000L);
+            canceller.join(5_000L);
+            delivered.forEach(RunAdmissionService.Permit::release);
+
+            RunAdmissionService.Stats stats = service.stats();
+            assertThat(stats.activeRuns()).as("active runs after iteration %d", i).isZero();
+            assertThat(stats.queuedRuns()).as("queued runs after iteration %d", i).isZero();
+        }
+    }
+
+    @Test
+    void disabledAdmissionShouldAlwaysAdmit() {
+        RunAdmissionProperties properties = properties(1, 1, 1, 0);
+        properties.setEnabled(false);
+        RunAdmissionService service = new RunAdmissionService(properties);
+
+        for (int i = 0; i < 5; i++) {
+            assertThat(service.acquire(interactive("agent", "alice")).block(Duration.ofSeconds(1))).isNotNull();
+        }
+        assertThat(service.stats().admittedRuns()).isZero();
+    }
+
+    private static void await(CyclicBarrier barrier) {
+        try {
+            barrier.await(5, TimeUnit.SECONDS);
+        } catch (Exception ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private RunAdmissionProperties properties(int maxConcurrentRuns, int maxRunsPerAgent, int maxRunsPerSubject, int maxQueuedRuns) {
+        RunAdmissionProperties properties = new RunAdmissionProperties();
+        properties.setMaxConcurrentRuns(maxConcurrentRuns);
+        properties.setMaxRunsPerAgent(maxRunsPerAgent);
+        properties.setMaxRunsPerSubject(maxRunsPerSubject);
+        properties.setMaxQueuedRuns(maxQueuedRuns);
+        properties.setRetryAfterSeconds(7);
+        return properties;
+    }
+
+    private RunAdmissionService.Ticket interactive(String agentKey, String subject) {
+        return new RunAdmissionService.Ticket(agentKey, subject, RunAdmissionService.Source.INTERACTIVE);
+    }
+
+    private RunAdmissionService.Ticket scheduled(String agentKey) {
+        return new RunAdmissionService.Ticket(agentKey, null, RunAdmissionService.Source.SCHEDULED);
+    }
+}
@@ -0,0 +1,189 @@
+package com.linlay.agentplatform.engine.runtime;
+
+import com.linlay.agentplatform.config.properties.RunExecutorProperties;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class AgentRunExecutorTest {
+
+    private AgentRunExecutor executor;
+
+    @AfterEach
+    void tearDown() {
+        if (executor != null) {
+            executor.destroy();
+        }
+    }
+
+    @Test
+    void shouldRunOnVirtualThreadsAndQueueBeyondConcurrencyCeiling() throws Exception {
+        executor = newExecutor(2, 100);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch finished = new CountDownLatch(5);
+        AtomicBoolean allVirtual = new AtomicBoolean(true);
+
+        for (int i = 0; i < 5; i++) {
+            executor.execute(() -> {
+                if (!Thread.currentThread().isVirtual()) {
+                    allVirtual.set(false);
+                }
+                try {
+                    release.await();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+                finished.countDown();
+            });
+        }
+
+        waitUntil(() -> executor.stats().activeRuns() == 2);
+        assertThat(executor.stats().queuedRuns()).isEqualTo(3);
+
+        release.countDown();
+        assertThat(finished.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(allVirtual).isTrue();
+        waitUntil(() -> executor.stats().completedRuns() == 5);
+        AgentRunExecutor.Stats stats = executor.stats();
+        assertThat(stats.activeRuns()).isZero();
+        assertThat(stats.queuedRuns()).isZero();
+        assertThat(stats.maxQueuedObserved()).isGreaterThanOrEqualTo(3);
+    }
+
+    @Test
+    void shouldRejectRunsWhenQueueIsFull() throws Exception {
+        executor = newExecutor(1, 1);
+        CountDownLatch release = new CountDownLatch(1);
+        Runnable blocking = () -> {
+            try {
+                release.await();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        };
+        executor.execute(blocking);
+        waitUntil(() -> executor.stats().activeRuns() == 1);
+        executor.execute(blocking);
+
+        assertThatThrownBy(() -> executor.execute(blocking)).isInstanceOf(RejectedExecutionException.class);
+        assertThatThrownBy(() -> Mono.fromCallable(() -> "run")
+                .subscribeOn(executor.scheduler())
+                .block(Duration.ofSeconds(5)))
+                .hasRootCauseInstanceOf(RejectedExecutionException.class);
+        assertThat(executor.stats().rejectedRuns()).isEqualTo(2);
+        release.countDown();
+    }
+
+    @Test
+    void concurrentSubmitsShouldNotOvershootQueueLimit() throws Exception {
+        executor = newExecutor(2, 3);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger accepted = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+        Runnable blocking = () -> {
+            try {
+                release.await();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        };
+        List<Thread> submitters = new ArrayList<>();
+        for (int i = 0; i < 32; i++) {
+            submitters.add(Thread.ofPlatform().start(() -> {
+                try {
+                    start.await();
+                    executor.execute(blocking);
+                    accepted.incrementAndGet();
+                } catch (RejectedExecutionException ex) {
+                    rejected.incrementAndGet();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            }));
+        }
+        start.countDown();
+        for (Thread submitter : submitters) {
+            submitter.join(5_000L);
+        }
+
+        assertThat(accepted.get()).isEqualTo(5);
+        assertThat(rejected.get()).isEqualTo(27);
+        waitUntil(() -> executor.stats().activeRuns() == 2);
+        assertThat(executor.stats().queuedRuns()).isEqualTo(3);
+        release.countDown();
+        waitUntil(() -> executor.stats().completedRuns() == 5);
+
+        executor.execute(blocking);
+        waitUntil(() -> executor.stats().completedRuns() == 6);
+    }
+
+    @Test
+    void streamingRunShouldHoldOneSlotWhileDownstreamRequestsMoreOnOtherThreads() throws Exception {
+        executor = newExecutor(1, 0);
+        CountDownLatch halfway = new CountDownLatch(1);
+        CountDownLatch resume = new CountDownLatch(1);
+        Flux<Integer> run = Flux.create(sink -> {
+            for (int i = 0; i < 64; i++) {
+                sink.next(i);
+                if (i == 31) {
+                    halfway.countDown();
+                    try {
+                        resume.await();
+                    } catch (InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            }
+            sink.complete();
+        }, FluxSink.OverflowStrategy.BUFFER);
+
+        CompletableFuture<List<Integer>> received = executor.admit(run)
+                .publishOn(Schedulers.parallel(), 8)
+                .collectList()
+                .toFuture();
+        assertThat(halfway.await(5, TimeUnit.SECONDS)).isTrue();
+        // 执行器已被这个 run 占满：新的 run 被拒绝，但它自己的下游请求不受影响
+        assertThatThrownBy(() -> executor.execute(() -> {
+        })).isInstanceOf(RejectedExecutionException.class);
+        resume.countDown();
+
+        assertThat(received.get(5, TimeUnit.SECONDS)).hasSize(64);
+        waitUntil(() -> executor.stats().completedRuns() == 1);
+        AgentRunExecutor.Stats stats = executor.stats();
+        assertThat(stats.submittedRuns()).isEqualTo(1);
+        assertThat(stats.rejectedRuns()).isEqualTo(1);
+    }
+
+    private void waitUntil(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000L;
+        while (!condition.getAsBoolean()) {
+            assertThat(System.currentTimeMillis()).isLessThan(deadline);
+            Thread.sleep(10L);
+        }
+    }
+
+    private AgentRunExecutor newExecutor(int maxConcurrentRuns, int maxQueuedRuns) {
+        RunExecutorProperties properties = new RunExecutorProperties();
+        properties.setMaxConcurrentRuns(maxConcurrentRuns);
+        properties.setMaxQueuedRuns(maxQueuedRuns);
+        return new AgentRunExecutor(properties);
+    }
+}
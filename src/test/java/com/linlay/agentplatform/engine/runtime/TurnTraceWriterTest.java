@@ -1,6 +1,7 @@
 package com.linlay.agentplatform.engine.runtime;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.linlay.agentplatform.chat.storage.ChatHistoryWriter;
 import com.linlay.agentplatform.config.properties.ChatStorageProperties;
 import com.linlay.agentplatform.chat.storage.ChatStorageStore;
 import com.linlay.agentplatform.model.AgentDelta;
@@ -25,7 +26,8 @@ class TurnTraceWriterTest {
         ChatStorageProperties properties = new ChatStorageProperties();
         properties.setDir(tempDir.resolve("chats").toString());
         properties.setK(20);
-        ChatStorageStore store = new ChatStorageStore(new ObjectMapper(), properties);
+        ObjectMapper storeMapper = new ObjectMapper();
+        ChatStorageStore store = new ChatStorageStore(storeMapper, properties, new ChatHistoryWriter(storeMapper, properties));
 
         String chatId = "123e4567-e89b-12d3-a456-426614174188";
         String runId = "run_trace_1";
@@ -1,5 +1,6 @@
 package com.linlay.agentplatform.engine.runtime.tool;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.linlay.agentplatform.engine.runtime.ExecutionContext;
@@ -7,6 +8,7 @@ import com.linlay.agentplatform.config.properties.McpProperties;
 import com.linlay.agentplatform.integration.mcp.McpServerAvailabilityGate;
 import com.linlay.agentplatform.integration.mcp.McpServerRegistryService;
 import com.linlay.agentplatform.integration.mcp.McpStreamableHttpClient;
+import com.linlay.agentplatform.model.AgentDelta;
 import com.linlay.agentplatform.model.AgentRequest;
 import com.linlay.agentplatform.tool.ToolDescriptor;
 import com.linlay.agentplatform.tool.ToolRegistry;
@@ -15,10 +17,14 @@ import org.junit.jupiter.api.Test;
 import java.time.Clock;
 import java.time.Instant;
 import java.time.ZoneId;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyMap;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
@@ -59,7 +65,7 @@ class McpToolInvokerTest {
         result.put("isError", false);
         result.set("structuredContent", new ObjectMapper().createObjectNode().put("temperatureC", 21));
         McpStreamableHttpClient client = mock(McpStreamableHttpClient.class);
-        when(client.callTool(server, "mock.weather.query", Map.of("city", "Shanghai"), Map.of()))
+        when(client.callTool(eq(server), eq("mock.weather.query"), eq(Map.of("city", "Shanghai")), eq(Map.of()), any()))
                 .thenReturn(result);
 
         McpProperties properties = new McpProperties();
@@ -91,7 +97,7 @@ class McpToolInvokerTest {
         result.put("isError", false);
         result.set("structuredContent", new ObjectMapper().createObjectNode().put("temperatureC", 21));
         McpStreamableHttpClient client = mock(McpStreamableHttpClient.class);
-        when(client.callTool(eq(server), eq("mock.weather.query"), eq(Map.of("city", "Shanghai")), anyMap()))
+        when(client.callTool(eq(server), eq("mock.weather.query"), eq(Map.of("city", "Shanghai")), anyMap(), any()))
                 .thenReturn(result);
 
         ExecutionContext context = mock(ExecutionContext.class);
@@ -117,15 +123,73 @@ class McpToolInvokerTest {
         invoker.invoke("mock.weather.query", Map.of("city", "Shanghai"), context);
 
         verify(client).callTool(
-                server,
-                "mock.weather.query",
-                Map.of("city", "Shanghai"),
-                Map.of(
+                eq(server),
+                eq("mock.weather.query"),
+                eq(Map.of("city", "Shanghai")),
+                eq(Map.of(
                         "chatId", "123e4567-e89b-12d3-a456-426614174030",
                         "requestId", "req-1",
                         "runId", "run-1",
                         "toolName", "mock.weather.query"
-                )
+                )),
+                any()
+        );
+    }
+
+    @Test
+    void shouldForwardProgressNotificationsToActiveToolInvocation() {
+        ToolRegistry toolRegistry = mock(ToolRegistry.class);
+        when(toolRegistry.descriptor("mock.weather.query")).thenReturn(Optional.of(descriptor()));
+
+        McpServerRegistryService registryService = mock(McpServerRegistryService.class);
+        McpServerRegistryService.RegisteredServer server = server();
+        when(registryService.find("mock")).thenReturn(Optional.of(server));
+
+        ObjectMapper objectMapper = new ObjectMapper();
+        ObjectNode progress = objectMapper.createObjectNode();
+        progress.put("method", "notifications/progress");
+        progress.set("params", objectMapper.createObjectNode().put("progress", 1).put("total", 2));
+        ObjectNode message = objectMapper.createObjectNode();
+        message.put("method", "notifications/message");
+        message.set("params", objectMapper.createObjectNode().put("data", "ignored"));
+        ObjectNode result = objectMapper.createObjectNode();
+        result.set("structuredContent", objectMapper.createObjectNode().put("temperatureC", 21));
+        McpStreamableHttpClient client = mock(McpStreamableHttpClient.class);
+        when(client.callTool(eq(server), eq("mock.weather.query"), eq(Map.of("city", "Shanghai")), anyMap(), any()))
+                .thenAnswer(invocation -> {
+                    Consumer<JsonNode> listener = invocation.getArgument(4);
+                    // 与真实客户端一致：通知在 IO 线程上回调
+                    Thread ioThread = new Thread(() -> {
+                        listener.accept(progress);
+                        listener.accept(message);
+                    });
+                    ioThread.start();
+                    ioThread.join();
+                    return result;
+                });
+
+        List<AgentDelta> emitted = new CopyOnWriteArrayList<>();
+        ExecutionContext context = mock(ExecutionContext.class);
+        when(context.activeToolInvocation())
+                .thenReturn(new ExecutionContext.ToolInvocationContext("call_1", "mock.weather.query", null));
+        when(context.captureDeltaEmitter()).thenReturn(emitted::add);
+
+        McpProperties properties = new McpProperties();
+        properties.setEnabled(true);
+        McpToolInvoker invoker = new McpToolInvoker(
+                toolRegistry,
+                properties,
+                registryService,
+                new McpServerAvailabilityGate(properties),
+                client,
+                objectMapper
+        );
+
+        invoker.invoke("mock.weather.query", Map.of("city", "Shanghai"), context);
+
+        assertThat(emitted).hasSize(1);
+        assertThat(emitted.get(0).toolProgresses()).containsExactly(
+                new AgentDelta.ToolProgress("call_1", Map.of("progress", 1, "total", 2))
         );
     }
 
@@ -160,7 +224,7 @@ class McpToolInvokerTest {
                 .isEqualTo("mcp_server_unavailable");
         assertThat(invoker.invoke("mock.weather.query", Map.of("city", "Shanghai"), null).path("error").asText())
                 .contains("scheduled reconnect");
-        verify(client, times(0)).callTool(server, "mock.weather.query", Map.of("city", "Shanghai"), Map.of());
+        verify(client, times(0)).callTool(eq(server), eq("mock.weather.query"), eq(Map.of("city", "Shanghai")), eq(Map.of()), any());
     }
 
     @Test
@@ -178,7 +242,7 @@ class McpToolInvokerTest {
         success.set("structuredContent", new ObjectMapper().createObjectNode().put("temperatureC", 18));
 
         McpStreamableHttpClient client = mock(McpStreamableHttpClient.class);
-        when(client.callTool(server, "mock.weather.query", Map.of("city", "Shanghai"), Map.of()))
+        when(client.callTool(eq(server), eq("mock.weather.query"), eq(Map.of("city", "Shanghai")), eq(Map.of()), any()))
                 .thenThrow(new IllegalStateException("connection refused"))
                 .thenReturn(success);
 
@@ -205,7 +269,7 @@ class McpToolInvokerTest {
         assertThat(invoker.invoke("mock.weather.query", Map.of("city", "Shanghai"), null)
                 .path("temperatureC").asInt()).isEqualTo(18);
 
-        verify(client, times(2)).callTool(server, "mock.weather.query", Map.of("city", "Shanghai"), Map.of());
+        verify(client, times(2)).callTool(eq(server), eq("mock.weather.query"), eq(Map.of("city", "Shanghai")), eq(Map.of()), any());
     }
 
     private static ToolDescriptor descriptor() {
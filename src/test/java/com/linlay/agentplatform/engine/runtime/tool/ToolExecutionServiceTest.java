@@ -27,6 +27,7 @@ import com.linlay.agentplatform.chat.asset.ChatDataPathService;
 import com.linlay.agentplatform.stream.model.StreamEvent;
 import com.linlay.agentplatform.stream.model.StreamEnvelope;
 import com.linlay.agentplatform.stream.model.StreamRequest;
+import com.linlay.agentplatform.stream.model.ToolCallDelta;
 import com.linlay.agentplatform.stream.service.AgentDeltaToStreamInputMapper;
 import com.linlay.agentplatform.stream.service.StreamEventAssembler;
 import com.linlay.agentplatform.engine.runtime.tool.FrontendSubmitCoordinator;
@@ -47,6 +48,8 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
@@ -260,7 +263,7 @@ class ToolExecutionServiceTest {
     }
 
     @Test
-    void shouldStreamVisibleToolLifecycleOneByOneWhenToolCallsAreEmitted() {
+    void shouldStreamParallelToolStartsInPlanOrderBeforeResults() {
         ConstantTool firstTool = new ConstantTool("first_tool", "FIRST_OK");
         ConstantTool secondTool = new ConstantTool("second_tool", "SECOND_OK");
         ToolRegistry toolRegistry = new ToolRegistry(List.of(firstTool, secondTool));
@@ -296,9 +299,9 @@ class ToolExecutionServiceTest {
         int secondResult = indexOfEvent(events, "tool.result", "toolId", "call_second_visible");
 
         assertThat(firstStart).isGreaterThanOrEqualTo(0);
-        assertThat(firstResult).isGreaterThan(firstStart);
-        assertThat(secondStart).isGreaterThan(firstResult);
-        assertThat(secondResult).isGreaterThan(secondStart);
+        assertThat(secondStart).isGreaterThan(firstStart);
+        assertThat(firstResult).isGreaterThan(secondStart);
+        assertThat(secondResult).isGreaterThan(firstResult);
     }
 
     @Test
@@ -502,8 +505,8 @@ class ToolExecutionServiceTest {
         ToolRegistry toolRegistry = new ToolRegistry(List.of(toolA, toolB));
         AtomicInteger invocations = new AtomicInteger();
         ToolInvoker toolInvoker = (toolName, args, context) -> {
-            int index = invocations.incrementAndGet();
-            if (index == 1) {
+            invocations.incrementAndGet();
+            if ("mock.weather.query".equals(toolName)) {
                 return objectMapper.createObjectNode()
                         .put("tool", toolName)
                         .put("ok", false)
@@ -781,6 +784,290 @@ class ToolExecutionServiceTest {
                 .toList()).containsExactly("call_missing_1");
     }
 
+    @Test
+    void independentBackendToolsShouldRunConcurrentlyAndKeepResultOrder() {
+        ProbeTool probe = new ProbeTool("probe_tool", 300L);
+        ToolRegistry toolRegistry = new ToolRegistry(List.of(probe));
+        ToolExecutionService toolExecutionService = new ToolExecutionService(
+                toolRegistry,
+                new ToolArgumentResolver(objectMapper),
+                objectMapper,
+                null,
+                null,
+                new LocalToolInvoker(toolRegistry)
+        );
+        List<Map<String, Object>> records = new ArrayList<>();
+
+        long startNanos = System.nanoTime();
+        ToolExecutionService.ToolExecutionBatch batch = toolExecutionService.executeToolCalls(
+                List.of(
+                        new PlannedToolCall("probe_tool", Map.of("id", "a"), "call_probe_a"),
+                        new PlannedToolCall("probe_tool", Map.of("id", "b"), "call_probe_b"),
+                        new PlannedToolCall("probe_tool", Map.of("id", "c"), "call_probe_c")
+                ),
+                enabledTools(toolRegistry),
+                records,
+                "run_parallel_1",
+                executionContext(
+                        definition(List.of("probe_tool"), Budget.DEFAULT),
+                        new AgentRequest("test", "chat_parallel_1", null, "run_parallel_1"),
+                        List.of()
+                ),
+                true
+        );
+        long elapsedMs = (System.nanoTime() - startNanos) / 1_000_000L;
+
+        assertThat(probe.maxInFlight()).isEqualTo(3);
+        assertThat(elapsedMs).isLessThan(800L);
+        assertThat(batch.deltas().stream()
+                .flatMap(delta -> delta.toolResults().stream())
+                .map(AgentDelta.ToolResult::toolId)
+                .toList()).containsExactly("call_probe_a", "call_probe_b", "call_probe_c");
+        assertThat(singleToolResult(batch, "call_probe_b")).isEqualTo("b");
+        assertThat(batch.events()).extracting(ToolExecutionService.ToolExecutionEvent::callId)
+                .containsExactly("call_probe_a", "call_probe_b", "call_probe_c");
+        assertThat(records).extracting(record -> record.get("callId"))
+                .containsExactly("call_probe_a", "call_probe_b", "call_probe_c");
+    }
+
+    @Test
+    void parallelToolCallsShouldRespectConcurrencyLimitAndSerialOnlyTools() {
+        ProbeTool limited = new ProbeTool("limited_tool", 50L);
+        ProbeTool serial = new ProbeTool("serial_tool", 50L, serialDescriptor("serial_tool"));
+        ToolRegistry toolRegistry = new ToolRegistry(List.of(limited, serial));
+        ToolExecutionService toolExecutionService = new ToolExecutionService(
+                toolRegistry,
+                new ToolArgumentResolver(objectMapper),
+                objectMapper,
+                null,
+                null,
+                new LocalToolInvoker(toolRegistry)
+        );
+        Budget budget = new Budget(
+                60_000L,
+                new Budget.Scope(10, 60_000L, 0),
+                new Budget.Scope(10, 60_000L, 0, 2)
+        );
+        List<PlannedToolCall> calls = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            calls.add(new PlannedToolCall("limited_tool", Map.of("id", "l" + i), "call_limited_" + i));
+        }
+        for (int i = 0; i < 3; i++) {
+            calls.add(new PlannedToolCall("serial_tool", Map.of("id", "s" + i), "call_serial_" + i));
+        }
+
+        ToolExecutionService.ToolExecutionBatch batch = toolExecutionService.executeToolCalls(
+                calls,
+                enabledTools(toolRegistry),
+                new ArrayList<>(),
+                "run_parallel_2",
+                executionContext(
+                        definition(List.of("limited_tool", "serial_tool"), budget),
+                        new AgentRequest("test", "chat_parallel_2", null, "run_parallel_2"),
+                        List.of()
+                ),
+                false
+        );
+
+        assertThat(batch.events()).hasSize(8);
+        assertThat(limited.maxInFlight()).isEqualTo(2);
+        assertThat(serial.maxInFlight()).isEqualTo(1);
+    }
+
+    @Test
+    void parallelGroupShouldEmitAllToolCallDeltasInPlanOrderBeforeInvoking() {
+        ConstantTool tool = new ConstantTool("gated_tool", "OK");
+        ToolRegistry toolRegistry = new ToolRegistry(List.of(tool));
+        CountDownLatch allAnnounced = new CountDownLatch(3);
+        AtomicInteger invokedBeforeAnnounced = new AtomicInteger();
+        ToolInvoker invoker = (toolName, args, context) -> {
+            try {
+                if (!allAnnounced.await(2, TimeUnit.SECONDS)) {
+                    invokedBeforeAnnounced.incrementAndGet();
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            return toolRegistry.invoke(toolName, args);
+        };
+        ToolExecutionService toolExecutionService = new ToolExecutionService(
+                toolRegistry,
+                new ToolArgumentResolver(objectMapper),
+                objectMapper,
+                null,
+                null,
+                invoker
+        );
+        List<AgentDelta> emitted = new CopyOnWriteArrayList<>();
+
+        toolExecutionService.executeToolCalls(
+                List.of(
+                        new PlannedToolCall("gated_tool", Map.of("id", "a"), "call_gated_a"),
+                        new PlannedToolCall("gated_tool", Map.of("id", "b"), "call_gated_b"),
+                        new PlannedToolCall("gated_tool", Map.of("id", "c"), "call_gated_c")
+                ),
+                enabledTools(toolRegistry),
+                new ArrayList<>(),
+                "run_parallel_4",
+                executionContext(
+                        definition(List.of("gated_tool"), Budget.DEFAULT),
+                        new AgentRequest("test", "chat_parallel_4", null, "run_parallel_4"),
+                        List.of()
+                ),
+                true,
+                null,
+                delta -> {
+                    emitted.add(delta);
+                    if (!delta.toolCalls().isEmpty()) {
+                        allAnnounced.countDown();
+                    }
+                }
+        );
+
+        assertThat(invokedBeforeAnnounced.get()).isZero();
+        assertThat(emitted.stream()
+                .flatMap(delta -> delta.toolCalls().stream())
+                .map(ToolCallDelta::id)
+                .toList()).containsExactly("call_gated_a", "call_gated_b", "call_gated_c");
+    }
+
+    @Test
+    void fatalErrorInParallelGroupShouldCancelUnfinishedSiblingsAndRecordThem() {
+        ConstantTool first = new ConstantTool("first_tool", "FIRST_OK");
+        ConstantTool broken = new ConstantTool("broken_tool", "IGNORED");
+        ConstantTool last = new ConstantTool("last_tool", "LAST_OK");
+        ToolRegistry toolRegistry = new ToolRegistry(List.of(first, broken, last));
+        CountDownLatch siblingsStarted = new CountDownLatch(2);
+        AtomicInteger interruptedSiblings = new AtomicInteger();
+        ToolInvoker invoker = (toolName, args, context) -> {
+            if ("broken_tool".equals(toolName)) {
+                try {
+                    siblingsStarted.await(2, TimeUnit.SECONDS);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+                return objectMapper.createObjectNode()
+                        .put("ok", false)
+                        .put("code", "mcp_server_unavailable")
+                        .put("error", "server down");
+            }
+            siblingsStarted.countDown();
+            try {
+                Thread.sleep(10_000L);
+            } catch (InterruptedException ex) {
+                interruptedSiblings.incrementAndGet();
+                Thread.currentThread().interrupt();
+            }
+            return toolRegistry.invoke(toolName, args);
+        };
+        ToolExecutionService toolExecutionService = new ToolExecutionService(
+                toolRegistry,
+                new ToolArgumentResolver(objectMapper),
+                objectMapper,
+                null,
+                null,
+                invoker
+        );
+        List<Map<String, Object>> records = new ArrayList<>();
+
+        long startNanos = System.nanoTime();
+        ToolExecutionService.ToolExecutionBatch batch = toolExecutionService.executeToolCalls(
+                List.of(
+                        new PlannedToolCall("first_tool", Map.of(), "call_first"),
+                        new PlannedToolCall("broken_tool", Map.of(), "call_broken"),
+                        new PlannedToolCall("last_tool", Map.of(), "call_last")
+                ),
+                enabledTools(toolRegistry),
+                records,
+                "run_parallel_3",
+                executionContext(
+                        definition(List.of("first_tool", "broken_tool", "last_tool"), Budget.DEFAULT),
+                        new AgentRequest("test", "chat_parallel_3", null, "run_parallel_3"),
+                        List.of()
+                ),
+                false
+        );
+
+        assertThat((System.nanoTime() - startNanos) / 1_000_000L).isLessThan(5_000L);
+        assertThat(batch.deltas().stream()
+                .flatMap(delta -> delta.toolResults().stream())
+                .map(AgentDelta.ToolResult::toolId)
+                .toList()).containsExactly("call_first", "call_broken", "call_last");
+        assertThat(singleToolResult(batch, "call_first")).contains("\"code\":\"cancelled\"");
+        assertThat(singleToolResult(batch, "call_last")).contains("\"code\":\"cancelled\"");
+        assertThat(records).extracting(record -> record.get("callId"))
+                .containsExactly("call_first", "call_broken", "call_last");
+        await(() -> interruptedSiblings.get() == 2);
+    }
+
+    @Test
+    void parallelGroupShouldForwardToolProgressWhileCallsAreStillRunning() {
+        ConstantTool tool = new ConstantTool("progress_tool", "DONE");
+        ToolRegistry toolRegistry = new ToolRegistry(List.of(tool));
+        CountDownLatch progressSeen = new CountDownLatch(2);
+        AtomicInteger finishedBeforeProgressSeen = new AtomicInteger();
+        ToolInvoker invoker = (toolName, args, context) -> {
+            context.emitDelta(AgentDelta.content("progress-" + args.get("id")));
+            try {
+                if (!progressSeen.await(2, TimeUnit.SECONDS)) {
+                    finishedBeforeProgressSeen.incrementAndGet();
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            return toolRegistry.invoke(toolName, args);
+        };
+        ToolExecutionService toolExecutionService = new ToolExecutionService(
+                toolRegistry,
+                new ToolArgumentResolver(objectMapper),
+                objectMapper,
+                null,
+                null,
+                invoker
+        );
+        List<AgentDelta> emitted = new CopyOnWriteArrayList<>();
+
+        toolExecutionService.executeToolCalls(
+                List.of(
+                        new PlannedToolCall("progress_tool", Map.of("id", "a"), "call_progress_a"),
+                        new PlannedToolCall("progress_tool", Map.of("id", "b"), "call_progress_b")
+                ),
+                enabledTools(toolRegistry),
+                new ArrayList<>(),
+                "run_parallel_5",
+                executionContext(
+                        definition(List.of("progress_tool"), Budget.DEFAULT),
+                        new AgentRequest("test", "chat_parallel_5", null, "run_parallel_5"),
+                        List.of()
+                ),
+                true,
+                null,
+                delta -> {
+                    emitted.add(delta);
+                    if (delta.content() != null && delta.content().startsWith("progress-")) {
+                        progressSeen.countDown();
+                    }
+                }
+        );
+
+        assertThat(finishedBeforeProgressSeen.get()).isZero();
+        assertThat(emitted.stream().map(AgentDelta::content).filter(java.util.Objects::nonNull).toList())
+                .containsExactlyInAnyOrder("progress-a", "progress-b");
+    }
+
+    private void await(java.util.function.BooleanSupplier condition) {
+        long deadline = System.currentTimeMillis() + 5_000L;
+        while (!condition.getAsBoolean()) {
+            assertThat(System.currentTimeMillis()).isLessThan(deadline);
+            try {
+                Thread.sleep(10L);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
     private Map<String, BaseTool> enabledTools(ToolRegistry toolRegistry) {
         Map<String, BaseTool> enabledTools = new LinkedHashMap<>();
         for (BaseTool tool : toolRegistry.list()) {
@@ -917,6 +1204,25 @@ class ToolExecutionServiceTest {
         );
     }
 
+    private ToolDescriptor serialDescriptor(String name) {
+        return new ToolDescriptor(
+                name,
+                name,
+                "",
+                null,
+                null,
+                false,
+                true,
+                false,
+                null,
+                "local",
+                null,
+                null,
+                "test://serial",
+                true
+        );
+    }
+
     private ToolDescriptor mcpViewportDescriptor(String name, String viewportKey) {
         return new ToolDescriptor(
                 name,
@@ -1051,4 +1357,49 @@ class ToolExecutionServiceTest {
             return attempts.get();
         }
     }
+
+    private static final class ProbeTool implements BaseTool, ToolMetadataAware {
+        private final String name;
+        private final long sleepMs;
+        private final ToolDescriptor descriptor;
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final AtomicInteger maxInFlight = new AtomicInteger();
+
+        private ProbeTool(String name, long sleepMs) {
+            this(name, sleepMs, null);
+        }
+
+        private ProbeTool(String name, long sleepMs, ToolDescriptor descriptor) {
+            this.name = name;
+            this.sleepMs = sleepMs;
+            this.descriptor = descriptor;
+        }
+
+        @Override
+        public String name() {
+            return name;
+        }
+
+        @Override
+        public com.fasterxml.jackson.databind.JsonNode invoke(Map<String, Object> args) {
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(sleepMs);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            } finally {
+                inFlight.decrementAndGet();
+            }
+            return com.fasterxml.jackson.databind.node.JsonNodeFactory.instance.textNode(String.valueOf(args.get("id")));
+        }
+
+        @Override
+        public ToolDescriptor descriptor() {
+            return descriptor;
+        }
+
+        private int maxInFlight() {
+            return maxInFlight.get();
+        }
+    }
 }
@@ -28,6 +28,7 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CopyOnWriteArrayList;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -130,6 +131,35 @@ class ContainerHubSandboxServiceTest {
         // destroy is async, so we can't assert immediate stop
     }
 
+    @Test
+    void openIfNeededShouldUsePrefetchedSessionAndSurfaceItsFailureWithoutRetry() {
+        CopyOnWriteArrayList<String> events = new CopyOnWriteArrayList<>();
+        ContainerHubToolProperties properties = containerHubProperties("run");
+        RecordingStubContainerHubClient client = new RecordingStubContainerHubClient(events);
+        ContainerHubSandboxService service = new ContainerHubSandboxService(
+                properties, client, containerHubMountResolver(properties, null, null));
+        AgentDefinition definition = definitionWithLevel(SandboxLevel.RUN);
+        AgentRequest request = new AgentRequest("test", "chat-1", "req-1", "run-1", Map.of());
+
+        ExecutionContext.SandboxSession prefetched = service.open(definition, request);
+        ExecutionContext context = ExecutionContext.builder(definition, request)
+                .sandboxPrefetch(CompletableFuture.completedFuture(prefetched))
+                .build();
+        service.openIfNeeded(context);
+
+        assertThat(context.sandboxSession()).isSameAs(prefetched);
+        assertThat(events.stream().filter("createSession"::equals)).hasSize(1);
+        service.closeQuietly(context);
+
+        ExecutionContext failed = ExecutionContext.builder(definition, request)
+                .sandboxPrefetch(CompletableFuture.failedFuture(new IllegalStateException("container-hub sandbox create failed: boom")))
+                .build();
+        assertThatThrownBy(() -> service.openIfNeeded(failed))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("boom");
+        assertThat(events.stream().filter("createSession"::equals)).hasSize(1);
+    }
+
     @Test
     void agentLevelShouldReuseSession() {
         CopyOnWriteArrayList<String> events = new CopyOnWriteArrayList<>();
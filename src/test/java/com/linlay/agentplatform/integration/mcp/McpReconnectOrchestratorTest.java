@@ -15,6 +15,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ScheduledFuture;
+import java.util.function.Consumer;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
@@ -73,7 +74,7 @@ class McpReconnectOrchestratorTest {
 
         orchestrator.retryDueServers();
 
-        verify(toolSyncService, never()).refreshToolsForServers(any());
+        verify(toolSyncService, never()).refreshToolsForServers(any(), any());
     }
 
     @Test
@@ -93,7 +94,11 @@ class McpReconnectOrchestratorTest {
 
         McpToolSyncService toolSyncService = mock(McpToolSyncService.class);
         CatalogDiff diff = new CatalogDiff(Set.of("mock.weather.query"), Set.of(), Set.of());
-        when(toolSyncService.refreshToolsForServers(eq(Set.of("mock")))).thenReturn(diff);
+        when(toolSyncService.refreshToolsForServers(eq(Set.of("mock")), any())).thenAnswer(invocation -> {
+            Consumer<CatalogDiff> onPublished = invocation.getArgument(1);
+            onPublished.accept(diff);
+            return diff;
+        });
 
         AgentRegistry agentRegistry = mock(AgentRegistry.class);
         when(agentRegistry.findAgentIdsByTools(diff.changedKeys())).thenReturn(Set.of("agent.alpha"));
@@ -109,7 +114,7 @@ class McpReconnectOrchestratorTest {
 
         orchestrator.retryDueServers();
 
-        verify(toolSyncService).refreshToolsForServers(Set.of("mock"));
+        verify(toolSyncService).refreshToolsForServers(eq(Set.of("mock")), any());
         verify(agentRegistry).findAgentIdsByTools(diff.changedKeys());
         verify(agentRegistry).refreshAgentsByIds(Set.of("agent.alpha"), "mcp-reconnect");
     }
@@ -198,6 +198,130 @@ class McpStreamableHttpClientTest {
         assertThat(payload.path("params").path("arguments").path("city").asText()).isEqualTo("Shanghai");
     }
 
+    @Test
+    void shouldReuseSessionIdAndRenewItOnceExpired() throws Exception {
+        ScriptedExchange exchange = new ScriptedExchange();
+        McpStreamableHttpClient client = new McpStreamableHttpClient(objectMapper, WebClient.builder().exchangeFunction(exchange));
+        McpServerRegistryService.RegisteredServer server = new McpServerRegistryService.RegisteredServer(
+                "mock",
+                "http://localhost:11969",
+                "/mcp",
+                "mock",
+                java.util.Map.of(),
+                java.util.Map.of(),
+                3000,
+                15000,
+                0
+        );
+
+        client.initialize(server, "2025-06");
+        client.callTool(server, "mock.weather.query", java.util.Map.of(), java.util.Map.of());
+        exchange.expireSession("session-1");
+        client.callTool(server, "mock.weather.query", java.util.Map.of(), java.util.Map.of());
+
+        assertThat(exchange.calls()).containsExactly(
+                "initialize:null",
+                "tools/call:session-1",
+                "tools/call:session-1",
+                "initialize:null",
+                "tools/call:session-2"
+        );
+    }
+
+    @Test
+    void lateAbandonedInitializeShouldNotOverwriteNewerSession() throws Exception {
+        java.util.concurrent.CompletableFuture<Void> releaseFirst = new java.util.concurrent.CompletableFuture<>();
+        java.util.concurrent.CountDownLatch firstSent = new java.util.concurrent.CountDownLatch(1);
+        java.util.concurrent.atomic.AtomicInteger initializes = new java.util.concurrent.atomic.AtomicInteger();
+        java.util.List<String> toolCallSessions = new java.util.concurrent.CopyOnWriteArrayList<>();
+        ExchangeFunction exchange = request -> {
+            MockClientHttpRequest mockRequest = new MockClientHttpRequest(request.method(), request.url());
+            return request.writeTo(mockRequest, ExchangeStrategies.withDefaults())
+                    .then(Mono.defer(mockRequest::getBodyAsString))
+                    .flatMap(bodyText -> {
+                        JsonNode rpc = readTree(bodyText);
+                        String id = rpc.path("id").asText();
+                        if (!"initialize".equals(rpc.path("method").asText())) {
+                            toolCallSessions.add(request.headers().getFirst(McpStreamableHttpClient.SESSION_HEADER));
+                            return Mono.just(jsonResponse(id, null));
+                        }
+                        if (initializes.incrementAndGet() == 1) {
+                            firstSent.countDown();
+                            return Mono.fromFuture(releaseFirst).thenReturn(jsonResponse(id, "session-stale"));
+                        }
+                        return Mono.just(jsonResponse(id, "session-fresh"));
+                    });
+        };
+        McpStreamableHttpClient client = new McpStreamableHttpClient(objectMapper, WebClient.builder().exchangeFunction(exchange));
+        McpServerRegistryService.RegisteredServer server = new McpServerRegistryService.RegisteredServer(
+                "mock",
+                "http://localhost:11969",
+                "/mcp",
+                "mock",
+                java.util.Map.of(),
+                java.util.Map.of(),
+                3000,
+                15000,
+                0
+        );
+
+        Thread abandoned = Thread.ofVirtual().start(() -> client.initialize(server, "2025-06"));
+        assertThat(firstSent.await(5, java.util.concurrent.TimeUnit.SECONDS)).isTrue();
+        client.initialize(server, "2025-06");
+        releaseFirst.complete(null);
+        abandoned.join(5000);
+        client.callTool(server, "mock.weather.query", java.util.Map.of(), java.util.Map.of());
+
+        assertThat(toolCallSessions).containsExactly("session-fresh");
+    }
+
+    private ClientResponse jsonResponse(String id, String sessionId) {
+        ClientResponse.Builder builder = ClientResponse.create(HttpStatus.OK)
+                .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                .body("{\"jsonrpc\":\"2.0\",\"id\":\"" + id + "\",\"result\":{}}");
+        if (sessionId != null) {
+            builder.header(McpStreamableHttpClient.SESSION_HEADER, sessionId);
+        }
+        return builder.build();
+    }
+
+    private JsonNode readTree(String body) {
+        try {
+            return objectMapper.readTree(body);
+        } catch (Exception ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    @Test
+    void shouldDeliverNotificationsBeforeMatchingToolsCallResponse() {
+        ScriptedExchange exchange = new ScriptedExchange();
+        McpStreamableHttpClient client = new McpStreamableHttpClient(objectMapper, WebClient.builder().exchangeFunction(exchange));
+        McpServerRegistryService.RegisteredServer server = new McpServerRegistryService.RegisteredServer(
+                "mock",
+                "http://localhost:11969",
+                "/mcp",
+                "mock",
+                java.util.Map.of(),
+                java.util.Map.of(),
+                3000,
+                15000,
+                0
+        );
+        java.util.List<String> notifications = new java.util.ArrayList<>();
+
+        JsonNode result = client.callTool(
+                server,
+                "mock.weather.query",
+                java.util.Map.of(),
+                java.util.Map.of(),
+                notification -> notifications.add(notification.path("params").path("progress").asText())
+        );
+
+        assertThat(notifications).containsExactly("1", "2");
+        assertThat(result.path("structuredContent").path("ok").asBoolean()).isTrue();
+    }
+
     private static final class FixedResponseExchange implements ExchangeFunction {
         private final String body;
 
@@ -243,4 +367,65 @@ class McpStreamableHttpClientTest {
             return requestBody;
         }
     }
+
+    /**
+     * 模拟带会话的 MCP 端点：initialize 下发递增的会话 id，tools/call 以 SSE 先推两条进度通知再返回与请求 id 匹配的结果。
+     */
+    private final class ScriptedExchange implements ExchangeFunction {
+        private final java.util.List<String> calls = new java.util.concurrent.CopyOnWriteArrayList<>();
+        private final java.util.Set<String> expiredSessions = java.util.concurrent.ConcurrentHashMap.newKeySet();
+        private int sessions;
+
+        @Override
+        public Mono<ClientResponse> exchange(ClientRequest request) {
+            MockClientHttpRequest mockRequest = new MockClientHttpRequest(request.method(), request.url());
+            String sessionId = request.headers().getFirst(McpStreamableHttpClient.SESSION_HEADER);
+            return request.writeTo(mockRequest, ExchangeStrategies.withDefaults())
+                    .then(Mono.defer(() -> mockRequest.getBodyAsString()))
+                    .map(bodyText -> {
+                        JsonNode rpc = readTree(bodyText);
+                        String method = rpc.path("method").asText();
+                        String id = rpc.path("id").asText();
+                        calls.add(method + ":" + sessionId);
+                        if (sessionId != null && expiredSessions.contains(sessionId)) {
+                            return ClientResponse.create(HttpStatus.NOT_FOUND).build();
+                        }
+                        if ("initialize".equals(method)) {
+                            sessions++;
+                            return ClientResponse.create(HttpStatus.OK)
+                                    .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                                    .header(McpStreamableHttpClient.SESSION_HEADER, "session-" + sessions)
+                                    .body("{\"jsonrpc\":\"2.0\",\"id\":\"" + id + "\",\"result\":{}}")
+                                    .build();
+                        }
+                        return ClientResponse.create(HttpStatus.OK)
+                                .header(HttpHeaders.CONTENT_TYPE, MediaType.TEXT_EVENT_STREAM_VALUE)
+                                .body("""
+                                        data: {"jsonrpc":"2.0","method":"notifications/progress","params":{"progress":1}}
+
+                                        data: {"jsonrpc":"2.0","method":"notifications/progress","params":{"progress":2}}
+
+                                        data: {"jsonrpc":"2.0","id":"%s","result":{"structuredContent":{"ok":true}}}
+
+                                        """.formatted(id))
+                                .build();
+                    });
+        }
+
+        private void expireSession(String sessionId) {
+            expiredSessions.add(sessionId);
+        }
+
+        private java.util.List<String> calls() {
+            return calls;
+        }
+
+        private JsonNode readTree(String body) {
+            try {
+                return objectMapper.readTree(body);
+            } catch (Exception ex) {
+                throw new IllegalStateException(ex);
+            }
+        }
+    }
 }
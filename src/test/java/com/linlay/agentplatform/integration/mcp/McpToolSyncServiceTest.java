@@ -8,14 +8,19 @@ import org.junit.jupiter.api.Test;
 import java.time.Clock;
 import java.time.Instant;
 import java.time.ZoneId;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doNothing;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.mockingDetails;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -335,6 +340,97 @@ class McpToolSyncServiceTest {
         assertThat(service.find("weather.query").orElseThrow().key()).isEqualTo("weather.query");
     }
 
+    @Test
+    void shouldPublishHealthyServersWithoutWaitingForSlowServer() throws Exception {
+        McpProperties properties = new McpProperties();
+        properties.setEnabled(true);
+
+        McpServerRegistryService.RegisteredServer slow = new McpServerRegistryService.RegisteredServer(
+                "slow", "http://localhost:18081", "/mcp", "slow", Map.of(), Map.of(), 50, 50, 0
+        );
+        McpServerRegistryService.RegisteredServer fast = new McpServerRegistryService.RegisteredServer(
+                "fast", "http://localhost:18082", "/mcp", "fast", Map.of(), Map.of(), 3000, 15000, 0
+        );
+        McpServerRegistryService registryService = mock(McpServerRegistryService.class);
+        when(registryService.list()).thenReturn(List.of(slow, fast));
+
+        CountDownLatch releaseSlow = new CountDownLatch(1);
+        McpStreamableHttpClient client = mock(McpStreamableHttpClient.class);
+        doAnswer(invocation -> {
+            releaseSlow.await(5, TimeUnit.SECONDS);
+            return null;
+        }).when(client).initialize(slow, "2025-06");
+        doNothing().when(client).initialize(fast, "2025-06");
+        when(client.listTools(fast)).thenReturn(List.of(
+                new McpStreamableHttpClient.McpToolDefinition(
+                        "fast.echo", null, "echo", null, Map.of("type", "object"), false, null, null, List.of()
+                )
+        ));
+
+        McpServerAvailabilityGate gate = new McpServerAvailabilityGate(properties);
+        McpToolSyncService service = new McpToolSyncService(properties, registryService, gate, client);
+        List<Set<String>> published = new ArrayList<>();
+        try {
+            CatalogDiff diff = service.refreshTools(step -> {
+                assertThat(releaseSlow.getCount()).isEqualTo(1);
+                published.add(step.changedKeys());
+            });
+
+            assertThat(published).containsExactly(Set.of("fast.echo"));
+            assertThat(diff.addedKeys()).containsExactly("fast.echo");
+            assertThat(gate.isBlocked("slow")).isTrue();
+            assertThat(gate.isBlocked("fast")).isFalse();
+        } finally {
+            releaseSlow.countDown();
+        }
+    }
+
+    @Test
+    void shouldSkipServerWhoseAbandonedSyncIsStillRunning() throws Exception {
+        McpProperties properties = new McpProperties();
+        properties.setEnabled(true);
+
+        McpServerRegistryService.RegisteredServer slow = new McpServerRegistryService.RegisteredServer(
+                "slow", "http://localhost:18081", "/mcp", "slow", Map.of(), Map.of(), 50, 50, 0
+        );
+        McpServerRegistryService.RegisteredServer fast = new McpServerRegistryService.RegisteredServer(
+                "fast", "http://localhost:18082", "/mcp", "fast", Map.of(), Map.of(), 3000, 15000, 0
+        );
+        McpServerRegistryService registryService = mock(McpServerRegistryService.class);
+        when(registryService.list()).thenReturn(List.of(slow, fast));
+
+        CountDownLatch releaseSlow = new CountDownLatch(1);
+        McpStreamableHttpClient client = mock(McpStreamableHttpClient.class);
+        doAnswer(invocation -> {
+            releaseSlow.await(5, TimeUnit.SECONDS);
+            return null;
+        }).when(client).initialize(slow, "2025-06");
+        doNothing().when(client).initialize(fast, "2025-06");
+        when(client.listTools(fast)).thenReturn(List.of());
+
+        McpToolSyncService service = new McpToolSyncService(
+                properties, registryService, new McpServerAvailabilityGate(properties), client);
+        try {
+            service.refreshTools();
+            service.refreshTools();
+
+            verify(client, times(1)).initialize(slow, "2025-06");
+            verify(client, times(2)).initialize(fast, "2025-06");
+        } finally {
+            releaseSlow.countDown();
+        }
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (mockingDetails(client).getInvocations().stream()
+                .filter(invocation -> invocation.getArguments().length > 0 && invocation.getArguments()[0] == slow)
+                .filter(invocation -> "initialize".equals(invocation.getMethod().getName()))
+                .count() < 2 && System.nanoTime() < deadline) {
+            service.refreshTools();
+            Thread.sleep(20);
+        }
+        verify(client, times(2)).initialize(slow, "2025-06");
+    }
+
     private static final class MutableClock extends Clock {
         private Instant instant;
         private final ZoneId zoneId;
@@ -0,0 +1,212 @@
+package com.linlay.agentplatform.llm;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.linlay.agentplatform.config.properties.LlmRoutingProperties;
+import com.linlay.agentplatform.config.properties.ModelProperties;
+import com.linlay.agentplatform.config.properties.ProviderProperties;
+import com.linlay.agentplatform.model.ModelProtocol;
+import com.linlay.agentplatform.model.ModelRegistryService;
+import com.linlay.agentplatform.stream.model.LlmDelta;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import reactor.core.publisher.Flux;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
+
+class LlmRouterTest {
+
+    @TempDir
+    Path tempDir;
+
+    private ModelRegistryService modelRegistryService;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        Path providersDir = tempDir.resolve("providers");
+        Files.createDirectories(providersDir);
+        for (String provider : List.of("east", "west", "south")) {
+            Files.writeString(providersDir.resolve(provider + ".yml"), """
+                    key: %s
+                    baseUrl: https://%s.example.com
+                    apiKey: dummy
+                    defaultModel: dummy-model
+                    """.formatted(provider, provider));
+        }
+        Path modelsDir = tempDir.resolve("models");
+        Files.createDirectories(modelsDir);
+        writeModel(modelsDir, "primary", "east", "  - backup\n  - primary\n  - missing\n  - spare\n");
+        writeModel(modelsDir, "backup", "west", null);
+        writeModel(modelsDir, "spare", "south", null);
+        ProviderProperties providerProperties = new ProviderProperties();
+        providerProperties.setExternalDir(providersDir.toString());
+        ModelProperties modelProperties = new ModelProperties();
+        modelProperties.setExternalDir(modelsDir.toString());
+        modelRegistryService = new ModelRegistryService(
+                new ObjectMapper(),
+                modelProperties,
+                new ProviderRegistryService(providerProperties)
+        );
+    }
+
+    @Test
+    void shouldResolveFallbackCandidatesInDeclaredOrder() {
+        LlmRouter router = new LlmRouter(modelRegistryService, new LlmRoutingProperties());
+
+        assertThat(router.candidates(spec("primary")))
+                .extracting(LlmRouter.Candidate::modelKey, LlmRouter.Candidate::providerKey)
+                .containsExactly(
+                        tuple("primary", "east"),
+                        tuple("backup", "west"),
+                        tuple("spare", "south")
+                );
+    }
+
+    @Test
+    void shouldFailOverBeforeFirstTokenButNotAfter() {
+        LlmRouter router = new LlmRouter(modelRegistryService, new LlmRoutingProperties());
+        List<String> attempts = new CopyOnWriteArrayList<>();
+
+        List<LlmDelta> deltas = router.route(router.candidates(spec("primary")), candidate -> {
+            attempts.add(candidate.providerKey());
+            if ("east".equals(candidate.providerKey())) {
+                return Flux.error(new IllegalStateException("east down"));
+            }
+            return Flux.just(content(candidate.providerKey()));
+        }).collectList().block(Duration.ofSeconds(2));
+
+        assertThat(attempts).containsExactly("east", "west");
+        assertThat(deltas).extracting(LlmDelta::content).containsExactly("west");
+
+        attempts.clear();
+        assertThatThrownBy(() -> router.route(router.candidates(spec("primary")), candidate -> {
+            attempts.add(candidate.providerKey());
+            return Flux.concat(Flux.just(content("partial")), Flux.error(new IllegalStateException("broken stream")));
+        }).collectList().block(Duration.ofSeconds(2))).hasMessageContaining("broken stream");
+        assertThat(attempts).containsExactly("east");
+    }
+
+    @Test
+    void shouldFailOverWhenFirstTokenTimesOut() {
+        LlmRoutingProperties properties = new LlmRoutingProperties();
+        properties.setFirstTokenTimeoutMs(50);
+        LlmRouter router = new LlmRouter(modelRegistryService, properties);
+
+        List<LlmDelta> deltas = router.route(router.candidates(spec("primary")), candidate -> "east".equals(candidate.providerKey())
+                ? Flux.never()
+                : Flux.just(content(candidate.providerKey()))
+        ).collectList().block(Duration.ofSeconds(2));
+
+        assertThat(deltas).extracting(LlmDelta::content).containsExactly("west");
+        assertThat(router.stats().get("east").errors()).isEqualTo(1);
+    }
+
+    @Test
+    void hedgedRequestShouldWinOverSlowPrimaryAndCancelIt() {
+        LlmRoutingProperties properties = new LlmRoutingProperties();
+        properties.setHedgeEnabled(true);
+        properties.setHedgeMinDelayMs(20);
+        properties.setHedgeMaxDelayMs(50);
+        LlmRouter router = new LlmRouter(modelRegistryService, properties);
+        List<String> canceled = new CopyOnWriteArrayList<>();
+
+        long startNanos = System.nanoTime();
+        List<LlmDelta> deltas = router.route(router.candidates(spec("primary")), candidate -> {
+            if ("east".equals(candidate.providerKey())) {
+                return Flux.just(content("east")).delayElements(Duration.ofSeconds(5))
+                        .doOnCancel(() -> canceled.add("east"));
+            }
+            return Flux.just(content(candidate.providerKey()));
+        }).collectList().block(Duration.ofSeconds(2));
+
+        assertThat(deltas).extracting(LlmDelta::content).containsExactly("west");
+        assertThat(canceled).containsExactly("east");
+        assertThat(Duration.ofNanos(System.nanoTime() - startNanos)).isLessThan(Duration.ofSeconds(2));
+    }
+
+    @Test
+    void degradedProviderShouldBeOrderedLast() {
+        LlmRoutingProperties properties = new LlmRoutingProperties();
+        properties.setMinSamples(2);
+        LlmRouter router = new LlmRouter(modelRegistryService, properties);
+        for (int i = 0; i < 2; i++) {
+            router.route(List.of(new LlmRouter.Candidate("primary", "east", "m", ModelProtocol.OPENAI)),
+                    candidate -> Flux.error(new IllegalStateException("east down"))
+            ).onErrorResume(ex -> Flux.empty()).blockLast(Duration.ofSeconds(1));
+        }
+
+        assertThat(router.isDegraded("east")).isTrue();
+        assertThat(router.stats().get("east").errorRate()).isEqualTo(1.0d);
+        assertThat(router.candidates(spec("primary")))
+                .extracting(LlmRouter.Candidate::providerKey)
+                .containsExactly("west", "south", "east");
+    }
+
+    @Test
+    void degradedProviderShouldRecoverOnceItsFailuresAgeOut() {
+        LlmRoutingProperties properties = new LlmRoutingProperties();
+        properties.setMinSamples(2);
+        properties.setWindowMs(1_000L);
+        AtomicLong now = new AtomicLong(10_000L);
+        LlmRouter router = new LlmRouter(modelRegistryService, properties, now::get);
+        for (int i = 0; i < 2; i++) {
+            router.route(List.of(new LlmRouter.Candidate("primary", "east", "m", ModelProtocol.OPENAI)),
+                    candidate -> Flux.error(new IllegalStateException("east down"))
+            ).onErrorResume(ex -> Flux.empty()).blockLast(Duration.ofSeconds(1));
+        }
+        assertThat(router.isDegraded("east")).isTrue();
+
+        now.addAndGet(1_001L);
+
+        assertThat(router.isDegraded("east")).isFalse();
+        assertThat(router.stats().get("east").samples()).isZero();
+        assertThat(router.candidates(spec("primary")))
+                .extracting(LlmRouter.Candidate::providerKey)
+                .containsExactly("east", "west", "south");
+    }
+
+    private LlmCallSpec spec(String modelKey) {
+        return new LlmCallSpec(
+                modelKey,
+                "east",
+                "model-" + modelKey,
+                ModelProtocol.OPENAI,
+                "system",
+                List.of(),
+                "hello",
+                List.of(),
+                null,
+                null,
+                null,
+                false,
+                null,
+                null,
+                "test",
+                false,
+                null
+        );
+    }
+
+    private LlmDelta content(String value) {
+        return new LlmDelta(null, value, null, null, null);
+    }
+
+    private void writeModel(Path modelsDir, String key, String provider, String fallbacks) throws IOException {
+        Files.writeString(modelsDir.resolve(key + ".yml"), """
+                key: %s
+                provider: %s
+                protocol: OPENAI
+                modelId: model-%s
+                """.formatted(key, provider, key) + (fallbacks == null ? "" : "fallbacks:\n" + fallbacks));
+    }
+}
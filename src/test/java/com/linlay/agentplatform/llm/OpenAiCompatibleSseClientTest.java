@@ -1,6 +1,7 @@
 package com.linlay.agentplatform.llm;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.linlay.agentplatform.chat.storage.ChatMessage;
 import com.linlay.agentplatform.engine.policy.ComputePolicy;
 import com.linlay.agentplatform.engine.policy.ToolChoice;
 import com.linlay.agentplatform.config.properties.LlmInteractionLogProperties;
@@ -274,6 +275,150 @@ class OpenAiCompatibleSseClientTest {
         ));
     }
 
+    @Test
+    void shouldMarkSystemAndLastHistoryMessageWithCacheControlWhenConfigured() throws Exception {
+        String compat = """
+                request:
+                  promptCache: cache_control
+                """;
+        OpenAiCompatibleSseClient client = client(providerYaml("https://api.babelark.com", "/v1/chat/completions", compat));
+
+        Map<String, Object> request = client.buildRequestBody(
+                "babelark",
+                "Qwen3.5-397B-A17B",
+                "stable system",
+                List.of(
+                        new ChatMessage.UserMsg("first question"),
+                        new ChatMessage.AssistantMsg("first answer"),
+                        new ChatMessage.AssistantMsg("", List.of())
+                ),
+                "next question",
+                List.of(),
+                false,
+                ToolChoice.AUTO,
+                null,
+                ComputePolicy.MEDIUM,
+                false,
+                4096
+        );
+
+        @SuppressWarnings("unchecked")
+        List<Map<String, Object>> messages = (List<Map<String, Object>>) request.get("messages");
+        Map<String, Object> cachedPart = Map.of(
+                "type", "text",
+                "text", "stable system",
+                "cache_control", Map.of("type", "ephemeral")
+        );
+        assertThat(messages.get(0).get("content")).isEqualTo(List.of(cachedPart));
+        assertThat(messages.get(1).get("content")).isEqualTo("first question");
+        assertThat(messages.get(2).get("content")).isEqualTo(List.of(Map.of(
+                "type", "text",
+                "text", "first answer",
+                "cache_control", Map.of("type", "ephemeral")
+        )));
+        assertThat(messages.get(3).get("content")).isEqualTo("");
+        assertThat(messages.get(4).get("content")).isEqualTo("next question");
+        assertThat(request).doesNotContainKey("prompt_cache_key");
+    }
+
+    @Test
+    void shouldSendStablePromptCacheKeyWhenConfigured() throws Exception {
+        String compat = """
+                request:
+                  promptCache: PROMPT_CACHE_KEY
+                """;
+        OpenAiCompatibleSseClient client = client(providerYaml("https://api.babelark.com", "/v1/chat/completions", compat));
+        List<LlmService.LlmFunctionTool> tools = List.of(new LlmService.LlmFunctionTool(
+                "bash",
+                "Run command",
+                Map.of("type", "object"),
+                false
+        ));
+
+        Object first = buildWithPrompt(client, "system", tools, "question one").get("prompt_cache_key");
+        Object second = buildWithPrompt(client, "system", tools, "question two").get("prompt_cache_key");
+        Object otherSystem = buildWithPrompt(client, "other system", tools, "question one").get("prompt_cache_key");
+
+        assertThat(first).isInstanceOf(String.class).isEqualTo(second);
+        assertThat(otherSystem).isNotEqualTo(first);
+        assertThat(((String) first)).startsWith("pc-").hasSize(35);
+    }
+
+    @Test
+    void cacheBreakpointAndKeyShouldCoverOnlyTheStableSystemPrefix() throws Exception {
+        String cacheControl = """
+                request:
+                  promptCache: cache_control
+                """;
+        OpenAiCompatibleSseClient markingClient = client(providerYaml("https://api.babelark.com", "/v1/chat/completions", cacheControl));
+
+        Map<String, Object> marked = buildWithStablePrefix(markingClient, "agent prompt", "\n\nnow=2026-10-17T10:00");
+
+        @SuppressWarnings("unchecked")
+        List<Map<String, Object>> messages = (List<Map<String, Object>>) marked.get("messages");
+        assertThat(messages.get(0).get("content")).isEqualTo(List.of(
+                Map.of("type", "text", "text", "agent prompt", "cache_control", Map.of("type", "ephemeral")),
+                Map.of("type", "text", "text", "\n\nnow=2026-10-17T10:00")
+        ));
+
+        String cacheKey = """
+                request:
+                  promptCache: PROMPT_CACHE_KEY
+                """;
+        OpenAiCompatibleSseClient keyClient = client(providerYaml("https://api.babelark.com", "/v1/chat/completions", cacheKey));
+        Object firstRun = buildWithStablePrefix(keyClient, "agent prompt", "\n\nnow=2026-10-17T10:00").get("prompt_cache_key");
+        Object secondRun = buildWithStablePrefix(keyClient, "agent prompt", "\n\nnow=2026-10-17T10:05").get("prompt_cache_key");
+        Object otherAgent = buildWithStablePrefix(keyClient, "other prompt", "\n\nnow=2026-10-17T10:00").get("prompt_cache_key");
+
+        assertThat(firstRun).isInstanceOf(String.class).isEqualTo(secondRun);
+        assertThat(otherAgent).isNotEqualTo(firstRun);
+    }
+
+    private Map<String, Object> buildWithStablePrefix(
+            OpenAiCompatibleSseClient client,
+            String stablePrompt,
+            String volatilePrompt
+    ) {
+        return client.buildRequestBody(
+                null,
+                "babelark",
+                "Qwen3.5-397B-A17B",
+                stablePrompt + volatilePrompt,
+                stablePrompt,
+                List.of(),
+                "question",
+                List.of(),
+                false,
+                ToolChoice.AUTO,
+                null,
+                ComputePolicy.MEDIUM,
+                false,
+                4096
+        );
+    }
+
+    private Map<String, Object> buildWithPrompt(
+            OpenAiCompatibleSseClient client,
+            String systemPrompt,
+            List<LlmService.LlmFunctionTool> tools,
+            String userPrompt
+    ) {
+        return client.buildRequestBody(
+                "babelark",
+                "Qwen3.5-397B-A17B",
+                systemPrompt,
+                List.of(),
+                userPrompt,
+                tools,
+                false,
+                ToolChoice.AUTO,
+                null,
+                ComputePolicy.MEDIUM,
+                false,
+                4096
+        );
+    }
+
     private OpenAiCompatibleSseClient client(String providerYaml, String... modelYamls) throws Exception {
         ProviderRegistryService providerRegistry = providerRegistry(providerYaml);
         ModelRegistryService modelRegistry = modelRegistry(providerRegistry, modelYamls);
@@ -0,0 +1,136 @@
+package com.linlay.agentplatform.llm;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.linlay.agentplatform.config.ProviderConfig;
+import com.linlay.agentplatform.config.ProviderPoolConfig;
+import com.linlay.agentplatform.config.properties.ProviderProperties;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ProviderWebClientCacheTest {
+
+    @Test
+    void shouldReuseClientUntilProviderConfigChanges() {
+        try (ProviderWebClientCache cache = new ProviderWebClientCache(new ProviderProperties.Pool())) {
+            ProviderConfig config = new ProviderConfig("openai", "http://localhost:1", "sk-1", "", Map.of());
+
+            WebClient first = cache.webClient(config);
+            WebClient second = cache.webClient(new ProviderConfig("openai", "http://localhost:1", "sk-1", "", Map.of()));
+            WebClient rotated = cache.webClient(new ProviderConfig("openai", "http://localhost:1", "sk-2", "", Map.of()));
+
+            assertThat(second).isSameAs(first);
+            assertThat(rotated).isNotSameAs(first);
+            assertThat(cache.stats().get("openai").clientBuilds()).isEqualTo(2);
+        }
+    }
+
+    @Test
+    void shouldApplyProviderPoolOverrideAndReportPoolUsage() throws Exception {
+        DisposableServer server = HttpServer.create()
+                .port(0)
+                .handle((request, response) -> response.sendString(Mono.just("ok")))
+                .bindNow();
+        try (ProviderWebClientCache cache = new ProviderWebClientCache(new ProviderProperties.Pool())) {
+            ProviderConfig config = new ProviderConfig(
+                    "local",
+                    "http://localhost:" + server.port(),
+                    "sk-local",
+                    "",
+                    Map.of(),
+                    new ProviderPoolConfig(3, null, null, null)
+            );
+
+            String body = cache.webClient(config).get().uri("/ping").retrieve().bodyToMono(String.class)
+                    .block(Duration.ofSeconds(5));
+
+            assertThat(body).isEqualTo("ok");
+            waitUntil(() -> cache.stats().get("local").acquiredConnections() == 0);
+            LlmService.ConnectionPoolStats stats = cache.stats().get("local");
+            assertThat(stats.maxConnections()).isEqualTo(3);
+            assertThat(stats.allocatedConnections()).isEqualTo(1);
+            assertThat(stats.idleConnections()).isEqualTo(1);
+            assertThat(stats.pendingAcquires()).isZero();
+        } finally {
+            server.disposeNow();
+        }
+    }
+
+    @Test
+    void shouldReleaseRetiredPoolOnceItsLastConnectionIsReturned() throws Exception {
+        CountDownLatch received = new CountDownLatch(1);
+        DisposableServer server = HttpServer.create()
+                .port(0)
+                .handle((request, response) -> {
+                    received.countDown();
+                    return response.sendString(Mono.just("ok").delayElement(Duration.ofMillis(300)));
+                })
+                .bindNow();
+        try (ProviderWebClientCache cache = new ProviderWebClientCache(new ProviderProperties.Pool(), Duration.ofMillis(20))) {
+            String baseUrl = "http://localhost:" + server.port();
+            Mono<String> inFlight = cache.webClient(new ProviderConfig("local", baseUrl, "sk-1", "", Map.of()))
+                    .get().uri("/slow").retrieve().bodyToMono(String.class)
+                    .cache();
+            inFlight.subscribe();
+            assertThat(received.await(5, TimeUnit.SECONDS)).isTrue();
+
+            cache.webClient(new ProviderConfig("local", baseUrl, "sk-2", "", Map.of()));
+
+            assertThat(cache.retiredPools()).isEqualTo(1);
+            assertThat(inFlight.block(Duration.ofSeconds(5))).isEqualTo("ok");
+            waitUntil(() -> cache.retiredPools() == 0);
+        } finally {
+            server.disposeNow();
+        }
+    }
+
+    @Test
+    void shouldEvictPoolOfProviderRemovedByRefresh(@TempDir Path providersDir) throws Exception {
+        Files.writeString(providersDir.resolve("kept.yml"), """
+                key: kept
+                baseUrl: http://localhost:1
+                apiKey: sk-kept
+                """);
+        Files.writeString(providersDir.resolve("removed.yml"), """
+                key: removed
+                baseUrl: http://localhost:2
+                apiKey: sk-removed
+                """);
+        ProviderProperties properties = new ProviderProperties();
+        properties.setExternalDir(providersDir.toString());
+        ProviderRegistryService registry = new ProviderRegistryService(properties);
+        ProviderWebClientCache cache = new ProviderWebClientCache(new ProviderProperties.Pool(), Duration.ofMillis(20));
+        try (OpenAiCompatibleSseClient ignored = new OpenAiCompatibleSseClient(registry, null, new ObjectMapper(), null, cache)) {
+            cache.webClient(registry.find("kept").orElseThrow());
+            cache.webClient(registry.find("removed").orElseThrow());
+            assertThat(cache.stats()).containsOnlyKeys("kept", "removed");
+
+            Files.delete(providersDir.resolve("removed.yml"));
+            registry.refreshProviders();
+
+            assertThat(cache.stats()).containsOnlyKeys("kept");
+            waitUntil(() -> cache.retiredPools() == 0);
+        }
+    }
+
+    private void waitUntil(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000L;
+        while (!condition.getAsBoolean()) {
+            assertThat(System.currentTimeMillis()).isLessThan(deadline);
+            Thread.sleep(10L);
+        }
+    }
+}
@@ -5,6 +5,7 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.linlay.agentplatform.config.properties.AgentMemoryProperties;
 import com.linlay.agentplatform.config.properties.ProviderProperties;
 import com.linlay.agentplatform.llm.ProviderRegistryService;
+import com.linlay.agentplatform.memory.AgentMemoryService;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
 import org.springframework.http.HttpHeaders;
@@ -18,8 +19,15 @@ import reactor.core.publisher.Mono;
 
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -106,6 +114,135 @@ class EmbeddingServiceTest {
         assertThat(service.embed("alpha")).isEmpty();
     }
 
+    @Test
+    void shouldCoalesceConcurrentEmbedsIntoOneRequest() throws Exception {
+        AtomicInteger requests = new AtomicInteger();
+        AgentMemoryProperties properties = properties("embedding-provider", "text-embedding-3-small", 2, 5000);
+        properties.getEmbeddingBatch().setWindowMs(200);
+        EmbeddingService service = new EmbeddingService(
+                providerRegistry("embedding-provider"),
+                properties,
+                WebClient.builder().exchangeFunction(request -> {
+                    requests.incrementAndGet();
+                    return Mono.just(lengthEmbeddingsResponse(request));
+                }),
+                objectMapper
+        );
+        List<String> texts = List.of("a", "bb", "ccc", "dddd");
+        ExecutorService executor = Executors.newFixedThreadPool(texts.size());
+        try {
+            List<Future<Optional<float[]>>> futures = new ArrayList<>();
+            for (String text : texts) {
+                futures.add(executor.submit(() -> service.embed(text)));
+            }
+            for (int i = 0; i < texts.size(); i++) {
+                assertThat(futures.get(i).get(5, TimeUnit.SECONDS).orElseThrow())
+                        .containsExactly(texts.get(i).length(), 1f);
+            }
+        } finally {
+            executor.shutdownNow();
+            service.close();
+        }
+
+        assertThat(requests.get()).isEqualTo(1);
+    }
+
+    @Test
+    void shouldServeRepeatedTextsFromMemoryAndPersistedCache() throws Exception {
+        AtomicInteger requests = new AtomicInteger();
+        AgentMemoryProperties properties = properties("embedding-provider", "text-embedding-3-small", 2, 5000);
+        AgentMemoryProperties storageProperties = new AgentMemoryProperties();
+        storageProperties.getStorage().setDir(tempDir.resolve("memory").toString());
+        EmbeddingCacheRepository repository = new EmbeddingCacheRepository(
+                new AgentMemoryService(storageProperties, objectMapper),
+                100
+        );
+        WebClient.Builder client = WebClient.builder().exchangeFunction(request -> {
+            requests.incrementAndGet();
+            return Mono.just(lengthEmbeddingsResponse(request));
+        });
+        ProviderRegistryService registry = providerRegistry("embedding-provider");
+
+        EmbeddingService first = new EmbeddingService(registry, properties, client, objectMapper, repository);
+        assertThat(first.embed("cached")).hasValueSatisfying(vector -> assertThat(vector).containsExactly(6f, 1f));
+        assertThat(first.embed("cached")).isPresent();
+        first.close();
+        assertThat(requests.get()).isEqualTo(1);
+
+        EmbeddingService restarted = new EmbeddingService(registry, properties, client, objectMapper, repository);
+        assertThat(restarted.embedBatch(List.of("cached", "fresh")))
+                .extracting(result -> result.orElseThrow()[0])
+                .containsExactly(6f, 5f);
+        restarted.close();
+        assertThat(requests.get()).isEqualTo(2);
+        assertThat(Files.exists(tempDir.resolve("memory/memory.db"))).isTrue();
+    }
+
+    @Test
+    void shouldReturnEmbeddingsWithoutWaitingForPersistedCacheWrite() throws Exception {
+        AgentMemoryProperties properties = properties("embedding-provider", "text-embedding-3-small", 2, 5000);
+        AgentMemoryProperties storageProperties = new AgentMemoryProperties();
+        storageProperties.getStorage().setDir(tempDir.resolve("memory").toString());
+        CountDownLatch releaseWrite = new CountDownLatch(1);
+        AtomicReference<String> writerThread = new AtomicReference<>();
+        EmbeddingCacheRepository repository = new EmbeddingCacheRepository(
+                new AgentMemoryService(storageProperties, objectMapper),
+                100
+        ) {
+            @Override
+            public void saveAll(java.util.Map<String, float[]> embeddings) {
+                writerThread.set(Thread.currentThread().getName());
+                try {
+                    releaseWrite.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+                super.saveAll(embeddings);
+            }
+        };
+        WebClient.Builder client = WebClient.builder().exchangeFunction(request -> Mono.just(lengthEmbeddingsResponse(request)));
+        EmbeddingService service = new EmbeddingService(
+                providerRegistry("embedding-provider"), properties, client, objectMapper, repository);
+
+        try {
+            assertThat(service.embedBatch(List.of("behind"))).extracting(result -> result.orElseThrow()[0])
+                    .containsExactly(6f);
+            assertThat(releaseWrite.getCount()).isEqualTo(1);
+        } finally {
+            releaseWrite.countDown();
+            service.close();
+        }
+        assertThat(writerThread.get()).isEqualTo("memory-embedding-persist");
+        EmbeddingService offline = new EmbeddingService(
+                providerRegistry("embedding-provider"),
+                properties,
+                WebClient.builder().exchangeFunction(request -> Mono.error(new IllegalStateException("offline"))),
+                objectMapper,
+                repository
+        );
+        assertThat(offline.embed("behind")).hasValueSatisfying(vector -> assertThat(vector).containsExactly(6f, 1f));
+        offline.close();
+    }
+
+    private ClientResponse lengthEmbeddingsResponse(ClientRequest request) {
+        try {
+            JsonNode input = objectMapper.readTree(bodyOf(request)).path("input");
+            StringBuilder data = new StringBuilder();
+            for (JsonNode text : input) {
+                if (!data.isEmpty()) {
+                    data.append(',');
+                }
+                data.append("{\"embedding\":[").append(text.asText().length()).append(",1]}");
+            }
+            return ClientResponse.create(HttpStatus.OK)
+                    .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                    .body("{\"data\":[" + data + "]}")
+                    .build();
+        } catch (Exception ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
     private ProviderRegistryService providerRegistry(String providerKey) throws Exception {
         Path providersDir = tempDir.resolve("providers");
         Files.createDirectories(providersDir);
@@ -11,9 +11,11 @@ import java.nio.file.Path;
 import java.util.List;
 import java.util.Optional;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Mockito.mock;
@@ -155,6 +157,90 @@ class AgentMemoryStoreTest {
         assertThat(Files.exists(tempDir.resolve("memory/journal"))).isFalse();
     }
 
+    @Test
+    void shouldPersistVectorIndexAndDropDeletedMemories() throws Exception {
+        EmbeddingService embeddingService = mock(EmbeddingService.class);
+        when(embeddingService.embed("north memory")).thenReturn(Optional.of(new float[]{1f, 0f}));
+        when(embeddingService.embed("east memory")).thenReturn(Optional.of(new float[]{0f, 1f}));
+        when(embeddingService.embed("north-east memory")).thenReturn(Optional.of(new float[]{0.7f, 0.7f}));
+        when(embeddingService.embed("heading")).thenReturn(Optional.of(new float[]{1f, 0.1f}));
+
+        AgentMemoryStore store = new AgentMemoryStore(properties(2), agentMemoryService(), embeddingService);
+        MemoryRecord north = store.write("agent-v", null, "north memory", "general", 5, List.of());
+        store.write("agent-v", null, "east memory", "general", 5, List.of());
+
+        assertThat(store.search("agent-v", null, "heading", null, 1))
+                .extracting(result -> result.memory().content())
+                .containsExactly("north memory");
+
+        store.write("agent-v", null, "north-east memory", "general", 5, List.of());
+        assertThat(store.delete("agent-v", null, north.id())).isTrue();
+        assertThat(store.search("agent-v", null, "heading", null, 1))
+                .extracting(result -> result.memory().content())
+                .containsExactly("north-east memory");
+        store.close();
+
+        Path indexDir = tempDir.resolve("memory/memory.db.vectors");
+        try (var files = Files.list(indexDir)) {
+            assertThat(files.filter(path -> path.toString().endsWith(".hnsw")).count()).isEqualTo(1);
+        }
+
+        AgentMemoryStore restarted = new AgentMemoryStore(properties(2), agentMemoryService(), embeddingService);
+        assertThat(restarted.search("agent-v", null, "heading", null, 10))
+                .extracting(result -> result.memory().content())
+                .containsExactly("north-east memory", "east memory");
+    }
+
+    @Test
+    void shouldCatchUpPersistedVectorIndexWhenDeletedRowIdIsReused() throws Exception {
+        EmbeddingService embeddingService = mock(EmbeddingService.class);
+        when(embeddingService.embed("north memory")).thenReturn(Optional.of(new float[]{1f, 0f}));
+        when(embeddingService.embed("east memory")).thenReturn(Optional.of(new float[]{0f, 1f}));
+        when(embeddingService.embed("north-east memory")).thenReturn(Optional.of(new float[]{0.7f, 0.7f}));
+        when(embeddingService.embed("heading")).thenReturn(Optional.of(new float[]{1f, 0.1f}));
+
+        AgentMemoryStore store = new AgentMemoryStore(properties(2), agentMemoryService(), embeddingService);
+        store.write("agent-r", null, "north memory", "general", 5, List.of());
+        MemoryRecord east = store.write("agent-r", null, "east memory", "general", 5, List.of());
+        assertThat(store.search("agent-r", null, "heading", null, 10)).hasSize(2);
+        store.close();
+
+        // 另一个实例在索引未加载时删除最大 rowid 的记忆再写入新记忆，新行复用同一个 rowid，总数不变
+        AgentMemoryStore offline = new AgentMemoryStore(properties(2), agentMemoryService(), embeddingService);
+        assertThat(offline.delete("agent-r", null, east.id())).isTrue();
+        offline.write("agent-r", null, "north-east memory", "general", 5, List.of());
+
+        AgentMemoryStore restarted = new AgentMemoryStore(properties(2), agentMemoryService(), embeddingService);
+        assertThat(restarted.search("agent-r", null, "heading", null, 10))
+                .extracting(result -> result.memory().content())
+                .containsExactly("north memory", "north-east memory");
+    }
+
+    @Test
+    void shouldEmbedConcurrentSearchQueriesOutsideTheDatabaseLock() throws Exception {
+        EmbeddingService embeddingService = mock(EmbeddingService.class);
+        CountDownLatch bothEmbedding = new CountDownLatch(2);
+        when(embeddingService.embed(org.mockito.ArgumentMatchers.anyString())).thenAnswer(invocation -> {
+            bothEmbedding.countDown();
+            // 只有两个检索同时处于 embed 中才会放行；embed 若在库锁内执行，第二个检索永远进不来
+            return bothEmbedding.await(5, TimeUnit.SECONDS) ? Optional.of(new float[]{1f, 0f}) : Optional.empty();
+        });
+        when(embeddingService.embed("north memory")).thenReturn(Optional.of(new float[]{1f, 0f}));
+        AgentMemoryStore store = new AgentMemoryStore(properties(2), agentMemoryService(), embeddingService);
+        store.write("agent-c", null, "north memory", "general", 5, List.of());
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<List<ScoredMemory>> first = executor.submit(() -> store.search("agent-c", null, "first heading", null, 5));
+            Future<List<ScoredMemory>> second = executor.submit(() -> store.search("agent-c", null, "second heading", null, 5));
+
+            assertThat(first.get(10, TimeUnit.SECONDS)).extracting(ScoredMemory::matchType).containsExactly("vector");
+            assertThat(second.get(10, TimeUnit.SECONDS)).extracting(ScoredMemory::matchType).containsExactly("vector");
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
     private AgentMemoryProperties properties(int embeddingDimension) {
         AgentMemoryProperties properties = new AgentMemoryProperties();
         properties.setEmbeddingDimension(embeddingDimension);
@@ -0,0 +1,106 @@
+package com.linlay.agentplatform.memory.store;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Brute-force memory search throughput: per-row float[] with the scalar cosine used before the arena,
+ * against the paged arena scored by {@link VectorMath}.
+ * Run with {@code mvn test -Dtest=EmbeddingArenaBenchmarkTest -Dbenchmark=true};
+ * {@code -Dbenchmark.dimension=...} changes the vector width (default 128).
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class EmbeddingArenaBenchmarkTest {
+
+    private static final int[] SIZES = {10_000, 100_000, 1_000_000};
+    private static final int WARMUP_QUERIES = 5;
+    private static final int MEASURED_QUERIES = 20;
+
+    @Test
+    void compareRowArraysWithArenaScan() {
+        int dimension = Integer.getInteger("benchmark.dimension", 128);
+        System.out.printf("memory vector scan benchmark (dimension=%d, simd=%s)%n", dimension, VectorMath.simdEnabled());
+        for (int size : SIZES) {
+            Random random = new Random(size);
+            float[][] rows = new float[size][];
+            MemoryVectorIndex index = new MemoryVectorIndex(16, 100);
+            EmbeddingArena arena = new EmbeddingArena(dimension);
+            for (int i = 0; i < size; i++) {
+                rows[i] = randomVector(random, dimension);
+                arena.append(rows[i]);
+            }
+            float[] query = randomVector(random, dimension);
+            float[] normalizedQuery = EmbeddingArena.normalize(query);
+
+            double legacyMs = measure(() -> {
+                double best = -1d;
+                for (float[] row : rows) {
+                    best = Math.max(best, legacyCosine(query, row));
+                }
+                return best;
+            });
+            double arenaMs = measure(() -> {
+                double best = -1d;
+                for (int slot = 0; slot < size; slot++) {
+                    best = Math.max(best, arena.dot(slot, normalizedQuery));
+                }
+                return best;
+            });
+            double gigabytesPerSecond = (double) size * dimension * Float.BYTES / (arenaMs / 1_000d) / 1e9;
+            System.out.printf("  %,9d vectors: per-row scalar %8.2f ms/query, arena %8.2f ms/query (%.1f GB/s)%n",
+                    size, legacyMs, arenaMs, gigabytesPerSecond);
+
+            if (size == SIZES[0]) {
+                for (int i = 0; i < size; i++) {
+                    index.add("mem_" + i, null, rows[i]);
+                }
+                List<MemoryVectorIndex.Hit> hits = index.search(query, 10, null, 64, Integer.MAX_VALUE);
+                assertThat(hits).hasSize(10);
+            }
+        }
+    }
+
+    private double measure(Scan scan) {
+        double sink = 0d;
+        for (int i = 0; i < WARMUP_QUERIES; i++) {
+            sink += scan.run();
+        }
+        long started = System.nanoTime();
+        for (int i = 0; i < MEASURED_QUERIES; i++) {
+            sink += scan.run();
+        }
+        double elapsedMs = (System.nanoTime() - started) / 1_000_000d / MEASURED_QUERIES;
+        assertThat(sink).isNotNaN();
+        return elapsedMs;
+    }
+
+    private double legacyCosine(float[] left, float[] right) {
+        double dot = 0d;
+        double leftNorm = 0d;
+        double rightNorm = 0d;
+        for (int i = 0; i < left.length; i++) {
+            dot += left[i] * right[i];
+            leftNorm += left[i] * left[i];
+            rightNorm += right[i] * right[i];
+        }
+        return dot / (Math.sqrt(leftNorm) * Math.sqrt(rightNorm));
+    }
+
+    private float[] randomVector(Random random, int dimension) {
+        float[] vector = new float[dimension];
+        for (int i = 0; i < dimension; i++) {
+            vector[i] = (float) random.nextGaussian();
+        }
+        return vector;
+    }
+
+    @FunctionalInterface
+    private interface Scan {
+        double run();
+    }
+}
@@ -0,0 +1,93 @@
+package com.linlay.agentplatform.memory.store;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class EmbeddingArenaTest {
+
+    @Test
+    void shouldStoreNormalizedVectorsAcrossPages() {
+        int dimension = 300_000;
+        EmbeddingArena arena = new EmbeddingArena(dimension);
+        Random random = new Random(3);
+        float[][] vectors = new float[5][];
+        for (int i = 0; i < vectors.length; i++) {
+            vectors[i] = randomVector(random, dimension);
+            assertThat(arena.append(vectors[i])).isEqualTo(i);
+        }
+
+        float[] query = EmbeddingArena.normalize(vectors[4]);
+        assertThat(arena.dot(4, query)).isCloseTo(1d, within(1e-4));
+        assertThat(arena.dot(4, 4)).isCloseTo(1d, within(1e-4));
+        assertThat(arena.dot(1, query)).isCloseTo(VectorMath.cosine(vectors[1], vectors[4]), within(1e-4));
+    }
+
+    @Test
+    void shouldSizeFirstPageToVectorCountAndGrowGeometrically() {
+        int dimension = 1_024;
+        EmbeddingArena arena = new EmbeddingArena(dimension);
+        Random random = new Random(7);
+
+        arena.append(randomVector(random, dimension));
+        assertThat(arena.allocatedFloats()).isEqualTo(16L * dimension);
+
+        float[][] vectors = new float[100][];
+        for (int i = 1; i < vectors.length; i++) {
+            vectors[i] = randomVector(random, dimension);
+            arena.append(vectors[i]);
+        }
+        assertThat(arena.allocatedFloats()).isEqualTo(128L * dimension);
+        float[] query = EmbeddingArena.normalize(vectors[99]);
+        assertThat(arena.dot(99, query)).isCloseTo(1d, within(1e-4));
+        assertThat(arena.dot(50, query)).isCloseTo(VectorMath.cosine(vectors[50], vectors[99]), within(1e-4));
+
+        EmbeddingArena sized = new EmbeddingArena(dimension, 40);
+        sized.append(randomVector(random, dimension));
+        assertThat(sized.allocatedFloats()).isEqualTo(40L * dimension);
+    }
+
+    @Test
+    void shouldDecodeLittleEndianEmbeddingsAndRejectZeroVectors() {
+        EmbeddingArena arena = new EmbeddingArena(3);
+
+        assertThat(arena.append(new float[]{0f, 0f, 0f})).isEqualTo(-1);
+        assertThat(arena.append(new float[]{1f, 2f})).isEqualTo(-1);
+        assertThat(arena.appendLittleEndian(encode(new float[]{3f, 0f, 4f}))).isZero();
+
+        assertThat(arena.size()).isEqualTo(1);
+        assertThat(arena.dot(0, new float[]{0.6f, 0f, 0.8f})).isCloseTo(1d, within(1e-6));
+    }
+
+    @Test
+    void vectorDotShouldMatchScalarForUnalignedLengths() {
+        Random random = new Random(5);
+        for (int length : new int[]{1, 7, 16, 33, 1_023}) {
+            float[] left = randomVector(random, length + 3);
+            float[] right = randomVector(random, length + 1);
+            double expected = VectorMath.scalarDot(left, 3, right, 1, length);
+            assertThat(VectorMath.dot(left, 3, right, 1, length)).isCloseTo(expected, within(1e-3));
+        }
+    }
+
+    private float[] randomVector(Random random, int dimension) {
+        float[] vector = new float[dimension];
+        for (int i = 0; i < dimension; i++) {
+            vector[i] = (float) random.nextGaussian();
+        }
+        return vector;
+    }
+
+    private byte[] encode(float[] vector) {
+        ByteBuffer buffer = ByteBuffer.allocate(vector.length * Float.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        for (float value : vector) {
+            buffer.putFloat(value);
+        }
+        return buffer.array();
+    }
+}
@@ -0,0 +1,100 @@
+package com.linlay.agentplatform.memory.store;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MemoryVectorIndexTest {
+
+    private static final int DIMENSION = 32;
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void approximateSearchShouldRecallExactNeighbours() {
+        Random random = new Random(7);
+        MemoryVectorIndex index = new MemoryVectorIndex(16, 100);
+        for (int i = 0; i < 3_000; i++) {
+            index.add("mem_" + i, "general", randomVector(random));
+        }
+
+        int matched = 0;
+        int expected = 0;
+        for (int q = 0; q < 50; q++) {
+            float[] query = randomVector(random);
+            Set<String> exact = ids(index.search(query, 10, null, 64, Integer.MAX_VALUE));
+            Set<String> approximate = ids(index.search(query, 10, null, 64, 0));
+            expected += exact.size();
+            exact.retainAll(approximate);
+            matched += exact.size();
+        }
+
+        assertThat((double) matched / expected).isGreaterThan(0.9d);
+    }
+
+    @Test
+    void shouldFilterByCategoryAndSkipDeletedMemories() {
+        MemoryVectorIndex index = new MemoryVectorIndex(4, 16);
+        index.add("mem_a", "fact", new float[]{1f, 0f});
+        index.add("mem_b", "fact", new float[]{0.9f, 0.1f});
+        index.add("mem_c", "todo", new float[]{1f, 0.05f});
+
+        assertThat(index.search(new float[]{1f, 0f}, 3, "fact", 8, 0))
+                .extracting(MemoryVectorIndex.Hit::id)
+                .containsExactly("mem_a", "mem_b");
+
+        assertThat(index.remove("mem_a")).isTrue();
+        assertThat(index.search(new float[]{1f, 0f}, 3, null, 8, 0))
+                .extracting(MemoryVectorIndex.Hit::id)
+                .containsExactly("mem_c", "mem_b");
+        assertThat(index.needsRebuild()).isTrue();
+        assertThat(index.indexedCount()).isEqualTo(2);
+    }
+
+    @Test
+    void shouldRoundTripThroughPersistedFile() throws Exception {
+        Random random = new Random(11);
+        MemoryVectorIndex index = new MemoryVectorIndex(8, 40);
+        for (int i = 0; i < 200; i++) {
+            index.add("mem_" + i, i % 2 == 0 ? "even" : null, randomVector(random));
+        }
+        index.add("mem_bad", null, new float[]{1f});
+        index.remove("mem_3");
+        index.version(202);
+        Path path = tempDir.resolve("memory.db.vectors").resolve("agent.hnsw");
+
+        index.save(path);
+        MemoryVectorIndex loaded = MemoryVectorIndex.load(path);
+
+        assertThat(index.pendingMutations()).isZero();
+        assertThat(loaded).isNotNull();
+        assertThat(loaded.version()).isEqualTo(202);
+        assertThat(loaded.indexedCount()).isEqualTo(index.indexedCount());
+        assertThat(loaded.indexedIds()).isEqualTo(index.indexedIds()).contains("mem_bad").doesNotContain("mem_3");
+        float[] query = randomVector(random);
+        assertThat(loaded.search(query, 5, "even", 32, 0)).isEqualTo(index.search(query, 5, "even", 32, 0));
+        assertThat(MemoryVectorIndex.load(tempDir.resolve("missing.hnsw"))).isNull();
+    }
+
+    private Set<String> ids(List<MemoryVectorIndex.Hit> hits) {
+        Set<String> ids = new HashSet<>();
+        hits.forEach(hit -> ids.add(hit.id()));
+        return ids;
+    }
+
+    private float[] randomVector(Random random) {
+        float[] vector = new float[DIMENSION];
+        for (int i = 0; i < vector.length; i++) {
+            vector[i] = (float) random.nextGaussian();
+        }
+        return vector;
+    }
+}
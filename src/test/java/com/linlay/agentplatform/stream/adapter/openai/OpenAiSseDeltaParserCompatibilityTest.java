@@ -144,6 +144,25 @@ class OpenAiSseDeltaParserCompatibilityTest {
         assertThat(delta.usage().get("sources")).isEqualTo(List.of("a", "b"));
     }
 
+    @Test
+    void shouldNormalizeProviderSpecificCachedTokenUsage() {
+        OpenAiSseDeltaParser parser = new OpenAiSseDeltaParser(objectMapper);
+
+        LlmDelta openAi = parser.parseOrNull("""
+                data: {"choices":[],"usage":{"prompt_tokens":1200,"prompt_tokens_details":{"cached_tokens":1024}}}
+                """);
+        LlmDelta deepSeek = parser.parseOrNull("""
+                data: {"choices":[],"usage":{"prompt_tokens":900,"prompt_cache_hit_tokens":768,"prompt_cache_miss_tokens":132}}
+                """);
+        LlmDelta uncached = parser.parseOrNull("""
+                data: {"choices":[],"usage":{"prompt_tokens":5}}
+                """);
+
+        assertThat(openAi.usage()).containsEntry(OpenAiSseDeltaParser.CACHED_TOKENS, 1024L);
+        assertThat(deepSeek.usage()).containsEntry(OpenAiSseDeltaParser.CACHED_TOKENS, 768L);
+        assertThat(uncached.usage()).doesNotContainKey(OpenAiSseDeltaParser.CACHED_TOKENS);
+    }
+
     private OpenAiCompatConfig compat(ReasoningFormat... formats) {
         return new OpenAiCompatConfig(
                 null,
@@ -0,0 +1,132 @@
+package com.linlay.agentplatform.stream.adapter.openai;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.linlay.agentplatform.config.OpenAiCompatConfig;
+import com.linlay.agentplatform.config.OpenAiCompatResponseConfig;
+import com.linlay.agentplatform.config.ReasoningFormat;
+import com.linlay.agentplatform.config.ThinkTagConfig;
+import com.linlay.agentplatform.stream.model.LlmDelta;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class OpenAiSseFrameDecoderTest {
+
+    private static final String RECORDED_STREAM = """
+            : keep-alive
+
+            data: {"id":"c1","choices":[{"index":0,"delta":{"role":"assistant","content":"<thi"}}]}
+
+            data: {"id":"c1","choices":[{"index":0,"delta":{"content":"nk>先想一想</think>你好，"}}]}
+
+            data: {"id":"c1","choices":[{"index":0,"delta":{"content":"世界"}}]}
+
+            data: {"id":"c1","choices":[{"index":0,"delta":{"tool_calls":[{"index":0,"id":"call_1","type":"function","function":{"name":"bash","arguments":"{\\"cmd\\":"}}]}}]}
+
+            data: {"id":"c1","choices":[{"index":0,"delta":{"tool_calls":[{"index":0,"function":{"arguments":"\\"ls\\"}"}}]},"finish_reason":"tool_calls"}]}
+
+            data: {"id":"c1","choices":[],"usage":{"prompt_tokens":12,"completion_tokens":5}}
+
+            data: [DONE]
+
+            """;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void shouldDecodeRecordedStreamSplitAtEveryByteBoundary() {
+        byte[] bytes = RECORDED_STREAM.getBytes(StandardCharsets.UTF_8);
+        List<String> expected = summarize(decode(List.of(bytes)));
+
+        assertThat(expected).containsExactly(
+                "reasoning=先想一想",
+                "content=你好，",
+                "content=世界",
+                "tool=call_1:bash:{\"cmd\":",
+                "tool=null:null:\"ls\"}",
+                "finish=tool_calls",
+                "usage={prompt_tokens=12, completion_tokens=5}"
+        );
+        for (int split = 1; split < bytes.length; split++) {
+            List<byte[]> chunks = List.of(Arrays.copyOfRange(bytes, 0, split), Arrays.copyOfRange(bytes, split, bytes.length));
+            assertThat(summarize(decode(chunks))).as("split at %d", split).isEqualTo(expected);
+        }
+        List<byte[]> singleBytes = new ArrayList<>();
+        for (byte value : bytes) {
+            singleBytes.add(new byte[]{value});
+        }
+        assertThat(summarize(decode(singleBytes))).isEqualTo(expected);
+    }
+
+    @Test
+    void shouldHandleCrlfMultiLineDataAndUnterminatedLastFrame() {
+        String stream = "event: message\r\n"
+                + "data: {\"choices\":[{\"delta\":\r\n"
+                + "data: {\"content\":\"a\"}}]}\r\n"
+                + "\r\n"
+                + "{\"choices\":[{\"delta\":{\"content\":\"b\"}}]}\n"
+                + "data: {\"choices\":[{\"delta\":{\"content\":\"c\"}}]}";
+
+        List<LlmDelta> deltas = decode(List.of(stream.getBytes(StandardCharsets.UTF_8)), new OpenAiSseDeltaParser(objectMapper));
+
+        assertThat(deltas).extracting(LlmDelta::content).containsExactly("a", "b", "c");
+    }
+
+    private List<LlmDelta> decode(List<byte[]> chunks) {
+        OpenAiCompatConfig compat = new OpenAiCompatConfig(
+                null,
+                new OpenAiCompatResponseConfig(
+                        List.of(ReasoningFormat.REASONING_CONTENT, ReasoningFormat.THINK_TAG_CONTENT),
+                        new ThinkTagConfig("<think>", "</think>", true)
+                )
+        );
+        return decode(chunks, new OpenAiSseDeltaParser(objectMapper, compat));
+    }
+
+    private List<LlmDelta> decode(List<byte[]> chunks, OpenAiSseDeltaParser parser) {
+        OpenAiSseFrameDecoder decoder = new OpenAiSseFrameDecoder();
+        List<LlmDelta> deltas = new ArrayList<>();
+        OpenAiSseFrameDecoder.FrameConsumer consumer = (payload, offset, length) -> {
+            LlmDelta delta = parser.parseOrNull(payload, offset, length);
+            if (delta != null) {
+                deltas.add(delta);
+            }
+        };
+        for (byte[] chunk : chunks) {
+            DataBuffer buffer = DefaultDataBufferFactory.sharedInstance.wrap(chunk);
+            decoder.decode(buffer, consumer);
+            assertThat(buffer.readableByteCount()).isZero();
+        }
+        decoder.finish(consumer);
+        return deltas;
+    }
+
+    private List<String> summarize(List<LlmDelta> deltas) {
+        List<String> events = new ArrayList<>();
+        for (LlmDelta delta : deltas) {
+            if (delta.reasoning() != null) {
+                events.add("reasoning=" + delta.reasoning());
+            }
+            if (delta.content() != null) {
+                events.add("content=" + delta.content());
+            }
+            if (delta.toolCalls() != null) {
+                delta.toolCalls().forEach(call -> events.add("tool=" + call.id() + ":" + call.name() + ":" + call.arguments()));
+            }
+            if (delta.finishReason() != null) {
+                events.add("finish=" + delta.finishReason());
+            }
+            if (delta.usage() != null) {
+                events.add("usage=" + delta.usage());
+            }
+        }
+        return events;
+    }
+}
@@ -79,6 +79,32 @@ class AgentDeltaToStreamInputMapperTest {
         assertThat(toolStartEvent.payload()).doesNotContainKey("toolParams");
     }
 
+    @Test
+    void shouldEmitToolProgressBetweenToolArgsAndToolResult() {
+        AgentDeltaToStreamInputMapper mapper = new AgentDeltaToStreamInputMapper("run_1", null, null);
+        List<StreamEvent> events = assembleEvents(mapper, List.of(
+                AgentDelta.toolCalls(List.of(new ToolCallDelta(
+                        "tool_1",
+                        "function",
+                        "mock.weather.query",
+                        "{\"city\":\"Shanghai\"}"
+                ))),
+                AgentDelta.toolProgress("tool_1", Map.of("progress", 1, "total", 2)),
+                AgentDelta.toolProgress("tool_unknown", Map.of("progress", 1)),
+                AgentDelta.toolResult("tool_1", "{\"ok\":true}")
+        ));
+
+        int toolArgs = indexOfToolEvent(events, "tool.args", "tool_1");
+        int toolProgress = indexOfToolEvent(events, "tool.progress", "tool_1");
+        int toolResult = indexOfToolEvent(events, "tool.result", "tool_1");
+
+        assertThat(toolProgress).isGreaterThan(toolArgs);
+        assertThat(toolResult).isGreaterThan(toolProgress);
+        assertThat(events.get(toolProgress).payload())
+                .containsEntry("progress", Map.of("progress", 1, "total", 2));
+        assertThat(countToolEvent(events, "tool.progress", "tool_unknown")).isZero();
+    }
+
     @Test
     void shouldFailFastWhenRealtimeToolStartWouldMissToolName() {
         AgentDeltaToStreamInputMapper mapper = new AgentDeltaToStreamInputMapper("run_1", null, null);
@@ -2,11 +2,13 @@ package com.linlay.agentplatform.stream.service;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.linlay.agentplatform.config.properties.H2aProperties;
+import com.linlay.agentplatform.stream.model.StreamSseEvent;
 import org.junit.jupiter.api.Test;
-import org.springframework.http.codec.ServerSentEvent;
 import reactor.core.publisher.Flux;
 import reactor.test.StepVerifier;
 
+import java.util.Map;
+
 class RenderQueueTest {
 
     @Test
@@ -15,14 +17,14 @@ class RenderQueueTest {
         properties.getRender().setMaxBufferedEvents(2);
         RenderQueue queue = new RenderQueue(new ObjectMapper(), properties);
 
-        Flux<ServerSentEvent<String>> buffered = queue.buffer(Flux.just(
-                event("{\"type\":\"content.delta\",\"delta\":\"a\"}"),
-                event("{\"type\":\"content.delta\",\"delta\":\"b\"}")
+        Flux<StreamSseEvent> buffered = queue.buffer(Flux.just(
+                event(Map.of("type", "content.delta", "delta", "a")),
+                event(Map.of("type", "content.delta", "delta", "b"))
         ));
 
         StepVerifier.create(buffered)
-                .expectNextMatches(event -> event.data().contains("\"delta\":\"a\""))
-                .expectNextMatches(event -> event.data().contains("\"delta\":\"b\""))
+                .expectNextMatches(event -> "a".equals(event.text("delta")))
+                .expectNextMatches(event -> "b".equals(event.text("delta")))
                 .verifyComplete();
     }
 
@@ -32,21 +34,18 @@ class RenderQueueTest {
         properties.getRender().setFlushIntervalMs(60_000L);
         RenderQueue queue = new RenderQueue(new ObjectMapper(), properties);
 
-        Flux<ServerSentEvent<String>> buffered = queue.buffer(Flux.just(
-                event("{\"type\":\"content.delta\",\"delta\":\"hello\"}"),
-                event("{\"type\":\"run.complete\",\"runId\":\"run_1\"}")
+        Flux<StreamSseEvent> buffered = queue.buffer(Flux.just(
+                event(Map.of("type", "content.delta", "delta", "hello")),
+                event(Map.of("type", "run.complete", "runId", "run_1"))
         ));
 
         StepVerifier.create(buffered)
-                .expectNextMatches(event -> event.data().contains("\"content.delta\""))
-                .expectNextMatches(event -> event.data().contains("\"run.complete\""))
+                .expectNextMatches(event -> "content.delta".equals(event.type()))
+                .expectNextMatches(event -> "run.complete".equals(event.type()))
                 .verifyComplete();
     }
 
-    private ServerSentEvent<String> event(String data) {
-        return ServerSentEvent.<String>builder()
-                .event("message")
-                .data(data)
-                .build();
+    private StreamSseEvent event(Map<String, Object> data) {
+        return StreamSseEvent.message(data);
     }
 }
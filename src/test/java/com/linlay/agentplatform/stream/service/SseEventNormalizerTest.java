@@ -1,17 +1,17 @@
 package com.linlay.agentplatform.stream.service;
 
+import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.linlay.agentplatform.config.properties.FrontendToolProperties;
 import com.linlay.agentplatform.model.ViewportType;
 import com.linlay.agentplatform.integration.viewport.ViewportRegistryService;
 import com.linlay.agentplatform.stream.autoconfigure.StreamSseProperties;
+import com.linlay.agentplatform.stream.model.StreamSseEvent;
 import com.linlay.agentplatform.tool.ToolDescriptor;
 import com.linlay.agentplatform.tool.ToolRegistry;
 import org.junit.jupiter.api.Test;
-import org.springframework.http.codec.ServerSentEvent;
 
-import java.time.Duration;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Optional;
@@ -28,19 +28,13 @@ class SseEventNormalizerTest {
     @Test
     void normalizeEventShouldConvertHeartbeatCommentToEventWithoutData() {
         SseEventNormalizer normalizer = newNormalizer(mock(ToolRegistry.class), mock(ViewportRegistryService.class), new FrontendToolProperties());
-        ServerSentEvent<String> event = ServerSentEvent.<String>builder()
-                .comment("heartbeat")
-                .id("hb_1")
-                .retry(Duration.ofSeconds(3))
-                .build();
+        StreamSseEvent event = StreamSseEvent.heartbeatComment();
 
-        ServerSentEvent<String> normalized = normalizer.normalizeEvent(event, new HashSet<>());
+        StreamSseEvent normalized = normalizer.normalizeEvent(event, new HashSet<>());
 
         assertThat(normalized.event()).isEqualTo("heartbeat");
-        assertThat(normalized.data()).isNull();
+        assertThat(normalized.hasData()).isFalse();
         assertThat(normalized.comment()).isNull();
-        assertThat(normalized.id()).isEqualTo("hb_1");
-        assertThat(normalized.retry()).isEqualTo(Duration.ofSeconds(3));
     }
 
     @Test
@@ -49,12 +43,10 @@ class SseEventNormalizerTest {
         String payload = """
                 {"seq":3,"type":"plan.update","planId":"plan_1","chatId":"chat_1","plan":[{"taskId":"task1","description":"d1","status":"init"}],"timestamp":1700000000000}
                 """;
-        ServerSentEvent<String> event = ServerSentEvent.builder(payload)
-                .event("message")
-                .build();
+        StreamSseEvent event = event(payload);
 
-        ServerSentEvent<String> normalized = normalizer.normalizeEvent(event, new HashSet<>());
-        JsonNode node = objectMapper.readTree(normalized.data());
+        StreamSseEvent normalized = normalizer.normalizeEvent(event, new HashSet<>());
+        JsonNode node = objectMapper.readTree(normalized.dataString(objectMapper));
 
         assertThat(node.path("seq").asLong()).isEqualTo(3L);
         assertThat(node.path("type").asText()).isEqualTo("plan.update");
@@ -76,15 +68,15 @@ class SseEventNormalizerTest {
         ));
         SseEventNormalizer normalizer = newNormalizer(toolRegistry, viewportRegistryService, frontendToolProperties);
 
-        ServerSentEvent<String> startEvent = ServerSentEvent.builder("""
+        StreamSseEvent startEvent = event("""
                 {"type":"tool.start","toolName":"confirm_dialog","toolId":"call_1","runId":"run_1","toolLabel":"确认框","toolDescription":"confirm"}
-                """).build();
-        ServerSentEvent<String> snapshotEvent = ServerSentEvent.builder("""
+                """);
+        StreamSseEvent snapshotEvent = event("""
                 {"type":"tool.snapshot","toolName":"confirm_dialog","toolId":"call_2","runId":"run_2","toolLabel":"确认框","toolDescription":"confirm"}
-                """).build();
+                """);
 
-        JsonNode startPayload = objectMapper.readTree(normalizer.normalizeEvent(startEvent, new HashSet<>()).data());
-        JsonNode snapshotPayload = objectMapper.readTree(normalizer.normalizeEvent(snapshotEvent, new HashSet<>()).data());
+        JsonNode startPayload = objectMapper.readTree(normalizer.normalizeEvent(startEvent, new HashSet<>()).dataString(objectMapper));
+        JsonNode snapshotPayload = objectMapper.readTree(normalizer.normalizeEvent(snapshotEvent, new HashSet<>()).dataString(objectMapper));
 
         assertFrontendPayload(startPayload, "tool.start", 120_000L);
         assertFrontendPayload(snapshotPayload, "tool.snapshot", 120_000L);
@@ -97,15 +89,15 @@ class SseEventNormalizerTest {
         SseEventNormalizer normalizer = newNormalizer(toolRegistry, mock(ViewportRegistryService.class), new FrontendToolProperties());
         Set<String> hiddenToolIds = new HashSet<>();
 
-        ServerSentEvent<String> startEvent = ServerSentEvent.builder("""
+        StreamSseEvent startEvent = event("""
                 {"type":"tool.start","toolName":"_plan_add_tasks_","toolId":"call_hidden_1","runId":"run_1"}
-                """).build();
-        ServerSentEvent<String> argsEvent = ServerSentEvent.builder("""
+                """);
+        StreamSseEvent argsEvent = event("""
                 {"type":"tool.args","toolId":"call_hidden_1","delta":"{}"}
-                """).build();
-        ServerSentEvent<String> resultEvent = ServerSentEvent.builder("""
+                """);
+        StreamSseEvent resultEvent = event("""
                 {"type":"tool.result","toolId":"call_hidden_1","result":"ok"}
-                """).build();
+                """);
 
         assertThat(normalizer.normalizeEvent(startEvent, hiddenToolIds)).isNull();
         assertThat(hiddenToolIds).containsExactly("call_hidden_1");
@@ -121,15 +113,15 @@ class SseEventNormalizerTest {
         SseEventNormalizer normalizer = newNormalizer(toolRegistry, mock(ViewportRegistryService.class), new FrontendToolProperties());
         Set<String> hiddenToolIds = new HashSet<>();
 
-        ServerSentEvent<String> startEvent = ServerSentEvent.builder("""
+        StreamSseEvent startEvent = event("""
                 {"type":"tool.start","toolName":"_artifact_publish_","toolId":"call_hidden_artifact_1","runId":"run_1"}
-                """).build();
-        ServerSentEvent<String> resultEvent = ServerSentEvent.builder("""
+                """);
+        StreamSseEvent resultEvent = event("""
                 {"type":"tool.result","toolId":"call_hidden_artifact_1","result":"{\\"ok\\":true}"}
-                """).build();
-        ServerSentEvent<String> artifactEvent = ServerSentEvent.builder("""
+                """);
+        StreamSseEvent artifactEvent = event("""
                 {"type":"artifact.publish","artifactId":"asset_1","chatId":"chat_1","runId":"run_1","artifact":{"type":"file","name":"plan.md","url":"/api/resource?file=chat_1%2Fplan.md"}}
-                """).build();
+                """);
 
         assertThat(normalizer.normalizeEvent(startEvent, hiddenToolIds)).isNull();
         assertThat(normalizer.normalizeEvent(resultEvent, hiddenToolIds)).isNull();
@@ -141,18 +133,18 @@ class SseEventNormalizerTest {
     void normalizeEventShouldDropToolPayloadEventsByDefault() {
         SseEventNormalizer normalizer = newNormalizer(mock(ToolRegistry.class), mock(ViewportRegistryService.class), new FrontendToolProperties());
 
-        ServerSentEvent<String> argsEvent = ServerSentEvent.builder("""
+        StreamSseEvent argsEvent = event("""
                 {"type":"tool.args","toolId":"call_1","delta":"{}"}
-                """).build();
-        ServerSentEvent<String> resultEvent = ServerSentEvent.builder("""
+                """);
+        StreamSseEvent resultEvent = event("""
                 {"type":"tool.result","toolId":"call_1","result":"ok"}
-                """).build();
-        ServerSentEvent<String> startEvent = ServerSentEvent.builder("""
+                """);
+        StreamSseEvent startEvent = event("""
                 {"type":"tool.start","toolId":"call_1","toolName":"bash","runId":"run_1"}
-                """).build();
-        ServerSentEvent<String> endEvent = ServerSentEvent.builder("""
+                """);
+        StreamSseEvent endEvent = event("""
                 {"type":"tool.end","toolId":"call_1"}
-                """).build();
+                """);
 
         assertThat(normalizer.normalizeEvent(argsEvent, new HashSet<>())).isNull();
         assertThat(normalizer.normalizeEvent(resultEvent, new HashSet<>())).isNull();
@@ -169,15 +161,15 @@ class SseEventNormalizerTest {
                 new StreamSseProperties(null, null, true)
         );
 
-        ServerSentEvent<String> argsEvent = ServerSentEvent.builder("""
+        StreamSseEvent argsEvent = event("""
                 {"type":"tool.args","toolId":"call_1","delta":"{}"}
-                """).build();
-        ServerSentEvent<String> resultEvent = ServerSentEvent.builder("""
+                """);
+        StreamSseEvent resultEvent = event("""
                 {"type":"tool.result","toolId":"call_1","result":"ok"}
-                """).build();
+                """);
 
-        JsonNode argsPayload = objectMapper.readTree(normalizer.normalizeEvent(argsEvent, new HashSet<>()).data());
-        JsonNode resultPayload = objectMapper.readTree(normalizer.normalizeEvent(resultEvent, new HashSet<>()).data());
+        JsonNode argsPayload = objectMapper.readTree(normalizer.normalizeEvent(argsEvent, new HashSet<>()).dataString(objectMapper));
+        JsonNode resultPayload = objectMapper.readTree(normalizer.normalizeEvent(resultEvent, new HashSet<>()).dataString(objectMapper));
 
         assertThat(argsPayload.path("type").asText()).isEqualTo("tool.args");
         assertThat(resultPayload.path("type").asText()).isEqualTo("tool.result");
@@ -197,7 +189,16 @@ class SseEventNormalizerTest {
             FrontendToolProperties frontendToolProperties,
             StreamSseProperties streamSseProperties
     ) {
-        return new SseEventNormalizer(objectMapper, toolRegistry, viewportRegistryService, frontendToolProperties, streamSseProperties);
+        return new SseEventNormalizer(toolRegistry, viewportRegistryService, frontendToolProperties, streamSseProperties);
+    }
+
+    private StreamSseEvent event(String json) {
+        try {
+            return StreamSseEvent.message(objectMapper.readValue(json, new TypeReference<Map<String, Object>>() {
+            }));
+        } catch (Exception ex) {
+            throw new IllegalStateException(ex);
+        }
     }
 
     private void assertFrontendPayload(JsonNode payload, String type, long timeoutMs) {
@@ -0,0 +1,66 @@
+package com.linlay.agentplatform.stream.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.linlay.agentplatform.stream.model.StreamEvent;
+import com.linlay.agentplatform.stream.model.StreamSseEvent;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SseFlushWriterTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final SseFlushWriter writer = new SseFlushWriter(objectMapper);
+
+    @Test
+    void encodeShouldWriteMessageEventAsSingleDataLine() {
+        StreamSseEvent event = StreamSseEvent.of(new StreamEvent(1L, "content.delta", 100L, Map.of("delta", "hi")));
+
+        String frame = encode(event);
+
+        assertThat(frame).isEqualTo("event:message\ndata:{\"seq\":1,\"type\":\"content.delta\",\"timestamp\":100,\"delta\":\"hi\"}\n\n");
+    }
+
+    @Test
+    void encodeShouldReuseCachedSerialization() {
+        StreamSseEvent event = StreamSseEvent.of(new StreamEvent(1L, "content.delta", 100L, Map.of("delta", "hi")));
+        byte[] first = event.dataBytes(objectMapper);
+
+        encode(event);
+
+        assertThat(event.dataBytes(objectMapper)).isSameAs(first);
+    }
+
+    @Test
+    void encodeShouldWriteRawDoneSentinelAndHeartbeat() {
+        assertThat(encode(StreamSseEvent.raw(StreamSseEvent.EVENT_MESSAGE, "[DONE]"))).isEqualTo("event:message\ndata:[DONE]\n\n");
+        assertThat(encode(StreamSseEvent.heartbeat())).isEqualTo("event:heartbeat\n\n");
+        assertThat(encode(StreamSseEvent.heartbeatComment())).isEqualTo(":heartbeat\n\n");
+    }
+
+    @Test
+    void encodeShouldReplaceUnserializableEventWithRunErrorKeepingSeq() throws Exception {
+        StreamSseEvent event = StreamSseEvent.of(new StreamEvent(7L, "tool.result", 100L, Map.of(
+                "runId", "run_1",
+                "result", new Object()
+        )));
+
+        String frame = encode(event);
+
+        String data = frame.substring(frame.indexOf("data:") + "data:".length(), frame.lastIndexOf("\n\n"));
+        Map<?, ?> payload = objectMapper.readValue(data, Map.class);
+        assertThat(payload.get("seq")).isEqualTo(7);
+        assertThat(payload.get("type")).isEqualTo("run.error");
+        assertThat(payload.get("runId")).isEqualTo("run_1");
+    }
+
+    private String encode(StreamSseEvent event) {
+        DataBuffer buffer = writer.encode(DefaultDataBufferFactory.sharedInstance, event);
+        return buffer.toString(StandardCharsets.UTF_8);
+    }
+}
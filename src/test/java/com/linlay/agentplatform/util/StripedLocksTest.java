@@ -0,0 +1,48 @@
+package com.linlay.agentplatform.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class StripedLocksTest {
+
+    @Test
+    void shouldRoundStripeCountUpToPowerOfTwo() {
+        assertThat(new StripedLocks(64).size()).isEqualTo(64);
+        assertThat(new StripedLocks(50).size()).isEqualTo(64);
+        assertThat(new StripedLocks(0).size()).isGreaterThanOrEqualTo(1);
+    }
+
+    @Test
+    void shouldReturnSameLockForSameKey() {
+        StripedLocks locks = new StripedLocks(16);
+        assertThat(locks.lockFor("chat-1")).isSameAs(locks.lockFor("chat-1"));
+        assertThat(locks.lockFor(null)).isSameAs(locks.lockFor(null));
+    }
+
+    @Test
+    void shouldSerializeWorkForSameKey() throws Exception {
+        StripedLocks locks = new StripedLocks(16);
+        AtomicInteger active = new AtomicInteger();
+        AtomicInteger maxActive = new AtomicInteger();
+        Thread[] threads = new Thread[8];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = Thread.ofPlatform().start(() -> {
+                for (int round = 0; round < 200; round++) {
+                    locks.run("chat-1", () -> {
+                        int current = active.incrementAndGet();
+                        maxActive.accumulateAndGet(current, Math::max);
+                        active.decrementAndGet();
+                    });
+                }
+            });
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertThat(maxActive.get()).isEqualTo(1);
+        assertThat(locks.call("chat-1", () -> "done")).isEqualTo("done");
+    }
+}